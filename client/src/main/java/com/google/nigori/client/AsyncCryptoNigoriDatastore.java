@@ -0,0 +1,485 @@
+/*
+ * Copyright (C) 2012 Daniel Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import static com.google.nigori.common.MessageLibrary.toBytes;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import com.google.nigori.common.Index;
+import com.google.nigori.common.MessageLibrary;
+import com.google.nigori.common.NigoriCryptographyException;
+import com.google.nigori.common.NigoriMessages.GetIndicesResponse;
+import com.google.nigori.common.NigoriMessages.GetResponse;
+import com.google.nigori.common.NigoriMessages.GetRevisionsResponse;
+import com.google.nigori.common.NigoriMessages.RevisionValue;
+import com.google.nigori.common.NotFoundException;
+import com.google.nigori.common.RevValue;
+import com.google.nigori.common.Revision;
+import com.google.nigori.common.UnauthorisedException;
+import com.google.nigori.common.Util;
+import com.google.protobuf.ByteString;
+
+/**
+ * An {@link AsyncNigoriDatastore} which talks to the server without blocking, unlike
+ * {@link AsyncNigoriDatastoreWrapper} which needs a thread for each operation in progress. Requests
+ * are sent through an {@link AsyncHTTPProtocol} and the results are decrypted and passed to the
+ * callbacks on the {@link NioHttpClient}'s callback threads, so there can be hundreds of operations
+ * in progress at once.
+ *
+ * Results are the same as those of {@link CryptoNigoriDatastore}.
+ *
+ * @author drt24
+ *
+ */
+public class AsyncCryptoNigoriDatastore implements AsyncNigoriDatastore {
+
+  private final KeyManager keyManager;
+  private final AsyncHTTPProtocol protocol;
+
+  /**
+   * @param server DNS name or IP Address of the server.
+   * @param port Port number the service is running on.
+   * @param serverPrefix URI path on the server for the Nigori service.
+   * @param username name of account used to communicate with the Nigori service.
+   * @param password password of the account used to communicate with the Nigori service.
+   * @throws IOException if the default {@link NioHttpClient} could not be started.
+   * @throws NigoriCryptographyException if appropriate cryptography libraries are unavailable.
+   */
+  public AsyncCryptoNigoriDatastore(String server, int port, String serverPrefix, String username,
+      String password) throws NigoriCryptographyException, IOException {
+    this(NioHttpClient.getDefault(), server, port, serverPrefix, username, password);
+  }
+
+  public AsyncCryptoNigoriDatastore(NioHttpClient client, String server, int port,
+      String serverPrefix, String username, String password)
+      throws NigoriCryptographyException, UnsupportedEncodingException {
+    protocol = new AsyncHTTPProtocol(client, server, port, serverPrefix);
+    keyManager =
+        new RealKeyManager(server + ":" + port, toBytes(username), toBytes(password));
+  }
+
+  /**
+   * Represents communication with a Nigori datastore for a newly created user.
+   *
+   * @see CryptoNigoriDatastore#CryptoNigoriDatastore(String, int, String)
+   */
+  public AsyncCryptoNigoriDatastore(NioHttpClient client, String server, int port,
+      String serverPrefix) throws NigoriCryptographyException, UnsupportedEncodingException {
+    protocol = new AsyncHTTPProtocol(client, server, port, serverPrefix);
+    keyManager = new RealKeyManager(server + ":" + port);
+  }
+
+  public String getUsername() {
+    return MessageLibrary.bytesToString(keyManager.getUsername());
+  }
+
+  public String getPassword() {
+    return MessageLibrary.bytesToString(keyManager.getPassword());
+  }
+
+  @Override
+  public boolean register() throws IOException, NigoriCryptographyException {
+    byte[] token = {};
+    Waiter<Boolean> waiter = new Waiter<Boolean>();
+    protocol.register(MessageLibrary.registerRequestAsProtobuf(keyManager.signer(), token), waiter);
+    try {
+      return waiter.await();
+    } catch (UnauthorisedException e) {
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public boolean unregister() throws IOException, NigoriCryptographyException,
+      UnauthorisedException {
+    Waiter<Boolean> waiter = new Waiter<Boolean>();
+    protocol.unregister(MessageLibrary.unregisterRequestAsProtobuf(keyManager.getServerName(),
+        keyManager.signer()), waiter);
+    return waiter.await();
+  }
+
+  @Override
+  public void authenticate(AsyncCallback<Boolean> callback) {
+    final Traced<Boolean> traced = new Traced<Boolean>(callback);
+    try {
+      protocol.authenticate(MessageLibrary.authenticateRequestAsProtobuf(keyManager
+          .getServerName(), keyManager.signer()), traced);
+    } catch (Throwable t) {
+      traced.onFailure(t);
+    }
+  }
+
+  @Override
+  public void getIndices(AsyncCallback<List<Index>> callback) {
+    fetchIndices(null, new ArrayList<Index>(), new Traced<List<Index>>(callback));
+  }
+
+  /**
+   * Fetch the page of indices at cursor and then the following pages
+   */
+  private void fetchIndices(byte[] cursor, final List<Index> indices,
+      final AsyncCallback<List<Index>> callback) {
+    try {
+      protocol.getIndices(MessageLibrary.getIndicesRequestAsProtobuf(keyManager.getServerName(),
+          keyManager.signer(), cursor, MessageLibrary.MAX_PAGE_SIZE),
+          new Continuation<GetIndicesResponse, List<Index>>(callback) {
+            @Override
+            void next(GetIndicesResponse response) throws NigoriCryptographyException {
+              if (response == null) {
+                callback.onSuccess(null);
+                return;
+              }
+              for (ByteString index : response.getIndicesList()) {
+                indices.add(new Index(keyManager.decrypt(index.toByteArray())));
+              }
+              if (response.hasCursor()) {
+                fetchIndices(response.getCursor().toByteArray(), indices, callback);
+              } else {
+                callback.onSuccess(indices);
+              }
+            }
+          });
+    } catch (Throwable t) {
+      callback.onFailure(t);
+    }
+  }
+
+  @Override
+  public void getRevision(Index index, Revision revision, AsyncCallback<byte[]> callback) {
+    final Traced<byte[]> traced = new Traced<byte[]>(callback);
+    try {
+      protocol.get(MessageLibrary.getRequestAsProtobuf(keyManager.getServerName(), keyManager
+          .signer(), keyManager.encryptDeterministically(index.getBytes()), keyManager
+          .encryptDeterministically(revision.getBytes())),
+          new Continuation<GetResponse, byte[]>(traced) {
+            @Override
+            void next(GetResponse response) throws NigoriCryptographyException {
+              List<RevValue> rev = response == null ? null : decrypt(response.getRevisionsList());
+              if (rev != null && rev.size() == 1) {
+                callback.onSuccess(rev.get(0).getValue());
+              } else {
+                callback.onSuccess(null);
+              }
+            }
+          });
+    } catch (Throwable t) {
+      traced.onFailure(t);
+    }
+  }
+
+  @Override
+  public void get(Index index, AsyncCallback<List<RevValue>> callback) {
+    final Traced<List<RevValue>> traced = new Traced<List<RevValue>>(callback);
+    try {
+      protocol.get(MessageLibrary.getRequestAsProtobuf(keyManager.getServerName(), keyManager
+          .signer(), keyManager.encryptDeterministically(index.getBytes()), null),
+          new Continuation<GetResponse, List<RevValue>>(traced) {
+            @Override
+            void next(GetResponse response) throws NigoriCryptographyException {
+              callback.onSuccess(response == null ? null : decrypt(response.getRevisionsList()));
+            }
+          });
+    } catch (Throwable t) {
+      traced.onFailure(t);
+    }
+  }
+
+  @Override
+  public void getRevisions(Index index, AsyncCallback<List<Revision>> callback) {
+    final Traced<List<Revision>> traced = new Traced<List<Revision>>(callback);
+    try {
+      fetchRevisions(keyManager.encryptDeterministically(index.getBytes()), null,
+          new ArrayList<Revision>(), traced);
+    } catch (Throwable t) {
+      traced.onFailure(t);
+    }
+  }
+
+  /**
+   * Fetch the page of revisions at cursor and then the following pages
+   */
+  private void fetchRevisions(final byte[] encIndex, byte[] cursor, final List<Revision> revisions,
+      final AsyncCallback<List<Revision>> callback) {
+    try {
+      protocol.getRevisions(MessageLibrary.getRevisionsRequestAsProtobuf(keyManager
+          .getServerName(), keyManager.signer(), encIndex, cursor, MessageLibrary.MAX_PAGE_SIZE),
+          new Continuation<GetRevisionsResponse, List<Revision>>(callback) {
+            @Override
+            void next(GetRevisionsResponse response) throws NigoriCryptographyException {
+              for (ByteString revision : response.getRevisionsList()) {
+                revisions.add(new Revision(keyManager.decrypt(revision.toByteArray())));
+              }
+              if (response.hasCursor()) {
+                fetchRevisions(encIndex, response.getCursor().toByteArray(), revisions, callback);
+              } else {
+                callback.onSuccess(revisions);
+              }
+            }
+
+            @Override
+            public void onFailure(Throwable caught) {
+              if (caught instanceof NotFoundException) {
+                callback.onSuccess(null);
+              } else {
+                callback.onFailure(caught);
+              }
+            }
+          });
+    } catch (Throwable t) {
+      callback.onFailure(t);
+    }
+  }
+
+  /**
+   * Requests for the revisions are sent in chunks of at most {@link MessageLibrary#MAX_PAGE_SIZE}
+   * which are all in flight at once.
+   */
+  @Override
+  public void getRevisionValues(Index index, List<Revision> revisions,
+      AsyncCallback<List<RevValue>> callback) {
+    final Traced<List<RevValue>> traced = new Traced<List<RevValue>>(callback);
+    try {
+      byte[] encIndex = keyManager.encryptDeterministically(index.getBytes());
+      int chunks =
+          (revisions.size() + MessageLibrary.MAX_PAGE_SIZE - 1) / MessageLibrary.MAX_PAGE_SIZE;
+      if (chunks == 0) {
+        traced.onSuccess(new ArrayList<RevValue>());
+        return;
+      }
+      final Join<List<RevValue>> join = new Join<List<RevValue>>(chunks, traced) {
+        @Override
+        List<RevValue> combine(List<List<RevValue>> results) {
+          List<RevValue> answer = new ArrayList<RevValue>();
+          for (List<RevValue> chunk : results) {
+            answer.addAll(chunk);
+          }
+          return answer;
+        }
+      };
+      for (int chunk = 0; chunk < chunks; ++chunk) {
+        final int position = chunk;
+        int start = chunk * MessageLibrary.MAX_PAGE_SIZE;
+        List<byte[]> encRevisions = new ArrayList<byte[]>();
+        for (Revision revision : revisions.subList(start, Math.min(revisions.size(), start
+            + MessageLibrary.MAX_PAGE_SIZE))) {
+          encRevisions.add(keyManager.encryptDeterministically(revision.getBytes()));
+        }
+        protocol.get(MessageLibrary.getRevisionValuesRequestAsProtobuf(keyManager.getServerName(),
+            keyManager.signer(), encIndex, encRevisions), new AsyncCallback<GetResponse>() {
+          @Override
+          public void onSuccess(GetResponse response) {
+            try {
+              // None of this chunk exist if there is no response
+              join.put(position, response == null ? new ArrayList<RevValue>() : decrypt(response
+                  .getRevisionsList()));
+            } catch (Throwable t) {
+              join.fail(t);
+            }
+          }
+
+          @Override
+          public void onFailure(Throwable caught) {
+            join.fail(caught);
+          }
+        });
+      }
+    } catch (Throwable t) {
+      traced.onFailure(t);
+    }
+  }
+
+  @Override
+  public void put(Index index, Revision revision, byte[] value, AsyncCallback<Boolean> callback) {
+    final Traced<Boolean> traced = new Traced<Boolean>(callback);
+    try {
+      if (value == null) {
+        throw new IllegalArgumentException("Null values not yet supported");
+      }
+      protocol.put(MessageLibrary.putRequestAsProtobuf(keyManager.getServerName(), keyManager
+          .signer(), keyManager.encryptDeterministically(index.getBytes()), keyManager
+          .encryptDeterministically(revision.getBytes()), keyManager.encrypt(value)), traced);
+    } catch (Throwable t) {
+      traced.onFailure(t);
+    }
+  }
+
+  @Override
+  public void delete(Index index, byte[] token, AsyncCallback<Boolean> callback) {
+    final Traced<Boolean> traced = new Traced<Boolean>(callback);
+    try {
+      protocol.delete(MessageLibrary.deleteRequestAsProtobuf(keyManager.getServerName(),
+          keyManager.signer(), keyManager.encryptDeterministically(index.getBytes())), traced);
+    } catch (Throwable t) {
+      traced.onFailure(t);
+    }
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    protocol.getClient().execute(command);
+  }
+
+  private List<RevValue> decrypt(List<RevisionValue> revisions) throws NigoriCryptographyException {
+    List<RevValue> answer = new ArrayList<RevValue>(revisions.size());
+    for (RevisionValue revisionValue : revisions) {
+      answer.add(new RevValue(keyManager.decrypt(revisionValue.getRevision().toByteArray()),
+          keyManager.decrypt(revisionValue.getValue().toByteArray())));
+    }
+    return answer;
+  }
+
+  /**
+   * Adds where the operation was started from to failures, as
+   * {@link AsyncNigoriDatastoreWrapper} does
+   */
+  private static class Traced<T> implements AsyncCallback<T> {
+    private final AsyncCallback<T> callback;
+    private final Throwable from = new Throwable();
+
+    Traced(AsyncCallback<T> callback) {
+      this.callback = callback;
+    }
+
+    @Override
+    public void onFailure(Throwable caught) {
+      Util.addFrom(caught, from);
+      callback.onFailure(caught);
+    }
+
+    @Override
+    public void onSuccess(T result) {
+      callback.onSuccess(result);
+    }
+  }
+
+  /**
+   * Carries on with a response, passing any failure to the callback for the whole operation
+   */
+  private abstract static class Continuation<R, T> implements AsyncCallback<R> {
+    protected final AsyncCallback<T> callback;
+
+    Continuation(AsyncCallback<T> callback) {
+      this.callback = callback;
+    }
+
+    abstract void next(R response) throws Exception;
+
+    @Override
+    public void onSuccess(R response) {
+      try {
+        next(response);
+      } catch (Throwable t) {
+        callback.onFailure(t);
+      }
+    }
+
+    @Override
+    public void onFailure(Throwable caught) {
+      callback.onFailure(caught);
+    }
+  }
+
+  /**
+   * Waits for several requests and then gives the callback their combined results, or the first
+   * failure.
+   */
+  private abstract static class Join<T> {
+    private final List<T> results;
+    private final AsyncCallback<T> callback;
+    private int remaining;
+    private boolean failed = false;
+
+    Join(int parts, AsyncCallback<T> callback) {
+      this.results = new ArrayList<T>(parts);
+      for (int i = 0; i < parts; ++i) {
+        results.add(null);
+      }
+      this.remaining = parts;
+      this.callback = callback;
+    }
+
+    abstract T combine(List<T> results);
+
+    void put(int position, T result) {
+      synchronized (this) {
+        if (failed) {
+          return;
+        }
+        results.set(position, result);
+        if (--remaining > 0) {
+          return;
+        }
+      }
+      callback.onSuccess(combine(results));
+    }
+
+    void fail(Throwable caught) {
+      synchronized (this) {
+        if (failed) {
+          return;
+        }
+        failed = true;
+      }
+      callback.onFailure(caught);
+    }
+  }
+
+  /**
+   * Blocks until the callback is called, for the operations which are synchronous
+   */
+  private static class Waiter<T> implements AsyncCallback<T> {
+    private final CountDownLatch done = new CountDownLatch(1);
+    private T result;
+    private Throwable failure;
+
+    @Override
+    public void onFailure(Throwable caught) {
+      failure = caught;
+      done.countDown();
+    }
+
+    @Override
+    public void onSuccess(T result) {
+      this.result = result;
+      done.countDown();
+    }
+
+    T await() throws IOException, UnauthorisedException {
+      try {
+        done.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while waiting for the server", e);
+      }
+      if (failure == null) {
+        return result;
+      }
+      if (failure instanceof IOException) {
+        throw (IOException) failure;
+      }
+      if (failure instanceof UnauthorisedException) {
+        throw (UnauthorisedException) failure;
+      }
+      if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      }
+      throw new IOException(failure);
+    }
+  }
+}
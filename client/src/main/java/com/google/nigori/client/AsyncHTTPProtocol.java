@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2012 Daniel Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import com.google.nigori.common.ContentEncoding;
+import com.google.nigori.common.MessageLibrary;
+import com.google.nigori.common.MessageLibrary.JsonConversionException;
+import com.google.nigori.common.NigoriMessages.AuthenticateRequest;
+import com.google.nigori.common.NigoriMessages.BatchRequest;
+import com.google.nigori.common.NigoriMessages.BatchResponse;
+import com.google.nigori.common.NigoriMessages.DeleteRequest;
+import com.google.nigori.common.NigoriMessages.GetChangesRequest;
+import com.google.nigori.common.NigoriMessages.GetChangesResponse;
+import com.google.nigori.common.NigoriMessages.GetDigestsRequest;
+import com.google.nigori.common.NigoriMessages.GetDigestsResponse;
+import com.google.nigori.common.NigoriMessages.GetIndicesRequest;
+import com.google.nigori.common.NigoriMessages.GetIndicesResponse;
+import com.google.nigori.common.NigoriMessages.GetRequest;
+import com.google.nigori.common.NigoriMessages.GetResponse;
+import com.google.nigori.common.NigoriMessages.GetRevisionsRequest;
+import com.google.nigori.common.NigoriMessages.GetRevisionsResponse;
+import com.google.nigori.common.NigoriMessages.PutRequest;
+import com.google.nigori.common.NigoriMessages.RegisterRequest;
+import com.google.nigori.common.NigoriMessages.UnregisterRequest;
+import com.google.nigori.common.NigoriProtocol;
+import com.google.nigori.common.NotFoundException;
+import com.google.nigori.common.UnauthorisedException;
+import com.google.protobuf.GeneratedMessage;
+import com.google.protobuf.Parser;
+
+/**
+ * An asynchronous version of {@link NigoriProtocol} over a {@link NioHttpClient}. Each method
+ * returns straight away and the callback is given what the matching {@link ProtobufHTTPProtocol}
+ * method would have returned or thrown.
+ *
+ * Like {@link ProtobufHTTPProtocol} requests are sent as protobufs unless the server replies Not
+ * Acceptable, in which case that request and all following ones are sent as JSON. Like {@link Http}
+ * large requests are compressed once the server has said that it accepts compressed requests.
+ *
+ * @author drt24
+ *
+ */
+public class AsyncHTTPProtocol {
+
+  private final NioHttpClient client;
+  private final String serverUrl;
+  private volatile boolean useJson = false;
+  /**
+   * How to compress requests, null until the server says it can read compressed requests
+   */
+  private volatile String requestEncoding = null;
+
+  public AsyncHTTPProtocol(NioHttpClient client, String server, int port, String serverPrefix) {
+    this.client = client;
+    this.serverUrl = JsonHTTPProtocol.serverUrl(server, port, serverPrefix);
+  }
+
+  /**
+   * @return true if the server doesn't support protobufs and JSON is being used instead
+   */
+  public boolean isUsingJson() {
+    return useJson;
+  }
+
+  public NioHttpClient getClient() {
+    return client;
+  }
+
+  public void authenticate(AuthenticateRequest request, AsyncCallback<Boolean> callback) {
+    post(MessageLibrary.REQUEST_AUTHENTICATE, request, SUCCESS, callback);
+  }
+
+  public void register(RegisterRequest request, AsyncCallback<Boolean> callback) {
+    post(MessageLibrary.REQUEST_REGISTER, request, SUCCESS, callback);
+  }
+
+  public void unregister(UnregisterRequest request, AsyncCallback<Boolean> callback) {
+    post(MessageLibrary.REQUEST_UNREGISTER, request, SUCCESS, callback);
+  }
+
+  /**
+   * @param callback given null if the index or revision was not found
+   */
+  public void get(GetRequest request, AsyncCallback<GetResponse> callback) {
+    post(MessageLibrary.REQUEST_GET, request, new MessageHandler<GetResponse>(GetResponse.PARSER,
+        GetResponse.class, false), callback);
+  }
+
+  /**
+   * @param callback given null if the user has no indices
+   */
+  public void getIndices(GetIndicesRequest request, AsyncCallback<GetIndicesResponse> callback) {
+    post(MessageLibrary.REQUEST_GET_INDICES, request, new MessageHandler<GetIndicesResponse>(
+        GetIndicesResponse.PARSER, GetIndicesResponse.class, false), callback);
+  }
+
+  /**
+   * @param callback fails with {@link NotFoundException} if there is no such index
+   */
+  public void getRevisions(GetRevisionsRequest request,
+      AsyncCallback<GetRevisionsResponse> callback) {
+    post(MessageLibrary.REQUEST_GET_REVISIONS, request, new MessageHandler<GetRevisionsResponse>(
+        GetRevisionsResponse.PARSER, GetRevisionsResponse.class, true), callback);
+  }
+
+  public void put(PutRequest request, AsyncCallback<Boolean> callback) {
+    post(MessageLibrary.REQUEST_PUT, request, SUCCESS, callback);
+  }
+
+  /**
+   * @param callback given false if there was no such index
+   */
+  public void delete(DeleteRequest request, AsyncCallback<Boolean> callback) {
+    post(MessageLibrary.REQUEST_DELETE, request, new Handler<Boolean>() {
+      @Override
+      Boolean handle(HttpResponse resp, boolean json) throws IOException, UnauthorisedException {
+        if (resp.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+          resp.close();
+          return false;
+        }
+        if (resp.getResponseCode() != HttpURLConnection.HTTP_OK) {
+          failure(resp);
+        }
+        resp.close();
+        return true;
+      }
+    }, callback);
+  }
+
+  public void batch(BatchRequest request, AsyncCallback<BatchResponse> callback) {
+    post(MessageLibrary.REQUEST_BATCH, request, new MessageHandler<BatchResponse>(
+        BatchResponse.PARSER, BatchResponse.class, false), callback);
+  }
+
+  public void getChanges(GetChangesRequest request, AsyncCallback<GetChangesResponse> callback) {
+    post(MessageLibrary.REQUEST_GET_CHANGES, request, new MessageHandler<GetChangesResponse>(
+        GetChangesResponse.PARSER, GetChangesResponse.class, false), callback);
+  }
+
+  /**
+   * @param callback fails with {@link NotFoundException} if one of the nodes is not in the tree
+   */
+  public void getDigests(GetDigestsRequest request, AsyncCallback<GetDigestsResponse> callback) {
+    post(MessageLibrary.REQUEST_GET_DIGESTS, request, new MessageHandler<GetDigestsResponse>(
+        GetDigestsResponse.PARSER, GetDigestsResponse.class, true), callback);
+  }
+
+  private <T> void post(final String requestType, final GeneratedMessage request,
+      final Handler<T> handler, final AsyncCallback<T> callback) {
+    final boolean json = useJson;
+    URL url;
+    byte[] data;
+    String encoding = requestEncoding;
+    try {
+      url = new URL(serverUrl + requestType);
+      data = json ? toJson(request) : request.toByteArray();
+    } catch (IOException e) {
+      callback.onFailure(e);
+      return;
+    }
+    if (encoding != null && data.length >= ContentEncoding.DEFAULT_THRESHOLD) {
+      data = ContentEncoding.encode(encoding, data);
+    } else {
+      encoding = null;
+    }
+    final boolean compressed = encoding != null;
+    String mimeType = json ? MessageLibrary.MIMETYPE_JSON : MessageLibrary.MIMETYPE_PROTOBUF;
+    String accept =
+        json ? MessageLibrary.MIMETYPE_JSON : MessageLibrary.MIMETYPE_PROTOBUF + ", "
+            + MessageLibrary.MIMETYPE_JSON;
+    client.post(url, data, mimeType, accept, encoding, new AsyncCallback<HttpResponse>() {
+
+      @Override
+      public void onFailure(Throwable caught) {
+        callback.onFailure(caught);
+      }
+
+      @Override
+      public void onSuccess(HttpResponse resp) {
+        T result;
+        try {
+          if (!json && resp.getResponseCode() == HttpURLConnection.HTTP_NOT_ACCEPTABLE) {
+            resp.close();
+            useJson = true;
+            post(requestType, request, handler, callback);
+            return;
+          }
+          if (compressed && resp.getResponseCode() == HttpURLConnection.HTTP_UNSUPPORTED_TYPE) {
+            // something between us and the server couldn't handle the compressed request
+            resp.close();
+            requestEncoding = null;
+            post(requestType, request, handler, callback);
+            return;
+          }
+          requestEncoding = ContentEncoding.negotiate(resp.getAcceptEncoding());
+          result = handler.handle(resp, json);
+        } catch (Throwable t) {
+          callback.onFailure(t);
+          return;
+        }
+        callback.onSuccess(result);
+      }
+    });
+  }
+
+  private static byte[] toJson(GeneratedMessage request) throws IOException {
+    ByteArrayOutputStream json = new ByteArrayOutputStream();
+    Writer out = new OutputStreamWriter(json, MessageLibrary.CHARSET);
+    MessageLibrary.writeJson(request, out);
+    out.close();
+    return json.toByteArray();
+  }
+
+  private static void failure(HttpResponse resp) throws IOException, UnauthorisedException {
+    String message = resp.toOutputString();
+    if (resp.getResponseCode() == Http.UNAUTHORIZED) {
+      throw new UnauthorisedException(message);
+    }
+    throw new IOException("Server did not accept request(" + resp.getResponseCode() + "). "
+        + message);
+  }
+
+  /**
+   * Turns a response into the result for the callback
+   */
+  private abstract static class Handler<T> {
+    /**
+     * @param resp
+     * @param json whether the response is JSON rather than a protobuf
+     */
+    abstract T handle(HttpResponse resp, boolean json) throws IOException, UnauthorisedException,
+        NotFoundException;
+  }
+
+  private static final Handler<Boolean> SUCCESS = new Handler<Boolean>() {
+    @Override
+    Boolean handle(HttpResponse resp, boolean json) throws IOException {
+      try {
+        return resp.getResponseCode() == HttpURLConnection.HTTP_OK;
+      } finally {
+        resp.close();
+      }
+    }
+  };
+
+  private static class MessageHandler<T extends GeneratedMessage> extends Handler<T> {
+    private final Parser<T> parser;
+    private final Class<T> type;
+    private final boolean notFoundException;
+
+    /**
+     * @param parser to parse protobuf responses
+     * @param type to parse JSON responses
+     * @param notFoundException whether Not Found is an exception rather than a null result
+     */
+    MessageHandler(Parser<T> parser, Class<T> type, boolean notFoundException) {
+      this.parser = parser;
+      this.type = type;
+      this.notFoundException = notFoundException;
+    }
+
+    @Override
+    T handle(HttpResponse resp, boolean json) throws IOException, UnauthorisedException,
+        NotFoundException {
+      if (resp.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+        if (notFoundException) {
+          throw new NotFoundException(resp.toOutputString());
+        }
+        resp.close();
+        return null; // request was successful, but no data key by that name was found.
+      }
+      if (resp.getResponseCode() != HttpURLConnection.HTTP_OK) {
+        failure(resp);
+      }
+      try {
+        if (json) {
+          return MessageLibrary.fromJson(new BufferedReader(new InputStreamReader(resp
+              .getInputStream(), MessageLibrary.CHARSET)), type);
+        }
+        return parser.parseFrom(resp.getInputStream());
+      } catch (JsonConversionException jce) {
+        throw new IOException("Error reading JSON sent by server: " + jce.getMessage());
+      } finally {
+        resp.close();
+      }
+    }
+  }
+}
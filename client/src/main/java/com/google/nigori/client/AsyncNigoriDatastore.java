@@ -33,5 +33,8 @@ public interface AsyncNigoriDatastore extends AsyncDatastore {
 
   void getRevisions(Index index, AsyncCallback<List<Revision>> callback);
 
+  void getRevisionValues(Index index, List<Revision> revisions,
+      AsyncCallback<List<RevValue>> callback);
+
   void delete(Index index, byte[] token, AsyncCallback<Boolean> callback);
 }
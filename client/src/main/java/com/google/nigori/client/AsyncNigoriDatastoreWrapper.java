@@ -116,6 +116,24 @@ public class AsyncNigoriDatastoreWrapper implements AsyncNigoriDatastore {
     });
   }
 
+  @Override
+  public void getRevisionValues(final Index index, final List<Revision> revisions,
+      final AsyncCallback<List<RevValue>> callback) {
+    final Throwable from = new Throwable();
+    executor.execute(new Runnable() {
+
+      @Override
+      public void run() {
+        try {
+          callback.onSuccess(store.getRevisionValues(index, revisions));
+        } catch (Throwable t) {
+          Util.addFrom(t, from);
+          callback.onFailure(t);
+        }
+      }
+    });
+  }
+
   @Override
   public void put(final Index index, final Revision revision, final byte[] value,
       final AsyncCallback<Boolean> callback) {
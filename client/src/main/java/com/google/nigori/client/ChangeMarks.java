@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.google.nigori.common.Index;
+import com.google.nigori.common.NigoriCryptographyException;
+import com.google.nigori.common.UnauthorisedException;
+
+/**
+ * Remembers how far through the change sequences of two stores a sync has got so that the next sync
+ * only needs to look at the indices which have changed in either store since then.
+ * 
+ * Marks are only moved on by {@link #synced()} so a sync which fails part way through is repeated
+ * in full the next time.
+ * 
+ * @author drt24
+ * 
+ */
+class ChangeMarks {
+
+  private final ChangeTrackingDatastore first;
+  private final ChangeTrackingDatastore second;
+  private long firstMark = -1;
+  private long secondMark = -1;
+  private long firstPending = -1;
+  private long secondPending = -1;
+
+  /**
+   * @param first
+   * @param second
+   */
+  ChangeMarks(Object first, Object second) {
+    if (first instanceof ChangeTrackingDatastore && second instanceof ChangeTrackingDatastore) {
+      this.first = (ChangeTrackingDatastore) first;
+      this.second = (ChangeTrackingDatastore) second;
+    } else {
+      this.first = null;
+      this.second = null;
+    }
+  }
+
+  /**
+   * Start a sync
+   * 
+   * @return the indices which have changed in either store since the last sync or null if all the
+   *         indices need to be synced
+   */
+  synchronized Collection<Index> changed() throws IOException, NigoriCryptographyException,
+      UnauthorisedException {
+    if (first == null) {
+      return null;
+    }
+    if (firstMark >= 0 && secondMark >= 0) {
+      Changes firstChanges = first.getChangesSince(firstMark);
+      Changes secondChanges = second.getChangesSince(secondMark);
+      if (firstChanges != null && secondChanges != null) {
+        Set<Index> changed = new LinkedHashSet<Index>(firstChanges.getIndices());
+        changed.addAll(secondChanges.getIndices());
+        firstPending = firstChanges.getSequence();
+        secondPending = secondChanges.getSequence();
+        return changed;
+      }
+    }
+    // Read before the full sync starts so that anything which changes during it is seen next time
+    firstPending = first.getSequence();
+    secondPending = second.getSequence();
+    return null;
+  }
+
+  /**
+   * The sync started by the last call to {@link #changed()} has finished successfully
+   */
+  synchronized void synced() {
+    firstMark = firstPending;
+    secondMark = secondPending;
+  }
+
+  /**
+   * @return how far through the second store's sequence the last successful sync got, -1 if there
+   *         hasn't been one or the stores don't track changes
+   */
+  synchronized long getSecondMark() {
+    return secondMark;
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import java.io.IOException;
+
+import com.google.nigori.common.NigoriCryptographyException;
+import com.google.nigori.common.UnauthorisedException;
+
+/**
+ * A datastore which numbers each change to its indices in sequence so that it can say which indices
+ * have changed since an earlier point, letting a sync look at only those indices.
+ * 
+ * @author drt24
+ * 
+ */
+public interface ChangeTrackingDatastore {
+
+  /**
+   * @return the sequence number of the latest change to the store, 0 if there have been none
+   * @throws IOException
+   * @throws NigoriCryptographyException
+   * @throws UnauthorisedException
+   */
+  long getSequence() throws IOException, NigoriCryptographyException, UnauthorisedException;
+
+  /**
+   * Get the indices which have had revisions added or been deleted since an earlier point in the
+   * sequence.
+   * 
+   * @param since a sequence number previously returned by this store
+   * @return the changed indices, or null if the store's sequence is now behind {@code since} (for
+   *         example because its data was moved or recreated) and so everything must be looked at
+   * @throws IOException
+   * @throws NigoriCryptographyException
+   * @throws UnauthorisedException
+   */
+  Changes getChangesSince(long since) throws IOException, NigoriCryptographyException,
+      UnauthorisedException;
+
+  /**
+   * Like {@link #getChangesSince(long)} except that if there are no changes yet it waits for there
+   * to be one, so that changes can be found out about as they happen without polling.
+   * 
+   * @param since a sequence number previously returned by this store
+   * @param wait the longest to wait in milliseconds, the store may wait for less
+   * @return the changed indices, which are empty if there were none by the time the store stopped
+   *         waiting, or null as for {@link #getChangesSince(long)}
+   * @throws IOException
+   * @throws NigoriCryptographyException
+   * @throws UnauthorisedException
+   */
+  Changes waitForChangesSince(long since, int wait) throws IOException,
+      NigoriCryptographyException, UnauthorisedException;
+}
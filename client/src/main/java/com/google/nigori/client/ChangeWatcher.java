@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import com.google.nigori.common.Index;
+import com.google.nigori.common.MessageLibrary;
+import com.google.nigori.common.NigoriCryptographyException;
+import com.google.nigori.common.UnauthorisedException;
+
+/**
+ * Keeps a request waiting for changes outstanding on a {@link ChangeTrackingDatastore} so that the
+ * indices changed in it by someone else can be synced as soon as that happens, rather than at the
+ * next full sync.
+ *
+ * Watching stops at the first failure, which is passed to the listener, and must be started again
+ * once the store can be reached. Stopping doesn't interrupt a request which is already waiting but
+ * its answer is ignored.
+ *
+ * @author drt24
+ *
+ */
+class ChangeWatcher {
+
+  /**
+   * Told about changes by the watcher's thread
+   */
+  interface Listener {
+    /**
+     * @param indices which have changed in the store, never empty
+     */
+    void changed(Collection<Index> indices) throws IOException, NigoriCryptographyException,
+        UnauthorisedException;
+
+    /**
+     * Watching has stopped because of e
+     */
+    void failed(Exception e);
+  }
+
+  private final ChangeTrackingDatastore store;
+  private final Listener listener;
+  private final int wait;
+  private Thread thread = null;
+  private volatile long reached = -1;
+
+  /**
+   * @param store
+   * @param listener
+   * @param wait how long in milliseconds each request waits for a change
+   */
+  ChangeWatcher(ChangeTrackingDatastore store, Listener listener, int wait) {
+    this.store = store;
+    this.listener = listener;
+    this.wait = wait;
+  }
+
+  ChangeWatcher(ChangeTrackingDatastore store, Listener listener) {
+    this(store, listener, MessageLibrary.MAX_CHANGES_WAIT);
+  }
+
+  /**
+   * Start watching if not already doing so
+   *
+   * @param since the point in the store's sequence to report changes after
+   */
+  synchronized void start(final long since) {
+    if (thread != null) {
+      return;
+    }
+    thread = new Thread("nigori-change-watcher") {
+      @Override
+      public void run() {
+        watch(since);
+      }
+    };
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  synchronized void stop() {
+    thread = null;
+  }
+
+  synchronized boolean isWatching() {
+    return thread != null;
+  }
+
+  /**
+   * @return the point in the store's sequence up to which changes have been passed to the listener,
+   *         so watching can carry on from there, -1 if none have
+   */
+  long getReached() {
+    return reached;
+  }
+
+  private synchronized boolean isCurrent() {
+    return thread == Thread.currentThread();
+  }
+
+  private void watch(long since) {
+    try {
+      while (isCurrent()) {
+        Changes changes = store.waitForChangesSince(since, wait);
+        if (!isCurrent()) {
+          return;
+        }
+        if (changes == null) {
+          throw new IOException("The store's change sequence went backwards");
+        }
+        if (!changes.getIndices().isEmpty()) {
+          listener.changed(changes.getIndices());
+        }
+        since = changes.getSequence();
+        reached = since;
+      }
+    } catch (Exception e) {
+      synchronized (this) {
+        if (thread != Thread.currentThread()) {
+          return;
+        }
+        thread = null;
+      }
+      listener.failed(e);
+    }
+  }
+}
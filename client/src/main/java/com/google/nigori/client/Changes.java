@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import java.util.List;
+
+import com.google.nigori.common.Index;
+
+/**
+ * The indices which changed in a {@link ChangeTrackingDatastore} after some point in its sequence.
+ * 
+ * @author drt24
+ * 
+ */
+public class Changes {
+
+  private final List<Index> indices;
+  private final long sequence;
+
+  /**
+   * @param indices
+   * @param sequence the point in the sequence which these changes bring the caller up to
+   */
+  public Changes(List<Index> indices, long sequence) {
+    if (indices == null) {
+      throw new NullPointerException("Null indices not allowed");
+    }
+    this.indices = indices;
+    this.sequence = sequence;
+  }
+
+  /**
+   * @return the indices which have changed, each at most once
+   */
+  public List<Index> getIndices() {
+    return indices;
+  }
+
+  /**
+   * @return the sequence number to pass to {@link ChangeTrackingDatastore#getChangesSince(long)} to
+   *         get the changes after these
+   */
+  public long getSequence() {
+    return sequence;
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+import com.google.nigori.common.Index;
+import com.google.nigori.common.NigoriCryptographyException;
+import com.google.nigori.common.RevValue;
+import com.google.nigori.common.Revision;
+import com.google.nigori.common.UnauthorisedException;
+
+/**
+ * Lets at most a fixed number of calls into a store be made at once, further calls wait for one of
+ * them to finish. Used so that syncing on many threads doesn't overwhelm a store, for example a
+ * server which only has a few threads of its own.
+ *
+ * @author drt24
+ *
+ */
+class ConcurrencyLimitedDatastore implements NigoriDatastore {
+
+  private final NigoriDatastore store;
+  private final Semaphore permits;
+
+  /**
+   * @param store
+   * @param limit the number of calls which may be made into store at once
+   */
+  ConcurrencyLimitedDatastore(NigoriDatastore store, int limit) {
+    if (limit < 1) {
+      throw new IllegalArgumentException("Limit must be at least one: " + limit);
+    }
+    this.store = store;
+    this.permits = new Semaphore(limit, true);
+  }
+
+  private void acquire() throws InterruptedIOException {
+    try {
+      permits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting to use the store");
+    }
+  }
+
+  @Override
+  public boolean register() throws IOException, NigoriCryptographyException {
+    acquire();
+    try {
+      return store.register();
+    } finally {
+      permits.release();
+    }
+  }
+
+  @Override
+  public boolean unregister() throws IOException, NigoriCryptographyException,
+      UnauthorisedException {
+    acquire();
+    try {
+      return store.unregister();
+    } finally {
+      permits.release();
+    }
+  }
+
+  @Override
+  public boolean authenticate() throws IOException, NigoriCryptographyException {
+    acquire();
+    try {
+      return store.authenticate();
+    } finally {
+      permits.release();
+    }
+  }
+
+  @Override
+  public List<Index> getIndices() throws NigoriCryptographyException, IOException,
+      UnauthorisedException {
+    acquire();
+    try {
+      return store.getIndices();
+    } finally {
+      permits.release();
+    }
+  }
+
+  @Override
+  public byte[] getRevision(Index index, Revision revision) throws IOException,
+      NigoriCryptographyException, UnauthorisedException {
+    acquire();
+    try {
+      return store.getRevision(index, revision);
+    } finally {
+      permits.release();
+    }
+  }
+
+  @Override
+  public boolean put(Index index, Revision revision, byte[] value) throws IOException,
+      NigoriCryptographyException, UnauthorisedException {
+    acquire();
+    try {
+      return store.put(index, revision, value);
+    } finally {
+      permits.release();
+    }
+  }
+
+  @Override
+  public List<RevValue> get(Index index) throws IOException, NigoriCryptographyException,
+      UnauthorisedException {
+    acquire();
+    try {
+      return store.get(index);
+    } finally {
+      permits.release();
+    }
+  }
+
+  @Override
+  public List<Revision> getRevisions(Index index) throws NigoriCryptographyException, IOException,
+      UnauthorisedException {
+    acquire();
+    try {
+      return store.getRevisions(index);
+    } finally {
+      permits.release();
+    }
+  }
+
+  @Override
+  public List<RevValue> getRevisionValues(Index index, List<Revision> revisions)
+      throws NigoriCryptographyException, IOException, UnauthorisedException {
+    acquire();
+    try {
+      return store.getRevisionValues(index, revisions);
+    } finally {
+      permits.release();
+    }
+  }
+
+  @Override
+  public boolean delete(Index index, byte[] token) throws NigoriCryptographyException, IOException,
+      UnauthorisedException {
+    acquire();
+    try {
+      return store.delete(index, token);
+    } finally {
+      permits.release();
+    }
+  }
+}
@@ -24,9 +24,15 @@ import java.util.List;
 import com.google.nigori.common.Index;
 import com.google.nigori.common.MessageLibrary;
 import com.google.nigori.common.NigoriCryptographyException;
+import com.google.nigori.common.NigoriMessages.BatchResponse;
+import com.google.nigori.common.NigoriMessages.Change;
+import com.google.nigori.common.NigoriMessages.DigestNode;
+import com.google.nigori.common.NigoriMessages.GetChangesResponse;
 import com.google.nigori.common.NigoriMessages.GetIndicesResponse;
 import com.google.nigori.common.NigoriMessages.GetResponse;
 import com.google.nigori.common.NigoriMessages.GetRevisionsResponse;
+import com.google.nigori.common.NigoriMessages.Operation;
+import com.google.nigori.common.NigoriMessages.OperationResult;
 import com.google.nigori.common.NigoriMessages.RevisionValue;
 import com.google.nigori.common.NigoriProtocol;
 import com.google.nigori.common.NotFoundException;
@@ -44,12 +50,16 @@ import com.google.protobuf.ByteString;
  *         of the methods in it until we have a "list indexes" method which at least for now we
  *         don't intend to do. putAll from {@link java.util.Map} might be worth implementing
  */
-public class CryptoNigoriDatastore implements NigoriDatastore {
+public class CryptoNigoriDatastore implements NigoriDatastore, ChangeTrackingDatastore,
+    HashTreeDatastore {
 
   private final KeyManager keyManager;
 
   private final NigoriProtocol protocol;
 
+  private final FingerprintCache<RevValue> valueCache = new FingerprintCache<RevValue>();
+  private final FingerprintCache<Revision> revisionCache = new FingerprintCache<Revision>();
+
   public CryptoNigoriDatastore(NigoriProtocol protocol, String username, String password,
       String serverName) throws UnsupportedEncodingException, NigoriCryptographyException {
     this.protocol = protocol;
@@ -70,7 +80,7 @@ public class CryptoNigoriDatastore implements NigoriDatastore {
   public CryptoNigoriDatastore(String server, int port, String serverPrefix, String username,
       String password) throws NigoriCryptographyException, UnsupportedEncodingException {
     String servername = server + ":" + port;
-    protocol = new JsonHTTPProtocol(server, port, serverPrefix);
+    protocol = new ProtobufHTTPProtocol(server, port, serverPrefix);
     keyManager = new RealKeyManager(servername, toBytes(username), toBytes(password));
   }
 
@@ -89,7 +99,7 @@ public class CryptoNigoriDatastore implements NigoriDatastore {
   public CryptoNigoriDatastore(String server, int port, String serverPrefix)
       throws NigoriCryptographyException, UnsupportedEncodingException {
     String servername = server + ":" + port;
-    protocol = new JsonHTTPProtocol(server, port, serverPrefix);
+    protocol = new ProtobufHTTPProtocol(server, port, serverPrefix);
 
     keyManager = new RealKeyManager(servername);
   }
@@ -171,6 +181,31 @@ public class CryptoNigoriDatastore implements NigoriDatastore {
     }
   }
 
+  @Override
+  public List<RevValue> getRevisionValues(Index index, List<Revision> revisions)
+      throws IOException, NigoriCryptographyException, UnauthorisedException {
+    byte[] encIndex = keyManager.encryptDeterministically(index.getBytes());
+    List<RevValue> answer = new ArrayList<RevValue>(revisions.size());
+    for (int start = 0; start < revisions.size(); start += MessageLibrary.MAX_PAGE_SIZE) {
+      List<byte[]> encRevisions = new ArrayList<byte[]>();
+      for (Revision revision : revisions.subList(start, Math.min(revisions.size(), start
+          + MessageLibrary.MAX_PAGE_SIZE))) {
+        encRevisions.add(keyManager.encryptDeterministically(revision.getBytes()));
+      }
+      try {
+        GetResponse getResponse =
+            protocol.get(MessageLibrary.getRevisionValuesRequestAsProtobuf(keyManager
+                .getServerName(), keyManager.signer(), encIndex, encRevisions));
+        if (getResponse != null) {
+          answer.addAll(decrypt(getResponse.getRevisionsList()));
+        }
+      } catch (NotFoundException e) {
+        // None of this chunk exist
+      }
+    }
+    return answer;
+  }
+
   /**
    * Retrieve the value associated with {@code index} on the server.
    * 
@@ -198,13 +233,27 @@ public class CryptoNigoriDatastore implements NigoriDatastore {
       }
     }
 
+    // Only responses for all the revisions have a fingerprint
+    boolean cache = encKey == null && revision == null;
+    byte[] fingerprint = cache ? valueCache.fingerprint(encIndex) : null;
     try {
       GetResponse getResponse =
           protocol.get(MessageLibrary.getRequestAsProtobuf(keyManager.getServerName(),
-              keyManager.signer(), encIndex, encRevision));
+              keyManager.signer(), encIndex, encRevision, fingerprint));
       if (getResponse == null) {
         return null;
       }
+      if (getResponse.getNotModified()) {
+        List<RevValue> cached =
+            valueCache.get(encIndex, getResponse.getFingerprint().toByteArray());
+        if (cached != null) {
+          return cached;
+        }
+        // Forgotten since the request was made so ask again unconditionally
+        getResponse =
+            protocol.get(MessageLibrary.getRequestAsProtobuf(keyManager.getServerName(),
+                keyManager.signer(), encIndex, encRevision));
+      }
       List<RevisionValue> revisions = getResponse.getRevisionsList();
       List<RevValue> answer = new ArrayList<RevValue>(revisions.size());
       for (RevisionValue revisionValue : revisions) {
@@ -218,8 +267,14 @@ public class CryptoNigoriDatastore implements NigoriDatastore {
               .decrypt(encKey, valueciphertext)));
         }
       }
+      if (cache && getResponse.hasFingerprint()) {
+        valueCache.put(encIndex, getResponse.getFingerprint().toByteArray(), answer);
+      }
       return answer;
     } catch (NotFoundException e) {
+      if (cache) {
+        valueCache.remove(encIndex);
+      }
       return null;
     }
   }
@@ -227,18 +282,11 @@ public class CryptoNigoriDatastore implements NigoriDatastore {
   @Override
   public List<Index> getIndices() throws NigoriCryptographyException, IOException,
       UnauthorisedException {
-
     try {
-      GetIndicesResponse getResponse =
-          protocol.getIndices(MessageLibrary.getIndicesRequestAsProtobuf(
-              keyManager.getServerName(), keyManager.signer()));
-      if (getResponse == null) {
-        return null;
-      }
-      List<ByteString> indices = getResponse.getIndicesList();
-      List<Index> answer = new ArrayList<Index>(indices.size());
-      for (ByteString index : indices) {
-        answer.add(new Index(keyManager.decrypt(index.toByteArray())));
+      PagedIterator<Index> indices = indices();
+      List<Index> answer = new ArrayList<Index>();
+      while (indices.hasNext()) {
+        answer.add(indices.next());
       }
       return answer;
     } catch (NotFoundException e) {
@@ -246,30 +294,98 @@ public class CryptoNigoriDatastore implements NigoriDatastore {
     }
   }
 
+  /**
+   * Iterate over the indices in the store, fetching them from the server a page at a time so that
+   * they are not all held in memory at once.
+   *
+   * @return an iterator over all the {@link Index Indices} in the store
+   */
+  public PagedIterator<Index> indices() {
+    return new PagedIterator<Index>() {
+      @Override
+      protected byte[] fetch(byte[] cursor, List<Index> items) throws IOException,
+          NigoriCryptographyException, UnauthorisedException, NotFoundException {
+        GetIndicesResponse getResponse =
+            protocol.getIndices(MessageLibrary.getIndicesRequestAsProtobuf(keyManager
+                .getServerName(), keyManager.signer(), cursor, MessageLibrary.MAX_PAGE_SIZE));
+        if (getResponse == null) {
+          throw new NotFoundException("Cannot find indices");
+        }
+        for (ByteString index : getResponse.getIndicesList()) {
+          items.add(new Index(keyManager.decrypt(index.toByteArray())));
+        }
+        return getResponse.hasCursor() ? getResponse.getCursor().toByteArray() : null;
+      }
+    };
+  }
+
   @Override
   public List<Revision> getRevisions(Index index) throws NigoriCryptographyException,
       UnsupportedEncodingException, IOException, UnauthorisedException {
-    byte[] encIndex = keyManager.encryptDeterministically(index.getBytes());
-
     try {
-      GetRevisionsResponse getResponse =
-          protocol.getRevisions(MessageLibrary.getRevisionsRequestAsProtobuf(
-              keyManager.getServerName(), keyManager.signer(), encIndex));
-      if (getResponse == null) {
-        return null;
-      }
-      List<ByteString> revisions = getResponse.getRevisionsList();
-      List<Revision> answer = new ArrayList<Revision>(revisions.size());
-      for (ByteString revision : revisions) {
-        answer.add(new Revision(keyManager.decrypt(revision.toByteArray())));
+      PagedIterator<Revision> revisions = revisions(index);
+      List<Revision> answer = new ArrayList<Revision>();
+      while (revisions.hasNext()) {
+        answer.add(revisions.next());
       }
       return answer;
-
     } catch (NotFoundException e) {
       return null;
     }
   }
 
+  /**
+   * Iterate over the revisions of an index, fetching them from the server a page at a time.
+   *
+   * @param index
+   * @return an iterator over the revisions of index which throws a {@link NotFoundException} if
+   *         there is no such index
+   * @throws NigoriCryptographyException
+   */
+  public PagedIterator<Revision> revisions(Index index) throws NigoriCryptographyException {
+    final byte[] encIndex = keyManager.encryptDeterministically(index.getBytes());
+    return new PagedIterator<Revision>() {
+      @Override
+      protected byte[] fetch(byte[] cursor, List<Revision> items) throws IOException,
+          NigoriCryptographyException, UnauthorisedException, NotFoundException {
+        // Only the first page can be not modified as a fingerprint is only given for a whole set
+        byte[] fingerprint = cursor == null ? revisionCache.fingerprint(encIndex) : null;
+        GetRevisionsResponse getResponse;
+        try {
+          getResponse =
+              protocol.getRevisions(MessageLibrary.getRevisionsRequestAsProtobuf(keyManager
+                  .getServerName(), keyManager.signer(), encIndex, cursor,
+                  MessageLibrary.MAX_PAGE_SIZE, fingerprint));
+        } catch (NotFoundException e) {
+          revisionCache.remove(encIndex);
+          throw e;
+        }
+        if (getResponse == null) {
+          throw new NotFoundException("Cannot find requested index");
+        }
+        if (getResponse.getNotModified()) {
+          List<Revision> cached =
+              revisionCache.get(encIndex, getResponse.getFingerprint().toByteArray());
+          if (cached != null) {
+            items.addAll(cached);
+            return null;
+          }
+          getResponse =
+              protocol.getRevisions(MessageLibrary.getRevisionsRequestAsProtobuf(keyManager
+                  .getServerName(), keyManager.signer(), encIndex, cursor,
+                  MessageLibrary.MAX_PAGE_SIZE));
+        }
+        for (ByteString revision : getResponse.getRevisionsList()) {
+          items.add(new Revision(keyManager.decrypt(revision.toByteArray())));
+        }
+        if (getResponse.hasFingerprint()) {
+          revisionCache.put(encIndex, getResponse.getFingerprint().toByteArray(), items);
+        }
+        return getResponse.hasCursor() ? getResponse.getCursor().toByteArray() : null;
+      }
+    };
+  }
+
   @Override
   public boolean put(Index index, Revision revision, byte[] value) throws IOException,
       NigoriCryptographyException, UnauthorisedException {
@@ -331,4 +447,233 @@ public class CryptoNigoriDatastore implements NigoriDatastore {
     }
   }
 
-}
\ No newline at end of file
+  @Override
+  public long getSequence() throws IOException, NigoriCryptographyException,
+      UnauthorisedException {
+    // There are never any changes after the largest sequence number, just the current sequence
+    return protocol.getChanges(
+        MessageLibrary.getChangesRequestAsProtobuf(keyManager.getServerName(), keyManager
+            .signer(), Long.MAX_VALUE, 1)).getSequence();
+  }
+
+  @Override
+  public Changes getChangesSince(long since) throws IOException, NigoriCryptographyException,
+      UnauthorisedException {
+    return changesSince(since, 0);
+  }
+
+  @Override
+  public Changes waitForChangesSince(long since, int wait) throws IOException,
+      NigoriCryptographyException, UnauthorisedException {
+    return changesSince(since, wait);
+  }
+
+  /**
+   * @param since
+   * @param wait how long the first request waits for a change, 0 for not at all
+   */
+  private Changes changesSince(long since, int wait) throws IOException,
+      NigoriCryptographyException, UnauthorisedException {
+    List<Index> indices = new ArrayList<Index>();
+    long from = Math.max(since, 0);
+    long sequence = from;
+    GetChangesResponse response;
+    do {
+      if (wait > 0) {
+        response =
+            protocol.getChanges(MessageLibrary.getChangesRequestAsProtobuf(keyManager
+                .getServerName(), keyManager.signer(), from, MessageLibrary.MAX_PAGE_SIZE, wait));
+        // Later pages are only asked for if this one is full so they never need to wait
+        wait = 0;
+      } else {
+        response =
+            protocol.getChanges(MessageLibrary.getChangesRequestAsProtobuf(keyManager
+                .getServerName(), keyManager.signer(), from, MessageLibrary.MAX_PAGE_SIZE));
+      }
+      if (response.getSequence() < since) {
+        return null;// The server's sequence has gone backwards so we can't trust it
+      }
+      sequence = Math.max(sequence, response.getSequence());
+      for (Change change : response.getChangesList()) {
+        indices.add(new Index(keyManager.decrypt(change.getKey().toByteArray())));
+        from = change.getSequence();
+      }
+    } while (response.getChangesCount() >= MessageLibrary.MAX_PAGE_SIZE);
+    return new Changes(indices, Math.max(sequence, from));
+  }
+
+  @Override
+  public List<DigestNode> getDigests(List<ByteString> nodes) throws IOException,
+      NigoriCryptographyException, UnauthorisedException, NotFoundException {
+    return protocol.getDigests(
+        MessageLibrary.getDigestsRequestAsProtobuf(keyManager.getServerName(), keyManager.signer(),
+            nodes)).getNodesList();
+  }
+
+  @Override
+  public Index decryptIndex(ByteString encIndex) throws NigoriCryptographyException {
+    return new Index(keyManager.decrypt(encIndex.toByteArray()));
+  }
+
+  /**
+   * @return a new empty batch of operations to be sent to the server together
+   */
+  public Batch batch() {
+    return new Batch();
+  }
+
+  /**
+   * Operations which are sent to the server in one request with one authentication, which is much
+   * cheaper than sending each on its own when there are many of them. The operations are carried
+   * out by the server in the order they are added.
+   * 
+   * Each method for adding an operation returns its position which is used to look up its result
+   * in the {@link BatchResults}.
+   */
+  public class Batch {
+    private final List<Operation> operations = new ArrayList<Operation>();
+
+    private Batch() {
+    }
+
+    private int add(String type, byte[] encIndex, byte[] encRevision, byte[] encValue) {
+      operations.add(MessageLibrary.operationAsProtobuf(type, encIndex, encRevision, encValue));
+      return operations.size() - 1;
+    }
+
+    /**
+     * @see CryptoNigoriDatastore#get(Index)
+     */
+    public int get(Index index) throws NigoriCryptographyException {
+      return add(MessageLibrary.REQUEST_GET, keyManager.encryptDeterministically(index.getBytes()),
+          null, null);
+    }
+
+    /**
+     * @see CryptoNigoriDatastore#getRevision(Index, Revision)
+     */
+    public int getRevision(Index index, Revision revision) throws NigoriCryptographyException {
+      return add(MessageLibrary.REQUEST_GET, keyManager.encryptDeterministically(index.getBytes()),
+          keyManager.encryptDeterministically(revision.getBytes()), null);
+    }
+
+    /**
+     * @see CryptoNigoriDatastore#getRevisions(Index)
+     */
+    public int getRevisions(Index index) throws NigoriCryptographyException {
+      return add(MessageLibrary.REQUEST_GET_REVISIONS, keyManager.encryptDeterministically(index
+          .getBytes()), null, null);
+    }
+
+    /**
+     * @see CryptoNigoriDatastore#put(Index, Revision, byte[])
+     */
+    public int put(Index index, Revision revision, byte[] value) throws NigoriCryptographyException {
+      if (value == null) {
+        throw new IllegalArgumentException("Null values not yet supported");
+      }
+      return add(MessageLibrary.REQUEST_PUT, keyManager.encryptDeterministically(index.getBytes()),
+          keyManager.encryptDeterministically(revision.getBytes()), keyManager.encrypt(value));
+    }
+
+    /**
+     * @see CryptoNigoriDatastore#delete(Index, byte[])
+     */
+    public int delete(Index index) throws NigoriCryptographyException {
+      return add(MessageLibrary.REQUEST_DELETE, keyManager.encryptDeterministically(index
+          .getBytes()), null, null);
+    }
+
+    public int size() {
+      return operations.size();
+    }
+
+    /**
+     * Send all the operations to the server
+     * 
+     * @return the results of the operations
+     */
+    public BatchResults execute() throws IOException, NigoriCryptographyException,
+        UnauthorisedException {
+      BatchResponse response =
+          protocol.batch(MessageLibrary.batchRequestAsProtobuf(keyManager.getServerName(),
+              keyManager.signer(), operations));
+      if (response.getResultsCount() != operations.size()) {
+        throw new IOException("Server sent " + response.getResultsCount() + " results for "
+            + operations.size() + " operations");
+      }
+      return new BatchResults(response.getResultsList());
+    }
+  }
+
+  /**
+   * The results of a {@link Batch}, looked up by the position returned when the operation was
+   * added.
+   */
+  public class BatchResults {
+    private final List<OperationResult> results;
+
+    private BatchResults(List<OperationResult> results) {
+      this.results = results;
+    }
+
+    /**
+     * @return whether the operation succeeded, for reads and deletes false means the index or
+     *         revision was not found.
+     */
+    public boolean succeeded(int operation) {
+      return results.get(operation).getSuccess();
+    }
+
+    /**
+     * @return the result of a {@link Batch#get(Index)}, null if the index was not found.
+     *         WARNING: there is no assurance that the value for the revision is a pair once
+     *         specified by a valid client - the server can pair any value with any revision.
+     */
+    public List<RevValue> getRecord(int operation) throws NigoriCryptographyException {
+      OperationResult result = results.get(operation);
+      if (!result.getSuccess()) {
+        return null;
+      }
+      return decrypt(result.getGet().getRevisionsList());
+    }
+
+    /**
+     * @return the value from a {@link Batch#getRevision(Index, Revision)}, null if it was not
+     *         found
+     */
+    public byte[] getRevision(int operation) throws NigoriCryptographyException {
+      List<RevValue> rev = getRecord(operation);
+      if (rev != null && rev.size() == 1) {
+        return rev.get(0).getValue();
+      } else {
+        return null;
+      }
+    }
+
+    /**
+     * @return the result of a {@link Batch#getRevisions(Index)}, null if the index was not found
+     */
+    public List<Revision> getRevisions(int operation) throws NigoriCryptographyException {
+      OperationResult result = results.get(operation);
+      if (!result.getSuccess()) {
+        return null;
+      }
+      List<ByteString> revisions = result.getRevisions().getRevisionsList();
+      List<Revision> answer = new ArrayList<Revision>(revisions.size());
+      for (ByteString revision : revisions) {
+        answer.add(new Revision(keyManager.decrypt(revision.toByteArray())));
+      }
+      return answer;
+    }
+  }
+
+  private List<RevValue> decrypt(List<RevisionValue> revisions) throws NigoriCryptographyException {
+    List<RevValue> answer = new ArrayList<RevValue>(revisions.size());
+    for (RevisionValue revisionValue : revisions) {
+      answer.add(new RevValue(keyManager.decrypt(revisionValue.getRevision().toByteArray()),
+          keyManager.decrypt(revisionValue.getValue().toByteArray())));
+    }
+    return answer;
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * Remembers the last response for the most recently used keys together with the fingerprint the
+ * server gave for it, so that the fingerprint can be sent with the next request and the remembered
+ * response used if the server says it has not been modified.
+ * 
+ * @author drt24
+ * 
+ */
+class FingerprintCache<T> {
+
+  /**
+   * Default number of keys to remember responses for
+   */
+  static final int DEFAULT_SIZE = 100;
+
+  private static class Entry<T> {
+    private final byte[] fingerprint;
+    private final List<T> items;
+
+    Entry(byte[] fingerprint, List<T> items) {
+      this.fingerprint = fingerprint;
+      this.items = items;
+    }
+  }
+
+  private final Map<ByteString, Entry<T>> entries;
+
+  FingerprintCache() {
+    this(DEFAULT_SIZE);
+  }
+
+  /**
+   * @param maxKeys the most keys to remember, the least recently used are forgotten
+   */
+  FingerprintCache(final int maxKeys) {
+    entries = new LinkedHashMap<ByteString, Entry<T>>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<ByteString, Entry<T>> eldest) {
+        return size() > maxKeys;
+      }
+    };
+  }
+
+  /**
+   * @param key
+   * @return the fingerprint of the remembered response for key or null if there isn't one
+   */
+  synchronized byte[] fingerprint(byte[] key) {
+    Entry<T> entry = entries.get(ByteString.copyFrom(key));
+    return entry == null ? null : entry.fingerprint;
+  }
+
+  /**
+   * @param key
+   * @param fingerprint
+   * @return a copy of the remembered response for key if it has fingerprint, otherwise null
+   */
+  synchronized List<T> get(byte[] key, byte[] fingerprint) {
+    Entry<T> entry = entries.get(ByteString.copyFrom(key));
+    if (entry == null || !Arrays.equals(entry.fingerprint, fingerprint)) {
+      return null;
+    }
+    return new ArrayList<T>(entry.items);
+  }
+
+  synchronized void put(byte[] key, byte[] fingerprint, List<T> items) {
+    entries.put(ByteString.copyFrom(key), new Entry<T>(fingerprint, new ArrayList<T>(items)));
+  }
+
+  synchronized void remove(byte[] key) {
+    entries.remove(ByteString.copyFrom(key));
+  }
+}
@@ -105,14 +105,14 @@ public class HashMigoriDatastore implements MigoriDatastore {
       return null;
     }
     Collection<Node<Revision>> heads = history.getHeads();
-    List<RevValue> answer = new ArrayList<RevValue>();
+    List<Revision> revisions = new ArrayList<Revision>(heads.size());
     for (Node<Revision> rev : heads) {
-      Revision revision = rev.getValue();
-      byte[] value = getRevision(index, revision);
-      // TODO(drt24) value might be null
-      if (value != null) {
-        answer.add(new RevValue(revision, value));
-      }
+      revisions.add(rev.getValue());
+    }
+    // All the heads in one request rather than one each
+    List<RevValue> answer = store.getRevisionValues(index, revisions);
+    for (RevValue head : answer) {
+      validateHash(head.getValue(), head.getRevision());
     }
     return answer;
   }
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.google.nigori.common.Index;
+import com.google.nigori.common.NigoriCryptographyException;
+import com.google.nigori.common.NigoriMessages.DigestNode;
+import com.google.nigori.common.NotFoundException;
+import com.google.nigori.common.UnauthorisedException;
+import com.google.protobuf.ByteString;
+
+/**
+ * A datastore whose server keeps a hash tree over the encrypted indices and their revisions, so that
+ * two stores using the same keys can find where they differ by comparing digests rather than
+ * listing everything.
+ * 
+ * @author drt24
+ * 
+ */
+public interface HashTreeDatastore {
+
+  /**
+   * @return the public key of the user, two stores only have comparable trees if these are the same
+   * @throws NigoriCryptographyException
+   */
+  byte[] getPublicKey() throws NigoriCryptographyException;
+
+  /**
+   * @param nodes the paths of the nodes, each byte being the number of the child to take at that
+   *          level, the empty path for the root
+   * @return the nodes in the same order as the paths
+   * @throws NotFoundException if one of the paths is not in the tree
+   * @throws IOException
+   * @throws NigoriCryptographyException
+   * @throws UnauthorisedException
+   */
+  List<DigestNode> getDigests(List<ByteString> nodes) throws IOException,
+      NigoriCryptographyException, UnauthorisedException, NotFoundException;
+
+  /**
+   * @param encIndex an encrypted index from the entry of a leaf
+   * @return the index
+   * @throws NigoriCryptographyException
+   */
+  Index decryptIndex(ByteString encIndex) throws NigoriCryptographyException;
+}
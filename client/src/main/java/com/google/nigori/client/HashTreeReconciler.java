@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.nigori.common.Index;
+import com.google.nigori.common.MessageLibrary;
+import com.google.nigori.common.NigoriCryptographyException;
+import com.google.nigori.common.NigoriMessages.DigestEntry;
+import com.google.nigori.common.NigoriMessages.DigestNode;
+import com.google.nigori.common.NotFoundException;
+import com.google.nigori.common.UnauthorisedException;
+import com.google.protobuf.ByteString;
+
+/**
+ * Finds the indices which differ between two {@link HashTreeDatastore}s by walking down their hash
+ * trees together a level at a time, only descending into the subtrees whose digests differ.
+ * 
+ * @author drt24
+ * 
+ */
+class HashTreeReconciler {
+
+  private HashTreeReconciler() {
+  }
+
+  /**
+   * @param first
+   * @param second
+   * @return the indices which differ between the stores, or null if they can't be compared this way,
+   *         because they aren't both {@link HashTreeDatastore}s or they have different keys, and so
+   *         all the indices need to be looked at
+   */
+  static Set<Index> differences(Object first, Object second) throws IOException,
+      NigoriCryptographyException, UnauthorisedException {
+    if (!(first instanceof HashTreeDatastore && second instanceof HashTreeDatastore)) {
+      return null;
+    }
+    HashTreeDatastore firstTree = (HashTreeDatastore) first;
+    HashTreeDatastore secondTree = (HashTreeDatastore) second;
+    // The encrypted indices are only the same if the keys are
+    if (!Arrays.equals(firstTree.getPublicKey(), secondTree.getPublicKey())) {
+      return null;
+    }
+    try {
+      Set<Index> differences = new LinkedHashSet<Index>();
+      List<ByteString> frontier = new ArrayList<ByteString>();
+      frontier.add(ByteString.EMPTY);
+      while (!frontier.isEmpty()) {
+        List<ByteString> next = new ArrayList<ByteString>();
+        for (int start = 0; start < frontier.size(); start += MessageLibrary.MAX_PAGE_SIZE) {
+          int end = Math.min(frontier.size(), start + MessageLibrary.MAX_PAGE_SIZE);
+          List<ByteString> chunk = frontier.subList(start, end);
+          List<DigestNode> firstNodes = firstTree.getDigests(chunk);
+          List<DigestNode> secondNodes = secondTree.getDigests(chunk);
+          for (int i = 0; i < chunk.size(); ++i) {
+            compare(firstTree, firstNodes.get(i), secondNodes.get(i), next, differences);
+          }
+        }
+        frontier = next;
+      }
+      return differences;
+    } catch (NotFoundException e) {
+      return null;// The trees don't have the same shape so can't be compared
+    }
+  }
+
+  private static void compare(HashTreeDatastore store, DigestNode first, DigestNode second,
+      List<ByteString> next, Set<Index> differences) throws NotFoundException,
+      NigoriCryptographyException {
+    if (first.getDigest().equals(second.getDigest())) {
+      return;
+    }
+    if (first.getChildrenCount() > 0 || second.getChildrenCount() > 0) {
+      if (first.getChildrenCount() != second.getChildrenCount()) {
+        throw new NotFoundException("Nodes have different numbers of children");
+      }
+      for (int child = 0; child < first.getChildrenCount(); ++child) {
+        if (!first.getChildren(child).equals(second.getChildren(child))) {
+          next.add(first.getNode().concat(ByteString.copyFrom(new byte[] {(byte) child})));
+        }
+      }
+    } else {
+      Map<ByteString, ByteString> secondEntries = new HashMap<ByteString, ByteString>();
+      for (DigestEntry entry : second.getEntriesList()) {
+        secondEntries.put(entry.getKey(), entry.getDigest());
+      }
+      for (DigestEntry entry : first.getEntriesList()) {
+        ByteString other = secondEntries.remove(entry.getKey());
+        if (!entry.getDigest().equals(other)) {
+          differences.add(store.decryptIndex(entry.getKey()));
+        }
+      }
+      for (ByteString key : secondEntries.keySet()) {
+        differences.add(store.decryptIndex(key));
+      }
+    }
+  }
+}
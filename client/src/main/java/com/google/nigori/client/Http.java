@@ -13,69 +13,153 @@
  */
 package com.google.nigori.client;
 
-import java.io.BufferedOutputStream;
-import java.io.DataOutputStream;
-import java.io.FileNotFoundException;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import com.google.nigori.common.ContentEncoding;
 
 /**
- * Encapsulates communication with server via http
+ * Encapsulates communication with server via http, connections are kept open between requests in
+ * a {@link HttpConnectionPool} and several requests can be made at once from different threads.
+ * 
+ * Responses are compressed if the server is willing to and requests larger than
+ * {@link ContentEncoding#DEFAULT_THRESHOLD} are compressed once the server has said it accepts
+ * compressed requests.
+ * 
+ * Redirects are followed, up to {@link #MAX_REDIRECTS} of them, by sending the same POST to the new
+ * location: the protocol only has POSTs so changing to a GET, as browsers do for some redirects,
+ * could never get a useful response. Redirects from https to http are not followed.
  * 
  * @author drt24
  * 
  */
 public class Http {
   public static final int UNAUTHORIZED = HttpURLConnection.HTTP_UNAUTHORIZED;
+  public static final int MAX_REDIRECTS = 5;
+  private static final int TEMPORARY_REDIRECT = 307;
+  private static final int PERMANENT_REDIRECT = 308;
 
   private final String serverUrl;
   private final String supportedMimetypes;
+  private final HttpConnectionPool pool;
+  /**
+   * How to compress requests, null until the server says it can read compressed requests
+   */
+  private volatile String requestEncoding = null;
 
   public Http(String serverUrl, String supportedMimetypes) {
+    this(serverUrl, supportedMimetypes, HttpConnectionPool.getDefault());
+  }
+
+  public Http(String serverUrl, String supportedMimetypes, HttpConnectionPool pool) {
     this.serverUrl = serverUrl;
     this.supportedMimetypes = supportedMimetypes;
+    this.pool = pool;
   }
 
-  public HttpResponse post(String requestType, byte[] data, String mimeType) throws IOException {
+  public HttpConnectionPool getPool() {
+    return pool;
+  }
 
+  /**
+   * 
+   * @param requestType
+   * @param data
+   * @param mimeType
+   * @return the response, which must be read to the end or closed so that its connection can be
+   *         used again
+   * @throws IOException if the request could not be made or did not complete within the pool's
+   *           timeouts
+   */
+  public HttpResponse post(String requestType, byte[] data, String mimeType) throws IOException {
     URL url = new URL(serverUrl + requestType);
-    HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-
+    String encoding = requestEncoding;
+    byte[] body = data;
+    if (encoding != null && data.length >= ContentEncoding.DEFAULT_THRESHOLD) {
+      body = ContentEncoding.encode(encoding, data);
+    } else {
+      encoding = null;
+    }
+    long start = System.nanoTime();
+    long deadline = start + TimeUnit.MILLISECONDS.toNanos(pool.getRequestTimeout());
+    boolean failed = true;
+    int redirects = 0;
     try {
-      HttpURLConnection.setFollowRedirects(true);
-      conn.setDoInput(true);
-      conn.setDoOutput(true);
-      conn.setRequestMethod("POST");
-      conn.setRequestProperty("Content-Length", "" + data.length);
-      conn.setRequestProperty("Content-Type", mimeType);
-      conn.setRequestProperty("Accept", supportedMimetypes);
-      BufferedOutputStream out =
-          new BufferedOutputStream(new DataOutputStream(conn.getOutputStream()));
-      try {
-        out.write(data);
-        out.flush();
-
-        conn.connect();
-
-        final int response = conn.getResponseCode();
-        final String message = conn.getResponseMessage();
-        final InputStream input = conn.getInputStream();
-        return new HttpResponse(response, message, input);
-      } finally {
-        out.close();
+      while (true) {
+        HttpConnection connection = pool.acquire(url, deadline);
+        boolean reused = connection.isReused();
+        try {
+          HttpResponse response =
+              connection.post(url.getFile(), body, mimeType, supportedMimetypes, encoding,
+                  deadline);
+          if (response.getResponseCode() == HttpURLConnection.HTTP_UNSUPPORTED_TYPE
+              && encoding != null) {
+            // something between us and the server couldn't handle the compressed request
+            response.close();
+            requestEncoding = null;
+            encoding = null;
+            body = data;
+            continue;
+          }
+          URL redirect = redirect(url, response);
+          if (redirect != null && redirects < MAX_REDIRECTS) {
+            response.close();
+            url = redirect;
+            ++redirects;
+            continue;
+          }
+          requestEncoding = ContentEncoding.negotiate(response.getAcceptEncoding());
+          failed = false;
+          return response;
+        } catch (EOFException e) {
+          pool.close(connection);
+          // The server may have closed an idle connection just as we sent the request on it, in
+          // which case it never saw the request and we can send it again on a new connection.
+          if (!reused) {
+            throw e;
+          }
+        } catch (IOException e) {
+          pool.close(connection);
+          throw e;
+        }
       }
-    } catch (FileNotFoundException fnfe) { // Occurs in the case of HTTP 404 response code
-      final int response = conn.getResponseCode();
-      final String message = conn.getResponseMessage();
-      final InputStream input = conn.getErrorStream();
-      return new HttpResponse(response, message, input);
-    } catch (IOException ioe) { // Occurs in the case of HTTP 401 and others
-      final int response = conn.getResponseCode();
-      final String message = conn.getResponseMessage();
-      final InputStream input = conn.getErrorStream();
-      return new HttpResponse(response, message, input);
+    } finally {
+      pool.request(start, failed);
+    }
+  }
+
+  /**
+   * @return where the response redirects the request to or null if it isn't a redirect which can
+   *         be followed
+   */
+  private static URL redirect(URL url, HttpResponse response) {
+    switch (response.getResponseCode()) {
+      case HttpURLConnection.HTTP_MOVED_PERM:
+      case HttpURLConnection.HTTP_MOVED_TEMP:
+      case HttpURLConnection.HTTP_SEE_OTHER:
+      case TEMPORARY_REDIRECT:
+      case PERMANENT_REDIRECT:
+        break;
+      default:
+        return null;
+    }
+    if (response.getLocation() == null) {
+      return null;
+    }
+    URL location;
+    try {
+      location = new URL(url, response.getLocation());
+    } catch (MalformedURLException e) {
+      return null;
+    }
+    if ("https".equals(location.getProtocol())
+        || ("http".equals(location.getProtocol()) && "http".equals(url.getProtocol()))) {
+      return location;
     }
+    return null;
   }
 }
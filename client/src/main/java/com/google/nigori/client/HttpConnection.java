@@ -0,0 +1,566 @@
+/*
+ * Copyright (C) 2012 Daniel Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import com.google.nigori.common.ContentEncoding;
+import com.google.nigori.common.MessageLibrary;
+
+/**
+ * A single persistent HTTP/1.1 connection to a server which is used for one request at a time and
+ * given back to its {@link HttpConnectionPool} once the response has been read.
+ *
+ * @author drt24
+ *
+ */
+class HttpConnection {
+
+  private static final int STALE_CHECK_TIMEOUT = 1;
+  private static final int MAX_LINE_LENGTH = 8 * 1024;
+
+  private final String key;
+  private final String host;
+  /**
+   * Put in front of the path in requests, the scheme and host when talking to an HTTP proxy
+   */
+  private final String origin;
+  private final HttpConnectionPool pool;
+  private final Socket socket;
+  private final InputStream in;
+  private final OutputStream out;
+  private long lastUsed;
+  private boolean reused = false;
+
+  private HttpConnection(String key, String host, String origin, HttpConnectionPool pool,
+      Socket socket) throws IOException {
+    this.key = key;
+    this.host = host;
+    this.origin = origin;
+    this.pool = pool;
+    this.socket = socket;
+    this.in = new BufferedInputStream(socket.getInputStream());
+    this.out = new BufferedOutputStream(socket.getOutputStream());
+    this.lastUsed = System.currentTimeMillis();
+  }
+
+  /**
+   * Connect to the server of url through the proxies the default {@link ProxySelector} chooses for
+   * it, trying each in turn until one works, as {@link java.net.HttpURLConnection} does. This
+   * honours the http.proxyHost, https.proxyHost, socksProxyHost and http.nonProxyHosts system
+   * properties.
+   */
+  static HttpConnection open(String key, URL url, HttpConnectionPool pool, long deadline)
+      throws IOException {
+    if (!"http".equals(url.getProtocol()) && !"https".equals(url.getProtocol())) {
+      throw new IOException("Unsupported protocol: " + url.getProtocol());
+    }
+    ProxySelector selector = ProxySelector.getDefault();
+    URI uri;
+    try {
+      uri = url.toURI();
+    } catch (URISyntaxException e) {
+      throw new IOException("Invalid URL: " + url, e);
+    }
+    List<Proxy> proxies = selector == null ? null : selector.select(uri);
+    if (proxies == null || proxies.isEmpty()) {
+      proxies = Collections.singletonList(Proxy.NO_PROXY);
+    }
+    IOException failure = null;
+    for (Proxy proxy : proxies) {
+      try {
+        return open(key, url, proxy, pool, deadline);
+      } catch (IOException e) {
+        if (selector != null && proxy.type() != Proxy.Type.DIRECT) {
+          selector.connectFailed(uri, proxy.address(), e);
+        }
+        failure = e;
+      }
+    }
+    throw failure;
+  }
+
+  private static HttpConnection open(String key, URL url, Proxy proxy, HttpConnectionPool pool,
+      long deadline) throws IOException {
+    int port = HttpConnectionPool.port(url);
+    boolean https = "https".equals(url.getProtocol());
+    String host = port == url.getDefaultPort() ? url.getHost() : url.getHost() + ":" + port;
+    Socket socket;
+    InetSocketAddress address;
+    switch (proxy.type()) {
+      case DIRECT:
+        socket = new Socket();
+        address = new InetSocketAddress(url.getHost(), port);
+        break;
+      case SOCKS:
+        socket = new Socket(proxy);
+        // let the proxy look up the server
+        address = InetSocketAddress.createUnresolved(url.getHost(), port);
+        break;
+      case HTTP:
+        socket = new Socket();
+        address = (InetSocketAddress) proxy.address();
+        if (address.isUnresolved()) {
+          address = new InetSocketAddress(address.getHostString(), address.getPort());
+        }
+        break;
+      default:
+        throw new IOException("Unsupported proxy: " + proxy);
+    }
+    try {
+      socket.setTcpNoDelay(true);
+      socket.setKeepAlive(true);
+      socket.connect(address, timeout(pool.getConnectTimeout(), deadline));
+      String origin = "";
+      if (proxy.type() == Proxy.Type.HTTP) {
+        if (https) {
+          tunnel(socket, url.getHost() + ":" + port, timeout(pool.getConnectTimeout(), deadline));
+        } else {
+          // the proxy needs to be told which server the request is for
+          origin = "http://" + host;
+        }
+      }
+      if (https) {
+        SSLSocket ssl =
+            (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault()).createSocket(socket,
+                url.getHost(), port, true);
+        SSLParameters parameters = ssl.getSSLParameters();
+        parameters.setEndpointIdentificationAlgorithm("HTTPS");
+        ssl.setSSLParameters(parameters);
+        ssl.setSoTimeout(timeout(pool.getConnectTimeout(), deadline));
+        ssl.startHandshake();
+        socket = ssl;
+      }
+      return new HttpConnection(key, host, origin, pool, socket);
+    } catch (IOException e) {
+      socket.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Ask an HTTP proxy to open a tunnel to the server, through which TLS is then set up as if
+   * connected directly.
+   *
+   * @param socket connected to the proxy
+   * @param authority the host and port of the server
+   * @param timeout the longest to wait for the proxy in milliseconds
+   * @throws IOException if the proxy did not open the tunnel
+   */
+  private static void tunnel(Socket socket, String authority, int timeout) throws IOException {
+    socket.setSoTimeout(timeout);
+    OutputStream out = socket.getOutputStream();
+    out.write(("CONNECT " + authority + " HTTP/1.1\r\nHost: " + authority + "\r\n\r\n")
+        .getBytes(MessageLibrary.CHARSET));
+    out.flush();
+    // Read a byte at a time so that nothing after the proxy's response is taken from TLS
+    InputStream in = socket.getInputStream();
+    ByteArrayOutputStream response = new ByteArrayOutputStream();
+    int matched = 0; // of the \r\n\r\n which ends the response
+    while (matched < 4) {
+      int read = in.read();
+      if (read == -1) {
+        throw new EOFException("Proxy closed the connection");
+      }
+      if (response.size() >= MAX_LINE_LENGTH) {
+        throw new IOException("Proxy response too long");
+      }
+      response.write(read);
+      if (read == (matched % 2 == 0 ? '\r' : '\n')) {
+        ++matched;
+      } else {
+        matched = read == '\r' ? 1 : 0;
+      }
+    }
+    String status = response.toString(MessageLibrary.CHARSET).split("\r\n", 2)[0];
+    String[] parts = status.split(" ", 3);
+    if (parts.length < 2 || !parts[0].startsWith("HTTP/") || !"200".equals(parts[1])) {
+      throw new IOException("Proxy did not connect to " + authority + ": " + status);
+    }
+  }
+
+  /**
+   * @return the smaller of timeout and the time left until deadline in milliseconds
+   * @throws SocketTimeoutException if the deadline has passed
+   */
+  private static int timeout(int timeout, long deadline) throws SocketTimeoutException {
+    long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+    if (remaining <= 0) {
+      throw new SocketTimeoutException("Request timed out");
+    }
+    return (int) Math.min(timeout, remaining);
+  }
+
+  String getKey() {
+    return key;
+  }
+
+  long getLastUsed() {
+    return lastUsed;
+  }
+
+  void setLastUsed(long lastUsed) {
+    this.lastUsed = lastUsed;
+  }
+
+  /**
+   * @return whether a request has already been made on this connection
+   */
+  boolean isReused() {
+    return reused;
+  }
+
+  /**
+   * @return true if the server has closed the connection or sent something unasked for while it was
+   *         idle, in which case it can't be used
+   */
+  boolean isStale() {
+    if (socket.isClosed() || socket.isInputShutdown() || socket.isOutputShutdown()) {
+      return true;
+    }
+    try {
+      socket.setSoTimeout(STALE_CHECK_TIMEOUT);
+      // either the server closed the connection or sent something we didn't ask for
+      in.read();
+      return true;
+    } catch (SocketTimeoutException e) {
+      // nothing to read, which is what we expect of an idle connection
+      return false;
+    } catch (IOException e) {
+      return true;
+    }
+  }
+
+  /**
+   * Send a POST request and read the response headers
+   *
+   * @param path
+   * @param data
+   * @param mimeType
+   * @param accept
+   * @param contentEncoding how data has been compressed, null if it hasn't
+   * @param deadline the {@link System#nanoTime()} by which the request must have finished
+   * @return the response with its body decompressed, the connection is given back to the pool or
+   *         closed once its body has been read or closed
+   * @throws EOFException if the connection was closed before any of the response was received
+   * @throws IOException
+   */
+  HttpResponse post(String path, byte[] data, String mimeType, String accept,
+      String contentEncoding, long deadline) throws IOException {
+    socket.setSoTimeout(timeout(pool.getReadTimeout(), deadline));
+    reused = true;
+    StringBuilder headers = new StringBuilder();
+    headers.append("POST ").append(origin).append(path).append(" HTTP/1.1\r\n");
+    headers.append("Host: ").append(host).append("\r\n");
+    headers.append("Content-Length: ").append(data.length).append("\r\n");
+    headers.append("Content-Type: ").append(mimeType).append("\r\n");
+    headers.append("Accept: ").append(accept).append("\r\n");
+    headers.append("Accept-Encoding: ").append(ContentEncoding.ACCEPTED).append("\r\n");
+    if (contentEncoding != null) {
+      headers.append("Content-Encoding: ").append(contentEncoding).append("\r\n");
+    }
+    headers.append("Connection: keep-alive\r\n");
+    headers.append("\r\n");
+    out.write(headers.toString().getBytes(MessageLibrary.CHARSET));
+    out.write(data);
+    out.flush();
+
+    String statusLine = readLine(deadline);
+    if (statusLine == null) {
+      throw new EOFException("Connection closed before response");
+    }
+    String[] status = statusLine.split(" ", 3);
+    if (status.length < 2 || !status[0].startsWith("HTTP/")) {
+      throw new IOException("Invalid status line: " + statusLine);
+    }
+    int code;
+    try {
+      code = Integer.parseInt(status[1]);
+    } catch (NumberFormatException e) {
+      throw new IOException("Invalid status line: " + statusLine);
+    }
+    String message = status.length > 2 ? status[2] : "";
+
+    boolean keepAlive = "HTTP/1.1".equals(status[0]);
+    long contentLength = -1;
+    boolean chunked = false;
+    String responseEncoding = null;
+    String acceptEncoding = null;
+    String location = null;
+    String line;
+    while ((line = readLine(deadline)) != null && line.length() > 0) {
+      int colon = line.indexOf(':');
+      if (colon <= 0) {
+        continue;
+      }
+      String name = line.substring(0, colon).trim();
+      String value = line.substring(colon + 1).trim();
+      if ("Content-Length".equalsIgnoreCase(name)) {
+        try {
+          contentLength = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+          throw new IOException("Invalid Content-Length: " + value);
+        }
+      } else if ("Transfer-Encoding".equalsIgnoreCase(name)) {
+        chunked = value.toLowerCase().contains("chunked");
+      } else if ("Connection".equalsIgnoreCase(name)) {
+        if ("close".equalsIgnoreCase(value)) {
+          keepAlive = false;
+        } else if ("keep-alive".equalsIgnoreCase(value)) {
+          keepAlive = true;
+        }
+      } else if (ContentEncoding.HEADER_CONTENT_ENCODING.equalsIgnoreCase(name)) {
+        responseEncoding = value;
+      } else if (ContentEncoding.HEADER_ACCEPT_ENCODING.equalsIgnoreCase(name)) {
+        acceptEncoding = value;
+      } else if ("Location".equalsIgnoreCase(name)) {
+        location = value;
+      }
+    }
+    if (line == null) {
+      throw new EOFException("Connection closed in response headers");
+    }
+    if (code == 204 || code == 304) {
+      // these never have a body
+      chunked = false;
+      contentLength = 0;
+    } else if (!chunked && contentLength < 0) {
+      // body is delimited by the server closing the connection
+      keepAlive = false;
+    }
+    InputStream body = new Body(chunked, contentLength, keepAlive, deadline);
+    if (responseEncoding != null && contentLength != 0) {
+      try {
+        body = ContentEncoding.decode(responseEncoding, body);
+      } catch (IOException e) {
+        body.close();
+        // not an EOFException as the server has handled the request, so it must not be sent again
+        throw new IOException("Could not decode response: " + e.getMessage(), e);
+      }
+    }
+    return new HttpResponse(code, message, body, acceptEncoding, location);
+  }
+
+  private String readLine(long deadline) throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    int read;
+    while ((read = readByte(deadline)) != -1) {
+      if (read == '\n') {
+        byte[] bytes = line.toByteArray();
+        int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1
+            : bytes.length;
+        return new String(bytes, 0, length, MessageLibrary.CHARSET);
+      }
+      if (line.size() >= MAX_LINE_LENGTH) {
+        throw new IOException("Response line too long");
+      }
+      line.write(read);
+    }
+    if (line.size() > 0) {
+      throw new EOFException("Connection closed in middle of line");
+    }
+    return null;
+  }
+
+  private int readByte(long deadline) throws IOException {
+    socket.setSoTimeout(timeout(pool.getReadTimeout(), deadline));
+    return in.read();
+  }
+
+  void close() {
+    try {
+      socket.close();
+    } catch (IOException e) {
+      // we don't care as we are done with it
+    }
+  }
+
+  /**
+   * The body of a response, which hands on the connection once it has been read or closed
+   */
+  private class Body extends InputStream {
+    private final boolean chunked;
+    private final boolean keepAlive;
+    private final long deadline;
+    /**
+     * Bytes left in the body or in the current chunk, -1 when reading until the connection closes
+     */
+    private long remaining;
+    /**
+     * Whether the connection has been handed on, after which this must not touch it
+     */
+    private boolean done = false;
+    private boolean closed = false;
+
+    Body(boolean chunked, long contentLength, boolean keepAlive, long deadline) throws IOException {
+      this.chunked = chunked;
+      this.keepAlive = keepAlive;
+      this.deadline = deadline;
+      if (chunked) {
+        remaining = 0;
+        nextChunk();
+      } else {
+        remaining = contentLength;
+        if (remaining == 0) {
+          finish(keepAlive);
+        }
+      }
+    }
+
+    private void nextChunk() throws IOException {
+      String line = readLine(deadline);
+      if (line == null) {
+        throw new EOFException("Connection closed in chunked body");
+      }
+      int extension = line.indexOf(';');
+      String size = (extension == -1 ? line : line.substring(0, extension)).trim();
+      try {
+        remaining = Long.parseLong(size, 16);
+      } catch (NumberFormatException e) {
+        throw new IOException("Invalid chunk size: " + line);
+      }
+      if (remaining == 0) {
+        // skip any trailers
+        while ((line = readLine(deadline)) != null && line.length() > 0) {
+        }
+        finish(keepAlive);
+      }
+    }
+
+    private void endChunk() throws IOException {
+      if (readLine(deadline) == null) {
+        throw new EOFException("Connection closed in chunked body");
+      }
+      nextChunk();
+    }
+
+    /**
+     * @param reuse whether the connection can be given back to the pool rather than closed
+     */
+    private void finish(boolean reuse) {
+      if (done) {
+        return;
+      }
+      done = true;
+      if (reuse) {
+        pool.release(HttpConnection.this);
+      } else {
+        pool.close(HttpConnection.this);
+      }
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] one = new byte[1];
+      int read = read(one, 0, 1);
+      return read == -1 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (closed) {
+        throw new IOException("Stream closed");
+      }
+      return readBody(b, off, len);
+    }
+
+    private int readBody(byte[] b, int off, int len) throws IOException {
+      if (done) {
+        return -1;
+      }
+      if (len == 0) {
+        return 0;
+      }
+      try {
+        socket.setSoTimeout(timeout(pool.getReadTimeout(), deadline));
+        if (remaining < 0) {
+          int read = in.read(b, off, len);
+          if (read == -1) {
+            finish(false);
+          }
+          return read;
+        }
+        int read = in.read(b, off, (int) Math.min(len, remaining));
+        if (read == -1) {
+          throw new EOFException("Connection closed in response body");
+        }
+        remaining -= read;
+        if (remaining == 0) {
+          if (chunked) {
+            endChunk();
+          } else {
+            finish(keepAlive);
+          }
+        }
+        return read;
+      } catch (IOException e) {
+        finish(false);
+        throw e;
+      }
+    }
+
+    @Override
+    public int available() throws IOException {
+      if (closed || done) {
+        return 0;
+      }
+      int available = in.available();
+      return remaining < 0 ? available : (int) Math.min(available, remaining);
+    }
+
+    /**
+     * Read whatever is left of the body so that the connection can be used again, or close the
+     * connection if that isn't possible
+     */
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      if (!keepAlive) {
+        finish(false);
+        return;
+      }
+      try {
+        byte[] skip = new byte[1024];
+        while (readBody(skip, 0, skip.length) != -1) {
+        }
+      } catch (IOException e) {
+        // the connection has been closed and we are only closing the body
+      }
+    }
+  }
+}
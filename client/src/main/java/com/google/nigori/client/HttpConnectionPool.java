@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2012 Daniel Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps persistent (keep-alive) connections to servers open between requests so that requests
+ * don't each pay for setting up a TCP connection and TLS session. Any number of requests can be in
+ * flight at once, each on its own connection; when a request has finished its connection is kept
+ * for the next request to the same server, up to {@link #getMaxIdlePerServer()} idle connections
+ * per server.
+ *
+ * Requests are not pipelined on a connection as many servers and proxies don't handle that well,
+ * instead concurrent requests use separate connections.
+ *
+ * @author drt24
+ *
+ */
+public class HttpConnectionPool {
+
+  public static final int DEFAULT_CONNECT_TIMEOUT = 10 * 1000;
+  public static final int DEFAULT_READ_TIMEOUT = 30 * 1000;
+  public static final int DEFAULT_REQUEST_TIMEOUT = 60 * 1000;
+  public static final int DEFAULT_MAX_IDLE_PER_SERVER = 8;
+  public static final int DEFAULT_KEEP_ALIVE = 30 * 1000;
+
+  private static final HttpConnectionPool DEFAULT = new HttpConnectionPool();
+
+  private final int connectTimeout;
+  private final int readTimeout;
+  private final int requestTimeout;
+  private final int maxIdlePerServer;
+  private final int keepAlive;
+
+  /**
+   * Idle connections keyed by server, the most recently used last
+   */
+  private final Map<String, LinkedList<HttpConnection>> idle =
+      new HashMap<String, LinkedList<HttpConnection>>();
+  private final ConnectionMetrics metrics = new ConnectionMetrics();
+
+  /**
+   * @return the pool shared by all {@link Http}s which aren't given one
+   */
+  public static HttpConnectionPool getDefault() {
+    return DEFAULT;
+  }
+
+  public HttpConnectionPool() {
+    this(DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT, DEFAULT_REQUEST_TIMEOUT,
+        DEFAULT_MAX_IDLE_PER_SERVER, DEFAULT_KEEP_ALIVE);
+  }
+
+  /**
+   * @param connectTimeout the longest to wait for a connection to be set up in milliseconds
+   * @param readTimeout the longest to wait for the server to send something in milliseconds
+   * @param requestTimeout the longest a whole request, including connecting and reading the
+   *          response, can take in milliseconds
+   * @param maxIdlePerServer the most idle connections to keep to each server
+   * @param keepAlive how long in milliseconds to keep an idle connection before closing it
+   */
+  public HttpConnectionPool(int connectTimeout, int readTimeout, int requestTimeout,
+      int maxIdlePerServer, int keepAlive) {
+    if (connectTimeout <= 0 || readTimeout <= 0 || requestTimeout <= 0) {
+      throw new IllegalArgumentException("Timeouts must be positive");
+    }
+    if (maxIdlePerServer < 0 || keepAlive < 0) {
+      throw new IllegalArgumentException("Idle limits must not be negative");
+    }
+    this.connectTimeout = connectTimeout;
+    this.readTimeout = readTimeout;
+    this.requestTimeout = requestTimeout;
+    this.maxIdlePerServer = maxIdlePerServer;
+    this.keepAlive = keepAlive;
+  }
+
+  public int getConnectTimeout() {
+    return connectTimeout;
+  }
+
+  public int getReadTimeout() {
+    return readTimeout;
+  }
+
+  public int getRequestTimeout() {
+    return requestTimeout;
+  }
+
+  public int getMaxIdlePerServer() {
+    return maxIdlePerServer;
+  }
+
+  public int getKeepAlive() {
+    return keepAlive;
+  }
+
+  public ConnectionMetrics getMetrics() {
+    return metrics;
+  }
+
+  private static String serverKey(URL url) {
+    return url.getProtocol() + "://" + url.getHost() + ":" + port(url);
+  }
+
+  static int port(URL url) {
+    return url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+  }
+
+  /**
+   * Get an idle connection to the server of url or open a new one
+   *
+   * @param url
+   * @param deadline the {@link System#nanoTime()} by which the request must have finished
+   * @return
+   * @throws IOException
+   */
+  HttpConnection acquire(URL url, long deadline) throws IOException {
+    String key = serverKey(url);
+    while (true) {
+      HttpConnection connection;
+      synchronized (idle) {
+        LinkedList<HttpConnection> connections = idle.get(key);
+        connection = connections == null ? null : connections.pollLast();
+      }
+      if (connection == null) {
+        break;
+      }
+      if (System.currentTimeMillis() - connection.getLastUsed() < keepAlive
+          && !connection.isStale()) {
+        metrics.reused();
+        return connection;
+      }
+      close(connection);
+    }
+    long start = System.nanoTime();
+    HttpConnection connection = HttpConnection.open(key, url, this, deadline);
+    metrics.opened(start);
+    return connection;
+  }
+
+  /**
+   * The response on the connection has been completely read and the connection can be used again
+   */
+  void release(HttpConnection connection) {
+    connection.setLastUsed(System.currentTimeMillis());
+    HttpConnection evicted = null;
+    synchronized (idle) {
+      LinkedList<HttpConnection> connections = idle.get(connection.getKey());
+      if (connections == null) {
+        connections = new LinkedList<HttpConnection>();
+        idle.put(connection.getKey(), connections);
+      }
+      connections.addLast(connection);
+      if (connections.size() > maxIdlePerServer) {
+        evicted = connections.removeFirst();
+      }
+    }
+    if (evicted != null) {
+      close(evicted);
+    }
+  }
+
+  /**
+   * The connection can't be used again
+   */
+  void close(HttpConnection connection) {
+    connection.close();
+    metrics.closed();
+  }
+
+  void request(long start, boolean failed) {
+    metrics.request(start, failed);
+  }
+
+  /**
+   * Close all the idle connections, connections in use are closed when their requests finish
+   */
+  public void closeIdle() {
+    List<HttpConnection> toClose = new ArrayList<HttpConnection>();
+    synchronized (idle) {
+      for (LinkedList<HttpConnection> connections : idle.values()) {
+        toClose.addAll(connections);
+      }
+      idle.clear();
+    }
+    for (HttpConnection connection : toClose) {
+      close(connection);
+    }
+  }
+
+  /**
+   * @return the number of idle connections currently kept open
+   */
+  public int getIdleCount() {
+    synchronized (idle) {
+      int count = 0;
+      for (Iterator<LinkedList<HttpConnection>> it = idle.values().iterator(); it.hasNext();) {
+        count += it.next().size();
+      }
+      return count;
+    }
+  }
+
+  /**
+   * Counts of what has happened to the connections in a pool or {@link NioHttpClient}.
+   */
+  public static class ConnectionMetrics {
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong closed = new AtomicLong();
+    private final AtomicLong connectNanos = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong requestNanos = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    void opened(long start) {
+      opened.incrementAndGet();
+      connectNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    void reused() {
+      reused.incrementAndGet();
+    }
+
+    void closed() {
+      closed.incrementAndGet();
+    }
+
+    void request(long start, boolean failed) {
+      requests.incrementAndGet();
+      requestNanos.addAndGet(System.nanoTime() - start);
+      if (failed) {
+        failures.incrementAndGet();
+      }
+    }
+
+    /**
+     * @return the number of new connections which have been set up
+     */
+    public long getOpened() {
+      return opened.get();
+    }
+
+    /**
+     * @return the number of times an idle connection was used for a request
+     */
+    public long getReused() {
+      return reused.get();
+    }
+
+    public long getClosed() {
+      return closed.get();
+    }
+
+    /**
+     * @return the total time spent setting up connections, including TLS handshakes, in nanoseconds
+     */
+    public long getConnectNanos() {
+      return connectNanos.get();
+    }
+
+    public long getRequests() {
+      return requests.get();
+    }
+
+    /**
+     * @return the total time from starting requests to getting their responses in nanoseconds
+     */
+    public long getRequestNanos() {
+      return requestNanos.get();
+    }
+
+    /**
+     * @return the number of requests which failed with an exception rather than a response
+     */
+    public long getFailures() {
+      return failures.get();
+    }
+
+    @Override
+    public String toString() {
+      return "opened=" + getOpened() + " reused=" + getReused() + " closed=" + getClosed()
+          + " connectNanos=" + getConnectNanos() + " requests=" + getRequests() + " requestNanos="
+          + getRequestNanos() + " failures=" + getFailures();
+    }
+  }
+}
@@ -36,11 +36,32 @@ class HttpResponse {
   private int responseCode;
   private String responseMessage;
   private InputStream input;
+  private String acceptEncoding;
+  private String location;
 
   HttpResponse(int responseCode, String responseMessage, InputStream input) {
+    this(responseCode, responseMessage, input, null);
+  }
+
+  /**
+   * @param acceptEncoding the Accept-Encoding header sent by the server, null if there was none
+   */
+  HttpResponse(int responseCode, String responseMessage, InputStream input,
+      String acceptEncoding) {
+    this(responseCode, responseMessage, input, acceptEncoding, null);
+  }
+
+  /**
+   * @param acceptEncoding the Accept-Encoding header sent by the server, null if there was none
+   * @param location the Location header sent by the server, null if there was none
+   */
+  HttpResponse(int responseCode, String responseMessage, InputStream input,
+      String acceptEncoding, String location) {
     this.responseCode = responseCode;
     this.responseMessage = responseMessage;
     this.input = input;
+    this.acceptEncoding = acceptEncoding;
+    this.location = location;
   }
 
   int getResponseCode() {
@@ -51,6 +72,28 @@ class HttpResponse {
     return responseMessage;
   }
 
+  /**
+   * @return the encodings the server will accept request bodies in, null if it didn't say
+   */
+  String getAcceptEncoding() {
+    return acceptEncoding;
+  }
+
+  /**
+   * @return where the server redirected the request to, possibly relative, null if it didn't
+   */
+  String getLocation() {
+    return location;
+  }
+
+  /**
+   * @return the body of the response, already decompressed if the server compressed it, may be null
+   *         if there was none
+   */
+  InputStream getInputStream() {
+    return input;
+  }
+
   public String toOutputString() throws IOException {
     try {
       BufferedInputStream in = new BufferedInputStream(input);
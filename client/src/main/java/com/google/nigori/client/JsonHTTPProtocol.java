@@ -13,16 +13,24 @@
  */
 package com.google.nigori.client;
 
-import static com.google.nigori.common.MessageLibrary.toBytes;
-
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.HttpURLConnection;
 
 import com.google.nigori.common.MessageLibrary;
 import com.google.nigori.common.MessageLibrary.JsonConversionException;
 import com.google.nigori.common.NigoriMessages.AuthenticateRequest;
+import com.google.nigori.common.NigoriMessages.BatchRequest;
+import com.google.nigori.common.NigoriMessages.BatchResponse;
 import com.google.nigori.common.NigoriMessages.DeleteRequest;
+import com.google.nigori.common.NigoriMessages.GetChangesRequest;
+import com.google.nigori.common.NigoriMessages.GetChangesResponse;
+import com.google.nigori.common.NigoriMessages.GetDigestsRequest;
+import com.google.nigori.common.NigoriMessages.GetDigestsResponse;
 import com.google.nigori.common.NigoriMessages.GetIndicesRequest;
 import com.google.nigori.common.NigoriMessages.GetIndicesResponse;
 import com.google.nigori.common.NigoriMessages.GetRequest;
@@ -35,6 +43,7 @@ import com.google.nigori.common.NigoriMessages.UnregisterRequest;
 import com.google.nigori.common.NigoriProtocol;
 import com.google.nigori.common.NotFoundException;
 import com.google.nigori.common.UnauthorisedException;
+import com.google.protobuf.GeneratedMessage;
 
 /**
  * Implements the NigoriProtocol using Json and HTTP
@@ -49,12 +58,15 @@ public class JsonHTTPProtocol implements NigoriProtocol {
   private final Http http;
 
   public JsonHTTPProtocol(String server, int port, String serverPrefix) {
+    http = new Http(serverUrl(server, port, serverPrefix), MessageLibrary.MIMETYPE_JSON);
+  }
+
+  static String serverUrl(String server, int port, String serverPrefix) {
     String protocol = "https://";
     if ("localhost".equals(server)) {
       protocol = "http://";
     }
-    http = new Http(protocol + server + ":" + port + "/" + serverPrefix + "/",
-            MessageLibrary.MIMETYPE_JSON);
+    return protocol + server + ":" + port + "/" + serverPrefix + "/";
   }
 
   /**
@@ -77,9 +89,8 @@ public class JsonHTTPProtocol implements NigoriProtocol {
 
   @Override
   public boolean authenticate(AuthenticateRequest request) throws IOException {
-    String json = MessageLibrary.toJson(request);
     HttpResponse resp =
-        http.post(MessageLibrary.REQUEST_AUTHENTICATE, toBytes(json), MessageLibrary.MIMETYPE_JSON);
+        http.post(MessageLibrary.REQUEST_AUTHENTICATE, toJson(request), MessageLibrary.MIMETYPE_JSON);
     try {
       return success(resp);
     } finally {
@@ -89,9 +100,8 @@ public class JsonHTTPProtocol implements NigoriProtocol {
 
   @Override
   public boolean register(RegisterRequest request) throws IOException {
-    String json = MessageLibrary.toJson(request);
     HttpResponse resp =
-        http.post(MessageLibrary.REQUEST_REGISTER, toBytes(json), MessageLibrary.MIMETYPE_JSON);
+        http.post(MessageLibrary.REQUEST_REGISTER, toJson(request), MessageLibrary.MIMETYPE_JSON);
     try {
       return success(resp);
     } finally {
@@ -101,9 +111,8 @@ public class JsonHTTPProtocol implements NigoriProtocol {
 
   @Override
   public boolean unregister(UnregisterRequest request) throws IOException {
-    String json = MessageLibrary.toJson(request);
     HttpResponse resp =
-        http.post(MessageLibrary.REQUEST_UNREGISTER, toBytes(json), MessageLibrary.MIMETYPE_JSON);
+        http.post(MessageLibrary.REQUEST_UNREGISTER, toJson(request), MessageLibrary.MIMETYPE_JSON);
     try {
       return success(resp);
     } finally {
@@ -112,26 +121,28 @@ public class JsonHTTPProtocol implements NigoriProtocol {
   }
 
   private static void failure(Response response) throws IOException, UnauthorisedException {
+    String message = response.resp.toOutputString();
     if (response.resp.getResponseCode() == Http.UNAUTHORIZED) {
-      throw new UnauthorisedException(response.jsonResponse);
+      throw new UnauthorisedException(message);
     }
     throw new IOException("Server did not accept request(" + response.resp.getResponseCode()
-        + "). " + response.jsonResponse);
+        + "). " + message);
   }
 
   @Override
   public GetResponse get(GetRequest request) throws IOException, UnauthorisedException {
     try {
-      Response response = postResponse(MessageLibrary.REQUEST_GET, MessageLibrary.toJson(request));
+      Response response = postResponse(MessageLibrary.REQUEST_GET, request);
 
       if (response.notFound()) {
+        response.resp.close();
         return null; // request was successful, but no data key by that name was found.
       }
 
       if (!success(response.resp)) {
         failure(response);
       }
-      return MessageLibrary.getResponseFromJson(response.jsonResponse);
+      return response.fromJson(GetResponse.class);
     } catch (JsonConversionException jce) {
       throw new IOException("Error reading JSON sent by server: " + jce.getMessage());
     }
@@ -141,17 +152,17 @@ public class JsonHTTPProtocol implements NigoriProtocol {
   public GetIndicesResponse getIndices(GetIndicesRequest request) throws IOException,
       UnauthorisedException {
     try {
-      Response response =
-          postResponse(MessageLibrary.REQUEST_GET_INDICES, MessageLibrary.toJson(request));
+      Response response = postResponse(MessageLibrary.REQUEST_GET_INDICES, request);
 
       if (response.notFound()) {
+        response.resp.close();
         return null; // request was successful, but no data key by that name was found.
       }
 
       if (!success(response.resp)) {
         failure(response);
       }
-      return MessageLibrary.getIndicesResponseFromJson(response.jsonResponse);
+      return response.fromJson(GetIndicesResponse.class);
     } catch (JsonConversionException jce) {
       throw new IOException("Error reading JSON sent by server: " + jce.getMessage());
     }
@@ -161,18 +172,17 @@ public class JsonHTTPProtocol implements NigoriProtocol {
   public GetRevisionsResponse getRevisions(GetRevisionsRequest request) throws IOException,
       NotFoundException, UnauthorisedException {
     try {
-      Response response =
-          postResponse(MessageLibrary.REQUEST_GET_REVISIONS, MessageLibrary.toJson(request));
+      Response response = postResponse(MessageLibrary.REQUEST_GET_REVISIONS, request);
 
       if (response.notFound()) {
         // request was successful, but no data key by that name was found.
-        throw new NotFoundException(response.jsonResponse);
+        throw new NotFoundException(response.resp.toOutputString());
       }
 
       if (!success(response.resp)) {
         failure(response);
       }
-      return MessageLibrary.getRevisionsResponseFromJson(response.jsonResponse);
+      return response.fromJson(GetRevisionsResponse.class);
     } catch (JsonConversionException jce) {
       throw new IOException("Error reading JSON sent by server: " + jce.getMessage());
     }
@@ -180,9 +190,8 @@ public class JsonHTTPProtocol implements NigoriProtocol {
 
   @Override
   public boolean put(PutRequest request) throws IOException {
-    String json = MessageLibrary.toJson(request);
     HttpResponse resp =
-        http.post(MessageLibrary.REQUEST_PUT, toBytes(json), MessageLibrary.MIMETYPE_JSON);
+        http.post(MessageLibrary.REQUEST_PUT, toJson(request), MessageLibrary.MIMETYPE_JSON);
     try {
       return success(resp);
     } finally {
@@ -192,37 +201,106 @@ public class JsonHTTPProtocol implements NigoriProtocol {
 
   @Override
   public boolean delete(DeleteRequest request) throws IOException, UnauthorisedException {
-    Response response = postResponse(MessageLibrary.REQUEST_DELETE, MessageLibrary.toJson(request));
+    Response response = postResponse(MessageLibrary.REQUEST_DELETE, request);
 
     if (response.notFound()) {
+      response.resp.close();
       return false; // request was successful, but no data key by that name was found.
     }
 
     if (!success(response.resp)) {
       failure(response);
     }
+    response.resp.close();
     return true;
   }
 
-  private Response postResponse(String request, String jsonRequest)
-      throws UnsupportedEncodingException, IOException {
+  @Override
+  public BatchResponse batch(BatchRequest request) throws IOException, UnauthorisedException {
+    try {
+      Response response = postResponse(MessageLibrary.REQUEST_BATCH, request);
+
+      if (!success(response.resp)) {
+        failure(response);
+      }
+      return response.fromJson(BatchResponse.class);
+    } catch (JsonConversionException jce) {
+      throw new IOException("Error reading JSON sent by server: " + jce.getMessage());
+    }
+  }
+
+  @Override
+  public GetChangesResponse getChanges(GetChangesRequest request) throws IOException,
+      UnauthorisedException {
+    try {
+      Response response = postResponse(MessageLibrary.REQUEST_GET_CHANGES, request);
+
+      if (!success(response.resp)) {
+        failure(response);
+      }
+      return response.fromJson(GetChangesResponse.class);
+    } catch (JsonConversionException jce) {
+      throw new IOException("Error reading JSON sent by server: " + jce.getMessage());
+    }
+  }
+
+  @Override
+  public GetDigestsResponse getDigests(GetDigestsRequest request) throws IOException,
+      NotFoundException, UnauthorisedException {
+    try {
+      Response response = postResponse(MessageLibrary.REQUEST_GET_DIGESTS, request);
 
-    HttpResponse resp = http.post(request, toBytes(jsonRequest), MessageLibrary.MIMETYPE_JSON);
+      if (response.notFound()) {
+        // request was successful, but one of the nodes does not exist in the tree.
+        throw new NotFoundException(response.resp.toOutputString());
+      }
 
-    return new Response(resp, resp.toOutputString());
+      if (!success(response.resp)) {
+        failure(response);
+      }
+      return response.fromJson(GetDigestsResponse.class);
+    } catch (JsonConversionException jce) {
+      throw new IOException("Error reading JSON sent by server: " + jce.getMessage());
+    }
+  }
+
+  private static byte[] toJson(GeneratedMessage request) throws IOException {
+    ByteArrayOutputStream json = new ByteArrayOutputStream();
+    Writer out = new OutputStreamWriter(json, MessageLibrary.CHARSET);
+    MessageLibrary.writeJson(request, out);
+    out.close();
+    return json.toByteArray();
+  }
+
+  private Response postResponse(String request, GeneratedMessage message) throws IOException {
+
+    HttpResponse resp = http.post(request, toJson(message), MessageLibrary.MIMETYPE_JSON);
+
+    return new Response(resp);
   }
 
   private static class Response {
     public final HttpResponse resp;
-    public final String jsonResponse;
 
-    public Response(HttpResponse resp, String jsonResponse) {
+    public Response(HttpResponse resp) {
       this.resp = resp;
-      this.jsonResponse = jsonResponse;
     }
 
     public boolean notFound() {
       return (resp.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND);
     }
+
+    /**
+     * Parse the body straight from the connection and close it
+     */
+    public <T extends GeneratedMessage> T fromJson(Class<T> type) throws IOException,
+        JsonConversionException {
+      try {
+        return MessageLibrary.fromJson(new BufferedReader(new InputStreamReader(resp
+            .getInputStream(), MessageLibrary.CHARSET)), type);
+      } finally {
+        resp.close();
+      }
+    }
   }
 }
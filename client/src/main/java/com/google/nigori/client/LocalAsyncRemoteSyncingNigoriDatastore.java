@@ -13,10 +13,15 @@
  */
 package com.google.nigori.client;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -31,6 +36,12 @@ import com.google.nigori.common.Util;
  * TODO(drt24) Potentially we want to make sure calls don't ever block on talking to the remote -
  * currently they do if we think that the local store is missing something the remote has
  * 
+ * Puts and deletes are made to the local store and then added to an outbox from which they are sent
+ * to the remote in the order they were made. If the remote can't be reached they wait in the outbox
+ * and are sent when it can be again, so catching up takes as long as the work done while it was
+ * unreachable rather than a sync of everything. Given a file the outbox is kept in it so that what
+ * hasn't been sent yet isn't lost if the process exits.
+ * 
  * @author drt24
  * 
  */
@@ -39,6 +50,20 @@ public class LocalAsyncRemoteSyncingNigoriDatastore implements NigoriDatastore {
   protected final NigoriDatastore local;
   protected final NigoriDatastore synchronousRemote;
   protected final AsyncNigoriDatastore remote;
+  private final Outbox outbox;
+  private final AtomicBoolean sendScheduled = new AtomicBoolean(false);
+  private final Object sendLock = new Object();
+  private volatile boolean closed = false;
+  private final ChangeMarks marks;
+  private final ChangeWatcher watcher;
+  private volatile int syncWorkers = SyncingNigoriDatastore.DEFAULT_SYNC_WORKERS;
+  /**
+   * The stores as used by syncs, limited to how many calls may be made into each at once
+   */
+  private volatile NigoriDatastore syncLocal;
+  private volatile NigoriDatastore syncRemote;
+  private volatile SyncListener syncListener = null;
+  private volatile SyncWorkers currentSync = null;
   private final Logger log = Logger.getLogger(this.getClass().getCanonicalName());
 
   private void crypto(NigoriCryptographyException e) {
@@ -77,13 +102,186 @@ public class LocalAsyncRemoteSyncingNigoriDatastore implements NigoriDatastore {
     noRemote = true;
   }
 
+  /**
+   * Puts and deletes not yet sent to the remote are lost if the process exits
+   * 
+   * @param local
+   * @param remote
+   */
   public LocalAsyncRemoteSyncingNigoriDatastore(NigoriDatastore local, NigoriDatastore remote) {
+    this(local, remote, null, new Outbox());
+  }
+
+  /**
+   * @param local
+   * @param remote
+   * @param outbox the file to keep puts and deletes which haven't been sent to the remote in,
+   *          any left in it from before are sent once the remote can be reached
+   * @throws IOException if the outbox can't be read or written
+   */
+  public LocalAsyncRemoteSyncingNigoriDatastore(NigoriDatastore local, NigoriDatastore remote,
+      File outbox) throws IOException {
+    this(local, remote, null, new Outbox(outbox));
+  }
+
+  /**
+   * Talk to the remote through a datastore which is asynchronous itself, such as an
+   * {@link AsyncCryptoNigoriDatastore}, rather than wrapping remote in a thread for each operation
+   * in progress. remote is still used for syncs.
+   * 
+   * @param local
+   * @param remote
+   * @param asyncRemote the same account on the same server as remote, null to wrap remote as the
+   *          other constructors do
+   * @param outbox the file to keep puts and deletes which haven't been sent to the remote in, null
+   *          to keep them in memory
+   * @throws IOException if the outbox can't be read or written
+   */
+  public LocalAsyncRemoteSyncingNigoriDatastore(NigoriDatastore local, NigoriDatastore remote,
+      AsyncNigoriDatastore asyncRemote, File outbox) throws IOException {
+    this(local, remote, asyncRemote, outbox == null ? new Outbox() : new Outbox(outbox));
+  }
+
+  private LocalAsyncRemoteSyncingNigoriDatastore(NigoriDatastore local, NigoriDatastore remote,
+      AsyncNigoriDatastore asyncRemote, Outbox outbox) {
     if (local == null || remote == null) {
       throw new IllegalArgumentException("Datastores must not be null");
     }
+    this.outbox = outbox;
     this.local = local;
     this.synchronousRemote = remote;
-    this.remote = new AsyncNigoriDatastoreWrapper(remote);
+    this.remote = asyncRemote == null ? new AsyncNigoriDatastoreWrapper(remote) : asyncRemote;
+    setSyncLimits(SyncingNigoriDatastore.DEFAULT_SYNC_WORKERS,
+        SyncingNigoriDatastore.DEFAULT_SYNC_WORKERS, SyncingNigoriDatastore.DEFAULT_SYNC_WORKERS);
+    this.marks = new ChangeMarks(local, remote);
+    if (local instanceof ChangeTrackingDatastore && remote instanceof ChangeTrackingDatastore) {
+      this.watcher =
+          new ChangeWatcher((ChangeTrackingDatastore) remote, new ChangeWatcher.Listener() {
+            @Override
+            public void changed(Collection<Index> indices) throws IOException,
+                NigoriCryptographyException, UnauthorisedException {
+              sync(indices);
+            }
+
+            @Override
+            public void failed(Exception e) {
+              failure(e);
+            }
+          });
+    } else {
+      this.watcher = null;
+    }
+  }
+
+  /**
+   * Once the stores have been synced, changes made to the remote by others are synced to the local
+   * store as they happen by keeping a request waiting for changes outstanding on the remote. This
+   * stops that, it starts again after the next sync.
+   */
+  public void stopWatching() {
+    if (watcher != null) {
+      watcher.stop();
+    }
+  }
+
+  private void watchRemote() {
+    long since = marks.getSecondMark();
+    if (watcher != null && since >= 0) {
+      // carry on from where watching got to before it was stopped if that is further on
+      watcher.start(Math.max(since, watcher.getReached()));
+    }
+  }
+
+  /**
+   * @return the number of puts and deletes waiting to be sent to the remote
+   */
+  public int getUnsent() {
+    return outbox.size();
+  }
+
+  /**
+   * Send what is in the outbox to the remote in the background, unless that is already happening
+   */
+  private void sendOutbox() {
+    if (sendScheduled.compareAndSet(false, true)) {
+      final Throwable from = new Throwable();
+      remote.execute(new Runnable() {
+        @Override
+        public void run() {
+          // anything added from now on is either seen by this send or schedules another
+          sendScheduled.set(false);
+          try {
+            send();
+          } catch (Exception e) {
+            Util.addFrom(e, from);
+            failure(e);
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * Send what is in the outbox to the remote in order, removing each operation once the remote has
+   * done it. Stops at the first which the remote can't be reached for or refuses so that it is
+   * tried again first.
+   * 
+   * @throws IOException if the remote can't be reached or refuses an operation
+   */
+  private void send() throws IOException, UnauthorisedException {
+    synchronized (sendLock) {
+      if (closed) {
+        return;
+      }
+      Outbox.Entry entry = outbox.first();
+      if (entry == null) {
+        return;
+      }
+      for (; entry != null; entry = outbox.first()) {
+        try {
+          if (!sent(entry)) {
+            throw new IOException("Remote refused " + entry.type + " of " + entry.index
+                + ", keeping it to send again");
+          }
+        } catch (NigoriCryptographyException e) {
+          // Trying again won't help and would hold up everything after it
+          crypto(e);
+        }
+        outbox.acknowledge(entry);
+      }
+    }
+    ensureSynced();
+  }
+
+  /**
+   * @return whether the remote has done entry, a delete it refuses is done if nothing is left under
+   *         the index since deleting an index which isn't there is refused
+   */
+  private boolean sent(Outbox.Entry entry) throws IOException, NigoriCryptographyException,
+      UnauthorisedException {
+    if (entry.type == Outbox.Type.PUT) {
+      return synchronousRemote.put(entry.index, entry.revision, entry.value);
+    }
+    if (synchronousRemote.delete(entry.index, entry.value)) {
+      return true;
+    }
+    List<Revision> left = synchronousRemote.getRevisions(entry.index);
+    return left == null || left.isEmpty();
+  }
+
+  /**
+   * Stop watching the remote and close the outbox, waiting for any send in progress. Puts and
+   * deletes which haven't been sent stay in the outbox file, if there is one, and are sent by the
+   * next datastore given it. Nothing more may be put or deleted after this.
+   * 
+   * @throws IOException if the outbox file couldn't be closed
+   */
+  public void close() throws IOException {
+    stopWatching();
+    synchronized (sendLock) {
+      closed = true;
+      outbox.close();
+    }
   }
 
   /**
@@ -123,6 +321,9 @@ public class LocalAsyncRemoteSyncingNigoriDatastore implements NigoriDatastore {
           log.warning(String.format("local and remote authenticate() differ: %b and %b", localAuth,
               result));
         }
+        if (result) {
+          ensureSynced();
+        }
       }
     });
     return localAuth;
@@ -132,9 +333,13 @@ public class LocalAsyncRemoteSyncingNigoriDatastore implements NigoriDatastore {
 
   private final Object syncLock = new Object();
   private boolean syncing = false;
+  private volatile boolean fullySynced = false;
 
   /**
    * Call this when we successfully did something on the second store so we think we can talk to it.
+   * What is in the outbox is sent first. After that, if there has been a sync and changes to the
+   * remote are being watched, watching carries on from where it got to so that is all that is
+   * needed, otherwise everything is synced.
    * 
    * @throws NigoriCryptographyException
    */
@@ -153,7 +358,12 @@ public class LocalAsyncRemoteSyncingNigoriDatastore implements NigoriDatastore {
                 canAuth = synchronousRemote.authenticate();
 
                 if (canAuth) {
-                  syncAll();
+                  send();
+                  if (!fullySynced || watcher == null) {
+                    syncAll();
+                    fullySynced = true;
+                  }
+                  watchRemote();
                 }
               } catch (Exception e) {
                 Util.addFrom(e, from);
@@ -171,34 +381,160 @@ public class LocalAsyncRemoteSyncingNigoriDatastore implements NigoriDatastore {
   }
 
   /**
-   * Synchronise all indices and revisions between both stores
+   * Set how many indices later syncs work on at once and how many calls they may make into each
+   * store at once
+   * 
+   * @param workers the number of indices to sync at once
+   * @param localLimit the number of calls into the local store to make at once
+   * @param remoteLimit the number of calls into the remote store to make at once
+   */
+  public void setSyncLimits(int workers, int localLimit, int remoteLimit) {
+    if (workers < 1) {
+      throw new IllegalArgumentException("Must have at least one worker: " + workers);
+    }
+    syncWorkers = workers;
+    syncLocal = new ConcurrencyLimitedDatastore(local, localLimit);
+    syncRemote = new ConcurrencyLimitedDatastore(synchronousRemote, remoteLimit);
+  }
+
+  /**
+   * @param listener to tell how far each sync has got, or null
+   */
+  public void setSyncListener(SyncListener listener) {
+    syncListener = listener;
+  }
+
+  /**
+   * Stop the sync in progress, if there is one, which then throws an
+   * {@link java.io.InterruptedIOException}. The indices already synced stay synced and the next
+   * sync looks at everything the cancelled one would have.
+   */
+  public void cancelSync() {
+    SyncWorkers workers = currentSync;
+    if (workers != null) {
+      workers.cancel();
+    }
+  }
+
+  private SyncWorkers startSync() {
+    currentSync = new SyncWorkers(syncWorkers, syncListener);
+    return currentSync;
+  }
+
+  private void endSync(SyncWorkers workers) {
+    workers.close();
+    currentSync = null;
+  }
+
+  private void submitAll(SyncWorkers workers, Collection<Index> indices) throws IOException,
+      NigoriCryptographyException, UnauthorisedException {
+    for (final Index index : indices) {
+      workers.submit(new SyncWorkers.Task() {
+        @Override
+        void run() throws IOException, NigoriCryptographyException, UnauthorisedException {
+          syncRevisions(index);
+        }
+      });
+    }
+  }
+
+  /**
+   * Synchronise all indices and revisions between both stores. If both stores are
+   * {@link ChangeTrackingDatastore}s then after the first sync only the indices which have changed
+   * in either store since the previous sync are looked at. Otherwise if both are
+   * {@link HashTreeDatastore}s with the same keys only the indices found to differ by comparing
+   * their hash trees are looked at.
+   * 
+   * The indices are synced several at a time by worker threads, as set by
+   * {@link #setSyncLimits(int, int, int)}.
    * 
    * @throws NigoriCryptographyException
    * @throws IOException
    * @throws UnauthorisedException
+   * @throws java.io.InterruptedIOException if the sync was cancelled by {@link #cancelSync()}
    */
   public synchronized void syncAll() throws IOException, NigoriCryptographyException,
       UnauthorisedException {
-    List<Index> firstIndices = local.getIndices();
-    List<Index> secondIndices = synchronousRemote.getIndices();
-    if (!(firstIndices.containsAll(secondIndices) && secondIndices.containsAll(firstIndices))) {
-      // indices not already synced
-      List<Index> firstMSecond = new ArrayList<Index>(firstIndices);
-      firstMSecond.removeAll(secondIndices);
-      addAllIndices(firstMSecond, local, synchronousRemote);
-      List<Index> secondMFirst = new ArrayList<Index>(secondIndices);
-      secondMFirst.removeAll(firstIndices);
-      addAllIndices(secondMFirst, synchronousRemote, synchronousRemote);
-      // make sure firstIndices has all the indices
-      firstIndices.addAll(secondMFirst);
+    SyncWorkers workers = startSync();
+    try {
+      Collection<Index> changed = marks.changed();
+      if (changed != null) {
+        submitAll(workers, changed);
+      } else {
+        Collection<Index> different = HashTreeReconciler.differences(local, synchronousRemote);
+        if (different != null) {
+          submitAll(workers, different);
+        } else {
+          syncAllIndices(workers);
+        }
+      }
+      workers.finish();
+    } finally {
+      endSync(workers);
     }
-    // Now need to sync revisions.
-    List<Index> indices = firstIndices;
-    for (Index index : indices) {
-      syncRevisions(index);
+    marks.synced();
+  }
+
+  /**
+   * Synchronise only these indices between both stores, for when it is known that the others are
+   * already synced
+   * 
+   * @param indices
+   * @throws NigoriCryptographyException
+   * @throws IOException
+   * @throws UnauthorisedException
+   */
+  public synchronized void sync(Collection<Index> indices) throws NigoriCryptographyException,
+      IOException, UnauthorisedException {
+    SyncWorkers workers = startSync();
+    try {
+      submitAll(workers, indices);
+      workers.finish();
+    } finally {
+      endSync(workers);
     }
   }
 
+  /**
+   * The local and remote indices are sorted and merged a page at a time, so the indices in only one
+   * store are copied over whole and only those in both have their revisions compared.
+   */
+  private void syncAllIndices(final SyncWorkers workers) throws IOException,
+      NigoriCryptographyException, UnauthorisedException {
+    final NigoriDatastore from = syncLocal;
+    final NigoriDatastore to = syncRemote;
+    SetDifference.compare(SetDifference.indices(local), SetDifference.indices(synchronousRemote),
+        new SetDifference.Visitor<Index>() {
+          @Override
+          void onlyFirst(final Index index) throws IOException, NigoriCryptographyException,
+              UnauthorisedException {
+            workers.submit(new SyncWorkers.Task() {
+              @Override
+              void run() throws IOException, NigoriCryptographyException, UnauthorisedException {
+                addIndex(index, from, to);
+              }
+            });
+          }
+
+          @Override
+          void onlySecond(final Index index) throws IOException, NigoriCryptographyException,
+              UnauthorisedException {
+            workers.submit(new SyncWorkers.Task() {
+              @Override
+              void run() throws IOException, NigoriCryptographyException, UnauthorisedException {
+                addIndex(index, to, from);
+              }
+            });
+          }
+
+          @Override
+          void inBoth(Index index) throws IOException, NigoriCryptographyException,
+              UnauthorisedException {
+            submitAll(workers, Collections.singleton(index));
+          }
+        });
+  }
+
   /**
    * Synchronise the revisions for a particular index
    * 
@@ -209,25 +545,13 @@ public class LocalAsyncRemoteSyncingNigoriDatastore implements NigoriDatastore {
    */
   private void syncRevisions(Index index) throws NigoriCryptographyException, IOException,
       UnauthorisedException {
-    List<Revision> localRevisions = local.getRevisions(index);
-    List<Revision> remoteRevisions = synchronousRemote.getRevisions(index);
-    if (localRevisions == null) {
-      if (remoteRevisions != null) {
-        addAllRevisions(index, remoteRevisions, synchronousRemote, local);
-      }// else both null
-    } else if (remoteRevisions == null) {
-      // localRevisions != null
-      addAllRevisions(index, localRevisions, local, synchronousRemote);
-    } else if (!(localRevisions.containsAll(remoteRevisions) && remoteRevisions
-        .containsAll(localRevisions))) {
-      // revisions not already synced
-      List<Revision> firstMSecond = new ArrayList<Revision>(localRevisions);
-      firstMSecond.removeAll(remoteRevisions);
-      addAllRevisions(index, firstMSecond, local, synchronousRemote);
-      List<Revision> secondMFirst = new ArrayList<Revision>(remoteRevisions);
-      secondMFirst.removeAll(localRevisions);
-      addAllRevisions(index, secondMFirst, synchronousRemote, local);
-    }
+    NigoriDatastore from = syncLocal;
+    NigoriDatastore to = syncRemote;
+    List<Revision> localRevisions = from.getRevisions(index);
+    List<Revision> remoteRevisions = to.getRevisions(index);
+    SetDifference.Split<Revision> split = SetDifference.split(localRevisions, remoteRevisions);
+    addAllRevisions(index, split.firstOnly, from, to);
+    addAllRevisions(index, split.secondOnly, to, from);
   }
 
   private static void addAllRevValues(Index index, List<RevValue> revValues, NigoriDatastore to)
@@ -249,11 +573,11 @@ public class LocalAsyncRemoteSyncingNigoriDatastore implements NigoriDatastore {
    */
   private static void addAllRevisions(Index index, List<Revision> revisions, NigoriDatastore from,
       NigoriDatastore to) throws IOException, NigoriCryptographyException, UnauthorisedException {
-    for (Revision revision : revisions) {
-      byte[] value = from.getRevision(index, revision);
-      if (value != null) {
-        to.put(index, revision, value);
-      }
+    if (revisions == null || revisions.isEmpty()) {
+      return;
+    }
+    for (RevValue revValue : from.getRevisionValues(index, revisions)) {
+      to.put(index, revValue.getRevision(), revValue.getValue());
     }
   }
 
@@ -270,27 +594,25 @@ public class LocalAsyncRemoteSyncingNigoriDatastore implements NigoriDatastore {
   private static void addAllIndices(List<Index> indices, NigoriDatastore from, NigoriDatastore to)
       throws IOException, NigoriCryptographyException, UnauthorisedException {
     for (Index index : indices) {
-      List<RevValue> revs = from.get(index);
-      if (revs != null) {
-        for (RevValue rev : revs) {
-          to.put(index, rev.getRevision(), rev.getValue());
-        }
+      addIndex(index, from, to);
+    }
+  }
+
+  private static void addIndex(Index index, NigoriDatastore from, NigoriDatastore to)
+      throws IOException, NigoriCryptographyException, UnauthorisedException {
+    List<RevValue> revs = from.get(index);
+    if (revs != null) {
+      for (RevValue rev : revs) {
+        to.put(index, rev.getRevision(), rev.getValue());
       }
     }
   }
 
   private void ensureIndicesSynced(List<Index> localIndices, List<Index> remoteIndices)
       throws IOException, NigoriCryptographyException, UnauthorisedException {
-    if (!(localIndices.containsAll(remoteIndices) && remoteIndices.containsAll(localIndices))) {
-      // indices not already synced
-      List<Index> remoteMLocal = new ArrayList<Index>(remoteIndices);
-      remoteMLocal.removeAll(localIndices);
-      addAllIndices(remoteMLocal, synchronousRemote, local);
-
-      List<Index> localMRemote = new ArrayList<Index>(localIndices);
-      localMRemote.removeAll(remoteIndices);
-      addAllIndices(localMRemote, local, synchronousRemote);
-    }
+    SetDifference.Split<Index> split = SetDifference.split(localIndices, remoteIndices);
+    addAllIndices(split.secondOnly, synchronousRemote, local);
+    addAllIndices(split.firstOnly, local, synchronousRemote);
   }
 
   @Override
@@ -367,12 +689,63 @@ public class LocalAsyncRemoteSyncingNigoriDatastore implements NigoriDatastore {
     }
   }
 
+  @Override
+  public List<RevValue> getRevisionValues(final Index index, List<Revision> revisions)
+      throws IOException, NigoriCryptographyException, UnauthorisedException {
+    final List<RevValue> localValues = local.getRevisionValues(index, revisions);
+    List<Revision> missing = new ArrayList<Revision>(revisions);
+    for (RevValue revValue : localValues) {
+      missing.remove(revValue.getRevision());
+    }
+    Map<Revision, byte[]> values = SyncingNigoriDatastore.valueMap(localValues);
+    if (!missing.isEmpty()) {
+      for (RevValue revValue : synchronousRemote.getRevisionValues(index, missing)) {
+        if (!local.put(index, revValue.getRevision(), revValue.getValue())) {
+          log.warning("Failed to put remote value into local store");
+        }
+        values.put(revValue.getRevision(), revValue.getValue());
+      }
+    }
+    if (!localValues.isEmpty()) {
+      // Now we need to check that the values we have locally are also in the remote
+      List<Revision> present = new ArrayList<Revision>(localValues.size());
+      for (RevValue revValue : localValues) {
+        present.add(revValue.getRevision());
+      }
+      remote.getRevisionValues(index, present, new FAsyncCallback<List<RevValue>>() {
+
+        @Override
+        public void success(List<RevValue> result) throws IOException,
+            NigoriCryptographyException, UnauthorisedException {
+          Map<Revision, byte[]> remoteValues = SyncingNigoriDatastore.valueMap(result);
+          for (RevValue localValue : localValues) {
+            byte[] remoteValue = remoteValues.get(localValue.getRevision());
+            if (remoteValue == null) {
+              synchronousRemote.put(index, localValue.getRevision(), localValue.getValue());
+            } else if (!Arrays.equals(localValue.getValue(), remoteValue)) {
+              log.severe("Local and remote have different values for the same revision ("
+                  + localValue.getRevision() + ")- we can't reconcile that");
+            }
+          }
+        }
+      });
+    }
+    List<RevValue> answer = new ArrayList<RevValue>(values.size());
+    for (Revision revision : revisions) {
+      byte[] value = values.get(revision);
+      if (value != null) {
+        answer.add(new RevValue(revision, value));
+      }
+    }
+    return answer;
+  }
+
   @Override
   public boolean put(Index index, Revision revision, byte[] value) throws IOException,
       NigoriCryptographyException, UnauthorisedException {
     final boolean localPut = local.put(index, revision, value);
-    remote.put(index, revision, value, new BAsyncCallback("put", localPut));
-
+    outbox.put(index, revision, value);
+    sendOutbox();
     return localPut;
   }
 
@@ -391,15 +764,12 @@ public class LocalAsyncRemoteSyncingNigoriDatastore implements NigoriDatastore {
           }// else equal
         } else {
           if (result != null) {
-            List<RevValue> localMRemote = new ArrayList<RevValue>(localGet);
-            localMRemote.removeAll(result);
-            List<RevValue> remoteMLocal = new ArrayList<RevValue>(result);
-            remoteMLocal.removeAll(localGet);
-            if (!remoteMLocal.isEmpty()) {
-              addAllRevValues(index, remoteMLocal, local);
+            SetDifference.Split<RevValue> split = SetDifference.split(localGet, result);
+            if (!split.secondOnly.isEmpty()) {
+              addAllRevValues(index, split.secondOnly, local);
             }
-            if (!localMRemote.isEmpty()) {
-              addAllRevValues(index, localMRemote, synchronousRemote);
+            if (!split.firstOnly.isEmpty()) {
+              addAllRevValues(index, split.firstOnly, synchronousRemote);
             }
           } else {
             addAllRevValues(index, localGet, synchronousRemote);
@@ -426,15 +796,12 @@ public class LocalAsyncRemoteSyncingNigoriDatastore implements NigoriDatastore {
           } // else equal
         } else {
           if (result != null) {
-            List<Revision> localMRemote = new ArrayList<Revision>(localRevisions);
-            localMRemote.removeAll(result);
-            List<Revision> remoteMLocal = new ArrayList<Revision>(result);
-            remoteMLocal.removeAll(localRevisions);
-            if (!remoteMLocal.isEmpty()) {
-              addAllRevisions(index, remoteMLocal, synchronousRemote, local);
+            SetDifference.Split<Revision> split = SetDifference.split(localRevisions, result);
+            if (!split.secondOnly.isEmpty()) {
+              addAllRevisions(index, split.secondOnly, synchronousRemote, local);
             }
-            if (!localMRemote.isEmpty()) {
-              addAllRevisions(index, localMRemote, local, synchronousRemote);
+            if (!split.firstOnly.isEmpty()) {
+              addAllRevisions(index, split.firstOnly, local, synchronousRemote);
             }
           } else {
             addAllRevisions(index, localRevisions, local, synchronousRemote);
@@ -449,7 +816,8 @@ public class LocalAsyncRemoteSyncingNigoriDatastore implements NigoriDatastore {
   public boolean delete(Index index, byte[] token) throws NigoriCryptographyException, IOException,
       UnauthorisedException {
     final boolean localDelete = local.delete(index, token);
-    remote.delete(index, token, new BAsyncCallback("delete", localDelete));
+    outbox.delete(index, token);
+    sendOutbox();
     return localDelete;
   }
 
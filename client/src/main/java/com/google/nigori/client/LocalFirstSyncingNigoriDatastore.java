@@ -16,7 +16,18 @@ package com.google.nigori.client;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import com.google.nigori.common.Index;
@@ -27,7 +38,19 @@ import com.google.nigori.common.UnauthorisedException;
 
 /**
  * Prefer the first store to the second and so if the second is inaccessible still keep going using
- * the first, when we notice the second come back then ensure that we have got everything synced
+ * the first, when we notice the second come back then ensure that we have got everything synced.
+ * As with {@link SyncingNigoriDatastore} the second store is used at the same time as the first,
+ * but reads always combine both answers when the second store can be reached.
+ * 
+ * Once the second store can't be reached operations only use the first store, remembering the
+ * indices written, and the second store is probed, by authenticating to it, after a delay which
+ * doubles with each failure up to {@link #MAX_RETRY_DELAY}. The delays are jittered so that many
+ * clients cut off by the same outage don't all come back at once. When the second store can be
+ * reached again the indices written only to the first in the meantime are synced, and if changes to
+ * the second store are being watched that carries on from where it got to, so there need only be a
+ * full {@link #syncAll()} if there has never been one, too much was written while cut off or
+ * changes to the second store can't be watched. The first sync after starting is scheduled in the
+ * same way once the second store has been used.
  * 
  * @author drt24
  * 
@@ -38,50 +61,96 @@ public class LocalFirstSyncingNigoriDatastore extends SyncingNigoriDatastore {
   private static final Logger log = Logger.getLogger(LocalFirstSyncingNigoriDatastore.class
       .getName());
 
-  private boolean keepRunning = true;
-  private boolean doSync = false;// access protected by synchronized on syncThread
+  /**
+   * How long to wait before the first probe of the second store after it couldn't be reached
+   */
+  public static final long MIN_RETRY_DELAY = TimeUnit.SECONDS.toMillis(1);
+  public static final long MAX_RETRY_DELAY = TimeUnit.MINUTES.toMillis(5);
+  /**
+   * The number of indices written while the second store can't be reached which are remembered to
+   * be synced, if there are more a full sync is done instead
+   */
+  public static final int MAX_MISSED = 10000;
+
+  private final ScheduledExecutorService syncer = Executors
+      .newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "nigori-local-first-sync");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+  private final Random random = new Random();
+  // access to these is protected by synchronized on this
+  private int failures = 0;
+  /**
+   * The second store couldn't be reached and operations don't use it until a probe finds it can be
+   */
+  private boolean down = false;
+  /**
+   * A probe of the second store is scheduled or running
+   */
+  private boolean probing = false;
+  private ScheduledFuture<?> probe = null;
+  private Set<Index> missed = new LinkedHashSet<Index>();
+  private boolean missedTooMany = false;
+  private boolean fullySynced = false;
 
+  /**
+   * Cancel any probe of the second store and stop the thread probes are done on, as well as what
+   * {@link SyncingNigoriDatastore#close()} stops. It can't be used afterwards.
+   */
   @Override
-  public void finalize() throws Throwable {// TODO(drt24) ensure that this will be called.
-    keepRunning = false;
-    synchronized (syncThread) {
-      syncThread.notify();
+  public void close() {
+    synchronized (this) {
+      if (probe != null) {
+        probe.cancel(false);
+        probe = null;
+      }
+      probing = false;
     }
-    super.finalize();
+    syncer.shutdownNow();
+    super.close();
   }
 
-  private Thread syncThread = new Thread() {
+  private final Runnable reconnect = new Runnable() {
     @Override
     public void run() {
-      while (keepRunning) {
-        synchronized (syncThread) {
-          try {
-            syncThread.wait();
-          } catch (InterruptedException e) {
-          }
-          if (doSync) {
-            sync();
-            doSync = false;
-          }
-        }
-      }
-    }
-
-    private void sync() {
-      boolean canAuth;
+      IOException failed = null;
+      boolean caughtUp = false;
       try {
-        canAuth = first.authenticate() && second.authenticate();
-
-        if (canAuth) {
-          syncAll();
+        // A cheap probe before doing any real work
+        if (!second.authenticate()) {
+          throw new IOException("Could not authenticate to the second store");
+        }
+        synchronized (LocalFirstSyncingNigoriDatastore.this) {
+          // operations use the second store again while what they missed is synced
+          down = false;
         }
+        catchUp();
+        caughtUp = true;
       } catch (IOException e) {
-        log.warning(e.toString());
+        failed = e;
       } catch (UnauthorisedException e) {
         log.severe(e.toString());
       } catch (NigoriCryptographyException e) {
         log.severe(e.toString());
       }
+      synchronized (LocalFirstSyncingNigoriDatastore.this) {
+        probing = false;
+        probe = null;
+        if (caughtUp && !down) {
+          failures = 0;
+          noRemote = false;
+          return;
+        }
+      }
+      if (failed != null) {
+        ioException(failed);
+      } else {
+        backOff();
+      }
     }
   };
 
@@ -96,37 +165,174 @@ public class LocalFirstSyncingNigoriDatastore extends SyncingNigoriDatastore {
     super(first, second);
   }
 
+  @Override
+  protected void watchFailed(Exception e) {
+    if (e instanceof IOException) {
+      ioException((IOException) e);
+    } else {
+      super.watchFailed(e);
+    }
+  }
+
+  /**
+   * Sync what has been missed while the second store couldn't be reached
+   */
+  private void catchUp() throws IOException, NigoriCryptographyException, UnauthorisedException {
+    Set<Index> indices;
+    boolean full;
+    synchronized (this) {
+      indices = missed;
+      full = !fullySynced || missedTooMany || !canWatchSecond();
+      missed = new LinkedHashSet<Index>();
+      missedTooMany = false;
+    }
+    try {
+      if (full) {
+        syncAll();
+        synchronized (this) {
+          fullySynced = true;
+        }
+      } else {
+        sync(indices);
+      }
+      // From now on pick up changes made to the second store as they happen, carrying on from
+      // where watching got to before
+      watchSecond();
+    } catch (IOException e) {
+      missed(indices, full);
+      throw e;
+    } catch (NigoriCryptographyException e) {
+      missed(indices, full);
+      throw e;
+    } catch (UnauthorisedException e) {
+      missed(indices, full);
+      throw e;
+    }
+  }
+
+  private synchronized void missed(Collection<Index> indices, boolean full) {
+    if (full) {
+      missedTooMany = true;
+    }
+    for (Index index : indices) {
+      missed(index);
+    }
+  }
+
+  private synchronized void missed(Index index) {
+    if (missedTooMany) {
+      return;
+    }
+    if (missed.size() >= MAX_MISSED) {
+      missed.clear();
+      missedTooMany = true;
+      return;
+    }
+    missed.add(index);
+  }
+
+  /**
+   * @return the number of indices remembered to be synced once the second store can be reached
+   */
+  synchronized int getMissed() {
+    return missed.size();
+  }
+
+  /**
+   * @return whether more than {@link #MAX_MISSED} indices were missed so a full sync is needed
+   */
+  synchronized boolean isMissedTooMany() {
+    return missedTooMany;
+  }
+
+  /**
+   * @return whether operations are leaving out the second store because it couldn't be reached
+   */
+  synchronized boolean isDown() {
+    return down;
+  }
+
+  /**
+   * If the second store is down remember that index was written only to the first
+   * 
+   * @return whether the second store is down
+   */
+  private synchronized boolean missedWhileDown(Index index) {
+    if (down) {
+      missed(index);
+    }
+    return down;
+  }
+
+  /**
+   * @param failures the number of probes which have failed in a row
+   * @param random
+   * @return how long to wait before the next probe of the second store, in milliseconds
+   */
+  static long retryDelay(int failures, Random random) {
+    long delay = Math.min(MAX_RETRY_DELAY, MIN_RETRY_DELAY << Math.min(failures, 30));
+    // Equal jitter: wait at least half the delay so the backoff still grows
+    return delay / 2 + (long) (random.nextDouble() * (delay / 2));
+  }
+
+  /**
+   * Probe the second store after the backoff delay, unless a probe is already going to happen
+   */
+  private synchronized void backOff() {
+    if (probing) {
+      return;
+    }
+    long delay = retryDelay(failures, random);
+    ++failures;
+    try {
+      probe = syncer.schedule(reconnect, delay, TimeUnit.MILLISECONDS);
+      probing = true;
+    } catch (RejectedExecutionException ree) {
+      // shut down
+    }
+  }
+
   /**
    * When we have a problem talking to the second store we assume it is broken and hence may have
-   * missed some of our operations. Later when it works again {@link #ensureSynced()} should fix
-   * things up for us.
+   * missed some of our operations. Until it works again it is left out of operations and probed
+   * with an exponential backoff, then {@link #ensureSynced()} fixes things up for us.
    * 
    * @param e
    */
   private synchronized void ioException(IOException e) {
     log.warning(e.toString());
     noRemote = true;
-    // TODO(drt24): trigger a thread to retry doing an exponential backoff
+    down = true;
+    backOff();
+  }
+
+  /**
+   * A write to the second store failed so index needs syncing once it can be reached again
+   */
+  private void ioException(IOException e, Index index) {
+    missed(index);
+    ioException(e);
   }
 
   /**
    * Call this when we successfully did something on the second store so we think we can talk to it.
+   * If it may have missed something, such as before the first sync, a sync is scheduled through
+   * the same backoff as probes so that successes can't cause a burst of syncs.
    * 
    * @throws NigoriCryptographyException
    */
   private synchronized void ensureSynced() throws NigoriCryptographyException {
     if (noRemote) {
-      synchronized (syncThread) {
-        syncThread.notify();
-        doSync = true;
-      }
-      noRemote = false;
+      backOff();
     }
   }
 
   @Override
   public boolean authenticate() throws IOException, NigoriCryptographyException {
     boolean firstAuth = first.authenticate();
+    if (isDown()) {
+      return firstAuth;
+    }
     boolean secondAuth = true;
     try {
       secondAuth = second.authenticate();
@@ -138,15 +344,27 @@ public class LocalFirstSyncingNigoriDatastore extends SyncingNigoriDatastore {
   }
 
   @Override
-  public boolean put(Index index, Revision revision, byte[] value) throws IOException,
-      NigoriCryptographyException, UnauthorisedException {
-    boolean firstPut = first.put(index, revision, value);
+  public boolean put(final Index index, final Revision revision, final byte[] value)
+      throws IOException, NigoriCryptographyException, UnauthorisedException {
+    Operation<Boolean> put = new Operation<Boolean>() {
+      @Override
+      Boolean on(NigoriDatastore store) throws IOException, NigoriCryptographyException,
+          UnauthorisedException {
+        return store.put(index, revision, value);
+      }
+    };
+    StoreTask<Boolean> secondDone = isDown() ? null : inSecond(put);
+    boolean firstPut = inFirst(put, secondDone);
+    // checked again after the first put so that the index can't be missed by a catch up
+    if (secondDone == null && missedWhileDown(index)) {
+      return firstPut;
+    }
     boolean secondPut = true;
     try {
-      secondPut = second.put(index, revision, value);
+      secondPut = secondDone == null ? put.on(second) : await(secondDone);
       ensureSynced();
     } catch (IOException e) {
-      ioException(e);
+      ioException(e, index);
     }
     return firstPut && secondPut;
   }
@@ -154,51 +372,70 @@ public class LocalFirstSyncingNigoriDatastore extends SyncingNigoriDatastore {
   @Override
   public List<Index> getIndices() throws NigoriCryptographyException, IOException,
       UnauthorisedException {
-    List<Index> firstIndices = first.getIndices();
+    Operation<List<Index>> getIndices = new Operation<List<Index>>() {
+      @Override
+      List<Index> on(NigoriDatastore store) throws IOException, NigoriCryptographyException,
+          UnauthorisedException {
+        return store.getIndices();
+      }
+    };
+    StoreTask<List<Index>> secondAnswer = isDown() ? null : inSecond(getIndices);
+    List<Index> firstIndices = inFirst(getIndices, secondAnswer);
+    if (secondAnswer == null) {
+      return firstIndices;
+    }
     List<Index> secondIndices = new ArrayList<Index>();
     try {
-      secondIndices = second.getIndices();
+      secondIndices = await(secondAnswer);
       ensureSynced();
     } catch (IOException e) {
       ioException(e);
     }
-    secondIndices.removeAll(firstIndices);
-    firstIndices.addAll(secondIndices);// TODO(drt24) do a proper union and sync here
-    return firstIndices;
+    return SetDifference.union(firstIndices, secondIndices);
   }
 
   @Override
-  public List<RevValue> get(Index index) throws IOException, NigoriCryptographyException,
+  public List<RevValue> get(final Index index) throws IOException, NigoriCryptographyException,
       UnauthorisedException {
-    List<RevValue> firstRevVals = first.get(index);
+    Operation<List<RevValue>> get = new Operation<List<RevValue>>() {
+      @Override
+      List<RevValue> on(NigoriDatastore store) throws IOException, NigoriCryptographyException,
+          UnauthorisedException {
+        return store.get(index);
+      }
+    };
+    StoreTask<List<RevValue>> secondAnswer = isDown() ? null : inSecond(get);
+    List<RevValue> firstRevVals = inFirst(get, secondAnswer);
+    if (secondAnswer == null) {
+      return firstRevVals;
+    }
     List<RevValue> secondRevVals = null;
     try {
-      secondRevVals = second.get(index);
+      secondRevVals = await(secondAnswer);
       ensureSynced();
     } catch (IOException e) {
       ioException(e);
     }
-    if (firstRevVals == null) {
-      if (secondRevVals == null) {
-        return null;
-      } else {
-        return secondRevVals;
-      }
-    }
-    if (secondRevVals == null) {
-      return firstRevVals;
-    }
-    secondRevVals.removeAll(firstRevVals);
-    firstRevVals.addAll(secondRevVals);// TODO(drt24) do a proper union and sync here
-    return firstRevVals;
+    return SetDifference.union(firstRevVals, secondRevVals);
   }
 
   @Override
-  public byte[] getRevision(Index index, Revision revision) throws IOException,
+  public byte[] getRevision(final Index index, final Revision revision) throws IOException,
       NigoriCryptographyException, UnauthorisedException {
-    byte[] firstValue = first.getRevision(index, revision);
+    Operation<byte[]> getRevision = new Operation<byte[]>() {
+      @Override
+      byte[] on(NigoriDatastore store) throws IOException, NigoriCryptographyException,
+          UnauthorisedException {
+        return store.getRevision(index, revision);
+      }
+    };
+    StoreTask<byte[]> secondAnswer = isDown() ? null : inSecond(getRevision);
+    byte[] firstValue = inFirst(getRevision, secondAnswer);
+    if (secondAnswer == null) {
+      return firstValue;
+    }
     try {
-      byte[] secondValue = second.getRevision(index, revision);
+      byte[] secondValue = await(secondAnswer);
       if (secondValue != null) {
         if (firstValue == null) {
           ensureSynced();
@@ -218,42 +455,84 @@ public class LocalFirstSyncingNigoriDatastore extends SyncingNigoriDatastore {
   }
 
   @Override
-  public List<Revision> getRevisions(Index index) throws NigoriCryptographyException, IOException,
-      UnauthorisedException {
-    List<Revision> firstRevisions = first.getRevisions(index);
-    List<Revision> secondRevisions = null;
+  public List<RevValue> getRevisionValues(final Index index, final List<Revision> revisions)
+      throws NigoriCryptographyException, IOException, UnauthorisedException {
+    Operation<List<RevValue>> getRevisionValues = new Operation<List<RevValue>>() {
+      @Override
+      List<RevValue> on(NigoriDatastore store) throws IOException, NigoriCryptographyException,
+          UnauthorisedException {
+        return store.getRevisionValues(index, revisions);
+      }
+    };
+    StoreTask<List<RevValue>> secondAnswer = isDown() ? null : inSecond(getRevisionValues);
+    List<RevValue> firstRevVals = inFirst(getRevisionValues, secondAnswer);
+    if (secondAnswer == null) {
+      return firstRevVals;
+    }
+    Map<Revision, byte[]> firstValues = valueMap(firstRevVals);
     try {
-      secondRevisions = second.getRevisions(index);
+      Map<Revision, byte[]> secondValues = valueMap(await(secondAnswer));
+      boolean different = false;
+      for (Revision revision : revisions) {
+        byte[] firstValue = firstValues.get(revision);
+        byte[] secondValue = secondValues.get(revision);
+        if (firstValue == null) {
+          if (secondValue != null) {
+            firstValues.put(revision, secondValue);
+          }
+        } else if (!Arrays.equals(firstValue, secondValue)) {
+          different = true;
+        }
+      }
+      if (different) {
+        throw new IOException("Stores returned different values for the same revision");
+      }
       ensureSynced();
     } catch (IOException e) {
       ioException(e);
     }
-    if (firstRevisions == null) {
-      if (secondRevisions == null) {
-        return null;
-      } else {
-        return secondRevisions;
+    List<RevValue> answer = new ArrayList<RevValue>(firstValues.size());
+    for (Revision revision : revisions) {
+      byte[] value = firstValues.get(revision);
+      if (value != null) {
+        answer.add(new RevValue(revision, value));
       }
     }
-    if (secondRevisions == null) {
+    return answer;
+  }
+
+  @Override
+  public List<Revision> getRevisions(final Index index) throws NigoriCryptographyException,
+      IOException, UnauthorisedException {
+    Operation<List<Revision>> getRevisions = new Operation<List<Revision>>() {
+      @Override
+      List<Revision> on(NigoriDatastore store) throws IOException, NigoriCryptographyException,
+          UnauthorisedException {
+        return store.getRevisions(index);
+      }
+    };
+    StoreTask<List<Revision>> secondAnswer = isDown() ? null : inSecond(getRevisions);
+    List<Revision> firstRevisions = inFirst(getRevisions, secondAnswer);
+    if (secondAnswer == null) {
       return firstRevisions;
     }
-    secondRevisions.removeAll(firstRevisions);
-    firstRevisions.addAll(secondRevisions);// TODO(drt24) do a proper union and sync here
-    return firstRevisions;
+    List<Revision> secondRevisions = null;
+    try {
+      secondRevisions = await(secondAnswer);
+      ensureSynced();
+    } catch (IOException e) {
+      ioException(e);
+    }
+    return SetDifference.union(firstRevisions, secondRevisions);
   }
 
   // TODO(drt24) since deletes won't sync properly at the moment we require both stores to work
   @Override
   public boolean delete(Index index, byte[] token) throws NigoriCryptographyException, IOException,
       UnauthorisedException {
-    boolean firstAt = first.authenticate();
-    boolean secondAuth = second.authenticate();
-    if (!(firstAt & secondAuth)) {
+    if (isDown() || !super.authenticate()) {
       return false;// can't delete from both atm
     }
-    boolean firstDel = first.delete(index, token);
-    boolean secondDel = second.delete(index, token);
-    return firstDel & secondDel;
+    return super.delete(index, token);
   }
 }
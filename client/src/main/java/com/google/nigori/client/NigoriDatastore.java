@@ -67,6 +67,20 @@ public interface NigoriDatastore extends Datastore {
   public List<Revision> getRevisions(Index index) throws NigoriCryptographyException, IOException,
       UnauthorisedException;
 
+  /**
+   * Retrieve the values of several revisions of an index at once, which is cheaper than calling
+   * {@link #getRevision(Index, Revision)} for each of them.
+   * 
+   * @param index
+   * @param revisions
+   * @return the revision-values for those of the revisions which exist, in the same order
+   * @throws NigoriCryptographyException
+   * @throws IOException
+   * @throws UnauthorisedException
+   */
+  public List<RevValue> getRevisionValues(Index index, List<Revision> revisions)
+      throws NigoriCryptographyException, IOException, UnauthorisedException;
+
   /**
    * Delete the index (and associated revisions and values) on the server
    * 
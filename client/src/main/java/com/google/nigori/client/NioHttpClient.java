@@ -0,0 +1,1081 @@
+/*
+ * Copyright (C) 2012 Daniel Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLParameters;
+
+import com.google.nigori.common.ContentEncoding;
+import com.google.nigori.common.MessageLibrary;
+
+/**
+ * An event driven HTTP/1.1 client which makes requests without blocking the caller: one thread
+ * uses a {@link Selector} to drive all the connections and a few more threads run the callbacks,
+ * so hundreds of requests can be in flight at once without a thread each.
+ *
+ * Like {@link HttpConnectionPool} connections are kept alive and reused, with at most
+ * {@link #getMaxConnectionsPerServer()} to each server; requests beyond that wait for a connection
+ * to become free. Requests are not pipelined. Unlike {@link Http} connections are always made
+ * directly rather than through a proxy and redirects are not followed.
+ *
+ * @author drt24
+ *
+ */
+public class NioHttpClient {
+  private static final Logger log = Logger.getLogger(NioHttpClient.class.getName());
+
+  public static final int DEFAULT_MAX_CONNECTIONS_PER_SERVER = 16;
+  public static final int DEFAULT_CALLBACK_THREADS = 2;
+  /**
+   * How often in milliseconds to check for requests which have taken too long
+   */
+  private static final int SWEEP_INTERVAL = 100;
+  private static final int MAX_LINE_LENGTH = 8 * 1024;
+  private static final int BUFFER_SIZE = 16 * 1024;
+  private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+  private static NioHttpClient defaultClient = null;
+
+  private final int connectTimeout;
+  private final int readTimeout;
+  private final int requestTimeout;
+  private final int maxConnectionsPerServer;
+  private final int keepAlive;
+  private final SSLContext sslContext;
+  private final HttpConnectionPool.ConnectionMetrics metrics =
+      new HttpConnectionPool.ConnectionMetrics();
+
+  private final Selector selector;
+  private final ExecutorService callbacks;
+  private final ConcurrentLinkedQueue<Exchange> submitted = new ConcurrentLinkedQueue<Exchange>();
+  private volatile boolean closed = false;
+
+  // Only used by the selector thread
+  private final Map<String, Server> servers = new HashMap<String, Server>();
+  private final Set<Connection> connections = new HashSet<Connection>();
+
+  /**
+   * @return a client with the default settings which is shared by everything that isn't given one
+   * @throws IOException if the selector could not be opened
+   */
+  public static synchronized NioHttpClient getDefault() throws IOException {
+    if (defaultClient == null || defaultClient.closed) {
+      defaultClient = new NioHttpClient();
+    }
+    return defaultClient;
+  }
+
+  public NioHttpClient() throws IOException {
+    this(HttpConnectionPool.DEFAULT_CONNECT_TIMEOUT, HttpConnectionPool.DEFAULT_READ_TIMEOUT,
+        HttpConnectionPool.DEFAULT_REQUEST_TIMEOUT, DEFAULT_MAX_CONNECTIONS_PER_SERVER,
+        HttpConnectionPool.DEFAULT_KEEP_ALIVE, DEFAULT_CALLBACK_THREADS, null);
+  }
+
+  /**
+   * @param connectTimeout the longest to wait for a connection to be set up in milliseconds
+   * @param readTimeout the longest to wait for the server to send something in milliseconds
+   * @param requestTimeout the longest a whole request, including waiting for a connection,
+   *          connecting and reading the response, can take in milliseconds
+   * @param maxConnectionsPerServer the most connections to have open to each server at once
+   * @param keepAlive how long in milliseconds to keep an idle connection before closing it
+   * @param callbackThreads how many threads to run callbacks on
+   * @param sslContext used for https connections, null for the default
+   * @throws IOException if the selector could not be opened
+   */
+  public NioHttpClient(int connectTimeout, int readTimeout, int requestTimeout,
+      int maxConnectionsPerServer, int keepAlive, int callbackThreads, SSLContext sslContext)
+      throws IOException {
+    if (connectTimeout <= 0 || readTimeout <= 0 || requestTimeout <= 0) {
+      throw new IllegalArgumentException("Timeouts must be positive");
+    }
+    if (maxConnectionsPerServer <= 0 || callbackThreads <= 0) {
+      throw new IllegalArgumentException("Must allow at least one connection and thread");
+    }
+    if (keepAlive < 0) {
+      throw new IllegalArgumentException("Keep alive must not be negative");
+    }
+    this.connectTimeout = connectTimeout;
+    this.readTimeout = readTimeout;
+    this.requestTimeout = requestTimeout;
+    this.maxConnectionsPerServer = maxConnectionsPerServer;
+    this.keepAlive = keepAlive;
+    try {
+      this.sslContext = sslContext == null ? SSLContext.getDefault() : sslContext;
+    } catch (NoSuchAlgorithmException e) {
+      throw new IOException(e);
+    }
+    this.selector = Selector.open();
+    this.callbacks = Executors.newFixedThreadPool(callbackThreads, new DaemonThreadFactory());
+    Thread loop = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        loop();
+      }
+    }, "NioHttpClient selector");
+    loop.setDaemon(true);
+    loop.start();
+  }
+
+  public int getMaxConnectionsPerServer() {
+    return maxConnectionsPerServer;
+  }
+
+  public int getRequestTimeout() {
+    return requestTimeout;
+  }
+
+  public HttpConnectionPool.ConnectionMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Run command on one of the threads used for callbacks
+   */
+  public void execute(Runnable command) {
+    callbacks.execute(command);
+  }
+
+  /**
+   * Send a POST request, callback is given the whole response, including unsuccessful ones, or the
+   * reason no response was received. Callbacks are run on the client's callback threads.
+   *
+   * @param url
+   * @param data the body of the request
+   * @param mimeType of data
+   * @param accept the mimetypes which can be accepted in the response
+   * @param callback
+   */
+  public void post(URL url, byte[] data, String mimeType, String accept,
+      AsyncCallback<HttpResponse> callback) {
+    post(url, data, mimeType, accept, null, callback);
+  }
+
+  /**
+   * Send a POST request whose body has been compressed, the response body is decompressed before
+   * it is given to the callback.
+   *
+   * @param contentEncoding how data has been compressed, null if it hasn't
+   * @see #post(URL, byte[], String, String, AsyncCallback)
+   */
+  public void post(URL url, byte[] data, String mimeType, String accept, String contentEncoding,
+      AsyncCallback<HttpResponse> callback) {
+    if (closed) {
+      callback.onFailure(new IOException("Client has been closed"));
+      return;
+    }
+    String protocol = url.getProtocol();
+    if (!"http".equals(protocol) && !"https".equals(protocol)) {
+      callback.onFailure(new IOException("Unsupported protocol: " + protocol));
+      return;
+    }
+    int port = HttpConnectionPool.port(url);
+    String host = port == url.getDefaultPort() ? url.getHost() : url.getHost() + ":" + port;
+    StringBuilder headers = new StringBuilder();
+    headers.append("POST ").append(url.getFile()).append(" HTTP/1.1\r\n");
+    headers.append("Host: ").append(host).append("\r\n");
+    headers.append("Content-Length: ").append(data.length).append("\r\n");
+    headers.append("Content-Type: ").append(mimeType).append("\r\n");
+    headers.append("Accept: ").append(accept).append("\r\n");
+    headers.append("Accept-Encoding: ").append(ContentEncoding.ACCEPTED).append("\r\n");
+    if (contentEncoding != null) {
+      headers.append("Content-Encoding: ").append(contentEncoding).append("\r\n");
+    }
+    headers.append("Connection: keep-alive\r\n");
+    headers.append("\r\n");
+    byte[] head;
+    try {
+      head = headers.toString().getBytes(MessageLibrary.CHARSET);
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);// never happens as UTF-8 is supported
+    }
+    byte[] request = new byte[head.length + data.length];
+    System.arraycopy(head, 0, request, 0, head.length);
+    System.arraycopy(data, 0, request, head.length, data.length);
+
+    long start = System.nanoTime();
+    submitted.add(new Exchange(protocol + "://" + host, url.getHost(), port, "https"
+        .equals(protocol), request, callback, start, start
+        + TimeUnit.MILLISECONDS.toNanos(requestTimeout)));
+    selector.wakeup();
+  }
+
+  /**
+   * Stop the client, failing any requests which have not finished and closing all connections
+   */
+  public void close() {
+    closed = true;
+    selector.wakeup();
+  }
+
+  private void loop() {
+    try {
+      while (!closed) {
+        selector.select(SWEEP_INTERVAL);
+        Exchange exchange;
+        while ((exchange = submitted.poll()) != null) {
+          dispatch(exchange);
+        }
+        Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+        while (selected.hasNext()) {
+          SelectionKey key = selected.next();
+          selected.remove();
+          Connection connection = (Connection) key.attachment();
+          try {
+            if (key.isValid() && key.isConnectable()) {
+              connection.finishConnect();
+            } else if (key.isValid()) {
+              connection.pump();
+            }
+          } catch (IOException e) {
+            connection.fail(e);
+          } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Unexpected failure of connection", e);
+            connection.fail(new IOException(e));
+          }
+        }
+        sweep();
+      }
+    } catch (Throwable t) {
+      log.log(Level.SEVERE, "Selector thread failed", t);
+      closed = true;
+    } finally {
+      shutdown();
+    }
+  }
+
+  /**
+   * Time out requests and idle connections
+   */
+  private void sweep() {
+    long now = System.nanoTime();
+    for (Connection connection : new ArrayList<Connection>(connections)) {
+      connection.checkTimeouts(now);
+    }
+    for (Server server : servers.values()) {
+      for (Iterator<Exchange> it = server.waiting.iterator(); it.hasNext();) {
+        Exchange exchange = it.next();
+        if (now - exchange.deadline > 0) {
+          it.remove();
+          exchange.fail(new SocketTimeoutException("Request timed out waiting for a connection"));
+        }
+      }
+    }
+  }
+
+  private void shutdown() {
+    IOException closing = new IOException("Client has been closed");
+    for (Connection connection : new ArrayList<Connection>(connections)) {
+      connection.fail(closing);
+    }
+    for (Server server : servers.values()) {
+      for (Exchange exchange : server.waiting) {
+        exchange.fail(closing);
+      }
+      server.waiting.clear();
+    }
+    Exchange exchange;
+    while ((exchange = submitted.poll()) != null) {
+      exchange.fail(closing);
+    }
+    try {
+      selector.close();
+    } catch (IOException e) {
+      log.log(Level.WARNING, "Could not close selector", e);
+    }
+    callbacks.shutdown();
+  }
+
+  private void dispatch(Exchange exchange) {
+    Server server = servers.get(exchange.server);
+    if (server == null) {
+      server = new Server(exchange);
+      servers.put(exchange.server, server);
+    }
+    Connection connection = server.idle.pollLast();
+    if (connection != null) {
+      metrics.reused();
+      connection.start(exchange);
+    } else if (server.open < maxConnectionsPerServer) {
+      open(server, exchange);
+    } else {
+      server.waiting.add(exchange);
+    }
+  }
+
+  private void open(Server server, Exchange exchange) {
+    Connection connection = null;
+    try {
+      connection = new Connection(server, exchange);
+      connection.connect();
+    } catch (IOException e) {
+      if (connection != null) {
+        connection.fail(e);
+      } else {
+        exchange.fail(e);
+      }
+    }
+  }
+
+  /**
+   * A connection has finished with its request and can take on another or has been closed
+   */
+  private void next(Server server, Connection connection) {
+    Exchange waiting = server.waiting.poll();
+    if (waiting == null) {
+      if (connection != null) {
+        server.idle.addLast(connection);
+      }
+    } else if (connection != null) {
+      metrics.reused();
+      connection.start(waiting);
+    } else {
+      open(server, waiting);
+    }
+  }
+
+  /**
+   * Connections and requests for one scheme://host:port
+   */
+  private static class Server {
+    private final String host;
+    private final int port;
+    private final boolean https;
+    private final LinkedList<Connection> idle = new LinkedList<Connection>();
+    private final LinkedList<Exchange> waiting = new LinkedList<Exchange>();
+    private int open = 0;
+
+    Server(Exchange exchange) {
+      this.host = exchange.host;
+      this.port = exchange.port;
+      this.https = exchange.https;
+    }
+  }
+
+  /**
+   * A request and what to do with its response
+   */
+  private class Exchange {
+    private final String server;
+    private final String host;
+    private final int port;
+    private final boolean https;
+    private final byte[] request;
+    private final AsyncCallback<HttpResponse> callback;
+    private final long start;
+    private final long deadline;
+    private boolean retried = false;
+
+    Exchange(String server, String host, int port, boolean https, byte[] request,
+        AsyncCallback<HttpResponse> callback, long start, long deadline) {
+      this.server = server;
+      this.host = host;
+      this.port = port;
+      this.https = https;
+      this.request = request;
+      this.callback = callback;
+      this.start = start;
+      this.deadline = deadline;
+    }
+
+    void succeed(final HttpResponse response) {
+      metrics.request(start, false);
+      callback(new Runnable() {
+        @Override
+        public void run() {
+          callback.onSuccess(response);
+        }
+      });
+    }
+
+    void fail(final Throwable cause) {
+      metrics.request(start, true);
+      callback(new Runnable() {
+        @Override
+        public void run() {
+          callback.onFailure(cause);
+        }
+      });
+    }
+
+    private void callback(Runnable command) {
+      try {
+        callbacks.execute(command);
+      } catch (RuntimeException e) {
+        // the callback threads have been shut down so run it here rather than lose it
+        command.run();
+      }
+    }
+  }
+
+  /**
+   * One connection to a server which is used for one {@link Exchange} at a time and all the state
+   * needed to carry on reading and writing it whenever the selector says it is ready.
+   */
+  private class Connection {
+    private final Server server;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final long connectStart;
+    private SSLEngine engine = null;
+    private boolean connected = false;
+    private boolean handshaken = false;
+    private boolean reused = false;
+    private long lastActive;
+
+    private Exchange exchange;
+    private ByteBuffer out;
+    /**
+     * Decrypted bytes read from the server, in write mode
+     */
+    private ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+    /**
+     * TLS records read from the server, in write mode
+     */
+    private ByteBuffer netIn;
+    /**
+     * TLS records waiting to be written to the server, in read mode
+     */
+    private ByteBuffer netOut;
+    private final ResponseParser parser = new ResponseParser();
+
+    Connection(Server server, Exchange exchange) throws IOException {
+      this.server = server;
+      this.exchange = exchange;
+      this.out = ByteBuffer.wrap(exchange.request);
+      this.connectStart = System.nanoTime();
+      this.lastActive = connectStart;
+      this.channel = SocketChannel.open();
+      boolean registered = false;
+      try {
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+        this.key = channel.register(selector, 0, this);
+        registered = true;
+      } finally {
+        if (!registered) {
+          channel.close();
+        }
+      }
+      server.open++;
+      connections.add(this);
+    }
+
+    void connect() throws IOException {
+      // Resolving the name blocks, but it is usually cached by the JVM
+      InetSocketAddress address = new InetSocketAddress(server.host, server.port);
+      if (address.isUnresolved()) {
+        throw new IOException("Unknown host: " + server.host);
+      }
+      if (channel.connect(address)) {
+        connected();
+      } else {
+        key.interestOps(SelectionKey.OP_CONNECT);
+      }
+    }
+
+    void finishConnect() throws IOException {
+      if (channel.finishConnect()) {
+        connected();
+      }
+    }
+
+    private void connected() throws IOException {
+      connected = true;
+      lastActive = System.nanoTime();
+      if (server.https) {
+        engine = sslContext.createSSLEngine(server.host, server.port);
+        engine.setUseClientMode(true);
+        SSLParameters parameters = engine.getSSLParameters();
+        parameters.setEndpointIdentificationAlgorithm("HTTPS");
+        engine.setSSLParameters(parameters);
+        netIn = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+        netOut = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+        netOut.flip();
+        in = ByteBuffer.allocate(Math.max(BUFFER_SIZE, engine.getSession()
+            .getApplicationBufferSize()));
+        engine.beginHandshake();
+      } else {
+        metrics.opened(connectStart);
+      }
+      pump();
+    }
+
+    void start(Exchange exchange) {
+      this.exchange = exchange;
+      this.out = ByteBuffer.wrap(exchange.request);
+      this.reused = true;
+      this.lastActive = System.nanoTime();
+      parser.reset();
+      // This may be called while reading the previous response so leave the selector to start
+      // writing, a connected socket is almost always writable.
+      awaitReady();
+    }
+
+    /**
+     * Wait to read, and also write if there is anything to write
+     */
+    private void awaitReady() {
+      if (!key.isValid()) {
+        return;
+      }
+      int ops = SelectionKey.OP_READ;
+      if (out != null && out.hasRemaining()) {
+        ops |= SelectionKey.OP_WRITE;
+      }
+      key.interestOps(ops);
+    }
+
+    /**
+     * Write and read as much as possible without blocking
+     */
+    void pump() throws IOException {
+      if (!connected) {
+        return;
+      }
+      if (engine == null) {
+        pumpPlain();
+      } else {
+        pumpTls();
+      }
+    }
+
+    private void pumpPlain() throws IOException {
+      if (out != null && out.hasRemaining()) {
+        if (channel.write(out) > 0) {
+          lastActive = System.nanoTime();
+        }
+        if (out.hasRemaining()) {
+          key.interestOps(SelectionKey.OP_WRITE);
+          return;
+        }
+      }
+      while (key.isValid()) {
+        int read = channel.read(in);
+        if (read == -1) {
+          eof();
+          return;
+        }
+        if (read == 0) {
+          break;
+        }
+        lastActive = System.nanoTime();
+        consume();
+      }
+      awaitReady();
+    }
+
+    private void pumpTls() throws IOException {
+      if (!flushNet()) {
+        return;
+      }
+      while (key.isValid()) {
+        HandshakeStatus handshake = engine.getHandshakeStatus();
+        if (handshake == HandshakeStatus.NEED_TASK) {
+          Runnable task;
+          while ((task = engine.getDelegatedTask()) != null) {
+            task.run();
+          }
+          continue;
+        }
+        boolean handshaking = handshake != HandshakeStatus.NOT_HANDSHAKING
+            && handshake != HandshakeStatus.FINISHED;
+        if (handshake == HandshakeStatus.NEED_WRAP
+            || (!handshaking && out != null && out.hasRemaining())) {
+          netOut.clear();
+          SSLEngineResult result = engine.wrap(handshaking || out == null ? EMPTY : out, netOut);
+          netOut.flip();
+          if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+            throw new EOFException("TLS session closed");
+          }
+          handshakeFinished(result);
+          if (!flushNet()) {
+            return;
+          }
+          continue;
+        }
+        netIn.flip();
+        SSLEngineResult result;
+        try {
+          result = engine.unwrap(netIn, in);
+        } finally {
+          netIn.compact();
+        }
+        handshakeFinished(result);
+        switch (result.getStatus()) {
+          case OK:
+            if (result.bytesProduced() > 0) {
+              consume();
+            }
+            if (result.bytesConsumed() > 0 || result.bytesProduced() > 0
+                || engine.getHandshakeStatus() != handshake) {
+              continue;
+            }
+            // fall through as nothing could be done without more from the server
+          case BUFFER_UNDERFLOW:
+            if (!netIn.hasRemaining()) {
+              netIn = grow(netIn, engine.getSession().getPacketBufferSize());
+            }
+            int read = channel.read(netIn);
+            if (read == -1) {
+              eof();
+              return;
+            }
+            if (read == 0) {
+              if (handshaking) {
+                key.interestOps(SelectionKey.OP_READ);
+              } else {
+                awaitReady();
+              }
+              return;
+            }
+            lastActive = System.nanoTime();
+            continue;
+          case BUFFER_OVERFLOW:
+            consume();
+            if (in.position() > 0) {
+              // the parser didn't want what was there already
+              return;
+            }
+            in = grow(in, engine.getSession().getApplicationBufferSize());
+            continue;
+          case CLOSED:
+            eof();
+            return;
+        }
+      }
+    }
+
+    private void handshakeFinished(SSLEngineResult result) {
+      // FINISHED is also seen after later session tickets so only count the first
+      if (result.getHandshakeStatus() == HandshakeStatus.FINISHED && !handshaken) {
+        handshaken = true;
+        metrics.opened(connectStart);
+      }
+    }
+
+    /**
+     * @return true if all of {@link #netOut} has been written
+     */
+    private boolean flushNet() throws IOException {
+      if (netOut.hasRemaining()) {
+        if (channel.write(netOut) > 0) {
+          lastActive = System.nanoTime();
+        }
+        if (netOut.hasRemaining()) {
+          key.interestOps(SelectionKey.OP_WRITE);
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private ByteBuffer grow(ByteBuffer buffer, int size) {
+      ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() + size);
+      buffer.flip();
+      larger.put(buffer);
+      return larger;
+    }
+
+    /**
+     * Give what has been read to the parser
+     */
+    private void consume() throws IOException {
+      in.flip();
+      try {
+        if (exchange == null) {
+          if (in.hasRemaining()) {
+            throw new IOException("Server sent data on an idle connection");
+          }
+          return;
+        }
+        HttpResponse response = parser.parse(in);
+        if (response != null) {
+          if (in.hasRemaining()) {
+            // the server sent more than one response so we can't trust the connection
+            Exchange done = exchange;
+            exchange = null;
+            done.succeed(response);
+            close();
+            next(server, null);
+            return;
+          }
+          finished(response, parser.keepAlive);
+        }
+      } finally {
+        in.compact();
+      }
+    }
+
+    private void eof() throws IOException {
+      if (exchange != null) {
+        HttpResponse response = parser.eof();
+        if (response != null) {
+          finished(response, false);
+          return;
+        }
+        if (reused && !parser.started() && !exchange.retried) {
+          // The server closed this idle connection just as we sent the request on it, so it never
+          // saw the request and it can be sent again on a new connection.
+          Exchange retry = exchange;
+          retry.retried = true;
+          exchange = null;
+          close();
+          dispatch(retry);
+          return;
+        }
+        throw new EOFException("Connection closed before response was complete");
+      }
+      server.idle.remove(this);
+      close();
+      next(server, null);
+    }
+
+    private void finished(HttpResponse response, boolean keepAlive) {
+      Exchange done = exchange;
+      exchange = null;
+      out = null;
+      lastActive = System.nanoTime();
+      done.succeed(response);
+      if (keepAlive) {
+        next(server, this);
+      } else {
+        close();
+        next(server, null);
+      }
+    }
+
+    void checkTimeouts(long now) {
+      if (exchange != null) {
+        if (now - exchange.deadline > 0) {
+          fail(new SocketTimeoutException("Request timed out"));
+        } else if (!connected
+            && now - lastActive > TimeUnit.MILLISECONDS.toNanos(connectTimeout)) {
+          fail(new SocketTimeoutException("Connect timed out"));
+        } else if (connected && now - lastActive > TimeUnit.MILLISECONDS.toNanos(readTimeout)) {
+          fail(new SocketTimeoutException("Read timed out"));
+        }
+      } else if (now - lastActive > TimeUnit.MILLISECONDS.toNanos(keepAlive)) {
+        server.idle.remove(this);
+        close();
+      }
+    }
+
+    /**
+     * Close the connection, failing its request if there is one
+     */
+    void fail(Throwable cause) {
+      Exchange failed = exchange;
+      exchange = null;
+      server.idle.remove(this);
+      close();
+      if (failed != null) {
+        failed.fail(cause);
+      }
+      if (!closed) {
+        next(server, null);
+      }
+    }
+
+    private void close() {
+      if (!connections.remove(this)) {
+        return;
+      }
+      server.open--;
+      metrics.closed();
+      key.cancel();
+      try {
+        channel.close();
+      } catch (IOException e) {
+        // we don't care as we are done with it
+      }
+    }
+  }
+
+  /**
+   * Incrementally parses a response as it arrives, buffering the whole body.
+   */
+  private static class ResponseParser {
+    private enum State {
+      STATUS, HEADERS, BODY, CHUNK_SIZE, CHUNK, CHUNK_END, TRAILERS, UNTIL_CLOSE
+    }
+
+    private State state;
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private boolean started;
+    private int code;
+    private String message;
+    private long contentLength;
+    private boolean chunked;
+    private boolean keepAlive;
+    private long remaining;
+    private String contentEncoding;
+    private String acceptEncoding;
+
+    ResponseParser() {
+      reset();
+    }
+
+    void reset() {
+      state = State.STATUS;
+      line.reset();
+      body.reset();
+      started = false;
+      code = 0;
+      message = null;
+      startHeaders();
+    }
+
+    private void startHeaders() {
+      contentLength = -1;
+      chunked = false;
+      keepAlive = true;
+      remaining = 0;
+      contentEncoding = null;
+      acceptEncoding = null;
+    }
+
+    /**
+     * @return whether any of the response has been received
+     */
+    boolean started() {
+      return started;
+    }
+
+    /**
+     * @return the response if it is complete, in which case anything left in input belongs to
+     *         something else
+     */
+    HttpResponse parse(ByteBuffer input) throws IOException {
+      if (input.hasRemaining()) {
+        started = true;
+      }
+      while (input.hasRemaining()) {
+        switch (state) {
+          case BODY:
+          case CHUNK:
+            int length = (int) Math.min(remaining, input.remaining());
+            body.write(input.array(), input.arrayOffset() + input.position(), length);
+            input.position(input.position() + length);
+            remaining -= length;
+            if (remaining == 0) {
+              if (state == State.BODY) {
+                return response();
+              }
+              state = State.CHUNK_END;
+            }
+            break;
+          case UNTIL_CLOSE:
+            body.write(input.array(), input.arrayOffset() + input.position(), input.remaining());
+            input.position(input.limit());
+            break;
+          default:
+            String read = readLine(input);
+            if (read == null) {
+              break;
+            }
+            HttpResponse response = line(read);
+            if (response != null) {
+              return response;
+            }
+        }
+      }
+      return null;
+    }
+
+    /**
+     * The server closed the connection
+     *
+     * @return the response if it was delimited by the connection closing, otherwise null
+     */
+    HttpResponse eof() throws IOException {
+      if (state == State.UNTIL_CLOSE) {
+        return response();
+      }
+      return null;
+    }
+
+    private HttpResponse line(String read) throws IOException {
+      switch (state) {
+        case STATUS:
+          String[] status = read.split(" ", 3);
+          if (status.length < 2 || !status[0].startsWith("HTTP/")) {
+            throw new IOException("Invalid status line: " + read);
+          }
+          try {
+            code = Integer.parseInt(status[1]);
+          } catch (NumberFormatException e) {
+            throw new IOException("Invalid status line: " + read);
+          }
+          message = status.length > 2 ? status[2] : "";
+          startHeaders();
+          keepAlive = "HTTP/1.1".equals(status[0]);
+          state = State.HEADERS;
+          return null;
+        case HEADERS:
+          if (read.length() > 0) {
+            header(read);
+            return null;
+          }
+          if (code >= 100 && code < 200) {
+            // an interim response, the real one follows
+            state = State.STATUS;
+            return null;
+          }
+          if (code == 204 || code == 304 || (!chunked && contentLength == 0)) {
+            return response();
+          }
+          if (chunked) {
+            state = State.CHUNK_SIZE;
+          } else if (contentLength > 0) {
+            remaining = contentLength;
+            state = State.BODY;
+          } else {
+            keepAlive = false;
+            state = State.UNTIL_CLOSE;
+          }
+          return null;
+        case CHUNK_SIZE:
+          int extension = read.indexOf(';');
+          String size = (extension == -1 ? read : read.substring(0, extension)).trim();
+          try {
+            remaining = Long.parseLong(size, 16);
+          } catch (NumberFormatException e) {
+            throw new IOException("Invalid chunk size: " + read);
+          }
+          state = remaining == 0 ? State.TRAILERS : State.CHUNK;
+          return null;
+        case CHUNK_END:
+          state = State.CHUNK_SIZE;
+          return null;
+        case TRAILERS:
+          if (read.length() == 0) {
+            return response();
+          }
+          return null;
+        default:
+          throw new IllegalStateException("Not reading a line in " + state);
+      }
+    }
+
+    private void header(String read) throws IOException {
+      int colon = read.indexOf(':');
+      if (colon <= 0) {
+        return;
+      }
+      String name = read.substring(0, colon).trim();
+      String value = read.substring(colon + 1).trim();
+      if ("Content-Length".equalsIgnoreCase(name)) {
+        try {
+          contentLength = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+          throw new IOException("Invalid Content-Length: " + value);
+        }
+        if (contentLength > Integer.MAX_VALUE) {
+          throw new IOException("Response too large: " + value);
+        }
+      } else if ("Transfer-Encoding".equalsIgnoreCase(name)) {
+        chunked = value.toLowerCase().contains("chunked");
+      } else if ("Connection".equalsIgnoreCase(name)) {
+        if ("close".equalsIgnoreCase(value)) {
+          keepAlive = false;
+        } else if ("keep-alive".equalsIgnoreCase(value)) {
+          keepAlive = true;
+        }
+      } else if (ContentEncoding.HEADER_CONTENT_ENCODING.equalsIgnoreCase(name)) {
+        contentEncoding = value;
+      } else if (ContentEncoding.HEADER_ACCEPT_ENCODING.equalsIgnoreCase(name)) {
+        acceptEncoding = value;
+      }
+    }
+
+    /**
+     * @return the next line without its line ending, or null if all of it hasn't arrived yet
+     */
+    private String readLine(ByteBuffer input) throws IOException {
+      while (input.hasRemaining()) {
+        byte read = input.get();
+        if (read == '\n') {
+          byte[] bytes = line.toByteArray();
+          line.reset();
+          int length =
+              bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1
+                  : bytes.length;
+          return new String(bytes, 0, length, MessageLibrary.CHARSET);
+        }
+        if (line.size() >= MAX_LINE_LENGTH) {
+          throw new IOException("Response line too long");
+        }
+        line.write(read);
+      }
+      return null;
+    }
+
+    /**
+     * The body is decompressed as it is read, so on the callback thread rather than the selector
+     */
+    private HttpResponse response() throws IOException {
+      InputStream input = new ByteArrayInputStream(body.toByteArray());
+      if (contentEncoding != null && body.size() > 0) {
+        input = ContentEncoding.decode(contentEncoding, input);
+      }
+      return new HttpResponse(code, message, input, acceptEncoding);
+    }
+  }
+
+  private static class DaemonThreadFactory implements ThreadFactory {
+    private final ThreadFactory factory = Executors.defaultThreadFactory();
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = factory.newThread(r);
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,453 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import com.google.nigori.common.Index;
+import com.google.nigori.common.Revision;
+
+/**
+ * The puts and deletes which have been made to the local store but not yet to the remote, in the
+ * order they were made, so that they can be sent to the remote when it can be reached again rather
+ * than syncing everything.
+ *
+ * Operations which no longer need sending are dropped as new ones are added: putting a revision
+ * which is already waiting to be put adds nothing and deleting an index drops everything waiting to
+ * be done to it before the delete.
+ *
+ * If there is a file the operations are appended to it as they are added, and acknowledgements of
+ * them having been sent after them, so that they survive the process exiting. Each record is an int
+ * length followed by that many bytes. The file is emptied once everything in it has been sent and
+ * rewritten with only what is still waiting once it is mostly records which are no longer needed.
+ * Acknowledgements are not synced to disk so after a crash an operation may be sent again, which
+ * does no harm. Only one outbox at a time may use a file, which is ensured by holding a lock on a
+ * file next to it with ".lock" on the end of its name until {@link #close()}.
+ *
+ * @author drt24
+ *
+ */
+class Outbox {
+
+  private static final Logger log = Logger.getLogger(Outbox.class.getSimpleName());
+
+  /**
+   * The file is not rewritten while it has fewer records than this
+   */
+  private static final int REWRITE_AT = 1000;
+
+  enum Type {
+    PUT, DELETE, ACKNOWLEDGE
+  }
+
+  /**
+   * An operation waiting to be sent to the remote
+   */
+  static final class Entry {
+    final long id;
+    final Type type;
+    final Index index;
+    /**
+     * null for deletes
+     */
+    final Revision revision;
+    /**
+     * The value for puts and the token for deletes
+     */
+    final byte[] value;
+
+    private Entry(long id, Type type, Index index, Revision revision, byte[] value) {
+      this.id = id;
+      this.type = type;
+      this.index = index;
+      this.revision = revision;
+      this.value = value;
+    }
+  }
+
+  private final File file;
+  private RandomAccessFile journal = null;
+  private RandomAccessFile lockFile = null;
+  private FileLock lock = null;
+  private boolean closed = false;
+  private final Map<Long, Entry> pending = new LinkedHashMap<Long, Entry>();
+  private final Map<Index, Map<Revision, Entry>> puts = new HashMap<Index, Map<Revision, Entry>>();
+  private final Map<Index, Entry> deletes = new HashMap<Index, Entry>();
+  private long nextId = 1;
+  private int records = 0;
+
+  /**
+   * An outbox which is only kept in memory and so is lost when the process exits
+   */
+  Outbox() {
+    this.file = null;
+  }
+
+  /**
+   * @param file where the operations are kept, if it exists the operations in it which haven't been
+   *          acknowledged are waiting to be sent
+   * @throws IOException if the file can't be read or written, or is being used by another outbox
+   */
+  Outbox(File file) throws IOException {
+    if (file == null) {
+      throw new IllegalArgumentException("File must not be null");
+    }
+    this.file = file;
+    lock();
+    try {
+      recover();
+      journal = new RandomAccessFile(file, "rw");
+      journal.seek(journal.length());
+      if (pending.isEmpty()) {
+        truncate();
+      } else {
+        log.info(pending.size() + " operations waiting to be sent to the remote store in " + file);
+        rewriteIfMostlyDone();
+      }
+    } catch (IOException e) {
+      close();
+      throw e;
+    }
+  }
+
+  /**
+   * Take the lock which stops anything else using the file at the same time
+   */
+  private void lock() throws IOException {
+    File lockPath = new File(file.getPath() + ".lock");
+    lockFile = new RandomAccessFile(lockPath, "rw");
+    try {
+      lock = lockFile.getChannel().tryLock();
+    } catch (OverlappingFileLockException e) {
+      // held by another outbox in this process
+      lock = null;
+    }
+    if (lock == null) {
+      lockFile.close();
+      lockFile = null;
+      throw new IOException(file + " is already in use, " + lockPath + " is locked");
+    }
+  }
+
+  /**
+   * Add a put to be sent
+   *
+   * @throws IOException if it couldn't be written to the file
+   */
+  synchronized void put(Index index, Revision revision, byte[] value) throws IOException {
+    checkOpen();
+    Entry entry = new Entry(nextId, Type.PUT, index, revision, value);
+    if (add(entry)) {
+      append(entry, true);
+    }
+  }
+
+  /**
+   * Add a delete to be sent
+   *
+   * @throws IOException if it couldn't be written to the file
+   */
+  synchronized void delete(Index index, byte[] token) throws IOException {
+    checkOpen();
+    Entry entry = new Entry(nextId, Type.DELETE, index, null, token);
+    add(entry);
+    append(entry, true);
+  }
+
+  /**
+   * @return the oldest operation still waiting to be sent, or null if there are none
+   */
+  synchronized Entry first() {
+    Iterator<Entry> entries = pending.values().iterator();
+    return entries.hasNext() ? entries.next() : null;
+  }
+
+  /**
+   * @return the number of operations waiting to be sent
+   */
+  synchronized int size() {
+    return pending.size();
+  }
+
+  synchronized boolean isEmpty() {
+    return pending.isEmpty();
+  }
+
+  /**
+   * The operation has been sent so no longer needs to be kept. Does nothing if it was dropped in
+   * the meantime because a later operation made it unnecessary.
+   *
+   * @param entry
+   * @throws IOException if the acknowledgement couldn't be written to the file
+   */
+  synchronized void acknowledge(Entry entry) throws IOException {
+    checkOpen();
+    if (!remove(entry.id)) {
+      return;
+    }
+    if (pending.isEmpty()) {
+      truncate();
+    } else {
+      append(new Entry(entry.id, Type.ACKNOWLEDGE, null, null, null), false);
+      rewriteIfMostlyDone();
+    }
+  }
+
+  /**
+   * Close the file and release the lock on it, after which nothing more may be added or
+   * acknowledged. What is still waiting stays in the file to be sent by the next outbox using it.
+   *
+   * @throws IOException
+   */
+  synchronized void close() throws IOException {
+    closed = true;
+    try {
+      if (journal != null) {
+        journal.close();
+        journal = null;
+      }
+    } finally {
+      if (lockFile != null) {
+        // closing the file releases the lock
+        lockFile.close();
+        lockFile = null;
+        lock = null;
+      }
+    }
+  }
+
+  private void checkOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Outbox is closed");
+    }
+  }
+
+  /**
+   * Make entry wait to be sent, dropping what it makes unnecessary
+   *
+   * @return false if entry is itself unnecessary
+   */
+  private boolean add(Entry entry) {
+    nextId = Math.max(nextId, entry.id + 1);
+    switch (entry.type) {
+      case PUT:
+        Map<Revision, Entry> revisions = puts.get(entry.index);
+        if (revisions == null) {
+          revisions = new HashMap<Revision, Entry>();
+          puts.put(entry.index, revisions);
+        } else if (revisions.containsKey(entry.revision)) {
+          return false;
+        }
+        revisions.put(entry.revision, entry);
+        break;
+      case DELETE:
+        Map<Revision, Entry> before = puts.remove(entry.index);
+        if (before != null) {
+          for (Entry put : before.values()) {
+            pending.remove(put.id);
+          }
+        }
+        Entry delete = deletes.put(entry.index, entry);
+        if (delete != null) {
+          pending.remove(delete.id);
+        }
+        break;
+      default:
+        throw new IllegalArgumentException("Not an operation: " + entry.type);
+    }
+    pending.put(entry.id, entry);
+    return true;
+  }
+
+  private boolean remove(long id) {
+    Entry entry = pending.remove(id);
+    if (entry == null) {
+      return false;
+    }
+    if (entry.type == Type.PUT) {
+      Map<Revision, Entry> revisions = puts.get(entry.index);
+      revisions.remove(entry.revision);
+      if (revisions.isEmpty()) {
+        puts.remove(entry.index);
+      }
+    } else {
+      deletes.remove(entry.index);
+    }
+    return true;
+  }
+
+  /**
+   * Read the operations from the file, cutting off any partly written record at the end
+   */
+  private void recover() throws IOException {
+    if (!file.exists()) {
+      return;
+    }
+    long length = 0;
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    try {
+      while (true) {
+        byte[] record = new byte[in.readInt()];
+        in.readFully(record);
+        Entry entry = read(record);
+        if (entry.type == Type.ACKNOWLEDGE) {
+          remove(entry.id);
+        } else {
+          add(entry);
+        }
+        length += 4 + record.length;
+        ++records;
+      }
+    } catch (EOFException e) {
+      // reached the end
+    } finally {
+      in.close();
+    }
+    if (length < file.length()) {
+      log.warning("Truncating partly written operation at the end of " + file);
+      RandomAccessFile partial = new RandomAccessFile(file, "rw");
+      try {
+        partial.setLength(length);
+      } finally {
+        partial.close();
+      }
+    }
+  }
+
+  private static byte[] write(Entry entry) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream data = new DataOutputStream(bytes);
+    data.writeLong(entry.id);
+    data.writeByte(entry.type.ordinal());
+    if (entry.type != Type.ACKNOWLEDGE) {
+      writeField(data, entry.index.getBytes());
+      writeField(data, entry.revision == null ? null : entry.revision.getBytes());
+      writeField(data, entry.value);
+    }
+    data.flush();
+    ByteArrayOutputStream record = new ByteArrayOutputStream(4 + bytes.size());
+    DataOutputStream out = new DataOutputStream(record);
+    out.writeInt(bytes.size());
+    bytes.writeTo(out);
+    out.flush();
+    return record.toByteArray();
+  }
+
+  private static void writeField(DataOutputStream data, byte[] field) throws IOException {
+    if (field == null) {
+      data.writeInt(-1);
+    } else {
+      data.writeInt(field.length);
+      data.write(field);
+    }
+  }
+
+  private static Entry read(byte[] record) throws IOException {
+    DataInputStream data = new DataInputStream(new ByteArrayInputStream(record));
+    long id = data.readLong();
+    int typeOrdinal = data.readByte();
+    if (typeOrdinal < 0 || typeOrdinal >= Type.values().length) {
+      throw new IOException("Invalid outbox record type: " + typeOrdinal);
+    }
+    Type type = Type.values()[typeOrdinal];
+    if (type == Type.ACKNOWLEDGE) {
+      return new Entry(id, type, null, null, null);
+    }
+    Index index = new Index(readField(data));
+    byte[] revision = readField(data);
+    byte[] value = readField(data);
+    return new Entry(id, type, index, revision == null ? null : new Revision(revision), value);
+  }
+
+  private static byte[] readField(DataInputStream data) throws IOException {
+    int length = data.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] field = new byte[length];
+    data.readFully(field);
+    return field;
+  }
+
+  /**
+   * @param sync whether to wait for the record to reach the disk
+   */
+  private void append(Entry entry, boolean sync) throws IOException {
+    if (journal == null) {
+      return;
+    }
+    journal.write(write(entry));
+    if (sync) {
+      journal.getFD().sync();
+    }
+    ++records;
+  }
+
+  private void truncate() throws IOException {
+    if (journal == null) {
+      return;
+    }
+    journal.setLength(0);
+    records = 0;
+  }
+
+  /**
+   * Replace the file with one containing only the operations still waiting if most of its records
+   * are no longer needed
+   */
+  private void rewriteIfMostlyDone() throws IOException {
+    if (journal == null || records < REWRITE_AT || records < 2 * pending.size()) {
+      return;
+    }
+    File rewritten = new File(file.getPath() + ".new");
+    RandomAccessFile out = new RandomAccessFile(rewritten, "rw");
+    try {
+      out.setLength(0);
+      for (Entry entry : pending.values()) {
+        out.write(write(entry));
+      }
+      out.getFD().sync();
+    } finally {
+      out.close();
+    }
+    journal.close();
+    try {
+      Files.move(rewritten.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      records = pending.size();
+    } finally {
+      // if the move failed carry on appending to the old file
+      journal = new RandomAccessFile(file, "rw");
+      journal.seek(journal.length());
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.google.nigori.common.NigoriCryptographyException;
+import com.google.nigori.common.NotFoundException;
+import com.google.nigori.common.UnauthorisedException;
+
+/**
+ * Iterates over results which the server returns a page at a time. Each page is only fetched once
+ * the previous one has been used up so the whole collection is never held in memory at once.
+ *
+ * This is not a {@link java.util.Iterator} since fetching a page can fail with checked exceptions.
+ *
+ * @author drt24
+ *
+ */
+public abstract class PagedIterator<T> {
+
+  private Iterator<T> page = null;
+  private byte[] cursor = null;
+  private boolean last = false;
+
+  /**
+   * Fetch the page starting at cursor
+   *
+   * @param cursor null for the first page otherwise the cursor returned with the previous page
+   * @param items to add the items in the page to
+   * @return the cursor for the next page or null if this was the last page
+   * @throws NotFoundException if there is nothing to iterate over
+   */
+  protected abstract byte[] fetch(byte[] cursor, List<T> items) throws IOException,
+      NigoriCryptographyException, UnauthorisedException, NotFoundException;
+
+  /**
+   * @return true if there is another item, fetching the next page if necessary
+   * @throws NotFoundException if there is nothing to iterate over, for example the revisions of an
+   *           index which does not exist
+   */
+  public boolean hasNext() throws IOException, NigoriCryptographyException,
+      UnauthorisedException, NotFoundException {
+    while (page == null || !page.hasNext()) {
+      if (last) {
+        return false;
+      }
+      List<T> items = new ArrayList<T>();
+      cursor = fetch(cursor, items);
+      last = cursor == null;
+      page = items.iterator();
+    }
+    return true;
+  }
+
+  /**
+   * @return the next item, fetching the next page if necessary
+   * @throws NoSuchElementException if there are no more items
+   */
+  public T next() throws IOException, NigoriCryptographyException, UnauthorisedException,
+      NotFoundException {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return page.next();
+  }
+}
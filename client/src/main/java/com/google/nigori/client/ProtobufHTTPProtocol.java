@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2012 Daniel Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+import com.google.nigori.common.MessageLibrary;
+import com.google.nigori.common.NigoriMessages.AuthenticateRequest;
+import com.google.nigori.common.NigoriMessages.BatchRequest;
+import com.google.nigori.common.NigoriMessages.BatchResponse;
+import com.google.nigori.common.NigoriMessages.DeleteRequest;
+import com.google.nigori.common.NigoriMessages.GetChangesRequest;
+import com.google.nigori.common.NigoriMessages.GetChangesResponse;
+import com.google.nigori.common.NigoriMessages.GetDigestsRequest;
+import com.google.nigori.common.NigoriMessages.GetDigestsResponse;
+import com.google.nigori.common.NigoriMessages.GetIndicesRequest;
+import com.google.nigori.common.NigoriMessages.GetIndicesResponse;
+import com.google.nigori.common.NigoriMessages.GetRequest;
+import com.google.nigori.common.NigoriMessages.GetResponse;
+import com.google.nigori.common.NigoriMessages.GetRevisionsRequest;
+import com.google.nigori.common.NigoriMessages.GetRevisionsResponse;
+import com.google.nigori.common.NigoriMessages.PutRequest;
+import com.google.nigori.common.NigoriMessages.RegisterRequest;
+import com.google.nigori.common.NigoriMessages.UnregisterRequest;
+import com.google.nigori.common.NigoriProtocol;
+import com.google.nigori.common.NotFoundException;
+import com.google.nigori.common.UnauthorisedException;
+import com.google.protobuf.GeneratedMessage;
+
+/**
+ * Implements the NigoriProtocol using binary protobufs over HTTP, which are smaller and cheaper to
+ * produce than JSON.
+ *
+ * If the server does not support protobufs it replies Not Acceptable, in which case the request and
+ * all following ones are sent using {@link JsonHTTPProtocol} instead.
+ *
+ * @author drt24
+ *
+ */
+public class ProtobufHTTPProtocol implements NigoriProtocol {
+
+  private final Http http;
+  private final JsonHTTPProtocol json;
+  private volatile boolean useJson = false;
+
+  public ProtobufHTTPProtocol(String server, int port, String serverPrefix) {
+    http =
+        new Http(JsonHTTPProtocol.serverUrl(server, port, serverPrefix),
+            MessageLibrary.MIMETYPE_PROTOBUF + ", " + MessageLibrary.MIMETYPE_JSON);
+    json = new JsonHTTPProtocol(server, port, serverPrefix);
+  }
+
+  /**
+   * @return true if the server doesn't support protobufs and JSON is being used instead
+   */
+  public boolean isUsingJson() {
+    return useJson;
+  }
+
+  /**
+   * Post the request, returning null if the server does not accept protobufs so JSON should be used
+   */
+  private HttpResponse post(String requestType, GeneratedMessage request) throws IOException {
+    HttpResponse resp =
+        http.post(requestType, request.toByteArray(), MessageLibrary.MIMETYPE_PROTOBUF);
+    if (resp.getResponseCode() == HttpURLConnection.HTTP_NOT_ACCEPTABLE) {
+      resp.close();
+      useJson = true;
+      return null;
+    }
+    return resp;
+  }
+
+  private static boolean success(HttpResponse resp) throws IOException {
+    try {
+      return resp.getResponseCode() == HttpURLConnection.HTTP_OK;
+    } finally {
+      resp.close();
+    }
+  }
+
+  private static boolean notFound(HttpResponse resp) {
+    return resp.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND;
+  }
+
+  private static void failure(HttpResponse resp) throws IOException, UnauthorisedException {
+    String message = resp.toOutputString();
+    if (resp.getResponseCode() == Http.UNAUTHORIZED) {
+      throw new UnauthorisedException(message);
+    }
+    throw new IOException("Server did not accept request(" + resp.getResponseCode() + "). "
+        + message);
+  }
+
+  @Override
+  public boolean authenticate(AuthenticateRequest request) throws IOException {
+    if (!useJson) {
+      HttpResponse resp = post(MessageLibrary.REQUEST_AUTHENTICATE, request);
+      if (resp != null) {
+        return success(resp);
+      }
+    }
+    return json.authenticate(request);
+  }
+
+  @Override
+  public boolean register(RegisterRequest request) throws IOException {
+    if (!useJson) {
+      HttpResponse resp = post(MessageLibrary.REQUEST_REGISTER, request);
+      if (resp != null) {
+        return success(resp);
+      }
+    }
+    return json.register(request);
+  }
+
+  @Override
+  public boolean unregister(UnregisterRequest request) throws IOException, UnauthorisedException {
+    if (!useJson) {
+      HttpResponse resp = post(MessageLibrary.REQUEST_UNREGISTER, request);
+      if (resp != null) {
+        return success(resp);
+      }
+    }
+    return json.unregister(request);
+  }
+
+  @Override
+  public GetResponse get(GetRequest request) throws IOException, NotFoundException,
+      UnauthorisedException {
+    if (!useJson) {
+      HttpResponse resp = post(MessageLibrary.REQUEST_GET, request);
+      if (resp != null) {
+        if (notFound(resp)) {
+          resp.close();
+          return null; // request was successful, but no data key by that name was found.
+        }
+        if (resp.getResponseCode() != HttpURLConnection.HTTP_OK) {
+          failure(resp);
+        }
+        try {
+          return GetResponse.parseFrom(resp.getInputStream());
+        } finally {
+          resp.close();
+        }
+      }
+    }
+    return json.get(request);
+  }
+
+  @Override
+  public GetIndicesResponse getIndices(GetIndicesRequest request) throws IOException,
+      NotFoundException, UnauthorisedException {
+    if (!useJson) {
+      HttpResponse resp = post(MessageLibrary.REQUEST_GET_INDICES, request);
+      if (resp != null) {
+        if (notFound(resp)) {
+          resp.close();
+          return null; // request was successful, but no data key by that name was found.
+        }
+        if (resp.getResponseCode() != HttpURLConnection.HTTP_OK) {
+          failure(resp);
+        }
+        try {
+          return GetIndicesResponse.parseFrom(resp.getInputStream());
+        } finally {
+          resp.close();
+        }
+      }
+    }
+    return json.getIndices(request);
+  }
+
+  @Override
+  public GetRevisionsResponse getRevisions(GetRevisionsRequest request) throws IOException,
+      NotFoundException, UnauthorisedException {
+    if (!useJson) {
+      HttpResponse resp = post(MessageLibrary.REQUEST_GET_REVISIONS, request);
+      if (resp != null) {
+        if (notFound(resp)) {
+          // request was successful, but no data key by that name was found.
+          throw new NotFoundException(resp.toOutputString());
+        }
+        if (resp.getResponseCode() != HttpURLConnection.HTTP_OK) {
+          failure(resp);
+        }
+        try {
+          return GetRevisionsResponse.parseFrom(resp.getInputStream());
+        } finally {
+          resp.close();
+        }
+      }
+    }
+    return json.getRevisions(request);
+  }
+
+  @Override
+  public boolean put(PutRequest request) throws IOException, UnauthorisedException {
+    if (!useJson) {
+      HttpResponse resp = post(MessageLibrary.REQUEST_PUT, request);
+      if (resp != null) {
+        return success(resp);
+      }
+    }
+    return json.put(request);
+  }
+
+  @Override
+  public boolean delete(DeleteRequest request) throws IOException, NotFoundException,
+      UnauthorisedException {
+    if (!useJson) {
+      HttpResponse resp = post(MessageLibrary.REQUEST_DELETE, request);
+      if (resp != null) {
+        if (notFound(resp)) {
+          resp.close();
+          return false; // request was successful, but no data key by that name was found.
+        }
+        if (resp.getResponseCode() != HttpURLConnection.HTTP_OK) {
+          failure(resp);
+        }
+        resp.close();
+        return true;
+      }
+    }
+    return json.delete(request);
+  }
+
+  @Override
+  public BatchResponse batch(BatchRequest request) throws IOException, UnauthorisedException {
+    if (!useJson) {
+      HttpResponse resp = post(MessageLibrary.REQUEST_BATCH, request);
+      if (resp != null) {
+        if (resp.getResponseCode() != HttpURLConnection.HTTP_OK) {
+          failure(resp);
+        }
+        try {
+          return BatchResponse.parseFrom(resp.getInputStream());
+        } finally {
+          resp.close();
+        }
+      }
+    }
+    return json.batch(request);
+  }
+
+  @Override
+  public GetChangesResponse getChanges(GetChangesRequest request) throws IOException,
+      UnauthorisedException {
+    if (!useJson) {
+      HttpResponse resp = post(MessageLibrary.REQUEST_GET_CHANGES, request);
+      if (resp != null) {
+        if (resp.getResponseCode() != HttpURLConnection.HTTP_OK) {
+          failure(resp);
+        }
+        try {
+          return GetChangesResponse.parseFrom(resp.getInputStream());
+        } finally {
+          resp.close();
+        }
+      }
+    }
+    return json.getChanges(request);
+  }
+
+  @Override
+  public GetDigestsResponse getDigests(GetDigestsRequest request) throws IOException,
+      NotFoundException, UnauthorisedException {
+    if (!useJson) {
+      HttpResponse resp = post(MessageLibrary.REQUEST_GET_DIGESTS, request);
+      if (resp != null) {
+        if (notFound(resp)) {
+          // request was successful, but one of the nodes does not exist in the tree.
+          throw new NotFoundException(resp.toOutputString());
+        }
+        if (resp.getResponseCode() != HttpURLConnection.HTTP_OK) {
+          failure(resp);
+        }
+        try {
+          return GetDigestsResponse.parseFrom(resp.getInputStream());
+        } finally {
+          resp.close();
+        }
+      }
+    }
+    return json.getDigests(request);
+  }
+}
@@ -0,0 +1,419 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import com.google.nigori.common.Index;
+import com.google.nigori.common.NigoriCryptographyException;
+import com.google.nigori.common.NotFoundException;
+import com.google.nigori.common.UnauthorisedException;
+
+/**
+ * Works out which items are in only one of two listings, such as the indices of two stores being
+ * synced, while holding a bounded number of them in memory. Each listing is sorted a run at a time,
+ * runs other than the last being written to temporary files, and the two sorted listings are then
+ * merged in step with each other.
+ *
+ * The listings are sorted here rather than merged in the order the stores give them, as each server
+ * orders indices by their encrypted form under its own keys and the backends don't agree on how to
+ * order bytes.
+ *
+ * @author drt24
+ *
+ */
+class SetDifference {
+
+  private static final Logger log = Logger.getLogger(SetDifference.class.getSimpleName());
+
+  /**
+   * The most items of a listing held in memory while sorting it
+   */
+  static final int RUN_SIZE = 16384;
+
+  private SetDifference() {
+  }
+
+  /**
+   * Told where each item is found, in sorted order
+   */
+  abstract static class Visitor<T> {
+    void onlyFirst(T item) throws IOException, NigoriCryptographyException,
+        UnauthorisedException {
+    }
+
+    void onlySecond(T item) throws IOException, NigoriCryptographyException,
+        UnauthorisedException {
+    }
+
+    void inBoth(T item) throws IOException, NigoriCryptographyException, UnauthorisedException {
+    }
+  }
+
+  /**
+   * Turns items into bytes and back so that sorted runs can be written out
+   */
+  interface Codec<T> {
+    byte[] toBytes(T item);
+
+    T fromBytes(byte[] bytes);
+  }
+
+  static final Codec<Index> INDICES = new Codec<Index>() {
+    @Override
+    public byte[] toBytes(Index item) {
+      return item.getBytes();
+    }
+
+    @Override
+    public Index fromBytes(byte[] bytes) {
+      return new Index(bytes);
+    }
+  };
+
+  /**
+   * Compare two listings of indices, either of which may be empty or not found.
+   *
+   * @param first
+   * @param second
+   * @param visitor told where each index is
+   */
+  static void compare(PagedIterator<Index> first, PagedIterator<Index> second,
+      Visitor<Index> visitor) throws IOException, NigoriCryptographyException,
+      UnauthorisedException {
+    compare(first, second, INDICES, RUN_SIZE, visitor);
+  }
+
+  /**
+   * Compare two listings, either of which may be empty or not found, holding at most about runSize
+   * items of each in memory.
+   *
+   * @param first
+   * @param second
+   * @param codec for writing out runs
+   * @param runSize the most items to sort in memory at once
+   * @param visitor told where each item is
+   */
+  static <T extends Comparable<? super T>> void compare(PagedIterator<T> first,
+      PagedIterator<T> second, Codec<T> codec, int runSize, Visitor<T> visitor)
+      throws IOException, NigoriCryptographyException, UnauthorisedException {
+    SortedListing<T> sortedFirst = sort(first, codec, runSize);
+    try {
+      SortedListing<T> sortedSecond = sort(second, codec, runSize);
+      try {
+        merge(sortedFirst, sortedSecond, visitor);
+      } finally {
+        sortedSecond.close();
+      }
+    } finally {
+      sortedFirst.close();
+    }
+  }
+
+  /**
+   * Walk two sorted listings in step, only holding the next item of each
+   */
+  private static <T extends Comparable<? super T>> void merge(SortedListing<T> first,
+      SortedListing<T> second, Visitor<T> visitor) throws IOException,
+      NigoriCryptographyException, UnauthorisedException {
+    T a = first.next();
+    T b = second.next();
+    while (a != null || b != null) {
+      int order = a == null ? 1 : b == null ? -1 : a.compareTo(b);
+      if (order < 0) {
+        visitor.onlyFirst(a);
+        a = first.next();
+      } else if (order > 0) {
+        visitor.onlySecond(b);
+        b = second.next();
+      } else {
+        visitor.inBoth(a);
+        a = first.next();
+        b = second.next();
+      }
+    }
+  }
+
+  /**
+   * Read all of a listing, writing out each full run once it is sorted and keeping the last one.
+   */
+  static <T extends Comparable<? super T>> SortedListing<T> sort(PagedIterator<T> listing,
+      Codec<T> codec, int runSize) throws IOException, NigoriCryptographyException,
+      UnauthorisedException {
+    List<File> runs = new ArrayList<File>();
+    boolean sorted = false;
+    try {
+      List<T> run = new ArrayList<T>();
+      try {
+        while (listing.hasNext()) {
+          run.add(listing.next());
+          if (run.size() == runSize) {
+            runs.add(writeRun(run, codec));
+            run.clear();
+          }
+        }
+      } catch (NotFoundException e) {
+        // nothing listed
+      }
+      Collections.sort(run);
+      SortedListing<T> answer = new SortedListing<T>(runs, run, codec);
+      sorted = true;
+      return answer;
+    } finally {
+      if (!sorted) {
+        delete(runs);
+      }
+    }
+  }
+
+  private static <T extends Comparable<? super T>> File writeRun(List<T> run, Codec<T> codec)
+      throws IOException {
+    Collections.sort(run);
+    File file = File.createTempFile("nigori-run", ".tmp");
+    file.deleteOnExit();
+    DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    try {
+      for (T item : run) {
+        byte[] bytes = codec.toBytes(item);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      }
+    } catch (IOException e) {
+      out.close();
+      file.delete();
+      throw e;
+    }
+    out.close();
+    return file;
+  }
+
+  private static void delete(List<File> files) {
+    for (File file : files) {
+      if (!file.delete()) {
+        log.warning("Could not delete " + file);
+      }
+    }
+  }
+
+  /**
+   * The items of a listing in sorted order without repeats, taken from the heads of its sorted
+   * runs. Must be closed to delete the runs' files.
+   */
+  static class SortedListing<T extends Comparable<? super T>> implements Closeable {
+    private final List<File> files;
+    private final List<DataInputStream> inputs = new ArrayList<DataInputStream>();
+    private final PriorityQueue<Run<T>> heads = new PriorityQueue<Run<T>>();
+    private final Codec<T> codec;
+    private T previous = null;
+
+    private SortedListing(List<File> files, List<T> inMemory, Codec<T> codec) throws IOException {
+      this.files = files;
+      this.codec = codec;
+      try {
+        for (File file : files) {
+          DataInputStream input =
+              new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+          inputs.add(input);
+          addHead(new Run<T>(input, null));
+        }
+      } catch (IOException e) {
+        close();
+        throw e;
+      }
+      addHead(new Run<T>(null, inMemory.iterator()));
+    }
+
+    private void addHead(Run<T> run) throws IOException {
+      if (run.advance(codec)) {
+        heads.add(run);
+      }
+    }
+
+    /**
+     * @return the next item or null if there are no more
+     */
+    T next() throws IOException {
+      while (!heads.isEmpty()) {
+        Run<T> run = heads.poll();
+        T item = run.head;
+        addHead(run);
+        if (previous == null || previous.compareTo(item) != 0) {
+          previous = item;
+          return item;
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public void close() {
+      for (DataInputStream input : inputs) {
+        try {
+          input.close();
+        } catch (IOException e) {
+          log.fine(e.getMessage());
+        }
+      }
+      inputs.clear();
+      heads.clear();
+      delete(files);
+      files.clear();
+    }
+  }
+
+  /**
+   * A sorted run read either from a file or from memory, ordered by its next item
+   */
+  private static class Run<T extends Comparable<? super T>> implements Comparable<Run<T>> {
+    private final DataInputStream input;
+    private final Iterator<T> iterator;
+    private T head;
+
+    Run(DataInputStream input, Iterator<T> iterator) {
+      this.input = input;
+      this.iterator = iterator;
+    }
+
+    /**
+     * @return whether there was another item to make the head
+     */
+    boolean advance(Codec<T> codec) throws IOException {
+      if (iterator != null) {
+        head = iterator.hasNext() ? iterator.next() : null;
+        return head != null;
+      }
+      int length;
+      try {
+        length = input.readInt();
+      } catch (EOFException e) {
+        head = null;
+        return false;
+      }
+      byte[] bytes = new byte[length];
+      input.readFully(bytes);
+      head = codec.fromBytes(bytes);
+      return true;
+    }
+
+    @Override
+    public int compareTo(Run<T> other) {
+      return head.compareTo(other.head);
+    }
+  }
+
+  /**
+   * Collects the items which are only in one of the listings, for when there are few enough of them
+   * to hold
+   */
+  static class Split<T> extends Visitor<T> {
+    final List<T> firstOnly = new ArrayList<T>();
+    final List<T> secondOnly = new ArrayList<T>();
+
+    @Override
+    void onlyFirst(T item) {
+      firstOnly.add(item);
+    }
+
+    @Override
+    void onlySecond(T item) {
+      secondOnly.add(item);
+    }
+  }
+
+  /**
+   * Both collections are already held so a set of the first is made rather than sorting them.
+   *
+   * @param first null if not found
+   * @param second null if not found
+   * @return the items only in first and those only in second, each in the order they were given
+   */
+  static <T> Split<T> split(Collection<T> first, Collection<T> second) {
+    Split<T> split = new Split<T>();
+    Set<T> firstItems = first == null ? new LinkedHashSet<T>() : new LinkedHashSet<T>(first);
+    if (second != null) {
+      for (T item : second) {
+        if (!firstItems.remove(item)) {
+          split.onlySecond(item);
+        }
+      }
+    }
+    for (T item : firstItems) {
+      split.onlyFirst(item);
+    }
+    return split;
+  }
+
+  /**
+   * @param first
+   * @param second
+   * @return first with the items only in second added after it, either may be null
+   */
+  static <T> List<T> union(List<T> first, List<T> second) {
+    if (first == null) {
+      return second;
+    }
+    if (second == null) {
+      return first;
+    }
+    Set<T> firstItems = new LinkedHashSet<T>(first);
+    List<T> answer = new ArrayList<T>(firstItems);
+    for (T item : second) {
+      if (firstItems.add(item)) {
+        answer.add(item);
+      }
+    }
+    return answer;
+  }
+
+  /**
+   * @param store
+   * @return the store's indices, fetched a page at a time if the store can do that
+   */
+  static PagedIterator<Index> indices(final NigoriDatastore store) {
+    if (store instanceof CryptoNigoriDatastore) {
+      return ((CryptoNigoriDatastore) store).indices();
+    }
+    return new PagedIterator<Index>() {
+      @Override
+      protected byte[] fetch(byte[] cursor, List<Index> page) throws IOException,
+          NigoriCryptographyException, UnauthorisedException, NotFoundException {
+        List<Index> indices = store.getIndices();
+        if (indices == null) {
+          throw new NotFoundException("No indices");
+        }
+        page.addAll(indices);
+        return null;
+      }
+    };
+  }
+}
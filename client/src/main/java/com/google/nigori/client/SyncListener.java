@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+/**
+ * Told how far a sync of two stores has got. The indices to look at are found as the sync goes
+ * along, so the number found only stops growing near the end.
+ *
+ * @author drt24
+ *
+ */
+public interface SyncListener {
+
+  /**
+   * Called by the sync's worker threads each time an index has been synced, so must not block
+   *
+   * @param done the number of indices synced so far
+   * @param found the number of indices found to need looking at so far
+   */
+  void progress(int done, int found);
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.nigori.common.NigoriCryptographyException;
+import com.google.nigori.common.UnauthorisedException;
+
+/**
+ * Syncs indices on a fixed number of worker threads for a single sync of two stores. Only a few
+ * tasks are queued for each worker, so submitting waits for the workers to catch up and the indices
+ * can be submitted as they are streamed from the stores' listings.
+ *
+ * The first task to fail stops the sync, tasks which haven't started yet are skipped and
+ * {@link #submit(Task)} or {@link #finish()} throw what it threw. Cancelling stops the sync the
+ * same way and they throw an {@link InterruptedIOException}.
+ *
+ * @author drt24
+ *
+ */
+class SyncWorkers {
+
+  /**
+   * The sync of an index, or anything else which is part of the sync
+   */
+  abstract static class Task {
+    abstract void run() throws IOException, NigoriCryptographyException, UnauthorisedException;
+  }
+
+  private static final int QUEUED_PER_WORKER = 2;
+
+  private final ExecutorService workers;
+  private final Semaphore queued;
+  private final SyncListener listener;
+  private final AtomicInteger found = new AtomicInteger();
+  private final AtomicInteger done = new AtomicInteger();
+  private volatile boolean cancelled = false;
+  private Throwable failure = null;
+
+  /**
+   * @param threads the number of indices to sync at once
+   * @param listener to tell about progress, may be null
+   */
+  SyncWorkers(int threads, SyncListener listener) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Must have at least one worker: " + threads);
+    }
+    this.workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "nigori-sync-worker");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    this.queued = new Semaphore(threads * (1 + QUEUED_PER_WORKER));
+    this.listener = listener;
+  }
+
+  /**
+   * Have a worker run task, waiting if the workers are too far behind
+   *
+   * @throws InterruptedIOException if the sync has been cancelled
+   */
+  void submit(final Task task) throws IOException, NigoriCryptographyException,
+      UnauthorisedException {
+    check();
+    try {
+      queued.acquire();
+    } catch (InterruptedException e) {
+      cancel();
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while syncing");
+    }
+    found.incrementAndGet();
+    workers.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          if (cancelled) {
+            return;
+          }
+          task.run();
+          int synced = done.incrementAndGet();
+          if (listener != null) {
+            listener.progress(synced, found.get());
+          }
+        } catch (Throwable t) {
+          failed(t);
+        } finally {
+          queued.release();
+        }
+      }
+    });
+  }
+
+  /**
+   * Wait for all the submitted tasks to be done, the workers are then stopped
+   *
+   * @throws InterruptedIOException if the sync has been cancelled
+   */
+  void finish() throws IOException, NigoriCryptographyException, UnauthorisedException {
+    workers.shutdown();
+    try {
+      while (!workers.awaitTermination(1, TimeUnit.SECONDS)) {
+        // keep waiting, the tasks stop themselves if the sync fails or is cancelled
+      }
+    } catch (InterruptedException e) {
+      cancel();
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while syncing");
+    }
+    check();
+  }
+
+  /**
+   * Stop the sync, tasks which have already started are left to finish
+   */
+  void cancel() {
+    cancelled = true;
+  }
+
+  /**
+   * Stop the workers once they have finished what they are doing, whether or not the sync is done
+   */
+  void close() {
+    cancel();
+    workers.shutdown();
+  }
+
+  private synchronized void failed(Throwable t) {
+    if (failure == null) {
+      failure = t;
+    }
+    cancelled = true;
+  }
+
+  private void check() throws IOException, NigoriCryptographyException, UnauthorisedException {
+    Throwable t;
+    synchronized (this) {
+      t = failure;
+    }
+    if (t instanceof IOException) {
+      throw (IOException) t;
+    }
+    if (t instanceof NigoriCryptographyException) {
+      throw (NigoriCryptographyException) t;
+    }
+    if (t instanceof UnauthorisedException) {
+      throw (UnauthorisedException) t;
+    }
+    if (t instanceof RuntimeException) {
+      throw (RuntimeException) t;
+    }
+    if (t instanceof Error) {
+      throw (Error) t;
+    }
+    if (t != null) {
+      throw new IOException(t);
+    }
+    if (cancelled) {
+      throw new InterruptedIOException("Sync cancelled");
+    }
+  }
+}
@@ -16,60 +16,369 @@ package com.google.nigori.client;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import com.google.nigori.common.Index;
 import com.google.nigori.common.NigoriCryptographyException;
 import com.google.nigori.common.RevValue;
 import com.google.nigori.common.Revision;
 import com.google.nigori.common.UnauthorisedException;
+import com.google.nigori.common.Util;
 
 /**
+ * Keeps two stores in sync. Each operation is done to both stores at the same time, the second on
+ * an executor, so that it takes as long as the slower of them rather than the sum of both. How
+ * reads combine the stores' answers is set by a {@link ReadPolicy}.
+ * 
  * @author drt24
  * 
- *         TODO(drt24) many of the operations here are parallelisable.
  */
 public class SyncingNigoriDatastore implements NigoriDatastore {
 
+  private static final Logger log = Logger.getLogger(SyncingNigoriDatastore.class.getName());
+
   protected final NigoriDatastore first;
   protected final NigoriDatastore second;
+  private final ReadPolicy readPolicy;
+  private final Executor executor;
+  /**
+   * The executor if it was made here rather than given, and so is shut down by {@link #close()}
+   */
+  private final ExecutorService ownExecutor;
+  private final ChangeMarks marks;
+  private final ChangeWatcher watcher;
+
+  public static final int DEFAULT_SYNC_WORKERS = 4;
+  private volatile int syncWorkers = DEFAULT_SYNC_WORKERS;
+  /**
+   * The stores as used by syncs, limited to how many calls may be made into each at once
+   */
+  private volatile NigoriDatastore syncFirst;
+  private volatile NigoriDatastore syncSecond;
+  private volatile SyncListener syncListener = null;
+  private volatile SyncWorkers currentSync = null;
+
+  /**
+   * How reads use the answers of the two stores, which are always both asked
+   */
+  public enum ReadPolicy {
+    /**
+     * Wait for both stores and give the union of their answers, failing if they disagree about the
+     * value of a revision
+     */
+    BOTH,
+    /**
+     * Give the first store's answer if it has one, only waiting for the second when it doesn't
+     */
+    FIRST_STORE,
+    /**
+     * Give whichever store's answer comes back first, so long as it has one, and so be as fast as
+     * the faster store. Answers may be missing what has not yet been synced to that store.
+     */
+    FIRST_RESPONSE
+  }
 
   public SyncingNigoriDatastore(NigoriDatastore first, NigoriDatastore second) throws IOException,
       NigoriCryptographyException {
+    this(first, second, ReadPolicy.BOTH);
+  }
+
+  /**
+   * Operations are done on threads belonging to this datastore, which are stopped by
+   * {@link #close()}
+   * 
+   * @param first
+   * @param second
+   * @param readPolicy
+   * @throws IOException
+   * @throws NigoriCryptographyException
+   */
+  public SyncingNigoriDatastore(NigoriDatastore first, NigoriDatastore second,
+      ReadPolicy readPolicy) throws IOException, NigoriCryptographyException {
+    this(first, second, readPolicy, null, Executors.newCachedThreadPool(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "nigori-syncing-store");
+        thread.setDaemon(true);
+        return thread;
+      }
+    }));
+  }
+
+  /**
+   * @param first
+   * @param second
+   * @param readPolicy
+   * @param executor to do operations on, it must be able to run at least two at once for
+   *          {@link ReadPolicy#FIRST_RESPONSE}. It belongs to the caller and so isn't shut down by
+   *          {@link #close()}.
+   * @throws IOException
+   * @throws NigoriCryptographyException
+   */
+  public SyncingNigoriDatastore(NigoriDatastore first, NigoriDatastore second,
+      ReadPolicy readPolicy, Executor executor) throws IOException, NigoriCryptographyException {
+    this(first, second, readPolicy, executor, null);
+  }
+
+  private SyncingNigoriDatastore(NigoriDatastore first, NigoriDatastore second,
+      ReadPolicy readPolicy, Executor executor, ExecutorService ownExecutor) throws IOException,
+      NigoriCryptographyException {
     if (first == null || second == null) {
       throw new IllegalArgumentException("Datastores must not be null");
     }
+    if (readPolicy == null || (executor == null && ownExecutor == null)) {
+      throw new IllegalArgumentException("Read policy and executor must not be null");
+    }
     this.first = first;
     this.second = second;
+    this.readPolicy = readPolicy;
+    this.executor = ownExecutor == null ? executor : ownExecutor;
+    this.ownExecutor = ownExecutor;
+    setSyncLimits(DEFAULT_SYNC_WORKERS, DEFAULT_SYNC_WORKERS, DEFAULT_SYNC_WORKERS);
+    this.marks = new ChangeMarks(first, second);
+    if (first instanceof ChangeTrackingDatastore && second instanceof ChangeTrackingDatastore) {
+      this.watcher =
+          new ChangeWatcher((ChangeTrackingDatastore) second, new ChangeWatcher.Listener() {
+            @Override
+            public void changed(Collection<Index> indices) throws IOException,
+                NigoriCryptographyException, UnauthorisedException {
+              sync(indices);
+            }
+
+            @Override
+            public void failed(Exception e) {
+              watchFailed(e);
+            }
+          });
+    } else {
+      this.watcher = null;
+    }
+  }
+
+  /**
+   * Sync indices as soon as they are changed in the second store by someone else, by keeping a
+   * request waiting for changes outstanding on it, rather than waiting for the next
+   * {@link #syncAll()}. Changes are followed on from the point the last {@link #syncAll()} got to,
+   * so there must have been one.
+   * 
+   * @return true if the second store is now being watched, false if both stores aren't
+   *         {@link ChangeTrackingDatastore}s or they haven't been synced yet
+   */
+  public boolean watchSecond() {
+    long since = marks.getSecondMark();
+    if (watcher == null || since < 0) {
+      return false;
+    }
+    // carry on from where watching got to before it was stopped if that is further on
+    since = Math.max(since, watcher.getReached());
+    watcher.start(since);
+    return true;
+  }
+
+  /**
+   * @return true if changes to the second store can be followed by {@link #watchSecond()}, once the
+   *         stores have been synced
+   */
+  protected boolean canWatchSecond() {
+    return watcher != null;
+  }
+
+  public void stopWatching() {
+    if (watcher != null) {
+      watcher.stop();
+    }
+  }
+
+  /**
+   * Stop watching the second store, cancel any sync in progress and stop the threads operations
+   * are done on if they belong to this datastore. It can't be used afterwards.
+   */
+  public void close() {
+    stopWatching();
+    cancelSync();
+    if (ownExecutor != null) {
+      ownExecutor.shutdownNow();
+    }
+  }
+
+  /**
+   * Watching the second store stopped because of e, it can be started again with
+   * {@link #watchSecond()}
+   */
+  protected void watchFailed(Exception e) {
+    log.log(Level.WARNING, "Stopped watching for changes", e);
   }
 
   /**
-   * Synchronise all indices and revisions between both stores
+   * Set how many indices later syncs work on at once and how many calls they may make into each
+   * store at once
    * 
+   * @param workers the number of indices to sync at once
+   * @param firstLimit the number of calls into the first store to make at once
+   * @param secondLimit the number of calls into the second store to make at once
+   */
+  public void setSyncLimits(int workers, int firstLimit, int secondLimit) {
+    if (workers < 1) {
+      throw new IllegalArgumentException("Must have at least one worker: " + workers);
+    }
+    syncWorkers = workers;
+    syncFirst = new ConcurrencyLimitedDatastore(first, firstLimit);
+    syncSecond = new ConcurrencyLimitedDatastore(second, secondLimit);
+  }
+
+  /**
+   * @param listener to tell how far each sync has got, or null
+   */
+  public void setSyncListener(SyncListener listener) {
+    syncListener = listener;
+  }
+
+  /**
+   * Stop the sync in progress, if there is one, which then throws an
+   * {@link java.io.InterruptedIOException}. The indices already synced stay synced and the next
+   * sync looks at everything the cancelled one would have.
+   */
+  public void cancelSync() {
+    SyncWorkers workers = currentSync;
+    if (workers != null) {
+      workers.cancel();
+    }
+  }
+
+  private SyncWorkers startSync() {
+    currentSync = new SyncWorkers(syncWorkers, syncListener);
+    return currentSync;
+  }
+
+  private void endSync(SyncWorkers workers) {
+    workers.close();
+    currentSync = null;
+  }
+
+  private void submitAll(SyncWorkers workers, Collection<Index> indices) throws IOException,
+      NigoriCryptographyException, UnauthorisedException {
+    for (final Index index : indices) {
+      workers.submit(new SyncWorkers.Task() {
+        @Override
+        void run() throws IOException, NigoriCryptographyException, UnauthorisedException {
+          syncRevisions(index);
+        }
+      });
+    }
+  }
+
+  /**
+   * Synchronise only these indices between both stores, for when it is known that the others are
+   * already synced
+   * 
+   * @param indices
    * @throws NigoriCryptographyException
    * @throws IOException
    * @throws UnauthorisedException
    */
+  public synchronized void sync(Collection<Index> indices) throws NigoriCryptographyException,
+      IOException, UnauthorisedException {
+    SyncWorkers workers = startSync();
+    try {
+      submitAll(workers, indices);
+      workers.finish();
+    } finally {
+      endSync(workers);
+    }
+  }
+
+  /**
+   * Synchronise all indices and revisions between both stores. If both stores are
+   * {@link ChangeTrackingDatastore}s then after the first sync only the indices which have changed
+   * in either store since the previous sync are looked at. Otherwise if both are
+   * {@link HashTreeDatastore}s with the same keys only the indices found to differ by comparing
+   * their hash trees are looked at.
+   * 
+   * The indices are synced several at a time by worker threads, as set by
+   * {@link #setSyncLimits(int, int, int)}.
+   * 
+   * @throws NigoriCryptographyException
+   * @throws IOException
+   * @throws UnauthorisedException
+   * @throws java.io.InterruptedIOException if the sync was cancelled by {@link #cancelSync()}
+   */
   public synchronized void syncAll() throws IOException, NigoriCryptographyException,
       UnauthorisedException {
-    List<Index> firstIndices = first.getIndices();
-    List<Index> secondIndices = second.getIndices();
-    if (!(firstIndices.containsAll(secondIndices) && secondIndices.containsAll(firstIndices))) {
-      // indices not already synced
-      List<Index> firstMSecond = new ArrayList<Index>(firstIndices);
-      firstMSecond.removeAll(secondIndices);
-      addAllIndices(firstMSecond, first, second);
-      List<Index> secondMFirst = new ArrayList<Index>(secondIndices);
-      secondMFirst.removeAll(firstIndices);
-      addAllIndices(secondMFirst, second, first);
-      // make sure firstIndices has all the indices
-      firstIndices.addAll(secondMFirst);
-    }
-    // Now need to sync revisions.
-    List<Index> indices = firstIndices;
-    for (Index index : indices) {
-      syncRevisions(index);
+    SyncWorkers workers = startSync();
+    try {
+      Collection<Index> changed = marks.changed();
+      if (changed != null) {
+        submitAll(workers, changed);
+      } else {
+        Collection<Index> different = HashTreeReconciler.differences(first, second);
+        if (different != null) {
+          submitAll(workers, different);
+        } else {
+          syncAllIndices(workers);
+        }
+      }
+      workers.finish();
+    } finally {
+      endSync(workers);
     }
+    marks.synced();
+  }
+
+  /**
+   * The stores' indices are sorted and merged a page at a time, so the indices in only one store
+   * are copied over whole and only those in both have their revisions compared.
+   */
+  private void syncAllIndices(final SyncWorkers workers) throws IOException,
+      NigoriCryptographyException, UnauthorisedException {
+    final NigoriDatastore from = syncFirst;
+    final NigoriDatastore to = syncSecond;
+    SetDifference.compare(SetDifference.indices(first), SetDifference.indices(second),
+        new SetDifference.Visitor<Index>() {
+          @Override
+          void onlyFirst(final Index index) throws IOException, NigoriCryptographyException,
+              UnauthorisedException {
+            workers.submit(new SyncWorkers.Task() {
+              @Override
+              void run() throws IOException, NigoriCryptographyException, UnauthorisedException {
+                addIndex(index, from, to);
+              }
+            });
+          }
+
+          @Override
+          void onlySecond(final Index index) throws IOException, NigoriCryptographyException,
+              UnauthorisedException {
+            workers.submit(new SyncWorkers.Task() {
+              @Override
+              void run() throws IOException, NigoriCryptographyException, UnauthorisedException {
+                addIndex(index, to, from);
+              }
+            });
+          }
+
+          @Override
+          void inBoth(Index index) throws IOException, NigoriCryptographyException,
+              UnauthorisedException {
+            submitAll(workers, Collections.singleton(index));
+          }
+        });
   }
 
   /**
@@ -78,20 +387,22 @@ public class SyncingNigoriDatastore implements NigoriDatastore {
    * @throws NigoriCryptographyException
    * @throws UnauthorisedException
    */
-  private void syncRevisions(Index index) throws NigoriCryptographyException, IOException,
-      UnauthorisedException {
-    List<Revision> firstRevisions = first.getRevisions(index);
-    List<Revision> secondRevisions = second.getRevisions(index);
-    if (!(firstRevisions.containsAll(secondRevisions) && secondRevisions
-        .containsAll(firstRevisions))) {
-      // revisions not already synced
-      List<Revision> firstMSecond = new ArrayList<Revision>(firstRevisions);
-      firstMSecond.removeAll(secondRevisions);
-      addAllRevisions(index, firstMSecond, first, second);
-      List<Revision> secondMFirst = new ArrayList<Revision>(secondRevisions);
-      secondMFirst.removeAll(firstRevisions);
-      addAllRevisions(index, secondMFirst, second, first);
-    }
+  private void syncRevisions(final Index index) throws NigoriCryptographyException,
+      IOException, UnauthorisedException {
+    NigoriDatastore from = syncFirst;
+    NigoriDatastore to = syncSecond;
+    Future<List<Revision>> secondListed = in(to, new Operation<List<Revision>>() {
+      @Override
+      List<Revision> on(NigoriDatastore store) throws IOException, NigoriCryptographyException,
+          UnauthorisedException {
+        return store.getRevisions(index);
+      }
+    });
+    List<Revision> firstRevisions = from.getRevisions(index);
+    List<Revision> secondRevisions = await(secondListed);
+    SetDifference.Split<Revision> split = SetDifference.split(firstRevisions, secondRevisions);
+    addAllRevisions(index, split.firstOnly, from, to);
+    addAllRevisions(index, split.secondOnly, to, from);
   }
 
   /**
@@ -104,25 +415,28 @@ public class SyncingNigoriDatastore implements NigoriDatastore {
    */
   private void addAllRevisions(Index index, List<Revision> revisions, NigoriDatastore from,
       NigoriDatastore to) throws IOException, NigoriCryptographyException, UnauthorisedException {
-    for (Revision revision : revisions) {
-      to.put(index, revision, from.getRevision(index, revision));
+    if (revisions == null || revisions.isEmpty()) {
+      return;
+    }
+    for (RevValue revValue : from.getRevisionValues(index, revisions)) {
+      to.put(index, revValue.getRevision(), revValue.getValue());
     }
   }
 
   /**
-   * Add all the indices from one NigoriDatastore to another
+   * Add an index from one NigoriDatastore to another
    * 
-   * @param indices
+   * @param index
    * @param from
    * @param to
    * @throws NigoriCryptographyException
    * @throws IOException
    * @throws UnauthorisedException
    */
-  private void addAllIndices(List<Index> indices, NigoriDatastore from, NigoriDatastore to)
+  private void addIndex(Index index, NigoriDatastore from, NigoriDatastore to)
       throws IOException, NigoriCryptographyException, UnauthorisedException {
-    for (Index index : indices) {
-      List<RevValue> revs = from.get(index);
+    List<RevValue> revs = from.get(index);
+    if (revs != null) {
       for (RevValue rev : revs) {
         to.put(index, rev.getRevision(), rev.getValue());
       }
@@ -135,23 +449,34 @@ public class SyncingNigoriDatastore implements NigoriDatastore {
    */
   @Override
   public boolean register() throws IOException, NigoriCryptographyException {
-    boolean firstReg = first.register();
-    boolean secondReg = second.register();
-    return firstReg && secondReg;
+    try {
+      return inBoth(new Operation<Boolean>() {
+        @Override
+        Boolean on(NigoriDatastore store) throws IOException, NigoriCryptographyException {
+          return store.register();
+        }
+      });
+    } catch (UnauthorisedException e) {
+      throw new IOException(e);// register doesn't throw this
+    }
   }
 
   /**
    * Attempts to unregister from both stores, if one fails the other may still succeed and false
    * will be returned
-   * 
+   *
    * @throws UnauthorisedException
    */
   @Override
   public boolean unregister() throws IOException, NigoriCryptographyException,
       UnauthorisedException {
-    boolean firstReg = first.unregister();
-    boolean secondReg = second.unregister();
-    return firstReg && secondReg;
+    return inBoth(new Operation<Boolean>() {
+      @Override
+      Boolean on(NigoriDatastore store) throws IOException, NigoriCryptographyException,
+          UnauthorisedException {
+        return store.unregister();
+      }
+    });
   }
 
   /**
@@ -160,86 +485,385 @@ public class SyncingNigoriDatastore implements NigoriDatastore {
    */
   @Override
   public boolean authenticate() throws IOException, NigoriCryptographyException {
-    boolean firstAuth = first.authenticate();
-    boolean secondAuth = second.authenticate();
-    return firstAuth && secondAuth;
+    try {
+      return inBoth(new Operation<Boolean>() {
+        @Override
+        Boolean on(NigoriDatastore store) throws IOException, NigoriCryptographyException {
+          return store.authenticate();
+        }
+      });
+    } catch (UnauthorisedException e) {
+      throw new IOException(e);// authenticate doesn't throw this
+    }
   }
 
   @Override
-  public boolean put(Index index, Revision revision, byte[] value) throws IOException,
-      NigoriCryptographyException, UnauthorisedException {
-    boolean firstPut = first.put(index, revision, value);
-    boolean secondPut = second.put(index, revision, value);
-    return firstPut && secondPut;
+  public boolean put(final Index index, final Revision revision, final byte[] value)
+      throws IOException, NigoriCryptographyException, UnauthorisedException {
+    return inBoth(new Operation<Boolean>() {
+      @Override
+      Boolean on(NigoriDatastore store) throws IOException, NigoriCryptographyException,
+          UnauthorisedException {
+        return store.put(index, revision, value);
+      }
+    });
   }
 
   @Override
   public List<Index> getIndices() throws NigoriCryptographyException, IOException,
       UnauthorisedException {
-    List<Index> firstIndices = first.getIndices();
-    List<Index> secondIndices = second.getIndices();
-    secondIndices.removeAll(firstIndices);
-    firstIndices.addAll(secondIndices);// TODO(drt24) do a proper union and sync here
-    return firstIndices;
+    return read(new Read<List<Index>>() {
+      @Override
+      List<Index> on(NigoriDatastore store) throws IOException, NigoriCryptographyException,
+          UnauthorisedException {
+        return store.getIndices();
+      }
+
+      @Override
+      List<Index> combine(List<Index> firstIndices, List<Index> secondIndices) {
+        return SetDifference.union(firstIndices, secondIndices);
+      }
+    });
   }
 
   @Override
-  public List<RevValue> get(Index index) throws IOException, NigoriCryptographyException,
+  public List<RevValue> get(final Index index) throws IOException, NigoriCryptographyException,
       UnauthorisedException {
-    List<RevValue> firstRevVals = first.get(index);
-    List<RevValue> secondRevVals = second.get(index);
-    if (firstRevVals == null) {
-      if (secondRevVals == null) {
-        return null;
-      } else {
-        return secondRevVals;
+    return read(new Read<List<RevValue>>() {
+      @Override
+      List<RevValue> on(NigoriDatastore store) throws IOException, NigoriCryptographyException,
+          UnauthorisedException {
+        return store.get(index);
       }
-    }
-    if (secondRevVals == null) {
-      return firstRevVals;
-    }
-    secondRevVals.removeAll(firstRevVals);
-    firstRevVals.addAll(secondRevVals);// TODO(drt24) do a proper union and sync here
-    return firstRevVals;
+
+      @Override
+      List<RevValue> combine(List<RevValue> firstRevVals, List<RevValue> secondRevVals) {
+        return SetDifference.union(firstRevVals, secondRevVals);
+      }
+    });
   }
 
   @Override
-  public byte[] getRevision(Index index, Revision revision) throws IOException,
+  public byte[] getRevision(final Index index, final Revision revision) throws IOException,
       NigoriCryptographyException, UnauthorisedException {
-    byte[] firstValue = first.getRevision(index, revision);
-    byte[] secondValue = second.getRevision(index, revision);
-    if (!Arrays.equals(firstValue, secondValue)) {
-      throw new IOException("Stores returned different values for the same revision");
+    return read(new Read<byte[]>() {
+      @Override
+      byte[] on(NigoriDatastore store) throws IOException, NigoriCryptographyException,
+          UnauthorisedException {
+        return store.getRevision(index, revision);
+      }
+
+      @Override
+      byte[] combine(byte[] firstValue, byte[] secondValue) throws IOException {
+        if (!Arrays.equals(firstValue, secondValue)) {
+          throw new IOException("Stores returned different values for the same revision");
+        }
+        return firstValue;
+      }
+    });
+  }
+
+  @Override
+  public List<RevValue> getRevisionValues(final Index index, final List<Revision> revisions)
+      throws NigoriCryptographyException, IOException, UnauthorisedException {
+    return read(new Read<List<RevValue>>() {
+      @Override
+      List<RevValue> on(NigoriDatastore store) throws IOException, NigoriCryptographyException,
+          UnauthorisedException {
+        return store.getRevisionValues(index, revisions);
+      }
+
+      @Override
+      boolean isAnswer(List<RevValue> values) {
+        // A store missing some of the revisions may just not have been synced yet
+        return values != null && values.size() == revisions.size();
+      }
+
+      @Override
+      List<RevValue> combine(List<RevValue> firstRevVals, List<RevValue> secondRevVals)
+          throws IOException {
+        Map<Revision, byte[]> firstValues = valueMap(firstRevVals);
+        Map<Revision, byte[]> secondValues = valueMap(secondRevVals);
+        List<RevValue> answer = new ArrayList<RevValue>(firstValues.size());
+        for (Revision revision : revisions) {
+          byte[] firstValue = firstValues.get(revision);
+          if (!Arrays.equals(firstValue, secondValues.get(revision))) {
+            throw new IOException("Stores returned different values for the same revision");
+          }
+          if (firstValue != null) {
+            answer.add(new RevValue(revision, firstValue));
+          }
+        }
+        return answer;
+      }
+    });
+  }
+
+  static Map<Revision, byte[]> valueMap(List<RevValue> revValues) {
+    Map<Revision, byte[]> values = new HashMap<Revision, byte[]>();
+    for (RevValue revValue : revValues) {
+      values.put(revValue.getRevision(), revValue.getValue());
     }
-    return firstValue;
+    return values;
   }
 
   @Override
-  public List<Revision> getRevisions(Index index) throws NigoriCryptographyException, IOException,
+  public List<Revision> getRevisions(final Index index) throws NigoriCryptographyException,
+      IOException, UnauthorisedException {
+    return read(new Read<List<Revision>>() {
+      @Override
+      List<Revision> on(NigoriDatastore store) throws IOException, NigoriCryptographyException,
+          UnauthorisedException {
+        return store.getRevisions(index);
+      }
+
+      @Override
+      List<Revision> combine(List<Revision> firstRevisions, List<Revision> secondRevisions) {
+        return SetDifference.union(firstRevisions, secondRevisions);
+      }
+    });
+  }
+
+  @Override
+  public boolean delete(final Index index, final byte[] token) throws NigoriCryptographyException,
+      IOException, UnauthorisedException {
+    return inBoth(new Operation<Boolean>() {
+      @Override
+      Boolean on(NigoriDatastore store) throws IOException, NigoriCryptographyException,
+          UnauthorisedException {
+        return store.delete(index, token);
+      }
+    });
+  }
+
+  /**
+   * Something to do to each of the stores
+   */
+  abstract static class Operation<T> {
+    abstract T on(NigoriDatastore store) throws IOException, NigoriCryptographyException,
+        UnauthorisedException;
+  }
+
+  /**
+   * A read from each of the stores and how to combine the answers when both are waited for
+   */
+  private abstract static class Read<T> extends Operation<T> {
+    abstract T combine(T firstAnswer, T secondAnswer) throws IOException;
+
+    /**
+     * @return whether answer is good enough to be given without the other store's, when the
+     *         policy allows it
+     */
+    boolean isAnswer(T answer) {
+      if (answer instanceof Collection) {
+        return !((Collection<?>) answer).isEmpty();
+      }
+      return answer != null;
+    }
+  }
+
+  /**
+   * Start doing operation to the second store on the executor, so that the first can be done at the
+   * same time
+   *
+   * @param operation
+   * @return the result, to be got using {@link #await(Future)}
+   */
+  <T> StoreTask<T> inSecond(Operation<T> operation) {
+    return in(second, operation);
+  }
+
+  private <T> StoreTask<T> in(NigoriDatastore store, Operation<T> operation) {
+    StoreTask<T> task = new StoreTask<T>(callable(operation, store));
+    executor.execute(task);
+    return task;
+  }
+
+  /**
+   * An operation on a store run by the executor, which can be withdrawn until it starts
+   */
+  static class StoreTask<T> extends FutureTask<T> {
+    private final AtomicBoolean claimed = new AtomicBoolean(false);
+
+    StoreTask(Callable<T> callable) {
+      super(callable);
+    }
+
+    @Override
+    public void run() {
+      if (claimed.compareAndSet(false, true)) {
+        super.run();
+      }
+    }
+
+    /**
+     * @return true if the operation will now never be done, false if it has already started
+     */
+    boolean withdraw() {
+      if (claimed.compareAndSet(false, true)) {
+        cancel(false);
+        return true;
+      }
+      return false;
+    }
+  }
+
+  private static <T> Callable<T> callable(final Operation<T> operation,
+      final NigoriDatastore store) {
+    final Throwable from = new Throwable();
+    return new Callable<T>() {
+      @Override
+      public T call() throws Exception {
+        try {
+          return operation.on(store);
+        } catch (Exception e) {
+          Util.addFrom(e, from);
+          throw e;
+        }
+      }
+    };
+  }
+
+  /**
+   * Wait for an operation started by {@link #inSecond(Operation)} and give its result, or throw
+   * what it threw
+   */
+  static <T> T await(Future<T> answer) throws IOException, NigoriCryptographyException,
       UnauthorisedException {
-    List<Revision> firstRevisions = first.getRevisions(index);
-    List<Revision> secondRevisions = second.getRevisions(index);
-    if (firstRevisions == null) {
-      if (secondRevisions == null) {
-        return null;
-      } else {
-        return secondRevisions;
+    try {
+      return answer.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for the store", e);
+    } catch (ExecutionException e) {
+      Throwable failure = e.getCause();
+      if (failure instanceof IOException) {
+        throw (IOException) failure;
+      }
+      if (failure instanceof NigoriCryptographyException) {
+        throw (NigoriCryptographyException) failure;
+      }
+      if (failure instanceof UnauthorisedException) {
+        throw (UnauthorisedException) failure;
+      }
+      if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      }
+      if (failure instanceof Error) {
+        throw (Error) failure;
       }
+      throw new IOException(failure);
     }
-    if (secondRevisions == null) {
-      return firstRevisions;
+  }
+
+  private static boolean failed(Future<?> done) {
+    try {
+      done.get();
+      return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return true;
+    } catch (ExecutionException e) {
+      return true;
     }
-    secondRevisions.removeAll(firstRevisions);
-    firstRevisions.addAll(secondRevisions);// TODO(drt24) do a proper union and sync here
-    return firstRevisions;
   }
 
-  @Override
-  public boolean delete(Index index, byte[] token) throws NigoriCryptographyException, IOException,
+  /**
+   * Do operation to both stores at once
+   *
+   * @return true if it returned true for both stores
+   */
+  private boolean inBoth(Operation<Boolean> operation) throws IOException,
+      NigoriCryptographyException, UnauthorisedException {
+    StoreTask<Boolean> secondDone = inSecond(operation);
+    boolean firstDone = inFirst(operation, secondDone);
+    boolean secondSucceeded = await(secondDone);
+    return firstDone && secondSucceeded;
+  }
+
+  /**
+   * Do operation to the first store while the second store's is in progress. If the first store's
+   * fails then the second store's is cancelled if it hasn't started yet, otherwise it is waited
+   * for, so that nothing is still being done to the second store once the failure is thrown.
+   *
+   * @param secondDone from {@link #inSecond(Operation)}, or null if the second store isn't used
+   */
+  <T> T inFirst(Operation<T> operation, StoreTask<?> secondDone) throws IOException,
+      NigoriCryptographyException, UnauthorisedException {
+    boolean done = false;
+    try {
+      T answer = operation.on(first);
+      done = true;
+      return answer;
+    } finally {
+      if (!done && secondDone != null && !secondDone.withdraw() && failed(secondDone)) {
+        log.fine("Second store also failed after the first store failed");
+      }
+    }
+  }
+
+  private <T> T read(Read<T> read) throws IOException, NigoriCryptographyException,
+      UnauthorisedException {
+    switch (readPolicy) {
+      case FIRST_STORE:
+        return firstStore(read);
+      case FIRST_RESPONSE:
+        return firstResponse(read);
+      default:
+        StoreTask<T> secondAnswer = inSecond(read);
+        T firstAnswer = inFirst(read, secondAnswer);
+        return read.combine(firstAnswer, await(secondAnswer));
+    }
+  }
+
+  private <T> T firstStore(Read<T> read) throws IOException, NigoriCryptographyException,
       UnauthorisedException {
-    boolean firstDel = first.delete(index, token);
-    boolean secondDel = second.delete(index, token);
-    return firstDel & secondDel;
+    StoreTask<T> secondAnswer = inSecond(read);
+    T firstAnswer = inFirst(read, secondAnswer);
+    if (read.isAnswer(firstAnswer)) {
+      return firstAnswer;
+    }
+    T answer = await(secondAnswer);
+    if (read.isAnswer(answer)) {
+      return answer;
+    }
+    return read.combine(firstAnswer, answer);
+  }
+
+  private <T> T firstResponse(Read<T> read) throws IOException, NigoriCryptographyException,
+      UnauthorisedException {
+    CompletionService<T> answers = new ExecutorCompletionService<T>(executor);
+    Future<T> firstAnswer = answers.submit(callable(read, first));
+    answers.submit(callable(read, second));
+    Future<T> sooner = take(answers);
+    if (!failed(sooner)) {
+      T answer = await(sooner);
+      if (read.isAnswer(answer)) {
+        return answer;
+      }
+    }
+    Future<T> later = take(answers);
+    if (!failed(later)) {
+      T answer = await(later);
+      if (read.isAnswer(answer)) {
+        return answer;
+      }
+    }
+    // Neither store had an answer, throw the failure if either failed
+    if (sooner == firstAnswer) {
+      return read.combine(await(sooner), await(later));
+    } else {
+      return read.combine(await(later), await(sooner));
+    }
+  }
+
+  private static <T> Future<T> take(CompletionService<T> answers) throws IOException {
+    try {
+      return answers.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for the stores", e);
+    }
   }
 
 }
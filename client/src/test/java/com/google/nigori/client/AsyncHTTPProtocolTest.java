@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import static com.google.nigori.client.FakeHttpServer.ok;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.nigori.common.MessageLibrary;
+import com.google.nigori.common.NigoriCryptographyException;
+import com.google.nigori.common.NigoriMessages.AuthenticateRequest;
+import com.google.nigori.common.NigoriMessages.GetIndicesResponse;
+import com.google.nigori.common.NigoriMessages.GetRevisionsResponse;
+import com.google.nigori.common.NotFoundException;
+import com.google.nigori.common.UnauthorisedException;
+import com.google.protobuf.ByteString;
+
+/**
+ * {@link AsyncHTTPProtocol} against a fake server which sends canned responses.
+ *
+ * @author drt24
+ *
+ */
+public class AsyncHTTPProtocolTest {
+
+  private static final String SERVER = "localhost";
+  private static final String NOT_ACCEPTABLE =
+      "HTTP/1.1 406 Not Acceptable\r\nContent-Length: 0\r\n\r\n";
+  private static final String NOT_FOUND = "HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n\r\n";
+
+  private final KeyManager keyManager = new DummyKeyManager(SERVER);
+  private FakeHttpServer server;
+  private NioHttpClient client;
+  private AsyncHTTPProtocol protocol;
+
+  @Before
+  public void start() throws IOException {
+    server = new FakeHttpServer();
+    client = new NioHttpClient();
+    protocol = new AsyncHTTPProtocol(client, SERVER, server.getPort(), "nigori");
+  }
+
+  @After
+  public void stop() throws IOException {
+    client.close();
+    server.close();
+  }
+
+  private AuthenticateRequest authenticate() throws NigoriCryptographyException {
+    return MessageLibrary.authenticateRequestAsProtobuf(SERVER, keyManager.signer());
+  }
+
+  /**
+   * A server which only understands JSON replies Not Acceptable to protobufs, after which that
+   * request and all the following ones are sent as JSON
+   */
+  @Test
+  public void jsonWhenProtobufNotAccepted() throws Throwable {
+    server.respond(NOT_ACCEPTABLE, ok(""), ok(""));
+    WaitingCallback<Boolean> first = new WaitingCallback<Boolean>();
+    protocol.authenticate(authenticate(), first);
+    assertTrue(first.get());
+    assertTrue(protocol.isUsingJson());
+    WaitingCallback<Boolean> second = new WaitingCallback<Boolean>();
+    protocol.authenticate(authenticate(), second);
+    assertTrue(second.get());
+
+    assertEquals(Arrays.asList(MessageLibrary.MIMETYPE_PROTOBUF, MessageLibrary.MIMETYPE_JSON,
+        MessageLibrary.MIMETYPE_JSON), server.contentTypes);
+    assertEquals("POST /nigori/" + MessageLibrary.REQUEST_AUTHENTICATE + " HTTP/1.1",
+        server.requests.get(0));
+    assertTrue(server.bodies.get(1).startsWith("{"));
+    assertTrue(server.bodies.get(2).startsWith("{"));
+  }
+
+  @Test
+  public void protobufResponse() throws Throwable {
+    GetIndicesResponse indices =
+        GetIndicesResponse.newBuilder().addIndices(ByteString.copyFromUtf8("index")).build();
+    server.respond(ok(new String(indices.toByteArray(), FakeHttpServer.CHARSET)));
+    WaitingCallback<GetIndicesResponse> callback = new WaitingCallback<GetIndicesResponse>();
+    protocol.getIndices(MessageLibrary.getIndicesRequestAsProtobuf(SERVER, keyManager.signer()),
+        callback);
+    assertEquals(indices, callback.get());
+    assertFalse(protocol.isUsingJson());
+  }
+
+  @Test
+  public void notFound() throws Throwable {
+    server.respond(NOT_FOUND, NOT_FOUND, NOT_FOUND);
+    WaitingCallback<GetIndicesResponse> indices = new WaitingCallback<GetIndicesResponse>();
+    protocol.getIndices(MessageLibrary.getIndicesRequestAsProtobuf(SERVER, keyManager.signer()),
+        indices);
+    assertNull(indices.get());
+
+    WaitingCallback<GetRevisionsResponse> revisions = new WaitingCallback<GetRevisionsResponse>();
+    protocol.getRevisions(MessageLibrary.getRevisionsRequestAsProtobuf(SERVER, keyManager
+        .signer(), MessageLibrary.toBytes("index")), revisions);
+    try {
+      revisions.get();
+      fail("Expected NotFoundException");
+    } catch (NotFoundException e) {
+      // expected
+    }
+
+    WaitingCallback<Boolean> delete = new WaitingCallback<Boolean>();
+    protocol.delete(MessageLibrary.deleteRequestAsProtobuf(SERVER, keyManager.signer(),
+        MessageLibrary.toBytes("index")), delete);
+    assertFalse(delete.get());
+  }
+
+  @Test
+  public void unauthorised() throws Throwable {
+    server.respond("HTTP/1.1 401 Unauthorized\r\nContent-Length: 4\r\n\r\nwho?");
+    WaitingCallback<Boolean> callback = new WaitingCallback<Boolean>();
+    protocol.delete(MessageLibrary.deleteRequestAsProtobuf(SERVER, keyManager.signer(),
+        MessageLibrary.toBytes("index")), callback);
+    try {
+      callback.get();
+      fail("Expected UnauthorisedException");
+    } catch (UnauthorisedException e) {
+      // expected
+    }
+  }
+}
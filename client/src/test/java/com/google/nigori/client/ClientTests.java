@@ -26,12 +26,21 @@ import com.google.nigori.client.accept.AcceptanceTests;
  */
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
+    AsyncHTTPProtocolTest.class,
     ComparableMergerTest.class,
     DAGTest.class,
     DummyKeyManagerTest.class,
+    HttpConnectionPoolTest.class,
+    LocalAsyncRemoteSyncingNigoriDatastoreTest.class,
+    LocalFirstSyncingNigoriDatastoreTest.class,
     RealKeyManagerTest.class,
     AcceptanceTests.class,
-    PasswordGeneratorTest.class
+    PasswordGeneratorTest.class,
+    NioHttpClientTest.class,
+    OutboxTest.class,
+    SetDifferenceTest.class,
+    SyncingNigoriDatastoreTest.class,
+    SyncWorkersTest.class
     })
 public class ClientTests {
 
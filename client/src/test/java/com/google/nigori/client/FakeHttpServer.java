@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.nigori.common.MessageLibrary;
+
+/**
+ * A fake HTTP server for testing clients, which accepts connections and answers each request on
+ * them with the next canned response.
+ *
+ * @author drt24
+ *
+ */
+class FakeHttpServer {
+
+  /**
+   * Close the connection instead of responding
+   */
+  static final String CLOSE = "close";
+  /**
+   * Never respond
+   */
+  static final String SILENT = "silent";
+  /**
+   * Send the rest of the response and then close the connection without saying
+   */
+  static final String HANG_UP = "hangup:";
+  /**
+   * Responses are sent in this so that each char is a byte and bodies can be binary
+   */
+  static final String CHARSET = "ISO-8859-1";
+
+  private final ServerSocket socket;
+  private final BlockingQueue<String> responses = new LinkedBlockingQueue<String>();
+  private final List<Socket> sockets = Collections.synchronizedList(new ArrayList<Socket>());
+  final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+  final List<String> bodies = Collections.synchronizedList(new ArrayList<String>());
+  final List<String> contentTypes = Collections.synchronizedList(new ArrayList<String>());
+  final AtomicInteger accepted = new AtomicInteger();
+  private final AtomicInteger closed = new AtomicInteger();
+
+  FakeHttpServer() throws IOException {
+    socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    Thread acceptor = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          while (true) {
+            final Socket connection = socket.accept();
+            accepted.incrementAndGet();
+            sockets.add(connection);
+            Thread handler = new Thread(new Runnable() {
+              @Override
+              public void run() {
+                serve(connection);
+              }
+            });
+            handler.setDaemon(true);
+            handler.start();
+          }
+        } catch (IOException e) {
+          // closed
+        }
+      }
+    });
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  static String ok(String body) {
+    return "HTTP/1.1 200 OK\r\nContent-Length: " + body.length() + "\r\n\r\n" + body;
+  }
+
+  static String redirect(int code, String location) {
+    return "HTTP/1.1 " + code + " Moved\r\nLocation: " + location
+        + "\r\nContent-Length: 0\r\n\r\n";
+  }
+
+  int getPort() {
+    return socket.getLocalPort();
+  }
+
+  void respond(String... responses) {
+    this.responses.addAll(Arrays.asList(responses));
+  }
+
+  /**
+   * Wait for the server to have closed count connections itself
+   */
+  void awaitClosed(int count) throws InterruptedException {
+    synchronized (closed) {
+      while (closed.get() < count) {
+        closed.wait(5000);
+      }
+    }
+    // give the client's end time to see it
+    Thread.sleep(100);
+  }
+
+  private void serve(Socket connection) {
+    try {
+      InputStream in = new BufferedInputStream(connection.getInputStream());
+      OutputStream out = connection.getOutputStream();
+      String line;
+      while ((line = readLine(in)) != null) {
+        int length = 0;
+        String contentType = null;
+        String header;
+        while ((header = readLine(in)) != null && header.length() > 0) {
+          if (header.toLowerCase().startsWith("content-length:")) {
+            length = Integer.parseInt(header.substring("content-length:".length()).trim());
+          } else if (header.toLowerCase().startsWith("content-type:")) {
+            contentType = header.substring("content-type:".length()).trim();
+          }
+        }
+        byte[] body = new byte[length];
+        new DataInputStream(in).readFully(body);
+        requests.add(line);
+        bodies.add(MessageLibrary.bytesToString(body));
+        contentTypes.add(contentType);
+        String response = responses.poll(5, TimeUnit.SECONDS);
+        if (response == null || CLOSE.equals(response)) {
+          break;
+        }
+        if (SILENT.equals(response)) {
+          continue;
+        }
+        boolean hangUp = response.startsWith(HANG_UP);
+        if (hangUp) {
+          response = response.substring(HANG_UP.length());
+        }
+        out.write(response.getBytes(CHARSET));
+        out.flush();
+        if (hangUp) {
+          break;
+        }
+      }
+    } catch (IOException e) {
+      // client went away
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      try {
+        connection.close();
+      } catch (IOException e) {
+        // already closing
+      }
+      synchronized (closed) {
+        closed.incrementAndGet();
+        closed.notifyAll();
+      }
+    }
+  }
+
+  private static String readLine(InputStream in) throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    int read;
+    while ((read = in.read()) != -1 && read != '\n') {
+      if (read != '\r') {
+        line.write(read);
+      }
+    }
+    if (read == -1 && line.size() == 0) {
+      return null;
+    }
+    return MessageLibrary.bytesToString(line.toByteArray());
+  }
+
+  void close() throws IOException {
+    socket.close();
+    synchronized (sockets) {
+      for (Socket connection : sockets) {
+        connection.close();
+      }
+    }
+  }
+}
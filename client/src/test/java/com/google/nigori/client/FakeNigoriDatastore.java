@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.nigori.common.Index;
+import com.google.nigori.common.RevValue;
+import com.google.nigori.common.Revision;
+
+/**
+ * An in-memory store for testing the stores which combine others, which can be made to fail or to
+ * hold calls until they are let through.
+ *
+ * @author drt24
+ *
+ */
+class FakeNigoriDatastore implements NigoriDatastore {
+
+  private final Map<Index, Map<Revision, byte[]>> records =
+      new LinkedHashMap<Index, Map<Revision, byte[]>>();
+
+  /**
+   * Thrown by every call while set
+   */
+  volatile IOException failure = null;
+  /**
+   * Puts and deletes are refused while set
+   */
+  volatile boolean refusing = false;
+  /**
+   * Calls wait until this is counted down, while set
+   */
+  volatile CountDownLatch gate = null;
+  /**
+   * Calls which have been made, and those of them which have returned or thrown
+   */
+  final AtomicInteger calls = new AtomicInteger();
+  final AtomicInteger finished = new AtomicInteger();
+
+  /**
+   * @return a gate which holds calls until it is opened with {@link CountDownLatch#countDown()}
+   */
+  CountDownLatch hold() {
+    gate = new CountDownLatch(1);
+    return gate;
+  }
+
+  private void begin() throws IOException {
+    calls.incrementAndGet();
+    CountDownLatch waitFor = gate;
+    try {
+      if (waitFor != null && !waitFor.await(10, TimeUnit.SECONDS)) {
+        throw new IOException("Held for too long");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+    IOException fail = failure;
+    if (fail != null) {
+      throw fail;
+    }
+  }
+
+  private void end() {
+    finished.incrementAndGet();
+  }
+
+  /**
+   * Add a record without it counting as a call
+   */
+  synchronized void add(Index index, Revision revision, byte[] value) {
+    Map<Revision, byte[]> revisions = records.get(index);
+    if (revisions == null) {
+      revisions = new LinkedHashMap<Revision, byte[]>();
+      records.put(index, revisions);
+    }
+    revisions.put(revision, value);
+  }
+
+  synchronized boolean has(Index index, Revision revision) {
+    Map<Revision, byte[]> revisions = records.get(index);
+    return revisions != null && revisions.containsKey(revision);
+  }
+
+  @Override
+  public boolean register() throws IOException {
+    begin();
+    try {
+      return true;
+    } finally {
+      end();
+    }
+  }
+
+  @Override
+  public boolean unregister() throws IOException {
+    begin();
+    try {
+      synchronized (this) {
+        records.clear();
+        return true;
+      }
+    } finally {
+      end();
+    }
+  }
+
+  @Override
+  public boolean authenticate() throws IOException {
+    begin();
+    try {
+      return true;
+    } finally {
+      end();
+    }
+  }
+
+  @Override
+  public List<Index> getIndices() throws IOException {
+    begin();
+    try {
+      synchronized (this) {
+        return new ArrayList<Index>(records.keySet());
+      }
+    } finally {
+      end();
+    }
+  }
+
+  @Override
+  public byte[] getRevision(Index index, Revision revision) throws IOException {
+    begin();
+    try {
+      synchronized (this) {
+        Map<Revision, byte[]> revisions = records.get(index);
+        return revisions == null ? null : revisions.get(revision);
+      }
+    } finally {
+      end();
+    }
+  }
+
+  @Override
+  public boolean put(Index index, Revision revision, byte[] value) throws IOException {
+    begin();
+    try {
+      if (refusing) {
+        return false;
+      }
+      add(index, revision, value);
+      return true;
+    } finally {
+      end();
+    }
+  }
+
+  @Override
+  public List<RevValue> get(Index index) throws IOException {
+    begin();
+    try {
+      synchronized (this) {
+        Map<Revision, byte[]> revisions = records.get(index);
+        if (revisions == null) {
+          return null;
+        }
+        List<RevValue> answer = new ArrayList<RevValue>(revisions.size());
+        for (Map.Entry<Revision, byte[]> revision : revisions.entrySet()) {
+          answer.add(new RevValue(revision.getKey(), revision.getValue()));
+        }
+        return answer;
+      }
+    } finally {
+      end();
+    }
+  }
+
+  @Override
+  public List<Revision> getRevisions(Index index) throws IOException {
+    begin();
+    try {
+      synchronized (this) {
+        Map<Revision, byte[]> revisions = records.get(index);
+        return revisions == null ? null : new ArrayList<Revision>(revisions.keySet());
+      }
+    } finally {
+      end();
+    }
+  }
+
+  @Override
+  public List<RevValue> getRevisionValues(Index index, List<Revision> revisions)
+      throws IOException {
+    begin();
+    try {
+      synchronized (this) {
+        Map<Revision, byte[]> values = records.get(index);
+        List<RevValue> answer = new ArrayList<RevValue>();
+        for (Revision revision : revisions) {
+          if (values != null && values.containsKey(revision)) {
+            answer.add(new RevValue(revision, values.get(revision)));
+          }
+        }
+        return answer;
+      }
+    } finally {
+      end();
+    }
+  }
+
+  @Override
+  public boolean delete(Index index, byte[] token) throws IOException {
+    begin();
+    try {
+      synchronized (this) {
+        return !refusing && records.remove(index) != null;
+      }
+    } finally {
+      end();
+    }
+  }
+}
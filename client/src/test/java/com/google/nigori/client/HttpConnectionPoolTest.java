@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import static com.google.nigori.client.FakeHttpServer.CLOSE;
+import static com.google.nigori.client.FakeHttpServer.HANG_UP;
+import static com.google.nigori.client.FakeHttpServer.SILENT;
+import static com.google.nigori.client.FakeHttpServer.ok;
+import static com.google.nigori.client.FakeHttpServer.redirect;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.ServerSocket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.nigori.common.MessageLibrary;
+
+/**
+ * {@link Http} and {@link HttpConnectionPool} against a fake server which sends canned responses.
+ *
+ * @author drt24
+ *
+ */
+public class HttpConnectionPoolTest {
+
+  private static final String MIMETYPE = "text/plain";
+  private static final byte[] DATA = MessageLibrary.toBytes("request");
+
+  private FakeHttpServer server;
+
+  @Before
+  public void startServer() throws IOException {
+    server = new FakeHttpServer();
+  }
+
+  @After
+  public void stopServer() throws IOException {
+    server.close();
+  }
+
+  private static HttpConnectionPool pool() {
+    return new HttpConnectionPool(1000, 5000, 10000, 8, 30000);
+  }
+
+  private Http http(HttpConnectionPool pool) {
+    return new Http("http://localhost:" + server.getPort() + "/nigori/", MIMETYPE, pool);
+  }
+
+  @Test
+  public void connectionsReused() throws IOException {
+    HttpConnectionPool pool = pool();
+    Http http = http(pool);
+    server.respond(ok("one"), ok("two"), ok("three"));
+    assertEquals("one", http.post("get", DATA, MIMETYPE).toOutputString());
+    assertEquals(1, pool.getIdleCount());
+    assertEquals("two", http.post("put", DATA, MIMETYPE).toOutputString());
+    assertEquals("three", http.post("get", DATA, MIMETYPE).toOutputString());
+
+    assertEquals(1, server.accepted.get());
+    assertEquals(Arrays.asList("POST /nigori/get HTTP/1.1", "POST /nigori/put HTTP/1.1",
+        "POST /nigori/get HTTP/1.1"), server.requests);
+    assertEquals("request", server.bodies.get(1));
+    HttpConnectionPool.ConnectionMetrics metrics = pool.getMetrics();
+    assertEquals(1, metrics.getOpened());
+    assertEquals(2, metrics.getReused());
+    assertEquals(0, metrics.getClosed());
+    assertEquals(3, metrics.getRequests());
+    assertEquals(0, metrics.getFailures());
+
+    pool.closeIdle();
+    assertEquals(0, pool.getIdleCount());
+    assertEquals(1, metrics.getClosed());
+  }
+
+  @Test
+  public void concurrentRequestsUseSeparateConnections() throws IOException {
+    HttpConnectionPool pool = pool();
+    Http http = http(pool);
+    server.respond(ok("one"), ok("two"));
+    HttpResponse first = http.post("get", DATA, MIMETYPE);
+    HttpResponse second = http.post("get", DATA, MIMETYPE);
+    assertEquals(2, server.accepted.get());
+    first.close();
+    second.close();
+    assertEquals(2, pool.getIdleCount());
+  }
+
+  @Test
+  public void chunkedResponse() throws IOException {
+    HttpConnectionPool pool = pool();
+    Http http = http(pool);
+    server.respond("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+        + "5\r\nhello\r\n6;name=value\r\n world\r\n0\r\n\r\n", ok("again"));
+    assertEquals("hello world", http.post("get", DATA, MIMETYPE).toOutputString());
+    assertEquals("again", http.post("get", DATA, MIMETYPE).toOutputString());
+    assertEquals(1, server.accepted.get());
+  }
+
+  @Test
+  public void closedIdleConnectionNotUsed() throws Exception {
+    HttpConnectionPool pool = pool();
+    Http http = http(pool);
+    server.respond(HANG_UP + ok("one"), ok("two"));
+    assertEquals("one", http.post("get", DATA, MIMETYPE).toOutputString());
+    server.awaitClosed(1);
+    assertEquals("two", http.post("get", DATA, MIMETYPE).toOutputString());
+    assertEquals(2, server.accepted.get());
+    assertEquals(2, pool.getMetrics().getOpened());
+    assertEquals(0, pool.getMetrics().getReused());
+    assertEquals(1, pool.getMetrics().getClosed());
+  }
+
+  @Test
+  public void requestRetriedWhenReusedConnectionCloses() throws IOException {
+    HttpConnectionPool pool = pool();
+    Http http = http(pool);
+    server.respond(ok("one"), CLOSE, ok("two"));
+    assertEquals("one", http.post("get", DATA, MIMETYPE).toOutputString());
+    assertEquals("two", http.post("put", DATA, MIMETYPE).toOutputString());
+    assertEquals(2, server.accepted.get());
+    assertEquals(Arrays.asList("POST /nigori/get HTTP/1.1", "POST /nigori/put HTTP/1.1",
+        "POST /nigori/put HTTP/1.1"), server.requests);
+    assertEquals(0, pool.getMetrics().getFailures());
+  }
+
+  @Test
+  public void requestNotRetriedWhenNewConnectionCloses() throws IOException {
+    HttpConnectionPool pool = pool();
+    Http http = http(pool);
+    server.respond(CLOSE, ok("unused"));
+    try {
+      http.post("put", DATA, MIMETYPE);
+      fail("Expected EOFException");
+    } catch (EOFException e) {
+      // the server may have acted on the request so it isn't sent again
+    }
+    assertEquals(1, server.requests.size());
+    assertEquals(1, pool.getMetrics().getFailures());
+  }
+
+  @Test
+  public void readTimeout() throws IOException {
+    HttpConnectionPool pool = new HttpConnectionPool(1000, 200, 10000, 8, 30000);
+    Http http = http(pool);
+    server.respond(SILENT);
+    try {
+      http.post("get", DATA, MIMETYPE);
+      fail("Expected SocketTimeoutException");
+    } catch (SocketTimeoutException e) {
+      // expected
+    }
+    assertEquals(1, pool.getMetrics().getFailures());
+    assertEquals(1, pool.getMetrics().getClosed());
+    assertEquals(0, pool.getIdleCount());
+  }
+
+  @Test
+  public void requestTimeout() throws IOException {
+    HttpConnectionPool pool = new HttpConnectionPool(1000, 10000, 300, 8, 30000);
+    Http http = http(pool);
+    server.respond(SILENT);
+    long start = System.currentTimeMillis();
+    try {
+      http.post("get", DATA, MIMETYPE);
+      fail("Expected SocketTimeoutException");
+    } catch (SocketTimeoutException e) {
+      // expected
+    }
+    assertTrue("Gave up before the read timeout", System.currentTimeMillis() - start < 5000);
+  }
+
+  @Test
+  public void redirectsFollowed() throws IOException {
+    Http http = http(pool());
+    server.respond(redirect(307, "/moved/get"),
+        redirect(301, "http://localhost:" + server.getPort() + "/again"), ok("moved"));
+    assertEquals("moved", http.post("get", DATA, MIMETYPE).toOutputString());
+    assertEquals(Arrays.asList("POST /nigori/get HTTP/1.1", "POST /moved/get HTTP/1.1",
+        "POST /again HTTP/1.1"), server.requests);
+    assertEquals(Arrays.asList("request", "request", "request"), server.bodies);
+    assertEquals(1, server.accepted.get());
+  }
+
+  @Test
+  public void redirectLoopStops() throws IOException {
+    Http http = http(pool());
+    for (int i = 0; i <= Http.MAX_REDIRECTS; ++i) {
+      server.respond(redirect(302, "/loop"));
+    }
+    HttpResponse response = http.post("get", DATA, MIMETYPE);
+    assertEquals(302, response.getResponseCode());
+    response.close();
+    assertEquals(Http.MAX_REDIRECTS + 1, server.requests.size());
+  }
+
+  /**
+   * Requests go through the proxies the default {@link ProxySelector} gives, falling back to the
+   * next one when a proxy can't be reached
+   */
+  @Test
+  public void proxy() throws IOException {
+    ServerSocket unused = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+    InetSocketAddress dead = new InetSocketAddress(InetAddress.getLoopbackAddress(),
+        unused.getLocalPort());
+    unused.close();
+    final List<Proxy> proxies = Arrays.asList(new Proxy(Proxy.Type.HTTP, dead),
+        new Proxy(Proxy.Type.HTTP, new InetSocketAddress(InetAddress.getLoopbackAddress(),
+            server.getPort())));
+    final List<SocketAddress> failed = Collections.synchronizedList(new ArrayList<SocketAddress>());
+    ProxySelector original = ProxySelector.getDefault();
+    ProxySelector.setDefault(new ProxySelector() {
+      @Override
+      public List<Proxy> select(URI uri) {
+        return proxies;
+      }
+
+      @Override
+      public void connectFailed(URI uri, SocketAddress address, IOException e) {
+        failed.add(address);
+      }
+    });
+    try {
+      // never looked up as the proxy is asked for it
+      Http http = new Http("http://nigori.invalid:8888/nigori/", MIMETYPE, pool());
+      server.respond(ok("proxied"));
+      assertEquals("proxied", http.post("get", DATA, MIMETYPE).toOutputString());
+      assertEquals(Arrays.asList("POST http://nigori.invalid:8888/nigori/get HTTP/1.1"),
+          server.requests);
+      assertEquals(Arrays.asList(dead), failed);
+
+      Http https = new Http("https://nigori.invalid/nigori/", MIMETYPE, pool());
+      server.respond("HTTP/1.1 403 Forbidden\r\n\r\n");
+      try {
+        https.post("get", DATA, MIMETYPE);
+        fail("Expected IOException");
+      } catch (IOException e) {
+        // the proxy refused to open a tunnel
+      }
+      assertEquals("CONNECT nigori.invalid:443 HTTP/1.1", server.requests.get(1));
+    } finally {
+      ProxySelector.setDefault(original);
+    }
+  }
+}
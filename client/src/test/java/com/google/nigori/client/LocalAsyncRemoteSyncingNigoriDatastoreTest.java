@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import static com.google.nigori.common.MessageLibrary.toBytes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.nigori.common.Index;
+import com.google.nigori.common.Revision;
+
+/**
+ * {@link LocalAsyncRemoteSyncingNigoriDatastore} sending what is in its outbox to the remote,
+ * including after being reopened on the same outbox file.
+ *
+ * @author drt24
+ *
+ */
+public class LocalAsyncRemoteSyncingNigoriDatastoreTest {
+
+  private static final Index A = new Index("a");
+  private static final Index B = new Index("b");
+
+  private FakeNigoriDatastore local;
+  private FakeNigoriDatastore remote;
+  private Revision revision;
+  private File file;
+
+  @Before
+  public void setUp() throws IOException {
+    local = new FakeNigoriDatastore();
+    remote = new FakeNigoriDatastore();
+    revision = new Revision("revision");
+    file = File.createTempFile("outbox", ".log");
+    assertTrue(file.delete());
+  }
+
+  @After
+  public void deleteFile() {
+    file.delete();
+    new File(file.getPath() + ".new").delete();
+    new File(file.getPath() + ".lock").delete();
+  }
+
+  private static void awaitUnsent(LocalAsyncRemoteSyncingNigoriDatastore store, int unsent)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10 * 1000;
+    while (store.getUnsent() != unsent) {
+      if (System.currentTimeMillis() > deadline) {
+        fail("Timed out waiting for " + unsent + " unsent, have " + store.getUnsent());
+      }
+      Thread.sleep(20);
+    }
+  }
+
+  /**
+   * What couldn't be sent before the datastore was closed is sent by the next one opened on the
+   * same outbox, even though its local store doesn't have it
+   */
+  @Test(timeout = 10000)
+  public void replayedAfterReopening() throws Exception {
+    remote.failure = new IOException("down");
+    LocalAsyncRemoteSyncingNigoriDatastore store =
+        new LocalAsyncRemoteSyncingNigoriDatastore(local, remote, file);
+    assertTrue(store.put(A, revision, toBytes("a")));
+    assertTrue(store.put(B, revision, toBytes("b")));
+    store.delete(B, new byte[] {});
+    assertEquals(2, store.getUnsent());
+    store.close();
+    try {
+      store.put(A, new Revision("later"), toBytes("later"));
+      fail("Expected IOException");
+    } catch (IOException e) {
+      // closed
+    }
+
+    remote.failure = null;
+    store =
+        new LocalAsyncRemoteSyncingNigoriDatastore(new FakeNigoriDatastore(), remote, file);
+    assertEquals(2, store.getUnsent());
+    assertTrue(store.authenticate());
+    awaitUnsent(store, 0);
+    assertTrue(remote.has(A, revision));
+    assertFalse(remote.has(B, revision));
+    store.close();
+    assertEquals(0, file.length());
+  }
+
+  /**
+   * A put the remote refuses stays in the outbox until the remote takes it
+   */
+  @Test(timeout = 10000)
+  public void refusedKept() throws Exception {
+    remote.refusing = true;
+    LocalAsyncRemoteSyncingNigoriDatastore store =
+        new LocalAsyncRemoteSyncingNigoriDatastore(local, remote);
+    assertTrue(store.put(A, revision, toBytes("a")));
+    while (remote.finished.get() == 0) {
+      Thread.sleep(20);
+    }
+    Thread.sleep(100);
+    assertEquals(1, store.getUnsent());
+    assertFalse(remote.has(A, revision));
+
+    remote.refusing = false;
+    assertTrue(store.authenticate());
+    awaitUnsent(store, 0);
+    assertTrue(remote.has(A, revision));
+    store.close();
+  }
+
+  /**
+   * A delete of an index the remote doesn't have is done even though the remote refuses it
+   */
+  @Test(timeout = 10000)
+  public void deleteOfMissing() throws Exception {
+    LocalAsyncRemoteSyncingNigoriDatastore store =
+        new LocalAsyncRemoteSyncingNigoriDatastore(local, remote);
+    store.delete(A, new byte[] {});
+    awaitUnsent(store, 0);
+    store.close();
+  }
+
+  @Test
+  public void outboxInUse() throws Exception {
+    LocalAsyncRemoteSyncingNigoriDatastore store =
+        new LocalAsyncRemoteSyncingNigoriDatastore(local, remote, file);
+    try {
+      new LocalAsyncRemoteSyncingNigoriDatastore(local, remote, file);
+      fail("Expected IOException");
+    } catch (IOException e) {
+      // expected
+    }
+    store.close();
+  }
+}
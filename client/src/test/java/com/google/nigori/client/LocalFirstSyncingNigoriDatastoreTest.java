@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import static com.google.nigori.common.MessageLibrary.toBytes;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.nigori.common.Index;
+import com.google.nigori.common.Revision;
+
+/**
+ * {@link LocalFirstSyncingNigoriDatastore} carrying on with only the first store while the second
+ * can't be reached, and catching up once it can.
+ *
+ * @author drt24
+ *
+ */
+public class LocalFirstSyncingNigoriDatastoreTest {
+
+  private static final Index INDEX = new Index("index");
+
+  private FakeNigoriDatastore first;
+  private FakeNigoriDatastore second;
+  private LocalFirstSyncingNigoriDatastore store;
+  private Revision revision;
+
+  @Before
+  public void setUp() throws Exception {
+    first = new FakeNigoriDatastore();
+    second = new FakeNigoriDatastore();
+    store = new LocalFirstSyncingNigoriDatastore(first, second);
+    revision = new Revision("revision");
+  }
+
+  @After
+  public void tearDown() {
+    store.close();
+  }
+
+  private static void await(String what, FakeNigoriDatastore store, Index index,
+      Revision revision) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10 * 1000;
+    while (!store.has(index, revision)) {
+      if (System.currentTimeMillis() > deadline) {
+        fail("Timed out waiting for " + what);
+      }
+      Thread.sleep(20);
+    }
+  }
+
+  @Test
+  public void retryDelayBacksOff() {
+    Random random = new Random();
+    for (int failures = 0; failures < 40; ++failures) {
+      long delay =
+          Math.min(LocalFirstSyncingNigoriDatastore.MAX_RETRY_DELAY,
+              LocalFirstSyncingNigoriDatastore.MIN_RETRY_DELAY << Math.min(failures, 30));
+      for (int i = 0; i < 100; ++i) {
+        long jittered = LocalFirstSyncingNigoriDatastore.retryDelay(failures, random);
+        assertTrue(jittered + " < " + delay / 2, jittered >= delay / 2);
+        assertTrue(jittered + " > " + delay, jittered <= delay);
+      }
+    }
+    assertTrue(LocalFirstSyncingNigoriDatastore.retryDelay(0, random) >= 500);
+  }
+
+  /**
+   * Once the second store has failed operations only use the first store until a probe finds the
+   * second can be reached again, remembering what was written
+   */
+  @Test(timeout = 10000)
+  public void secondLeftOutWhileDown() throws Exception {
+    second.failure = new IOException("down");
+    assertTrue(store.put(INDEX, revision, toBytes("value")));
+    assertTrue(store.isDown());
+    assertEquals(1, second.calls.get());
+
+    Index other = new Index("other");
+    assertTrue(store.put(other, revision, toBytes("other")));
+    assertArrayEquals(toBytes("value"), store.getRevision(INDEX, revision));
+    assertEquals(1, store.get(INDEX).size());
+    assertEquals(2, store.getIndices().size());
+    assertEquals(1, store.getRevisions(INDEX).size());
+    assertEquals(1, store.getRevisionValues(INDEX, store.getRevisions(INDEX)).size());
+    store.authenticate();
+    assertFalse("Deletes need both stores", store.delete(INDEX, new byte[] {}));
+    // the probe is at least half a second away
+    assertEquals(1, second.calls.get());
+    assertEquals(2, store.getMissed());
+    assertTrue(first.has(other, revision));
+  }
+
+  /**
+   * The second store is only used again after the backoff delay, when it is caught up
+   */
+  @Test(timeout = 10000)
+  public void recoversAfterBackoff() throws Exception {
+    second.failure = new IOException("down");
+    long failed = System.currentTimeMillis();
+    assertTrue(store.put(INDEX, revision, toBytes("value")));
+    second.failure = null;
+    await("the second store to catch up", second, INDEX, revision);
+    assertTrue(System.currentTimeMillis() - failed
+        >= LocalFirstSyncingNigoriDatastore.MIN_RETRY_DELAY / 2);
+    assertFalse(store.isDown());
+    assertEquals(0, store.getMissed());
+
+    Index other = new Index("other");
+    assertTrue(store.put(other, revision, toBytes("other")));
+    assertTrue(second.has(other, revision));
+  }
+
+  /**
+   * Succeeding with the second store schedules the first sync after the backoff delay rather than
+   * straight away
+   */
+  @Test(timeout = 10000)
+  public void successSchedulesSync() throws Exception {
+    Index firstOnly = new Index("first only");
+    first.add(firstOnly, revision, toBytes("first"));
+    assertNull(store.getRevision(INDEX, revision));
+    Thread.sleep(200);
+    assertEquals(1, second.calls.get());
+    await("the first sync", second, firstOnly, revision);
+  }
+
+  @Test(timeout = 10000)
+  public void tooManyMissed() throws Exception {
+    second.failure = new IOException("down");
+    for (int i = 0; i < LocalFirstSyncingNigoriDatastore.MAX_MISSED; ++i) {
+      assertTrue(store.put(new Index("index" + i), revision, toBytes("value")));
+    }
+    assertEquals(LocalFirstSyncingNigoriDatastore.MAX_MISSED, store.getMissed());
+    assertFalse(store.isMissedTooMany());
+    assertTrue(store.put(INDEX, revision, toBytes("value")));
+    assertTrue(store.isMissedTooMany());
+    assertEquals(0, store.getMissed());
+  }
+
+  /**
+   * A probe scheduled before closing never happens
+   */
+  @Test(timeout = 10000)
+  public void closeCancelsProbe() throws Exception {
+    second.failure = new IOException("down");
+    assertTrue(store.put(INDEX, revision, toBytes("value")));
+    assertTrue(store.isDown());
+    store.close();
+    second.failure = null;
+    Thread.sleep(LocalFirstSyncingNigoriDatastore.MIN_RETRY_DELAY + 200);
+    assertEquals(1, second.calls.get());
+    assertTrue(store.isDown());
+  }
+}
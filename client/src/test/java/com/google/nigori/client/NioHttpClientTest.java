@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import static com.google.nigori.client.FakeHttpServer.CLOSE;
+import static com.google.nigori.client.FakeHttpServer.HANG_UP;
+import static com.google.nigori.client.FakeHttpServer.SILENT;
+import static com.google.nigori.client.FakeHttpServer.ok;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.nigori.common.MessageLibrary;
+
+/**
+ * {@link NioHttpClient} against a fake server which sends canned responses.
+ *
+ * @author drt24
+ *
+ */
+public class NioHttpClientTest {
+
+  private static final String MIMETYPE = "text/plain";
+  private static final byte[] DATA = MessageLibrary.toBytes("request");
+
+  private FakeHttpServer server;
+  private NioHttpClient client = null;
+
+  @Before
+  public void startServer() throws IOException {
+    server = new FakeHttpServer();
+  }
+
+  @After
+  public void stop() throws IOException {
+    if (client != null) {
+      client.close();
+    }
+    server.close();
+  }
+
+  private NioHttpClient client(int readTimeout, int requestTimeout, int maxConnections)
+      throws IOException {
+    client = new NioHttpClient(1000, readTimeout, requestTimeout, maxConnections, 30000, 2, null);
+    return client;
+  }
+
+  private NioHttpClient client() throws IOException {
+    return client(5000, 10000, NioHttpClient.DEFAULT_MAX_CONNECTIONS_PER_SERVER);
+  }
+
+  private WaitingCallback<HttpResponse> post(String path) throws IOException {
+    WaitingCallback<HttpResponse> callback = new WaitingCallback<HttpResponse>();
+    client.post(new URL("http://localhost:" + server.getPort() + path), DATA, MIMETYPE, MIMETYPE,
+        callback);
+    return callback;
+  }
+
+  private String body(WaitingCallback<HttpResponse> callback) throws Throwable {
+    HttpResponse response = callback.get();
+    assertEquals(200, response.getResponseCode());
+    return response.toOutputString();
+  }
+
+  private static void assertTimedOut(WaitingCallback<HttpResponse> callback) throws Throwable {
+    try {
+      callback.get();
+      fail("Expected SocketTimeoutException");
+    } catch (SocketTimeoutException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void connectionsKeptAlive() throws Throwable {
+    client();
+    server.respond(ok("one"), ok("two"), ok("three"));
+    assertEquals("one", body(post("/get")));
+    assertEquals("two", body(post("/put")));
+    assertEquals("three", body(post("/get")));
+    assertEquals(1, server.accepted.get());
+    assertEquals("POST /put HTTP/1.1", server.requests.get(1));
+    assertEquals("request", server.bodies.get(1));
+    HttpConnectionPool.ConnectionMetrics metrics = client.getMetrics();
+    assertEquals(1, metrics.getOpened());
+    assertEquals(2, metrics.getReused());
+    assertEquals(3, metrics.getRequests());
+    assertEquals(0, metrics.getFailures());
+  }
+
+  @Test
+  public void chunkedResponse() throws Throwable {
+    client();
+    server.respond("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+        + "5\r\nhello\r\n6;name=value\r\n world\r\n0\r\nTrailer: ignored\r\n\r\n", ok("again"));
+    assertEquals("hello world", body(post("/get")));
+    assertEquals("again", body(post("/get")));
+    assertEquals(1, server.accepted.get());
+  }
+
+  @Test
+  public void responseEndedByClose() throws Throwable {
+    client();
+    server.respond(HANG_UP + "HTTP/1.1 200 OK\r\n\r\nuntil close", ok("new connection"));
+    assertEquals("until close", body(post("/get")));
+    assertEquals("new connection", body(post("/get")));
+    assertEquals(2, server.accepted.get());
+  }
+
+  /**
+   * Requests beyond the most connections to a server wait for one of them
+   */
+  @Test
+  public void connectionsPerServerLimited() throws Throwable {
+    client(5000, 10000, 1);
+    WaitingCallback<HttpResponse> first = post("/1");
+    WaitingCallback<HttpResponse> second = post("/2");
+    WaitingCallback<HttpResponse> third = post("/3");
+    server.respond(ok("one"), ok("two"), ok("three"));
+    assertEquals("one", body(first));
+    assertEquals("two", body(second));
+    assertEquals("three", body(third));
+    assertEquals(1, server.accepted.get());
+    assertEquals(2, client.getMetrics().getReused());
+  }
+
+  @Test
+  public void requestRetriedWhenReusedConnectionCloses() throws Throwable {
+    client();
+    server.respond(ok("one"), CLOSE, ok("two"));
+    assertEquals("one", body(post("/get")));
+    assertEquals("two", body(post("/put")));
+    assertEquals(2, server.accepted.get());
+    assertEquals(3, server.requests.size());
+  }
+
+  @Test
+  public void requestNotRetriedWhenNewConnectionCloses() throws Throwable {
+    client();
+    server.respond(CLOSE, ok("unused"));
+    try {
+      post("/put").get();
+      fail("Expected EOFException");
+    } catch (EOFException e) {
+      // the server may have acted on the request so it isn't sent again
+    }
+    assertEquals(1, server.requests.size());
+    assertEquals(1, client.getMetrics().getFailures());
+  }
+
+  @Test
+  public void readTimeout() throws Throwable {
+    client(200, 10000, 1);
+    server.respond(SILENT);
+    assertTimedOut(post("/get"));
+  }
+
+  /**
+   * Both the request which never gets a response and the one waiting for its connection time out
+   */
+  @Test
+  public void requestTimeout() throws Throwable {
+    client(10000, 300, 1);
+    server.respond(SILENT, SILENT);
+    long start = System.currentTimeMillis();
+    WaitingCallback<HttpResponse> first = post("/1");
+    WaitingCallback<HttpResponse> waiting = post("/2");
+    assertTimedOut(first);
+    assertTimedOut(waiting);
+    assertTrue("Gave up before the read timeout", System.currentTimeMillis() - start < 5000);
+    assertEquals(2, client.getMetrics().getFailures());
+  }
+
+  @Test
+  public void closeFailsRequests() throws Throwable {
+    client();
+    server.respond(SILENT);
+    WaitingCallback<HttpResponse> callback = post("/get");
+    client.close();
+    try {
+      callback.get();
+      fail("Expected IOException");
+    } catch (IOException e) {
+      // expected
+    }
+    try {
+      post("/get").get();
+      fail("Expected IOException");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.nigori.common.Index;
+import com.google.nigori.common.Revision;
+
+/**
+ * @author drt24
+ *
+ */
+public class OutboxTest {
+
+  private static final Index A = new Index("a");
+  private static final Index B = new Index("b");
+  private static final byte[] VALUE = new byte[] {1, 2, 3};
+  private static final byte[] TOKEN = new byte[] {4};
+
+  private File file;
+
+  @Before
+  public void createFile() throws IOException {
+    file = File.createTempFile("outbox", ".log");
+    assertTrue(file.delete());
+  }
+
+  @After
+  public void deleteFile() {
+    file.delete();
+    new File(file.getPath() + ".new").delete();
+    new File(file.getPath() + ".lock").delete();
+  }
+
+  private static Revision revision(int i) {
+    return new Revision(new byte[] {(byte) i});
+  }
+
+  private static Outbox.Entry take(Outbox outbox) throws IOException {
+    Outbox.Entry entry = outbox.first();
+    outbox.acknowledge(entry);
+    return entry;
+  }
+
+  @Test
+  public void inOrder() throws IOException {
+    Outbox outbox = new Outbox();
+    outbox.put(A, revision(1), VALUE);
+    outbox.put(B, revision(1), VALUE);
+    outbox.put(A, revision(2), VALUE);
+    assertEquals(3, outbox.size());
+    assertEquals(revision(1), take(outbox).revision);
+    assertEquals(B, take(outbox).index);
+    Outbox.Entry last = take(outbox);
+    assertEquals(A, last.index);
+    assertEquals(revision(2), last.revision);
+    assertArrayEquals(VALUE, last.value);
+    assertNull(outbox.first());
+  }
+
+  @Test
+  public void compacted() throws IOException {
+    Outbox outbox = new Outbox();
+    outbox.put(A, revision(1), VALUE);
+    outbox.put(B, revision(1), VALUE);
+    outbox.put(A, revision(1), VALUE);
+    assertEquals(2, outbox.size());
+    outbox.put(A, revision(2), VALUE);
+    outbox.delete(A, TOKEN);
+    assertEquals(2, outbox.size());
+    assertEquals(B, take(outbox).index);
+    Outbox.Entry delete = take(outbox);
+    assertEquals(Outbox.Type.DELETE, delete.type);
+    assertArrayEquals(TOKEN, delete.value);
+    assertTrue(outbox.isEmpty());
+  }
+
+  @Test
+  public void acknowledgeDropped() throws IOException {
+    Outbox outbox = new Outbox();
+    outbox.put(A, revision(1), VALUE);
+    Outbox.Entry sending = outbox.first();
+    outbox.delete(A, TOKEN);
+    outbox.acknowledge(sending);
+    assertEquals(Outbox.Type.DELETE, outbox.first().type);
+  }
+
+  @Test
+  public void survivesReopening() throws IOException {
+    Outbox outbox = new Outbox(file);
+    outbox.put(A, revision(1), VALUE);
+    outbox.put(B, revision(1), VALUE);
+    outbox.delete(A, TOKEN);
+    outbox.put(A, revision(2), VALUE);
+    assertEquals(B, take(outbox).index);
+    outbox.close();
+
+    outbox = new Outbox(file);
+    assertEquals(2, outbox.size());
+    assertEquals(Outbox.Type.DELETE, take(outbox).type);
+    outbox.put(B, revision(2), VALUE);
+    outbox.close();
+
+    outbox = new Outbox(file);
+    assertEquals(revision(2), take(outbox).revision);
+    assertEquals(B, take(outbox).index);
+    assertTrue(outbox.isEmpty());
+    outbox.close();
+  }
+
+  @Test
+  public void truncatedWhenAllSent() throws IOException {
+    Outbox outbox = new Outbox(file);
+    outbox.put(A, revision(1), VALUE);
+    outbox.put(B, revision(1), VALUE);
+    take(outbox);
+    assertTrue(file.length() > 0);
+    take(outbox);
+    assertEquals(0, file.length());
+    outbox.close();
+  }
+
+  @Test
+  public void rewrittenWhenMostlySent() throws IOException {
+    Outbox outbox = new Outbox(file);
+    outbox.put(A, revision(0), VALUE);
+    for (int i = 1; i < 600; ++i) {
+      outbox.put(B, revision(i % 256), VALUE);
+      outbox.delete(B, TOKEN);
+    }
+    long before = file.length();
+    outbox.put(B, revision(1), VALUE);
+    take(outbox);
+    assertTrue("Not rewritten", file.length() < before / 10);
+    outbox.close();
+    outbox = new Outbox(file);
+    assertEquals(2, outbox.size());
+    assertEquals(Outbox.Type.DELETE, take(outbox).type);
+    assertEquals(revision(1), take(outbox).revision);
+    outbox.close();
+  }
+
+  @Test
+  public void partlyWrittenEnd() throws IOException {
+    Outbox outbox = new Outbox(file);
+    outbox.put(A, revision(1), VALUE);
+    outbox.close();
+    long length = file.length();
+    FileOutputStream out = new FileOutputStream(file, true);
+    try {
+      out.write(new byte[] {0, 0, 0, 100, 1, 2});
+    } finally {
+      out.close();
+    }
+    outbox = new Outbox(file);
+    assertEquals(length, file.length());
+    assertEquals(1, outbox.size());
+    outbox.put(B, revision(1), VALUE);
+    outbox.close();
+    outbox = new Outbox(file);
+    assertEquals(2, outbox.size());
+    outbox.close();
+  }
+
+  @Test
+  public void lockedWhileOpen() throws IOException {
+    Outbox outbox = new Outbox(file);
+    outbox.put(A, revision(1), VALUE);
+    try {
+      new Outbox(file);
+      fail("Expected IOException");
+    } catch (IOException e) {
+      // expected
+    }
+    outbox.close();
+    try {
+      outbox.put(B, revision(1), VALUE);
+      fail("Expected IOException");
+    } catch (IOException e) {
+      // expected
+    }
+    outbox = new Outbox(file);
+    assertEquals(1, outbox.size());
+    outbox.close();
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.google.nigori.common.Index;
+
+/**
+ * Times {@link SetDifference} on two paged listings of 100k indices in no shared order which
+ * overlap by 90%, so that each is sorted through several runs on disk. Not part of
+ * {@link ClientTests}, run it on its own after test-compile from the client directory:
+ *
+ * mvn dependency:build-classpath -Dmdep.outputFile=cp.txt
+ *
+ * java -Xmx64m -cp target/classes:target/test-classes:$(cat cp.txt)
+ * com.google.nigori.client.SetDifferenceBenchmark [iterations]
+ *
+ * @author drt24
+ *
+ */
+public class SetDifferenceBenchmark {
+
+  private static final int INDICES = 100000;
+
+  public static void main(String[] args) throws Exception {
+    int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+    List<Index> first = SetDifferenceTest.indices(0, INDICES);
+    List<Index> second = SetDifferenceTest.indices(INDICES / 10, INDICES + INDICES / 10);
+    Collections.shuffle(first);
+    Collections.shuffle(second);
+
+    for (int i = 0; i <= iterations; ++i) {
+      SetDifferenceTest.Counter counter = new SetDifferenceTest.Counter();
+      long start = System.nanoTime();
+      SetDifference.compare(SetDifferenceTest.paged(first), SetDifferenceTest.paged(second),
+          counter);
+      long millis = (System.nanoTime() - start) / 1000000;
+      if (counter.firstOnly.size() != INDICES / 10 || counter.secondOnly.size() != INDICES / 10
+          || counter.both.size() != INDICES - INDICES / 10 || !counter.ordered) {
+        throw new IllegalStateException("Wrong difference");
+      }
+      // The first is a warm up
+      System.out.println((i == 0 ? "warm up: " : "run " + i + ": ") + millis + "ms for "
+          + INDICES + " indices in each listing, " + SetDifference.RUN_SIZE + " per run");
+    }
+  }
+}
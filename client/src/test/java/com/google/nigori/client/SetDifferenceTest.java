@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.google.nigori.common.Index;
+import com.google.nigori.common.MessageLibrary;
+import com.google.nigori.common.NigoriCryptographyException;
+import com.google.nigori.common.NotFoundException;
+import com.google.nigori.common.UnauthorisedException;
+import com.google.nigori.common.Util;
+
+/**
+ * @author drt24
+ *
+ */
+public class SetDifferenceTest {
+
+  private static final int SOME = 1000;
+
+  static List<Index> indices(int from, int to) {
+    List<Index> indices = new ArrayList<Index>(to - from);
+    for (int i = from; i < to; ++i) {
+      indices.add(new Index("index" + i));
+    }
+    return indices;
+  }
+
+  /**
+   * A listing fetched a page at a time, as from a server
+   */
+  static PagedIterator<Index> paged(final List<Index> items) {
+    return new PagedIterator<Index>() {
+      @Override
+      protected byte[] fetch(byte[] cursor, List<Index> page) {
+        int start = cursor == null ? 0 : Util.bin2int(cursor, 0);
+        int end = Math.min(items.size(), start + MessageLibrary.MAX_PAGE_SIZE);
+        page.addAll(items.subList(start, end));
+        return end < items.size() ? Util.int2bin(end) : null;
+      }
+    };
+  }
+
+  static class Counter extends SetDifference.Visitor<Index> {
+    final Set<Index> firstOnly = new HashSet<Index>();
+    final Set<Index> secondOnly = new HashSet<Index>();
+    final Set<Index> both = new HashSet<Index>();
+    boolean ordered = true;
+    private Index previous = null;
+
+    private void visit(Index item) {
+      ordered &= previous == null || previous.compareTo(item) < 0;
+      previous = item;
+    }
+
+    @Override
+    void onlyFirst(Index item) {
+      visit(item);
+      assertTrue(firstOnly.add(item));
+    }
+
+    @Override
+    void onlySecond(Index item) {
+      visit(item);
+      assertTrue(secondOnly.add(item));
+    }
+
+    @Override
+    void inBoth(Index item) {
+      visit(item);
+      assertTrue(both.add(item));
+    }
+  }
+
+  @Test
+  public void split() {
+    SetDifference.Split<Index> split =
+        SetDifference.split(indices(0, 3), Arrays.asList(new Index("index2"), new Index("x")));
+    assertEquals(indices(0, 2), split.firstOnly);
+    assertEquals(Arrays.asList(new Index("x")), split.secondOnly);
+  }
+
+  @Test
+  public void splitNotFound() {
+    SetDifference.Split<Index> split = SetDifference.split(null, indices(0, 2));
+    assertTrue(split.firstOnly.isEmpty());
+    assertEquals(indices(0, 2), split.secondOnly);
+    split = SetDifference.split(indices(0, 2), null);
+    assertEquals(indices(0, 2), split.firstOnly);
+    assertTrue(split.secondOnly.isEmpty());
+  }
+
+  @Test
+  public void union() {
+    assertEquals(indices(0, 4), SetDifference.union(indices(0, 3), indices(1, 4)));
+    assertEquals(indices(0, 2), SetDifference.union(null, indices(0, 2)));
+    assertEquals(indices(0, 2), SetDifference.union(indices(0, 2), null));
+  }
+
+  /**
+   * Listings longer than a run are sorted through files and still compared correctly, in order
+   */
+  @Test
+  public void spilledRuns() throws IOException, NigoriCryptographyException,
+      UnauthorisedException {
+    List<Index> first = indices(0, SOME);
+    List<Index> second = indices(SOME / 10, SOME + SOME / 10);
+    Collections.shuffle(first);
+    Collections.shuffle(second);
+    Counter counter = new Counter();
+    SetDifference.compare(paged(first), paged(second), SetDifference.INDICES, 64, counter);
+    assertEquals(SOME / 10, counter.firstOnly.size());
+    assertEquals(SOME / 10, counter.secondOnly.size());
+    assertEquals(SOME - SOME / 10, counter.both.size());
+    assertTrue(counter.firstOnly.contains(new Index("index0")));
+    assertTrue(counter.secondOnly.contains(new Index("index" + SOME)));
+    assertTrue("Not visited in order", counter.ordered);
+  }
+
+  @Test
+  public void notFound() throws IOException, NigoriCryptographyException,
+      UnauthorisedException {
+    Counter counter = new Counter();
+    SetDifference.compare(new PagedIterator<Index>() {
+      @Override
+      protected byte[] fetch(byte[] cursor, List<Index> page) throws NotFoundException {
+        throw new NotFoundException("No indices");
+      }
+    }, paged(indices(0, 3)), counter);
+    assertTrue(counter.firstOnly.isEmpty());
+    assertEquals(new HashSet<Index>(indices(0, 3)), counter.secondOnly);
+  }
+}
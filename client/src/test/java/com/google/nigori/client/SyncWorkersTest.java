@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.nigori.common.NigoriCryptographyException;
+import com.google.nigori.common.UnauthorisedException;
+
+/**
+ * @author drt24
+ *
+ */
+public class SyncWorkersTest {
+
+  private static final int TASKS = 50;
+
+  @Test(timeout = 10000)
+  public void runsTasksAtOnce() throws IOException, NigoriCryptographyException,
+      UnauthorisedException {
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger mostRunning = new AtomicInteger();
+    final AtomicInteger lastDone = new AtomicInteger();
+    SyncWorkers workers = new SyncWorkers(4, new SyncListener() {
+      @Override
+      public void progress(int done, int found) {
+        lastDone.set(done);
+      }
+    });
+    for (int i = 0; i < TASKS; ++i) {
+      workers.submit(new SyncWorkers.Task() {
+        @Override
+        void run() throws IOException {
+          int now = running.incrementAndGet();
+          synchronized (mostRunning) {
+            mostRunning.set(Math.max(now, mostRunning.get()));
+          }
+          try {
+            Thread.sleep(5);
+          } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+          } finally {
+            running.decrementAndGet();
+          }
+        }
+      });
+    }
+    workers.finish();
+    assertEquals(TASKS, lastDone.get());
+    assertTrue("Tasks weren't run at once", mostRunning.get() > 1);
+    assertTrue("Too many tasks run at once", mostRunning.get() <= 4);
+  }
+
+  @Test(timeout = 10000)
+  public void firstFailureStopsSync() throws NigoriCryptographyException, UnauthorisedException {
+    final AtomicInteger ran = new AtomicInteger();
+    SyncWorkers workers = new SyncWorkers(1, null);
+    try {
+      for (int i = 0; i < TASKS; ++i) {
+        final int task = i;
+        workers.submit(new SyncWorkers.Task() {
+          @Override
+          void run() throws IOException {
+            ran.incrementAndGet();
+            if (task == 0) {
+              throw new IOException("Failed");
+            }
+          }
+        });
+      }
+      workers.finish();
+      fail("Failure not thrown");
+    } catch (IOException e) {
+      assertEquals("Failed", e.getMessage());
+    } finally {
+      workers.close();
+    }
+    assertTrue("Tasks run after failure", ran.get() < TASKS);
+  }
+
+  @Test(timeout = 10000)
+  public void cancel() throws IOException, NigoriCryptographyException, UnauthorisedException,
+      InterruptedException {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch cancelled = new CountDownLatch(1);
+    final AtomicInteger ran = new AtomicInteger();
+    final SyncWorkers workers = new SyncWorkers(1, null);
+    for (int i = 0; i < 3; ++i) {
+      workers.submit(new SyncWorkers.Task() {
+        @Override
+        void run() throws IOException {
+          ran.incrementAndGet();
+          started.countDown();
+          try {
+            cancelled.await(5, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+          }
+        }
+      });
+    }
+    started.await();
+    workers.cancel();
+    cancelled.countDown();
+    try {
+      workers.finish();
+      fail("Cancellation not thrown");
+    } catch (InterruptedIOException e) {
+      // expected
+    }
+    assertEquals(1, ran.get());
+  }
+}
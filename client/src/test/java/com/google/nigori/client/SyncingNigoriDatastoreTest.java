@@ -0,0 +1,297 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import static com.google.nigori.common.MessageLibrary.toBytes;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.nigori.client.SyncingNigoriDatastore.ReadPolicy;
+import com.google.nigori.common.Index;
+import com.google.nigori.common.Revision;
+
+/**
+ * {@link SyncingNigoriDatastore} with each {@link ReadPolicy}, including when one of the stores
+ * fails.
+ *
+ * @author drt24
+ *
+ */
+public class SyncingNigoriDatastoreTest {
+
+  private static final Index INDEX = new Index("index");
+
+  private FakeNigoriDatastore first;
+  private FakeNigoriDatastore second;
+  private ExecutorService executor;
+  private Revision a;
+  private Revision b;
+
+  @Before
+  public void setUp() throws Exception {
+    first = new FakeNigoriDatastore();
+    second = new FakeNigoriDatastore();
+    executor = Executors.newCachedThreadPool();
+    a = new Revision("a");
+    b = new Revision("b");
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private SyncingNigoriDatastore store(ReadPolicy policy) throws Exception {
+    return new SyncingNigoriDatastore(first, second, policy, executor);
+  }
+
+  /**
+   * Wait until a call has been made to store
+   */
+  private static void awaitCall(FakeNigoriDatastore store) {
+    while (store.calls.get() == 0) {
+      Thread.yield();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void writesToBoth() throws Exception {
+    SyncingNigoriDatastore store = store(ReadPolicy.BOTH);
+    assertTrue(store.put(INDEX, a, toBytes("a")));
+    assertTrue(first.has(INDEX, a));
+    assertTrue(second.has(INDEX, a));
+    assertTrue(store.delete(INDEX, new byte[] {}));
+    assertFalse(first.has(INDEX, a));
+    assertFalse(second.has(INDEX, a));
+  }
+
+  /**
+   * When the first store's write fails after the second store's has started, the failure is only
+   * thrown once the second store's write has finished
+   */
+  @Test(timeout = 10000)
+  public void firstFailureWaitsForSecond() throws Exception {
+    SyncingNigoriDatastore store = store(ReadPolicy.BOTH);
+    first.failure = new IOException("first");
+    final CountDownLatch firstGate = first.hold();
+    final CountDownLatch secondGate = second.hold();
+    // the first store fails once both writes have started, the second's then takes a while
+    new Thread() {
+      @Override
+      public void run() {
+        awaitCall(first);
+        awaitCall(second);
+        firstGate.countDown();
+        try {
+          Thread.sleep(100);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        secondGate.countDown();
+      }
+    }.start();
+    try {
+      store.put(INDEX, a, toBytes("a"));
+      fail("Expected IOException");
+    } catch (IOException e) {
+      assertEquals("first", e.getMessage());
+    }
+    assertEquals(1, second.finished.get());
+    assertTrue(second.has(INDEX, a));
+  }
+
+  /**
+   * When the first store's write fails before the second store's has started, the second store's
+   * isn't done
+   */
+  @Test(timeout = 10000)
+  public void firstFailureCancelsSecond() throws Exception {
+    ExecutorService busy = Executors.newSingleThreadExecutor();
+    final CountDownLatch blocker = new CountDownLatch(1);
+    busy.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          blocker.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    SyncingNigoriDatastore store =
+        new SyncingNigoriDatastore(first, second, ReadPolicy.BOTH, busy);
+    first.failure = new IOException("first");
+    try {
+      store.put(INDEX, a, toBytes("a"));
+      fail("Expected IOException");
+    } catch (IOException e) {
+      assertEquals("first", e.getMessage());
+    }
+    blocker.countDown();
+    busy.shutdown();
+    assertTrue(busy.awaitTermination(5, TimeUnit.SECONDS));
+    assertEquals(0, second.calls.get());
+  }
+
+  @Test(timeout = 10000)
+  public void secondFailureThrown() throws Exception {
+    SyncingNigoriDatastore store = store(ReadPolicy.BOTH);
+    second.failure = new IOException("second");
+    try {
+      store.put(INDEX, a, toBytes("a"));
+      fail("Expected IOException");
+    } catch (IOException e) {
+      assertEquals("second", e.getMessage());
+    }
+    assertTrue(first.has(INDEX, a));
+  }
+
+  @Test(timeout = 10000)
+  public void bothGivesUnion() throws Exception {
+    first.add(INDEX, a, toBytes("a"));
+    second.add(INDEX, b, toBytes("b"));
+    SyncingNigoriDatastore store = store(ReadPolicy.BOTH);
+    assertEquals(2, store.getRevisions(INDEX).size());
+    assertEquals(2, store.get(INDEX).size());
+    assertEquals(1, store.getIndices().size());
+  }
+
+  @Test(timeout = 10000)
+  public void bothFailsWhenEitherFails() throws Exception {
+    first.add(INDEX, a, toBytes("a"));
+    second.failure = new IOException("second");
+    try {
+      store(ReadPolicy.BOTH).get(INDEX);
+      fail("Expected IOException");
+    } catch (IOException e) {
+      assertEquals("second", e.getMessage());
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void bothFailsWhenStoresDisagree() throws Exception {
+    first.add(INDEX, a, toBytes("one"));
+    second.add(INDEX, a, toBytes("two"));
+    try {
+      store(ReadPolicy.BOTH).getRevision(INDEX, a);
+      fail("Expected IOException");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  /**
+   * The first store's answer is given without waiting for the second store
+   */
+  @Test(timeout = 10000)
+  public void firstStoreAnswers() throws Exception {
+    first.add(INDEX, a, toBytes("first"));
+    second.add(INDEX, a, toBytes("second"));
+    CountDownLatch gate = second.hold();
+    try {
+      assertArrayEquals(toBytes("first"), store(ReadPolicy.FIRST_STORE).getRevision(INDEX, a));
+      assertEquals(0, second.finished.get());
+    } finally {
+      gate.countDown();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void firstStoreFallsBackToSecond() throws Exception {
+    second.add(INDEX, a, toBytes("second"));
+    assertArrayEquals(toBytes("second"), store(ReadPolicy.FIRST_STORE).getRevision(INDEX, a));
+  }
+
+  @Test(timeout = 10000)
+  public void firstStoreFailure() throws Exception {
+    second.add(INDEX, a, toBytes("second"));
+    first.failure = new IOException("first");
+    try {
+      store(ReadPolicy.FIRST_STORE).getRevision(INDEX, a);
+      fail("Expected IOException");
+    } catch (IOException e) {
+      assertEquals("first", e.getMessage());
+    }
+  }
+
+  /**
+   * The second store's answer is given while the first store is still held up
+   */
+  @Test(timeout = 10000)
+  public void firstResponseFromFasterStore() throws Exception {
+    first.add(INDEX, a, toBytes("first"));
+    second.add(INDEX, a, toBytes("second"));
+    CountDownLatch gate = first.hold();
+    try {
+      SyncingNigoriDatastore store = store(ReadPolicy.FIRST_RESPONSE);
+      assertArrayEquals(toBytes("second"), store.getRevision(INDEX, a));
+      assertEquals(0, first.finished.get());
+    } finally {
+      gate.countDown();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void firstResponseWhenOneFails() throws Exception {
+    second.add(INDEX, a, toBytes("second"));
+    first.failure = new IOException("first");
+    assertArrayEquals(toBytes("second"), store(ReadPolicy.FIRST_RESPONSE).getRevision(INDEX, a));
+  }
+
+  @Test(timeout = 10000)
+  public void firstResponseWhenBothFail() throws Exception {
+    first.failure = new IOException("first");
+    second.failure = new IOException("second");
+    try {
+      store(ReadPolicy.FIRST_RESPONSE).getRevision(INDEX, a);
+      fail("Expected IOException");
+    } catch (IOException e) {
+      assertEquals("first", e.getMessage());
+    }
+  }
+
+  /**
+   * Closing stops the threads the datastore made for itself but not an executor it was given
+   */
+  @Test(timeout = 10000)
+  public void closeStopsOwnThreads() throws Exception {
+    SyncingNigoriDatastore given = store(ReadPolicy.BOTH);
+    given.close();
+    assertFalse(executor.isShutdown());
+
+    SyncingNigoriDatastore own = new SyncingNigoriDatastore(first, second, ReadPolicy.BOTH);
+    assertTrue(own.put(INDEX, a, toBytes("a")));
+    own.close();
+    try {
+      own.put(INDEX, b, toBytes("b"));
+      fail("Expected RejectedExecutionException");
+    } catch (RejectedExecutionException e) {
+      // the threads have been stopped
+    }
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.client;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets a test wait for the result of an asynchronous call.
+ *
+ * @author drt24
+ *
+ */
+class WaitingCallback<T> implements AsyncCallback<T> {
+  private final CountDownLatch done = new CountDownLatch(1);
+  private volatile T result;
+  private volatile Throwable failure;
+
+  @Override
+  public void onFailure(Throwable caught) {
+    failure = caught;
+    done.countDown();
+  }
+
+  @Override
+  public void onSuccess(T result) {
+    this.result = result;
+    done.countDown();
+  }
+
+  /**
+   * @return the result, or throws what the call failed with
+   */
+  T get() throws Throwable {
+    if (!done.await(10, TimeUnit.SECONDS)) {
+      throw new AssertionError("Callback not called");
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    return result;
+  }
+}
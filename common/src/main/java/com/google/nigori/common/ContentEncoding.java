@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression of HTTP request and response bodies, negotiated with the Accept-Encoding and
+ * Content-Encoding headers. A server which understands compressed requests says so by sending an
+ * Accept-Encoding header with its responses (RFC 7694), so clients only compress requests once they
+ * know the server can read them.
+ *
+ * Bodies smaller than {@link #DEFAULT_THRESHOLD} are not compressed since that saves little or
+ * nothing and costs CPU at both ends.
+ *
+ * @author drt24
+ *
+ */
+public final class ContentEncoding {
+
+  public static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+  public static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+  public static final String GZIP = "gzip";
+  public static final String DEFLATE = "deflate";
+  public static final String IDENTITY = "identity";
+  /**
+   * The encodings we can read, in order of preference, as an Accept-Encoding value
+   */
+  public static final String ACCEPTED = GZIP + ", " + DEFLATE;
+  /**
+   * The size in bytes below which bodies are sent uncompressed
+   */
+  public static final int DEFAULT_THRESHOLD = 1024;
+
+  private ContentEncoding() {
+  }
+
+  /**
+   * Choose how to encode a body for someone who sent this Accept-Encoding header
+   *
+   * @param acceptEncoding the header value, may be null
+   * @return {@link #GZIP}, {@link #DEFLATE} or null if the body should not be compressed
+   */
+  public static String negotiate(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return null;
+    }
+    boolean deflate = false;
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parts = coding.split(";");
+      String name = parts[0].trim().toLowerCase();
+      if (quality(parts) <= 0) {
+        continue;
+      }
+      if (GZIP.equals(name) || "x-gzip".equals(name) || "*".equals(name)) {
+        return GZIP;
+      }
+      if (DEFLATE.equals(name)) {
+        deflate = true;
+      }
+    }
+    return deflate ? DEFLATE : null;
+  }
+
+  /**
+   * @return the q value of a coding in an Accept-Encoding header, 1 if none is given
+   */
+  private static double quality(String[] parts) {
+    for (int i = 1; i < parts.length; ++i) {
+      String parameter = parts[i].trim();
+      if (parameter.startsWith("q=")) {
+        try {
+          return Double.parseDouble(parameter.substring(2).trim());
+        } catch (NumberFormatException e) {
+          return 0;
+        }
+      }
+    }
+    return 1;
+  }
+
+  /**
+   * @param contentEncoding the Content-Encoding header value, may be null
+   * @return true if we can decode bodies sent with this encoding
+   */
+  public static boolean isSupported(String contentEncoding) {
+    if (contentEncoding == null) {
+      return true;
+    }
+    String encoding = contentEncoding.trim().toLowerCase();
+    return encoding.length() == 0 || IDENTITY.equals(encoding) || GZIP.equals(encoding)
+        || "x-gzip".equals(encoding) || DEFLATE.equals(encoding);
+  }
+
+  /**
+   * Wrap in so that the body read from it is decoded
+   *
+   * @param contentEncoding the Content-Encoding header value, may be null
+   * @param in
+   * @return a stream of the decoded body
+   * @throws IOException if the encoding is not supported or the body is not validly encoded
+   */
+  public static InputStream decode(String contentEncoding, InputStream in) throws IOException {
+    if (contentEncoding == null) {
+      return in;
+    }
+    String encoding = contentEncoding.trim().toLowerCase();
+    if (encoding.length() == 0 || IDENTITY.equals(encoding)) {
+      return in;
+    }
+    if (GZIP.equals(encoding) || "x-gzip".equals(encoding)) {
+      return new GZIPInputStream(in);
+    }
+    if (DEFLATE.equals(encoding)) {
+      return new InflaterInputStream(in);
+    }
+    throw new IOException("Unsupported content encoding: " + contentEncoding);
+  }
+
+  /**
+   * Wrap out so that what is written to it is encoded, the returned stream must be closed or
+   * {@link DeflaterOutputStream#finish() finished} to write the end of the encoded body
+   *
+   * @param encoding {@link #GZIP} or {@link #DEFLATE}
+   * @param out
+   * @return
+   * @throws IOException
+   */
+  public static DeflaterOutputStream encode(String encoding, OutputStream out) throws IOException {
+    if (GZIP.equals(encoding)) {
+      return new GZIPOutputStream(out);
+    }
+    if (DEFLATE.equals(encoding)) {
+      return new DeflaterOutputStream(out);
+    }
+    throw new IllegalArgumentException("Unsupported content encoding: " + encoding);
+  }
+
+  /**
+   * Encode all of data at once, for when the length of the encoded body is needed before sending it
+   */
+  public static byte[] encode(String encoding, byte[] data) {
+    ByteArrayOutputStream encoded = new ByteArrayOutputStream(data.length / 2 + 32);
+    try {
+      DeflaterOutputStream out = encode(encoding, encoded);
+      out.write(data);
+      out.close();
+    } catch (IOException e) {
+      throw new RuntimeException(e);// never happens as ByteArrayOutputStream doesn't throw
+    }
+    return encoded.toByteArray();
+  }
+
+  /**
+   * Holds back the start of a body until it is known whether it is larger than a threshold, and
+   * then streams it either compressed or uncompressed, so that bodies of unknown length can be
+   * compressed without holding all of them in memory.
+   */
+  public abstract static class ThresholdOutputStream extends OutputStream {
+    private final String encoding;
+    private final int threshold;
+    private ByteArrayOutputStream buffer;
+    private OutputStream out = null;
+    private DeflaterOutputStream compressor = null;
+    private boolean closed = false;
+
+    /**
+     * @param encoding how to compress the body if it reaches the threshold, null to never compress
+     * @param threshold the size in bytes at which the body is compressed
+     */
+    public ThresholdOutputStream(String encoding, int threshold) {
+      this.encoding = encoding;
+      this.threshold = threshold;
+      this.buffer = new ByteArrayOutputStream(encoding == null ? 0 : Math.min(threshold, 8192));
+    }
+
+    /**
+     * Called once, before anything is written, to get the stream to write the body to.
+     *
+     * @param encoding the encoding the body will be written in, which should be given in the
+     *          Content-Encoding header, or null if it is not encoded
+     * @param length the length of the body if it is known, otherwise -1
+     */
+    protected abstract OutputStream open(String encoding, int length) throws IOException;
+
+    /**
+     * @return whether the body is being compressed, which is only decided once it reaches the
+     *         threshold or is closed
+     */
+    public boolean isCompressed() {
+      return compressor != null;
+    }
+
+    private void start(boolean compress, int length) throws IOException {
+      if (compress) {
+        compressor = encode(encoding, open(encoding, -1));
+        out = compressor;
+      } else {
+        out = open(null, length);
+      }
+      if (buffer.size() > 0) {
+        buffer.writeTo(out);
+      }
+      buffer = null;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (closed) {
+        throw new IOException("Stream closed");
+      }
+      if (out == null) {
+        if (encoding == null) {
+          start(false, -1);
+        } else if (buffer.size() + len < threshold) {
+          buffer.write(b, off, len);
+          return;
+        } else {
+          start(true, -1);
+        }
+      }
+      out.write(b, off, len);
+    }
+
+    /**
+     * Flushing before the threshold has been reached does nothing so that the decision about
+     * compression isn't forced early.
+     */
+    @Override
+    public void flush() throws IOException {
+      if (out != null) {
+        out.flush();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      if (out == null) {
+        start(false, buffer.size());
+      }
+      closed = true;
+      if (compressor != null) {
+        compressor.finish();
+      }
+      out.close();
+    }
+  }
+}
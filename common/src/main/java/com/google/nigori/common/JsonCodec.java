@@ -0,0 +1,964 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.common;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.codec.binary.Base64;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.nigori.common.MessageLibrary.JsonConversionException;
+import com.google.nigori.common.NigoriMessages.AuthenticateRequest;
+import com.google.nigori.common.NigoriMessages.BatchRequest;
+import com.google.nigori.common.NigoriMessages.BatchResponse;
+import com.google.nigori.common.NigoriMessages.Change;
+import com.google.nigori.common.NigoriMessages.DeleteRequest;
+import com.google.nigori.common.NigoriMessages.DigestEntry;
+import com.google.nigori.common.NigoriMessages.DigestNode;
+import com.google.nigori.common.NigoriMessages.GetChangesRequest;
+import com.google.nigori.common.NigoriMessages.GetChangesResponse;
+import com.google.nigori.common.NigoriMessages.GetDigestsRequest;
+import com.google.nigori.common.NigoriMessages.GetDigestsResponse;
+import com.google.nigori.common.NigoriMessages.GetIndicesRequest;
+import com.google.nigori.common.NigoriMessages.GetIndicesResponse;
+import com.google.nigori.common.NigoriMessages.GetRequest;
+import com.google.nigori.common.NigoriMessages.GetResponse;
+import com.google.nigori.common.NigoriMessages.GetRevisionsRequest;
+import com.google.nigori.common.NigoriMessages.GetRevisionsResponse;
+import com.google.nigori.common.NigoriMessages.Operation;
+import com.google.nigori.common.NigoriMessages.OperationResult;
+import com.google.nigori.common.NigoriMessages.PutRequest;
+import com.google.nigori.common.NigoriMessages.RegisterRequest;
+import com.google.nigori.common.NigoriMessages.RevisionValue;
+import com.google.nigori.common.NigoriMessages.UnregisterRequest;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.GeneratedMessage;
+import com.google.protobuf.Message;
+
+/**
+ * Streams the Nigori messages to and from JSON with hand written code for each message type rather
+ * than reflecting over the protobuf descriptors.
+ *
+ * Each message is a JSON object keyed by the protobuf field names, bytes are base64 encoded strings
+ * and repeated fields are arrays which are left out when empty. Unknown fields and nulls are
+ * ignored when reading.
+ *
+ * @author drt24
+ *
+ */
+final class JsonCodec {
+
+  private abstract static class MessageCodec<T extends GeneratedMessage> {
+    abstract void write(JsonWriter out, T message) throws IOException;
+
+    /**
+     * Read the fields of the message, the object has already been begun.
+     */
+    abstract T read(JsonReader in) throws IOException, JsonConversionException;
+  }
+
+  private static final Map<Class<?>, MessageCodec<?>> codecs =
+      new HashMap<Class<?>, MessageCodec<?>>();
+
+  private static <T extends GeneratedMessage> void register(Class<T> type, MessageCodec<T> codec) {
+    codecs.put(type, codec);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T extends GeneratedMessage> MessageCodec<T> codecFor(Class<T> type) {
+    MessageCodec<T> codec = (MessageCodec<T>) codecs.get(type);
+    if (codec == null) {
+      throw new IllegalArgumentException("No JSON codec for " + type.getSimpleName());
+    }
+    return codec;
+  }
+
+  static <T extends GeneratedMessage> void write(T message, Writer out) throws IOException {
+    @SuppressWarnings("unchecked")
+    Class<T> type = (Class<T>) message.getClass();
+    JsonWriter writer = new JsonWriter(out);
+    writeMessage(writer, codecFor(type), message);
+    writer.flush();
+  }
+
+  static <T extends GeneratedMessage> T read(Reader in, Class<T> type) throws IOException,
+      JsonConversionException {
+    JsonReader reader = new JsonReader(in);
+    // As lenient as Gson.fromJson was
+    reader.setLenient(true);
+    return readMessage(reader, codecFor(type));
+  }
+
+  private static <T extends GeneratedMessage> void writeMessage(JsonWriter out,
+      MessageCodec<T> codec, T message) throws IOException {
+    out.beginObject();
+    codec.write(out, message);
+    out.endObject();
+  }
+
+  private static <T extends GeneratedMessage> T readMessage(JsonReader in, MessageCodec<T> codec)
+      throws IOException, JsonConversionException {
+    in.beginObject();
+    T message = codec.read(in);
+    in.endObject();
+    return message;
+  }
+
+  /**
+   * @return the name of the next field which has a non null value or null if there are no more
+   */
+  private static String nextField(JsonReader in) throws IOException {
+    while (in.hasNext()) {
+      String name = in.nextName();
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+      } else {
+        return name;
+      }
+    }
+    return null;
+  }
+
+  private static <T> T build(Message.Builder builder) throws JsonConversionException {
+    if (!builder.isInitialized()) {
+      throw new JsonConversionException("Missing required fields for "
+          + builder.getDescriptorForType().getName());
+    }
+    @SuppressWarnings("unchecked")
+    T message = (T) builder.build();
+    return message;
+  }
+
+  private static void writeBytes(JsonWriter out, String name, ByteString bytes) throws IOException {
+    out.name(name).value(new String(Base64.encodeBase64(bytes.toByteArray()), "US-ASCII"));
+  }
+
+  private static void writeBytes(JsonWriter out, String name, List<ByteString> list)
+      throws IOException {
+    if (list.isEmpty()) {
+      return;
+    }
+    out.name(name).beginArray();
+    for (ByteString bytes : list) {
+      out.value(new String(Base64.encodeBase64(bytes.toByteArray()), "US-ASCII"));
+    }
+    out.endArray();
+  }
+
+  @SuppressWarnings("deprecation")
+  // see comment below
+  private static ByteString readBytes(JsonReader in) throws IOException, JsonConversionException {
+    byte[] jsonBytes;
+    try {
+      jsonBytes = in.nextString().getBytes("US-ASCII");
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);// never happens as ASCII is supported
+    }
+    // (drt24) Since android ships with an ancient version of org.apache.commons.codec which
+    // overrides any version we ship we have to use old deprecated methods.
+    if (Base64.isArrayByteBase64(jsonBytes)) {
+      return ByteString.copyFrom(Base64.decodeBase64(jsonBytes));
+    } else {
+      throw new JsonConversionException("JSON element is not correctly base64 encoded.");
+    }
+  }
+
+  private static final MessageCodec<AuthenticateRequest> AUTHENTICATE_REQUEST =
+      new MessageCodec<AuthenticateRequest>() {
+        @Override
+        void write(JsonWriter out, AuthenticateRequest message) throws IOException {
+          writeBytes(out, "public_key", message.getPublicKey());
+          writeBytes(out, "sig", message.getSig());
+          writeBytes(out, "nonce", message.getNonce());
+          out.name("server_name").value(message.getServerName());
+        }
+
+        @Override
+        AuthenticateRequest read(JsonReader in) throws IOException, JsonConversionException {
+          AuthenticateRequest.Builder builder = AuthenticateRequest.newBuilder();
+          String name;
+          while ((name = nextField(in)) != null) {
+            if ("public_key".equals(name)) {
+              builder.setPublicKey(readBytes(in));
+            } else if ("sig".equals(name)) {
+              builder.setSig(readBytes(in));
+            } else if ("nonce".equals(name)) {
+              builder.setNonce(readBytes(in));
+            } else if ("server_name".equals(name)) {
+              builder.setServerName(in.nextString());
+            } else {
+              in.skipValue();
+            }
+          }
+          return build(builder);
+        }
+      };
+
+  private static void writeAuth(JsonWriter out, AuthenticateRequest auth) throws IOException {
+    out.name("auth");
+    writeMessage(out, AUTHENTICATE_REQUEST, auth);
+  }
+
+  private static AuthenticateRequest readAuth(JsonReader in) throws IOException,
+      JsonConversionException {
+    return readMessage(in, AUTHENTICATE_REQUEST);
+  }
+
+  private static final MessageCodec<RevisionValue> REVISION_VALUE =
+      new MessageCodec<RevisionValue>() {
+        @Override
+        void write(JsonWriter out, RevisionValue message) throws IOException {
+          writeBytes(out, "revision", message.getRevision());
+          writeBytes(out, "value", message.getValue());
+        }
+
+        @Override
+        RevisionValue read(JsonReader in) throws IOException, JsonConversionException {
+          RevisionValue.Builder builder = RevisionValue.newBuilder();
+          String name;
+          while ((name = nextField(in)) != null) {
+            if ("revision".equals(name)) {
+              builder.setRevision(readBytes(in));
+            } else if ("value".equals(name)) {
+              builder.setValue(readBytes(in));
+            } else {
+              in.skipValue();
+            }
+          }
+          return build(builder);
+        }
+      };
+
+  private static final MessageCodec<GetResponse> GET_RESPONSE =
+      new MessageCodec<GetResponse>() {
+        @Override
+        void write(JsonWriter out, GetResponse message) throws IOException {
+          if (message.getRevisionsCount() > 0) {
+            out.name("revisions").beginArray();
+            for (RevisionValue revision : message.getRevisionsList()) {
+              writeMessage(out, REVISION_VALUE, revision);
+            }
+            out.endArray();
+          }
+          if (message.hasKey()) {
+            writeBytes(out, "key", message.getKey());
+          }
+          if (message.hasFingerprint()) {
+            writeBytes(out, "fingerprint", message.getFingerprint());
+          }
+          if (message.hasNotModified()) {
+            out.name("not_modified").value(message.getNotModified());
+          }
+        }
+
+        @Override
+        GetResponse read(JsonReader in) throws IOException, JsonConversionException {
+          GetResponse.Builder builder = GetResponse.newBuilder();
+          String name;
+          while ((name = nextField(in)) != null) {
+            if ("revisions".equals(name)) {
+              in.beginArray();
+              while (in.hasNext()) {
+                builder.addRevisions(readMessage(in, REVISION_VALUE));
+              }
+              in.endArray();
+            } else if ("key".equals(name)) {
+              builder.setKey(readBytes(in));
+            } else if ("fingerprint".equals(name)) {
+              builder.setFingerprint(readBytes(in));
+            } else if ("not_modified".equals(name)) {
+              builder.setNotModified(in.nextBoolean());
+            } else {
+              in.skipValue();
+            }
+          }
+          return build(builder);
+        }
+      };
+
+  private static final MessageCodec<GetRevisionsResponse> GET_REVISIONS_RESPONSE =
+      new MessageCodec<GetRevisionsResponse>() {
+        @Override
+        void write(JsonWriter out, GetRevisionsResponse message) throws IOException {
+          writeBytes(out, "revisions", message.getRevisionsList());
+          if (message.hasKey()) {
+            writeBytes(out, "key", message.getKey());
+          }
+          if (message.hasCursor()) {
+            writeBytes(out, "cursor", message.getCursor());
+          }
+          if (message.hasFingerprint()) {
+            writeBytes(out, "fingerprint", message.getFingerprint());
+          }
+          if (message.hasNotModified()) {
+            out.name("not_modified").value(message.getNotModified());
+          }
+        }
+
+        @Override
+        GetRevisionsResponse read(JsonReader in) throws IOException, JsonConversionException {
+          GetRevisionsResponse.Builder builder = GetRevisionsResponse.newBuilder();
+          String name;
+          while ((name = nextField(in)) != null) {
+            if ("revisions".equals(name)) {
+              in.beginArray();
+              while (in.hasNext()) {
+                builder.addRevisions(readBytes(in));
+              }
+              in.endArray();
+            } else if ("key".equals(name)) {
+              builder.setKey(readBytes(in));
+            } else if ("cursor".equals(name)) {
+              builder.setCursor(readBytes(in));
+            } else if ("fingerprint".equals(name)) {
+              builder.setFingerprint(readBytes(in));
+            } else if ("not_modified".equals(name)) {
+              builder.setNotModified(in.nextBoolean());
+            } else {
+              in.skipValue();
+            }
+          }
+          return build(builder);
+        }
+      };
+
+  private static final MessageCodec<Operation> OPERATION = new MessageCodec<Operation>() {
+    @Override
+    void write(JsonWriter out, Operation message) throws IOException {
+      out.name("type").value(message.getType());
+      writeBytes(out, "key", message.getKey());
+      if (message.hasRevision()) {
+        writeBytes(out, "revision", message.getRevision());
+      }
+      if (message.hasValue()) {
+        writeBytes(out, "value", message.getValue());
+      }
+    }
+
+    @Override
+    Operation read(JsonReader in) throws IOException, JsonConversionException {
+      Operation.Builder builder = Operation.newBuilder();
+      String name;
+      while ((name = nextField(in)) != null) {
+        if ("type".equals(name)) {
+          builder.setType(in.nextString());
+        } else if ("key".equals(name)) {
+          builder.setKey(readBytes(in));
+        } else if ("revision".equals(name)) {
+          builder.setRevision(readBytes(in));
+        } else if ("value".equals(name)) {
+          builder.setValue(readBytes(in));
+        } else {
+          in.skipValue();
+        }
+      }
+      return build(builder);
+    }
+  };
+
+  private static final MessageCodec<OperationResult> OPERATION_RESULT =
+      new MessageCodec<OperationResult>() {
+        @Override
+        void write(JsonWriter out, OperationResult message) throws IOException {
+          out.name("success").value(message.getSuccess());
+          if (message.hasGet()) {
+            out.name("get");
+            writeMessage(out, GET_RESPONSE, message.getGet());
+          }
+          if (message.hasRevisions()) {
+            out.name("revisions");
+            writeMessage(out, GET_REVISIONS_RESPONSE, message.getRevisions());
+          }
+        }
+
+        @Override
+        OperationResult read(JsonReader in) throws IOException, JsonConversionException {
+          OperationResult.Builder builder = OperationResult.newBuilder();
+          String name;
+          while ((name = nextField(in)) != null) {
+            if ("success".equals(name)) {
+              builder.setSuccess(in.nextBoolean());
+            } else if ("get".equals(name)) {
+              builder.setGet(readMessage(in, GET_RESPONSE));
+            } else if ("revisions".equals(name)) {
+              builder.setRevisions(readMessage(in, GET_REVISIONS_RESPONSE));
+            } else {
+              in.skipValue();
+            }
+          }
+          return build(builder);
+        }
+      };
+
+  private static final MessageCodec<Change> CHANGE = new MessageCodec<Change>() {
+    @Override
+    void write(JsonWriter out, Change message) throws IOException {
+      writeBytes(out, "key", message.getKey());
+      out.name("sequence").value(message.getSequence());
+      if (message.hasDeleted()) {
+        out.name("deleted").value(message.getDeleted());
+      }
+    }
+
+    @Override
+    Change read(JsonReader in) throws IOException, JsonConversionException {
+      Change.Builder builder = Change.newBuilder();
+      String name;
+      while ((name = nextField(in)) != null) {
+        if ("key".equals(name)) {
+          builder.setKey(readBytes(in));
+        } else if ("sequence".equals(name)) {
+          builder.setSequence(in.nextLong());
+        } else if ("deleted".equals(name)) {
+          builder.setDeleted(in.nextBoolean());
+        } else {
+          in.skipValue();
+        }
+      }
+      return build(builder);
+    }
+  };
+
+  private static final MessageCodec<DigestEntry> DIGEST_ENTRY = new MessageCodec<DigestEntry>() {
+    @Override
+    void write(JsonWriter out, DigestEntry message) throws IOException {
+      writeBytes(out, "key", message.getKey());
+      writeBytes(out, "digest", message.getDigest());
+    }
+
+    @Override
+    DigestEntry read(JsonReader in) throws IOException, JsonConversionException {
+      DigestEntry.Builder builder = DigestEntry.newBuilder();
+      String name;
+      while ((name = nextField(in)) != null) {
+        if ("key".equals(name)) {
+          builder.setKey(readBytes(in));
+        } else if ("digest".equals(name)) {
+          builder.setDigest(readBytes(in));
+        } else {
+          in.skipValue();
+        }
+      }
+      return build(builder);
+    }
+  };
+
+  private static final MessageCodec<DigestNode> DIGEST_NODE = new MessageCodec<DigestNode>() {
+    @Override
+    void write(JsonWriter out, DigestNode message) throws IOException {
+      writeBytes(out, "node", message.getNode());
+      writeBytes(out, "digest", message.getDigest());
+      writeBytes(out, "children", message.getChildrenList());
+      if (message.getEntriesCount() > 0) {
+        out.name("entries").beginArray();
+        for (DigestEntry entry : message.getEntriesList()) {
+          writeMessage(out, DIGEST_ENTRY, entry);
+        }
+        out.endArray();
+      }
+    }
+
+    @Override
+    DigestNode read(JsonReader in) throws IOException, JsonConversionException {
+      DigestNode.Builder builder = DigestNode.newBuilder();
+      String name;
+      while ((name = nextField(in)) != null) {
+        if ("node".equals(name)) {
+          builder.setNode(readBytes(in));
+        } else if ("digest".equals(name)) {
+          builder.setDigest(readBytes(in));
+        } else if ("children".equals(name)) {
+          in.beginArray();
+          while (in.hasNext()) {
+            builder.addChildren(readBytes(in));
+          }
+          in.endArray();
+        } else if ("entries".equals(name)) {
+          in.beginArray();
+          while (in.hasNext()) {
+            builder.addEntries(readMessage(in, DIGEST_ENTRY));
+          }
+          in.endArray();
+        } else {
+          in.skipValue();
+        }
+      }
+      return build(builder);
+    }
+  };
+
+  static {
+    register(AuthenticateRequest.class, AUTHENTICATE_REQUEST);
+    register(RevisionValue.class, REVISION_VALUE);
+    register(GetResponse.class, GET_RESPONSE);
+    register(GetRevisionsResponse.class, GET_REVISIONS_RESPONSE);
+    register(Operation.class, OPERATION);
+    register(OperationResult.class, OPERATION_RESULT);
+    register(Change.class, CHANGE);
+    register(DigestEntry.class, DIGEST_ENTRY);
+    register(DigestNode.class, DIGEST_NODE);
+
+    register(RegisterRequest.class, new MessageCodec<RegisterRequest>() {
+      @Override
+      void write(JsonWriter out, RegisterRequest message) throws IOException {
+        writeBytes(out, "public_key", message.getPublicKey());
+        writeBytes(out, "token", message.getToken());
+      }
+
+      @Override
+      RegisterRequest read(JsonReader in) throws IOException, JsonConversionException {
+        RegisterRequest.Builder builder = RegisterRequest.newBuilder();
+        String name;
+        while ((name = nextField(in)) != null) {
+          if ("public_key".equals(name)) {
+            builder.setPublicKey(readBytes(in));
+          } else if ("token".equals(name)) {
+            builder.setToken(readBytes(in));
+          } else {
+            in.skipValue();
+          }
+        }
+        return build(builder);
+      }
+    });
+
+    register(UnregisterRequest.class, new MessageCodec<UnregisterRequest>() {
+      @Override
+      void write(JsonWriter out, UnregisterRequest message) throws IOException {
+        writeAuth(out, message.getAuth());
+      }
+
+      @Override
+      UnregisterRequest read(JsonReader in) throws IOException, JsonConversionException {
+        UnregisterRequest.Builder builder = UnregisterRequest.newBuilder();
+        String name;
+        while ((name = nextField(in)) != null) {
+          if ("auth".equals(name)) {
+            builder.setAuth(readAuth(in));
+          } else {
+            in.skipValue();
+          }
+        }
+        return build(builder);
+      }
+    });
+
+    register(GetRequest.class, new MessageCodec<GetRequest>() {
+      @Override
+      void write(JsonWriter out, GetRequest message) throws IOException {
+        writeAuth(out, message.getAuth());
+        writeBytes(out, "key", message.getKey());
+        if (message.hasRevision()) {
+          writeBytes(out, "revision", message.getRevision());
+        }
+        if (message.hasFingerprint()) {
+          writeBytes(out, "fingerprint", message.getFingerprint());
+        }
+        if (message.getRevisionsCount() > 0) {
+          writeBytes(out, "revisions", message.getRevisionsList());
+        }
+      }
+
+      @Override
+      GetRequest read(JsonReader in) throws IOException, JsonConversionException {
+        GetRequest.Builder builder = GetRequest.newBuilder();
+        String name;
+        while ((name = nextField(in)) != null) {
+          if ("auth".equals(name)) {
+            builder.setAuth(readAuth(in));
+          } else if ("key".equals(name)) {
+            builder.setKey(readBytes(in));
+          } else if ("revision".equals(name)) {
+            builder.setRevision(readBytes(in));
+          } else if ("fingerprint".equals(name)) {
+            builder.setFingerprint(readBytes(in));
+          } else if ("revisions".equals(name)) {
+            in.beginArray();
+            while (in.hasNext()) {
+              builder.addRevisions(readBytes(in));
+            }
+            in.endArray();
+          } else {
+            in.skipValue();
+          }
+        }
+        return build(builder);
+      }
+    });
+
+
+    register(GetIndicesRequest.class, new MessageCodec<GetIndicesRequest>() {
+      @Override
+      void write(JsonWriter out, GetIndicesRequest message) throws IOException {
+        writeAuth(out, message.getAuth());
+        if (message.hasCursor()) {
+          writeBytes(out, "cursor", message.getCursor());
+        }
+        if (message.hasLimit()) {
+          out.name("limit").value(message.getLimit());
+        }
+      }
+
+      @Override
+      GetIndicesRequest read(JsonReader in) throws IOException, JsonConversionException {
+        GetIndicesRequest.Builder builder = GetIndicesRequest.newBuilder();
+        String name;
+        while ((name = nextField(in)) != null) {
+          if ("auth".equals(name)) {
+            builder.setAuth(readAuth(in));
+          } else if ("cursor".equals(name)) {
+            builder.setCursor(readBytes(in));
+          } else if ("limit".equals(name)) {
+            builder.setLimit(in.nextInt());
+          } else {
+            in.skipValue();
+          }
+        }
+        return build(builder);
+      }
+    });
+
+    register(GetIndicesResponse.class, new MessageCodec<GetIndicesResponse>() {
+      @Override
+      void write(JsonWriter out, GetIndicesResponse message) throws IOException {
+        writeBytes(out, "indices", message.getIndicesList());
+        if (message.hasCursor()) {
+          writeBytes(out, "cursor", message.getCursor());
+        }
+      }
+
+      @Override
+      GetIndicesResponse read(JsonReader in) throws IOException, JsonConversionException {
+        GetIndicesResponse.Builder builder = GetIndicesResponse.newBuilder();
+        String name;
+        while ((name = nextField(in)) != null) {
+          if ("indices".equals(name)) {
+            in.beginArray();
+            while (in.hasNext()) {
+              builder.addIndices(readBytes(in));
+            }
+            in.endArray();
+          } else if ("cursor".equals(name)) {
+            builder.setCursor(readBytes(in));
+          } else {
+            in.skipValue();
+          }
+        }
+        return build(builder);
+      }
+    });
+
+    register(GetRevisionsRequest.class, new MessageCodec<GetRevisionsRequest>() {
+      @Override
+      void write(JsonWriter out, GetRevisionsRequest message) throws IOException {
+        writeAuth(out, message.getAuth());
+        writeBytes(out, "key", message.getKey());
+        if (message.hasCursor()) {
+          writeBytes(out, "cursor", message.getCursor());
+        }
+        if (message.hasLimit()) {
+          out.name("limit").value(message.getLimit());
+        }
+        if (message.hasFingerprint()) {
+          writeBytes(out, "fingerprint", message.getFingerprint());
+        }
+      }
+
+      @Override
+      GetRevisionsRequest read(JsonReader in) throws IOException, JsonConversionException {
+        GetRevisionsRequest.Builder builder = GetRevisionsRequest.newBuilder();
+        String name;
+        while ((name = nextField(in)) != null) {
+          if ("auth".equals(name)) {
+            builder.setAuth(readAuth(in));
+          } else if ("key".equals(name)) {
+            builder.setKey(readBytes(in));
+          } else if ("cursor".equals(name)) {
+            builder.setCursor(readBytes(in));
+          } else if ("limit".equals(name)) {
+            builder.setLimit(in.nextInt());
+          } else if ("fingerprint".equals(name)) {
+            builder.setFingerprint(readBytes(in));
+          } else {
+            in.skipValue();
+          }
+        }
+        return build(builder);
+      }
+    });
+
+
+    register(PutRequest.class, new MessageCodec<PutRequest>() {
+      @Override
+      void write(JsonWriter out, PutRequest message) throws IOException {
+        writeAuth(out, message.getAuth());
+        writeBytes(out, "key", message.getKey());
+        writeBytes(out, "revision", message.getRevision());
+        writeBytes(out, "value", message.getValue());
+      }
+
+      @Override
+      PutRequest read(JsonReader in) throws IOException, JsonConversionException {
+        PutRequest.Builder builder = PutRequest.newBuilder();
+        String name;
+        while ((name = nextField(in)) != null) {
+          if ("auth".equals(name)) {
+            builder.setAuth(readAuth(in));
+          } else if ("key".equals(name)) {
+            builder.setKey(readBytes(in));
+          } else if ("revision".equals(name)) {
+            builder.setRevision(readBytes(in));
+          } else if ("value".equals(name)) {
+            builder.setValue(readBytes(in));
+          } else {
+            in.skipValue();
+          }
+        }
+        return build(builder);
+      }
+    });
+
+    register(DeleteRequest.class, new MessageCodec<DeleteRequest>() {
+      @Override
+      void write(JsonWriter out, DeleteRequest message) throws IOException {
+        writeAuth(out, message.getAuth());
+        writeBytes(out, "key", message.getKey());
+        if (message.hasRevision()) {
+          writeBytes(out, "revision", message.getRevision());
+        }
+      }
+
+      @Override
+      DeleteRequest read(JsonReader in) throws IOException, JsonConversionException {
+        DeleteRequest.Builder builder = DeleteRequest.newBuilder();
+        String name;
+        while ((name = nextField(in)) != null) {
+          if ("auth".equals(name)) {
+            builder.setAuth(readAuth(in));
+          } else if ("key".equals(name)) {
+            builder.setKey(readBytes(in));
+          } else if ("revision".equals(name)) {
+            builder.setRevision(readBytes(in));
+          } else {
+            in.skipValue();
+          }
+        }
+        return build(builder);
+      }
+    });
+
+    register(BatchRequest.class, new MessageCodec<BatchRequest>() {
+      @Override
+      void write(JsonWriter out, BatchRequest message) throws IOException {
+        writeAuth(out, message.getAuth());
+        if (message.getOperationsCount() > 0) {
+          out.name("operations").beginArray();
+          for (Operation operation : message.getOperationsList()) {
+            writeMessage(out, OPERATION, operation);
+          }
+          out.endArray();
+        }
+      }
+
+      @Override
+      BatchRequest read(JsonReader in) throws IOException, JsonConversionException {
+        BatchRequest.Builder builder = BatchRequest.newBuilder();
+        String name;
+        while ((name = nextField(in)) != null) {
+          if ("auth".equals(name)) {
+            builder.setAuth(readAuth(in));
+          } else if ("operations".equals(name)) {
+            in.beginArray();
+            while (in.hasNext()) {
+              builder.addOperations(readMessage(in, OPERATION));
+            }
+            in.endArray();
+          } else {
+            in.skipValue();
+          }
+        }
+        return build(builder);
+      }
+    });
+
+    register(BatchResponse.class, new MessageCodec<BatchResponse>() {
+      @Override
+      void write(JsonWriter out, BatchResponse message) throws IOException {
+        if (message.getResultsCount() > 0) {
+          out.name("results").beginArray();
+          for (OperationResult result : message.getResultsList()) {
+            writeMessage(out, OPERATION_RESULT, result);
+          }
+          out.endArray();
+        }
+      }
+
+      @Override
+      BatchResponse read(JsonReader in) throws IOException, JsonConversionException {
+        BatchResponse.Builder builder = BatchResponse.newBuilder();
+        String name;
+        while ((name = nextField(in)) != null) {
+          if ("results".equals(name)) {
+            in.beginArray();
+            while (in.hasNext()) {
+              builder.addResults(readMessage(in, OPERATION_RESULT));
+            }
+            in.endArray();
+          } else {
+            in.skipValue();
+          }
+        }
+        return build(builder);
+      }
+    });
+
+    register(GetChangesRequest.class, new MessageCodec<GetChangesRequest>() {
+      @Override
+      void write(JsonWriter out, GetChangesRequest message) throws IOException {
+        writeAuth(out, message.getAuth());
+        out.name("since").value(message.getSince());
+        if (message.hasLimit()) {
+          out.name("limit").value(message.getLimit());
+        }
+        if (message.hasWait()) {
+          out.name("wait").value(message.getWait());
+        }
+      }
+
+      @Override
+      GetChangesRequest read(JsonReader in) throws IOException, JsonConversionException {
+        GetChangesRequest.Builder builder = GetChangesRequest.newBuilder();
+        String name;
+        while ((name = nextField(in)) != null) {
+          if ("auth".equals(name)) {
+            builder.setAuth(readAuth(in));
+          } else if ("since".equals(name)) {
+            builder.setSince(in.nextLong());
+          } else if ("limit".equals(name)) {
+            builder.setLimit(in.nextInt());
+          } else if ("wait".equals(name)) {
+            builder.setWait(in.nextInt());
+          } else {
+            in.skipValue();
+          }
+        }
+        return build(builder);
+      }
+    });
+
+    register(GetChangesResponse.class, new MessageCodec<GetChangesResponse>() {
+      @Override
+      void write(JsonWriter out, GetChangesResponse message) throws IOException {
+        if (message.getChangesCount() > 0) {
+          out.name("changes").beginArray();
+          for (Change change : message.getChangesList()) {
+            writeMessage(out, CHANGE, change);
+          }
+          out.endArray();
+        }
+        out.name("sequence").value(message.getSequence());
+      }
+
+      @Override
+      GetChangesResponse read(JsonReader in) throws IOException, JsonConversionException {
+        GetChangesResponse.Builder builder = GetChangesResponse.newBuilder();
+        String name;
+        while ((name = nextField(in)) != null) {
+          if ("changes".equals(name)) {
+            in.beginArray();
+            while (in.hasNext()) {
+              builder.addChanges(readMessage(in, CHANGE));
+            }
+            in.endArray();
+          } else if ("sequence".equals(name)) {
+            builder.setSequence(in.nextLong());
+          } else {
+            in.skipValue();
+          }
+        }
+        return build(builder);
+      }
+    });
+
+    register(GetDigestsRequest.class, new MessageCodec<GetDigestsRequest>() {
+      @Override
+      void write(JsonWriter out, GetDigestsRequest message) throws IOException {
+        writeAuth(out, message.getAuth());
+        writeBytes(out, "nodes", message.getNodesList());
+      }
+
+      @Override
+      GetDigestsRequest read(JsonReader in) throws IOException, JsonConversionException {
+        GetDigestsRequest.Builder builder = GetDigestsRequest.newBuilder();
+        String name;
+        while ((name = nextField(in)) != null) {
+          if ("auth".equals(name)) {
+            builder.setAuth(readAuth(in));
+          } else if ("nodes".equals(name)) {
+            in.beginArray();
+            while (in.hasNext()) {
+              builder.addNodes(readBytes(in));
+            }
+            in.endArray();
+          } else {
+            in.skipValue();
+          }
+        }
+        return build(builder);
+      }
+    });
+
+    register(GetDigestsResponse.class, new MessageCodec<GetDigestsResponse>() {
+      @Override
+      void write(JsonWriter out, GetDigestsResponse message) throws IOException {
+        if (message.getNodesCount() > 0) {
+          out.name("nodes").beginArray();
+          for (DigestNode node : message.getNodesList()) {
+            writeMessage(out, DIGEST_NODE, node);
+          }
+          out.endArray();
+        }
+      }
+
+      @Override
+      GetDigestsResponse read(JsonReader in) throws IOException, JsonConversionException {
+        GetDigestsResponse.Builder builder = GetDigestsResponse.newBuilder();
+        String name;
+        while ((name = nextField(in)) != null) {
+          if ("nodes".equals(name)) {
+            in.beginArray();
+            while (in.hasNext()) {
+              builder.addNodes(readMessage(in, DIGEST_NODE));
+            }
+            in.endArray();
+          } else {
+            in.skipValue();
+          }
+        }
+        return build(builder);
+      }
+    });
+  }
+
+  private JsonCodec() {
+  }
+}
@@ -15,24 +15,37 @@
  */
 package com.google.nigori.common;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.MalformedJsonException;
 import com.google.nigori.common.NigoriMessages.AuthenticateRequest;
+import com.google.nigori.common.NigoriMessages.BatchRequest;
+import com.google.nigori.common.NigoriMessages.Change;
 import com.google.nigori.common.NigoriMessages.DeleteRequest;
+import com.google.nigori.common.NigoriMessages.GetChangesRequest;
+import com.google.nigori.common.NigoriMessages.GetChangesResponse;
+import com.google.nigori.common.NigoriMessages.GetDigestsRequest;
+import com.google.nigori.common.NigoriMessages.GetDigestsResponse;
 import com.google.nigori.common.NigoriMessages.GetIndicesRequest;
 import com.google.nigori.common.NigoriMessages.GetIndicesResponse;
 import com.google.nigori.common.NigoriMessages.GetRequest;
 import com.google.nigori.common.NigoriMessages.GetResponse;
 import com.google.nigori.common.NigoriMessages.GetRevisionsRequest;
 import com.google.nigori.common.NigoriMessages.GetRevisionsResponse;
+import com.google.nigori.common.NigoriMessages.Operation;
 import com.google.nigori.common.NigoriMessages.PutRequest;
 import com.google.nigori.common.NigoriMessages.RegisterRequest;
 import com.google.nigori.common.NigoriMessages.RevisionValue;
@@ -75,28 +88,19 @@ public class MessageLibrary {
 	public static final String REQUEST_AUTHENTICATE = "authenticate";
 	public static final String REQUEST_REGISTER = "register";
 	public static final String REQUEST_UNREGISTER = "unregister";
-
-	private static Gson gson = initializeGson();
-
-	private static Gson initializeGson() {
-
-		GsonBuilder gsonBuilder = new GsonBuilder();
-		gsonBuilder.registerTypeAdapter(GetRequest.class, new TypeAdapterProtobuf());
-		gsonBuilder.registerTypeAdapter(GetResponse.class, new TypeAdapterProtobuf());
-		gsonBuilder.registerTypeAdapter(GetIndicesRequest.class, new TypeAdapterProtobuf());
-    gsonBuilder.registerTypeAdapter(GetIndicesResponse.class, new TypeAdapterProtobuf());
-		gsonBuilder.registerTypeAdapter(GetRevisionsRequest.class, new TypeAdapterProtobuf());
-		gsonBuilder.registerTypeAdapter(GetRevisionsResponse.class, new TypeAdapterProtobuf());
-		gsonBuilder.registerTypeAdapter(PutRequest.class, new TypeAdapterProtobuf());
-		gsonBuilder.registerTypeAdapter(DeleteRequest.class, new TypeAdapterProtobuf());
-		gsonBuilder.registerTypeAdapter(RegisterRequest.class, new TypeAdapterProtobuf());
-		gsonBuilder.registerTypeAdapter(UnregisterRequest.class, new TypeAdapterProtobuf());
-		gsonBuilder.registerTypeAdapter(AuthenticateRequest.class, new TypeAdapterProtobuf());
-		gsonBuilder.registerTypeAdapter(RevisionValue.class, new TypeAdapterProtobuf());
-		gsonBuilder.registerTypeAdapter(ByteString.class, new TypeAdapterByteString());
-		gsonBuilder.setPrettyPrinting();
-		return gsonBuilder.create();
-	}
+	public static final String REQUEST_BATCH = "batch";
+	public static final String REQUEST_GET_CHANGES = "get-changes";
+	public static final String REQUEST_GET_DIGESTS = "get-digests";
+
+  /**
+   * The most indices or revisions which a server returns in a single page
+   */
+  public static final int MAX_PAGE_SIZE = 1000;
+  /**
+   * The longest in milliseconds that a server holds a get-changes request waiting for a change,
+   * which is well within clients' default read timeout
+   */
+  public static final int MAX_CHANGES_WAIT = 20 * 1000;
 
 	@SuppressWarnings("serial")
 	public static class JsonConversionException extends Exception {
@@ -105,18 +109,149 @@ public class MessageLibrary {
 		}
 	}
 
+  /**
+   * Write a message as JSON to {@code out}, which is flushed but not closed.
+   */
+  public static void writeJson(GeneratedMessage src, Writer out) throws IOException {
+    JsonCodec.write(src, out);
+  }
+
 	public static String toJson(GeneratedMessage src){
-	  return gson.toJson(src);
+	  StringWriter out = new StringWriter();
+	  try {
+	    JsonCodec.write(src, out);
+	  } catch (IOException e) {
+	    throw new RuntimeException(e);// never happens as StringWriter doesn't throw
+	  }
+	  return out.toString();
 	}
 
+  /**
+   * Read a message of type {@code clz} as JSON from {@code in}, which is not closed.
+   * 
+   * @throws IOException if reading from {@code in} fails
+   * @throws JsonConversionException if what is read is not a valid message of that type
+   */
+  public static <T extends GeneratedMessage> T fromJson(Reader in, Class<T> clz)
+      throws IOException, JsonConversionException {
+    try {
+      return JsonCodec.read(in, clz);
+    } catch (MalformedJsonException e) {
+      throw new JsonConversionException("Invalid JSON syntax");
+    } catch (EOFException e) {
+      throw new JsonConversionException("Invalid JSON syntax, ended early");
+    } catch (IllegalStateException e) {
+      throw new JsonConversionException("Unable to parse JSON fields into correct message format");
+    } catch (NumberFormatException e) {
+      throw new JsonConversionException("Unable to parse JSON fields into correct message format");
+    }
+  }
+
   private static <T extends GeneratedMessage> T fromJson(String json, Class<T> clz)
       throws JsonConversionException {
     try {
-      return gson.fromJson(json, clz);
-    } catch (JsonSyntaxException jse) {
-      throw new JsonConversionException("Invalid JSON syntax" + ( DEBUG ? json : ""));
-    } catch (JsonParseException jse) {
-      throw new JsonConversionException("Unable to parse JSON fields into correct message format" + ( DEBUG ? json : ""));
+      return fromJson(new StringReader(json), clz);
+    } catch (JsonConversionException e) {
+      throw new JsonConversionException(e.getMessage() + ( DEBUG ? json : ""));
+    } catch (IOException e) {
+      throw new RuntimeException(e);// never happens as StringReader doesn't throw
+    }
+  }
+
+  /**
+   * @param serverName
+   * @param signer
+   * @param index
+   * @param revision null for all the revisions
+   * @param fingerprint null or the fingerprint from an earlier response for all the revisions of
+   *          index, if they haven't changed since then the response will be not modified
+   * @return
+   * @throws NigoriCryptographyException
+   */
+  public static GetRequest getRequestAsProtobuf(String serverName, DSASign signer, byte[] index,
+      byte[] revision, byte[] fingerprint) throws NigoriCryptographyException {
+    if (fingerprint == null) {
+      return getRequestAsProtobuf(serverName, signer, index, revision);
+    }
+    GetRequest.Builder builder = GetRequest.newBuilder().setKey(ByteString.copyFrom(index));
+    if (revision != null) {
+      builder.setRevision(ByteString.copyFrom(revision)).setAuth(
+          authenticateRequestAsProtobuf(serverName, signer, REQUEST_GET, index, revision,
+              fingerprintPayload(fingerprint)));
+    } else {
+      builder.setAuth(authenticateRequestAsProtobuf(serverName, signer, REQUEST_GET, index,
+          fingerprintPayload(fingerprint)));
+    }
+    return builder.setFingerprint(ByteString.copyFrom(fingerprint)).build();
+  }
+
+  /**
+   * @param serverName
+   * @param signer
+   * @param index
+   * @param revisions the revisions to get the values of, the response only has those which exist
+   * @return a request for the values of several revisions of index
+   * @throws NigoriCryptographyException
+   */
+  public static GetRequest getRevisionValuesRequestAsProtobuf(String serverName, DSASign signer,
+      byte[] index, List<byte[]> revisions) throws NigoriCryptographyException {
+    GetRequest.Builder builder =
+        GetRequest.newBuilder().setAuth(
+            authenticateRequestAsProtobuf(serverName, signer, REQUEST_GET, index,
+                revisionsPayload(revisions))).setKey(ByteString.copyFrom(index));
+    for (byte[] revision : revisions) {
+      builder.addRevisions(ByteString.copyFrom(revision));
+    }
+    return builder.build();
+  }
+
+  /**
+   * The bytes signed for the revisions of a request for several revisions, marked so that they
+   * can't be mistaken for a single revision
+   * 
+   * @param revisions
+   * @return
+   */
+  public static byte[] revisionsPayload(List<byte[]> revisions) {
+    return Util.joinBytes(REVISIONS, Util.joinBytes(revisions
+        .toArray(new byte[revisions.size()][])));
+  }
+
+  private static final byte[] REVISIONS = toBytes("revisions");
+
+  /**
+   * The bytes signed for the fingerprint of a conditional request, marked so that they can't be
+   * mistaken for a revision
+   * 
+   * @param fingerprint
+   * @return
+   */
+  public static byte[] fingerprintPayload(byte[] fingerprint) {
+    return Util.joinBytes(FINGERPRINT, fingerprint);
+  }
+
+  private static final byte[] FINGERPRINT = toBytes("fingerprint");
+
+  /**
+   * A fingerprint of a set of revisions which is the same whatever order they are in, so that a
+   * client can ask for them only if they have changed.
+   * 
+   * @param revisions
+   * @return
+   */
+  public static byte[] revisionsFingerprint(Collection<byte[]> revisions) {
+    List<byte[]> sorted = new ArrayList<byte[]>(revisions);
+    Collections.sort(sorted, new Comparator<byte[]>() {
+      @Override
+      public int compare(byte[] a, byte[] b) {
+        return Util.compareByteArrays(a, b);
+      }
+    });
+    try {
+      MessageDigest digest = MessageDigest.getInstance(NigoriConstants.A_REVHASH);
+      return digest.digest(Util.joinBytes(sorted.toArray(new byte[sorted.size()][])));
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);// SHA-1 is always available
     }
   }
 
@@ -136,7 +271,7 @@ public class MessageLibrary {
 	}
 
 	public static String getRequestAsJson(String serverName, DSASign signer, byte[] index, byte[] revision) throws NigoriCryptographyException {
-		return gson.toJson(getRequestAsProtobuf(serverName, signer, index, revision));
+		return toJson(getRequestAsProtobuf(serverName, signer, index, revision));
 	}
 
 	public static GetRequest getRequestFromJson(String json)  throws JsonConversionException {
@@ -157,8 +292,28 @@ public class MessageLibrary {
 		return resp;
 	}
 
+  /**
+   * @param revisions all the revisions of the key
+   * @param fingerprint the {@link #revisionsFingerprint(Collection)} of the revisions
+   * @return
+   */
+  public static GetResponse getResponseAsProtobuf(Collection<RevValue> revisions,
+      byte[] fingerprint) {
+    return getResponseAsProtobuf(revisions).toBuilder().setFingerprint(
+        ByteString.copyFrom(fingerprint)).build();
+  }
+
+  /**
+   * @param fingerprint
+   * @return a response saying that the revisions still have the fingerprint the client gave
+   */
+  public static GetResponse getResponseNotModifiedAsProtobuf(byte[] fingerprint) {
+    return GetResponse.newBuilder().setFingerprint(ByteString.copyFrom(fingerprint))
+        .setNotModified(true).build();
+  }
+
 	public static String getResponseAsJson(Collection<RevValue> revisions) {
-		return gson.toJson(getResponseAsProtobuf(revisions));
+		return toJson(getResponseAsProtobuf(revisions));
 	}
 
 	public static GetResponse getResponseFromJson(String json) throws JsonConversionException {
@@ -169,8 +324,40 @@ public class MessageLibrary {
     return GetIndicesRequest.newBuilder().setAuth(authenticateRequestAsProtobuf(serverName, signer, REQUEST_GET_INDICES)).build();
   }
 
+  /**
+   * @param serverName
+   * @param signer
+   * @param cursor null for the first page or the cursor from the previous page
+   * @param limit the most indices to return, the server may return fewer
+   * @return a request for a page of the indices
+   * @throws NigoriCryptographyException
+   */
+  public static GetIndicesRequest getIndicesRequestAsProtobuf(String serverName, DSASign signer,
+      byte[] cursor, int limit) throws NigoriCryptographyException {
+    GetIndicesRequest.Builder builder =
+        GetIndicesRequest.newBuilder()
+            .setAuth(
+                authenticateRequestAsProtobuf(serverName, signer, REQUEST_GET_INDICES,
+                    pagePayload(cursor, limit))).setLimit(limit);
+    if (cursor != null) {
+      builder.setCursor(ByteString.copyFrom(cursor));
+    }
+    return builder.build();
+  }
+
+  /**
+   * The bytes signed for the cursor and limit of a paged request so that they can't be changed
+   * 
+   * @param cursor may be null
+   * @param limit
+   * @return
+   */
+  public static byte[] pagePayload(byte[] cursor, int limit) {
+    return Util.joinBytes(cursor == null ? new byte[0] : cursor, Util.int2bin(limit));
+  }
+
   public static String getIndicesRequestAsJson(String serverName, DSASign signer) throws NigoriCryptographyException {
-    return gson.toJson(getIndicesRequestAsProtobuf(serverName, signer));
+    return toJson(getIndicesRequestAsProtobuf(serverName, signer));
   }
 
   public static GetIndicesRequest getIndicesRequestFromJson(String json) throws JsonConversionException {
@@ -178,15 +365,29 @@ public class MessageLibrary {
   }
 
   public static GetIndicesResponse getIndicesResponseAsProtobuf(Collection<byte[]> value) {
+    return getIndicesResponseAsProtobuf(value, null);
+  }
+
+  /**
+   * @param value
+   * @param cursor the cursor for the next page or null if this is the last page
+   * @return
+   */
+  public static GetIndicesResponse getIndicesResponseAsProtobuf(Collection<byte[]> value,
+      byte[] cursor) {
     List<ByteString> values = new ArrayList<ByteString>(value.size());
     for (byte[] valueA : value){
       values.add(ByteString.copyFrom(valueA));
     }
-    return GetIndicesResponse.newBuilder().addAllIndices(values).build();
+    GetIndicesResponse.Builder builder = GetIndicesResponse.newBuilder().addAllIndices(values);
+    if (cursor != null) {
+      builder.setCursor(ByteString.copyFrom(cursor));
+    }
+    return builder.build();
   }
 
   public static String getIndicesResponseAsJson(Collection<byte[]> value) {
-    return gson.toJson(getIndicesResponseAsProtobuf(value));
+    return toJson(getIndicesResponseAsProtobuf(value));
   }
 
   public static GetIndicesResponse getIndicesResponseFromJson(String json) throws JsonConversionException {
@@ -199,8 +400,56 @@ public class MessageLibrary {
         .setKey(ByteString.copyFrom(index)).build();
   }
 
+  /**
+   * @param serverName
+   * @param signer
+   * @param index
+   * @param cursor null for the first page or the cursor from the previous page
+   * @param limit the most revisions to return, the server may return fewer
+   * @return a request for a page of the revisions of index
+   * @throws NigoriCryptographyException
+   */
+  public static GetRevisionsRequest getRevisionsRequestAsProtobuf(String serverName,
+      DSASign signer, byte[] index, byte[] cursor, int limit) throws NigoriCryptographyException {
+    GetRevisionsRequest.Builder builder =
+        GetRevisionsRequest.newBuilder()
+            .setAuth(
+                authenticateRequestAsProtobuf(serverName, signer, REQUEST_GET_REVISIONS, index,
+                    pagePayload(cursor, limit))).setKey(ByteString.copyFrom(index))
+            .setLimit(limit);
+    if (cursor != null) {
+      builder.setCursor(ByteString.copyFrom(cursor));
+    }
+    return builder.build();
+  }
+
+  /**
+   * As {@link #getRevisionsRequestAsProtobuf(String, DSASign, byte[], byte[], int)} but conditional
+   * on the revisions having changed since an earlier response which gave fingerprint
+   * 
+   * @param fingerprint null or the fingerprint from an earlier response
+   */
+  public static GetRevisionsRequest getRevisionsRequestAsProtobuf(String serverName,
+      DSASign signer, byte[] index, byte[] cursor, int limit, byte[] fingerprint)
+      throws NigoriCryptographyException {
+    if (fingerprint == null) {
+      return getRevisionsRequestAsProtobuf(serverName, signer, index, cursor, limit);
+    }
+    GetRevisionsRequest.Builder builder =
+        GetRevisionsRequest.newBuilder()
+            .setAuth(
+                authenticateRequestAsProtobuf(serverName, signer, REQUEST_GET_REVISIONS, index,
+                    pagePayload(cursor, limit), fingerprintPayload(fingerprint))).setKey(
+                ByteString.copyFrom(index)).setLimit(limit).setFingerprint(
+                ByteString.copyFrom(fingerprint));
+    if (cursor != null) {
+      builder.setCursor(ByteString.copyFrom(cursor));
+    }
+    return builder.build();
+  }
+
   public static String getRevisionsRequestAsJson(String serverName, DSASign signer, byte[] encIndex) throws NigoriCryptographyException {
-    return gson.toJson(getRevisionsRequestAsProtobuf(serverName, signer, encIndex));
+    return toJson(getRevisionsRequestAsProtobuf(serverName, signer, encIndex));
   }
 
   public static GetRevisionsRequest getRevisionsRequestFromJson(String json) throws JsonConversionException{
@@ -208,15 +457,52 @@ public class MessageLibrary {
   }
 
   public static GetRevisionsResponse getRevisionsResponseAsProtobuf(Collection<byte[]> value) {
+    return getRevisionsResponseAsProtobuf(value, null);
+  }
+
+  /**
+   * @param value
+   * @param cursor the cursor for the next page or null if this is the last page
+   * @return
+   */
+  public static GetRevisionsResponse getRevisionsResponseAsProtobuf(Collection<byte[]> value,
+      byte[] cursor) {
     List<ByteString> values = new ArrayList<ByteString>(value.size());
     for (byte[] valueA : value){
       values.add(ByteString.copyFrom(valueA));
     }
-    return GetRevisionsResponse.newBuilder().addAllRevisions(values).build();
+    GetRevisionsResponse.Builder builder = GetRevisionsResponse.newBuilder().addAllRevisions(values);
+    if (cursor != null) {
+      builder.setCursor(ByteString.copyFrom(cursor));
+    }
+    return builder.build();
+  }
+
+  /**
+   * @param value all the revisions of the key
+   * @param fingerprint the {@link #revisionsFingerprint(Collection)} of value
+   * @return
+   */
+  public static GetRevisionsResponse getRevisionsResponseAsProtobuf(Collection<byte[]> value,
+      byte[] cursor, byte[] fingerprint) {
+    GetRevisionsResponse response = getRevisionsResponseAsProtobuf(value, cursor);
+    if (fingerprint == null) {
+      return response;
+    }
+    return response.toBuilder().setFingerprint(ByteString.copyFrom(fingerprint)).build();
+  }
+
+  /**
+   * @param fingerprint
+   * @return a response saying that the revisions still have the fingerprint the client gave
+   */
+  public static GetRevisionsResponse getRevisionsResponseNotModifiedAsProtobuf(byte[] fingerprint) {
+    return GetRevisionsResponse.newBuilder().setFingerprint(ByteString.copyFrom(fingerprint))
+        .setNotModified(true).build();
   }
 
   public static String getRevisionsResponseAsJson(Collection<byte[]> value){
-    return gson.toJson(getRevisionsResponseAsProtobuf(value));
+    return toJson(getRevisionsResponseAsProtobuf(value));
   }
 
   public static GetRevisionsResponse getRevisionsResponseFromJson(String json)
@@ -238,7 +524,7 @@ public class MessageLibrary {
 	}
 
 	public static String putRequestAsJson(String serverName, DSASign signer, byte[] index, byte[] revision, byte[] value) throws	NigoriCryptographyException {
-		return gson.toJson(putRequestAsProtobuf(serverName, signer, index, revision, value));
+		return toJson(putRequestAsProtobuf(serverName, signer, index, revision, value));
 	}
 
 	public static PutRequest putRequestFromJson(String json) throws JsonConversionException {
@@ -256,13 +542,147 @@ public class MessageLibrary {
 	}
 
 	public static String deleteRequestAsJson(String serverName, DSASign signer, byte[] index) throws NigoriCryptographyException {
-    return gson.toJson(deleteRequestAsProtobuf(serverName, signer,index));
+    return toJson(deleteRequestAsProtobuf(serverName, signer,index));
   }
 
 	public static DeleteRequest deleteRequestFromJson(String json) throws JsonConversionException {
 	  return fromJson(json, DeleteRequest.class);
   }
 
+  public static Operation operationAsProtobuf(String type, byte[] index, byte[] revision,
+      byte[] value) {
+    Operation.Builder operation = Operation.newBuilder().setType(type).setKey(ByteString.copyFrom(index));
+    if (revision != null) {
+      operation.setRevision(ByteString.copyFrom(revision));
+    }
+    if (value != null) {
+      operation.setValue(ByteString.copyFrom(value));
+    }
+    return operation.build();
+  }
+
+  /**
+   * The payloads of all the operations in a batch which are signed together, every operation
+   * contributes the same number of payloads so that they can't be confused with each other.
+   * 
+   * @param operations
+   * @return type, key, revision and value for each operation, empty where not present
+   */
+  public static byte[][] batchPayload(List<Operation> operations) {
+    byte[][] payload = new byte[operations.size() * 4][];
+    int i = 0;
+    for (Operation operation : operations) {
+      payload[i++] = toBytes(operation.getType());
+      payload[i++] = operation.getKey().toByteArray();
+      payload[i++] = operation.getRevision().toByteArray();
+      payload[i++] = operation.getValue().toByteArray();
+    }
+    return payload;
+  }
+
+  public static BatchRequest batchRequestAsProtobuf(String serverName, DSASign signer,
+      List<Operation> operations) throws NigoriCryptographyException {
+    return BatchRequest.newBuilder()
+        .setAuth(authenticateRequestAsProtobuf(serverName, signer, REQUEST_BATCH, batchPayload(operations)))
+        .addAllOperations(operations).build();
+  }
+
+  public static BatchRequest batchRequestFromJson(String json) throws JsonConversionException {
+    return fromJson(json, BatchRequest.class);
+  }
+
+  /**
+   * @param serverName
+   * @param signer
+   * @param since the sequence number of the last change already seen, 0 for all changes
+   * @param limit the most changes to return, the server may return fewer
+   * @return
+   * @throws NigoriCryptographyException
+   */
+  public static GetChangesRequest getChangesRequestAsProtobuf(String serverName, DSASign signer,
+      long since, int limit) throws NigoriCryptographyException {
+    return GetChangesRequest.newBuilder()
+        .setAuth(authenticateRequestAsProtobuf(serverName, signer, REQUEST_GET_CHANGES,
+            Util.long2bin(since), Util.int2bin(limit))).setSince(since).setLimit(limit).build();
+  }
+
+  /**
+   * A get-changes request which, if there are no changes after since yet, waits for one
+   * 
+   * @param serverName
+   * @param signer
+   * @param since the sequence number of the last change already seen
+   * @param limit the most changes to return, the server may return fewer
+   * @param wait the longest to wait in milliseconds, the server may wait for less than this (at
+   *          most {@link #MAX_CHANGES_WAIT}) and then reply with no changes
+   * @return
+   * @throws NigoriCryptographyException
+   */
+  public static GetChangesRequest getChangesRequestAsProtobuf(String serverName, DSASign signer,
+      long since, int limit, int wait) throws NigoriCryptographyException {
+    return GetChangesRequest.newBuilder()
+        .setAuth(authenticateRequestAsProtobuf(serverName, signer, REQUEST_GET_CHANGES,
+            Util.long2bin(since), Util.int2bin(limit), Util.int2bin(wait))).setSince(since)
+        .setLimit(limit).setWait(wait).build();
+  }
+
+  public static GetChangesRequest getChangesRequestFromJson(String json)
+      throws JsonConversionException {
+    return fromJson(json, GetChangesRequest.class);
+  }
+
+  public static Change changeAsProtobuf(byte[] key, long sequence, boolean deleted) {
+    Change.Builder builder =
+        Change.newBuilder().setKey(ByteString.copyFrom(key)).setSequence(sequence);
+    if (deleted) {
+      builder.setDeleted(true);
+    }
+    return builder.build();
+  }
+
+  /**
+   * @param changes
+   * @param sequence the number of the user's latest change when the changes were listed
+   * @return
+   */
+  public static GetChangesResponse getChangesResponseAsProtobuf(List<Change> changes,
+      long sequence) {
+    return GetChangesResponse.newBuilder().addAllChanges(changes).setSequence(sequence).build();
+  }
+
+  public static GetChangesResponse getChangesResponseFromJson(String json)
+      throws JsonConversionException {
+    return fromJson(json, GetChangesResponse.class);
+  }
+
+  /**
+   * @param serverName
+   * @param signer
+   * @param nodes the paths of the nodes wanted, the root is the empty path
+   * @return
+   * @throws NigoriCryptographyException
+   */
+  public static GetDigestsRequest getDigestsRequestAsProtobuf(String serverName, DSASign signer,
+      List<ByteString> nodes) throws NigoriCryptographyException {
+    byte[][] payload = new byte[nodes.size()][];
+    for (int i = 0; i < payload.length; ++i) {
+      payload[i] = nodes.get(i).toByteArray();
+    }
+    return GetDigestsRequest.newBuilder()
+        .setAuth(authenticateRequestAsProtobuf(serverName, signer, REQUEST_GET_DIGESTS, payload))
+        .addAllNodes(nodes).build();
+  }
+
+  public static GetDigestsRequest getDigestsRequestFromJson(String json)
+      throws JsonConversionException {
+    return fromJson(json, GetDigestsRequest.class);
+  }
+
+  public static GetDigestsResponse getDigestsResponseFromJson(String json)
+      throws JsonConversionException {
+    return fromJson(json, GetDigestsResponse.class);
+  }
+
   public static AuthenticateRequest authenticateRequestAsProtobuf(String serverName, DSASign signer)
       throws NigoriCryptographyException {
     return authenticateRequestAsProtobuf(serverName, signer, REQUEST_AUTHENTICATE);
@@ -292,7 +712,7 @@ public class MessageLibrary {
 	}
 
 	public static String authenticateRequestAsJson(String serverName, DSASign signer) throws NigoriCryptographyException {
-		return gson.toJson(authenticateRequestAsProtobuf(serverName, signer));
+		return toJson(authenticateRequestAsProtobuf(serverName, signer));
 	}
 
 	public static AuthenticateRequest authenticateRequestFromJson(String json) throws
@@ -311,7 +731,7 @@ public class MessageLibrary {
 	}
 
 	public static String registerRequestAsJson(DSASign signer, byte[] token) {
-		return gson.toJson(registerRequestAsProtobuf(signer, token));
+		return toJson(registerRequestAsProtobuf(signer, token));
 	}
 
 	public static RegisterRequest registerRequestFromJson(String json) throws JsonConversionException {
@@ -328,7 +748,7 @@ public class MessageLibrary {
   }
 
 	public static String unregisterRequestAsJson(String serverName, DSASign signer) throws NigoriCryptographyException {
-    return gson.toJson(unregisterRequestAsProtobuf(serverName, signer));
+    return toJson(unregisterRequestAsProtobuf(serverName, signer));
   }
 
   public static UnregisterRequest unregisterRequestFromJson(String json)
@@ -3,7 +3,6 @@
 
 package com.google.nigori.common;
 
-@SuppressWarnings(value = {"all"})//generated code
 public final class NigoriMessages {
   private NigoriMessages() {}
   public static void registerAllExtensions(
@@ -11,114 +10,254 @@ public final class NigoriMessages {
   }
   public interface AuthenticateRequestOrBuilder
       extends com.google.protobuf.MessageOrBuilder {
-    
+
     // required bytes public_key = 1;
+    /**
+     * <code>required bytes public_key = 1;</code>
+     */
     boolean hasPublicKey();
+    /**
+     * <code>required bytes public_key = 1;</code>
+     */
     com.google.protobuf.ByteString getPublicKey();
-    
+
     // required bytes sig = 2;
+    /**
+     * <code>required bytes sig = 2;</code>
+     */
     boolean hasSig();
+    /**
+     * <code>required bytes sig = 2;</code>
+     */
     com.google.protobuf.ByteString getSig();
-    
+
     // required bytes nonce = 3;
+    /**
+     * <code>required bytes nonce = 3;</code>
+     */
     boolean hasNonce();
+    /**
+     * <code>required bytes nonce = 3;</code>
+     */
     com.google.protobuf.ByteString getNonce();
-    
+
     // required string server_name = 4;
+    /**
+     * <code>required string server_name = 4;</code>
+     */
     boolean hasServerName();
-    String getServerName();
+    /**
+     * <code>required string server_name = 4;</code>
+     */
+    java.lang.String getServerName();
+    /**
+     * <code>required string server_name = 4;</code>
+     */
+    com.google.protobuf.ByteString
+        getServerNameBytes();
   }
+  /**
+   * Protobuf type {@code nigori.AuthenticateRequest}
+   */
   public static final class AuthenticateRequest extends
       com.google.protobuf.GeneratedMessage
       implements AuthenticateRequestOrBuilder {
     // Use AuthenticateRequest.newBuilder() to construct.
-    private AuthenticateRequest(Builder builder) {
+    private AuthenticateRequest(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
       super(builder);
+      this.unknownFields = builder.getUnknownFields();
     }
-    private AuthenticateRequest(boolean noInit) {}
-    
+    private AuthenticateRequest(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
     private static final AuthenticateRequest defaultInstance;
     public static AuthenticateRequest getDefaultInstance() {
       return defaultInstance;
     }
-    
+
     public AuthenticateRequest getDefaultInstanceForType() {
       return defaultInstance;
     }
-    
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private AuthenticateRequest(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 10: {
+              bitField0_ |= 0x00000001;
+              publicKey_ = input.readBytes();
+              break;
+            }
+            case 18: {
+              bitField0_ |= 0x00000002;
+              sig_ = input.readBytes();
+              break;
+            }
+            case 26: {
+              bitField0_ |= 0x00000004;
+              nonce_ = input.readBytes();
+              break;
+            }
+            case 34: {
+              bitField0_ |= 0x00000008;
+              serverName_ = input.readBytes();
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
     public static final com.google.protobuf.Descriptors.Descriptor
         getDescriptor() {
       return com.google.nigori.common.NigoriMessages.internal_static_nigori_AuthenticateRequest_descriptor;
     }
-    
+
     protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
         internalGetFieldAccessorTable() {
-      return com.google.nigori.common.NigoriMessages.internal_static_nigori_AuthenticateRequest_fieldAccessorTable;
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_AuthenticateRequest_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              com.google.nigori.common.NigoriMessages.AuthenticateRequest.class, com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<AuthenticateRequest> PARSER =
+        new com.google.protobuf.AbstractParser<AuthenticateRequest>() {
+      public AuthenticateRequest parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new AuthenticateRequest(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<AuthenticateRequest> getParserForType() {
+      return PARSER;
     }
-    
+
     private int bitField0_;
     // required bytes public_key = 1;
     public static final int PUBLIC_KEY_FIELD_NUMBER = 1;
     private com.google.protobuf.ByteString publicKey_;
+    /**
+     * <code>required bytes public_key = 1;</code>
+     */
     public boolean hasPublicKey() {
       return ((bitField0_ & 0x00000001) == 0x00000001);
     }
+    /**
+     * <code>required bytes public_key = 1;</code>
+     */
     public com.google.protobuf.ByteString getPublicKey() {
       return publicKey_;
     }
-    
+
     // required bytes sig = 2;
     public static final int SIG_FIELD_NUMBER = 2;
     private com.google.protobuf.ByteString sig_;
+    /**
+     * <code>required bytes sig = 2;</code>
+     */
     public boolean hasSig() {
       return ((bitField0_ & 0x00000002) == 0x00000002);
     }
+    /**
+     * <code>required bytes sig = 2;</code>
+     */
     public com.google.protobuf.ByteString getSig() {
       return sig_;
     }
-    
+
     // required bytes nonce = 3;
     public static final int NONCE_FIELD_NUMBER = 3;
     private com.google.protobuf.ByteString nonce_;
+    /**
+     * <code>required bytes nonce = 3;</code>
+     */
     public boolean hasNonce() {
       return ((bitField0_ & 0x00000004) == 0x00000004);
     }
+    /**
+     * <code>required bytes nonce = 3;</code>
+     */
     public com.google.protobuf.ByteString getNonce() {
       return nonce_;
     }
-    
+
     // required string server_name = 4;
     public static final int SERVER_NAME_FIELD_NUMBER = 4;
-    private Object serverName_;
+    private java.lang.Object serverName_;
+    /**
+     * <code>required string server_name = 4;</code>
+     */
     public boolean hasServerName() {
       return ((bitField0_ & 0x00000008) == 0x00000008);
     }
-    public String getServerName() {
-      Object ref = serverName_;
-      if (ref instanceof String) {
-        return (String) ref;
+    /**
+     * <code>required string server_name = 4;</code>
+     */
+    public java.lang.String getServerName() {
+      java.lang.Object ref = serverName_;
+      if (ref instanceof java.lang.String) {
+        return (java.lang.String) ref;
       } else {
         com.google.protobuf.ByteString bs = 
             (com.google.protobuf.ByteString) ref;
-        String s = bs.toStringUtf8();
-        if (com.google.protobuf.Internal.isValidUtf8(bs)) {
+        java.lang.String s = bs.toStringUtf8();
+        if (bs.isValidUtf8()) {
           serverName_ = s;
         }
         return s;
       }
     }
-    private com.google.protobuf.ByteString getServerNameBytes() {
-      Object ref = serverName_;
-      if (ref instanceof String) {
+    /**
+     * <code>required string server_name = 4;</code>
+     */
+    public com.google.protobuf.ByteString
+        getServerNameBytes() {
+      java.lang.Object ref = serverName_;
+      if (ref instanceof java.lang.String) {
         com.google.protobuf.ByteString b = 
-            com.google.protobuf.ByteString.copyFromUtf8((String) ref);
+            com.google.protobuf.ByteString.copyFromUtf8(
+                (java.lang.String) ref);
         serverName_ = b;
         return b;
       } else {
         return (com.google.protobuf.ByteString) ref;
       }
     }
-    
+
     private void initFields() {
       publicKey_ = com.google.protobuf.ByteString.EMPTY;
       sig_ = com.google.protobuf.ByteString.EMPTY;
@@ -129,7 +268,7 @@ public final class NigoriMessages {
     public final boolean isInitialized() {
       byte isInitialized = memoizedIsInitialized;
       if (isInitialized != -1) return isInitialized == 1;
-      
+
       if (!hasPublicKey()) {
         memoizedIsInitialized = 0;
         return false;
@@ -149,7 +288,7 @@ public final class NigoriMessages {
       memoizedIsInitialized = 1;
       return true;
     }
-    
+
     public void writeTo(com.google.protobuf.CodedOutputStream output)
                         throws java.io.IOException {
       getSerializedSize();
@@ -167,12 +306,12 @@ public final class NigoriMessages {
       }
       getUnknownFields().writeTo(output);
     }
-    
+
     private int memoizedSerializedSize = -1;
     public int getSerializedSize() {
       int size = memoizedSerializedSize;
       if (size != -1) return size;
-    
+
       size = 0;
       if (((bitField0_ & 0x00000001) == 0x00000001)) {
         size += com.google.protobuf.CodedOutputStream
@@ -194,92 +333,83 @@ public final class NigoriMessages {
       memoizedSerializedSize = size;
       return size;
     }
-    
+
+    private static final long serialVersionUID = 0L;
     @java.lang.Override
-    protected Object writeReplace() throws java.io.ObjectStreamException {
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
       return super.writeReplace();
     }
-    
+
     public static com.google.nigori.common.NigoriMessages.AuthenticateRequest parseFrom(
         com.google.protobuf.ByteString data)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data).buildParsed();
+      return PARSER.parseFrom(data);
     }
     public static com.google.nigori.common.NigoriMessages.AuthenticateRequest parseFrom(
         com.google.protobuf.ByteString data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(data, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.AuthenticateRequest parseFrom(byte[] data)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data).buildParsed();
+      return PARSER.parseFrom(data);
     }
     public static com.google.nigori.common.NigoriMessages.AuthenticateRequest parseFrom(
         byte[] data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(data, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.AuthenticateRequest parseFrom(java.io.InputStream input)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input).buildParsed();
+      return PARSER.parseFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.AuthenticateRequest parseFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(input, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.AuthenticateRequest parseDelimitedFrom(java.io.InputStream input)
         throws java.io.IOException {
-      Builder builder = newBuilder();
-      if (builder.mergeDelimitedFrom(input)) {
-        return builder.buildParsed();
-      } else {
-        return null;
-      }
+      return PARSER.parseDelimitedFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.AuthenticateRequest parseDelimitedFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      Builder builder = newBuilder();
-      if (builder.mergeDelimitedFrom(input, extensionRegistry)) {
-        return builder.buildParsed();
-      } else {
-        return null;
-      }
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.AuthenticateRequest parseFrom(
         com.google.protobuf.CodedInputStream input)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input).buildParsed();
+      return PARSER.parseFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.AuthenticateRequest parseFrom(
         com.google.protobuf.CodedInputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(input, extensionRegistry);
     }
-    
+
     public static Builder newBuilder() { return Builder.create(); }
     public Builder newBuilderForType() { return newBuilder(); }
     public static Builder newBuilder(com.google.nigori.common.NigoriMessages.AuthenticateRequest prototype) {
       return newBuilder().mergeFrom(prototype);
     }
     public Builder toBuilder() { return newBuilder(this); }
-    
+
     @java.lang.Override
     protected Builder newBuilderForType(
         com.google.protobuf.GeneratedMessage.BuilderParent parent) {
       Builder builder = new Builder(parent);
       return builder;
     }
+    /**
+     * Protobuf type {@code nigori.AuthenticateRequest}
+     */
     public static final class Builder extends
         com.google.protobuf.GeneratedMessage.Builder<Builder>
        implements com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder {
@@ -287,18 +417,21 @@ public final class NigoriMessages {
           getDescriptor() {
         return com.google.nigori.common.NigoriMessages.internal_static_nigori_AuthenticateRequest_descriptor;
       }
-      
+
       protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
           internalGetFieldAccessorTable() {
-        return com.google.nigori.common.NigoriMessages.internal_static_nigori_AuthenticateRequest_fieldAccessorTable;
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_AuthenticateRequest_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                com.google.nigori.common.NigoriMessages.AuthenticateRequest.class, com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder.class);
       }
-      
+
       // Construct using com.google.nigori.common.NigoriMessages.AuthenticateRequest.newBuilder()
       private Builder() {
         maybeForceBuilderInitialization();
       }
-      
-      private Builder(BuilderParent parent) {
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
         super(parent);
         maybeForceBuilderInitialization();
       }
@@ -309,7 +442,7 @@ public final class NigoriMessages {
       private static Builder create() {
         return new Builder();
       }
-      
+
       public Builder clear() {
         super.clear();
         publicKey_ = com.google.protobuf.ByteString.EMPTY;
@@ -322,20 +455,20 @@ public final class NigoriMessages {
         bitField0_ = (bitField0_ & ~0x00000008);
         return this;
       }
-      
+
       public Builder clone() {
         return create().mergeFrom(buildPartial());
       }
-      
+
       public com.google.protobuf.Descriptors.Descriptor
           getDescriptorForType() {
-        return com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDescriptor();
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_AuthenticateRequest_descriptor;
       }
-      
+
       public com.google.nigori.common.NigoriMessages.AuthenticateRequest getDefaultInstanceForType() {
         return com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
       }
-      
+
       public com.google.nigori.common.NigoriMessages.AuthenticateRequest build() {
         com.google.nigori.common.NigoriMessages.AuthenticateRequest result = buildPartial();
         if (!result.isInitialized()) {
@@ -343,17 +476,7 @@ public final class NigoriMessages {
         }
         return result;
       }
-      
-      private com.google.nigori.common.NigoriMessages.AuthenticateRequest buildParsed()
-          throws com.google.protobuf.InvalidProtocolBufferException {
-        com.google.nigori.common.NigoriMessages.AuthenticateRequest result = buildPartial();
-        if (!result.isInitialized()) {
-          throw newUninitializedMessageException(
-            result).asInvalidProtocolBufferException();
-        }
-        return result;
-      }
-      
+
       public com.google.nigori.common.NigoriMessages.AuthenticateRequest buildPartial() {
         com.google.nigori.common.NigoriMessages.AuthenticateRequest result = new com.google.nigori.common.NigoriMessages.AuthenticateRequest(this);
         int from_bitField0_ = bitField0_;
@@ -378,7 +501,7 @@ public final class NigoriMessages {
         onBuilt();
         return result;
       }
-      
+
       public Builder mergeFrom(com.google.protobuf.Message other) {
         if (other instanceof com.google.nigori.common.NigoriMessages.AuthenticateRequest) {
           return mergeFrom((com.google.nigori.common.NigoriMessages.AuthenticateRequest)other);
@@ -387,7 +510,7 @@ public final class NigoriMessages {
           return this;
         }
       }
-      
+
       public Builder mergeFrom(com.google.nigori.common.NigoriMessages.AuthenticateRequest other) {
         if (other == com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance()) return this;
         if (other.hasPublicKey()) {
@@ -400,12 +523,14 @@ public final class NigoriMessages {
           setNonce(other.getNonce());
         }
         if (other.hasServerName()) {
-          setServerName(other.getServerName());
+          bitField0_ |= 0x00000008;
+          serverName_ = other.serverName_;
+          onChanged();
         }
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
-      
+
       public final boolean isInitialized() {
         if (!hasPublicKey()) {
           
@@ -425,64 +550,43 @@ public final class NigoriMessages {
         }
         return true;
       }
-      
+
       public Builder mergeFrom(
           com.google.protobuf.CodedInputStream input,
           com.google.protobuf.ExtensionRegistryLite extensionRegistry)
           throws java.io.IOException {
-        com.google.protobuf.UnknownFieldSet.Builder unknownFields =
-          com.google.protobuf.UnknownFieldSet.newBuilder(
-            this.getUnknownFields());
-        while (true) {
-          int tag = input.readTag();
-          switch (tag) {
-            case 0:
-              this.setUnknownFields(unknownFields.build());
-              onChanged();
-              return this;
-            default: {
-              if (!parseUnknownField(input, unknownFields,
-                                     extensionRegistry, tag)) {
-                this.setUnknownFields(unknownFields.build());
-                onChanged();
-                return this;
-              }
-              break;
-            }
-            case 10: {
-              bitField0_ |= 0x00000001;
-              publicKey_ = input.readBytes();
-              break;
-            }
-            case 18: {
-              bitField0_ |= 0x00000002;
-              sig_ = input.readBytes();
-              break;
-            }
-            case 26: {
-              bitField0_ |= 0x00000004;
-              nonce_ = input.readBytes();
-              break;
-            }
-            case 34: {
-              bitField0_ |= 0x00000008;
-              serverName_ = input.readBytes();
-              break;
-            }
+        com.google.nigori.common.NigoriMessages.AuthenticateRequest parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (com.google.nigori.common.NigoriMessages.AuthenticateRequest) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
           }
         }
+        return this;
       }
-      
       private int bitField0_;
-      
+
       // required bytes public_key = 1;
       private com.google.protobuf.ByteString publicKey_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>required bytes public_key = 1;</code>
+       */
       public boolean hasPublicKey() {
         return ((bitField0_ & 0x00000001) == 0x00000001);
       }
+      /**
+       * <code>required bytes public_key = 1;</code>
+       */
       public com.google.protobuf.ByteString getPublicKey() {
         return publicKey_;
       }
+      /**
+       * <code>required bytes public_key = 1;</code>
+       */
       public Builder setPublicKey(com.google.protobuf.ByteString value) {
         if (value == null) {
     throw new NullPointerException();
@@ -492,21 +596,33 @@ public final class NigoriMessages {
         onChanged();
         return this;
       }
+      /**
+       * <code>required bytes public_key = 1;</code>
+       */
       public Builder clearPublicKey() {
         bitField0_ = (bitField0_ & ~0x00000001);
         publicKey_ = getDefaultInstance().getPublicKey();
         onChanged();
         return this;
       }
-      
+
       // required bytes sig = 2;
       private com.google.protobuf.ByteString sig_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>required bytes sig = 2;</code>
+       */
       public boolean hasSig() {
         return ((bitField0_ & 0x00000002) == 0x00000002);
       }
+      /**
+       * <code>required bytes sig = 2;</code>
+       */
       public com.google.protobuf.ByteString getSig() {
         return sig_;
       }
+      /**
+       * <code>required bytes sig = 2;</code>
+       */
       public Builder setSig(com.google.protobuf.ByteString value) {
         if (value == null) {
     throw new NullPointerException();
@@ -516,21 +632,33 @@ public final class NigoriMessages {
         onChanged();
         return this;
       }
+      /**
+       * <code>required bytes sig = 2;</code>
+       */
       public Builder clearSig() {
         bitField0_ = (bitField0_ & ~0x00000002);
         sig_ = getDefaultInstance().getSig();
         onChanged();
         return this;
       }
-      
+
       // required bytes nonce = 3;
       private com.google.protobuf.ByteString nonce_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>required bytes nonce = 3;</code>
+       */
       public boolean hasNonce() {
         return ((bitField0_ & 0x00000004) == 0x00000004);
       }
+      /**
+       * <code>required bytes nonce = 3;</code>
+       */
       public com.google.protobuf.ByteString getNonce() {
         return nonce_;
       }
+      /**
+       * <code>required bytes nonce = 3;</code>
+       */
       public Builder setNonce(com.google.protobuf.ByteString value) {
         if (value == null) {
     throw new NullPointerException();
@@ -540,29 +668,59 @@ public final class NigoriMessages {
         onChanged();
         return this;
       }
+      /**
+       * <code>required bytes nonce = 3;</code>
+       */
       public Builder clearNonce() {
         bitField0_ = (bitField0_ & ~0x00000004);
         nonce_ = getDefaultInstance().getNonce();
         onChanged();
         return this;
       }
-      
+
       // required string server_name = 4;
-      private Object serverName_ = "";
+      private java.lang.Object serverName_ = "";
+      /**
+       * <code>required string server_name = 4;</code>
+       */
       public boolean hasServerName() {
         return ((bitField0_ & 0x00000008) == 0x00000008);
       }
-      public String getServerName() {
-        Object ref = serverName_;
-        if (!(ref instanceof String)) {
-          String s = ((com.google.protobuf.ByteString) ref).toStringUtf8();
+      /**
+       * <code>required string server_name = 4;</code>
+       */
+      public java.lang.String getServerName() {
+        java.lang.Object ref = serverName_;
+        if (!(ref instanceof java.lang.String)) {
+          java.lang.String s = ((com.google.protobuf.ByteString) ref)
+              .toStringUtf8();
           serverName_ = s;
           return s;
         } else {
-          return (String) ref;
+          return (java.lang.String) ref;
         }
       }
-      public Builder setServerName(String value) {
+      /**
+       * <code>required string server_name = 4;</code>
+       */
+      public com.google.protobuf.ByteString
+          getServerNameBytes() {
+        java.lang.Object ref = serverName_;
+        if (ref instanceof String) {
+          com.google.protobuf.ByteString b = 
+              com.google.protobuf.ByteString.copyFromUtf8(
+                  (java.lang.String) ref);
+          serverName_ = b;
+          return b;
+        } else {
+          return (com.google.protobuf.ByteString) ref;
+        }
+      }
+      /**
+       * <code>required string server_name = 4;</code>
+       */
+      public Builder setServerName(
+          java.lang.String value) {
         if (value == null) {
     throw new NullPointerException();
   }
@@ -571,89 +729,196 @@ public final class NigoriMessages {
         onChanged();
         return this;
       }
+      /**
+       * <code>required string server_name = 4;</code>
+       */
       public Builder clearServerName() {
         bitField0_ = (bitField0_ & ~0x00000008);
         serverName_ = getDefaultInstance().getServerName();
         onChanged();
         return this;
       }
-      void setServerName(com.google.protobuf.ByteString value) {
-        bitField0_ |= 0x00000008;
+      /**
+       * <code>required string server_name = 4;</code>
+       */
+      public Builder setServerNameBytes(
+          com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000008;
         serverName_ = value;
         onChanged();
+        return this;
       }
-      
+
       // @@protoc_insertion_point(builder_scope:nigori.AuthenticateRequest)
     }
-    
+
     static {
       defaultInstance = new AuthenticateRequest(true);
       defaultInstance.initFields();
     }
-    
+
     // @@protoc_insertion_point(class_scope:nigori.AuthenticateRequest)
   }
-  
+
   public interface RegisterRequestOrBuilder
       extends com.google.protobuf.MessageOrBuilder {
-    
+
     // required bytes public_key = 1;
+    /**
+     * <code>required bytes public_key = 1;</code>
+     */
     boolean hasPublicKey();
+    /**
+     * <code>required bytes public_key = 1;</code>
+     */
     com.google.protobuf.ByteString getPublicKey();
-    
+
     // required bytes token = 2;
+    /**
+     * <code>required bytes token = 2;</code>
+     */
     boolean hasToken();
+    /**
+     * <code>required bytes token = 2;</code>
+     */
     com.google.protobuf.ByteString getToken();
   }
+  /**
+   * Protobuf type {@code nigori.RegisterRequest}
+   */
   public static final class RegisterRequest extends
       com.google.protobuf.GeneratedMessage
       implements RegisterRequestOrBuilder {
     // Use RegisterRequest.newBuilder() to construct.
-    private RegisterRequest(Builder builder) {
+    private RegisterRequest(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
       super(builder);
+      this.unknownFields = builder.getUnknownFields();
     }
-    private RegisterRequest(boolean noInit) {}
-    
+    private RegisterRequest(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
     private static final RegisterRequest defaultInstance;
     public static RegisterRequest getDefaultInstance() {
       return defaultInstance;
     }
-    
+
     public RegisterRequest getDefaultInstanceForType() {
       return defaultInstance;
     }
-    
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private RegisterRequest(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 10: {
+              bitField0_ |= 0x00000001;
+              publicKey_ = input.readBytes();
+              break;
+            }
+            case 18: {
+              bitField0_ |= 0x00000002;
+              token_ = input.readBytes();
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
     public static final com.google.protobuf.Descriptors.Descriptor
         getDescriptor() {
       return com.google.nigori.common.NigoriMessages.internal_static_nigori_RegisterRequest_descriptor;
     }
-    
+
     protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
         internalGetFieldAccessorTable() {
-      return com.google.nigori.common.NigoriMessages.internal_static_nigori_RegisterRequest_fieldAccessorTable;
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_RegisterRequest_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              com.google.nigori.common.NigoriMessages.RegisterRequest.class, com.google.nigori.common.NigoriMessages.RegisterRequest.Builder.class);
     }
-    
+
+    public static com.google.protobuf.Parser<RegisterRequest> PARSER =
+        new com.google.protobuf.AbstractParser<RegisterRequest>() {
+      public RegisterRequest parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new RegisterRequest(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<RegisterRequest> getParserForType() {
+      return PARSER;
+    }
+
     private int bitField0_;
     // required bytes public_key = 1;
     public static final int PUBLIC_KEY_FIELD_NUMBER = 1;
     private com.google.protobuf.ByteString publicKey_;
+    /**
+     * <code>required bytes public_key = 1;</code>
+     */
     public boolean hasPublicKey() {
       return ((bitField0_ & 0x00000001) == 0x00000001);
     }
+    /**
+     * <code>required bytes public_key = 1;</code>
+     */
     public com.google.protobuf.ByteString getPublicKey() {
       return publicKey_;
     }
-    
+
     // required bytes token = 2;
     public static final int TOKEN_FIELD_NUMBER = 2;
     private com.google.protobuf.ByteString token_;
+    /**
+     * <code>required bytes token = 2;</code>
+     */
     public boolean hasToken() {
       return ((bitField0_ & 0x00000002) == 0x00000002);
     }
+    /**
+     * <code>required bytes token = 2;</code>
+     */
     public com.google.protobuf.ByteString getToken() {
       return token_;
     }
-    
+
     private void initFields() {
       publicKey_ = com.google.protobuf.ByteString.EMPTY;
       token_ = com.google.protobuf.ByteString.EMPTY;
@@ -662,7 +927,7 @@ public final class NigoriMessages {
     public final boolean isInitialized() {
       byte isInitialized = memoizedIsInitialized;
       if (isInitialized != -1) return isInitialized == 1;
-      
+
       if (!hasPublicKey()) {
         memoizedIsInitialized = 0;
         return false;
@@ -674,7 +939,7 @@ public final class NigoriMessages {
       memoizedIsInitialized = 1;
       return true;
     }
-    
+
     public void writeTo(com.google.protobuf.CodedOutputStream output)
                         throws java.io.IOException {
       getSerializedSize();
@@ -686,12 +951,12 @@ public final class NigoriMessages {
       }
       getUnknownFields().writeTo(output);
     }
-    
+
     private int memoizedSerializedSize = -1;
     public int getSerializedSize() {
       int size = memoizedSerializedSize;
       if (size != -1) return size;
-    
+
       size = 0;
       if (((bitField0_ & 0x00000001) == 0x00000001)) {
         size += com.google.protobuf.CodedOutputStream
@@ -705,92 +970,83 @@ public final class NigoriMessages {
       memoizedSerializedSize = size;
       return size;
     }
-    
+
+    private static final long serialVersionUID = 0L;
     @java.lang.Override
-    protected Object writeReplace() throws java.io.ObjectStreamException {
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
       return super.writeReplace();
     }
-    
+
     public static com.google.nigori.common.NigoriMessages.RegisterRequest parseFrom(
         com.google.protobuf.ByteString data)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data).buildParsed();
+      return PARSER.parseFrom(data);
     }
     public static com.google.nigori.common.NigoriMessages.RegisterRequest parseFrom(
         com.google.protobuf.ByteString data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(data, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.RegisterRequest parseFrom(byte[] data)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data).buildParsed();
+      return PARSER.parseFrom(data);
     }
     public static com.google.nigori.common.NigoriMessages.RegisterRequest parseFrom(
         byte[] data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(data, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.RegisterRequest parseFrom(java.io.InputStream input)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input).buildParsed();
+      return PARSER.parseFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.RegisterRequest parseFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(input, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.RegisterRequest parseDelimitedFrom(java.io.InputStream input)
         throws java.io.IOException {
-      Builder builder = newBuilder();
-      if (builder.mergeDelimitedFrom(input)) {
-        return builder.buildParsed();
-      } else {
-        return null;
-      }
+      return PARSER.parseDelimitedFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.RegisterRequest parseDelimitedFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      Builder builder = newBuilder();
-      if (builder.mergeDelimitedFrom(input, extensionRegistry)) {
-        return builder.buildParsed();
-      } else {
-        return null;
-      }
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.RegisterRequest parseFrom(
         com.google.protobuf.CodedInputStream input)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input).buildParsed();
+      return PARSER.parseFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.RegisterRequest parseFrom(
         com.google.protobuf.CodedInputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(input, extensionRegistry);
     }
-    
+
     public static Builder newBuilder() { return Builder.create(); }
     public Builder newBuilderForType() { return newBuilder(); }
     public static Builder newBuilder(com.google.nigori.common.NigoriMessages.RegisterRequest prototype) {
       return newBuilder().mergeFrom(prototype);
     }
     public Builder toBuilder() { return newBuilder(this); }
-    
+
     @java.lang.Override
     protected Builder newBuilderForType(
         com.google.protobuf.GeneratedMessage.BuilderParent parent) {
       Builder builder = new Builder(parent);
       return builder;
     }
+    /**
+     * Protobuf type {@code nigori.RegisterRequest}
+     */
     public static final class Builder extends
         com.google.protobuf.GeneratedMessage.Builder<Builder>
        implements com.google.nigori.common.NigoriMessages.RegisterRequestOrBuilder {
@@ -798,18 +1054,21 @@ public final class NigoriMessages {
           getDescriptor() {
         return com.google.nigori.common.NigoriMessages.internal_static_nigori_RegisterRequest_descriptor;
       }
-      
+
       protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
           internalGetFieldAccessorTable() {
-        return com.google.nigori.common.NigoriMessages.internal_static_nigori_RegisterRequest_fieldAccessorTable;
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_RegisterRequest_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                com.google.nigori.common.NigoriMessages.RegisterRequest.class, com.google.nigori.common.NigoriMessages.RegisterRequest.Builder.class);
       }
-      
+
       // Construct using com.google.nigori.common.NigoriMessages.RegisterRequest.newBuilder()
       private Builder() {
         maybeForceBuilderInitialization();
       }
-      
-      private Builder(BuilderParent parent) {
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
         super(parent);
         maybeForceBuilderInitialization();
       }
@@ -820,7 +1079,7 @@ public final class NigoriMessages {
       private static Builder create() {
         return new Builder();
       }
-      
+
       public Builder clear() {
         super.clear();
         publicKey_ = com.google.protobuf.ByteString.EMPTY;
@@ -829,20 +1088,20 @@ public final class NigoriMessages {
         bitField0_ = (bitField0_ & ~0x00000002);
         return this;
       }
-      
+
       public Builder clone() {
         return create().mergeFrom(buildPartial());
       }
-      
+
       public com.google.protobuf.Descriptors.Descriptor
           getDescriptorForType() {
-        return com.google.nigori.common.NigoriMessages.RegisterRequest.getDescriptor();
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_RegisterRequest_descriptor;
       }
-      
+
       public com.google.nigori.common.NigoriMessages.RegisterRequest getDefaultInstanceForType() {
         return com.google.nigori.common.NigoriMessages.RegisterRequest.getDefaultInstance();
       }
-      
+
       public com.google.nigori.common.NigoriMessages.RegisterRequest build() {
         com.google.nigori.common.NigoriMessages.RegisterRequest result = buildPartial();
         if (!result.isInitialized()) {
@@ -850,17 +1109,7 @@ public final class NigoriMessages {
         }
         return result;
       }
-      
-      private com.google.nigori.common.NigoriMessages.RegisterRequest buildParsed()
-          throws com.google.protobuf.InvalidProtocolBufferException {
-        com.google.nigori.common.NigoriMessages.RegisterRequest result = buildPartial();
-        if (!result.isInitialized()) {
-          throw newUninitializedMessageException(
-            result).asInvalidProtocolBufferException();
-        }
-        return result;
-      }
-      
+
       public com.google.nigori.common.NigoriMessages.RegisterRequest buildPartial() {
         com.google.nigori.common.NigoriMessages.RegisterRequest result = new com.google.nigori.common.NigoriMessages.RegisterRequest(this);
         int from_bitField0_ = bitField0_;
@@ -877,7 +1126,7 @@ public final class NigoriMessages {
         onBuilt();
         return result;
       }
-      
+
       public Builder mergeFrom(com.google.protobuf.Message other) {
         if (other instanceof com.google.nigori.common.NigoriMessages.RegisterRequest) {
           return mergeFrom((com.google.nigori.common.NigoriMessages.RegisterRequest)other);
@@ -886,7 +1135,7 @@ public final class NigoriMessages {
           return this;
         }
       }
-      
+
       public Builder mergeFrom(com.google.nigori.common.NigoriMessages.RegisterRequest other) {
         if (other == com.google.nigori.common.NigoriMessages.RegisterRequest.getDefaultInstance()) return this;
         if (other.hasPublicKey()) {
@@ -898,7 +1147,7 @@ public final class NigoriMessages {
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
-      
+
       public final boolean isInitialized() {
         if (!hasPublicKey()) {
           
@@ -910,54 +1159,43 @@ public final class NigoriMessages {
         }
         return true;
       }
-      
+
       public Builder mergeFrom(
           com.google.protobuf.CodedInputStream input,
           com.google.protobuf.ExtensionRegistryLite extensionRegistry)
           throws java.io.IOException {
-        com.google.protobuf.UnknownFieldSet.Builder unknownFields =
-          com.google.protobuf.UnknownFieldSet.newBuilder(
-            this.getUnknownFields());
-        while (true) {
-          int tag = input.readTag();
-          switch (tag) {
-            case 0:
-              this.setUnknownFields(unknownFields.build());
-              onChanged();
-              return this;
-            default: {
-              if (!parseUnknownField(input, unknownFields,
-                                     extensionRegistry, tag)) {
-                this.setUnknownFields(unknownFields.build());
-                onChanged();
-                return this;
-              }
-              break;
-            }
-            case 10: {
-              bitField0_ |= 0x00000001;
-              publicKey_ = input.readBytes();
-              break;
-            }
-            case 18: {
-              bitField0_ |= 0x00000002;
-              token_ = input.readBytes();
-              break;
-            }
+        com.google.nigori.common.NigoriMessages.RegisterRequest parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (com.google.nigori.common.NigoriMessages.RegisterRequest) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
           }
         }
+        return this;
       }
-      
       private int bitField0_;
-      
+
       // required bytes public_key = 1;
       private com.google.protobuf.ByteString publicKey_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>required bytes public_key = 1;</code>
+       */
       public boolean hasPublicKey() {
         return ((bitField0_ & 0x00000001) == 0x00000001);
       }
+      /**
+       * <code>required bytes public_key = 1;</code>
+       */
       public com.google.protobuf.ByteString getPublicKey() {
         return publicKey_;
       }
+      /**
+       * <code>required bytes public_key = 1;</code>
+       */
       public Builder setPublicKey(com.google.protobuf.ByteString value) {
         if (value == null) {
     throw new NullPointerException();
@@ -967,21 +1205,33 @@ public final class NigoriMessages {
         onChanged();
         return this;
       }
+      /**
+       * <code>required bytes public_key = 1;</code>
+       */
       public Builder clearPublicKey() {
         bitField0_ = (bitField0_ & ~0x00000001);
         publicKey_ = getDefaultInstance().getPublicKey();
         onChanged();
         return this;
       }
-      
+
       // required bytes token = 2;
       private com.google.protobuf.ByteString token_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>required bytes token = 2;</code>
+       */
       public boolean hasToken() {
         return ((bitField0_ & 0x00000002) == 0x00000002);
       }
+      /**
+       * <code>required bytes token = 2;</code>
+       */
       public com.google.protobuf.ByteString getToken() {
         return token_;
       }
+      /**
+       * <code>required bytes token = 2;</code>
+       */
       public Builder setToken(com.google.protobuf.ByteString value) {
         if (value == null) {
     throw new NullPointerException();
@@ -991,74 +1241,170 @@ public final class NigoriMessages {
         onChanged();
         return this;
       }
+      /**
+       * <code>required bytes token = 2;</code>
+       */
       public Builder clearToken() {
         bitField0_ = (bitField0_ & ~0x00000002);
         token_ = getDefaultInstance().getToken();
         onChanged();
         return this;
       }
-      
+
       // @@protoc_insertion_point(builder_scope:nigori.RegisterRequest)
     }
-    
+
     static {
       defaultInstance = new RegisterRequest(true);
       defaultInstance.initFields();
     }
-    
+
     // @@protoc_insertion_point(class_scope:nigori.RegisterRequest)
   }
-  
+
   public interface UnregisterRequestOrBuilder
       extends com.google.protobuf.MessageOrBuilder {
-    
+
     // required .nigori.AuthenticateRequest auth = 1;
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     boolean hasAuth();
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth();
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder();
   }
+  /**
+   * Protobuf type {@code nigori.UnregisterRequest}
+   */
   public static final class UnregisterRequest extends
       com.google.protobuf.GeneratedMessage
       implements UnregisterRequestOrBuilder {
     // Use UnregisterRequest.newBuilder() to construct.
-    private UnregisterRequest(Builder builder) {
+    private UnregisterRequest(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
       super(builder);
+      this.unknownFields = builder.getUnknownFields();
     }
-    private UnregisterRequest(boolean noInit) {}
-    
+    private UnregisterRequest(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
     private static final UnregisterRequest defaultInstance;
     public static UnregisterRequest getDefaultInstance() {
       return defaultInstance;
     }
-    
+
     public UnregisterRequest getDefaultInstanceForType() {
       return defaultInstance;
     }
-    
-    public static final com.google.protobuf.Descriptors.Descriptor
-        getDescriptor() {
-      return com.google.nigori.common.NigoriMessages.internal_static_nigori_UnregisterRequest_descriptor;
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
     }
-    
-    protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
-        internalGetFieldAccessorTable() {
-      return com.google.nigori.common.NigoriMessages.internal_static_nigori_UnregisterRequest_fieldAccessorTable;
+    private UnregisterRequest(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 10: {
+              com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder subBuilder = null;
+              if (((bitField0_ & 0x00000001) == 0x00000001)) {
+                subBuilder = auth_.toBuilder();
+              }
+              auth_ = input.readMessage(com.google.nigori.common.NigoriMessages.AuthenticateRequest.PARSER, extensionRegistry);
+              if (subBuilder != null) {
+                subBuilder.mergeFrom(auth_);
+                auth_ = subBuilder.buildPartial();
+              }
+              bitField0_ |= 0x00000001;
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_UnregisterRequest_descriptor;
+    }
+
+    protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_UnregisterRequest_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              com.google.nigori.common.NigoriMessages.UnregisterRequest.class, com.google.nigori.common.NigoriMessages.UnregisterRequest.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<UnregisterRequest> PARSER =
+        new com.google.protobuf.AbstractParser<UnregisterRequest>() {
+      public UnregisterRequest parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new UnregisterRequest(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<UnregisterRequest> getParserForType() {
+      return PARSER;
     }
-    
+
     private int bitField0_;
     // required .nigori.AuthenticateRequest auth = 1;
     public static final int AUTH_FIELD_NUMBER = 1;
     private com.google.nigori.common.NigoriMessages.AuthenticateRequest auth_;
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     public boolean hasAuth() {
       return ((bitField0_ & 0x00000001) == 0x00000001);
     }
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     public com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth() {
       return auth_;
     }
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     public com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder() {
       return auth_;
     }
-    
+
     private void initFields() {
       auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
     }
@@ -1066,7 +1412,7 @@ public final class NigoriMessages {
     public final boolean isInitialized() {
       byte isInitialized = memoizedIsInitialized;
       if (isInitialized != -1) return isInitialized == 1;
-      
+
       if (!hasAuth()) {
         memoizedIsInitialized = 0;
         return false;
@@ -1078,7 +1424,7 @@ public final class NigoriMessages {
       memoizedIsInitialized = 1;
       return true;
     }
-    
+
     public void writeTo(com.google.protobuf.CodedOutputStream output)
                         throws java.io.IOException {
       getSerializedSize();
@@ -1087,12 +1433,12 @@ public final class NigoriMessages {
       }
       getUnknownFields().writeTo(output);
     }
-    
+
     private int memoizedSerializedSize = -1;
     public int getSerializedSize() {
       int size = memoizedSerializedSize;
       if (size != -1) return size;
-    
+
       size = 0;
       if (((bitField0_ & 0x00000001) == 0x00000001)) {
         size += com.google.protobuf.CodedOutputStream
@@ -1102,92 +1448,83 @@ public final class NigoriMessages {
       memoizedSerializedSize = size;
       return size;
     }
-    
+
+    private static final long serialVersionUID = 0L;
     @java.lang.Override
-    protected Object writeReplace() throws java.io.ObjectStreamException {
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
       return super.writeReplace();
     }
-    
+
     public static com.google.nigori.common.NigoriMessages.UnregisterRequest parseFrom(
         com.google.protobuf.ByteString data)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data).buildParsed();
+      return PARSER.parseFrom(data);
     }
     public static com.google.nigori.common.NigoriMessages.UnregisterRequest parseFrom(
         com.google.protobuf.ByteString data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(data, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.UnregisterRequest parseFrom(byte[] data)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data).buildParsed();
+      return PARSER.parseFrom(data);
     }
     public static com.google.nigori.common.NigoriMessages.UnregisterRequest parseFrom(
         byte[] data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(data, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.UnregisterRequest parseFrom(java.io.InputStream input)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input).buildParsed();
+      return PARSER.parseFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.UnregisterRequest parseFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(input, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.UnregisterRequest parseDelimitedFrom(java.io.InputStream input)
         throws java.io.IOException {
-      Builder builder = newBuilder();
-      if (builder.mergeDelimitedFrom(input)) {
-        return builder.buildParsed();
-      } else {
-        return null;
-      }
+      return PARSER.parseDelimitedFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.UnregisterRequest parseDelimitedFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      Builder builder = newBuilder();
-      if (builder.mergeDelimitedFrom(input, extensionRegistry)) {
-        return builder.buildParsed();
-      } else {
-        return null;
-      }
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.UnregisterRequest parseFrom(
         com.google.protobuf.CodedInputStream input)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input).buildParsed();
+      return PARSER.parseFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.UnregisterRequest parseFrom(
         com.google.protobuf.CodedInputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(input, extensionRegistry);
     }
-    
+
     public static Builder newBuilder() { return Builder.create(); }
     public Builder newBuilderForType() { return newBuilder(); }
     public static Builder newBuilder(com.google.nigori.common.NigoriMessages.UnregisterRequest prototype) {
       return newBuilder().mergeFrom(prototype);
     }
     public Builder toBuilder() { return newBuilder(this); }
-    
+
     @java.lang.Override
     protected Builder newBuilderForType(
         com.google.protobuf.GeneratedMessage.BuilderParent parent) {
       Builder builder = new Builder(parent);
       return builder;
     }
+    /**
+     * Protobuf type {@code nigori.UnregisterRequest}
+     */
     public static final class Builder extends
         com.google.protobuf.GeneratedMessage.Builder<Builder>
        implements com.google.nigori.common.NigoriMessages.UnregisterRequestOrBuilder {
@@ -1195,18 +1532,21 @@ public final class NigoriMessages {
           getDescriptor() {
         return com.google.nigori.common.NigoriMessages.internal_static_nigori_UnregisterRequest_descriptor;
       }
-      
+
       protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
           internalGetFieldAccessorTable() {
-        return com.google.nigori.common.NigoriMessages.internal_static_nigori_UnregisterRequest_fieldAccessorTable;
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_UnregisterRequest_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                com.google.nigori.common.NigoriMessages.UnregisterRequest.class, com.google.nigori.common.NigoriMessages.UnregisterRequest.Builder.class);
       }
-      
+
       // Construct using com.google.nigori.common.NigoriMessages.UnregisterRequest.newBuilder()
       private Builder() {
         maybeForceBuilderInitialization();
       }
-      
-      private Builder(BuilderParent parent) {
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
         super(parent);
         maybeForceBuilderInitialization();
       }
@@ -1218,7 +1558,7 @@ public final class NigoriMessages {
       private static Builder create() {
         return new Builder();
       }
-      
+
       public Builder clear() {
         super.clear();
         if (authBuilder_ == null) {
@@ -1229,20 +1569,20 @@ public final class NigoriMessages {
         bitField0_ = (bitField0_ & ~0x00000001);
         return this;
       }
-      
+
       public Builder clone() {
         return create().mergeFrom(buildPartial());
       }
-      
+
       public com.google.protobuf.Descriptors.Descriptor
           getDescriptorForType() {
-        return com.google.nigori.common.NigoriMessages.UnregisterRequest.getDescriptor();
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_UnregisterRequest_descriptor;
       }
-      
+
       public com.google.nigori.common.NigoriMessages.UnregisterRequest getDefaultInstanceForType() {
         return com.google.nigori.common.NigoriMessages.UnregisterRequest.getDefaultInstance();
       }
-      
+
       public com.google.nigori.common.NigoriMessages.UnregisterRequest build() {
         com.google.nigori.common.NigoriMessages.UnregisterRequest result = buildPartial();
         if (!result.isInitialized()) {
@@ -1250,17 +1590,7 @@ public final class NigoriMessages {
         }
         return result;
       }
-      
-      private com.google.nigori.common.NigoriMessages.UnregisterRequest buildParsed()
-          throws com.google.protobuf.InvalidProtocolBufferException {
-        com.google.nigori.common.NigoriMessages.UnregisterRequest result = buildPartial();
-        if (!result.isInitialized()) {
-          throw newUninitializedMessageException(
-            result).asInvalidProtocolBufferException();
-        }
-        return result;
-      }
-      
+
       public com.google.nigori.common.NigoriMessages.UnregisterRequest buildPartial() {
         com.google.nigori.common.NigoriMessages.UnregisterRequest result = new com.google.nigori.common.NigoriMessages.UnregisterRequest(this);
         int from_bitField0_ = bitField0_;
@@ -1277,7 +1607,7 @@ public final class NigoriMessages {
         onBuilt();
         return result;
       }
-      
+
       public Builder mergeFrom(com.google.protobuf.Message other) {
         if (other instanceof com.google.nigori.common.NigoriMessages.UnregisterRequest) {
           return mergeFrom((com.google.nigori.common.NigoriMessages.UnregisterRequest)other);
@@ -1286,7 +1616,7 @@ public final class NigoriMessages {
           return this;
         }
       }
-      
+
       public Builder mergeFrom(com.google.nigori.common.NigoriMessages.UnregisterRequest other) {
         if (other == com.google.nigori.common.NigoriMessages.UnregisterRequest.getDefaultInstance()) return this;
         if (other.hasAuth()) {
@@ -1295,7 +1625,7 @@ public final class NigoriMessages {
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
-      
+
       public final boolean isInitialized() {
         if (!hasAuth()) {
           
@@ -1307,52 +1637,39 @@ public final class NigoriMessages {
         }
         return true;
       }
-      
+
       public Builder mergeFrom(
           com.google.protobuf.CodedInputStream input,
           com.google.protobuf.ExtensionRegistryLite extensionRegistry)
           throws java.io.IOException {
-        com.google.protobuf.UnknownFieldSet.Builder unknownFields =
-          com.google.protobuf.UnknownFieldSet.newBuilder(
-            this.getUnknownFields());
-        while (true) {
-          int tag = input.readTag();
-          switch (tag) {
-            case 0:
-              this.setUnknownFields(unknownFields.build());
-              onChanged();
-              return this;
-            default: {
-              if (!parseUnknownField(input, unknownFields,
-                                     extensionRegistry, tag)) {
-                this.setUnknownFields(unknownFields.build());
-                onChanged();
-                return this;
-              }
-              break;
-            }
-            case 10: {
-              com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder subBuilder = com.google.nigori.common.NigoriMessages.AuthenticateRequest.newBuilder();
-              if (hasAuth()) {
-                subBuilder.mergeFrom(getAuth());
-              }
-              input.readMessage(subBuilder, extensionRegistry);
-              setAuth(subBuilder.buildPartial());
-              break;
-            }
+        com.google.nigori.common.NigoriMessages.UnregisterRequest parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (com.google.nigori.common.NigoriMessages.UnregisterRequest) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
           }
         }
+        return this;
       }
-      
       private int bitField0_;
-      
+
       // required .nigori.AuthenticateRequest auth = 1;
       private com.google.nigori.common.NigoriMessages.AuthenticateRequest auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
       private com.google.protobuf.SingleFieldBuilder<
           com.google.nigori.common.NigoriMessages.AuthenticateRequest, com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder, com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder> authBuilder_;
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public boolean hasAuth() {
         return ((bitField0_ & 0x00000001) == 0x00000001);
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth() {
         if (authBuilder_ == null) {
           return auth_;
@@ -1360,6 +1677,9 @@ public final class NigoriMessages {
           return authBuilder_.getMessage();
         }
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public Builder setAuth(com.google.nigori.common.NigoriMessages.AuthenticateRequest value) {
         if (authBuilder_ == null) {
           if (value == null) {
@@ -1373,6 +1693,9 @@ public final class NigoriMessages {
         bitField0_ |= 0x00000001;
         return this;
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public Builder setAuth(
           com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder builderForValue) {
         if (authBuilder_ == null) {
@@ -1384,6 +1707,9 @@ public final class NigoriMessages {
         bitField0_ |= 0x00000001;
         return this;
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public Builder mergeAuth(com.google.nigori.common.NigoriMessages.AuthenticateRequest value) {
         if (authBuilder_ == null) {
           if (((bitField0_ & 0x00000001) == 0x00000001) &&
@@ -1400,6 +1726,9 @@ public final class NigoriMessages {
         bitField0_ |= 0x00000001;
         return this;
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public Builder clearAuth() {
         if (authBuilder_ == null) {
           auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
@@ -1410,11 +1739,17 @@ public final class NigoriMessages {
         bitField0_ = (bitField0_ & ~0x00000001);
         return this;
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder getAuthBuilder() {
         bitField0_ |= 0x00000001;
         onChanged();
         return getAuthFieldBuilder().getBuilder();
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder() {
         if (authBuilder_ != null) {
           return authBuilder_.getMessageOrBuilder();
@@ -1422,6 +1757,9 @@ public final class NigoriMessages {
           return auth_;
         }
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       private com.google.protobuf.SingleFieldBuilder<
           com.google.nigori.common.NigoriMessages.AuthenticateRequest, com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder, com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder> 
           getAuthFieldBuilder() {
@@ -1435,78 +1773,174 @@ public final class NigoriMessages {
         }
         return authBuilder_;
       }
-      
+
       // @@protoc_insertion_point(builder_scope:nigori.UnregisterRequest)
     }
-    
+
     static {
       defaultInstance = new UnregisterRequest(true);
       defaultInstance.initFields();
     }
-    
+
     // @@protoc_insertion_point(class_scope:nigori.UnregisterRequest)
   }
-  
+
   public interface RevisionValueOrBuilder
       extends com.google.protobuf.MessageOrBuilder {
-    
+
     // required bytes revision = 1;
+    /**
+     * <code>required bytes revision = 1;</code>
+     */
     boolean hasRevision();
+    /**
+     * <code>required bytes revision = 1;</code>
+     */
     com.google.protobuf.ByteString getRevision();
-    
+
     // required bytes value = 2;
+    /**
+     * <code>required bytes value = 2;</code>
+     */
     boolean hasValue();
+    /**
+     * <code>required bytes value = 2;</code>
+     */
     com.google.protobuf.ByteString getValue();
   }
+  /**
+   * Protobuf type {@code nigori.RevisionValue}
+   */
   public static final class RevisionValue extends
       com.google.protobuf.GeneratedMessage
       implements RevisionValueOrBuilder {
     // Use RevisionValue.newBuilder() to construct.
-    private RevisionValue(Builder builder) {
+    private RevisionValue(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
       super(builder);
+      this.unknownFields = builder.getUnknownFields();
     }
-    private RevisionValue(boolean noInit) {}
-    
+    private RevisionValue(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
     private static final RevisionValue defaultInstance;
     public static RevisionValue getDefaultInstance() {
       return defaultInstance;
     }
-    
+
     public RevisionValue getDefaultInstanceForType() {
       return defaultInstance;
     }
-    
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private RevisionValue(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 10: {
+              bitField0_ |= 0x00000001;
+              revision_ = input.readBytes();
+              break;
+            }
+            case 18: {
+              bitField0_ |= 0x00000002;
+              value_ = input.readBytes();
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
     public static final com.google.protobuf.Descriptors.Descriptor
         getDescriptor() {
       return com.google.nigori.common.NigoriMessages.internal_static_nigori_RevisionValue_descriptor;
     }
-    
+
     protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
         internalGetFieldAccessorTable() {
-      return com.google.nigori.common.NigoriMessages.internal_static_nigori_RevisionValue_fieldAccessorTable;
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_RevisionValue_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              com.google.nigori.common.NigoriMessages.RevisionValue.class, com.google.nigori.common.NigoriMessages.RevisionValue.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<RevisionValue> PARSER =
+        new com.google.protobuf.AbstractParser<RevisionValue>() {
+      public RevisionValue parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new RevisionValue(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<RevisionValue> getParserForType() {
+      return PARSER;
     }
-    
+
     private int bitField0_;
     // required bytes revision = 1;
     public static final int REVISION_FIELD_NUMBER = 1;
     private com.google.protobuf.ByteString revision_;
+    /**
+     * <code>required bytes revision = 1;</code>
+     */
     public boolean hasRevision() {
       return ((bitField0_ & 0x00000001) == 0x00000001);
     }
+    /**
+     * <code>required bytes revision = 1;</code>
+     */
     public com.google.protobuf.ByteString getRevision() {
       return revision_;
     }
-    
+
     // required bytes value = 2;
     public static final int VALUE_FIELD_NUMBER = 2;
     private com.google.protobuf.ByteString value_;
+    /**
+     * <code>required bytes value = 2;</code>
+     */
     public boolean hasValue() {
       return ((bitField0_ & 0x00000002) == 0x00000002);
     }
+    /**
+     * <code>required bytes value = 2;</code>
+     */
     public com.google.protobuf.ByteString getValue() {
       return value_;
     }
-    
+
     private void initFields() {
       revision_ = com.google.protobuf.ByteString.EMPTY;
       value_ = com.google.protobuf.ByteString.EMPTY;
@@ -1515,7 +1949,7 @@ public final class NigoriMessages {
     public final boolean isInitialized() {
       byte isInitialized = memoizedIsInitialized;
       if (isInitialized != -1) return isInitialized == 1;
-      
+
       if (!hasRevision()) {
         memoizedIsInitialized = 0;
         return false;
@@ -1527,7 +1961,7 @@ public final class NigoriMessages {
       memoizedIsInitialized = 1;
       return true;
     }
-    
+
     public void writeTo(com.google.protobuf.CodedOutputStream output)
                         throws java.io.IOException {
       getSerializedSize();
@@ -1539,12 +1973,12 @@ public final class NigoriMessages {
       }
       getUnknownFields().writeTo(output);
     }
-    
+
     private int memoizedSerializedSize = -1;
     public int getSerializedSize() {
       int size = memoizedSerializedSize;
       if (size != -1) return size;
-    
+
       size = 0;
       if (((bitField0_ & 0x00000001) == 0x00000001)) {
         size += com.google.protobuf.CodedOutputStream
@@ -1558,92 +1992,83 @@ public final class NigoriMessages {
       memoizedSerializedSize = size;
       return size;
     }
-    
+
+    private static final long serialVersionUID = 0L;
     @java.lang.Override
-    protected Object writeReplace() throws java.io.ObjectStreamException {
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
       return super.writeReplace();
     }
-    
+
     public static com.google.nigori.common.NigoriMessages.RevisionValue parseFrom(
         com.google.protobuf.ByteString data)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data).buildParsed();
+      return PARSER.parseFrom(data);
     }
     public static com.google.nigori.common.NigoriMessages.RevisionValue parseFrom(
         com.google.protobuf.ByteString data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(data, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.RevisionValue parseFrom(byte[] data)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data).buildParsed();
+      return PARSER.parseFrom(data);
     }
     public static com.google.nigori.common.NigoriMessages.RevisionValue parseFrom(
         byte[] data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(data, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.RevisionValue parseFrom(java.io.InputStream input)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input).buildParsed();
+      return PARSER.parseFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.RevisionValue parseFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(input, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.RevisionValue parseDelimitedFrom(java.io.InputStream input)
         throws java.io.IOException {
-      Builder builder = newBuilder();
-      if (builder.mergeDelimitedFrom(input)) {
-        return builder.buildParsed();
-      } else {
-        return null;
-      }
+      return PARSER.parseDelimitedFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.RevisionValue parseDelimitedFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      Builder builder = newBuilder();
-      if (builder.mergeDelimitedFrom(input, extensionRegistry)) {
-        return builder.buildParsed();
-      } else {
-        return null;
-      }
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.RevisionValue parseFrom(
         com.google.protobuf.CodedInputStream input)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input).buildParsed();
+      return PARSER.parseFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.RevisionValue parseFrom(
         com.google.protobuf.CodedInputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(input, extensionRegistry);
     }
-    
+
     public static Builder newBuilder() { return Builder.create(); }
     public Builder newBuilderForType() { return newBuilder(); }
     public static Builder newBuilder(com.google.nigori.common.NigoriMessages.RevisionValue prototype) {
       return newBuilder().mergeFrom(prototype);
     }
     public Builder toBuilder() { return newBuilder(this); }
-    
+
     @java.lang.Override
     protected Builder newBuilderForType(
         com.google.protobuf.GeneratedMessage.BuilderParent parent) {
       Builder builder = new Builder(parent);
       return builder;
     }
+    /**
+     * Protobuf type {@code nigori.RevisionValue}
+     */
     public static final class Builder extends
         com.google.protobuf.GeneratedMessage.Builder<Builder>
        implements com.google.nigori.common.NigoriMessages.RevisionValueOrBuilder {
@@ -1651,18 +2076,21 @@ public final class NigoriMessages {
           getDescriptor() {
         return com.google.nigori.common.NigoriMessages.internal_static_nigori_RevisionValue_descriptor;
       }
-      
+
       protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
           internalGetFieldAccessorTable() {
-        return com.google.nigori.common.NigoriMessages.internal_static_nigori_RevisionValue_fieldAccessorTable;
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_RevisionValue_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                com.google.nigori.common.NigoriMessages.RevisionValue.class, com.google.nigori.common.NigoriMessages.RevisionValue.Builder.class);
       }
-      
+
       // Construct using com.google.nigori.common.NigoriMessages.RevisionValue.newBuilder()
       private Builder() {
         maybeForceBuilderInitialization();
       }
-      
-      private Builder(BuilderParent parent) {
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
         super(parent);
         maybeForceBuilderInitialization();
       }
@@ -1673,7 +2101,7 @@ public final class NigoriMessages {
       private static Builder create() {
         return new Builder();
       }
-      
+
       public Builder clear() {
         super.clear();
         revision_ = com.google.protobuf.ByteString.EMPTY;
@@ -1682,20 +2110,20 @@ public final class NigoriMessages {
         bitField0_ = (bitField0_ & ~0x00000002);
         return this;
       }
-      
+
       public Builder clone() {
         return create().mergeFrom(buildPartial());
       }
-      
+
       public com.google.protobuf.Descriptors.Descriptor
           getDescriptorForType() {
-        return com.google.nigori.common.NigoriMessages.RevisionValue.getDescriptor();
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_RevisionValue_descriptor;
       }
-      
+
       public com.google.nigori.common.NigoriMessages.RevisionValue getDefaultInstanceForType() {
         return com.google.nigori.common.NigoriMessages.RevisionValue.getDefaultInstance();
       }
-      
+
       public com.google.nigori.common.NigoriMessages.RevisionValue build() {
         com.google.nigori.common.NigoriMessages.RevisionValue result = buildPartial();
         if (!result.isInitialized()) {
@@ -1703,17 +2131,7 @@ public final class NigoriMessages {
         }
         return result;
       }
-      
-      private com.google.nigori.common.NigoriMessages.RevisionValue buildParsed()
-          throws com.google.protobuf.InvalidProtocolBufferException {
-        com.google.nigori.common.NigoriMessages.RevisionValue result = buildPartial();
-        if (!result.isInitialized()) {
-          throw newUninitializedMessageException(
-            result).asInvalidProtocolBufferException();
-        }
-        return result;
-      }
-      
+
       public com.google.nigori.common.NigoriMessages.RevisionValue buildPartial() {
         com.google.nigori.common.NigoriMessages.RevisionValue result = new com.google.nigori.common.NigoriMessages.RevisionValue(this);
         int from_bitField0_ = bitField0_;
@@ -1730,7 +2148,7 @@ public final class NigoriMessages {
         onBuilt();
         return result;
       }
-      
+
       public Builder mergeFrom(com.google.protobuf.Message other) {
         if (other instanceof com.google.nigori.common.NigoriMessages.RevisionValue) {
           return mergeFrom((com.google.nigori.common.NigoriMessages.RevisionValue)other);
@@ -1739,7 +2157,7 @@ public final class NigoriMessages {
           return this;
         }
       }
-      
+
       public Builder mergeFrom(com.google.nigori.common.NigoriMessages.RevisionValue other) {
         if (other == com.google.nigori.common.NigoriMessages.RevisionValue.getDefaultInstance()) return this;
         if (other.hasRevision()) {
@@ -1751,7 +2169,7 @@ public final class NigoriMessages {
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
-      
+
       public final boolean isInitialized() {
         if (!hasRevision()) {
           
@@ -1763,54 +2181,43 @@ public final class NigoriMessages {
         }
         return true;
       }
-      
+
       public Builder mergeFrom(
           com.google.protobuf.CodedInputStream input,
           com.google.protobuf.ExtensionRegistryLite extensionRegistry)
           throws java.io.IOException {
-        com.google.protobuf.UnknownFieldSet.Builder unknownFields =
-          com.google.protobuf.UnknownFieldSet.newBuilder(
-            this.getUnknownFields());
-        while (true) {
-          int tag = input.readTag();
-          switch (tag) {
-            case 0:
-              this.setUnknownFields(unknownFields.build());
-              onChanged();
-              return this;
-            default: {
-              if (!parseUnknownField(input, unknownFields,
-                                     extensionRegistry, tag)) {
-                this.setUnknownFields(unknownFields.build());
-                onChanged();
-                return this;
-              }
-              break;
-            }
-            case 10: {
-              bitField0_ |= 0x00000001;
-              revision_ = input.readBytes();
-              break;
-            }
-            case 18: {
-              bitField0_ |= 0x00000002;
-              value_ = input.readBytes();
-              break;
-            }
+        com.google.nigori.common.NigoriMessages.RevisionValue parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (com.google.nigori.common.NigoriMessages.RevisionValue) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
           }
         }
+        return this;
       }
-      
       private int bitField0_;
-      
+
       // required bytes revision = 1;
       private com.google.protobuf.ByteString revision_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>required bytes revision = 1;</code>
+       */
       public boolean hasRevision() {
         return ((bitField0_ & 0x00000001) == 0x00000001);
       }
+      /**
+       * <code>required bytes revision = 1;</code>
+       */
       public com.google.protobuf.ByteString getRevision() {
         return revision_;
       }
+      /**
+       * <code>required bytes revision = 1;</code>
+       */
       public Builder setRevision(com.google.protobuf.ByteString value) {
         if (value == null) {
     throw new NullPointerException();
@@ -1820,21 +2227,33 @@ public final class NigoriMessages {
         onChanged();
         return this;
       }
+      /**
+       * <code>required bytes revision = 1;</code>
+       */
       public Builder clearRevision() {
         bitField0_ = (bitField0_ & ~0x00000001);
         revision_ = getDefaultInstance().getRevision();
         onChanged();
         return this;
       }
-      
+
       // required bytes value = 2;
       private com.google.protobuf.ByteString value_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>required bytes value = 2;</code>
+       */
       public boolean hasValue() {
         return ((bitField0_ & 0x00000002) == 0x00000002);
       }
+      /**
+       * <code>required bytes value = 2;</code>
+       */
       public com.google.protobuf.ByteString getValue() {
         return value_;
       }
+      /**
+       * <code>required bytes value = 2;</code>
+       */
       public Builder setValue(com.google.protobuf.ByteString value) {
         if (value == null) {
     throw new NullPointerException();
@@ -1844,112 +2263,329 @@ public final class NigoriMessages {
         onChanged();
         return this;
       }
+      /**
+       * <code>required bytes value = 2;</code>
+       */
       public Builder clearValue() {
         bitField0_ = (bitField0_ & ~0x00000002);
         value_ = getDefaultInstance().getValue();
         onChanged();
         return this;
       }
-      
+
       // @@protoc_insertion_point(builder_scope:nigori.RevisionValue)
     }
-    
+
     static {
       defaultInstance = new RevisionValue(true);
       defaultInstance.initFields();
     }
-    
+
     // @@protoc_insertion_point(class_scope:nigori.RevisionValue)
   }
-  
+
   public interface GetRequestOrBuilder
       extends com.google.protobuf.MessageOrBuilder {
-    
+
     // required .nigori.AuthenticateRequest auth = 1;
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     boolean hasAuth();
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth();
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder();
-    
+
     // required bytes key = 2;
+    /**
+     * <code>required bytes key = 2;</code>
+     */
     boolean hasKey();
+    /**
+     * <code>required bytes key = 2;</code>
+     */
     com.google.protobuf.ByteString getKey();
-    
+
     // optional bytes revision = 3;
+    /**
+     * <code>optional bytes revision = 3;</code>
+     */
     boolean hasRevision();
+    /**
+     * <code>optional bytes revision = 3;</code>
+     */
     com.google.protobuf.ByteString getRevision();
+
+    // optional bytes fingerprint = 4;
+    /**
+     * <code>optional bytes fingerprint = 4;</code>
+     */
+    boolean hasFingerprint();
+    /**
+     * <code>optional bytes fingerprint = 4;</code>
+     */
+    com.google.protobuf.ByteString getFingerprint();
+
+    // repeated bytes revisions = 5;
+    /**
+     * <code>repeated bytes revisions = 5;</code>
+     */
+    java.util.List<com.google.protobuf.ByteString> getRevisionsList();
+    /**
+     * <code>repeated bytes revisions = 5;</code>
+     */
+    int getRevisionsCount();
+    /**
+     * <code>repeated bytes revisions = 5;</code>
+     */
+    com.google.protobuf.ByteString getRevisions(int index);
   }
+  /**
+   * Protobuf type {@code nigori.GetRequest}
+   *
+   * <pre>
+   * fingerprint is the fingerprint from an earlier response for the key, if the key's revisions are
+   * still the same the response has not_modified set and none of the revisions.
+   * revisions asks for several revisions at once, the response has those which exist.
+   * </pre>
+   */
   public static final class GetRequest extends
       com.google.protobuf.GeneratedMessage
       implements GetRequestOrBuilder {
     // Use GetRequest.newBuilder() to construct.
-    private GetRequest(Builder builder) {
+    private GetRequest(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
       super(builder);
+      this.unknownFields = builder.getUnknownFields();
     }
-    private GetRequest(boolean noInit) {}
-    
+    private GetRequest(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
     private static final GetRequest defaultInstance;
     public static GetRequest getDefaultInstance() {
       return defaultInstance;
     }
-    
+
     public GetRequest getDefaultInstanceForType() {
       return defaultInstance;
     }
-    
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private GetRequest(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 10: {
+              com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder subBuilder = null;
+              if (((bitField0_ & 0x00000001) == 0x00000001)) {
+                subBuilder = auth_.toBuilder();
+              }
+              auth_ = input.readMessage(com.google.nigori.common.NigoriMessages.AuthenticateRequest.PARSER, extensionRegistry);
+              if (subBuilder != null) {
+                subBuilder.mergeFrom(auth_);
+                auth_ = subBuilder.buildPartial();
+              }
+              bitField0_ |= 0x00000001;
+              break;
+            }
+            case 18: {
+              bitField0_ |= 0x00000002;
+              key_ = input.readBytes();
+              break;
+            }
+            case 26: {
+              bitField0_ |= 0x00000004;
+              revision_ = input.readBytes();
+              break;
+            }
+            case 34: {
+              bitField0_ |= 0x00000008;
+              fingerprint_ = input.readBytes();
+              break;
+            }
+            case 42: {
+              if (!((mutable_bitField0_ & 0x00000010) == 0x00000010)) {
+                revisions_ = new java.util.ArrayList<com.google.protobuf.ByteString>();
+                mutable_bitField0_ |= 0x00000010;
+              }
+              revisions_.add(input.readBytes());
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        if (((mutable_bitField0_ & 0x00000010) == 0x00000010)) {
+          revisions_ = java.util.Collections.unmodifiableList(revisions_);
+        }
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
     public static final com.google.protobuf.Descriptors.Descriptor
         getDescriptor() {
       return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetRequest_descriptor;
     }
-    
+
     protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
         internalGetFieldAccessorTable() {
-      return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetRequest_fieldAccessorTable;
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetRequest_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              com.google.nigori.common.NigoriMessages.GetRequest.class, com.google.nigori.common.NigoriMessages.GetRequest.Builder.class);
     }
-    
-    private int bitField0_;
-    // required .nigori.AuthenticateRequest auth = 1;
+
+    public static com.google.protobuf.Parser<GetRequest> PARSER =
+        new com.google.protobuf.AbstractParser<GetRequest>() {
+      public GetRequest parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new GetRequest(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<GetRequest> getParserForType() {
+      return PARSER;
+    }
+
+    private int bitField0_;
+    // required .nigori.AuthenticateRequest auth = 1;
     public static final int AUTH_FIELD_NUMBER = 1;
     private com.google.nigori.common.NigoriMessages.AuthenticateRequest auth_;
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     public boolean hasAuth() {
       return ((bitField0_ & 0x00000001) == 0x00000001);
     }
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     public com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth() {
       return auth_;
     }
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     public com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder() {
       return auth_;
     }
-    
+
     // required bytes key = 2;
     public static final int KEY_FIELD_NUMBER = 2;
     private com.google.protobuf.ByteString key_;
+    /**
+     * <code>required bytes key = 2;</code>
+     */
     public boolean hasKey() {
       return ((bitField0_ & 0x00000002) == 0x00000002);
     }
+    /**
+     * <code>required bytes key = 2;</code>
+     */
     public com.google.protobuf.ByteString getKey() {
       return key_;
     }
-    
+
     // optional bytes revision = 3;
     public static final int REVISION_FIELD_NUMBER = 3;
     private com.google.protobuf.ByteString revision_;
+    /**
+     * <code>optional bytes revision = 3;</code>
+     */
     public boolean hasRevision() {
       return ((bitField0_ & 0x00000004) == 0x00000004);
     }
+    /**
+     * <code>optional bytes revision = 3;</code>
+     */
     public com.google.protobuf.ByteString getRevision() {
       return revision_;
     }
-    
+
+    // optional bytes fingerprint = 4;
+    public static final int FINGERPRINT_FIELD_NUMBER = 4;
+    private com.google.protobuf.ByteString fingerprint_;
+    /**
+     * <code>optional bytes fingerprint = 4;</code>
+     */
+    public boolean hasFingerprint() {
+      return ((bitField0_ & 0x00000008) == 0x00000008);
+    }
+    /**
+     * <code>optional bytes fingerprint = 4;</code>
+     */
+    public com.google.protobuf.ByteString getFingerprint() {
+      return fingerprint_;
+    }
+
+    // repeated bytes revisions = 5;
+    public static final int REVISIONS_FIELD_NUMBER = 5;
+    private java.util.List<com.google.protobuf.ByteString> revisions_;
+    /**
+     * <code>repeated bytes revisions = 5;</code>
+     */
+    public java.util.List<com.google.protobuf.ByteString>
+        getRevisionsList() {
+      return revisions_;
+    }
+    /**
+     * <code>repeated bytes revisions = 5;</code>
+     */
+    public int getRevisionsCount() {
+      return revisions_.size();
+    }
+    /**
+     * <code>repeated bytes revisions = 5;</code>
+     */
+    public com.google.protobuf.ByteString getRevisions(int index) {
+      return revisions_.get(index);
+    }
+
     private void initFields() {
       auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
       key_ = com.google.protobuf.ByteString.EMPTY;
       revision_ = com.google.protobuf.ByteString.EMPTY;
+      fingerprint_ = com.google.protobuf.ByteString.EMPTY;
+      revisions_ = java.util.Collections.emptyList();
     }
     private byte memoizedIsInitialized = -1;
     public final boolean isInitialized() {
       byte isInitialized = memoizedIsInitialized;
       if (isInitialized != -1) return isInitialized == 1;
-      
+
       if (!hasAuth()) {
         memoizedIsInitialized = 0;
         return false;
@@ -1965,7 +2601,7 @@ public final class NigoriMessages {
       memoizedIsInitialized = 1;
       return true;
     }
-    
+
     public void writeTo(com.google.protobuf.CodedOutputStream output)
                         throws java.io.IOException {
       getSerializedSize();
@@ -1978,14 +2614,20 @@ public final class NigoriMessages {
       if (((bitField0_ & 0x00000004) == 0x00000004)) {
         output.writeBytes(3, revision_);
       }
+      if (((bitField0_ & 0x00000008) == 0x00000008)) {
+        output.writeBytes(4, fingerprint_);
+      }
+      for (int i = 0; i < revisions_.size(); i++) {
+        output.writeBytes(5, revisions_.get(i));
+      }
       getUnknownFields().writeTo(output);
     }
-    
+
     private int memoizedSerializedSize = -1;
     public int getSerializedSize() {
       int size = memoizedSerializedSize;
       if (size != -1) return size;
-    
+
       size = 0;
       if (((bitField0_ & 0x00000001) == 0x00000001)) {
         size += com.google.protobuf.CodedOutputStream
@@ -1999,96 +2641,106 @@ public final class NigoriMessages {
         size += com.google.protobuf.CodedOutputStream
           .computeBytesSize(3, revision_);
       }
+      if (((bitField0_ & 0x00000008) == 0x00000008)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(4, fingerprint_);
+      }
+      {
+        int dataSize = 0;
+        for (int i = 0; i < revisions_.size(); i++) {
+          dataSize += com.google.protobuf.CodedOutputStream
+            .computeBytesSizeNoTag(revisions_.get(i));
+        }
+        size += dataSize;
+        size += 1 * getRevisionsList().size();
+      }
       size += getUnknownFields().getSerializedSize();
       memoizedSerializedSize = size;
       return size;
     }
-    
+
+    private static final long serialVersionUID = 0L;
     @java.lang.Override
-    protected Object writeReplace() throws java.io.ObjectStreamException {
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
       return super.writeReplace();
     }
-    
+
     public static com.google.nigori.common.NigoriMessages.GetRequest parseFrom(
         com.google.protobuf.ByteString data)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data).buildParsed();
+      return PARSER.parseFrom(data);
     }
     public static com.google.nigori.common.NigoriMessages.GetRequest parseFrom(
         com.google.protobuf.ByteString data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(data, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.GetRequest parseFrom(byte[] data)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data).buildParsed();
+      return PARSER.parseFrom(data);
     }
     public static com.google.nigori.common.NigoriMessages.GetRequest parseFrom(
         byte[] data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(data, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.GetRequest parseFrom(java.io.InputStream input)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input).buildParsed();
+      return PARSER.parseFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.GetRequest parseFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(input, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.GetRequest parseDelimitedFrom(java.io.InputStream input)
         throws java.io.IOException {
-      Builder builder = newBuilder();
-      if (builder.mergeDelimitedFrom(input)) {
-        return builder.buildParsed();
-      } else {
-        return null;
-      }
+      return PARSER.parseDelimitedFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.GetRequest parseDelimitedFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      Builder builder = newBuilder();
-      if (builder.mergeDelimitedFrom(input, extensionRegistry)) {
-        return builder.buildParsed();
-      } else {
-        return null;
-      }
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.GetRequest parseFrom(
         com.google.protobuf.CodedInputStream input)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input).buildParsed();
+      return PARSER.parseFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.GetRequest parseFrom(
         com.google.protobuf.CodedInputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(input, extensionRegistry);
     }
-    
+
     public static Builder newBuilder() { return Builder.create(); }
     public Builder newBuilderForType() { return newBuilder(); }
     public static Builder newBuilder(com.google.nigori.common.NigoriMessages.GetRequest prototype) {
       return newBuilder().mergeFrom(prototype);
     }
     public Builder toBuilder() { return newBuilder(this); }
-    
+
     @java.lang.Override
     protected Builder newBuilderForType(
         com.google.protobuf.GeneratedMessage.BuilderParent parent) {
       Builder builder = new Builder(parent);
       return builder;
     }
+    /**
+     * Protobuf type {@code nigori.GetRequest}
+     *
+     * <pre>
+     * fingerprint is the fingerprint from an earlier response for the key, if the key's revisions are
+     * still the same the response has not_modified set and none of the revisions.
+     * revisions asks for several revisions at once, the response has those which exist.
+     * </pre>
+     */
     public static final class Builder extends
         com.google.protobuf.GeneratedMessage.Builder<Builder>
        implements com.google.nigori.common.NigoriMessages.GetRequestOrBuilder {
@@ -2096,18 +2748,21 @@ public final class NigoriMessages {
           getDescriptor() {
         return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetRequest_descriptor;
       }
-      
+
       protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
           internalGetFieldAccessorTable() {
-        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetRequest_fieldAccessorTable;
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetRequest_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                com.google.nigori.common.NigoriMessages.GetRequest.class, com.google.nigori.common.NigoriMessages.GetRequest.Builder.class);
       }
-      
+
       // Construct using com.google.nigori.common.NigoriMessages.GetRequest.newBuilder()
       private Builder() {
         maybeForceBuilderInitialization();
       }
-      
-      private Builder(BuilderParent parent) {
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
         super(parent);
         maybeForceBuilderInitialization();
       }
@@ -2119,7 +2774,7 @@ public final class NigoriMessages {
       private static Builder create() {
         return new Builder();
       }
-      
+
       public Builder clear() {
         super.clear();
         if (authBuilder_ == null) {
@@ -2132,22 +2787,26 @@ public final class NigoriMessages {
         bitField0_ = (bitField0_ & ~0x00000002);
         revision_ = com.google.protobuf.ByteString.EMPTY;
         bitField0_ = (bitField0_ & ~0x00000004);
+        fingerprint_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000008);
+        revisions_ = java.util.Collections.emptyList();
+        bitField0_ = (bitField0_ & ~0x00000010);
         return this;
       }
-      
+
       public Builder clone() {
         return create().mergeFrom(buildPartial());
       }
-      
+
       public com.google.protobuf.Descriptors.Descriptor
           getDescriptorForType() {
-        return com.google.nigori.common.NigoriMessages.GetRequest.getDescriptor();
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetRequest_descriptor;
       }
-      
+
       public com.google.nigori.common.NigoriMessages.GetRequest getDefaultInstanceForType() {
         return com.google.nigori.common.NigoriMessages.GetRequest.getDefaultInstance();
       }
-      
+
       public com.google.nigori.common.NigoriMessages.GetRequest build() {
         com.google.nigori.common.NigoriMessages.GetRequest result = buildPartial();
         if (!result.isInitialized()) {
@@ -2155,17 +2814,7 @@ public final class NigoriMessages {
         }
         return result;
       }
-      
-      private com.google.nigori.common.NigoriMessages.GetRequest buildParsed()
-          throws com.google.protobuf.InvalidProtocolBufferException {
-        com.google.nigori.common.NigoriMessages.GetRequest result = buildPartial();
-        if (!result.isInitialized()) {
-          throw newUninitializedMessageException(
-            result).asInvalidProtocolBufferException();
-        }
-        return result;
-      }
-      
+
       public com.google.nigori.common.NigoriMessages.GetRequest buildPartial() {
         com.google.nigori.common.NigoriMessages.GetRequest result = new com.google.nigori.common.NigoriMessages.GetRequest(this);
         int from_bitField0_ = bitField0_;
@@ -2186,11 +2835,20 @@ public final class NigoriMessages {
           to_bitField0_ |= 0x00000004;
         }
         result.revision_ = revision_;
+        if (((from_bitField0_ & 0x00000008) == 0x00000008)) {
+          to_bitField0_ |= 0x00000008;
+        }
+        result.fingerprint_ = fingerprint_;
+        if (((bitField0_ & 0x00000010) == 0x00000010)) {
+          revisions_ = java.util.Collections.unmodifiableList(revisions_);
+          bitField0_ = (bitField0_ & ~0x00000010);
+        }
+        result.revisions_ = revisions_;
         result.bitField0_ = to_bitField0_;
         onBuilt();
         return result;
       }
-      
+
       public Builder mergeFrom(com.google.protobuf.Message other) {
         if (other instanceof com.google.nigori.common.NigoriMessages.GetRequest) {
           return mergeFrom((com.google.nigori.common.NigoriMessages.GetRequest)other);
@@ -2199,7 +2857,7 @@ public final class NigoriMessages {
           return this;
         }
       }
-      
+
       public Builder mergeFrom(com.google.nigori.common.NigoriMessages.GetRequest other) {
         if (other == com.google.nigori.common.NigoriMessages.GetRequest.getDefaultInstance()) return this;
         if (other.hasAuth()) {
@@ -2211,10 +2869,23 @@ public final class NigoriMessages {
         if (other.hasRevision()) {
           setRevision(other.getRevision());
         }
+        if (other.hasFingerprint()) {
+          setFingerprint(other.getFingerprint());
+        }
+        if (!other.revisions_.isEmpty()) {
+          if (revisions_.isEmpty()) {
+            revisions_ = other.revisions_;
+            bitField0_ = (bitField0_ & ~0x00000010);
+          } else {
+            ensureRevisionsIsMutable();
+            revisions_.addAll(other.revisions_);
+          }
+          onChanged();
+        }
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
-      
+
       public final boolean isInitialized() {
         if (!hasAuth()) {
           
@@ -2230,62 +2901,39 @@ public final class NigoriMessages {
         }
         return true;
       }
-      
+
       public Builder mergeFrom(
           com.google.protobuf.CodedInputStream input,
           com.google.protobuf.ExtensionRegistryLite extensionRegistry)
           throws java.io.IOException {
-        com.google.protobuf.UnknownFieldSet.Builder unknownFields =
-          com.google.protobuf.UnknownFieldSet.newBuilder(
-            this.getUnknownFields());
-        while (true) {
-          int tag = input.readTag();
-          switch (tag) {
-            case 0:
-              this.setUnknownFields(unknownFields.build());
-              onChanged();
-              return this;
-            default: {
-              if (!parseUnknownField(input, unknownFields,
-                                     extensionRegistry, tag)) {
-                this.setUnknownFields(unknownFields.build());
-                onChanged();
-                return this;
-              }
-              break;
-            }
-            case 10: {
-              com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder subBuilder = com.google.nigori.common.NigoriMessages.AuthenticateRequest.newBuilder();
-              if (hasAuth()) {
-                subBuilder.mergeFrom(getAuth());
-              }
-              input.readMessage(subBuilder, extensionRegistry);
-              setAuth(subBuilder.buildPartial());
-              break;
-            }
-            case 18: {
-              bitField0_ |= 0x00000002;
-              key_ = input.readBytes();
-              break;
-            }
-            case 26: {
-              bitField0_ |= 0x00000004;
-              revision_ = input.readBytes();
-              break;
-            }
+        com.google.nigori.common.NigoriMessages.GetRequest parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (com.google.nigori.common.NigoriMessages.GetRequest) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
           }
         }
+        return this;
       }
-      
       private int bitField0_;
-      
+
       // required .nigori.AuthenticateRequest auth = 1;
       private com.google.nigori.common.NigoriMessages.AuthenticateRequest auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
       private com.google.protobuf.SingleFieldBuilder<
           com.google.nigori.common.NigoriMessages.AuthenticateRequest, com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder, com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder> authBuilder_;
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public boolean hasAuth() {
         return ((bitField0_ & 0x00000001) == 0x00000001);
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth() {
         if (authBuilder_ == null) {
           return auth_;
@@ -2293,6 +2941,9 @@ public final class NigoriMessages {
           return authBuilder_.getMessage();
         }
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public Builder setAuth(com.google.nigori.common.NigoriMessages.AuthenticateRequest value) {
         if (authBuilder_ == null) {
           if (value == null) {
@@ -2306,6 +2957,9 @@ public final class NigoriMessages {
         bitField0_ |= 0x00000001;
         return this;
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public Builder setAuth(
           com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder builderForValue) {
         if (authBuilder_ == null) {
@@ -2317,6 +2971,9 @@ public final class NigoriMessages {
         bitField0_ |= 0x00000001;
         return this;
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public Builder mergeAuth(com.google.nigori.common.NigoriMessages.AuthenticateRequest value) {
         if (authBuilder_ == null) {
           if (((bitField0_ & 0x00000001) == 0x00000001) &&
@@ -2333,6 +2990,9 @@ public final class NigoriMessages {
         bitField0_ |= 0x00000001;
         return this;
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public Builder clearAuth() {
         if (authBuilder_ == null) {
           auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
@@ -2343,11 +3003,17 @@ public final class NigoriMessages {
         bitField0_ = (bitField0_ & ~0x00000001);
         return this;
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder getAuthBuilder() {
         bitField0_ |= 0x00000001;
         onChanged();
         return getAuthFieldBuilder().getBuilder();
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder() {
         if (authBuilder_ != null) {
           return authBuilder_.getMessageOrBuilder();
@@ -2355,6 +3021,9 @@ public final class NigoriMessages {
           return auth_;
         }
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       private com.google.protobuf.SingleFieldBuilder<
           com.google.nigori.common.NigoriMessages.AuthenticateRequest, com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder, com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder> 
           getAuthFieldBuilder() {
@@ -2368,15 +3037,24 @@ public final class NigoriMessages {
         }
         return authBuilder_;
       }
-      
+
       // required bytes key = 2;
       private com.google.protobuf.ByteString key_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>required bytes key = 2;</code>
+       */
       public boolean hasKey() {
         return ((bitField0_ & 0x00000002) == 0x00000002);
       }
+      /**
+       * <code>required bytes key = 2;</code>
+       */
       public com.google.protobuf.ByteString getKey() {
         return key_;
       }
+      /**
+       * <code>required bytes key = 2;</code>
+       */
       public Builder setKey(com.google.protobuf.ByteString value) {
         if (value == null) {
     throw new NullPointerException();
@@ -2386,21 +3064,33 @@ public final class NigoriMessages {
         onChanged();
         return this;
       }
+      /**
+       * <code>required bytes key = 2;</code>
+       */
       public Builder clearKey() {
         bitField0_ = (bitField0_ & ~0x00000002);
         key_ = getDefaultInstance().getKey();
         onChanged();
         return this;
       }
-      
+
       // optional bytes revision = 3;
       private com.google.protobuf.ByteString revision_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes revision = 3;</code>
+       */
       public boolean hasRevision() {
         return ((bitField0_ & 0x00000004) == 0x00000004);
       }
+      /**
+       * <code>optional bytes revision = 3;</code>
+       */
       public com.google.protobuf.ByteString getRevision() {
         return revision_;
       }
+      /**
+       * <code>optional bytes revision = 3;</code>
+       */
       public Builder setRevision(com.google.protobuf.ByteString value) {
         if (value == null) {
     throw new NullPointerException();
@@ -2410,110 +3100,437 @@ public final class NigoriMessages {
         onChanged();
         return this;
       }
+      /**
+       * <code>optional bytes revision = 3;</code>
+       */
       public Builder clearRevision() {
         bitField0_ = (bitField0_ & ~0x00000004);
         revision_ = getDefaultInstance().getRevision();
         onChanged();
         return this;
       }
-      
+
+      // optional bytes fingerprint = 4;
+      private com.google.protobuf.ByteString fingerprint_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes fingerprint = 4;</code>
+       */
+      public boolean hasFingerprint() {
+        return ((bitField0_ & 0x00000008) == 0x00000008);
+      }
+      /**
+       * <code>optional bytes fingerprint = 4;</code>
+       */
+      public com.google.protobuf.ByteString getFingerprint() {
+        return fingerprint_;
+      }
+      /**
+       * <code>optional bytes fingerprint = 4;</code>
+       */
+      public Builder setFingerprint(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000008;
+        fingerprint_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bytes fingerprint = 4;</code>
+       */
+      public Builder clearFingerprint() {
+        bitField0_ = (bitField0_ & ~0x00000008);
+        fingerprint_ = getDefaultInstance().getFingerprint();
+        onChanged();
+        return this;
+      }
+
+      // repeated bytes revisions = 5;
+      private java.util.List<com.google.protobuf.ByteString> revisions_ = java.util.Collections.emptyList();
+      private void ensureRevisionsIsMutable() {
+        if (!((bitField0_ & 0x00000010) == 0x00000010)) {
+          revisions_ = new java.util.ArrayList<com.google.protobuf.ByteString>(revisions_);
+          bitField0_ |= 0x00000010;
+         }
+      }
+      /**
+       * <code>repeated bytes revisions = 5;</code>
+       */
+      public java.util.List<com.google.protobuf.ByteString>
+          getRevisionsList() {
+        return java.util.Collections.unmodifiableList(revisions_);
+      }
+      /**
+       * <code>repeated bytes revisions = 5;</code>
+       */
+      public int getRevisionsCount() {
+        return revisions_.size();
+      }
+      /**
+       * <code>repeated bytes revisions = 5;</code>
+       */
+      public com.google.protobuf.ByteString getRevisions(int index) {
+        return revisions_.get(index);
+      }
+      /**
+       * <code>repeated bytes revisions = 5;</code>
+       */
+      public Builder setRevisions(
+          int index, com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  ensureRevisionsIsMutable();
+        revisions_.set(index, value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated bytes revisions = 5;</code>
+       */
+      public Builder addRevisions(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  ensureRevisionsIsMutable();
+        revisions_.add(value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated bytes revisions = 5;</code>
+       */
+      public Builder addAllRevisions(
+          java.lang.Iterable<? extends com.google.protobuf.ByteString> values) {
+        ensureRevisionsIsMutable();
+        super.addAll(values, revisions_);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated bytes revisions = 5;</code>
+       */
+      public Builder clearRevisions() {
+        revisions_ = java.util.Collections.emptyList();
+        bitField0_ = (bitField0_ & ~0x00000010);
+        onChanged();
+        return this;
+      }
+
       // @@protoc_insertion_point(builder_scope:nigori.GetRequest)
     }
-    
+
     static {
       defaultInstance = new GetRequest(true);
       defaultInstance.initFields();
     }
-    
+
     // @@protoc_insertion_point(class_scope:nigori.GetRequest)
   }
-  
+
   public interface GetResponseOrBuilder
       extends com.google.protobuf.MessageOrBuilder {
-    
+
     // repeated .nigori.RevisionValue revisions = 1;
+    /**
+     * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+     */
     java.util.List<com.google.nigori.common.NigoriMessages.RevisionValue> 
         getRevisionsList();
+    /**
+     * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+     */
     com.google.nigori.common.NigoriMessages.RevisionValue getRevisions(int index);
+    /**
+     * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+     */
     int getRevisionsCount();
+    /**
+     * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+     */
     java.util.List<? extends com.google.nigori.common.NigoriMessages.RevisionValueOrBuilder> 
         getRevisionsOrBuilderList();
+    /**
+     * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+     */
     com.google.nigori.common.NigoriMessages.RevisionValueOrBuilder getRevisionsOrBuilder(
         int index);
-    
+
     // optional bytes key = 2;
+    /**
+     * <code>optional bytes key = 2;</code>
+     *
+     * <pre>
+     * optional as may want to keep packet size down.
+     * </pre>
+     */
     boolean hasKey();
+    /**
+     * <code>optional bytes key = 2;</code>
+     *
+     * <pre>
+     * optional as may want to keep packet size down.
+     * </pre>
+     */
     com.google.protobuf.ByteString getKey();
+
+    // optional bytes fingerprint = 3;
+    /**
+     * <code>optional bytes fingerprint = 3;</code>
+     *
+     * <pre>
+     * of all the revisions, absent when only one was asked for
+     * </pre>
+     */
+    boolean hasFingerprint();
+    /**
+     * <code>optional bytes fingerprint = 3;</code>
+     *
+     * <pre>
+     * of all the revisions, absent when only one was asked for
+     * </pre>
+     */
+    com.google.protobuf.ByteString getFingerprint();
+
+    // optional bool not_modified = 4;
+    /**
+     * <code>optional bool not_modified = 4;</code>
+     */
+    boolean hasNotModified();
+    /**
+     * <code>optional bool not_modified = 4;</code>
+     */
+    boolean getNotModified();
   }
+  /**
+   * Protobuf type {@code nigori.GetResponse}
+   */
   public static final class GetResponse extends
       com.google.protobuf.GeneratedMessage
       implements GetResponseOrBuilder {
     // Use GetResponse.newBuilder() to construct.
-    private GetResponse(Builder builder) {
+    private GetResponse(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
       super(builder);
+      this.unknownFields = builder.getUnknownFields();
     }
-    private GetResponse(boolean noInit) {}
-    
+    private GetResponse(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
     private static final GetResponse defaultInstance;
     public static GetResponse getDefaultInstance() {
       return defaultInstance;
     }
-    
+
     public GetResponse getDefaultInstanceForType() {
       return defaultInstance;
     }
-    
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private GetResponse(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 10: {
+              if (!((mutable_bitField0_ & 0x00000001) == 0x00000001)) {
+                revisions_ = new java.util.ArrayList<com.google.nigori.common.NigoriMessages.RevisionValue>();
+                mutable_bitField0_ |= 0x00000001;
+              }
+              revisions_.add(input.readMessage(com.google.nigori.common.NigoriMessages.RevisionValue.PARSER, extensionRegistry));
+              break;
+            }
+            case 18: {
+              bitField0_ |= 0x00000001;
+              key_ = input.readBytes();
+              break;
+            }
+            case 26: {
+              bitField0_ |= 0x00000002;
+              fingerprint_ = input.readBytes();
+              break;
+            }
+            case 32: {
+              bitField0_ |= 0x00000004;
+              notModified_ = input.readBool();
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        if (((mutable_bitField0_ & 0x00000001) == 0x00000001)) {
+          revisions_ = java.util.Collections.unmodifiableList(revisions_);
+        }
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
     public static final com.google.protobuf.Descriptors.Descriptor
         getDescriptor() {
       return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetResponse_descriptor;
     }
-    
+
     protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
         internalGetFieldAccessorTable() {
-      return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetResponse_fieldAccessorTable;
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetResponse_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              com.google.nigori.common.NigoriMessages.GetResponse.class, com.google.nigori.common.NigoriMessages.GetResponse.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<GetResponse> PARSER =
+        new com.google.protobuf.AbstractParser<GetResponse>() {
+      public GetResponse parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new GetResponse(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<GetResponse> getParserForType() {
+      return PARSER;
     }
-    
+
     private int bitField0_;
     // repeated .nigori.RevisionValue revisions = 1;
     public static final int REVISIONS_FIELD_NUMBER = 1;
     private java.util.List<com.google.nigori.common.NigoriMessages.RevisionValue> revisions_;
+    /**
+     * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+     */
     public java.util.List<com.google.nigori.common.NigoriMessages.RevisionValue> getRevisionsList() {
       return revisions_;
     }
+    /**
+     * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+     */
     public java.util.List<? extends com.google.nigori.common.NigoriMessages.RevisionValueOrBuilder> 
         getRevisionsOrBuilderList() {
       return revisions_;
     }
+    /**
+     * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+     */
     public int getRevisionsCount() {
       return revisions_.size();
     }
+    /**
+     * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+     */
     public com.google.nigori.common.NigoriMessages.RevisionValue getRevisions(int index) {
       return revisions_.get(index);
     }
+    /**
+     * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+     */
     public com.google.nigori.common.NigoriMessages.RevisionValueOrBuilder getRevisionsOrBuilder(
         int index) {
       return revisions_.get(index);
     }
-    
+
     // optional bytes key = 2;
     public static final int KEY_FIELD_NUMBER = 2;
     private com.google.protobuf.ByteString key_;
+    /**
+     * <code>optional bytes key = 2;</code>
+     *
+     * <pre>
+     * optional as may want to keep packet size down.
+     * </pre>
+     */
     public boolean hasKey() {
       return ((bitField0_ & 0x00000001) == 0x00000001);
     }
+    /**
+     * <code>optional bytes key = 2;</code>
+     *
+     * <pre>
+     * optional as may want to keep packet size down.
+     * </pre>
+     */
     public com.google.protobuf.ByteString getKey() {
       return key_;
     }
-    
+
+    // optional bytes fingerprint = 3;
+    public static final int FINGERPRINT_FIELD_NUMBER = 3;
+    private com.google.protobuf.ByteString fingerprint_;
+    /**
+     * <code>optional bytes fingerprint = 3;</code>
+     *
+     * <pre>
+     * of all the revisions, absent when only one was asked for
+     * </pre>
+     */
+    public boolean hasFingerprint() {
+      return ((bitField0_ & 0x00000002) == 0x00000002);
+    }
+    /**
+     * <code>optional bytes fingerprint = 3;</code>
+     *
+     * <pre>
+     * of all the revisions, absent when only one was asked for
+     * </pre>
+     */
+    public com.google.protobuf.ByteString getFingerprint() {
+      return fingerprint_;
+    }
+
+    // optional bool not_modified = 4;
+    public static final int NOT_MODIFIED_FIELD_NUMBER = 4;
+    private boolean notModified_;
+    /**
+     * <code>optional bool not_modified = 4;</code>
+     */
+    public boolean hasNotModified() {
+      return ((bitField0_ & 0x00000004) == 0x00000004);
+    }
+    /**
+     * <code>optional bool not_modified = 4;</code>
+     */
+    public boolean getNotModified() {
+      return notModified_;
+    }
+
     private void initFields() {
       revisions_ = java.util.Collections.emptyList();
       key_ = com.google.protobuf.ByteString.EMPTY;
+      fingerprint_ = com.google.protobuf.ByteString.EMPTY;
+      notModified_ = false;
     }
     private byte memoizedIsInitialized = -1;
     public final boolean isInitialized() {
       byte isInitialized = memoizedIsInitialized;
       if (isInitialized != -1) return isInitialized == 1;
-      
+
       for (int i = 0; i < getRevisionsCount(); i++) {
         if (!getRevisions(i).isInitialized()) {
           memoizedIsInitialized = 0;
@@ -2523,7 +3540,7 @@ public final class NigoriMessages {
       memoizedIsInitialized = 1;
       return true;
     }
-    
+
     public void writeTo(com.google.protobuf.CodedOutputStream output)
                         throws java.io.IOException {
       getSerializedSize();
@@ -2533,14 +3550,20 @@ public final class NigoriMessages {
       if (((bitField0_ & 0x00000001) == 0x00000001)) {
         output.writeBytes(2, key_);
       }
-      getUnknownFields().writeTo(output);
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        output.writeBytes(3, fingerprint_);
+      }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        output.writeBool(4, notModified_);
+      }
+      getUnknownFields().writeTo(output);
     }
-    
+
     private int memoizedSerializedSize = -1;
     public int getSerializedSize() {
       int size = memoizedSerializedSize;
       if (size != -1) return size;
-    
+
       size = 0;
       for (int i = 0; i < revisions_.size(); i++) {
         size += com.google.protobuf.CodedOutputStream
@@ -2550,96 +3573,95 @@ public final class NigoriMessages {
         size += com.google.protobuf.CodedOutputStream
           .computeBytesSize(2, key_);
       }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(3, fingerprint_);
+      }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBoolSize(4, notModified_);
+      }
       size += getUnknownFields().getSerializedSize();
       memoizedSerializedSize = size;
       return size;
     }
-    
+
+    private static final long serialVersionUID = 0L;
     @java.lang.Override
-    protected Object writeReplace() throws java.io.ObjectStreamException {
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
       return super.writeReplace();
     }
-    
+
     public static com.google.nigori.common.NigoriMessages.GetResponse parseFrom(
         com.google.protobuf.ByteString data)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data).buildParsed();
+      return PARSER.parseFrom(data);
     }
     public static com.google.nigori.common.NigoriMessages.GetResponse parseFrom(
         com.google.protobuf.ByteString data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(data, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.GetResponse parseFrom(byte[] data)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data).buildParsed();
+      return PARSER.parseFrom(data);
     }
     public static com.google.nigori.common.NigoriMessages.GetResponse parseFrom(
         byte[] data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(data, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.GetResponse parseFrom(java.io.InputStream input)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input).buildParsed();
+      return PARSER.parseFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.GetResponse parseFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(input, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.GetResponse parseDelimitedFrom(java.io.InputStream input)
         throws java.io.IOException {
-      Builder builder = newBuilder();
-      if (builder.mergeDelimitedFrom(input)) {
-        return builder.buildParsed();
-      } else {
-        return null;
-      }
+      return PARSER.parseDelimitedFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.GetResponse parseDelimitedFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      Builder builder = newBuilder();
-      if (builder.mergeDelimitedFrom(input, extensionRegistry)) {
-        return builder.buildParsed();
-      } else {
-        return null;
-      }
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.GetResponse parseFrom(
         com.google.protobuf.CodedInputStream input)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input).buildParsed();
+      return PARSER.parseFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.GetResponse parseFrom(
         com.google.protobuf.CodedInputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(input, extensionRegistry);
     }
-    
+
     public static Builder newBuilder() { return Builder.create(); }
     public Builder newBuilderForType() { return newBuilder(); }
     public static Builder newBuilder(com.google.nigori.common.NigoriMessages.GetResponse prototype) {
       return newBuilder().mergeFrom(prototype);
     }
     public Builder toBuilder() { return newBuilder(this); }
-    
+
     @java.lang.Override
     protected Builder newBuilderForType(
         com.google.protobuf.GeneratedMessage.BuilderParent parent) {
       Builder builder = new Builder(parent);
       return builder;
     }
+    /**
+     * Protobuf type {@code nigori.GetResponse}
+     */
     public static final class Builder extends
         com.google.protobuf.GeneratedMessage.Builder<Builder>
        implements com.google.nigori.common.NigoriMessages.GetResponseOrBuilder {
@@ -2647,18 +3669,21 @@ public final class NigoriMessages {
           getDescriptor() {
         return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetResponse_descriptor;
       }
-      
+
       protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
           internalGetFieldAccessorTable() {
-        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetResponse_fieldAccessorTable;
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetResponse_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                com.google.nigori.common.NigoriMessages.GetResponse.class, com.google.nigori.common.NigoriMessages.GetResponse.Builder.class);
       }
-      
+
       // Construct using com.google.nigori.common.NigoriMessages.GetResponse.newBuilder()
       private Builder() {
         maybeForceBuilderInitialization();
       }
-      
-      private Builder(BuilderParent parent) {
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
         super(parent);
         maybeForceBuilderInitialization();
       }
@@ -2670,7 +3695,7 @@ public final class NigoriMessages {
       private static Builder create() {
         return new Builder();
       }
-      
+
       public Builder clear() {
         super.clear();
         if (revisionsBuilder_ == null) {
@@ -2681,22 +3706,26 @@ public final class NigoriMessages {
         }
         key_ = com.google.protobuf.ByteString.EMPTY;
         bitField0_ = (bitField0_ & ~0x00000002);
+        fingerprint_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000004);
+        notModified_ = false;
+        bitField0_ = (bitField0_ & ~0x00000008);
         return this;
       }
-      
+
       public Builder clone() {
         return create().mergeFrom(buildPartial());
       }
-      
+
       public com.google.protobuf.Descriptors.Descriptor
           getDescriptorForType() {
-        return com.google.nigori.common.NigoriMessages.GetResponse.getDescriptor();
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetResponse_descriptor;
       }
-      
+
       public com.google.nigori.common.NigoriMessages.GetResponse getDefaultInstanceForType() {
         return com.google.nigori.common.NigoriMessages.GetResponse.getDefaultInstance();
       }
-      
+
       public com.google.nigori.common.NigoriMessages.GetResponse build() {
         com.google.nigori.common.NigoriMessages.GetResponse result = buildPartial();
         if (!result.isInitialized()) {
@@ -2704,17 +3733,7 @@ public final class NigoriMessages {
         }
         return result;
       }
-      
-      private com.google.nigori.common.NigoriMessages.GetResponse buildParsed()
-          throws com.google.protobuf.InvalidProtocolBufferException {
-        com.google.nigori.common.NigoriMessages.GetResponse result = buildPartial();
-        if (!result.isInitialized()) {
-          throw newUninitializedMessageException(
-            result).asInvalidProtocolBufferException();
-        }
-        return result;
-      }
-      
+
       public com.google.nigori.common.NigoriMessages.GetResponse buildPartial() {
         com.google.nigori.common.NigoriMessages.GetResponse result = new com.google.nigori.common.NigoriMessages.GetResponse(this);
         int from_bitField0_ = bitField0_;
@@ -2732,11 +3751,19 @@ public final class NigoriMessages {
           to_bitField0_ |= 0x00000001;
         }
         result.key_ = key_;
+        if (((from_bitField0_ & 0x00000004) == 0x00000004)) {
+          to_bitField0_ |= 0x00000002;
+        }
+        result.fingerprint_ = fingerprint_;
+        if (((from_bitField0_ & 0x00000008) == 0x00000008)) {
+          to_bitField0_ |= 0x00000004;
+        }
+        result.notModified_ = notModified_;
         result.bitField0_ = to_bitField0_;
         onBuilt();
         return result;
       }
-      
+
       public Builder mergeFrom(com.google.protobuf.Message other) {
         if (other instanceof com.google.nigori.common.NigoriMessages.GetResponse) {
           return mergeFrom((com.google.nigori.common.NigoriMessages.GetResponse)other);
@@ -2745,7 +3772,7 @@ public final class NigoriMessages {
           return this;
         }
       }
-      
+
       public Builder mergeFrom(com.google.nigori.common.NigoriMessages.GetResponse other) {
         if (other == com.google.nigori.common.NigoriMessages.GetResponse.getDefaultInstance()) return this;
         if (revisionsBuilder_ == null) {
@@ -2777,10 +3804,16 @@ public final class NigoriMessages {
         if (other.hasKey()) {
           setKey(other.getKey());
         }
+        if (other.hasFingerprint()) {
+          setFingerprint(other.getFingerprint());
+        }
+        if (other.hasNotModified()) {
+          setNotModified(other.getNotModified());
+        }
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
-      
+
       public final boolean isInitialized() {
         for (int i = 0; i < getRevisionsCount(); i++) {
           if (!getRevisions(i).isInitialized()) {
@@ -2790,47 +3823,26 @@ public final class NigoriMessages {
         }
         return true;
       }
-      
+
       public Builder mergeFrom(
           com.google.protobuf.CodedInputStream input,
           com.google.protobuf.ExtensionRegistryLite extensionRegistry)
           throws java.io.IOException {
-        com.google.protobuf.UnknownFieldSet.Builder unknownFields =
-          com.google.protobuf.UnknownFieldSet.newBuilder(
-            this.getUnknownFields());
-        while (true) {
-          int tag = input.readTag();
-          switch (tag) {
-            case 0:
-              this.setUnknownFields(unknownFields.build());
-              onChanged();
-              return this;
-            default: {
-              if (!parseUnknownField(input, unknownFields,
-                                     extensionRegistry, tag)) {
-                this.setUnknownFields(unknownFields.build());
-                onChanged();
-                return this;
-              }
-              break;
-            }
-            case 10: {
-              com.google.nigori.common.NigoriMessages.RevisionValue.Builder subBuilder = com.google.nigori.common.NigoriMessages.RevisionValue.newBuilder();
-              input.readMessage(subBuilder, extensionRegistry);
-              addRevisions(subBuilder.buildPartial());
-              break;
-            }
-            case 18: {
-              bitField0_ |= 0x00000002;
-              key_ = input.readBytes();
-              break;
-            }
+        com.google.nigori.common.NigoriMessages.GetResponse parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (com.google.nigori.common.NigoriMessages.GetResponse) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
           }
         }
+        return this;
       }
-      
       private int bitField0_;
-      
+
       // repeated .nigori.RevisionValue revisions = 1;
       private java.util.List<com.google.nigori.common.NigoriMessages.RevisionValue> revisions_ =
         java.util.Collections.emptyList();
@@ -2840,10 +3852,13 @@ public final class NigoriMessages {
           bitField0_ |= 0x00000001;
          }
       }
-      
+
       private com.google.protobuf.RepeatedFieldBuilder<
           com.google.nigori.common.NigoriMessages.RevisionValue, com.google.nigori.common.NigoriMessages.RevisionValue.Builder, com.google.nigori.common.NigoriMessages.RevisionValueOrBuilder> revisionsBuilder_;
-      
+
+      /**
+       * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+       */
       public java.util.List<com.google.nigori.common.NigoriMessages.RevisionValue> getRevisionsList() {
         if (revisionsBuilder_ == null) {
           return java.util.Collections.unmodifiableList(revisions_);
@@ -2851,6 +3866,9 @@ public final class NigoriMessages {
           return revisionsBuilder_.getMessageList();
         }
       }
+      /**
+       * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+       */
       public int getRevisionsCount() {
         if (revisionsBuilder_ == null) {
           return revisions_.size();
@@ -2858,6 +3876,9 @@ public final class NigoriMessages {
           return revisionsBuilder_.getCount();
         }
       }
+      /**
+       * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+       */
       public com.google.nigori.common.NigoriMessages.RevisionValue getRevisions(int index) {
         if (revisionsBuilder_ == null) {
           return revisions_.get(index);
@@ -2865,6 +3886,9 @@ public final class NigoriMessages {
           return revisionsBuilder_.getMessage(index);
         }
       }
+      /**
+       * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+       */
       public Builder setRevisions(
           int index, com.google.nigori.common.NigoriMessages.RevisionValue value) {
         if (revisionsBuilder_ == null) {
@@ -2879,6 +3903,9 @@ public final class NigoriMessages {
         }
         return this;
       }
+      /**
+       * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+       */
       public Builder setRevisions(
           int index, com.google.nigori.common.NigoriMessages.RevisionValue.Builder builderForValue) {
         if (revisionsBuilder_ == null) {
@@ -2890,6 +3917,9 @@ public final class NigoriMessages {
         }
         return this;
       }
+      /**
+       * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+       */
       public Builder addRevisions(com.google.nigori.common.NigoriMessages.RevisionValue value) {
         if (revisionsBuilder_ == null) {
           if (value == null) {
@@ -2903,6 +3933,9 @@ public final class NigoriMessages {
         }
         return this;
       }
+      /**
+       * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+       */
       public Builder addRevisions(
           int index, com.google.nigori.common.NigoriMessages.RevisionValue value) {
         if (revisionsBuilder_ == null) {
@@ -2917,6 +3950,9 @@ public final class NigoriMessages {
         }
         return this;
       }
+      /**
+       * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+       */
       public Builder addRevisions(
           com.google.nigori.common.NigoriMessages.RevisionValue.Builder builderForValue) {
         if (revisionsBuilder_ == null) {
@@ -2928,6 +3964,9 @@ public final class NigoriMessages {
         }
         return this;
       }
+      /**
+       * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+       */
       public Builder addRevisions(
           int index, com.google.nigori.common.NigoriMessages.RevisionValue.Builder builderForValue) {
         if (revisionsBuilder_ == null) {
@@ -2939,6 +3978,9 @@ public final class NigoriMessages {
         }
         return this;
       }
+      /**
+       * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+       */
       public Builder addAllRevisions(
           java.lang.Iterable<? extends com.google.nigori.common.NigoriMessages.RevisionValue> values) {
         if (revisionsBuilder_ == null) {
@@ -2950,6 +3992,9 @@ public final class NigoriMessages {
         }
         return this;
       }
+      /**
+       * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+       */
       public Builder clearRevisions() {
         if (revisionsBuilder_ == null) {
           revisions_ = java.util.Collections.emptyList();
@@ -2960,6 +4005,9 @@ public final class NigoriMessages {
         }
         return this;
       }
+      /**
+       * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+       */
       public Builder removeRevisions(int index) {
         if (revisionsBuilder_ == null) {
           ensureRevisionsIsMutable();
@@ -2970,10 +4018,16 @@ public final class NigoriMessages {
         }
         return this;
       }
+      /**
+       * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+       */
       public com.google.nigori.common.NigoriMessages.RevisionValue.Builder getRevisionsBuilder(
           int index) {
         return getRevisionsFieldBuilder().getBuilder(index);
       }
+      /**
+       * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+       */
       public com.google.nigori.common.NigoriMessages.RevisionValueOrBuilder getRevisionsOrBuilder(
           int index) {
         if (revisionsBuilder_ == null) {
@@ -2981,6 +4035,9 @@ public final class NigoriMessages {
           return revisionsBuilder_.getMessageOrBuilder(index);
         }
       }
+      /**
+       * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+       */
       public java.util.List<? extends com.google.nigori.common.NigoriMessages.RevisionValueOrBuilder> 
            getRevisionsOrBuilderList() {
         if (revisionsBuilder_ != null) {
@@ -2989,15 +4046,24 @@ public final class NigoriMessages {
           return java.util.Collections.unmodifiableList(revisions_);
         }
       }
+      /**
+       * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+       */
       public com.google.nigori.common.NigoriMessages.RevisionValue.Builder addRevisionsBuilder() {
         return getRevisionsFieldBuilder().addBuilder(
             com.google.nigori.common.NigoriMessages.RevisionValue.getDefaultInstance());
       }
+      /**
+       * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+       */
       public com.google.nigori.common.NigoriMessages.RevisionValue.Builder addRevisionsBuilder(
           int index) {
         return getRevisionsFieldBuilder().addBuilder(
             index, com.google.nigori.common.NigoriMessages.RevisionValue.getDefaultInstance());
       }
+      /**
+       * <code>repeated .nigori.RevisionValue revisions = 1;</code>
+       */
       public java.util.List<com.google.nigori.common.NigoriMessages.RevisionValue.Builder> 
            getRevisionsBuilderList() {
         return getRevisionsFieldBuilder().getBuilderList();
@@ -3016,15 +4082,36 @@ public final class NigoriMessages {
         }
         return revisionsBuilder_;
       }
-      
+
       // optional bytes key = 2;
       private com.google.protobuf.ByteString key_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes key = 2;</code>
+       *
+       * <pre>
+       * optional as may want to keep packet size down.
+       * </pre>
+       */
       public boolean hasKey() {
         return ((bitField0_ & 0x00000002) == 0x00000002);
       }
+      /**
+       * <code>optional bytes key = 2;</code>
+       *
+       * <pre>
+       * optional as may want to keep packet size down.
+       * </pre>
+       */
       public com.google.protobuf.ByteString getKey() {
         return key_;
       }
+      /**
+       * <code>optional bytes key = 2;</code>
+       *
+       * <pre>
+       * optional as may want to keep packet size down.
+       * </pre>
+       */
       public Builder setKey(com.google.protobuf.ByteString value) {
         if (value == null) {
     throw new NullPointerException();
@@ -3034,82 +4121,336 @@ public final class NigoriMessages {
         onChanged();
         return this;
       }
+      /**
+       * <code>optional bytes key = 2;</code>
+       *
+       * <pre>
+       * optional as may want to keep packet size down.
+       * </pre>
+       */
       public Builder clearKey() {
         bitField0_ = (bitField0_ & ~0x00000002);
         key_ = getDefaultInstance().getKey();
         onChanged();
         return this;
       }
-      
+
+      // optional bytes fingerprint = 3;
+      private com.google.protobuf.ByteString fingerprint_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes fingerprint = 3;</code>
+       *
+       * <pre>
+       * of all the revisions, absent when only one was asked for
+       * </pre>
+       */
+      public boolean hasFingerprint() {
+        return ((bitField0_ & 0x00000004) == 0x00000004);
+      }
+      /**
+       * <code>optional bytes fingerprint = 3;</code>
+       *
+       * <pre>
+       * of all the revisions, absent when only one was asked for
+       * </pre>
+       */
+      public com.google.protobuf.ByteString getFingerprint() {
+        return fingerprint_;
+      }
+      /**
+       * <code>optional bytes fingerprint = 3;</code>
+       *
+       * <pre>
+       * of all the revisions, absent when only one was asked for
+       * </pre>
+       */
+      public Builder setFingerprint(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000004;
+        fingerprint_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bytes fingerprint = 3;</code>
+       *
+       * <pre>
+       * of all the revisions, absent when only one was asked for
+       * </pre>
+       */
+      public Builder clearFingerprint() {
+        bitField0_ = (bitField0_ & ~0x00000004);
+        fingerprint_ = getDefaultInstance().getFingerprint();
+        onChanged();
+        return this;
+      }
+
+      // optional bool not_modified = 4;
+      private boolean notModified_ ;
+      /**
+       * <code>optional bool not_modified = 4;</code>
+       */
+      public boolean hasNotModified() {
+        return ((bitField0_ & 0x00000008) == 0x00000008);
+      }
+      /**
+       * <code>optional bool not_modified = 4;</code>
+       */
+      public boolean getNotModified() {
+        return notModified_;
+      }
+      /**
+       * <code>optional bool not_modified = 4;</code>
+       */
+      public Builder setNotModified(boolean value) {
+        bitField0_ |= 0x00000008;
+        notModified_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bool not_modified = 4;</code>
+       */
+      public Builder clearNotModified() {
+        bitField0_ = (bitField0_ & ~0x00000008);
+        notModified_ = false;
+        onChanged();
+        return this;
+      }
+
       // @@protoc_insertion_point(builder_scope:nigori.GetResponse)
     }
-    
+
     static {
       defaultInstance = new GetResponse(true);
       defaultInstance.initFields();
     }
-    
+
     // @@protoc_insertion_point(class_scope:nigori.GetResponse)
   }
-  
+
   public interface GetIndicesRequestOrBuilder
       extends com.google.protobuf.MessageOrBuilder {
-    
+
     // required .nigori.AuthenticateRequest auth = 1;
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     boolean hasAuth();
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth();
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder();
+
+    // optional bytes cursor = 2;
+    /**
+     * <code>optional bytes cursor = 2;</code>
+     */
+    boolean hasCursor();
+    /**
+     * <code>optional bytes cursor = 2;</code>
+     */
+    com.google.protobuf.ByteString getCursor();
+
+    // optional int32 limit = 3;
+    /**
+     * <code>optional int32 limit = 3;</code>
+     */
+    boolean hasLimit();
+    /**
+     * <code>optional int32 limit = 3;</code>
+     */
+    int getLimit();
   }
+  /**
+   * Protobuf type {@code nigori.GetIndicesRequest}
+   *
+   * <pre>
+   * Results are returned a page at a time, cursor is the cursor from the previous page and limit is
+   * the most to return, which the server may reduce.
+   * </pre>
+   */
   public static final class GetIndicesRequest extends
       com.google.protobuf.GeneratedMessage
       implements GetIndicesRequestOrBuilder {
     // Use GetIndicesRequest.newBuilder() to construct.
-    private GetIndicesRequest(Builder builder) {
+    private GetIndicesRequest(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
       super(builder);
+      this.unknownFields = builder.getUnknownFields();
     }
-    private GetIndicesRequest(boolean noInit) {}
-    
+    private GetIndicesRequest(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
     private static final GetIndicesRequest defaultInstance;
     public static GetIndicesRequest getDefaultInstance() {
       return defaultInstance;
     }
-    
+
     public GetIndicesRequest getDefaultInstanceForType() {
       return defaultInstance;
     }
-    
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private GetIndicesRequest(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 10: {
+              com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder subBuilder = null;
+              if (((bitField0_ & 0x00000001) == 0x00000001)) {
+                subBuilder = auth_.toBuilder();
+              }
+              auth_ = input.readMessage(com.google.nigori.common.NigoriMessages.AuthenticateRequest.PARSER, extensionRegistry);
+              if (subBuilder != null) {
+                subBuilder.mergeFrom(auth_);
+                auth_ = subBuilder.buildPartial();
+              }
+              bitField0_ |= 0x00000001;
+              break;
+            }
+            case 18: {
+              bitField0_ |= 0x00000002;
+              cursor_ = input.readBytes();
+              break;
+            }
+            case 24: {
+              bitField0_ |= 0x00000004;
+              limit_ = input.readInt32();
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
     public static final com.google.protobuf.Descriptors.Descriptor
         getDescriptor() {
       return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetIndicesRequest_descriptor;
     }
-    
+
     protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
         internalGetFieldAccessorTable() {
-      return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetIndicesRequest_fieldAccessorTable;
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetIndicesRequest_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              com.google.nigori.common.NigoriMessages.GetIndicesRequest.class, com.google.nigori.common.NigoriMessages.GetIndicesRequest.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<GetIndicesRequest> PARSER =
+        new com.google.protobuf.AbstractParser<GetIndicesRequest>() {
+      public GetIndicesRequest parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new GetIndicesRequest(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<GetIndicesRequest> getParserForType() {
+      return PARSER;
     }
-    
+
     private int bitField0_;
     // required .nigori.AuthenticateRequest auth = 1;
     public static final int AUTH_FIELD_NUMBER = 1;
     private com.google.nigori.common.NigoriMessages.AuthenticateRequest auth_;
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     public boolean hasAuth() {
       return ((bitField0_ & 0x00000001) == 0x00000001);
     }
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     public com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth() {
       return auth_;
     }
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     public com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder() {
       return auth_;
     }
-    
+
+    // optional bytes cursor = 2;
+    public static final int CURSOR_FIELD_NUMBER = 2;
+    private com.google.protobuf.ByteString cursor_;
+    /**
+     * <code>optional bytes cursor = 2;</code>
+     */
+    public boolean hasCursor() {
+      return ((bitField0_ & 0x00000002) == 0x00000002);
+    }
+    /**
+     * <code>optional bytes cursor = 2;</code>
+     */
+    public com.google.protobuf.ByteString getCursor() {
+      return cursor_;
+    }
+
+    // optional int32 limit = 3;
+    public static final int LIMIT_FIELD_NUMBER = 3;
+    private int limit_;
+    /**
+     * <code>optional int32 limit = 3;</code>
+     */
+    public boolean hasLimit() {
+      return ((bitField0_ & 0x00000004) == 0x00000004);
+    }
+    /**
+     * <code>optional int32 limit = 3;</code>
+     */
+    public int getLimit() {
+      return limit_;
+    }
+
     private void initFields() {
       auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
+      cursor_ = com.google.protobuf.ByteString.EMPTY;
+      limit_ = 0;
     }
     private byte memoizedIsInitialized = -1;
     public final boolean isInitialized() {
       byte isInitialized = memoizedIsInitialized;
       if (isInitialized != -1) return isInitialized == 1;
-      
+
       if (!hasAuth()) {
         memoizedIsInitialized = 0;
         return false;
@@ -3121,116 +4462,126 @@ public final class NigoriMessages {
       memoizedIsInitialized = 1;
       return true;
     }
-    
+
     public void writeTo(com.google.protobuf.CodedOutputStream output)
                         throws java.io.IOException {
       getSerializedSize();
       if (((bitField0_ & 0x00000001) == 0x00000001)) {
         output.writeMessage(1, auth_);
       }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        output.writeBytes(2, cursor_);
+      }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        output.writeInt32(3, limit_);
+      }
       getUnknownFields().writeTo(output);
     }
-    
+
     private int memoizedSerializedSize = -1;
     public int getSerializedSize() {
       int size = memoizedSerializedSize;
       if (size != -1) return size;
-    
+
       size = 0;
       if (((bitField0_ & 0x00000001) == 0x00000001)) {
         size += com.google.protobuf.CodedOutputStream
           .computeMessageSize(1, auth_);
       }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(2, cursor_);
+      }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(3, limit_);
+      }
       size += getUnknownFields().getSerializedSize();
       memoizedSerializedSize = size;
       return size;
     }
-    
+
+    private static final long serialVersionUID = 0L;
     @java.lang.Override
-    protected Object writeReplace() throws java.io.ObjectStreamException {
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
       return super.writeReplace();
     }
-    
+
     public static com.google.nigori.common.NigoriMessages.GetIndicesRequest parseFrom(
         com.google.protobuf.ByteString data)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data).buildParsed();
+      return PARSER.parseFrom(data);
     }
     public static com.google.nigori.common.NigoriMessages.GetIndicesRequest parseFrom(
         com.google.protobuf.ByteString data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(data, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.GetIndicesRequest parseFrom(byte[] data)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data).buildParsed();
+      return PARSER.parseFrom(data);
     }
     public static com.google.nigori.common.NigoriMessages.GetIndicesRequest parseFrom(
         byte[] data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(data, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.GetIndicesRequest parseFrom(java.io.InputStream input)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input).buildParsed();
+      return PARSER.parseFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.GetIndicesRequest parseFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(input, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.GetIndicesRequest parseDelimitedFrom(java.io.InputStream input)
         throws java.io.IOException {
-      Builder builder = newBuilder();
-      if (builder.mergeDelimitedFrom(input)) {
-        return builder.buildParsed();
-      } else {
-        return null;
-      }
+      return PARSER.parseDelimitedFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.GetIndicesRequest parseDelimitedFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      Builder builder = newBuilder();
-      if (builder.mergeDelimitedFrom(input, extensionRegistry)) {
-        return builder.buildParsed();
-      } else {
-        return null;
-      }
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.GetIndicesRequest parseFrom(
         com.google.protobuf.CodedInputStream input)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input).buildParsed();
+      return PARSER.parseFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.GetIndicesRequest parseFrom(
         com.google.protobuf.CodedInputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(input, extensionRegistry);
     }
-    
+
     public static Builder newBuilder() { return Builder.create(); }
     public Builder newBuilderForType() { return newBuilder(); }
     public static Builder newBuilder(com.google.nigori.common.NigoriMessages.GetIndicesRequest prototype) {
       return newBuilder().mergeFrom(prototype);
     }
     public Builder toBuilder() { return newBuilder(this); }
-    
+
     @java.lang.Override
     protected Builder newBuilderForType(
         com.google.protobuf.GeneratedMessage.BuilderParent parent) {
       Builder builder = new Builder(parent);
       return builder;
     }
+    /**
+     * Protobuf type {@code nigori.GetIndicesRequest}
+     *
+     * <pre>
+     * Results are returned a page at a time, cursor is the cursor from the previous page and limit is
+     * the most to return, which the server may reduce.
+     * </pre>
+     */
     public static final class Builder extends
         com.google.protobuf.GeneratedMessage.Builder<Builder>
        implements com.google.nigori.common.NigoriMessages.GetIndicesRequestOrBuilder {
@@ -3238,18 +4589,21 @@ public final class NigoriMessages {
           getDescriptor() {
         return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetIndicesRequest_descriptor;
       }
-      
+
       protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
           internalGetFieldAccessorTable() {
-        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetIndicesRequest_fieldAccessorTable;
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetIndicesRequest_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                com.google.nigori.common.NigoriMessages.GetIndicesRequest.class, com.google.nigori.common.NigoriMessages.GetIndicesRequest.Builder.class);
       }
-      
+
       // Construct using com.google.nigori.common.NigoriMessages.GetIndicesRequest.newBuilder()
       private Builder() {
         maybeForceBuilderInitialization();
       }
-      
-      private Builder(BuilderParent parent) {
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
         super(parent);
         maybeForceBuilderInitialization();
       }
@@ -3261,7 +4615,7 @@ public final class NigoriMessages {
       private static Builder create() {
         return new Builder();
       }
-      
+
       public Builder clear() {
         super.clear();
         if (authBuilder_ == null) {
@@ -3270,22 +4624,26 @@ public final class NigoriMessages {
           authBuilder_.clear();
         }
         bitField0_ = (bitField0_ & ~0x00000001);
+        cursor_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000002);
+        limit_ = 0;
+        bitField0_ = (bitField0_ & ~0x00000004);
         return this;
       }
-      
+
       public Builder clone() {
         return create().mergeFrom(buildPartial());
       }
-      
+
       public com.google.protobuf.Descriptors.Descriptor
           getDescriptorForType() {
-        return com.google.nigori.common.NigoriMessages.GetIndicesRequest.getDescriptor();
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetIndicesRequest_descriptor;
       }
-      
+
       public com.google.nigori.common.NigoriMessages.GetIndicesRequest getDefaultInstanceForType() {
         return com.google.nigori.common.NigoriMessages.GetIndicesRequest.getDefaultInstance();
       }
-      
+
       public com.google.nigori.common.NigoriMessages.GetIndicesRequest build() {
         com.google.nigori.common.NigoriMessages.GetIndicesRequest result = buildPartial();
         if (!result.isInitialized()) {
@@ -3293,17 +4651,7 @@ public final class NigoriMessages {
         }
         return result;
       }
-      
-      private com.google.nigori.common.NigoriMessages.GetIndicesRequest buildParsed()
-          throws com.google.protobuf.InvalidProtocolBufferException {
-        com.google.nigori.common.NigoriMessages.GetIndicesRequest result = buildPartial();
-        if (!result.isInitialized()) {
-          throw newUninitializedMessageException(
-            result).asInvalidProtocolBufferException();
-        }
-        return result;
-      }
-      
+
       public com.google.nigori.common.NigoriMessages.GetIndicesRequest buildPartial() {
         com.google.nigori.common.NigoriMessages.GetIndicesRequest result = new com.google.nigori.common.NigoriMessages.GetIndicesRequest(this);
         int from_bitField0_ = bitField0_;
@@ -3316,11 +4664,19 @@ public final class NigoriMessages {
         } else {
           result.auth_ = authBuilder_.build();
         }
+        if (((from_bitField0_ & 0x00000002) == 0x00000002)) {
+          to_bitField0_ |= 0x00000002;
+        }
+        result.cursor_ = cursor_;
+        if (((from_bitField0_ & 0x00000004) == 0x00000004)) {
+          to_bitField0_ |= 0x00000004;
+        }
+        result.limit_ = limit_;
         result.bitField0_ = to_bitField0_;
         onBuilt();
         return result;
       }
-      
+
       public Builder mergeFrom(com.google.protobuf.Message other) {
         if (other instanceof com.google.nigori.common.NigoriMessages.GetIndicesRequest) {
           return mergeFrom((com.google.nigori.common.NigoriMessages.GetIndicesRequest)other);
@@ -3329,16 +4685,22 @@ public final class NigoriMessages {
           return this;
         }
       }
-      
+
       public Builder mergeFrom(com.google.nigori.common.NigoriMessages.GetIndicesRequest other) {
         if (other == com.google.nigori.common.NigoriMessages.GetIndicesRequest.getDefaultInstance()) return this;
         if (other.hasAuth()) {
           mergeAuth(other.getAuth());
         }
+        if (other.hasCursor()) {
+          setCursor(other.getCursor());
+        }
+        if (other.hasLimit()) {
+          setLimit(other.getLimit());
+        }
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
-      
+
       public final boolean isInitialized() {
         if (!hasAuth()) {
           
@@ -3350,52 +4712,39 @@ public final class NigoriMessages {
         }
         return true;
       }
-      
+
       public Builder mergeFrom(
           com.google.protobuf.CodedInputStream input,
           com.google.protobuf.ExtensionRegistryLite extensionRegistry)
           throws java.io.IOException {
-        com.google.protobuf.UnknownFieldSet.Builder unknownFields =
-          com.google.protobuf.UnknownFieldSet.newBuilder(
-            this.getUnknownFields());
-        while (true) {
-          int tag = input.readTag();
-          switch (tag) {
-            case 0:
-              this.setUnknownFields(unknownFields.build());
-              onChanged();
-              return this;
-            default: {
-              if (!parseUnknownField(input, unknownFields,
-                                     extensionRegistry, tag)) {
-                this.setUnknownFields(unknownFields.build());
-                onChanged();
-                return this;
-              }
-              break;
-            }
-            case 10: {
-              com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder subBuilder = com.google.nigori.common.NigoriMessages.AuthenticateRequest.newBuilder();
-              if (hasAuth()) {
-                subBuilder.mergeFrom(getAuth());
-              }
-              input.readMessage(subBuilder, extensionRegistry);
-              setAuth(subBuilder.buildPartial());
-              break;
-            }
+        com.google.nigori.common.NigoriMessages.GetIndicesRequest parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (com.google.nigori.common.NigoriMessages.GetIndicesRequest) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
           }
         }
+        return this;
       }
-      
       private int bitField0_;
-      
+
       // required .nigori.AuthenticateRequest auth = 1;
       private com.google.nigori.common.NigoriMessages.AuthenticateRequest auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
       private com.google.protobuf.SingleFieldBuilder<
           com.google.nigori.common.NigoriMessages.AuthenticateRequest, com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder, com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder> authBuilder_;
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public boolean hasAuth() {
         return ((bitField0_ & 0x00000001) == 0x00000001);
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth() {
         if (authBuilder_ == null) {
           return auth_;
@@ -3403,6 +4752,9 @@ public final class NigoriMessages {
           return authBuilder_.getMessage();
         }
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public Builder setAuth(com.google.nigori.common.NigoriMessages.AuthenticateRequest value) {
         if (authBuilder_ == null) {
           if (value == null) {
@@ -3416,6 +4768,9 @@ public final class NigoriMessages {
         bitField0_ |= 0x00000001;
         return this;
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public Builder setAuth(
           com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder builderForValue) {
         if (authBuilder_ == null) {
@@ -3427,6 +4782,9 @@ public final class NigoriMessages {
         bitField0_ |= 0x00000001;
         return this;
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public Builder mergeAuth(com.google.nigori.common.NigoriMessages.AuthenticateRequest value) {
         if (authBuilder_ == null) {
           if (((bitField0_ & 0x00000001) == 0x00000001) &&
@@ -3443,6 +4801,9 @@ public final class NigoriMessages {
         bitField0_ |= 0x00000001;
         return this;
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public Builder clearAuth() {
         if (authBuilder_ == null) {
           auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
@@ -3453,11 +4814,17 @@ public final class NigoriMessages {
         bitField0_ = (bitField0_ & ~0x00000001);
         return this;
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder getAuthBuilder() {
         bitField0_ |= 0x00000001;
         onChanged();
         return getAuthFieldBuilder().getBuilder();
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder() {
         if (authBuilder_ != null) {
           return authBuilder_.getMessageOrBuilder();
@@ -3465,6 +4832,9 @@ public final class NigoriMessages {
           return auth_;
         }
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       private com.google.protobuf.SingleFieldBuilder<
           com.google.nigori.common.NigoriMessages.AuthenticateRequest, com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder, com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder> 
           getAuthFieldBuilder() {
@@ -3478,94 +4848,294 @@ public final class NigoriMessages {
         }
         return authBuilder_;
       }
-      
+
+      // optional bytes cursor = 2;
+      private com.google.protobuf.ByteString cursor_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes cursor = 2;</code>
+       */
+      public boolean hasCursor() {
+        return ((bitField0_ & 0x00000002) == 0x00000002);
+      }
+      /**
+       * <code>optional bytes cursor = 2;</code>
+       */
+      public com.google.protobuf.ByteString getCursor() {
+        return cursor_;
+      }
+      /**
+       * <code>optional bytes cursor = 2;</code>
+       */
+      public Builder setCursor(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000002;
+        cursor_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bytes cursor = 2;</code>
+       */
+      public Builder clearCursor() {
+        bitField0_ = (bitField0_ & ~0x00000002);
+        cursor_ = getDefaultInstance().getCursor();
+        onChanged();
+        return this;
+      }
+
+      // optional int32 limit = 3;
+      private int limit_ ;
+      /**
+       * <code>optional int32 limit = 3;</code>
+       */
+      public boolean hasLimit() {
+        return ((bitField0_ & 0x00000004) == 0x00000004);
+      }
+      /**
+       * <code>optional int32 limit = 3;</code>
+       */
+      public int getLimit() {
+        return limit_;
+      }
+      /**
+       * <code>optional int32 limit = 3;</code>
+       */
+      public Builder setLimit(int value) {
+        bitField0_ |= 0x00000004;
+        limit_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional int32 limit = 3;</code>
+       */
+      public Builder clearLimit() {
+        bitField0_ = (bitField0_ & ~0x00000004);
+        limit_ = 0;
+        onChanged();
+        return this;
+      }
+
       // @@protoc_insertion_point(builder_scope:nigori.GetIndicesRequest)
     }
-    
+
     static {
       defaultInstance = new GetIndicesRequest(true);
       defaultInstance.initFields();
     }
-    
+
     // @@protoc_insertion_point(class_scope:nigori.GetIndicesRequest)
   }
-  
+
   public interface GetIndicesResponseOrBuilder
       extends com.google.protobuf.MessageOrBuilder {
-    
+
     // repeated bytes indices = 1;
+    /**
+     * <code>repeated bytes indices = 1;</code>
+     */
     java.util.List<com.google.protobuf.ByteString> getIndicesList();
+    /**
+     * <code>repeated bytes indices = 1;</code>
+     */
     int getIndicesCount();
+    /**
+     * <code>repeated bytes indices = 1;</code>
+     */
     com.google.protobuf.ByteString getIndices(int index);
+
+    // optional bytes cursor = 2;
+    /**
+     * <code>optional bytes cursor = 2;</code>
+     */
+    boolean hasCursor();
+    /**
+     * <code>optional bytes cursor = 2;</code>
+     */
+    com.google.protobuf.ByteString getCursor();
   }
+  /**
+   * Protobuf type {@code nigori.GetIndicesResponse}
+   *
+   * <pre>
+   * cursor is set if there may be more indices, to be passed in the request for the next page
+   * </pre>
+   */
   public static final class GetIndicesResponse extends
       com.google.protobuf.GeneratedMessage
       implements GetIndicesResponseOrBuilder {
     // Use GetIndicesResponse.newBuilder() to construct.
-    private GetIndicesResponse(Builder builder) {
+    private GetIndicesResponse(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
       super(builder);
+      this.unknownFields = builder.getUnknownFields();
     }
-    private GetIndicesResponse(boolean noInit) {}
-    
+    private GetIndicesResponse(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
     private static final GetIndicesResponse defaultInstance;
     public static GetIndicesResponse getDefaultInstance() {
       return defaultInstance;
     }
-    
+
     public GetIndicesResponse getDefaultInstanceForType() {
       return defaultInstance;
     }
-    
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private GetIndicesResponse(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 10: {
+              if (!((mutable_bitField0_ & 0x00000001) == 0x00000001)) {
+                indices_ = new java.util.ArrayList<com.google.protobuf.ByteString>();
+                mutable_bitField0_ |= 0x00000001;
+              }
+              indices_.add(input.readBytes());
+              break;
+            }
+            case 18: {
+              bitField0_ |= 0x00000001;
+              cursor_ = input.readBytes();
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        if (((mutable_bitField0_ & 0x00000001) == 0x00000001)) {
+          indices_ = java.util.Collections.unmodifiableList(indices_);
+        }
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
     public static final com.google.protobuf.Descriptors.Descriptor
         getDescriptor() {
       return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetIndicesResponse_descriptor;
     }
-    
+
     protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
         internalGetFieldAccessorTable() {
-      return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetIndicesResponse_fieldAccessorTable;
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetIndicesResponse_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              com.google.nigori.common.NigoriMessages.GetIndicesResponse.class, com.google.nigori.common.NigoriMessages.GetIndicesResponse.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<GetIndicesResponse> PARSER =
+        new com.google.protobuf.AbstractParser<GetIndicesResponse>() {
+      public GetIndicesResponse parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new GetIndicesResponse(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<GetIndicesResponse> getParserForType() {
+      return PARSER;
     }
-    
+
+    private int bitField0_;
     // repeated bytes indices = 1;
     public static final int INDICES_FIELD_NUMBER = 1;
     private java.util.List<com.google.protobuf.ByteString> indices_;
+    /**
+     * <code>repeated bytes indices = 1;</code>
+     */
     public java.util.List<com.google.protobuf.ByteString>
         getIndicesList() {
       return indices_;
     }
+    /**
+     * <code>repeated bytes indices = 1;</code>
+     */
     public int getIndicesCount() {
       return indices_.size();
     }
+    /**
+     * <code>repeated bytes indices = 1;</code>
+     */
     public com.google.protobuf.ByteString getIndices(int index) {
       return indices_.get(index);
     }
-    
+
+    // optional bytes cursor = 2;
+    public static final int CURSOR_FIELD_NUMBER = 2;
+    private com.google.protobuf.ByteString cursor_;
+    /**
+     * <code>optional bytes cursor = 2;</code>
+     */
+    public boolean hasCursor() {
+      return ((bitField0_ & 0x00000001) == 0x00000001);
+    }
+    /**
+     * <code>optional bytes cursor = 2;</code>
+     */
+    public com.google.protobuf.ByteString getCursor() {
+      return cursor_;
+    }
+
     private void initFields() {
-      indices_ = java.util.Collections.emptyList();;
+      indices_ = java.util.Collections.emptyList();
+      cursor_ = com.google.protobuf.ByteString.EMPTY;
     }
     private byte memoizedIsInitialized = -1;
     public final boolean isInitialized() {
       byte isInitialized = memoizedIsInitialized;
       if (isInitialized != -1) return isInitialized == 1;
-      
+
       memoizedIsInitialized = 1;
       return true;
     }
-    
+
     public void writeTo(com.google.protobuf.CodedOutputStream output)
                         throws java.io.IOException {
       getSerializedSize();
       for (int i = 0; i < indices_.size(); i++) {
         output.writeBytes(1, indices_.get(i));
       }
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        output.writeBytes(2, cursor_);
+      }
       getUnknownFields().writeTo(output);
     }
-    
+
     private int memoizedSerializedSize = -1;
     public int getSerializedSize() {
       int size = memoizedSerializedSize;
       if (size != -1) return size;
-    
+
       size = 0;
       {
         int dataSize = 0;
@@ -3576,96 +5146,95 @@ public final class NigoriMessages {
         size += dataSize;
         size += 1 * getIndicesList().size();
       }
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(2, cursor_);
+      }
       size += getUnknownFields().getSerializedSize();
       memoizedSerializedSize = size;
       return size;
     }
-    
+
+    private static final long serialVersionUID = 0L;
     @java.lang.Override
-    protected Object writeReplace() throws java.io.ObjectStreamException {
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
       return super.writeReplace();
     }
-    
+
     public static com.google.nigori.common.NigoriMessages.GetIndicesResponse parseFrom(
         com.google.protobuf.ByteString data)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data).buildParsed();
+      return PARSER.parseFrom(data);
     }
     public static com.google.nigori.common.NigoriMessages.GetIndicesResponse parseFrom(
         com.google.protobuf.ByteString data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(data, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.GetIndicesResponse parseFrom(byte[] data)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data).buildParsed();
+      return PARSER.parseFrom(data);
     }
     public static com.google.nigori.common.NigoriMessages.GetIndicesResponse parseFrom(
         byte[] data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(data, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.GetIndicesResponse parseFrom(java.io.InputStream input)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input).buildParsed();
+      return PARSER.parseFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.GetIndicesResponse parseFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(input, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.GetIndicesResponse parseDelimitedFrom(java.io.InputStream input)
         throws java.io.IOException {
-      Builder builder = newBuilder();
-      if (builder.mergeDelimitedFrom(input)) {
-        return builder.buildParsed();
-      } else {
-        return null;
-      }
+      return PARSER.parseDelimitedFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.GetIndicesResponse parseDelimitedFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      Builder builder = newBuilder();
-      if (builder.mergeDelimitedFrom(input, extensionRegistry)) {
-        return builder.buildParsed();
-      } else {
-        return null;
-      }
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.GetIndicesResponse parseFrom(
         com.google.protobuf.CodedInputStream input)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input).buildParsed();
+      return PARSER.parseFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.GetIndicesResponse parseFrom(
         com.google.protobuf.CodedInputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(input, extensionRegistry);
     }
-    
+
     public static Builder newBuilder() { return Builder.create(); }
     public Builder newBuilderForType() { return newBuilder(); }
     public static Builder newBuilder(com.google.nigori.common.NigoriMessages.GetIndicesResponse prototype) {
       return newBuilder().mergeFrom(prototype);
     }
     public Builder toBuilder() { return newBuilder(this); }
-    
+
     @java.lang.Override
     protected Builder newBuilderForType(
         com.google.protobuf.GeneratedMessage.BuilderParent parent) {
       Builder builder = new Builder(parent);
       return builder;
     }
+    /**
+     * Protobuf type {@code nigori.GetIndicesResponse}
+     *
+     * <pre>
+     * cursor is set if there may be more indices, to be passed in the request for the next page
+     * </pre>
+     */
     public static final class Builder extends
         com.google.protobuf.GeneratedMessage.Builder<Builder>
        implements com.google.nigori.common.NigoriMessages.GetIndicesResponseOrBuilder {
@@ -3673,18 +5242,21 @@ public final class NigoriMessages {
           getDescriptor() {
         return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetIndicesResponse_descriptor;
       }
-      
+
       protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
           internalGetFieldAccessorTable() {
-        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetIndicesResponse_fieldAccessorTable;
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetIndicesResponse_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                com.google.nigori.common.NigoriMessages.GetIndicesResponse.class, com.google.nigori.common.NigoriMessages.GetIndicesResponse.Builder.class);
       }
-      
+
       // Construct using com.google.nigori.common.NigoriMessages.GetIndicesResponse.newBuilder()
       private Builder() {
         maybeForceBuilderInitialization();
       }
-      
-      private Builder(BuilderParent parent) {
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
         super(parent);
         maybeForceBuilderInitialization();
       }
@@ -3695,27 +5267,29 @@ public final class NigoriMessages {
       private static Builder create() {
         return new Builder();
       }
-      
+
       public Builder clear() {
         super.clear();
-        indices_ = java.util.Collections.emptyList();;
+        indices_ = java.util.Collections.emptyList();
         bitField0_ = (bitField0_ & ~0x00000001);
+        cursor_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000002);
         return this;
       }
-      
+
       public Builder clone() {
         return create().mergeFrom(buildPartial());
       }
-      
+
       public com.google.protobuf.Descriptors.Descriptor
           getDescriptorForType() {
-        return com.google.nigori.common.NigoriMessages.GetIndicesResponse.getDescriptor();
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetIndicesResponse_descriptor;
       }
-      
+
       public com.google.nigori.common.NigoriMessages.GetIndicesResponse getDefaultInstanceForType() {
         return com.google.nigori.common.NigoriMessages.GetIndicesResponse.getDefaultInstance();
       }
-      
+
       public com.google.nigori.common.NigoriMessages.GetIndicesResponse build() {
         com.google.nigori.common.NigoriMessages.GetIndicesResponse result = buildPartial();
         if (!result.isInitialized()) {
@@ -3723,29 +5297,25 @@ public final class NigoriMessages {
         }
         return result;
       }
-      
-      private com.google.nigori.common.NigoriMessages.GetIndicesResponse buildParsed()
-          throws com.google.protobuf.InvalidProtocolBufferException {
-        com.google.nigori.common.NigoriMessages.GetIndicesResponse result = buildPartial();
-        if (!result.isInitialized()) {
-          throw newUninitializedMessageException(
-            result).asInvalidProtocolBufferException();
-        }
-        return result;
-      }
-      
+
       public com.google.nigori.common.NigoriMessages.GetIndicesResponse buildPartial() {
         com.google.nigori.common.NigoriMessages.GetIndicesResponse result = new com.google.nigori.common.NigoriMessages.GetIndicesResponse(this);
         int from_bitField0_ = bitField0_;
+        int to_bitField0_ = 0;
         if (((bitField0_ & 0x00000001) == 0x00000001)) {
           indices_ = java.util.Collections.unmodifiableList(indices_);
           bitField0_ = (bitField0_ & ~0x00000001);
         }
         result.indices_ = indices_;
+        if (((from_bitField0_ & 0x00000002) == 0x00000002)) {
+          to_bitField0_ |= 0x00000001;
+        }
+        result.cursor_ = cursor_;
+        result.bitField0_ = to_bitField0_;
         onBuilt();
         return result;
       }
-      
+
       public Builder mergeFrom(com.google.protobuf.Message other) {
         if (other instanceof com.google.nigori.common.NigoriMessages.GetIndicesResponse) {
           return mergeFrom((com.google.nigori.common.NigoriMessages.GetIndicesResponse)other);
@@ -3754,7 +5324,7 @@ public final class NigoriMessages {
           return this;
         }
       }
-      
+
       public Builder mergeFrom(com.google.nigori.common.NigoriMessages.GetIndicesResponse other) {
         if (other == com.google.nigori.common.NigoriMessages.GetIndicesResponse.getDefaultInstance()) return this;
         if (!other.indices_.isEmpty()) {
@@ -3767,66 +5337,66 @@ public final class NigoriMessages {
           }
           onChanged();
         }
+        if (other.hasCursor()) {
+          setCursor(other.getCursor());
+        }
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
-      
+
       public final boolean isInitialized() {
         return true;
       }
-      
+
       public Builder mergeFrom(
           com.google.protobuf.CodedInputStream input,
           com.google.protobuf.ExtensionRegistryLite extensionRegistry)
           throws java.io.IOException {
-        com.google.protobuf.UnknownFieldSet.Builder unknownFields =
-          com.google.protobuf.UnknownFieldSet.newBuilder(
-            this.getUnknownFields());
-        while (true) {
-          int tag = input.readTag();
-          switch (tag) {
-            case 0:
-              this.setUnknownFields(unknownFields.build());
-              onChanged();
-              return this;
-            default: {
-              if (!parseUnknownField(input, unknownFields,
-                                     extensionRegistry, tag)) {
-                this.setUnknownFields(unknownFields.build());
-                onChanged();
-                return this;
-              }
-              break;
-            }
-            case 10: {
-              ensureIndicesIsMutable();
-              indices_.add(input.readBytes());
-              break;
-            }
+        com.google.nigori.common.NigoriMessages.GetIndicesResponse parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (com.google.nigori.common.NigoriMessages.GetIndicesResponse) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
           }
         }
+        return this;
       }
-      
       private int bitField0_;
-      
+
       // repeated bytes indices = 1;
-      private java.util.List<com.google.protobuf.ByteString> indices_ = java.util.Collections.emptyList();;
+      private java.util.List<com.google.protobuf.ByteString> indices_ = java.util.Collections.emptyList();
       private void ensureIndicesIsMutable() {
         if (!((bitField0_ & 0x00000001) == 0x00000001)) {
           indices_ = new java.util.ArrayList<com.google.protobuf.ByteString>(indices_);
           bitField0_ |= 0x00000001;
          }
       }
+      /**
+       * <code>repeated bytes indices = 1;</code>
+       */
       public java.util.List<com.google.protobuf.ByteString>
           getIndicesList() {
         return java.util.Collections.unmodifiableList(indices_);
       }
+      /**
+       * <code>repeated bytes indices = 1;</code>
+       */
       public int getIndicesCount() {
         return indices_.size();
       }
+      /**
+       * <code>repeated bytes indices = 1;</code>
+       */
       public com.google.protobuf.ByteString getIndices(int index) {
         return indices_.get(index);
       }
+      /**
+       * <code>repeated bytes indices = 1;</code>
+       */
       public Builder setIndices(
           int index, com.google.protobuf.ByteString value) {
         if (value == null) {
@@ -3837,6 +5407,9 @@ public final class NigoriMessages {
         onChanged();
         return this;
       }
+      /**
+       * <code>repeated bytes indices = 1;</code>
+       */
       public Builder addIndices(com.google.protobuf.ByteString value) {
         if (value == null) {
     throw new NullPointerException();
@@ -3846,6 +5419,9 @@ public final class NigoriMessages {
         onChanged();
         return this;
       }
+      /**
+       * <code>repeated bytes indices = 1;</code>
+       */
       public Builder addAllIndices(
           java.lang.Iterable<? extends com.google.protobuf.ByteString> values) {
         ensureIndicesIsMutable();
@@ -3853,97 +5429,358 @@ public final class NigoriMessages {
         onChanged();
         return this;
       }
+      /**
+       * <code>repeated bytes indices = 1;</code>
+       */
       public Builder clearIndices() {
-        indices_ = java.util.Collections.emptyList();;
+        indices_ = java.util.Collections.emptyList();
         bitField0_ = (bitField0_ & ~0x00000001);
         onChanged();
         return this;
       }
-      
+
+      // optional bytes cursor = 2;
+      private com.google.protobuf.ByteString cursor_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes cursor = 2;</code>
+       */
+      public boolean hasCursor() {
+        return ((bitField0_ & 0x00000002) == 0x00000002);
+      }
+      /**
+       * <code>optional bytes cursor = 2;</code>
+       */
+      public com.google.protobuf.ByteString getCursor() {
+        return cursor_;
+      }
+      /**
+       * <code>optional bytes cursor = 2;</code>
+       */
+      public Builder setCursor(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000002;
+        cursor_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bytes cursor = 2;</code>
+       */
+      public Builder clearCursor() {
+        bitField0_ = (bitField0_ & ~0x00000002);
+        cursor_ = getDefaultInstance().getCursor();
+        onChanged();
+        return this;
+      }
+
       // @@protoc_insertion_point(builder_scope:nigori.GetIndicesResponse)
     }
-    
+
     static {
       defaultInstance = new GetIndicesResponse(true);
       defaultInstance.initFields();
     }
-    
+
     // @@protoc_insertion_point(class_scope:nigori.GetIndicesResponse)
   }
-  
+
   public interface GetRevisionsRequestOrBuilder
       extends com.google.protobuf.MessageOrBuilder {
-    
+
     // required .nigori.AuthenticateRequest auth = 1;
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     boolean hasAuth();
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth();
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder();
-    
+
     // required bytes key = 2;
+    /**
+     * <code>required bytes key = 2;</code>
+     */
     boolean hasKey();
+    /**
+     * <code>required bytes key = 2;</code>
+     */
     com.google.protobuf.ByteString getKey();
+
+    // optional bytes cursor = 3;
+    /**
+     * <code>optional bytes cursor = 3;</code>
+     */
+    boolean hasCursor();
+    /**
+     * <code>optional bytes cursor = 3;</code>
+     */
+    com.google.protobuf.ByteString getCursor();
+
+    // optional int32 limit = 4;
+    /**
+     * <code>optional int32 limit = 4;</code>
+     */
+    boolean hasLimit();
+    /**
+     * <code>optional int32 limit = 4;</code>
+     */
+    int getLimit();
+
+    // optional bytes fingerprint = 5;
+    /**
+     * <code>optional bytes fingerprint = 5;</code>
+     *
+     * <pre>
+     * only used for the first page
+     * </pre>
+     */
+    boolean hasFingerprint();
+    /**
+     * <code>optional bytes fingerprint = 5;</code>
+     *
+     * <pre>
+     * only used for the first page
+     * </pre>
+     */
+    com.google.protobuf.ByteString getFingerprint();
   }
+  /**
+   * Protobuf type {@code nigori.GetRevisionsRequest}
+   */
   public static final class GetRevisionsRequest extends
       com.google.protobuf.GeneratedMessage
       implements GetRevisionsRequestOrBuilder {
     // Use GetRevisionsRequest.newBuilder() to construct.
-    private GetRevisionsRequest(Builder builder) {
+    private GetRevisionsRequest(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
       super(builder);
+      this.unknownFields = builder.getUnknownFields();
     }
-    private GetRevisionsRequest(boolean noInit) {}
-    
+    private GetRevisionsRequest(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
     private static final GetRevisionsRequest defaultInstance;
     public static GetRevisionsRequest getDefaultInstance() {
       return defaultInstance;
     }
-    
+
     public GetRevisionsRequest getDefaultInstanceForType() {
       return defaultInstance;
     }
-    
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private GetRevisionsRequest(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 10: {
+              com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder subBuilder = null;
+              if (((bitField0_ & 0x00000001) == 0x00000001)) {
+                subBuilder = auth_.toBuilder();
+              }
+              auth_ = input.readMessage(com.google.nigori.common.NigoriMessages.AuthenticateRequest.PARSER, extensionRegistry);
+              if (subBuilder != null) {
+                subBuilder.mergeFrom(auth_);
+                auth_ = subBuilder.buildPartial();
+              }
+              bitField0_ |= 0x00000001;
+              break;
+            }
+            case 18: {
+              bitField0_ |= 0x00000002;
+              key_ = input.readBytes();
+              break;
+            }
+            case 26: {
+              bitField0_ |= 0x00000004;
+              cursor_ = input.readBytes();
+              break;
+            }
+            case 32: {
+              bitField0_ |= 0x00000008;
+              limit_ = input.readInt32();
+              break;
+            }
+            case 42: {
+              bitField0_ |= 0x00000010;
+              fingerprint_ = input.readBytes();
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
     public static final com.google.protobuf.Descriptors.Descriptor
         getDescriptor() {
       return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetRevisionsRequest_descriptor;
     }
-    
+
     protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
         internalGetFieldAccessorTable() {
-      return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetRevisionsRequest_fieldAccessorTable;
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetRevisionsRequest_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              com.google.nigori.common.NigoriMessages.GetRevisionsRequest.class, com.google.nigori.common.NigoriMessages.GetRevisionsRequest.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<GetRevisionsRequest> PARSER =
+        new com.google.protobuf.AbstractParser<GetRevisionsRequest>() {
+      public GetRevisionsRequest parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new GetRevisionsRequest(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<GetRevisionsRequest> getParserForType() {
+      return PARSER;
     }
-    
+
     private int bitField0_;
     // required .nigori.AuthenticateRequest auth = 1;
     public static final int AUTH_FIELD_NUMBER = 1;
     private com.google.nigori.common.NigoriMessages.AuthenticateRequest auth_;
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     public boolean hasAuth() {
       return ((bitField0_ & 0x00000001) == 0x00000001);
     }
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     public com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth() {
       return auth_;
     }
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     public com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder() {
       return auth_;
     }
-    
+
     // required bytes key = 2;
     public static final int KEY_FIELD_NUMBER = 2;
     private com.google.protobuf.ByteString key_;
+    /**
+     * <code>required bytes key = 2;</code>
+     */
     public boolean hasKey() {
       return ((bitField0_ & 0x00000002) == 0x00000002);
     }
+    /**
+     * <code>required bytes key = 2;</code>
+     */
     public com.google.protobuf.ByteString getKey() {
       return key_;
     }
-    
+
+    // optional bytes cursor = 3;
+    public static final int CURSOR_FIELD_NUMBER = 3;
+    private com.google.protobuf.ByteString cursor_;
+    /**
+     * <code>optional bytes cursor = 3;</code>
+     */
+    public boolean hasCursor() {
+      return ((bitField0_ & 0x00000004) == 0x00000004);
+    }
+    /**
+     * <code>optional bytes cursor = 3;</code>
+     */
+    public com.google.protobuf.ByteString getCursor() {
+      return cursor_;
+    }
+
+    // optional int32 limit = 4;
+    public static final int LIMIT_FIELD_NUMBER = 4;
+    private int limit_;
+    /**
+     * <code>optional int32 limit = 4;</code>
+     */
+    public boolean hasLimit() {
+      return ((bitField0_ & 0x00000008) == 0x00000008);
+    }
+    /**
+     * <code>optional int32 limit = 4;</code>
+     */
+    public int getLimit() {
+      return limit_;
+    }
+
+    // optional bytes fingerprint = 5;
+    public static final int FINGERPRINT_FIELD_NUMBER = 5;
+    private com.google.protobuf.ByteString fingerprint_;
+    /**
+     * <code>optional bytes fingerprint = 5;</code>
+     *
+     * <pre>
+     * only used for the first page
+     * </pre>
+     */
+    public boolean hasFingerprint() {
+      return ((bitField0_ & 0x00000010) == 0x00000010);
+    }
+    /**
+     * <code>optional bytes fingerprint = 5;</code>
+     *
+     * <pre>
+     * only used for the first page
+     * </pre>
+     */
+    public com.google.protobuf.ByteString getFingerprint() {
+      return fingerprint_;
+    }
+
     private void initFields() {
       auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
       key_ = com.google.protobuf.ByteString.EMPTY;
+      cursor_ = com.google.protobuf.ByteString.EMPTY;
+      limit_ = 0;
+      fingerprint_ = com.google.protobuf.ByteString.EMPTY;
     }
     private byte memoizedIsInitialized = -1;
     public final boolean isInitialized() {
       byte isInitialized = memoizedIsInitialized;
       if (isInitialized != -1) return isInitialized == 1;
-      
+
       if (!hasAuth()) {
         memoizedIsInitialized = 0;
         return false;
@@ -3959,7 +5796,7 @@ public final class NigoriMessages {
       memoizedIsInitialized = 1;
       return true;
     }
-    
+
     public void writeTo(com.google.protobuf.CodedOutputStream output)
                         throws java.io.IOException {
       getSerializedSize();
@@ -3969,14 +5806,23 @@ public final class NigoriMessages {
       if (((bitField0_ & 0x00000002) == 0x00000002)) {
         output.writeBytes(2, key_);
       }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        output.writeBytes(3, cursor_);
+      }
+      if (((bitField0_ & 0x00000008) == 0x00000008)) {
+        output.writeInt32(4, limit_);
+      }
+      if (((bitField0_ & 0x00000010) == 0x00000010)) {
+        output.writeBytes(5, fingerprint_);
+      }
       getUnknownFields().writeTo(output);
     }
-    
+
     private int memoizedSerializedSize = -1;
     public int getSerializedSize() {
       int size = memoizedSerializedSize;
       if (size != -1) return size;
-    
+
       size = 0;
       if (((bitField0_ & 0x00000001) == 0x00000001)) {
         size += com.google.protobuf.CodedOutputStream
@@ -3986,96 +5832,99 @@ public final class NigoriMessages {
         size += com.google.protobuf.CodedOutputStream
           .computeBytesSize(2, key_);
       }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(3, cursor_);
+      }
+      if (((bitField0_ & 0x00000008) == 0x00000008)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(4, limit_);
+      }
+      if (((bitField0_ & 0x00000010) == 0x00000010)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(5, fingerprint_);
+      }
       size += getUnknownFields().getSerializedSize();
       memoizedSerializedSize = size;
       return size;
     }
-    
+
+    private static final long serialVersionUID = 0L;
     @java.lang.Override
-    protected Object writeReplace() throws java.io.ObjectStreamException {
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
       return super.writeReplace();
     }
-    
+
     public static com.google.nigori.common.NigoriMessages.GetRevisionsRequest parseFrom(
         com.google.protobuf.ByteString data)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data).buildParsed();
+      return PARSER.parseFrom(data);
     }
     public static com.google.nigori.common.NigoriMessages.GetRevisionsRequest parseFrom(
         com.google.protobuf.ByteString data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(data, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.GetRevisionsRequest parseFrom(byte[] data)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data).buildParsed();
+      return PARSER.parseFrom(data);
     }
     public static com.google.nigori.common.NigoriMessages.GetRevisionsRequest parseFrom(
         byte[] data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(data, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.GetRevisionsRequest parseFrom(java.io.InputStream input)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input).buildParsed();
+      return PARSER.parseFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.GetRevisionsRequest parseFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(input, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.GetRevisionsRequest parseDelimitedFrom(java.io.InputStream input)
         throws java.io.IOException {
-      Builder builder = newBuilder();
-      if (builder.mergeDelimitedFrom(input)) {
-        return builder.buildParsed();
-      } else {
-        return null;
-      }
+      return PARSER.parseDelimitedFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.GetRevisionsRequest parseDelimitedFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      Builder builder = newBuilder();
-      if (builder.mergeDelimitedFrom(input, extensionRegistry)) {
-        return builder.buildParsed();
-      } else {
-        return null;
-      }
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.GetRevisionsRequest parseFrom(
         com.google.protobuf.CodedInputStream input)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input).buildParsed();
+      return PARSER.parseFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.GetRevisionsRequest parseFrom(
         com.google.protobuf.CodedInputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(input, extensionRegistry);
     }
-    
+
     public static Builder newBuilder() { return Builder.create(); }
     public Builder newBuilderForType() { return newBuilder(); }
     public static Builder newBuilder(com.google.nigori.common.NigoriMessages.GetRevisionsRequest prototype) {
       return newBuilder().mergeFrom(prototype);
     }
     public Builder toBuilder() { return newBuilder(this); }
-    
+
     @java.lang.Override
     protected Builder newBuilderForType(
         com.google.protobuf.GeneratedMessage.BuilderParent parent) {
       Builder builder = new Builder(parent);
       return builder;
     }
+    /**
+     * Protobuf type {@code nigori.GetRevisionsRequest}
+     */
     public static final class Builder extends
         com.google.protobuf.GeneratedMessage.Builder<Builder>
        implements com.google.nigori.common.NigoriMessages.GetRevisionsRequestOrBuilder {
@@ -4083,18 +5932,21 @@ public final class NigoriMessages {
           getDescriptor() {
         return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetRevisionsRequest_descriptor;
       }
-      
+
       protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
           internalGetFieldAccessorTable() {
-        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetRevisionsRequest_fieldAccessorTable;
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetRevisionsRequest_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                com.google.nigori.common.NigoriMessages.GetRevisionsRequest.class, com.google.nigori.common.NigoriMessages.GetRevisionsRequest.Builder.class);
       }
-      
+
       // Construct using com.google.nigori.common.NigoriMessages.GetRevisionsRequest.newBuilder()
       private Builder() {
         maybeForceBuilderInitialization();
       }
-      
-      private Builder(BuilderParent parent) {
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
         super(parent);
         maybeForceBuilderInitialization();
       }
@@ -4106,7 +5958,7 @@ public final class NigoriMessages {
       private static Builder create() {
         return new Builder();
       }
-      
+
       public Builder clear() {
         super.clear();
         if (authBuilder_ == null) {
@@ -4117,22 +5969,28 @@ public final class NigoriMessages {
         bitField0_ = (bitField0_ & ~0x00000001);
         key_ = com.google.protobuf.ByteString.EMPTY;
         bitField0_ = (bitField0_ & ~0x00000002);
+        cursor_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000004);
+        limit_ = 0;
+        bitField0_ = (bitField0_ & ~0x00000008);
+        fingerprint_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000010);
         return this;
       }
-      
+
       public Builder clone() {
         return create().mergeFrom(buildPartial());
       }
-      
+
       public com.google.protobuf.Descriptors.Descriptor
           getDescriptorForType() {
-        return com.google.nigori.common.NigoriMessages.GetRevisionsRequest.getDescriptor();
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetRevisionsRequest_descriptor;
       }
-      
+
       public com.google.nigori.common.NigoriMessages.GetRevisionsRequest getDefaultInstanceForType() {
         return com.google.nigori.common.NigoriMessages.GetRevisionsRequest.getDefaultInstance();
       }
-      
+
       public com.google.nigori.common.NigoriMessages.GetRevisionsRequest build() {
         com.google.nigori.common.NigoriMessages.GetRevisionsRequest result = buildPartial();
         if (!result.isInitialized()) {
@@ -4140,17 +5998,7 @@ public final class NigoriMessages {
         }
         return result;
       }
-      
-      private com.google.nigori.common.NigoriMessages.GetRevisionsRequest buildParsed()
-          throws com.google.protobuf.InvalidProtocolBufferException {
-        com.google.nigori.common.NigoriMessages.GetRevisionsRequest result = buildPartial();
-        if (!result.isInitialized()) {
-          throw newUninitializedMessageException(
-            result).asInvalidProtocolBufferException();
-        }
-        return result;
-      }
-      
+
       public com.google.nigori.common.NigoriMessages.GetRevisionsRequest buildPartial() {
         com.google.nigori.common.NigoriMessages.GetRevisionsRequest result = new com.google.nigori.common.NigoriMessages.GetRevisionsRequest(this);
         int from_bitField0_ = bitField0_;
@@ -4167,11 +6015,23 @@ public final class NigoriMessages {
           to_bitField0_ |= 0x00000002;
         }
         result.key_ = key_;
+        if (((from_bitField0_ & 0x00000004) == 0x00000004)) {
+          to_bitField0_ |= 0x00000004;
+        }
+        result.cursor_ = cursor_;
+        if (((from_bitField0_ & 0x00000008) == 0x00000008)) {
+          to_bitField0_ |= 0x00000008;
+        }
+        result.limit_ = limit_;
+        if (((from_bitField0_ & 0x00000010) == 0x00000010)) {
+          to_bitField0_ |= 0x00000010;
+        }
+        result.fingerprint_ = fingerprint_;
         result.bitField0_ = to_bitField0_;
         onBuilt();
         return result;
       }
-      
+
       public Builder mergeFrom(com.google.protobuf.Message other) {
         if (other instanceof com.google.nigori.common.NigoriMessages.GetRevisionsRequest) {
           return mergeFrom((com.google.nigori.common.NigoriMessages.GetRevisionsRequest)other);
@@ -4180,7 +6040,7 @@ public final class NigoriMessages {
           return this;
         }
       }
-      
+
       public Builder mergeFrom(com.google.nigori.common.NigoriMessages.GetRevisionsRequest other) {
         if (other == com.google.nigori.common.NigoriMessages.GetRevisionsRequest.getDefaultInstance()) return this;
         if (other.hasAuth()) {
@@ -4189,10 +6049,19 @@ public final class NigoriMessages {
         if (other.hasKey()) {
           setKey(other.getKey());
         }
+        if (other.hasCursor()) {
+          setCursor(other.getCursor());
+        }
+        if (other.hasLimit()) {
+          setLimit(other.getLimit());
+        }
+        if (other.hasFingerprint()) {
+          setFingerprint(other.getFingerprint());
+        }
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
-      
+
       public final boolean isInitialized() {
         if (!hasAuth()) {
           
@@ -4208,57 +6077,39 @@ public final class NigoriMessages {
         }
         return true;
       }
-      
+
       public Builder mergeFrom(
           com.google.protobuf.CodedInputStream input,
           com.google.protobuf.ExtensionRegistryLite extensionRegistry)
           throws java.io.IOException {
-        com.google.protobuf.UnknownFieldSet.Builder unknownFields =
-          com.google.protobuf.UnknownFieldSet.newBuilder(
-            this.getUnknownFields());
-        while (true) {
-          int tag = input.readTag();
-          switch (tag) {
-            case 0:
-              this.setUnknownFields(unknownFields.build());
-              onChanged();
-              return this;
-            default: {
-              if (!parseUnknownField(input, unknownFields,
-                                     extensionRegistry, tag)) {
-                this.setUnknownFields(unknownFields.build());
-                onChanged();
-                return this;
-              }
-              break;
-            }
-            case 10: {
-              com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder subBuilder = com.google.nigori.common.NigoriMessages.AuthenticateRequest.newBuilder();
-              if (hasAuth()) {
-                subBuilder.mergeFrom(getAuth());
-              }
-              input.readMessage(subBuilder, extensionRegistry);
-              setAuth(subBuilder.buildPartial());
-              break;
-            }
-            case 18: {
-              bitField0_ |= 0x00000002;
-              key_ = input.readBytes();
-              break;
-            }
+        com.google.nigori.common.NigoriMessages.GetRevisionsRequest parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (com.google.nigori.common.NigoriMessages.GetRevisionsRequest) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
           }
         }
+        return this;
       }
-      
       private int bitField0_;
-      
+
       // required .nigori.AuthenticateRequest auth = 1;
       private com.google.nigori.common.NigoriMessages.AuthenticateRequest auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
       private com.google.protobuf.SingleFieldBuilder<
           com.google.nigori.common.NigoriMessages.AuthenticateRequest, com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder, com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder> authBuilder_;
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public boolean hasAuth() {
         return ((bitField0_ & 0x00000001) == 0x00000001);
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth() {
         if (authBuilder_ == null) {
           return auth_;
@@ -4266,6 +6117,9 @@ public final class NigoriMessages {
           return authBuilder_.getMessage();
         }
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public Builder setAuth(com.google.nigori.common.NigoriMessages.AuthenticateRequest value) {
         if (authBuilder_ == null) {
           if (value == null) {
@@ -4279,6 +6133,9 @@ public final class NigoriMessages {
         bitField0_ |= 0x00000001;
         return this;
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public Builder setAuth(
           com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder builderForValue) {
         if (authBuilder_ == null) {
@@ -4290,6 +6147,9 @@ public final class NigoriMessages {
         bitField0_ |= 0x00000001;
         return this;
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public Builder mergeAuth(com.google.nigori.common.NigoriMessages.AuthenticateRequest value) {
         if (authBuilder_ == null) {
           if (((bitField0_ & 0x00000001) == 0x00000001) &&
@@ -4306,6 +6166,9 @@ public final class NigoriMessages {
         bitField0_ |= 0x00000001;
         return this;
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public Builder clearAuth() {
         if (authBuilder_ == null) {
           auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
@@ -4316,11 +6179,17 @@ public final class NigoriMessages {
         bitField0_ = (bitField0_ & ~0x00000001);
         return this;
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder getAuthBuilder() {
         bitField0_ |= 0x00000001;
         onChanged();
         return getAuthFieldBuilder().getBuilder();
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder() {
         if (authBuilder_ != null) {
           return authBuilder_.getMessageOrBuilder();
@@ -4328,6 +6197,9 @@ public final class NigoriMessages {
           return auth_;
         }
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       private com.google.protobuf.SingleFieldBuilder<
           com.google.nigori.common.NigoriMessages.AuthenticateRequest, com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder, com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder> 
           getAuthFieldBuilder() {
@@ -4341,15 +6213,24 @@ public final class NigoriMessages {
         }
         return authBuilder_;
       }
-      
+
       // required bytes key = 2;
       private com.google.protobuf.ByteString key_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>required bytes key = 2;</code>
+       */
       public boolean hasKey() {
         return ((bitField0_ & 0x00000002) == 0x00000002);
       }
+      /**
+       * <code>required bytes key = 2;</code>
+       */
       public com.google.protobuf.ByteString getKey() {
         return key_;
       }
+      /**
+       * <code>required bytes key = 2;</code>
+       */
       public Builder setKey(com.google.protobuf.ByteString value) {
         if (value == null) {
     throw new NullPointerException();
@@ -4359,102 +6240,446 @@ public final class NigoriMessages {
         onChanged();
         return this;
       }
+      /**
+       * <code>required bytes key = 2;</code>
+       */
       public Builder clearKey() {
         bitField0_ = (bitField0_ & ~0x00000002);
         key_ = getDefaultInstance().getKey();
         onChanged();
         return this;
       }
-      
+
+      // optional bytes cursor = 3;
+      private com.google.protobuf.ByteString cursor_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes cursor = 3;</code>
+       */
+      public boolean hasCursor() {
+        return ((bitField0_ & 0x00000004) == 0x00000004);
+      }
+      /**
+       * <code>optional bytes cursor = 3;</code>
+       */
+      public com.google.protobuf.ByteString getCursor() {
+        return cursor_;
+      }
+      /**
+       * <code>optional bytes cursor = 3;</code>
+       */
+      public Builder setCursor(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000004;
+        cursor_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bytes cursor = 3;</code>
+       */
+      public Builder clearCursor() {
+        bitField0_ = (bitField0_ & ~0x00000004);
+        cursor_ = getDefaultInstance().getCursor();
+        onChanged();
+        return this;
+      }
+
+      // optional int32 limit = 4;
+      private int limit_ ;
+      /**
+       * <code>optional int32 limit = 4;</code>
+       */
+      public boolean hasLimit() {
+        return ((bitField0_ & 0x00000008) == 0x00000008);
+      }
+      /**
+       * <code>optional int32 limit = 4;</code>
+       */
+      public int getLimit() {
+        return limit_;
+      }
+      /**
+       * <code>optional int32 limit = 4;</code>
+       */
+      public Builder setLimit(int value) {
+        bitField0_ |= 0x00000008;
+        limit_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional int32 limit = 4;</code>
+       */
+      public Builder clearLimit() {
+        bitField0_ = (bitField0_ & ~0x00000008);
+        limit_ = 0;
+        onChanged();
+        return this;
+      }
+
+      // optional bytes fingerprint = 5;
+      private com.google.protobuf.ByteString fingerprint_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes fingerprint = 5;</code>
+       *
+       * <pre>
+       * only used for the first page
+       * </pre>
+       */
+      public boolean hasFingerprint() {
+        return ((bitField0_ & 0x00000010) == 0x00000010);
+      }
+      /**
+       * <code>optional bytes fingerprint = 5;</code>
+       *
+       * <pre>
+       * only used for the first page
+       * </pre>
+       */
+      public com.google.protobuf.ByteString getFingerprint() {
+        return fingerprint_;
+      }
+      /**
+       * <code>optional bytes fingerprint = 5;</code>
+       *
+       * <pre>
+       * only used for the first page
+       * </pre>
+       */
+      public Builder setFingerprint(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000010;
+        fingerprint_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bytes fingerprint = 5;</code>
+       *
+       * <pre>
+       * only used for the first page
+       * </pre>
+       */
+      public Builder clearFingerprint() {
+        bitField0_ = (bitField0_ & ~0x00000010);
+        fingerprint_ = getDefaultInstance().getFingerprint();
+        onChanged();
+        return this;
+      }
+
       // @@protoc_insertion_point(builder_scope:nigori.GetRevisionsRequest)
     }
-    
+
     static {
       defaultInstance = new GetRevisionsRequest(true);
       defaultInstance.initFields();
     }
-    
+
     // @@protoc_insertion_point(class_scope:nigori.GetRevisionsRequest)
   }
-  
+
   public interface GetRevisionsResponseOrBuilder
       extends com.google.protobuf.MessageOrBuilder {
-    
+
     // repeated bytes revisions = 1;
+    /**
+     * <code>repeated bytes revisions = 1;</code>
+     */
     java.util.List<com.google.protobuf.ByteString> getRevisionsList();
+    /**
+     * <code>repeated bytes revisions = 1;</code>
+     */
     int getRevisionsCount();
+    /**
+     * <code>repeated bytes revisions = 1;</code>
+     */
     com.google.protobuf.ByteString getRevisions(int index);
-    
+
     // optional bytes key = 2;
+    /**
+     * <code>optional bytes key = 2;</code>
+     */
     boolean hasKey();
+    /**
+     * <code>optional bytes key = 2;</code>
+     */
     com.google.protobuf.ByteString getKey();
+
+    // optional bytes cursor = 3;
+    /**
+     * <code>optional bytes cursor = 3;</code>
+     */
+    boolean hasCursor();
+    /**
+     * <code>optional bytes cursor = 3;</code>
+     */
+    com.google.protobuf.ByteString getCursor();
+
+    // optional bytes fingerprint = 4;
+    /**
+     * <code>optional bytes fingerprint = 4;</code>
+     *
+     * <pre>
+     * only when all the revisions fit in the first page
+     * </pre>
+     */
+    boolean hasFingerprint();
+    /**
+     * <code>optional bytes fingerprint = 4;</code>
+     *
+     * <pre>
+     * only when all the revisions fit in the first page
+     * </pre>
+     */
+    com.google.protobuf.ByteString getFingerprint();
+
+    // optional bool not_modified = 5;
+    /**
+     * <code>optional bool not_modified = 5;</code>
+     */
+    boolean hasNotModified();
+    /**
+     * <code>optional bool not_modified = 5;</code>
+     */
+    boolean getNotModified();
   }
+  /**
+   * Protobuf type {@code nigori.GetRevisionsResponse}
+   */
   public static final class GetRevisionsResponse extends
       com.google.protobuf.GeneratedMessage
       implements GetRevisionsResponseOrBuilder {
     // Use GetRevisionsResponse.newBuilder() to construct.
-    private GetRevisionsResponse(Builder builder) {
+    private GetRevisionsResponse(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
       super(builder);
+      this.unknownFields = builder.getUnknownFields();
     }
-    private GetRevisionsResponse(boolean noInit) {}
-    
+    private GetRevisionsResponse(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
     private static final GetRevisionsResponse defaultInstance;
     public static GetRevisionsResponse getDefaultInstance() {
       return defaultInstance;
     }
-    
+
     public GetRevisionsResponse getDefaultInstanceForType() {
       return defaultInstance;
     }
-    
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private GetRevisionsResponse(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 10: {
+              if (!((mutable_bitField0_ & 0x00000001) == 0x00000001)) {
+                revisions_ = new java.util.ArrayList<com.google.protobuf.ByteString>();
+                mutable_bitField0_ |= 0x00000001;
+              }
+              revisions_.add(input.readBytes());
+              break;
+            }
+            case 18: {
+              bitField0_ |= 0x00000001;
+              key_ = input.readBytes();
+              break;
+            }
+            case 26: {
+              bitField0_ |= 0x00000002;
+              cursor_ = input.readBytes();
+              break;
+            }
+            case 34: {
+              bitField0_ |= 0x00000004;
+              fingerprint_ = input.readBytes();
+              break;
+            }
+            case 40: {
+              bitField0_ |= 0x00000008;
+              notModified_ = input.readBool();
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        if (((mutable_bitField0_ & 0x00000001) == 0x00000001)) {
+          revisions_ = java.util.Collections.unmodifiableList(revisions_);
+        }
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
     public static final com.google.protobuf.Descriptors.Descriptor
         getDescriptor() {
       return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetRevisionsResponse_descriptor;
     }
-    
+
     protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
         internalGetFieldAccessorTable() {
-      return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetRevisionsResponse_fieldAccessorTable;
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetRevisionsResponse_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              com.google.nigori.common.NigoriMessages.GetRevisionsResponse.class, com.google.nigori.common.NigoriMessages.GetRevisionsResponse.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<GetRevisionsResponse> PARSER =
+        new com.google.protobuf.AbstractParser<GetRevisionsResponse>() {
+      public GetRevisionsResponse parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new GetRevisionsResponse(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<GetRevisionsResponse> getParserForType() {
+      return PARSER;
     }
-    
+
     private int bitField0_;
     // repeated bytes revisions = 1;
     public static final int REVISIONS_FIELD_NUMBER = 1;
     private java.util.List<com.google.protobuf.ByteString> revisions_;
+    /**
+     * <code>repeated bytes revisions = 1;</code>
+     */
     public java.util.List<com.google.protobuf.ByteString>
         getRevisionsList() {
       return revisions_;
     }
+    /**
+     * <code>repeated bytes revisions = 1;</code>
+     */
     public int getRevisionsCount() {
       return revisions_.size();
     }
+    /**
+     * <code>repeated bytes revisions = 1;</code>
+     */
     public com.google.protobuf.ByteString getRevisions(int index) {
       return revisions_.get(index);
     }
-    
+
     // optional bytes key = 2;
     public static final int KEY_FIELD_NUMBER = 2;
     private com.google.protobuf.ByteString key_;
+    /**
+     * <code>optional bytes key = 2;</code>
+     */
     public boolean hasKey() {
       return ((bitField0_ & 0x00000001) == 0x00000001);
     }
+    /**
+     * <code>optional bytes key = 2;</code>
+     */
     public com.google.protobuf.ByteString getKey() {
       return key_;
     }
-    
+
+    // optional bytes cursor = 3;
+    public static final int CURSOR_FIELD_NUMBER = 3;
+    private com.google.protobuf.ByteString cursor_;
+    /**
+     * <code>optional bytes cursor = 3;</code>
+     */
+    public boolean hasCursor() {
+      return ((bitField0_ & 0x00000002) == 0x00000002);
+    }
+    /**
+     * <code>optional bytes cursor = 3;</code>
+     */
+    public com.google.protobuf.ByteString getCursor() {
+      return cursor_;
+    }
+
+    // optional bytes fingerprint = 4;
+    public static final int FINGERPRINT_FIELD_NUMBER = 4;
+    private com.google.protobuf.ByteString fingerprint_;
+    /**
+     * <code>optional bytes fingerprint = 4;</code>
+     *
+     * <pre>
+     * only when all the revisions fit in the first page
+     * </pre>
+     */
+    public boolean hasFingerprint() {
+      return ((bitField0_ & 0x00000004) == 0x00000004);
+    }
+    /**
+     * <code>optional bytes fingerprint = 4;</code>
+     *
+     * <pre>
+     * only when all the revisions fit in the first page
+     * </pre>
+     */
+    public com.google.protobuf.ByteString getFingerprint() {
+      return fingerprint_;
+    }
+
+    // optional bool not_modified = 5;
+    public static final int NOT_MODIFIED_FIELD_NUMBER = 5;
+    private boolean notModified_;
+    /**
+     * <code>optional bool not_modified = 5;</code>
+     */
+    public boolean hasNotModified() {
+      return ((bitField0_ & 0x00000008) == 0x00000008);
+    }
+    /**
+     * <code>optional bool not_modified = 5;</code>
+     */
+    public boolean getNotModified() {
+      return notModified_;
+    }
+
     private void initFields() {
-      revisions_ = java.util.Collections.emptyList();;
+      revisions_ = java.util.Collections.emptyList();
       key_ = com.google.protobuf.ByteString.EMPTY;
+      cursor_ = com.google.protobuf.ByteString.EMPTY;
+      fingerprint_ = com.google.protobuf.ByteString.EMPTY;
+      notModified_ = false;
     }
     private byte memoizedIsInitialized = -1;
     public final boolean isInitialized() {
       byte isInitialized = memoizedIsInitialized;
       if (isInitialized != -1) return isInitialized == 1;
-      
+
       memoizedIsInitialized = 1;
       return true;
     }
-    
+
     public void writeTo(com.google.protobuf.CodedOutputStream output)
                         throws java.io.IOException {
       getSerializedSize();
@@ -4464,14 +6689,23 @@ public final class NigoriMessages {
       if (((bitField0_ & 0x00000001) == 0x00000001)) {
         output.writeBytes(2, key_);
       }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        output.writeBytes(3, cursor_);
+      }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        output.writeBytes(4, fingerprint_);
+      }
+      if (((bitField0_ & 0x00000008) == 0x00000008)) {
+        output.writeBool(5, notModified_);
+      }
       getUnknownFields().writeTo(output);
     }
-    
+
     private int memoizedSerializedSize = -1;
     public int getSerializedSize() {
       int size = memoizedSerializedSize;
       if (size != -1) return size;
-    
+
       size = 0;
       {
         int dataSize = 0;
@@ -4486,96 +6720,99 @@ public final class NigoriMessages {
         size += com.google.protobuf.CodedOutputStream
           .computeBytesSize(2, key_);
       }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(3, cursor_);
+      }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(4, fingerprint_);
+      }
+      if (((bitField0_ & 0x00000008) == 0x00000008)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBoolSize(5, notModified_);
+      }
       size += getUnknownFields().getSerializedSize();
       memoizedSerializedSize = size;
       return size;
     }
-    
+
+    private static final long serialVersionUID = 0L;
     @java.lang.Override
-    protected Object writeReplace() throws java.io.ObjectStreamException {
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
       return super.writeReplace();
     }
-    
+
     public static com.google.nigori.common.NigoriMessages.GetRevisionsResponse parseFrom(
         com.google.protobuf.ByteString data)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data).buildParsed();
+      return PARSER.parseFrom(data);
     }
     public static com.google.nigori.common.NigoriMessages.GetRevisionsResponse parseFrom(
         com.google.protobuf.ByteString data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(data, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.GetRevisionsResponse parseFrom(byte[] data)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data).buildParsed();
+      return PARSER.parseFrom(data);
     }
     public static com.google.nigori.common.NigoriMessages.GetRevisionsResponse parseFrom(
         byte[] data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(data, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.GetRevisionsResponse parseFrom(java.io.InputStream input)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input).buildParsed();
+      return PARSER.parseFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.GetRevisionsResponse parseFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(input, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.GetRevisionsResponse parseDelimitedFrom(java.io.InputStream input)
         throws java.io.IOException {
-      Builder builder = newBuilder();
-      if (builder.mergeDelimitedFrom(input)) {
-        return builder.buildParsed();
-      } else {
-        return null;
-      }
+      return PARSER.parseDelimitedFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.GetRevisionsResponse parseDelimitedFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      Builder builder = newBuilder();
-      if (builder.mergeDelimitedFrom(input, extensionRegistry)) {
-        return builder.buildParsed();
-      } else {
-        return null;
-      }
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.GetRevisionsResponse parseFrom(
         com.google.protobuf.CodedInputStream input)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input).buildParsed();
+      return PARSER.parseFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.GetRevisionsResponse parseFrom(
         com.google.protobuf.CodedInputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(input, extensionRegistry);
     }
-    
+
     public static Builder newBuilder() { return Builder.create(); }
     public Builder newBuilderForType() { return newBuilder(); }
     public static Builder newBuilder(com.google.nigori.common.NigoriMessages.GetRevisionsResponse prototype) {
       return newBuilder().mergeFrom(prototype);
     }
     public Builder toBuilder() { return newBuilder(this); }
-    
+
     @java.lang.Override
     protected Builder newBuilderForType(
         com.google.protobuf.GeneratedMessage.BuilderParent parent) {
       Builder builder = new Builder(parent);
       return builder;
     }
+    /**
+     * Protobuf type {@code nigori.GetRevisionsResponse}
+     */
     public static final class Builder extends
         com.google.protobuf.GeneratedMessage.Builder<Builder>
        implements com.google.nigori.common.NigoriMessages.GetRevisionsResponseOrBuilder {
@@ -4583,18 +6820,21 @@ public final class NigoriMessages {
           getDescriptor() {
         return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetRevisionsResponse_descriptor;
       }
-      
+
       protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
           internalGetFieldAccessorTable() {
-        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetRevisionsResponse_fieldAccessorTable;
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetRevisionsResponse_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                com.google.nigori.common.NigoriMessages.GetRevisionsResponse.class, com.google.nigori.common.NigoriMessages.GetRevisionsResponse.Builder.class);
       }
-      
+
       // Construct using com.google.nigori.common.NigoriMessages.GetRevisionsResponse.newBuilder()
       private Builder() {
         maybeForceBuilderInitialization();
       }
-      
-      private Builder(BuilderParent parent) {
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
         super(parent);
         maybeForceBuilderInitialization();
       }
@@ -4605,29 +6845,35 @@ public final class NigoriMessages {
       private static Builder create() {
         return new Builder();
       }
-      
+
       public Builder clear() {
         super.clear();
-        revisions_ = java.util.Collections.emptyList();;
+        revisions_ = java.util.Collections.emptyList();
         bitField0_ = (bitField0_ & ~0x00000001);
         key_ = com.google.protobuf.ByteString.EMPTY;
         bitField0_ = (bitField0_ & ~0x00000002);
+        cursor_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000004);
+        fingerprint_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000008);
+        notModified_ = false;
+        bitField0_ = (bitField0_ & ~0x00000010);
         return this;
       }
-      
+
       public Builder clone() {
         return create().mergeFrom(buildPartial());
       }
-      
+
       public com.google.protobuf.Descriptors.Descriptor
           getDescriptorForType() {
-        return com.google.nigori.common.NigoriMessages.GetRevisionsResponse.getDescriptor();
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetRevisionsResponse_descriptor;
       }
-      
+
       public com.google.nigori.common.NigoriMessages.GetRevisionsResponse getDefaultInstanceForType() {
         return com.google.nigori.common.NigoriMessages.GetRevisionsResponse.getDefaultInstance();
       }
-      
+
       public com.google.nigori.common.NigoriMessages.GetRevisionsResponse build() {
         com.google.nigori.common.NigoriMessages.GetRevisionsResponse result = buildPartial();
         if (!result.isInitialized()) {
@@ -4635,17 +6881,7 @@ public final class NigoriMessages {
         }
         return result;
       }
-      
-      private com.google.nigori.common.NigoriMessages.GetRevisionsResponse buildParsed()
-          throws com.google.protobuf.InvalidProtocolBufferException {
-        com.google.nigori.common.NigoriMessages.GetRevisionsResponse result = buildPartial();
-        if (!result.isInitialized()) {
-          throw newUninitializedMessageException(
-            result).asInvalidProtocolBufferException();
-        }
-        return result;
-      }
-      
+
       public com.google.nigori.common.NigoriMessages.GetRevisionsResponse buildPartial() {
         com.google.nigori.common.NigoriMessages.GetRevisionsResponse result = new com.google.nigori.common.NigoriMessages.GetRevisionsResponse(this);
         int from_bitField0_ = bitField0_;
@@ -4659,11 +6895,23 @@ public final class NigoriMessages {
           to_bitField0_ |= 0x00000001;
         }
         result.key_ = key_;
+        if (((from_bitField0_ & 0x00000004) == 0x00000004)) {
+          to_bitField0_ |= 0x00000002;
+        }
+        result.cursor_ = cursor_;
+        if (((from_bitField0_ & 0x00000008) == 0x00000008)) {
+          to_bitField0_ |= 0x00000004;
+        }
+        result.fingerprint_ = fingerprint_;
+        if (((from_bitField0_ & 0x00000010) == 0x00000010)) {
+          to_bitField0_ |= 0x00000008;
+        }
+        result.notModified_ = notModified_;
         result.bitField0_ = to_bitField0_;
         onBuilt();
         return result;
       }
-      
+
       public Builder mergeFrom(com.google.protobuf.Message other) {
         if (other instanceof com.google.nigori.common.NigoriMessages.GetRevisionsResponse) {
           return mergeFrom((com.google.nigori.common.NigoriMessages.GetRevisionsResponse)other);
@@ -4672,7 +6920,7 @@ public final class NigoriMessages {
           return this;
         }
       }
-      
+
       public Builder mergeFrom(com.google.nigori.common.NigoriMessages.GetRevisionsResponse other) {
         if (other == com.google.nigori.common.NigoriMessages.GetRevisionsResponse.getDefaultInstance()) return this;
         if (!other.revisions_.isEmpty()) {
@@ -4688,71 +6936,72 @@ public final class NigoriMessages {
         if (other.hasKey()) {
           setKey(other.getKey());
         }
+        if (other.hasCursor()) {
+          setCursor(other.getCursor());
+        }
+        if (other.hasFingerprint()) {
+          setFingerprint(other.getFingerprint());
+        }
+        if (other.hasNotModified()) {
+          setNotModified(other.getNotModified());
+        }
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
-      
+
       public final boolean isInitialized() {
         return true;
       }
-      
+
       public Builder mergeFrom(
           com.google.protobuf.CodedInputStream input,
           com.google.protobuf.ExtensionRegistryLite extensionRegistry)
           throws java.io.IOException {
-        com.google.protobuf.UnknownFieldSet.Builder unknownFields =
-          com.google.protobuf.UnknownFieldSet.newBuilder(
-            this.getUnknownFields());
-        while (true) {
-          int tag = input.readTag();
-          switch (tag) {
-            case 0:
-              this.setUnknownFields(unknownFields.build());
-              onChanged();
-              return this;
-            default: {
-              if (!parseUnknownField(input, unknownFields,
-                                     extensionRegistry, tag)) {
-                this.setUnknownFields(unknownFields.build());
-                onChanged();
-                return this;
-              }
-              break;
-            }
-            case 10: {
-              ensureRevisionsIsMutable();
-              revisions_.add(input.readBytes());
-              break;
-            }
-            case 18: {
-              bitField0_ |= 0x00000002;
-              key_ = input.readBytes();
-              break;
-            }
+        com.google.nigori.common.NigoriMessages.GetRevisionsResponse parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (com.google.nigori.common.NigoriMessages.GetRevisionsResponse) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
           }
         }
+        return this;
       }
-      
       private int bitField0_;
-      
+
       // repeated bytes revisions = 1;
-      private java.util.List<com.google.protobuf.ByteString> revisions_ = java.util.Collections.emptyList();;
+      private java.util.List<com.google.protobuf.ByteString> revisions_ = java.util.Collections.emptyList();
       private void ensureRevisionsIsMutable() {
         if (!((bitField0_ & 0x00000001) == 0x00000001)) {
           revisions_ = new java.util.ArrayList<com.google.protobuf.ByteString>(revisions_);
           bitField0_ |= 0x00000001;
          }
       }
+      /**
+       * <code>repeated bytes revisions = 1;</code>
+       */
       public java.util.List<com.google.protobuf.ByteString>
           getRevisionsList() {
         return java.util.Collections.unmodifiableList(revisions_);
       }
+      /**
+       * <code>repeated bytes revisions = 1;</code>
+       */
       public int getRevisionsCount() {
         return revisions_.size();
       }
+      /**
+       * <code>repeated bytes revisions = 1;</code>
+       */
       public com.google.protobuf.ByteString getRevisions(int index) {
         return revisions_.get(index);
       }
+      /**
+       * <code>repeated bytes revisions = 1;</code>
+       */
       public Builder setRevisions(
           int index, com.google.protobuf.ByteString value) {
         if (value == null) {
@@ -4763,6 +7012,9 @@ public final class NigoriMessages {
         onChanged();
         return this;
       }
+      /**
+       * <code>repeated bytes revisions = 1;</code>
+       */
       public Builder addRevisions(com.google.protobuf.ByteString value) {
         if (value == null) {
     throw new NullPointerException();
@@ -4772,6 +7024,9 @@ public final class NigoriMessages {
         onChanged();
         return this;
       }
+      /**
+       * <code>repeated bytes revisions = 1;</code>
+       */
       public Builder addAllRevisions(
           java.lang.Iterable<? extends com.google.protobuf.ByteString> values) {
         ensureRevisionsIsMutable();
@@ -4779,21 +7034,33 @@ public final class NigoriMessages {
         onChanged();
         return this;
       }
+      /**
+       * <code>repeated bytes revisions = 1;</code>
+       */
       public Builder clearRevisions() {
-        revisions_ = java.util.Collections.emptyList();;
+        revisions_ = java.util.Collections.emptyList();
         bitField0_ = (bitField0_ & ~0x00000001);
         onChanged();
         return this;
       }
-      
+
       // optional bytes key = 2;
       private com.google.protobuf.ByteString key_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes key = 2;</code>
+       */
       public boolean hasKey() {
         return ((bitField0_ & 0x00000002) == 0x00000002);
       }
+      /**
+       * <code>optional bytes key = 2;</code>
+       */
       public com.google.protobuf.ByteString getKey() {
         return key_;
       }
+      /**
+       * <code>optional bytes key = 2;</code>
+       */
       public Builder setKey(com.google.protobuf.ByteString value) {
         if (value == null) {
     throw new NullPointerException();
@@ -4803,116 +7070,384 @@ public final class NigoriMessages {
         onChanged();
         return this;
       }
+      /**
+       * <code>optional bytes key = 2;</code>
+       */
       public Builder clearKey() {
         bitField0_ = (bitField0_ & ~0x00000002);
         key_ = getDefaultInstance().getKey();
         onChanged();
         return this;
       }
-      
-      // @@protoc_insertion_point(builder_scope:nigori.GetRevisionsResponse)
-    }
-    
-    static {
-      defaultInstance = new GetRevisionsResponse(true);
-      defaultInstance.initFields();
-    }
-    
-    // @@protoc_insertion_point(class_scope:nigori.GetRevisionsResponse)
-  }
-  
-  public interface PutRequestOrBuilder
-      extends com.google.protobuf.MessageOrBuilder {
-    
-    // required .nigori.AuthenticateRequest auth = 1;
-    boolean hasAuth();
-    com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth();
-    com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder();
-    
-    // required bytes key = 2;
-    boolean hasKey();
-    com.google.protobuf.ByteString getKey();
-    
-    // required bytes revision = 3;
-    boolean hasRevision();
-    com.google.protobuf.ByteString getRevision();
-    
-    // required bytes value = 4;
-    boolean hasValue();
-    com.google.protobuf.ByteString getValue();
+
+      // optional bytes cursor = 3;
+      private com.google.protobuf.ByteString cursor_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes cursor = 3;</code>
+       */
+      public boolean hasCursor() {
+        return ((bitField0_ & 0x00000004) == 0x00000004);
+      }
+      /**
+       * <code>optional bytes cursor = 3;</code>
+       */
+      public com.google.protobuf.ByteString getCursor() {
+        return cursor_;
+      }
+      /**
+       * <code>optional bytes cursor = 3;</code>
+       */
+      public Builder setCursor(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
   }
-  public static final class PutRequest extends
-      com.google.protobuf.GeneratedMessage
-      implements PutRequestOrBuilder {
-    // Use PutRequest.newBuilder() to construct.
-    private PutRequest(Builder builder) {
-      super(builder);
+  bitField0_ |= 0x00000004;
+        cursor_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bytes cursor = 3;</code>
+       */
+      public Builder clearCursor() {
+        bitField0_ = (bitField0_ & ~0x00000004);
+        cursor_ = getDefaultInstance().getCursor();
+        onChanged();
+        return this;
+      }
+
+      // optional bytes fingerprint = 4;
+      private com.google.protobuf.ByteString fingerprint_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes fingerprint = 4;</code>
+       *
+       * <pre>
+       * only when all the revisions fit in the first page
+       * </pre>
+       */
+      public boolean hasFingerprint() {
+        return ((bitField0_ & 0x00000008) == 0x00000008);
+      }
+      /**
+       * <code>optional bytes fingerprint = 4;</code>
+       *
+       * <pre>
+       * only when all the revisions fit in the first page
+       * </pre>
+       */
+      public com.google.protobuf.ByteString getFingerprint() {
+        return fingerprint_;
+      }
+      /**
+       * <code>optional bytes fingerprint = 4;</code>
+       *
+       * <pre>
+       * only when all the revisions fit in the first page
+       * </pre>
+       */
+      public Builder setFingerprint(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000008;
+        fingerprint_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bytes fingerprint = 4;</code>
+       *
+       * <pre>
+       * only when all the revisions fit in the first page
+       * </pre>
+       */
+      public Builder clearFingerprint() {
+        bitField0_ = (bitField0_ & ~0x00000008);
+        fingerprint_ = getDefaultInstance().getFingerprint();
+        onChanged();
+        return this;
+      }
+
+      // optional bool not_modified = 5;
+      private boolean notModified_ ;
+      /**
+       * <code>optional bool not_modified = 5;</code>
+       */
+      public boolean hasNotModified() {
+        return ((bitField0_ & 0x00000010) == 0x00000010);
+      }
+      /**
+       * <code>optional bool not_modified = 5;</code>
+       */
+      public boolean getNotModified() {
+        return notModified_;
+      }
+      /**
+       * <code>optional bool not_modified = 5;</code>
+       */
+      public Builder setNotModified(boolean value) {
+        bitField0_ |= 0x00000010;
+        notModified_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bool not_modified = 5;</code>
+       */
+      public Builder clearNotModified() {
+        bitField0_ = (bitField0_ & ~0x00000010);
+        notModified_ = false;
+        onChanged();
+        return this;
+      }
+
+      // @@protoc_insertion_point(builder_scope:nigori.GetRevisionsResponse)
+    }
+
+    static {
+      defaultInstance = new GetRevisionsResponse(true);
+      defaultInstance.initFields();
+    }
+
+    // @@protoc_insertion_point(class_scope:nigori.GetRevisionsResponse)
+  }
+
+  public interface PutRequestOrBuilder
+      extends com.google.protobuf.MessageOrBuilder {
+
+    // required .nigori.AuthenticateRequest auth = 1;
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
+    boolean hasAuth();
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
+    com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth();
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
+    com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder();
+
+    // required bytes key = 2;
+    /**
+     * <code>required bytes key = 2;</code>
+     */
+    boolean hasKey();
+    /**
+     * <code>required bytes key = 2;</code>
+     */
+    com.google.protobuf.ByteString getKey();
+
+    // required bytes revision = 3;
+    /**
+     * <code>required bytes revision = 3;</code>
+     */
+    boolean hasRevision();
+    /**
+     * <code>required bytes revision = 3;</code>
+     */
+    com.google.protobuf.ByteString getRevision();
+
+    // required bytes value = 4;
+    /**
+     * <code>required bytes value = 4;</code>
+     */
+    boolean hasValue();
+    /**
+     * <code>required bytes value = 4;</code>
+     */
+    com.google.protobuf.ByteString getValue();
+  }
+  /**
+   * Protobuf type {@code nigori.PutRequest}
+   */
+  public static final class PutRequest extends
+      com.google.protobuf.GeneratedMessage
+      implements PutRequestOrBuilder {
+    // Use PutRequest.newBuilder() to construct.
+    private PutRequest(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
+      super(builder);
+      this.unknownFields = builder.getUnknownFields();
     }
-    private PutRequest(boolean noInit) {}
-    
+    private PutRequest(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
     private static final PutRequest defaultInstance;
     public static PutRequest getDefaultInstance() {
       return defaultInstance;
     }
-    
+
     public PutRequest getDefaultInstanceForType() {
       return defaultInstance;
     }
-    
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private PutRequest(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 10: {
+              com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder subBuilder = null;
+              if (((bitField0_ & 0x00000001) == 0x00000001)) {
+                subBuilder = auth_.toBuilder();
+              }
+              auth_ = input.readMessage(com.google.nigori.common.NigoriMessages.AuthenticateRequest.PARSER, extensionRegistry);
+              if (subBuilder != null) {
+                subBuilder.mergeFrom(auth_);
+                auth_ = subBuilder.buildPartial();
+              }
+              bitField0_ |= 0x00000001;
+              break;
+            }
+            case 18: {
+              bitField0_ |= 0x00000002;
+              key_ = input.readBytes();
+              break;
+            }
+            case 26: {
+              bitField0_ |= 0x00000004;
+              revision_ = input.readBytes();
+              break;
+            }
+            case 34: {
+              bitField0_ |= 0x00000008;
+              value_ = input.readBytes();
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
     public static final com.google.protobuf.Descriptors.Descriptor
         getDescriptor() {
       return com.google.nigori.common.NigoriMessages.internal_static_nigori_PutRequest_descriptor;
     }
-    
+
     protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
         internalGetFieldAccessorTable() {
-      return com.google.nigori.common.NigoriMessages.internal_static_nigori_PutRequest_fieldAccessorTable;
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_PutRequest_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              com.google.nigori.common.NigoriMessages.PutRequest.class, com.google.nigori.common.NigoriMessages.PutRequest.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<PutRequest> PARSER =
+        new com.google.protobuf.AbstractParser<PutRequest>() {
+      public PutRequest parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new PutRequest(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<PutRequest> getParserForType() {
+      return PARSER;
     }
-    
+
     private int bitField0_;
     // required .nigori.AuthenticateRequest auth = 1;
     public static final int AUTH_FIELD_NUMBER = 1;
     private com.google.nigori.common.NigoriMessages.AuthenticateRequest auth_;
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     public boolean hasAuth() {
       return ((bitField0_ & 0x00000001) == 0x00000001);
     }
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     public com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth() {
       return auth_;
     }
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     public com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder() {
       return auth_;
     }
-    
+
     // required bytes key = 2;
     public static final int KEY_FIELD_NUMBER = 2;
     private com.google.protobuf.ByteString key_;
+    /**
+     * <code>required bytes key = 2;</code>
+     */
     public boolean hasKey() {
       return ((bitField0_ & 0x00000002) == 0x00000002);
     }
+    /**
+     * <code>required bytes key = 2;</code>
+     */
     public com.google.protobuf.ByteString getKey() {
       return key_;
     }
-    
+
     // required bytes revision = 3;
     public static final int REVISION_FIELD_NUMBER = 3;
     private com.google.protobuf.ByteString revision_;
+    /**
+     * <code>required bytes revision = 3;</code>
+     */
     public boolean hasRevision() {
       return ((bitField0_ & 0x00000004) == 0x00000004);
     }
+    /**
+     * <code>required bytes revision = 3;</code>
+     */
     public com.google.protobuf.ByteString getRevision() {
       return revision_;
     }
-    
+
     // required bytes value = 4;
     public static final int VALUE_FIELD_NUMBER = 4;
     private com.google.protobuf.ByteString value_;
+    /**
+     * <code>required bytes value = 4;</code>
+     */
     public boolean hasValue() {
       return ((bitField0_ & 0x00000008) == 0x00000008);
     }
+    /**
+     * <code>required bytes value = 4;</code>
+     */
     public com.google.protobuf.ByteString getValue() {
       return value_;
     }
-    
+
     private void initFields() {
       auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
       key_ = com.google.protobuf.ByteString.EMPTY;
@@ -4923,7 +7458,7 @@ public final class NigoriMessages {
     public final boolean isInitialized() {
       byte isInitialized = memoizedIsInitialized;
       if (isInitialized != -1) return isInitialized == 1;
-      
+
       if (!hasAuth()) {
         memoizedIsInitialized = 0;
         return false;
@@ -4947,7 +7482,7 @@ public final class NigoriMessages {
       memoizedIsInitialized = 1;
       return true;
     }
-    
+
     public void writeTo(com.google.protobuf.CodedOutputStream output)
                         throws java.io.IOException {
       getSerializedSize();
@@ -4965,12 +7500,12 @@ public final class NigoriMessages {
       }
       getUnknownFields().writeTo(output);
     }
-    
+
     private int memoizedSerializedSize = -1;
     public int getSerializedSize() {
       int size = memoizedSerializedSize;
       if (size != -1) return size;
-    
+
       size = 0;
       if (((bitField0_ & 0x00000001) == 0x00000001)) {
         size += com.google.protobuf.CodedOutputStream
@@ -4992,92 +7527,83 @@ public final class NigoriMessages {
       memoizedSerializedSize = size;
       return size;
     }
-    
+
+    private static final long serialVersionUID = 0L;
     @java.lang.Override
-    protected Object writeReplace() throws java.io.ObjectStreamException {
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
       return super.writeReplace();
     }
-    
+
     public static com.google.nigori.common.NigoriMessages.PutRequest parseFrom(
         com.google.protobuf.ByteString data)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data).buildParsed();
+      return PARSER.parseFrom(data);
     }
     public static com.google.nigori.common.NigoriMessages.PutRequest parseFrom(
         com.google.protobuf.ByteString data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(data, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.PutRequest parseFrom(byte[] data)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data).buildParsed();
+      return PARSER.parseFrom(data);
     }
     public static com.google.nigori.common.NigoriMessages.PutRequest parseFrom(
         byte[] data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(data, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.PutRequest parseFrom(java.io.InputStream input)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input).buildParsed();
+      return PARSER.parseFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.PutRequest parseFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(input, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.PutRequest parseDelimitedFrom(java.io.InputStream input)
         throws java.io.IOException {
-      Builder builder = newBuilder();
-      if (builder.mergeDelimitedFrom(input)) {
-        return builder.buildParsed();
-      } else {
-        return null;
-      }
+      return PARSER.parseDelimitedFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.PutRequest parseDelimitedFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      Builder builder = newBuilder();
-      if (builder.mergeDelimitedFrom(input, extensionRegistry)) {
-        return builder.buildParsed();
-      } else {
-        return null;
-      }
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.PutRequest parseFrom(
         com.google.protobuf.CodedInputStream input)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input).buildParsed();
+      return PARSER.parseFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.PutRequest parseFrom(
         com.google.protobuf.CodedInputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(input, extensionRegistry);
     }
-    
+
     public static Builder newBuilder() { return Builder.create(); }
     public Builder newBuilderForType() { return newBuilder(); }
     public static Builder newBuilder(com.google.nigori.common.NigoriMessages.PutRequest prototype) {
       return newBuilder().mergeFrom(prototype);
     }
     public Builder toBuilder() { return newBuilder(this); }
-    
+
     @java.lang.Override
     protected Builder newBuilderForType(
         com.google.protobuf.GeneratedMessage.BuilderParent parent) {
       Builder builder = new Builder(parent);
       return builder;
     }
+    /**
+     * Protobuf type {@code nigori.PutRequest}
+     */
     public static final class Builder extends
         com.google.protobuf.GeneratedMessage.Builder<Builder>
        implements com.google.nigori.common.NigoriMessages.PutRequestOrBuilder {
@@ -5085,18 +7611,21 @@ public final class NigoriMessages {
           getDescriptor() {
         return com.google.nigori.common.NigoriMessages.internal_static_nigori_PutRequest_descriptor;
       }
-      
+
       protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
           internalGetFieldAccessorTable() {
-        return com.google.nigori.common.NigoriMessages.internal_static_nigori_PutRequest_fieldAccessorTable;
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_PutRequest_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                com.google.nigori.common.NigoriMessages.PutRequest.class, com.google.nigori.common.NigoriMessages.PutRequest.Builder.class);
       }
-      
+
       // Construct using com.google.nigori.common.NigoriMessages.PutRequest.newBuilder()
       private Builder() {
         maybeForceBuilderInitialization();
       }
-      
-      private Builder(BuilderParent parent) {
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
         super(parent);
         maybeForceBuilderInitialization();
       }
@@ -5108,7 +7637,7 @@ public final class NigoriMessages {
       private static Builder create() {
         return new Builder();
       }
-      
+
       public Builder clear() {
         super.clear();
         if (authBuilder_ == null) {
@@ -5125,20 +7654,20 @@ public final class NigoriMessages {
         bitField0_ = (bitField0_ & ~0x00000008);
         return this;
       }
-      
+
       public Builder clone() {
         return create().mergeFrom(buildPartial());
       }
-      
+
       public com.google.protobuf.Descriptors.Descriptor
           getDescriptorForType() {
-        return com.google.nigori.common.NigoriMessages.PutRequest.getDescriptor();
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_PutRequest_descriptor;
       }
-      
+
       public com.google.nigori.common.NigoriMessages.PutRequest getDefaultInstanceForType() {
         return com.google.nigori.common.NigoriMessages.PutRequest.getDefaultInstance();
       }
-      
+
       public com.google.nigori.common.NigoriMessages.PutRequest build() {
         com.google.nigori.common.NigoriMessages.PutRequest result = buildPartial();
         if (!result.isInitialized()) {
@@ -5146,17 +7675,7 @@ public final class NigoriMessages {
         }
         return result;
       }
-      
-      private com.google.nigori.common.NigoriMessages.PutRequest buildParsed()
-          throws com.google.protobuf.InvalidProtocolBufferException {
-        com.google.nigori.common.NigoriMessages.PutRequest result = buildPartial();
-        if (!result.isInitialized()) {
-          throw newUninitializedMessageException(
-            result).asInvalidProtocolBufferException();
-        }
-        return result;
-      }
-      
+
       public com.google.nigori.common.NigoriMessages.PutRequest buildPartial() {
         com.google.nigori.common.NigoriMessages.PutRequest result = new com.google.nigori.common.NigoriMessages.PutRequest(this);
         int from_bitField0_ = bitField0_;
@@ -5185,7 +7704,7 @@ public final class NigoriMessages {
         onBuilt();
         return result;
       }
-      
+
       public Builder mergeFrom(com.google.protobuf.Message other) {
         if (other instanceof com.google.nigori.common.NigoriMessages.PutRequest) {
           return mergeFrom((com.google.nigori.common.NigoriMessages.PutRequest)other);
@@ -5194,7 +7713,7 @@ public final class NigoriMessages {
           return this;
         }
       }
-      
+
       public Builder mergeFrom(com.google.nigori.common.NigoriMessages.PutRequest other) {
         if (other == com.google.nigori.common.NigoriMessages.PutRequest.getDefaultInstance()) return this;
         if (other.hasAuth()) {
@@ -5212,7 +7731,7 @@ public final class NigoriMessages {
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
-      
+
       public final boolean isInitialized() {
         if (!hasAuth()) {
           
@@ -5236,67 +7755,39 @@ public final class NigoriMessages {
         }
         return true;
       }
-      
+
       public Builder mergeFrom(
           com.google.protobuf.CodedInputStream input,
           com.google.protobuf.ExtensionRegistryLite extensionRegistry)
           throws java.io.IOException {
-        com.google.protobuf.UnknownFieldSet.Builder unknownFields =
-          com.google.protobuf.UnknownFieldSet.newBuilder(
-            this.getUnknownFields());
-        while (true) {
-          int tag = input.readTag();
-          switch (tag) {
-            case 0:
-              this.setUnknownFields(unknownFields.build());
-              onChanged();
-              return this;
-            default: {
-              if (!parseUnknownField(input, unknownFields,
-                                     extensionRegistry, tag)) {
-                this.setUnknownFields(unknownFields.build());
-                onChanged();
-                return this;
-              }
-              break;
-            }
-            case 10: {
-              com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder subBuilder = com.google.nigori.common.NigoriMessages.AuthenticateRequest.newBuilder();
-              if (hasAuth()) {
-                subBuilder.mergeFrom(getAuth());
-              }
-              input.readMessage(subBuilder, extensionRegistry);
-              setAuth(subBuilder.buildPartial());
-              break;
-            }
-            case 18: {
-              bitField0_ |= 0x00000002;
-              key_ = input.readBytes();
-              break;
-            }
-            case 26: {
-              bitField0_ |= 0x00000004;
-              revision_ = input.readBytes();
-              break;
-            }
-            case 34: {
-              bitField0_ |= 0x00000008;
-              value_ = input.readBytes();
-              break;
-            }
+        com.google.nigori.common.NigoriMessages.PutRequest parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (com.google.nigori.common.NigoriMessages.PutRequest) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
           }
         }
+        return this;
       }
-      
       private int bitField0_;
-      
+
       // required .nigori.AuthenticateRequest auth = 1;
       private com.google.nigori.common.NigoriMessages.AuthenticateRequest auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
       private com.google.protobuf.SingleFieldBuilder<
           com.google.nigori.common.NigoriMessages.AuthenticateRequest, com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder, com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder> authBuilder_;
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public boolean hasAuth() {
         return ((bitField0_ & 0x00000001) == 0x00000001);
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth() {
         if (authBuilder_ == null) {
           return auth_;
@@ -5304,6 +7795,9 @@ public final class NigoriMessages {
           return authBuilder_.getMessage();
         }
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public Builder setAuth(com.google.nigori.common.NigoriMessages.AuthenticateRequest value) {
         if (authBuilder_ == null) {
           if (value == null) {
@@ -5317,6 +7811,9 @@ public final class NigoriMessages {
         bitField0_ |= 0x00000001;
         return this;
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public Builder setAuth(
           com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder builderForValue) {
         if (authBuilder_ == null) {
@@ -5328,6 +7825,9 @@ public final class NigoriMessages {
         bitField0_ |= 0x00000001;
         return this;
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public Builder mergeAuth(com.google.nigori.common.NigoriMessages.AuthenticateRequest value) {
         if (authBuilder_ == null) {
           if (((bitField0_ & 0x00000001) == 0x00000001) &&
@@ -5344,6 +7844,9 @@ public final class NigoriMessages {
         bitField0_ |= 0x00000001;
         return this;
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public Builder clearAuth() {
         if (authBuilder_ == null) {
           auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
@@ -5354,11 +7857,17 @@ public final class NigoriMessages {
         bitField0_ = (bitField0_ & ~0x00000001);
         return this;
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder getAuthBuilder() {
         bitField0_ |= 0x00000001;
         onChanged();
         return getAuthFieldBuilder().getBuilder();
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder() {
         if (authBuilder_ != null) {
           return authBuilder_.getMessageOrBuilder();
@@ -5366,6 +7875,9 @@ public final class NigoriMessages {
           return auth_;
         }
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       private com.google.protobuf.SingleFieldBuilder<
           com.google.nigori.common.NigoriMessages.AuthenticateRequest, com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder, com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder> 
           getAuthFieldBuilder() {
@@ -5379,15 +7891,24 @@ public final class NigoriMessages {
         }
         return authBuilder_;
       }
-      
+
       // required bytes key = 2;
       private com.google.protobuf.ByteString key_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>required bytes key = 2;</code>
+       */
       public boolean hasKey() {
         return ((bitField0_ & 0x00000002) == 0x00000002);
       }
+      /**
+       * <code>required bytes key = 2;</code>
+       */
       public com.google.protobuf.ByteString getKey() {
         return key_;
       }
+      /**
+       * <code>required bytes key = 2;</code>
+       */
       public Builder setKey(com.google.protobuf.ByteString value) {
         if (value == null) {
     throw new NullPointerException();
@@ -5397,21 +7918,33 @@ public final class NigoriMessages {
         onChanged();
         return this;
       }
+      /**
+       * <code>required bytes key = 2;</code>
+       */
       public Builder clearKey() {
         bitField0_ = (bitField0_ & ~0x00000002);
         key_ = getDefaultInstance().getKey();
         onChanged();
         return this;
       }
-      
+
       // required bytes revision = 3;
       private com.google.protobuf.ByteString revision_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>required bytes revision = 3;</code>
+       */
       public boolean hasRevision() {
         return ((bitField0_ & 0x00000004) == 0x00000004);
       }
+      /**
+       * <code>required bytes revision = 3;</code>
+       */
       public com.google.protobuf.ByteString getRevision() {
         return revision_;
       }
+      /**
+       * <code>required bytes revision = 3;</code>
+       */
       public Builder setRevision(com.google.protobuf.ByteString value) {
         if (value == null) {
     throw new NullPointerException();
@@ -5421,21 +7954,33 @@ public final class NigoriMessages {
         onChanged();
         return this;
       }
+      /**
+       * <code>required bytes revision = 3;</code>
+       */
       public Builder clearRevision() {
         bitField0_ = (bitField0_ & ~0x00000004);
         revision_ = getDefaultInstance().getRevision();
         onChanged();
         return this;
       }
-      
+
       // required bytes value = 4;
       private com.google.protobuf.ByteString value_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>required bytes value = 4;</code>
+       */
       public boolean hasValue() {
         return ((bitField0_ & 0x00000008) == 0x00000008);
       }
+      /**
+       * <code>required bytes value = 4;</code>
+       */
       public com.google.protobuf.ByteString getValue() {
         return value_;
       }
+      /**
+       * <code>required bytes value = 4;</code>
+       */
       public Builder setValue(com.google.protobuf.ByteString value) {
         if (value == null) {
     throw new NullPointerException();
@@ -5445,102 +7990,232 @@ public final class NigoriMessages {
         onChanged();
         return this;
       }
+      /**
+       * <code>required bytes value = 4;</code>
+       */
       public Builder clearValue() {
         bitField0_ = (bitField0_ & ~0x00000008);
         value_ = getDefaultInstance().getValue();
         onChanged();
         return this;
       }
-      
+
       // @@protoc_insertion_point(builder_scope:nigori.PutRequest)
     }
-    
+
     static {
       defaultInstance = new PutRequest(true);
       defaultInstance.initFields();
     }
-    
+
     // @@protoc_insertion_point(class_scope:nigori.PutRequest)
   }
-  
+
   public interface DeleteRequestOrBuilder
       extends com.google.protobuf.MessageOrBuilder {
-    
+
     // required .nigori.AuthenticateRequest auth = 1;
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     boolean hasAuth();
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth();
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder();
-    
+
     // required bytes key = 2;
+    /**
+     * <code>required bytes key = 2;</code>
+     */
     boolean hasKey();
+    /**
+     * <code>required bytes key = 2;</code>
+     */
     com.google.protobuf.ByteString getKey();
-    
+
     // optional bytes revision = 3;
+    /**
+     * <code>optional bytes revision = 3;</code>
+     */
     boolean hasRevision();
+    /**
+     * <code>optional bytes revision = 3;</code>
+     */
     com.google.protobuf.ByteString getRevision();
   }
+  /**
+   * Protobuf type {@code nigori.DeleteRequest}
+   */
   public static final class DeleteRequest extends
       com.google.protobuf.GeneratedMessage
       implements DeleteRequestOrBuilder {
     // Use DeleteRequest.newBuilder() to construct.
-    private DeleteRequest(Builder builder) {
+    private DeleteRequest(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
       super(builder);
+      this.unknownFields = builder.getUnknownFields();
     }
-    private DeleteRequest(boolean noInit) {}
-    
+    private DeleteRequest(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
     private static final DeleteRequest defaultInstance;
     public static DeleteRequest getDefaultInstance() {
       return defaultInstance;
     }
-    
+
     public DeleteRequest getDefaultInstanceForType() {
       return defaultInstance;
     }
-    
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private DeleteRequest(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 10: {
+              com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder subBuilder = null;
+              if (((bitField0_ & 0x00000001) == 0x00000001)) {
+                subBuilder = auth_.toBuilder();
+              }
+              auth_ = input.readMessage(com.google.nigori.common.NigoriMessages.AuthenticateRequest.PARSER, extensionRegistry);
+              if (subBuilder != null) {
+                subBuilder.mergeFrom(auth_);
+                auth_ = subBuilder.buildPartial();
+              }
+              bitField0_ |= 0x00000001;
+              break;
+            }
+            case 18: {
+              bitField0_ |= 0x00000002;
+              key_ = input.readBytes();
+              break;
+            }
+            case 26: {
+              bitField0_ |= 0x00000004;
+              revision_ = input.readBytes();
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
     public static final com.google.protobuf.Descriptors.Descriptor
         getDescriptor() {
       return com.google.nigori.common.NigoriMessages.internal_static_nigori_DeleteRequest_descriptor;
     }
-    
+
     protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
         internalGetFieldAccessorTable() {
-      return com.google.nigori.common.NigoriMessages.internal_static_nigori_DeleteRequest_fieldAccessorTable;
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_DeleteRequest_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              com.google.nigori.common.NigoriMessages.DeleteRequest.class, com.google.nigori.common.NigoriMessages.DeleteRequest.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<DeleteRequest> PARSER =
+        new com.google.protobuf.AbstractParser<DeleteRequest>() {
+      public DeleteRequest parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new DeleteRequest(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<DeleteRequest> getParserForType() {
+      return PARSER;
     }
-    
+
     private int bitField0_;
     // required .nigori.AuthenticateRequest auth = 1;
     public static final int AUTH_FIELD_NUMBER = 1;
     private com.google.nigori.common.NigoriMessages.AuthenticateRequest auth_;
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     public boolean hasAuth() {
       return ((bitField0_ & 0x00000001) == 0x00000001);
     }
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     public com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth() {
       return auth_;
     }
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
     public com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder() {
       return auth_;
     }
-    
+
     // required bytes key = 2;
     public static final int KEY_FIELD_NUMBER = 2;
     private com.google.protobuf.ByteString key_;
+    /**
+     * <code>required bytes key = 2;</code>
+     */
     public boolean hasKey() {
       return ((bitField0_ & 0x00000002) == 0x00000002);
     }
+    /**
+     * <code>required bytes key = 2;</code>
+     */
     public com.google.protobuf.ByteString getKey() {
       return key_;
     }
-    
+
     // optional bytes revision = 3;
     public static final int REVISION_FIELD_NUMBER = 3;
     private com.google.protobuf.ByteString revision_;
+    /**
+     * <code>optional bytes revision = 3;</code>
+     */
     public boolean hasRevision() {
       return ((bitField0_ & 0x00000004) == 0x00000004);
     }
+    /**
+     * <code>optional bytes revision = 3;</code>
+     */
     public com.google.protobuf.ByteString getRevision() {
       return revision_;
     }
-    
+
     private void initFields() {
       auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
       key_ = com.google.protobuf.ByteString.EMPTY;
@@ -5550,7 +8225,7 @@ public final class NigoriMessages {
     public final boolean isInitialized() {
       byte isInitialized = memoizedIsInitialized;
       if (isInitialized != -1) return isInitialized == 1;
-      
+
       if (!hasAuth()) {
         memoizedIsInitialized = 0;
         return false;
@@ -5566,7 +8241,7 @@ public final class NigoriMessages {
       memoizedIsInitialized = 1;
       return true;
     }
-    
+
     public void writeTo(com.google.protobuf.CodedOutputStream output)
                         throws java.io.IOException {
       getSerializedSize();
@@ -5581,12 +8256,12 @@ public final class NigoriMessages {
       }
       getUnknownFields().writeTo(output);
     }
-    
+
     private int memoizedSerializedSize = -1;
     public int getSerializedSize() {
       int size = memoizedSerializedSize;
       if (size != -1) return size;
-    
+
       size = 0;
       if (((bitField0_ & 0x00000001) == 0x00000001)) {
         size += com.google.protobuf.CodedOutputStream
@@ -5604,92 +8279,83 @@ public final class NigoriMessages {
       memoizedSerializedSize = size;
       return size;
     }
-    
+
+    private static final long serialVersionUID = 0L;
     @java.lang.Override
-    protected Object writeReplace() throws java.io.ObjectStreamException {
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
       return super.writeReplace();
     }
-    
+
     public static com.google.nigori.common.NigoriMessages.DeleteRequest parseFrom(
         com.google.protobuf.ByteString data)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data).buildParsed();
+      return PARSER.parseFrom(data);
     }
     public static com.google.nigori.common.NigoriMessages.DeleteRequest parseFrom(
         com.google.protobuf.ByteString data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(data, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.DeleteRequest parseFrom(byte[] data)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data).buildParsed();
+      return PARSER.parseFrom(data);
     }
     public static com.google.nigori.common.NigoriMessages.DeleteRequest parseFrom(
         byte[] data,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws com.google.protobuf.InvalidProtocolBufferException {
-      return newBuilder().mergeFrom(data, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(data, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.DeleteRequest parseFrom(java.io.InputStream input)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input).buildParsed();
+      return PARSER.parseFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.DeleteRequest parseFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(input, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.DeleteRequest parseDelimitedFrom(java.io.InputStream input)
         throws java.io.IOException {
-      Builder builder = newBuilder();
-      if (builder.mergeDelimitedFrom(input)) {
-        return builder.buildParsed();
-      } else {
-        return null;
-      }
+      return PARSER.parseDelimitedFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.DeleteRequest parseDelimitedFrom(
         java.io.InputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      Builder builder = newBuilder();
-      if (builder.mergeDelimitedFrom(input, extensionRegistry)) {
-        return builder.buildParsed();
-      } else {
-        return null;
-      }
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
     }
     public static com.google.nigori.common.NigoriMessages.DeleteRequest parseFrom(
         com.google.protobuf.CodedInputStream input)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input).buildParsed();
+      return PARSER.parseFrom(input);
     }
     public static com.google.nigori.common.NigoriMessages.DeleteRequest parseFrom(
         com.google.protobuf.CodedInputStream input,
         com.google.protobuf.ExtensionRegistryLite extensionRegistry)
         throws java.io.IOException {
-      return newBuilder().mergeFrom(input, extensionRegistry)
-               .buildParsed();
+      return PARSER.parseFrom(input, extensionRegistry);
     }
-    
+
     public static Builder newBuilder() { return Builder.create(); }
     public Builder newBuilderForType() { return newBuilder(); }
     public static Builder newBuilder(com.google.nigori.common.NigoriMessages.DeleteRequest prototype) {
       return newBuilder().mergeFrom(prototype);
     }
     public Builder toBuilder() { return newBuilder(this); }
-    
+
     @java.lang.Override
     protected Builder newBuilderForType(
         com.google.protobuf.GeneratedMessage.BuilderParent parent) {
       Builder builder = new Builder(parent);
       return builder;
     }
+    /**
+     * Protobuf type {@code nigori.DeleteRequest}
+     */
     public static final class Builder extends
         com.google.protobuf.GeneratedMessage.Builder<Builder>
        implements com.google.nigori.common.NigoriMessages.DeleteRequestOrBuilder {
@@ -5697,18 +8363,21 @@ public final class NigoriMessages {
           getDescriptor() {
         return com.google.nigori.common.NigoriMessages.internal_static_nigori_DeleteRequest_descriptor;
       }
-      
+
       protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
           internalGetFieldAccessorTable() {
-        return com.google.nigori.common.NigoriMessages.internal_static_nigori_DeleteRequest_fieldAccessorTable;
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_DeleteRequest_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                com.google.nigori.common.NigoriMessages.DeleteRequest.class, com.google.nigori.common.NigoriMessages.DeleteRequest.Builder.class);
       }
-      
+
       // Construct using com.google.nigori.common.NigoriMessages.DeleteRequest.newBuilder()
       private Builder() {
         maybeForceBuilderInitialization();
       }
-      
-      private Builder(BuilderParent parent) {
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
         super(parent);
         maybeForceBuilderInitialization();
       }
@@ -5720,7 +8389,7 @@ public final class NigoriMessages {
       private static Builder create() {
         return new Builder();
       }
-      
+
       public Builder clear() {
         super.clear();
         if (authBuilder_ == null) {
@@ -5735,20 +8404,20 @@ public final class NigoriMessages {
         bitField0_ = (bitField0_ & ~0x00000004);
         return this;
       }
-      
+
       public Builder clone() {
         return create().mergeFrom(buildPartial());
       }
-      
+
       public com.google.protobuf.Descriptors.Descriptor
           getDescriptorForType() {
-        return com.google.nigori.common.NigoriMessages.DeleteRequest.getDescriptor();
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_DeleteRequest_descriptor;
       }
-      
+
       public com.google.nigori.common.NigoriMessages.DeleteRequest getDefaultInstanceForType() {
         return com.google.nigori.common.NigoriMessages.DeleteRequest.getDefaultInstance();
       }
-      
+
       public com.google.nigori.common.NigoriMessages.DeleteRequest build() {
         com.google.nigori.common.NigoriMessages.DeleteRequest result = buildPartial();
         if (!result.isInitialized()) {
@@ -5756,17 +8425,7 @@ public final class NigoriMessages {
         }
         return result;
       }
-      
-      private com.google.nigori.common.NigoriMessages.DeleteRequest buildParsed()
-          throws com.google.protobuf.InvalidProtocolBufferException {
-        com.google.nigori.common.NigoriMessages.DeleteRequest result = buildPartial();
-        if (!result.isInitialized()) {
-          throw newUninitializedMessageException(
-            result).asInvalidProtocolBufferException();
-        }
-        return result;
-      }
-      
+
       public com.google.nigori.common.NigoriMessages.DeleteRequest buildPartial() {
         com.google.nigori.common.NigoriMessages.DeleteRequest result = new com.google.nigori.common.NigoriMessages.DeleteRequest(this);
         int from_bitField0_ = bitField0_;
@@ -5791,7 +8450,7 @@ public final class NigoriMessages {
         onBuilt();
         return result;
       }
-      
+
       public Builder mergeFrom(com.google.protobuf.Message other) {
         if (other instanceof com.google.nigori.common.NigoriMessages.DeleteRequest) {
           return mergeFrom((com.google.nigori.common.NigoriMessages.DeleteRequest)other);
@@ -5800,7 +8459,7 @@ public final class NigoriMessages {
           return this;
         }
       }
-      
+
       public Builder mergeFrom(com.google.nigori.common.NigoriMessages.DeleteRequest other) {
         if (other == com.google.nigori.common.NigoriMessages.DeleteRequest.getDefaultInstance()) return this;
         if (other.hasAuth()) {
@@ -5815,7 +8474,7 @@ public final class NigoriMessages {
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
-      
+
       public final boolean isInitialized() {
         if (!hasAuth()) {
           
@@ -5831,62 +8490,39 @@ public final class NigoriMessages {
         }
         return true;
       }
-      
+
       public Builder mergeFrom(
           com.google.protobuf.CodedInputStream input,
           com.google.protobuf.ExtensionRegistryLite extensionRegistry)
           throws java.io.IOException {
-        com.google.protobuf.UnknownFieldSet.Builder unknownFields =
-          com.google.protobuf.UnknownFieldSet.newBuilder(
-            this.getUnknownFields());
-        while (true) {
-          int tag = input.readTag();
-          switch (tag) {
-            case 0:
-              this.setUnknownFields(unknownFields.build());
-              onChanged();
-              return this;
-            default: {
-              if (!parseUnknownField(input, unknownFields,
-                                     extensionRegistry, tag)) {
-                this.setUnknownFields(unknownFields.build());
-                onChanged();
-                return this;
-              }
-              break;
-            }
-            case 10: {
-              com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder subBuilder = com.google.nigori.common.NigoriMessages.AuthenticateRequest.newBuilder();
-              if (hasAuth()) {
-                subBuilder.mergeFrom(getAuth());
-              }
-              input.readMessage(subBuilder, extensionRegistry);
-              setAuth(subBuilder.buildPartial());
-              break;
-            }
-            case 18: {
-              bitField0_ |= 0x00000002;
-              key_ = input.readBytes();
-              break;
-            }
-            case 26: {
-              bitField0_ |= 0x00000004;
-              revision_ = input.readBytes();
-              break;
-            }
+        com.google.nigori.common.NigoriMessages.DeleteRequest parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (com.google.nigori.common.NigoriMessages.DeleteRequest) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
           }
         }
+        return this;
       }
-      
       private int bitField0_;
-      
+
       // required .nigori.AuthenticateRequest auth = 1;
       private com.google.nigori.common.NigoriMessages.AuthenticateRequest auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
       private com.google.protobuf.SingleFieldBuilder<
           com.google.nigori.common.NigoriMessages.AuthenticateRequest, com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder, com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder> authBuilder_;
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public boolean hasAuth() {
         return ((bitField0_ & 0x00000001) == 0x00000001);
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth() {
         if (authBuilder_ == null) {
           return auth_;
@@ -5894,6 +8530,9 @@ public final class NigoriMessages {
           return authBuilder_.getMessage();
         }
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public Builder setAuth(com.google.nigori.common.NigoriMessages.AuthenticateRequest value) {
         if (authBuilder_ == null) {
           if (value == null) {
@@ -5907,6 +8546,9 @@ public final class NigoriMessages {
         bitField0_ |= 0x00000001;
         return this;
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public Builder setAuth(
           com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder builderForValue) {
         if (authBuilder_ == null) {
@@ -5918,6 +8560,9 @@ public final class NigoriMessages {
         bitField0_ |= 0x00000001;
         return this;
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public Builder mergeAuth(com.google.nigori.common.NigoriMessages.AuthenticateRequest value) {
         if (authBuilder_ == null) {
           if (((bitField0_ & 0x00000001) == 0x00000001) &&
@@ -5934,6 +8579,9 @@ public final class NigoriMessages {
         bitField0_ |= 0x00000001;
         return this;
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public Builder clearAuth() {
         if (authBuilder_ == null) {
           auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
@@ -5944,11 +8592,17 @@ public final class NigoriMessages {
         bitField0_ = (bitField0_ & ~0x00000001);
         return this;
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder getAuthBuilder() {
         bitField0_ |= 0x00000001;
         onChanged();
         return getAuthFieldBuilder().getBuilder();
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       public com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder() {
         if (authBuilder_ != null) {
           return authBuilder_.getMessageOrBuilder();
@@ -5956,6 +8610,9 @@ public final class NigoriMessages {
           return auth_;
         }
       }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
       private com.google.protobuf.SingleFieldBuilder<
           com.google.nigori.common.NigoriMessages.AuthenticateRequest, com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder, com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder> 
           getAuthFieldBuilder() {
@@ -5969,15 +8626,24 @@ public final class NigoriMessages {
         }
         return authBuilder_;
       }
-      
+
       // required bytes key = 2;
       private com.google.protobuf.ByteString key_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>required bytes key = 2;</code>
+       */
       public boolean hasKey() {
         return ((bitField0_ & 0x00000002) == 0x00000002);
       }
+      /**
+       * <code>required bytes key = 2;</code>
+       */
       public com.google.protobuf.ByteString getKey() {
         return key_;
       }
+      /**
+       * <code>required bytes key = 2;</code>
+       */
       public Builder setKey(com.google.protobuf.ByteString value) {
         if (value == null) {
     throw new NullPointerException();
@@ -5987,21 +8653,33 @@ public final class NigoriMessages {
         onChanged();
         return this;
       }
+      /**
+       * <code>required bytes key = 2;</code>
+       */
       public Builder clearKey() {
         bitField0_ = (bitField0_ & ~0x00000002);
         key_ = getDefaultInstance().getKey();
         onChanged();
         return this;
       }
-      
+
       // optional bytes revision = 3;
       private com.google.protobuf.ByteString revision_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes revision = 3;</code>
+       */
       public boolean hasRevision() {
         return ((bitField0_ & 0x00000004) == 0x00000004);
       }
+      /**
+       * <code>optional bytes revision = 3;</code>
+       */
       public com.google.protobuf.ByteString getRevision() {
         return revision_;
       }
+      /**
+       * <code>optional bytes revision = 3;</code>
+       */
       public Builder setRevision(com.google.protobuf.ByteString value) {
         if (value == null) {
     throw new NullPointerException();
@@ -6011,220 +8689,8654 @@ public final class NigoriMessages {
         onChanged();
         return this;
       }
+      /**
+       * <code>optional bytes revision = 3;</code>
+       */
       public Builder clearRevision() {
         bitField0_ = (bitField0_ & ~0x00000004);
         revision_ = getDefaultInstance().getRevision();
         onChanged();
         return this;
       }
-      
+
       // @@protoc_insertion_point(builder_scope:nigori.DeleteRequest)
     }
-    
+
     static {
       defaultInstance = new DeleteRequest(true);
       defaultInstance.initFields();
     }
-    
+
     // @@protoc_insertion_point(class_scope:nigori.DeleteRequest)
   }
-  
-  private static com.google.protobuf.Descriptors.Descriptor
-    internal_static_nigori_AuthenticateRequest_descriptor;
-  private static
-    com.google.protobuf.GeneratedMessage.FieldAccessorTable
-      internal_static_nigori_AuthenticateRequest_fieldAccessorTable;
-  private static com.google.protobuf.Descriptors.Descriptor
-    internal_static_nigori_RegisterRequest_descriptor;
-  private static
-    com.google.protobuf.GeneratedMessage.FieldAccessorTable
-      internal_static_nigori_RegisterRequest_fieldAccessorTable;
-  private static com.google.protobuf.Descriptors.Descriptor
-    internal_static_nigori_UnregisterRequest_descriptor;
-  private static
-    com.google.protobuf.GeneratedMessage.FieldAccessorTable
-      internal_static_nigori_UnregisterRequest_fieldAccessorTable;
-  private static com.google.protobuf.Descriptors.Descriptor
-    internal_static_nigori_RevisionValue_descriptor;
-  private static
-    com.google.protobuf.GeneratedMessage.FieldAccessorTable
-      internal_static_nigori_RevisionValue_fieldAccessorTable;
-  private static com.google.protobuf.Descriptors.Descriptor
-    internal_static_nigori_GetRequest_descriptor;
-  private static
-    com.google.protobuf.GeneratedMessage.FieldAccessorTable
-      internal_static_nigori_GetRequest_fieldAccessorTable;
-  private static com.google.protobuf.Descriptors.Descriptor
-    internal_static_nigori_GetResponse_descriptor;
-  private static
-    com.google.protobuf.GeneratedMessage.FieldAccessorTable
-      internal_static_nigori_GetResponse_fieldAccessorTable;
-  private static com.google.protobuf.Descriptors.Descriptor
-    internal_static_nigori_GetIndicesRequest_descriptor;
-  private static
-    com.google.protobuf.GeneratedMessage.FieldAccessorTable
-      internal_static_nigori_GetIndicesRequest_fieldAccessorTable;
-  private static com.google.protobuf.Descriptors.Descriptor
-    internal_static_nigori_GetIndicesResponse_descriptor;
-  private static
-    com.google.protobuf.GeneratedMessage.FieldAccessorTable
-      internal_static_nigori_GetIndicesResponse_fieldAccessorTable;
-  private static com.google.protobuf.Descriptors.Descriptor
-    internal_static_nigori_GetRevisionsRequest_descriptor;
-  private static
-    com.google.protobuf.GeneratedMessage.FieldAccessorTable
-      internal_static_nigori_GetRevisionsRequest_fieldAccessorTable;
-  private static com.google.protobuf.Descriptors.Descriptor
-    internal_static_nigori_GetRevisionsResponse_descriptor;
-  private static
-    com.google.protobuf.GeneratedMessage.FieldAccessorTable
-      internal_static_nigori_GetRevisionsResponse_fieldAccessorTable;
-  private static com.google.protobuf.Descriptors.Descriptor
-    internal_static_nigori_PutRequest_descriptor;
-  private static
-    com.google.protobuf.GeneratedMessage.FieldAccessorTable
-      internal_static_nigori_PutRequest_fieldAccessorTable;
-  private static com.google.protobuf.Descriptors.Descriptor
-    internal_static_nigori_DeleteRequest_descriptor;
-  private static
-    com.google.protobuf.GeneratedMessage.FieldAccessorTable
-      internal_static_nigori_DeleteRequest_fieldAccessorTable;
-  
-  public static com.google.protobuf.Descriptors.FileDescriptor
-      getDescriptor() {
-    return descriptor;
+
+  public interface OperationOrBuilder
+      extends com.google.protobuf.MessageOrBuilder {
+
+    // required string type = 1;
+    /**
+     * <code>required string type = 1;</code>
+     *
+     * <pre>
+     * the MessageLibrary.REQUEST_ name of the operation
+     * </pre>
+     */
+    boolean hasType();
+    /**
+     * <code>required string type = 1;</code>
+     *
+     * <pre>
+     * the MessageLibrary.REQUEST_ name of the operation
+     * </pre>
+     */
+    java.lang.String getType();
+    /**
+     * <code>required string type = 1;</code>
+     *
+     * <pre>
+     * the MessageLibrary.REQUEST_ name of the operation
+     * </pre>
+     */
+    com.google.protobuf.ByteString
+        getTypeBytes();
+
+    // required bytes key = 2;
+    /**
+     * <code>required bytes key = 2;</code>
+     */
+    boolean hasKey();
+    /**
+     * <code>required bytes key = 2;</code>
+     */
+    com.google.protobuf.ByteString getKey();
+
+    // optional bytes revision = 3;
+    /**
+     * <code>optional bytes revision = 3;</code>
+     */
+    boolean hasRevision();
+    /**
+     * <code>optional bytes revision = 3;</code>
+     */
+    com.google.protobuf.ByteString getRevision();
+
+    // optional bytes value = 4;
+    /**
+     * <code>optional bytes value = 4;</code>
+     */
+    boolean hasValue();
+    /**
+     * <code>optional bytes value = 4;</code>
+     */
+    com.google.protobuf.ByteString getValue();
   }
-  private static com.google.protobuf.Descriptors.FileDescriptor
-      descriptor;
-  static {
-    java.lang.String[] descriptorData = {
-      "\n$src/main/proto/nigori_messages.proto\022\006" +
-      "nigori\"Z\n\023AuthenticateRequest\022\022\n\npublic_" +
-      "key\030\001 \002(\014\022\013\n\003sig\030\002 \002(\014\022\r\n\005nonce\030\003 \002(\014\022\023\n" +
-      "\013server_name\030\004 \002(\t\"4\n\017RegisterRequest\022\022\n" +
-      "\npublic_key\030\001 \002(\014\022\r\n\005token\030\002 \002(\014\">\n\021Unre" +
-      "gisterRequest\022)\n\004auth\030\001 \002(\0132\033.nigori.Aut" +
-      "henticateRequest\"0\n\rRevisionValue\022\020\n\010rev" +
-      "ision\030\001 \002(\014\022\r\n\005value\030\002 \002(\014\"V\n\nGetRequest" +
-      "\022)\n\004auth\030\001 \002(\0132\033.nigori.AuthenticateRequ" +
-      "est\022\013\n\003key\030\002 \002(\014\022\020\n\010revision\030\003 \001(\014\"D\n\013Ge",
-      "tResponse\022(\n\trevisions\030\001 \003(\0132\025.nigori.Re" +
-      "visionValue\022\013\n\003key\030\002 \001(\014\">\n\021GetIndicesRe" +
-      "quest\022)\n\004auth\030\001 \002(\0132\033.nigori.Authenticat" +
-      "eRequest\"%\n\022GetIndicesResponse\022\017\n\007indice" +
-      "s\030\001 \003(\014\"M\n\023GetRevisionsRequest\022)\n\004auth\030\001" +
-      " \002(\0132\033.nigori.AuthenticateRequest\022\013\n\003key" +
-      "\030\002 \002(\014\"6\n\024GetRevisionsResponse\022\021\n\trevisi" +
-      "ons\030\001 \003(\014\022\013\n\003key\030\002 \001(\014\"e\n\nPutRequest\022)\n\004" +
-      "auth\030\001 \002(\0132\033.nigori.AuthenticateRequest\022" +
-      "\013\n\003key\030\002 \002(\014\022\020\n\010revision\030\003 \002(\014\022\r\n\005value\030",
-      "\004 \002(\014\"Y\n\rDeleteRequest\022)\n\004auth\030\001 \002(\0132\033.n" +
-      "igori.AuthenticateRequest\022\013\n\003key\030\002 \002(\014\022\020" +
-      "\n\010revision\030\003 \001(\014B*\n\030com.google.nigori.co" +
-      "mmonB\016NigoriMessages"
-    };
-    com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner assigner =
-      new com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner() {
-        public com.google.protobuf.ExtensionRegistry assignDescriptors(
-            com.google.protobuf.Descriptors.FileDescriptor root) {
-          descriptor = root;
-          internal_static_nigori_AuthenticateRequest_descriptor =
-            getDescriptor().getMessageTypes().get(0);
-          internal_static_nigori_AuthenticateRequest_fieldAccessorTable = new
-            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
-              internal_static_nigori_AuthenticateRequest_descriptor,
-              new java.lang.String[] { "PublicKey", "Sig", "Nonce", "ServerName", },
-              com.google.nigori.common.NigoriMessages.AuthenticateRequest.class,
-              com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder.class);
-          internal_static_nigori_RegisterRequest_descriptor =
-            getDescriptor().getMessageTypes().get(1);
-          internal_static_nigori_RegisterRequest_fieldAccessorTable = new
-            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
-              internal_static_nigori_RegisterRequest_descriptor,
-              new java.lang.String[] { "PublicKey", "Token", },
-              com.google.nigori.common.NigoriMessages.RegisterRequest.class,
-              com.google.nigori.common.NigoriMessages.RegisterRequest.Builder.class);
-          internal_static_nigori_UnregisterRequest_descriptor =
-            getDescriptor().getMessageTypes().get(2);
-          internal_static_nigori_UnregisterRequest_fieldAccessorTable = new
-            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
-              internal_static_nigori_UnregisterRequest_descriptor,
-              new java.lang.String[] { "Auth", },
-              com.google.nigori.common.NigoriMessages.UnregisterRequest.class,
-              com.google.nigori.common.NigoriMessages.UnregisterRequest.Builder.class);
-          internal_static_nigori_RevisionValue_descriptor =
-            getDescriptor().getMessageTypes().get(3);
-          internal_static_nigori_RevisionValue_fieldAccessorTable = new
-            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
-              internal_static_nigori_RevisionValue_descriptor,
-              new java.lang.String[] { "Revision", "Value", },
-              com.google.nigori.common.NigoriMessages.RevisionValue.class,
-              com.google.nigori.common.NigoriMessages.RevisionValue.Builder.class);
-          internal_static_nigori_GetRequest_descriptor =
-            getDescriptor().getMessageTypes().get(4);
-          internal_static_nigori_GetRequest_fieldAccessorTable = new
-            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
-              internal_static_nigori_GetRequest_descriptor,
-              new java.lang.String[] { "Auth", "Key", "Revision", },
-              com.google.nigori.common.NigoriMessages.GetRequest.class,
-              com.google.nigori.common.NigoriMessages.GetRequest.Builder.class);
-          internal_static_nigori_GetResponse_descriptor =
-            getDescriptor().getMessageTypes().get(5);
-          internal_static_nigori_GetResponse_fieldAccessorTable = new
-            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
-              internal_static_nigori_GetResponse_descriptor,
-              new java.lang.String[] { "Revisions", "Key", },
-              com.google.nigori.common.NigoriMessages.GetResponse.class,
-              com.google.nigori.common.NigoriMessages.GetResponse.Builder.class);
-          internal_static_nigori_GetIndicesRequest_descriptor =
-            getDescriptor().getMessageTypes().get(6);
-          internal_static_nigori_GetIndicesRequest_fieldAccessorTable = new
-            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
-              internal_static_nigori_GetIndicesRequest_descriptor,
-              new java.lang.String[] { "Auth", },
-              com.google.nigori.common.NigoriMessages.GetIndicesRequest.class,
-              com.google.nigori.common.NigoriMessages.GetIndicesRequest.Builder.class);
-          internal_static_nigori_GetIndicesResponse_descriptor =
-            getDescriptor().getMessageTypes().get(7);
-          internal_static_nigori_GetIndicesResponse_fieldAccessorTable = new
-            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
-              internal_static_nigori_GetIndicesResponse_descriptor,
-              new java.lang.String[] { "Indices", },
-              com.google.nigori.common.NigoriMessages.GetIndicesResponse.class,
-              com.google.nigori.common.NigoriMessages.GetIndicesResponse.Builder.class);
-          internal_static_nigori_GetRevisionsRequest_descriptor =
-            getDescriptor().getMessageTypes().get(8);
-          internal_static_nigori_GetRevisionsRequest_fieldAccessorTable = new
-            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
-              internal_static_nigori_GetRevisionsRequest_descriptor,
-              new java.lang.String[] { "Auth", "Key", },
-              com.google.nigori.common.NigoriMessages.GetRevisionsRequest.class,
-              com.google.nigori.common.NigoriMessages.GetRevisionsRequest.Builder.class);
-          internal_static_nigori_GetRevisionsResponse_descriptor =
-            getDescriptor().getMessageTypes().get(9);
-          internal_static_nigori_GetRevisionsResponse_fieldAccessorTable = new
-            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
-              internal_static_nigori_GetRevisionsResponse_descriptor,
-              new java.lang.String[] { "Revisions", "Key", },
-              com.google.nigori.common.NigoriMessages.GetRevisionsResponse.class,
-              com.google.nigori.common.NigoriMessages.GetRevisionsResponse.Builder.class);
-          internal_static_nigori_PutRequest_descriptor =
-            getDescriptor().getMessageTypes().get(10);
-          internal_static_nigori_PutRequest_fieldAccessorTable = new
-            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
-              internal_static_nigori_PutRequest_descriptor,
-              new java.lang.String[] { "Auth", "Key", "Revision", "Value", },
-              com.google.nigori.common.NigoriMessages.PutRequest.class,
-              com.google.nigori.common.NigoriMessages.PutRequest.Builder.class);
-          internal_static_nigori_DeleteRequest_descriptor =
-            getDescriptor().getMessageTypes().get(11);
-          internal_static_nigori_DeleteRequest_fieldAccessorTable = new
-            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
-              internal_static_nigori_DeleteRequest_descriptor,
-              new java.lang.String[] { "Auth", "Key", "Revision", },
-              com.google.nigori.common.NigoriMessages.DeleteRequest.class,
-              com.google.nigori.common.NigoriMessages.DeleteRequest.Builder.class);
-          return null;
+  /**
+   * Protobuf type {@code nigori.Operation}
+   *
+   * <pre>
+   * One of get, get-revisions, put or delete as part of a BatchRequest
+   * </pre>
+   */
+  public static final class Operation extends
+      com.google.protobuf.GeneratedMessage
+      implements OperationOrBuilder {
+    // Use Operation.newBuilder() to construct.
+    private Operation(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
+      super(builder);
+      this.unknownFields = builder.getUnknownFields();
+    }
+    private Operation(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
+    private static final Operation defaultInstance;
+    public static Operation getDefaultInstance() {
+      return defaultInstance;
+    }
+
+    public Operation getDefaultInstanceForType() {
+      return defaultInstance;
+    }
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private Operation(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 10: {
+              bitField0_ |= 0x00000001;
+              type_ = input.readBytes();
+              break;
+            }
+            case 18: {
+              bitField0_ |= 0x00000002;
+              key_ = input.readBytes();
+              break;
+            }
+            case 26: {
+              bitField0_ |= 0x00000004;
+              revision_ = input.readBytes();
+              break;
+            }
+            case 34: {
+              bitField0_ |= 0x00000008;
+              value_ = input.readBytes();
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_Operation_descriptor;
+    }
+
+    protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_Operation_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              com.google.nigori.common.NigoriMessages.Operation.class, com.google.nigori.common.NigoriMessages.Operation.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<Operation> PARSER =
+        new com.google.protobuf.AbstractParser<Operation>() {
+      public Operation parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new Operation(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<Operation> getParserForType() {
+      return PARSER;
+    }
+
+    private int bitField0_;
+    // required string type = 1;
+    public static final int TYPE_FIELD_NUMBER = 1;
+    private java.lang.Object type_;
+    /**
+     * <code>required string type = 1;</code>
+     *
+     * <pre>
+     * the MessageLibrary.REQUEST_ name of the operation
+     * </pre>
+     */
+    public boolean hasType() {
+      return ((bitField0_ & 0x00000001) == 0x00000001);
+    }
+    /**
+     * <code>required string type = 1;</code>
+     *
+     * <pre>
+     * the MessageLibrary.REQUEST_ name of the operation
+     * </pre>
+     */
+    public java.lang.String getType() {
+      java.lang.Object ref = type_;
+      if (ref instanceof java.lang.String) {
+        return (java.lang.String) ref;
+      } else {
+        com.google.protobuf.ByteString bs = 
+            (com.google.protobuf.ByteString) ref;
+        java.lang.String s = bs.toStringUtf8();
+        if (bs.isValidUtf8()) {
+          type_ = s;
+        }
+        return s;
+      }
+    }
+    /**
+     * <code>required string type = 1;</code>
+     *
+     * <pre>
+     * the MessageLibrary.REQUEST_ name of the operation
+     * </pre>
+     */
+    public com.google.protobuf.ByteString
+        getTypeBytes() {
+      java.lang.Object ref = type_;
+      if (ref instanceof java.lang.String) {
+        com.google.protobuf.ByteString b = 
+            com.google.protobuf.ByteString.copyFromUtf8(
+                (java.lang.String) ref);
+        type_ = b;
+        return b;
+      } else {
+        return (com.google.protobuf.ByteString) ref;
+      }
+    }
+
+    // required bytes key = 2;
+    public static final int KEY_FIELD_NUMBER = 2;
+    private com.google.protobuf.ByteString key_;
+    /**
+     * <code>required bytes key = 2;</code>
+     */
+    public boolean hasKey() {
+      return ((bitField0_ & 0x00000002) == 0x00000002);
+    }
+    /**
+     * <code>required bytes key = 2;</code>
+     */
+    public com.google.protobuf.ByteString getKey() {
+      return key_;
+    }
+
+    // optional bytes revision = 3;
+    public static final int REVISION_FIELD_NUMBER = 3;
+    private com.google.protobuf.ByteString revision_;
+    /**
+     * <code>optional bytes revision = 3;</code>
+     */
+    public boolean hasRevision() {
+      return ((bitField0_ & 0x00000004) == 0x00000004);
+    }
+    /**
+     * <code>optional bytes revision = 3;</code>
+     */
+    public com.google.protobuf.ByteString getRevision() {
+      return revision_;
+    }
+
+    // optional bytes value = 4;
+    public static final int VALUE_FIELD_NUMBER = 4;
+    private com.google.protobuf.ByteString value_;
+    /**
+     * <code>optional bytes value = 4;</code>
+     */
+    public boolean hasValue() {
+      return ((bitField0_ & 0x00000008) == 0x00000008);
+    }
+    /**
+     * <code>optional bytes value = 4;</code>
+     */
+    public com.google.protobuf.ByteString getValue() {
+      return value_;
+    }
+
+    private void initFields() {
+      type_ = "";
+      key_ = com.google.protobuf.ByteString.EMPTY;
+      revision_ = com.google.protobuf.ByteString.EMPTY;
+      value_ = com.google.protobuf.ByteString.EMPTY;
+    }
+    private byte memoizedIsInitialized = -1;
+    public final boolean isInitialized() {
+      byte isInitialized = memoizedIsInitialized;
+      if (isInitialized != -1) return isInitialized == 1;
+
+      if (!hasType()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      if (!hasKey()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      memoizedIsInitialized = 1;
+      return true;
+    }
+
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        output.writeBytes(1, getTypeBytes());
+      }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        output.writeBytes(2, key_);
+      }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        output.writeBytes(3, revision_);
+      }
+      if (((bitField0_ & 0x00000008) == 0x00000008)) {
+        output.writeBytes(4, value_);
+      }
+      getUnknownFields().writeTo(output);
+    }
+
+    private int memoizedSerializedSize = -1;
+    public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+
+      size = 0;
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(1, getTypeBytes());
+      }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(2, key_);
+      }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(3, revision_);
+      }
+      if (((bitField0_ & 0x00000008) == 0x00000008)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(4, value_);
+      }
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+
+    private static final long serialVersionUID = 0L;
+    @java.lang.Override
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
+      return super.writeReplace();
+    }
+
+    public static com.google.nigori.common.NigoriMessages.Operation parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static com.google.nigori.common.NigoriMessages.Operation parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.Operation parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static com.google.nigori.common.NigoriMessages.Operation parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.Operation parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.Operation parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.Operation parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.Operation parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.Operation parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.Operation parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+
+    public static Builder newBuilder() { return Builder.create(); }
+    public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(com.google.nigori.common.NigoriMessages.Operation prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    public Builder toBuilder() { return newBuilder(this); }
+
+    @java.lang.Override
+    protected Builder newBuilderForType(
+        com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+      Builder builder = new Builder(parent);
+      return builder;
+    }
+    /**
+     * Protobuf type {@code nigori.Operation}
+     *
+     * <pre>
+     * One of get, get-revisions, put or delete as part of a BatchRequest
+     * </pre>
+     */
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder>
+       implements com.google.nigori.common.NigoriMessages.OperationOrBuilder {
+      public static final com.google.protobuf.Descriptors.Descriptor
+          getDescriptor() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_Operation_descriptor;
+      }
+
+      protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+          internalGetFieldAccessorTable() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_Operation_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                com.google.nigori.common.NigoriMessages.Operation.class, com.google.nigori.common.NigoriMessages.Operation.Builder.class);
+      }
+
+      // Construct using com.google.nigori.common.NigoriMessages.Operation.newBuilder()
+      private Builder() {
+        maybeForceBuilderInitialization();
+      }
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+        super(parent);
+        maybeForceBuilderInitialization();
+      }
+      private void maybeForceBuilderInitialization() {
+        if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+        }
+      }
+      private static Builder create() {
+        return new Builder();
+      }
+
+      public Builder clear() {
+        super.clear();
+        type_ = "";
+        bitField0_ = (bitField0_ & ~0x00000001);
+        key_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000002);
+        revision_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000004);
+        value_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000008);
+        return this;
+      }
+
+      public Builder clone() {
+        return create().mergeFrom(buildPartial());
+      }
+
+      public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_Operation_descriptor;
+      }
+
+      public com.google.nigori.common.NigoriMessages.Operation getDefaultInstanceForType() {
+        return com.google.nigori.common.NigoriMessages.Operation.getDefaultInstance();
+      }
+
+      public com.google.nigori.common.NigoriMessages.Operation build() {
+        com.google.nigori.common.NigoriMessages.Operation result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return result;
+      }
+
+      public com.google.nigori.common.NigoriMessages.Operation buildPartial() {
+        com.google.nigori.common.NigoriMessages.Operation result = new com.google.nigori.common.NigoriMessages.Operation(this);
+        int from_bitField0_ = bitField0_;
+        int to_bitField0_ = 0;
+        if (((from_bitField0_ & 0x00000001) == 0x00000001)) {
+          to_bitField0_ |= 0x00000001;
+        }
+        result.type_ = type_;
+        if (((from_bitField0_ & 0x00000002) == 0x00000002)) {
+          to_bitField0_ |= 0x00000002;
+        }
+        result.key_ = key_;
+        if (((from_bitField0_ & 0x00000004) == 0x00000004)) {
+          to_bitField0_ |= 0x00000004;
+        }
+        result.revision_ = revision_;
+        if (((from_bitField0_ & 0x00000008) == 0x00000008)) {
+          to_bitField0_ |= 0x00000008;
+        }
+        result.value_ = value_;
+        result.bitField0_ = to_bitField0_;
+        onBuilt();
+        return result;
+      }
+
+      public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof com.google.nigori.common.NigoriMessages.Operation) {
+          return mergeFrom((com.google.nigori.common.NigoriMessages.Operation)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+
+      public Builder mergeFrom(com.google.nigori.common.NigoriMessages.Operation other) {
+        if (other == com.google.nigori.common.NigoriMessages.Operation.getDefaultInstance()) return this;
+        if (other.hasType()) {
+          bitField0_ |= 0x00000001;
+          type_ = other.type_;
+          onChanged();
+        }
+        if (other.hasKey()) {
+          setKey(other.getKey());
+        }
+        if (other.hasRevision()) {
+          setRevision(other.getRevision());
+        }
+        if (other.hasValue()) {
+          setValue(other.getValue());
+        }
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+
+      public final boolean isInitialized() {
+        if (!hasType()) {
+          
+          return false;
+        }
+        if (!hasKey()) {
+          
+          return false;
+        }
+        return true;
+      }
+
+      public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        com.google.nigori.common.NigoriMessages.Operation parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (com.google.nigori.common.NigoriMessages.Operation) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
+          }
+        }
+        return this;
+      }
+      private int bitField0_;
+
+      // required string type = 1;
+      private java.lang.Object type_ = "";
+      /**
+       * <code>required string type = 1;</code>
+       *
+       * <pre>
+       * the MessageLibrary.REQUEST_ name of the operation
+       * </pre>
+       */
+      public boolean hasType() {
+        return ((bitField0_ & 0x00000001) == 0x00000001);
+      }
+      /**
+       * <code>required string type = 1;</code>
+       *
+       * <pre>
+       * the MessageLibrary.REQUEST_ name of the operation
+       * </pre>
+       */
+      public java.lang.String getType() {
+        java.lang.Object ref = type_;
+        if (!(ref instanceof java.lang.String)) {
+          java.lang.String s = ((com.google.protobuf.ByteString) ref)
+              .toStringUtf8();
+          type_ = s;
+          return s;
+        } else {
+          return (java.lang.String) ref;
+        }
+      }
+      /**
+       * <code>required string type = 1;</code>
+       *
+       * <pre>
+       * the MessageLibrary.REQUEST_ name of the operation
+       * </pre>
+       */
+      public com.google.protobuf.ByteString
+          getTypeBytes() {
+        java.lang.Object ref = type_;
+        if (ref instanceof String) {
+          com.google.protobuf.ByteString b = 
+              com.google.protobuf.ByteString.copyFromUtf8(
+                  (java.lang.String) ref);
+          type_ = b;
+          return b;
+        } else {
+          return (com.google.protobuf.ByteString) ref;
+        }
+      }
+      /**
+       * <code>required string type = 1;</code>
+       *
+       * <pre>
+       * the MessageLibrary.REQUEST_ name of the operation
+       * </pre>
+       */
+      public Builder setType(
+          java.lang.String value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000001;
+        type_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>required string type = 1;</code>
+       *
+       * <pre>
+       * the MessageLibrary.REQUEST_ name of the operation
+       * </pre>
+       */
+      public Builder clearType() {
+        bitField0_ = (bitField0_ & ~0x00000001);
+        type_ = getDefaultInstance().getType();
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>required string type = 1;</code>
+       *
+       * <pre>
+       * the MessageLibrary.REQUEST_ name of the operation
+       * </pre>
+       */
+      public Builder setTypeBytes(
+          com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000001;
+        type_ = value;
+        onChanged();
+        return this;
+      }
+
+      // required bytes key = 2;
+      private com.google.protobuf.ByteString key_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>required bytes key = 2;</code>
+       */
+      public boolean hasKey() {
+        return ((bitField0_ & 0x00000002) == 0x00000002);
+      }
+      /**
+       * <code>required bytes key = 2;</code>
+       */
+      public com.google.protobuf.ByteString getKey() {
+        return key_;
+      }
+      /**
+       * <code>required bytes key = 2;</code>
+       */
+      public Builder setKey(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000002;
+        key_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>required bytes key = 2;</code>
+       */
+      public Builder clearKey() {
+        bitField0_ = (bitField0_ & ~0x00000002);
+        key_ = getDefaultInstance().getKey();
+        onChanged();
+        return this;
+      }
+
+      // optional bytes revision = 3;
+      private com.google.protobuf.ByteString revision_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes revision = 3;</code>
+       */
+      public boolean hasRevision() {
+        return ((bitField0_ & 0x00000004) == 0x00000004);
+      }
+      /**
+       * <code>optional bytes revision = 3;</code>
+       */
+      public com.google.protobuf.ByteString getRevision() {
+        return revision_;
+      }
+      /**
+       * <code>optional bytes revision = 3;</code>
+       */
+      public Builder setRevision(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000004;
+        revision_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bytes revision = 3;</code>
+       */
+      public Builder clearRevision() {
+        bitField0_ = (bitField0_ & ~0x00000004);
+        revision_ = getDefaultInstance().getRevision();
+        onChanged();
+        return this;
+      }
+
+      // optional bytes value = 4;
+      private com.google.protobuf.ByteString value_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes value = 4;</code>
+       */
+      public boolean hasValue() {
+        return ((bitField0_ & 0x00000008) == 0x00000008);
+      }
+      /**
+       * <code>optional bytes value = 4;</code>
+       */
+      public com.google.protobuf.ByteString getValue() {
+        return value_;
+      }
+      /**
+       * <code>optional bytes value = 4;</code>
+       */
+      public Builder setValue(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000008;
+        value_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bytes value = 4;</code>
+       */
+      public Builder clearValue() {
+        bitField0_ = (bitField0_ & ~0x00000008);
+        value_ = getDefaultInstance().getValue();
+        onChanged();
+        return this;
+      }
+
+      // @@protoc_insertion_point(builder_scope:nigori.Operation)
+    }
+
+    static {
+      defaultInstance = new Operation(true);
+      defaultInstance.initFields();
+    }
+
+    // @@protoc_insertion_point(class_scope:nigori.Operation)
+  }
+
+  public interface BatchRequestOrBuilder
+      extends com.google.protobuf.MessageOrBuilder {
+
+    // required .nigori.AuthenticateRequest auth = 1;
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
+    boolean hasAuth();
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
+    com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth();
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
+    com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder();
+
+    // repeated .nigori.Operation operations = 2;
+    /**
+     * <code>repeated .nigori.Operation operations = 2;</code>
+     */
+    java.util.List<com.google.nigori.common.NigoriMessages.Operation> 
+        getOperationsList();
+    /**
+     * <code>repeated .nigori.Operation operations = 2;</code>
+     */
+    com.google.nigori.common.NigoriMessages.Operation getOperations(int index);
+    /**
+     * <code>repeated .nigori.Operation operations = 2;</code>
+     */
+    int getOperationsCount();
+    /**
+     * <code>repeated .nigori.Operation operations = 2;</code>
+     */
+    java.util.List<? extends com.google.nigori.common.NigoriMessages.OperationOrBuilder> 
+        getOperationsOrBuilderList();
+    /**
+     * <code>repeated .nigori.Operation operations = 2;</code>
+     */
+    com.google.nigori.common.NigoriMessages.OperationOrBuilder getOperationsOrBuilder(
+        int index);
+  }
+  /**
+   * Protobuf type {@code nigori.BatchRequest}
+   *
+   * <pre>
+   * Many operations authenticated by one signature over all of their payloads
+   * </pre>
+   */
+  public static final class BatchRequest extends
+      com.google.protobuf.GeneratedMessage
+      implements BatchRequestOrBuilder {
+    // Use BatchRequest.newBuilder() to construct.
+    private BatchRequest(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
+      super(builder);
+      this.unknownFields = builder.getUnknownFields();
+    }
+    private BatchRequest(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
+    private static final BatchRequest defaultInstance;
+    public static BatchRequest getDefaultInstance() {
+      return defaultInstance;
+    }
+
+    public BatchRequest getDefaultInstanceForType() {
+      return defaultInstance;
+    }
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private BatchRequest(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 10: {
+              com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder subBuilder = null;
+              if (((bitField0_ & 0x00000001) == 0x00000001)) {
+                subBuilder = auth_.toBuilder();
+              }
+              auth_ = input.readMessage(com.google.nigori.common.NigoriMessages.AuthenticateRequest.PARSER, extensionRegistry);
+              if (subBuilder != null) {
+                subBuilder.mergeFrom(auth_);
+                auth_ = subBuilder.buildPartial();
+              }
+              bitField0_ |= 0x00000001;
+              break;
+            }
+            case 18: {
+              if (!((mutable_bitField0_ & 0x00000002) == 0x00000002)) {
+                operations_ = new java.util.ArrayList<com.google.nigori.common.NigoriMessages.Operation>();
+                mutable_bitField0_ |= 0x00000002;
+              }
+              operations_.add(input.readMessage(com.google.nigori.common.NigoriMessages.Operation.PARSER, extensionRegistry));
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        if (((mutable_bitField0_ & 0x00000002) == 0x00000002)) {
+          operations_ = java.util.Collections.unmodifiableList(operations_);
+        }
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_BatchRequest_descriptor;
+    }
+
+    protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_BatchRequest_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              com.google.nigori.common.NigoriMessages.BatchRequest.class, com.google.nigori.common.NigoriMessages.BatchRequest.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<BatchRequest> PARSER =
+        new com.google.protobuf.AbstractParser<BatchRequest>() {
+      public BatchRequest parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new BatchRequest(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<BatchRequest> getParserForType() {
+      return PARSER;
+    }
+
+    private int bitField0_;
+    // required .nigori.AuthenticateRequest auth = 1;
+    public static final int AUTH_FIELD_NUMBER = 1;
+    private com.google.nigori.common.NigoriMessages.AuthenticateRequest auth_;
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
+    public boolean hasAuth() {
+      return ((bitField0_ & 0x00000001) == 0x00000001);
+    }
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
+    public com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth() {
+      return auth_;
+    }
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
+    public com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder() {
+      return auth_;
+    }
+
+    // repeated .nigori.Operation operations = 2;
+    public static final int OPERATIONS_FIELD_NUMBER = 2;
+    private java.util.List<com.google.nigori.common.NigoriMessages.Operation> operations_;
+    /**
+     * <code>repeated .nigori.Operation operations = 2;</code>
+     */
+    public java.util.List<com.google.nigori.common.NigoriMessages.Operation> getOperationsList() {
+      return operations_;
+    }
+    /**
+     * <code>repeated .nigori.Operation operations = 2;</code>
+     */
+    public java.util.List<? extends com.google.nigori.common.NigoriMessages.OperationOrBuilder> 
+        getOperationsOrBuilderList() {
+      return operations_;
+    }
+    /**
+     * <code>repeated .nigori.Operation operations = 2;</code>
+     */
+    public int getOperationsCount() {
+      return operations_.size();
+    }
+    /**
+     * <code>repeated .nigori.Operation operations = 2;</code>
+     */
+    public com.google.nigori.common.NigoriMessages.Operation getOperations(int index) {
+      return operations_.get(index);
+    }
+    /**
+     * <code>repeated .nigori.Operation operations = 2;</code>
+     */
+    public com.google.nigori.common.NigoriMessages.OperationOrBuilder getOperationsOrBuilder(
+        int index) {
+      return operations_.get(index);
+    }
+
+    private void initFields() {
+      auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
+      operations_ = java.util.Collections.emptyList();
+    }
+    private byte memoizedIsInitialized = -1;
+    public final boolean isInitialized() {
+      byte isInitialized = memoizedIsInitialized;
+      if (isInitialized != -1) return isInitialized == 1;
+
+      if (!hasAuth()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      if (!getAuth().isInitialized()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      for (int i = 0; i < getOperationsCount(); i++) {
+        if (!getOperations(i).isInitialized()) {
+          memoizedIsInitialized = 0;
+          return false;
+        }
+      }
+      memoizedIsInitialized = 1;
+      return true;
+    }
+
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        output.writeMessage(1, auth_);
+      }
+      for (int i = 0; i < operations_.size(); i++) {
+        output.writeMessage(2, operations_.get(i));
+      }
+      getUnknownFields().writeTo(output);
+    }
+
+    private int memoizedSerializedSize = -1;
+    public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+
+      size = 0;
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(1, auth_);
+      }
+      for (int i = 0; i < operations_.size(); i++) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(2, operations_.get(i));
+      }
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+
+    private static final long serialVersionUID = 0L;
+    @java.lang.Override
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
+      return super.writeReplace();
+    }
+
+    public static com.google.nigori.common.NigoriMessages.BatchRequest parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static com.google.nigori.common.NigoriMessages.BatchRequest parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.BatchRequest parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static com.google.nigori.common.NigoriMessages.BatchRequest parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.BatchRequest parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.BatchRequest parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.BatchRequest parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.BatchRequest parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.BatchRequest parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.BatchRequest parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+
+    public static Builder newBuilder() { return Builder.create(); }
+    public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(com.google.nigori.common.NigoriMessages.BatchRequest prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    public Builder toBuilder() { return newBuilder(this); }
+
+    @java.lang.Override
+    protected Builder newBuilderForType(
+        com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+      Builder builder = new Builder(parent);
+      return builder;
+    }
+    /**
+     * Protobuf type {@code nigori.BatchRequest}
+     *
+     * <pre>
+     * Many operations authenticated by one signature over all of their payloads
+     * </pre>
+     */
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder>
+       implements com.google.nigori.common.NigoriMessages.BatchRequestOrBuilder {
+      public static final com.google.protobuf.Descriptors.Descriptor
+          getDescriptor() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_BatchRequest_descriptor;
+      }
+
+      protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+          internalGetFieldAccessorTable() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_BatchRequest_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                com.google.nigori.common.NigoriMessages.BatchRequest.class, com.google.nigori.common.NigoriMessages.BatchRequest.Builder.class);
+      }
+
+      // Construct using com.google.nigori.common.NigoriMessages.BatchRequest.newBuilder()
+      private Builder() {
+        maybeForceBuilderInitialization();
+      }
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+        super(parent);
+        maybeForceBuilderInitialization();
+      }
+      private void maybeForceBuilderInitialization() {
+        if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+          getAuthFieldBuilder();
+          getOperationsFieldBuilder();
+        }
+      }
+      private static Builder create() {
+        return new Builder();
+      }
+
+      public Builder clear() {
+        super.clear();
+        if (authBuilder_ == null) {
+          auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
+        } else {
+          authBuilder_.clear();
+        }
+        bitField0_ = (bitField0_ & ~0x00000001);
+        if (operationsBuilder_ == null) {
+          operations_ = java.util.Collections.emptyList();
+          bitField0_ = (bitField0_ & ~0x00000002);
+        } else {
+          operationsBuilder_.clear();
+        }
+        return this;
+      }
+
+      public Builder clone() {
+        return create().mergeFrom(buildPartial());
+      }
+
+      public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_BatchRequest_descriptor;
+      }
+
+      public com.google.nigori.common.NigoriMessages.BatchRequest getDefaultInstanceForType() {
+        return com.google.nigori.common.NigoriMessages.BatchRequest.getDefaultInstance();
+      }
+
+      public com.google.nigori.common.NigoriMessages.BatchRequest build() {
+        com.google.nigori.common.NigoriMessages.BatchRequest result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return result;
+      }
+
+      public com.google.nigori.common.NigoriMessages.BatchRequest buildPartial() {
+        com.google.nigori.common.NigoriMessages.BatchRequest result = new com.google.nigori.common.NigoriMessages.BatchRequest(this);
+        int from_bitField0_ = bitField0_;
+        int to_bitField0_ = 0;
+        if (((from_bitField0_ & 0x00000001) == 0x00000001)) {
+          to_bitField0_ |= 0x00000001;
+        }
+        if (authBuilder_ == null) {
+          result.auth_ = auth_;
+        } else {
+          result.auth_ = authBuilder_.build();
+        }
+        if (operationsBuilder_ == null) {
+          if (((bitField0_ & 0x00000002) == 0x00000002)) {
+            operations_ = java.util.Collections.unmodifiableList(operations_);
+            bitField0_ = (bitField0_ & ~0x00000002);
+          }
+          result.operations_ = operations_;
+        } else {
+          result.operations_ = operationsBuilder_.build();
+        }
+        result.bitField0_ = to_bitField0_;
+        onBuilt();
+        return result;
+      }
+
+      public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof com.google.nigori.common.NigoriMessages.BatchRequest) {
+          return mergeFrom((com.google.nigori.common.NigoriMessages.BatchRequest)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+
+      public Builder mergeFrom(com.google.nigori.common.NigoriMessages.BatchRequest other) {
+        if (other == com.google.nigori.common.NigoriMessages.BatchRequest.getDefaultInstance()) return this;
+        if (other.hasAuth()) {
+          mergeAuth(other.getAuth());
+        }
+        if (operationsBuilder_ == null) {
+          if (!other.operations_.isEmpty()) {
+            if (operations_.isEmpty()) {
+              operations_ = other.operations_;
+              bitField0_ = (bitField0_ & ~0x00000002);
+            } else {
+              ensureOperationsIsMutable();
+              operations_.addAll(other.operations_);
+            }
+            onChanged();
+          }
+        } else {
+          if (!other.operations_.isEmpty()) {
+            if (operationsBuilder_.isEmpty()) {
+              operationsBuilder_.dispose();
+              operationsBuilder_ = null;
+              operations_ = other.operations_;
+              bitField0_ = (bitField0_ & ~0x00000002);
+              operationsBuilder_ = 
+                com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders ?
+                   getOperationsFieldBuilder() : null;
+            } else {
+              operationsBuilder_.addAllMessages(other.operations_);
+            }
+          }
+        }
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+
+      public final boolean isInitialized() {
+        if (!hasAuth()) {
+          
+          return false;
+        }
+        if (!getAuth().isInitialized()) {
+          
+          return false;
+        }
+        for (int i = 0; i < getOperationsCount(); i++) {
+          if (!getOperations(i).isInitialized()) {
+            
+            return false;
+          }
+        }
+        return true;
+      }
+
+      public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        com.google.nigori.common.NigoriMessages.BatchRequest parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (com.google.nigori.common.NigoriMessages.BatchRequest) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
+          }
+        }
+        return this;
+      }
+      private int bitField0_;
+
+      // required .nigori.AuthenticateRequest auth = 1;
+      private com.google.nigori.common.NigoriMessages.AuthenticateRequest auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
+      private com.google.protobuf.SingleFieldBuilder<
+          com.google.nigori.common.NigoriMessages.AuthenticateRequest, com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder, com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder> authBuilder_;
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
+      public boolean hasAuth() {
+        return ((bitField0_ & 0x00000001) == 0x00000001);
+      }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth() {
+        if (authBuilder_ == null) {
+          return auth_;
+        } else {
+          return authBuilder_.getMessage();
+        }
+      }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
+      public Builder setAuth(com.google.nigori.common.NigoriMessages.AuthenticateRequest value) {
+        if (authBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          auth_ = value;
+          onChanged();
+        } else {
+          authBuilder_.setMessage(value);
+        }
+        bitField0_ |= 0x00000001;
+        return this;
+      }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
+      public Builder setAuth(
+          com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder builderForValue) {
+        if (authBuilder_ == null) {
+          auth_ = builderForValue.build();
+          onChanged();
+        } else {
+          authBuilder_.setMessage(builderForValue.build());
+        }
+        bitField0_ |= 0x00000001;
+        return this;
+      }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
+      public Builder mergeAuth(com.google.nigori.common.NigoriMessages.AuthenticateRequest value) {
+        if (authBuilder_ == null) {
+          if (((bitField0_ & 0x00000001) == 0x00000001) &&
+              auth_ != com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance()) {
+            auth_ =
+              com.google.nigori.common.NigoriMessages.AuthenticateRequest.newBuilder(auth_).mergeFrom(value).buildPartial();
+          } else {
+            auth_ = value;
+          }
+          onChanged();
+        } else {
+          authBuilder_.mergeFrom(value);
+        }
+        bitField0_ |= 0x00000001;
+        return this;
+      }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
+      public Builder clearAuth() {
+        if (authBuilder_ == null) {
+          auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
+          onChanged();
+        } else {
+          authBuilder_.clear();
+        }
+        bitField0_ = (bitField0_ & ~0x00000001);
+        return this;
+      }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder getAuthBuilder() {
+        bitField0_ |= 0x00000001;
+        onChanged();
+        return getAuthFieldBuilder().getBuilder();
+      }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder() {
+        if (authBuilder_ != null) {
+          return authBuilder_.getMessageOrBuilder();
+        } else {
+          return auth_;
+        }
+      }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
+      private com.google.protobuf.SingleFieldBuilder<
+          com.google.nigori.common.NigoriMessages.AuthenticateRequest, com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder, com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder> 
+          getAuthFieldBuilder() {
+        if (authBuilder_ == null) {
+          authBuilder_ = new com.google.protobuf.SingleFieldBuilder<
+              com.google.nigori.common.NigoriMessages.AuthenticateRequest, com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder, com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder>(
+                  auth_,
+                  getParentForChildren(),
+                  isClean());
+          auth_ = null;
+        }
+        return authBuilder_;
+      }
+
+      // repeated .nigori.Operation operations = 2;
+      private java.util.List<com.google.nigori.common.NigoriMessages.Operation> operations_ =
+        java.util.Collections.emptyList();
+      private void ensureOperationsIsMutable() {
+        if (!((bitField0_ & 0x00000002) == 0x00000002)) {
+          operations_ = new java.util.ArrayList<com.google.nigori.common.NigoriMessages.Operation>(operations_);
+          bitField0_ |= 0x00000002;
+         }
+      }
+
+      private com.google.protobuf.RepeatedFieldBuilder<
+          com.google.nigori.common.NigoriMessages.Operation, com.google.nigori.common.NigoriMessages.Operation.Builder, com.google.nigori.common.NigoriMessages.OperationOrBuilder> operationsBuilder_;
+
+      /**
+       * <code>repeated .nigori.Operation operations = 2;</code>
+       */
+      public java.util.List<com.google.nigori.common.NigoriMessages.Operation> getOperationsList() {
+        if (operationsBuilder_ == null) {
+          return java.util.Collections.unmodifiableList(operations_);
+        } else {
+          return operationsBuilder_.getMessageList();
+        }
+      }
+      /**
+       * <code>repeated .nigori.Operation operations = 2;</code>
+       */
+      public int getOperationsCount() {
+        if (operationsBuilder_ == null) {
+          return operations_.size();
+        } else {
+          return operationsBuilder_.getCount();
+        }
+      }
+      /**
+       * <code>repeated .nigori.Operation operations = 2;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.Operation getOperations(int index) {
+        if (operationsBuilder_ == null) {
+          return operations_.get(index);
+        } else {
+          return operationsBuilder_.getMessage(index);
+        }
+      }
+      /**
+       * <code>repeated .nigori.Operation operations = 2;</code>
+       */
+      public Builder setOperations(
+          int index, com.google.nigori.common.NigoriMessages.Operation value) {
+        if (operationsBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureOperationsIsMutable();
+          operations_.set(index, value);
+          onChanged();
+        } else {
+          operationsBuilder_.setMessage(index, value);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.Operation operations = 2;</code>
+       */
+      public Builder setOperations(
+          int index, com.google.nigori.common.NigoriMessages.Operation.Builder builderForValue) {
+        if (operationsBuilder_ == null) {
+          ensureOperationsIsMutable();
+          operations_.set(index, builderForValue.build());
+          onChanged();
+        } else {
+          operationsBuilder_.setMessage(index, builderForValue.build());
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.Operation operations = 2;</code>
+       */
+      public Builder addOperations(com.google.nigori.common.NigoriMessages.Operation value) {
+        if (operationsBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureOperationsIsMutable();
+          operations_.add(value);
+          onChanged();
+        } else {
+          operationsBuilder_.addMessage(value);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.Operation operations = 2;</code>
+       */
+      public Builder addOperations(
+          int index, com.google.nigori.common.NigoriMessages.Operation value) {
+        if (operationsBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureOperationsIsMutable();
+          operations_.add(index, value);
+          onChanged();
+        } else {
+          operationsBuilder_.addMessage(index, value);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.Operation operations = 2;</code>
+       */
+      public Builder addOperations(
+          com.google.nigori.common.NigoriMessages.Operation.Builder builderForValue) {
+        if (operationsBuilder_ == null) {
+          ensureOperationsIsMutable();
+          operations_.add(builderForValue.build());
+          onChanged();
+        } else {
+          operationsBuilder_.addMessage(builderForValue.build());
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.Operation operations = 2;</code>
+       */
+      public Builder addOperations(
+          int index, com.google.nigori.common.NigoriMessages.Operation.Builder builderForValue) {
+        if (operationsBuilder_ == null) {
+          ensureOperationsIsMutable();
+          operations_.add(index, builderForValue.build());
+          onChanged();
+        } else {
+          operationsBuilder_.addMessage(index, builderForValue.build());
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.Operation operations = 2;</code>
+       */
+      public Builder addAllOperations(
+          java.lang.Iterable<? extends com.google.nigori.common.NigoriMessages.Operation> values) {
+        if (operationsBuilder_ == null) {
+          ensureOperationsIsMutable();
+          super.addAll(values, operations_);
+          onChanged();
+        } else {
+          operationsBuilder_.addAllMessages(values);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.Operation operations = 2;</code>
+       */
+      public Builder clearOperations() {
+        if (operationsBuilder_ == null) {
+          operations_ = java.util.Collections.emptyList();
+          bitField0_ = (bitField0_ & ~0x00000002);
+          onChanged();
+        } else {
+          operationsBuilder_.clear();
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.Operation operations = 2;</code>
+       */
+      public Builder removeOperations(int index) {
+        if (operationsBuilder_ == null) {
+          ensureOperationsIsMutable();
+          operations_.remove(index);
+          onChanged();
+        } else {
+          operationsBuilder_.remove(index);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.Operation operations = 2;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.Operation.Builder getOperationsBuilder(
+          int index) {
+        return getOperationsFieldBuilder().getBuilder(index);
+      }
+      /**
+       * <code>repeated .nigori.Operation operations = 2;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.OperationOrBuilder getOperationsOrBuilder(
+          int index) {
+        if (operationsBuilder_ == null) {
+          return operations_.get(index);  } else {
+          return operationsBuilder_.getMessageOrBuilder(index);
+        }
+      }
+      /**
+       * <code>repeated .nigori.Operation operations = 2;</code>
+       */
+      public java.util.List<? extends com.google.nigori.common.NigoriMessages.OperationOrBuilder> 
+           getOperationsOrBuilderList() {
+        if (operationsBuilder_ != null) {
+          return operationsBuilder_.getMessageOrBuilderList();
+        } else {
+          return java.util.Collections.unmodifiableList(operations_);
+        }
+      }
+      /**
+       * <code>repeated .nigori.Operation operations = 2;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.Operation.Builder addOperationsBuilder() {
+        return getOperationsFieldBuilder().addBuilder(
+            com.google.nigori.common.NigoriMessages.Operation.getDefaultInstance());
+      }
+      /**
+       * <code>repeated .nigori.Operation operations = 2;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.Operation.Builder addOperationsBuilder(
+          int index) {
+        return getOperationsFieldBuilder().addBuilder(
+            index, com.google.nigori.common.NigoriMessages.Operation.getDefaultInstance());
+      }
+      /**
+       * <code>repeated .nigori.Operation operations = 2;</code>
+       */
+      public java.util.List<com.google.nigori.common.NigoriMessages.Operation.Builder> 
+           getOperationsBuilderList() {
+        return getOperationsFieldBuilder().getBuilderList();
+      }
+      private com.google.protobuf.RepeatedFieldBuilder<
+          com.google.nigori.common.NigoriMessages.Operation, com.google.nigori.common.NigoriMessages.Operation.Builder, com.google.nigori.common.NigoriMessages.OperationOrBuilder> 
+          getOperationsFieldBuilder() {
+        if (operationsBuilder_ == null) {
+          operationsBuilder_ = new com.google.protobuf.RepeatedFieldBuilder<
+              com.google.nigori.common.NigoriMessages.Operation, com.google.nigori.common.NigoriMessages.Operation.Builder, com.google.nigori.common.NigoriMessages.OperationOrBuilder>(
+                  operations_,
+                  ((bitField0_ & 0x00000002) == 0x00000002),
+                  getParentForChildren(),
+                  isClean());
+          operations_ = null;
+        }
+        return operationsBuilder_;
+      }
+
+      // @@protoc_insertion_point(builder_scope:nigori.BatchRequest)
+    }
+
+    static {
+      defaultInstance = new BatchRequest(true);
+      defaultInstance.initFields();
+    }
+
+    // @@protoc_insertion_point(class_scope:nigori.BatchRequest)
+  }
+
+  public interface OperationResultOrBuilder
+      extends com.google.protobuf.MessageOrBuilder {
+
+    // required bool success = 1;
+    /**
+     * <code>required bool success = 1;</code>
+     *
+     * <pre>
+     * false if the key was not found or the put failed
+     * </pre>
+     */
+    boolean hasSuccess();
+    /**
+     * <code>required bool success = 1;</code>
+     *
+     * <pre>
+     * false if the key was not found or the put failed
+     * </pre>
+     */
+    boolean getSuccess();
+
+    // optional .nigori.GetResponse get = 2;
+    /**
+     * <code>optional .nigori.GetResponse get = 2;</code>
+     */
+    boolean hasGet();
+    /**
+     * <code>optional .nigori.GetResponse get = 2;</code>
+     */
+    com.google.nigori.common.NigoriMessages.GetResponse getGet();
+    /**
+     * <code>optional .nigori.GetResponse get = 2;</code>
+     */
+    com.google.nigori.common.NigoriMessages.GetResponseOrBuilder getGetOrBuilder();
+
+    // optional .nigori.GetRevisionsResponse revisions = 3;
+    /**
+     * <code>optional .nigori.GetRevisionsResponse revisions = 3;</code>
+     */
+    boolean hasRevisions();
+    /**
+     * <code>optional .nigori.GetRevisionsResponse revisions = 3;</code>
+     */
+    com.google.nigori.common.NigoriMessages.GetRevisionsResponse getRevisions();
+    /**
+     * <code>optional .nigori.GetRevisionsResponse revisions = 3;</code>
+     */
+    com.google.nigori.common.NigoriMessages.GetRevisionsResponseOrBuilder getRevisionsOrBuilder();
+  }
+  /**
+   * Protobuf type {@code nigori.OperationResult}
+   */
+  public static final class OperationResult extends
+      com.google.protobuf.GeneratedMessage
+      implements OperationResultOrBuilder {
+    // Use OperationResult.newBuilder() to construct.
+    private OperationResult(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
+      super(builder);
+      this.unknownFields = builder.getUnknownFields();
+    }
+    private OperationResult(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
+    private static final OperationResult defaultInstance;
+    public static OperationResult getDefaultInstance() {
+      return defaultInstance;
+    }
+
+    public OperationResult getDefaultInstanceForType() {
+      return defaultInstance;
+    }
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private OperationResult(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 8: {
+              bitField0_ |= 0x00000001;
+              success_ = input.readBool();
+              break;
+            }
+            case 18: {
+              com.google.nigori.common.NigoriMessages.GetResponse.Builder subBuilder = null;
+              if (((bitField0_ & 0x00000002) == 0x00000002)) {
+                subBuilder = get_.toBuilder();
+              }
+              get_ = input.readMessage(com.google.nigori.common.NigoriMessages.GetResponse.PARSER, extensionRegistry);
+              if (subBuilder != null) {
+                subBuilder.mergeFrom(get_);
+                get_ = subBuilder.buildPartial();
+              }
+              bitField0_ |= 0x00000002;
+              break;
+            }
+            case 26: {
+              com.google.nigori.common.NigoriMessages.GetRevisionsResponse.Builder subBuilder = null;
+              if (((bitField0_ & 0x00000004) == 0x00000004)) {
+                subBuilder = revisions_.toBuilder();
+              }
+              revisions_ = input.readMessage(com.google.nigori.common.NigoriMessages.GetRevisionsResponse.PARSER, extensionRegistry);
+              if (subBuilder != null) {
+                subBuilder.mergeFrom(revisions_);
+                revisions_ = subBuilder.buildPartial();
+              }
+              bitField0_ |= 0x00000004;
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_OperationResult_descriptor;
+    }
+
+    protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_OperationResult_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              com.google.nigori.common.NigoriMessages.OperationResult.class, com.google.nigori.common.NigoriMessages.OperationResult.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<OperationResult> PARSER =
+        new com.google.protobuf.AbstractParser<OperationResult>() {
+      public OperationResult parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new OperationResult(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<OperationResult> getParserForType() {
+      return PARSER;
+    }
+
+    private int bitField0_;
+    // required bool success = 1;
+    public static final int SUCCESS_FIELD_NUMBER = 1;
+    private boolean success_;
+    /**
+     * <code>required bool success = 1;</code>
+     *
+     * <pre>
+     * false if the key was not found or the put failed
+     * </pre>
+     */
+    public boolean hasSuccess() {
+      return ((bitField0_ & 0x00000001) == 0x00000001);
+    }
+    /**
+     * <code>required bool success = 1;</code>
+     *
+     * <pre>
+     * false if the key was not found or the put failed
+     * </pre>
+     */
+    public boolean getSuccess() {
+      return success_;
+    }
+
+    // optional .nigori.GetResponse get = 2;
+    public static final int GET_FIELD_NUMBER = 2;
+    private com.google.nigori.common.NigoriMessages.GetResponse get_;
+    /**
+     * <code>optional .nigori.GetResponse get = 2;</code>
+     */
+    public boolean hasGet() {
+      return ((bitField0_ & 0x00000002) == 0x00000002);
+    }
+    /**
+     * <code>optional .nigori.GetResponse get = 2;</code>
+     */
+    public com.google.nigori.common.NigoriMessages.GetResponse getGet() {
+      return get_;
+    }
+    /**
+     * <code>optional .nigori.GetResponse get = 2;</code>
+     */
+    public com.google.nigori.common.NigoriMessages.GetResponseOrBuilder getGetOrBuilder() {
+      return get_;
+    }
+
+    // optional .nigori.GetRevisionsResponse revisions = 3;
+    public static final int REVISIONS_FIELD_NUMBER = 3;
+    private com.google.nigori.common.NigoriMessages.GetRevisionsResponse revisions_;
+    /**
+     * <code>optional .nigori.GetRevisionsResponse revisions = 3;</code>
+     */
+    public boolean hasRevisions() {
+      return ((bitField0_ & 0x00000004) == 0x00000004);
+    }
+    /**
+     * <code>optional .nigori.GetRevisionsResponse revisions = 3;</code>
+     */
+    public com.google.nigori.common.NigoriMessages.GetRevisionsResponse getRevisions() {
+      return revisions_;
+    }
+    /**
+     * <code>optional .nigori.GetRevisionsResponse revisions = 3;</code>
+     */
+    public com.google.nigori.common.NigoriMessages.GetRevisionsResponseOrBuilder getRevisionsOrBuilder() {
+      return revisions_;
+    }
+
+    private void initFields() {
+      success_ = false;
+      get_ = com.google.nigori.common.NigoriMessages.GetResponse.getDefaultInstance();
+      revisions_ = com.google.nigori.common.NigoriMessages.GetRevisionsResponse.getDefaultInstance();
+    }
+    private byte memoizedIsInitialized = -1;
+    public final boolean isInitialized() {
+      byte isInitialized = memoizedIsInitialized;
+      if (isInitialized != -1) return isInitialized == 1;
+
+      if (!hasSuccess()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      if (hasGet()) {
+        if (!getGet().isInitialized()) {
+          memoizedIsInitialized = 0;
+          return false;
+        }
+      }
+      memoizedIsInitialized = 1;
+      return true;
+    }
+
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        output.writeBool(1, success_);
+      }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        output.writeMessage(2, get_);
+      }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        output.writeMessage(3, revisions_);
+      }
+      getUnknownFields().writeTo(output);
+    }
+
+    private int memoizedSerializedSize = -1;
+    public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+
+      size = 0;
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBoolSize(1, success_);
+      }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(2, get_);
+      }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(3, revisions_);
+      }
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+
+    private static final long serialVersionUID = 0L;
+    @java.lang.Override
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
+      return super.writeReplace();
+    }
+
+    public static com.google.nigori.common.NigoriMessages.OperationResult parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static com.google.nigori.common.NigoriMessages.OperationResult parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.OperationResult parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static com.google.nigori.common.NigoriMessages.OperationResult parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.OperationResult parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.OperationResult parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.OperationResult parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.OperationResult parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.OperationResult parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.OperationResult parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+
+    public static Builder newBuilder() { return Builder.create(); }
+    public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(com.google.nigori.common.NigoriMessages.OperationResult prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    public Builder toBuilder() { return newBuilder(this); }
+
+    @java.lang.Override
+    protected Builder newBuilderForType(
+        com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+      Builder builder = new Builder(parent);
+      return builder;
+    }
+    /**
+     * Protobuf type {@code nigori.OperationResult}
+     */
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder>
+       implements com.google.nigori.common.NigoriMessages.OperationResultOrBuilder {
+      public static final com.google.protobuf.Descriptors.Descriptor
+          getDescriptor() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_OperationResult_descriptor;
+      }
+
+      protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+          internalGetFieldAccessorTable() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_OperationResult_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                com.google.nigori.common.NigoriMessages.OperationResult.class, com.google.nigori.common.NigoriMessages.OperationResult.Builder.class);
+      }
+
+      // Construct using com.google.nigori.common.NigoriMessages.OperationResult.newBuilder()
+      private Builder() {
+        maybeForceBuilderInitialization();
+      }
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+        super(parent);
+        maybeForceBuilderInitialization();
+      }
+      private void maybeForceBuilderInitialization() {
+        if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+          getGetFieldBuilder();
+          getRevisionsFieldBuilder();
+        }
+      }
+      private static Builder create() {
+        return new Builder();
+      }
+
+      public Builder clear() {
+        super.clear();
+        success_ = false;
+        bitField0_ = (bitField0_ & ~0x00000001);
+        if (getBuilder_ == null) {
+          get_ = com.google.nigori.common.NigoriMessages.GetResponse.getDefaultInstance();
+        } else {
+          getBuilder_.clear();
+        }
+        bitField0_ = (bitField0_ & ~0x00000002);
+        if (revisionsBuilder_ == null) {
+          revisions_ = com.google.nigori.common.NigoriMessages.GetRevisionsResponse.getDefaultInstance();
+        } else {
+          revisionsBuilder_.clear();
+        }
+        bitField0_ = (bitField0_ & ~0x00000004);
+        return this;
+      }
+
+      public Builder clone() {
+        return create().mergeFrom(buildPartial());
+      }
+
+      public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_OperationResult_descriptor;
+      }
+
+      public com.google.nigori.common.NigoriMessages.OperationResult getDefaultInstanceForType() {
+        return com.google.nigori.common.NigoriMessages.OperationResult.getDefaultInstance();
+      }
+
+      public com.google.nigori.common.NigoriMessages.OperationResult build() {
+        com.google.nigori.common.NigoriMessages.OperationResult result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return result;
+      }
+
+      public com.google.nigori.common.NigoriMessages.OperationResult buildPartial() {
+        com.google.nigori.common.NigoriMessages.OperationResult result = new com.google.nigori.common.NigoriMessages.OperationResult(this);
+        int from_bitField0_ = bitField0_;
+        int to_bitField0_ = 0;
+        if (((from_bitField0_ & 0x00000001) == 0x00000001)) {
+          to_bitField0_ |= 0x00000001;
+        }
+        result.success_ = success_;
+        if (((from_bitField0_ & 0x00000002) == 0x00000002)) {
+          to_bitField0_ |= 0x00000002;
+        }
+        if (getBuilder_ == null) {
+          result.get_ = get_;
+        } else {
+          result.get_ = getBuilder_.build();
+        }
+        if (((from_bitField0_ & 0x00000004) == 0x00000004)) {
+          to_bitField0_ |= 0x00000004;
+        }
+        if (revisionsBuilder_ == null) {
+          result.revisions_ = revisions_;
+        } else {
+          result.revisions_ = revisionsBuilder_.build();
+        }
+        result.bitField0_ = to_bitField0_;
+        onBuilt();
+        return result;
+      }
+
+      public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof com.google.nigori.common.NigoriMessages.OperationResult) {
+          return mergeFrom((com.google.nigori.common.NigoriMessages.OperationResult)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+
+      public Builder mergeFrom(com.google.nigori.common.NigoriMessages.OperationResult other) {
+        if (other == com.google.nigori.common.NigoriMessages.OperationResult.getDefaultInstance()) return this;
+        if (other.hasSuccess()) {
+          setSuccess(other.getSuccess());
+        }
+        if (other.hasGet()) {
+          mergeGet(other.getGet());
+        }
+        if (other.hasRevisions()) {
+          mergeRevisions(other.getRevisions());
+        }
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+
+      public final boolean isInitialized() {
+        if (!hasSuccess()) {
+          
+          return false;
+        }
+        if (hasGet()) {
+          if (!getGet().isInitialized()) {
+            
+            return false;
+          }
+        }
+        return true;
+      }
+
+      public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        com.google.nigori.common.NigoriMessages.OperationResult parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (com.google.nigori.common.NigoriMessages.OperationResult) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
+          }
+        }
+        return this;
+      }
+      private int bitField0_;
+
+      // required bool success = 1;
+      private boolean success_ ;
+      /**
+       * <code>required bool success = 1;</code>
+       *
+       * <pre>
+       * false if the key was not found or the put failed
+       * </pre>
+       */
+      public boolean hasSuccess() {
+        return ((bitField0_ & 0x00000001) == 0x00000001);
+      }
+      /**
+       * <code>required bool success = 1;</code>
+       *
+       * <pre>
+       * false if the key was not found or the put failed
+       * </pre>
+       */
+      public boolean getSuccess() {
+        return success_;
+      }
+      /**
+       * <code>required bool success = 1;</code>
+       *
+       * <pre>
+       * false if the key was not found or the put failed
+       * </pre>
+       */
+      public Builder setSuccess(boolean value) {
+        bitField0_ |= 0x00000001;
+        success_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>required bool success = 1;</code>
+       *
+       * <pre>
+       * false if the key was not found or the put failed
+       * </pre>
+       */
+      public Builder clearSuccess() {
+        bitField0_ = (bitField0_ & ~0x00000001);
+        success_ = false;
+        onChanged();
+        return this;
+      }
+
+      // optional .nigori.GetResponse get = 2;
+      private com.google.nigori.common.NigoriMessages.GetResponse get_ = com.google.nigori.common.NigoriMessages.GetResponse.getDefaultInstance();
+      private com.google.protobuf.SingleFieldBuilder<
+          com.google.nigori.common.NigoriMessages.GetResponse, com.google.nigori.common.NigoriMessages.GetResponse.Builder, com.google.nigori.common.NigoriMessages.GetResponseOrBuilder> getBuilder_;
+      /**
+       * <code>optional .nigori.GetResponse get = 2;</code>
+       */
+      public boolean hasGet() {
+        return ((bitField0_ & 0x00000002) == 0x00000002);
+      }
+      /**
+       * <code>optional .nigori.GetResponse get = 2;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.GetResponse getGet() {
+        if (getBuilder_ == null) {
+          return get_;
+        } else {
+          return getBuilder_.getMessage();
+        }
+      }
+      /**
+       * <code>optional .nigori.GetResponse get = 2;</code>
+       */
+      public Builder setGet(com.google.nigori.common.NigoriMessages.GetResponse value) {
+        if (getBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          get_ = value;
+          onChanged();
+        } else {
+          getBuilder_.setMessage(value);
+        }
+        bitField0_ |= 0x00000002;
+        return this;
+      }
+      /**
+       * <code>optional .nigori.GetResponse get = 2;</code>
+       */
+      public Builder setGet(
+          com.google.nigori.common.NigoriMessages.GetResponse.Builder builderForValue) {
+        if (getBuilder_ == null) {
+          get_ = builderForValue.build();
+          onChanged();
+        } else {
+          getBuilder_.setMessage(builderForValue.build());
+        }
+        bitField0_ |= 0x00000002;
+        return this;
+      }
+      /**
+       * <code>optional .nigori.GetResponse get = 2;</code>
+       */
+      public Builder mergeGet(com.google.nigori.common.NigoriMessages.GetResponse value) {
+        if (getBuilder_ == null) {
+          if (((bitField0_ & 0x00000002) == 0x00000002) &&
+              get_ != com.google.nigori.common.NigoriMessages.GetResponse.getDefaultInstance()) {
+            get_ =
+              com.google.nigori.common.NigoriMessages.GetResponse.newBuilder(get_).mergeFrom(value).buildPartial();
+          } else {
+            get_ = value;
+          }
+          onChanged();
+        } else {
+          getBuilder_.mergeFrom(value);
+        }
+        bitField0_ |= 0x00000002;
+        return this;
+      }
+      /**
+       * <code>optional .nigori.GetResponse get = 2;</code>
+       */
+      public Builder clearGet() {
+        if (getBuilder_ == null) {
+          get_ = com.google.nigori.common.NigoriMessages.GetResponse.getDefaultInstance();
+          onChanged();
+        } else {
+          getBuilder_.clear();
+        }
+        bitField0_ = (bitField0_ & ~0x00000002);
+        return this;
+      }
+      /**
+       * <code>optional .nigori.GetResponse get = 2;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.GetResponse.Builder getGetBuilder() {
+        bitField0_ |= 0x00000002;
+        onChanged();
+        return getGetFieldBuilder().getBuilder();
+      }
+      /**
+       * <code>optional .nigori.GetResponse get = 2;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.GetResponseOrBuilder getGetOrBuilder() {
+        if (getBuilder_ != null) {
+          return getBuilder_.getMessageOrBuilder();
+        } else {
+          return get_;
+        }
+      }
+      /**
+       * <code>optional .nigori.GetResponse get = 2;</code>
+       */
+      private com.google.protobuf.SingleFieldBuilder<
+          com.google.nigori.common.NigoriMessages.GetResponse, com.google.nigori.common.NigoriMessages.GetResponse.Builder, com.google.nigori.common.NigoriMessages.GetResponseOrBuilder> 
+          getGetFieldBuilder() {
+        if (getBuilder_ == null) {
+          getBuilder_ = new com.google.protobuf.SingleFieldBuilder<
+              com.google.nigori.common.NigoriMessages.GetResponse, com.google.nigori.common.NigoriMessages.GetResponse.Builder, com.google.nigori.common.NigoriMessages.GetResponseOrBuilder>(
+                  get_,
+                  getParentForChildren(),
+                  isClean());
+          get_ = null;
+        }
+        return getBuilder_;
+      }
+
+      // optional .nigori.GetRevisionsResponse revisions = 3;
+      private com.google.nigori.common.NigoriMessages.GetRevisionsResponse revisions_ = com.google.nigori.common.NigoriMessages.GetRevisionsResponse.getDefaultInstance();
+      private com.google.protobuf.SingleFieldBuilder<
+          com.google.nigori.common.NigoriMessages.GetRevisionsResponse, com.google.nigori.common.NigoriMessages.GetRevisionsResponse.Builder, com.google.nigori.common.NigoriMessages.GetRevisionsResponseOrBuilder> revisionsBuilder_;
+      /**
+       * <code>optional .nigori.GetRevisionsResponse revisions = 3;</code>
+       */
+      public boolean hasRevisions() {
+        return ((bitField0_ & 0x00000004) == 0x00000004);
+      }
+      /**
+       * <code>optional .nigori.GetRevisionsResponse revisions = 3;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.GetRevisionsResponse getRevisions() {
+        if (revisionsBuilder_ == null) {
+          return revisions_;
+        } else {
+          return revisionsBuilder_.getMessage();
+        }
+      }
+      /**
+       * <code>optional .nigori.GetRevisionsResponse revisions = 3;</code>
+       */
+      public Builder setRevisions(com.google.nigori.common.NigoriMessages.GetRevisionsResponse value) {
+        if (revisionsBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          revisions_ = value;
+          onChanged();
+        } else {
+          revisionsBuilder_.setMessage(value);
+        }
+        bitField0_ |= 0x00000004;
+        return this;
+      }
+      /**
+       * <code>optional .nigori.GetRevisionsResponse revisions = 3;</code>
+       */
+      public Builder setRevisions(
+          com.google.nigori.common.NigoriMessages.GetRevisionsResponse.Builder builderForValue) {
+        if (revisionsBuilder_ == null) {
+          revisions_ = builderForValue.build();
+          onChanged();
+        } else {
+          revisionsBuilder_.setMessage(builderForValue.build());
+        }
+        bitField0_ |= 0x00000004;
+        return this;
+      }
+      /**
+       * <code>optional .nigori.GetRevisionsResponse revisions = 3;</code>
+       */
+      public Builder mergeRevisions(com.google.nigori.common.NigoriMessages.GetRevisionsResponse value) {
+        if (revisionsBuilder_ == null) {
+          if (((bitField0_ & 0x00000004) == 0x00000004) &&
+              revisions_ != com.google.nigori.common.NigoriMessages.GetRevisionsResponse.getDefaultInstance()) {
+            revisions_ =
+              com.google.nigori.common.NigoriMessages.GetRevisionsResponse.newBuilder(revisions_).mergeFrom(value).buildPartial();
+          } else {
+            revisions_ = value;
+          }
+          onChanged();
+        } else {
+          revisionsBuilder_.mergeFrom(value);
+        }
+        bitField0_ |= 0x00000004;
+        return this;
+      }
+      /**
+       * <code>optional .nigori.GetRevisionsResponse revisions = 3;</code>
+       */
+      public Builder clearRevisions() {
+        if (revisionsBuilder_ == null) {
+          revisions_ = com.google.nigori.common.NigoriMessages.GetRevisionsResponse.getDefaultInstance();
+          onChanged();
+        } else {
+          revisionsBuilder_.clear();
+        }
+        bitField0_ = (bitField0_ & ~0x00000004);
+        return this;
+      }
+      /**
+       * <code>optional .nigori.GetRevisionsResponse revisions = 3;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.GetRevisionsResponse.Builder getRevisionsBuilder() {
+        bitField0_ |= 0x00000004;
+        onChanged();
+        return getRevisionsFieldBuilder().getBuilder();
+      }
+      /**
+       * <code>optional .nigori.GetRevisionsResponse revisions = 3;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.GetRevisionsResponseOrBuilder getRevisionsOrBuilder() {
+        if (revisionsBuilder_ != null) {
+          return revisionsBuilder_.getMessageOrBuilder();
+        } else {
+          return revisions_;
+        }
+      }
+      /**
+       * <code>optional .nigori.GetRevisionsResponse revisions = 3;</code>
+       */
+      private com.google.protobuf.SingleFieldBuilder<
+          com.google.nigori.common.NigoriMessages.GetRevisionsResponse, com.google.nigori.common.NigoriMessages.GetRevisionsResponse.Builder, com.google.nigori.common.NigoriMessages.GetRevisionsResponseOrBuilder> 
+          getRevisionsFieldBuilder() {
+        if (revisionsBuilder_ == null) {
+          revisionsBuilder_ = new com.google.protobuf.SingleFieldBuilder<
+              com.google.nigori.common.NigoriMessages.GetRevisionsResponse, com.google.nigori.common.NigoriMessages.GetRevisionsResponse.Builder, com.google.nigori.common.NigoriMessages.GetRevisionsResponseOrBuilder>(
+                  revisions_,
+                  getParentForChildren(),
+                  isClean());
+          revisions_ = null;
+        }
+        return revisionsBuilder_;
+      }
+
+      // @@protoc_insertion_point(builder_scope:nigori.OperationResult)
+    }
+
+    static {
+      defaultInstance = new OperationResult(true);
+      defaultInstance.initFields();
+    }
+
+    // @@protoc_insertion_point(class_scope:nigori.OperationResult)
+  }
+
+  public interface BatchResponseOrBuilder
+      extends com.google.protobuf.MessageOrBuilder {
+
+    // repeated .nigori.OperationResult results = 1;
+    /**
+     * <code>repeated .nigori.OperationResult results = 1;</code>
+     */
+    java.util.List<com.google.nigori.common.NigoriMessages.OperationResult> 
+        getResultsList();
+    /**
+     * <code>repeated .nigori.OperationResult results = 1;</code>
+     */
+    com.google.nigori.common.NigoriMessages.OperationResult getResults(int index);
+    /**
+     * <code>repeated .nigori.OperationResult results = 1;</code>
+     */
+    int getResultsCount();
+    /**
+     * <code>repeated .nigori.OperationResult results = 1;</code>
+     */
+    java.util.List<? extends com.google.nigori.common.NigoriMessages.OperationResultOrBuilder> 
+        getResultsOrBuilderList();
+    /**
+     * <code>repeated .nigori.OperationResult results = 1;</code>
+     */
+    com.google.nigori.common.NigoriMessages.OperationResultOrBuilder getResultsOrBuilder(
+        int index);
+  }
+  /**
+   * Protobuf type {@code nigori.BatchResponse}
+   *
+   * <pre>
+   * A result for each operation in the same order as in the BatchRequest
+   * </pre>
+   */
+  public static final class BatchResponse extends
+      com.google.protobuf.GeneratedMessage
+      implements BatchResponseOrBuilder {
+    // Use BatchResponse.newBuilder() to construct.
+    private BatchResponse(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
+      super(builder);
+      this.unknownFields = builder.getUnknownFields();
+    }
+    private BatchResponse(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
+    private static final BatchResponse defaultInstance;
+    public static BatchResponse getDefaultInstance() {
+      return defaultInstance;
+    }
+
+    public BatchResponse getDefaultInstanceForType() {
+      return defaultInstance;
+    }
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private BatchResponse(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 10: {
+              if (!((mutable_bitField0_ & 0x00000001) == 0x00000001)) {
+                results_ = new java.util.ArrayList<com.google.nigori.common.NigoriMessages.OperationResult>();
+                mutable_bitField0_ |= 0x00000001;
+              }
+              results_.add(input.readMessage(com.google.nigori.common.NigoriMessages.OperationResult.PARSER, extensionRegistry));
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        if (((mutable_bitField0_ & 0x00000001) == 0x00000001)) {
+          results_ = java.util.Collections.unmodifiableList(results_);
+        }
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_BatchResponse_descriptor;
+    }
+
+    protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_BatchResponse_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              com.google.nigori.common.NigoriMessages.BatchResponse.class, com.google.nigori.common.NigoriMessages.BatchResponse.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<BatchResponse> PARSER =
+        new com.google.protobuf.AbstractParser<BatchResponse>() {
+      public BatchResponse parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new BatchResponse(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<BatchResponse> getParserForType() {
+      return PARSER;
+    }
+
+    // repeated .nigori.OperationResult results = 1;
+    public static final int RESULTS_FIELD_NUMBER = 1;
+    private java.util.List<com.google.nigori.common.NigoriMessages.OperationResult> results_;
+    /**
+     * <code>repeated .nigori.OperationResult results = 1;</code>
+     */
+    public java.util.List<com.google.nigori.common.NigoriMessages.OperationResult> getResultsList() {
+      return results_;
+    }
+    /**
+     * <code>repeated .nigori.OperationResult results = 1;</code>
+     */
+    public java.util.List<? extends com.google.nigori.common.NigoriMessages.OperationResultOrBuilder> 
+        getResultsOrBuilderList() {
+      return results_;
+    }
+    /**
+     * <code>repeated .nigori.OperationResult results = 1;</code>
+     */
+    public int getResultsCount() {
+      return results_.size();
+    }
+    /**
+     * <code>repeated .nigori.OperationResult results = 1;</code>
+     */
+    public com.google.nigori.common.NigoriMessages.OperationResult getResults(int index) {
+      return results_.get(index);
+    }
+    /**
+     * <code>repeated .nigori.OperationResult results = 1;</code>
+     */
+    public com.google.nigori.common.NigoriMessages.OperationResultOrBuilder getResultsOrBuilder(
+        int index) {
+      return results_.get(index);
+    }
+
+    private void initFields() {
+      results_ = java.util.Collections.emptyList();
+    }
+    private byte memoizedIsInitialized = -1;
+    public final boolean isInitialized() {
+      byte isInitialized = memoizedIsInitialized;
+      if (isInitialized != -1) return isInitialized == 1;
+
+      for (int i = 0; i < getResultsCount(); i++) {
+        if (!getResults(i).isInitialized()) {
+          memoizedIsInitialized = 0;
+          return false;
+        }
+      }
+      memoizedIsInitialized = 1;
+      return true;
+    }
+
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      for (int i = 0; i < results_.size(); i++) {
+        output.writeMessage(1, results_.get(i));
+      }
+      getUnknownFields().writeTo(output);
+    }
+
+    private int memoizedSerializedSize = -1;
+    public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+
+      size = 0;
+      for (int i = 0; i < results_.size(); i++) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(1, results_.get(i));
+      }
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+
+    private static final long serialVersionUID = 0L;
+    @java.lang.Override
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
+      return super.writeReplace();
+    }
+
+    public static com.google.nigori.common.NigoriMessages.BatchResponse parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static com.google.nigori.common.NigoriMessages.BatchResponse parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.BatchResponse parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static com.google.nigori.common.NigoriMessages.BatchResponse parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.BatchResponse parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.BatchResponse parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.BatchResponse parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.BatchResponse parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.BatchResponse parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.BatchResponse parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+
+    public static Builder newBuilder() { return Builder.create(); }
+    public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(com.google.nigori.common.NigoriMessages.BatchResponse prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    public Builder toBuilder() { return newBuilder(this); }
+
+    @java.lang.Override
+    protected Builder newBuilderForType(
+        com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+      Builder builder = new Builder(parent);
+      return builder;
+    }
+    /**
+     * Protobuf type {@code nigori.BatchResponse}
+     *
+     * <pre>
+     * A result for each operation in the same order as in the BatchRequest
+     * </pre>
+     */
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder>
+       implements com.google.nigori.common.NigoriMessages.BatchResponseOrBuilder {
+      public static final com.google.protobuf.Descriptors.Descriptor
+          getDescriptor() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_BatchResponse_descriptor;
+      }
+
+      protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+          internalGetFieldAccessorTable() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_BatchResponse_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                com.google.nigori.common.NigoriMessages.BatchResponse.class, com.google.nigori.common.NigoriMessages.BatchResponse.Builder.class);
+      }
+
+      // Construct using com.google.nigori.common.NigoriMessages.BatchResponse.newBuilder()
+      private Builder() {
+        maybeForceBuilderInitialization();
+      }
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+        super(parent);
+        maybeForceBuilderInitialization();
+      }
+      private void maybeForceBuilderInitialization() {
+        if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+          getResultsFieldBuilder();
+        }
+      }
+      private static Builder create() {
+        return new Builder();
+      }
+
+      public Builder clear() {
+        super.clear();
+        if (resultsBuilder_ == null) {
+          results_ = java.util.Collections.emptyList();
+          bitField0_ = (bitField0_ & ~0x00000001);
+        } else {
+          resultsBuilder_.clear();
+        }
+        return this;
+      }
+
+      public Builder clone() {
+        return create().mergeFrom(buildPartial());
+      }
+
+      public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_BatchResponse_descriptor;
+      }
+
+      public com.google.nigori.common.NigoriMessages.BatchResponse getDefaultInstanceForType() {
+        return com.google.nigori.common.NigoriMessages.BatchResponse.getDefaultInstance();
+      }
+
+      public com.google.nigori.common.NigoriMessages.BatchResponse build() {
+        com.google.nigori.common.NigoriMessages.BatchResponse result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return result;
+      }
+
+      public com.google.nigori.common.NigoriMessages.BatchResponse buildPartial() {
+        com.google.nigori.common.NigoriMessages.BatchResponse result = new com.google.nigori.common.NigoriMessages.BatchResponse(this);
+        int from_bitField0_ = bitField0_;
+        if (resultsBuilder_ == null) {
+          if (((bitField0_ & 0x00000001) == 0x00000001)) {
+            results_ = java.util.Collections.unmodifiableList(results_);
+            bitField0_ = (bitField0_ & ~0x00000001);
+          }
+          result.results_ = results_;
+        } else {
+          result.results_ = resultsBuilder_.build();
+        }
+        onBuilt();
+        return result;
+      }
+
+      public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof com.google.nigori.common.NigoriMessages.BatchResponse) {
+          return mergeFrom((com.google.nigori.common.NigoriMessages.BatchResponse)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+
+      public Builder mergeFrom(com.google.nigori.common.NigoriMessages.BatchResponse other) {
+        if (other == com.google.nigori.common.NigoriMessages.BatchResponse.getDefaultInstance()) return this;
+        if (resultsBuilder_ == null) {
+          if (!other.results_.isEmpty()) {
+            if (results_.isEmpty()) {
+              results_ = other.results_;
+              bitField0_ = (bitField0_ & ~0x00000001);
+            } else {
+              ensureResultsIsMutable();
+              results_.addAll(other.results_);
+            }
+            onChanged();
+          }
+        } else {
+          if (!other.results_.isEmpty()) {
+            if (resultsBuilder_.isEmpty()) {
+              resultsBuilder_.dispose();
+              resultsBuilder_ = null;
+              results_ = other.results_;
+              bitField0_ = (bitField0_ & ~0x00000001);
+              resultsBuilder_ = 
+                com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders ?
+                   getResultsFieldBuilder() : null;
+            } else {
+              resultsBuilder_.addAllMessages(other.results_);
+            }
+          }
+        }
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+
+      public final boolean isInitialized() {
+        for (int i = 0; i < getResultsCount(); i++) {
+          if (!getResults(i).isInitialized()) {
+            
+            return false;
+          }
+        }
+        return true;
+      }
+
+      public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        com.google.nigori.common.NigoriMessages.BatchResponse parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (com.google.nigori.common.NigoriMessages.BatchResponse) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
+          }
+        }
+        return this;
+      }
+      private int bitField0_;
+
+      // repeated .nigori.OperationResult results = 1;
+      private java.util.List<com.google.nigori.common.NigoriMessages.OperationResult> results_ =
+        java.util.Collections.emptyList();
+      private void ensureResultsIsMutable() {
+        if (!((bitField0_ & 0x00000001) == 0x00000001)) {
+          results_ = new java.util.ArrayList<com.google.nigori.common.NigoriMessages.OperationResult>(results_);
+          bitField0_ |= 0x00000001;
+         }
+      }
+
+      private com.google.protobuf.RepeatedFieldBuilder<
+          com.google.nigori.common.NigoriMessages.OperationResult, com.google.nigori.common.NigoriMessages.OperationResult.Builder, com.google.nigori.common.NigoriMessages.OperationResultOrBuilder> resultsBuilder_;
+
+      /**
+       * <code>repeated .nigori.OperationResult results = 1;</code>
+       */
+      public java.util.List<com.google.nigori.common.NigoriMessages.OperationResult> getResultsList() {
+        if (resultsBuilder_ == null) {
+          return java.util.Collections.unmodifiableList(results_);
+        } else {
+          return resultsBuilder_.getMessageList();
+        }
+      }
+      /**
+       * <code>repeated .nigori.OperationResult results = 1;</code>
+       */
+      public int getResultsCount() {
+        if (resultsBuilder_ == null) {
+          return results_.size();
+        } else {
+          return resultsBuilder_.getCount();
+        }
+      }
+      /**
+       * <code>repeated .nigori.OperationResult results = 1;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.OperationResult getResults(int index) {
+        if (resultsBuilder_ == null) {
+          return results_.get(index);
+        } else {
+          return resultsBuilder_.getMessage(index);
+        }
+      }
+      /**
+       * <code>repeated .nigori.OperationResult results = 1;</code>
+       */
+      public Builder setResults(
+          int index, com.google.nigori.common.NigoriMessages.OperationResult value) {
+        if (resultsBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureResultsIsMutable();
+          results_.set(index, value);
+          onChanged();
+        } else {
+          resultsBuilder_.setMessage(index, value);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.OperationResult results = 1;</code>
+       */
+      public Builder setResults(
+          int index, com.google.nigori.common.NigoriMessages.OperationResult.Builder builderForValue) {
+        if (resultsBuilder_ == null) {
+          ensureResultsIsMutable();
+          results_.set(index, builderForValue.build());
+          onChanged();
+        } else {
+          resultsBuilder_.setMessage(index, builderForValue.build());
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.OperationResult results = 1;</code>
+       */
+      public Builder addResults(com.google.nigori.common.NigoriMessages.OperationResult value) {
+        if (resultsBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureResultsIsMutable();
+          results_.add(value);
+          onChanged();
+        } else {
+          resultsBuilder_.addMessage(value);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.OperationResult results = 1;</code>
+       */
+      public Builder addResults(
+          int index, com.google.nigori.common.NigoriMessages.OperationResult value) {
+        if (resultsBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureResultsIsMutable();
+          results_.add(index, value);
+          onChanged();
+        } else {
+          resultsBuilder_.addMessage(index, value);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.OperationResult results = 1;</code>
+       */
+      public Builder addResults(
+          com.google.nigori.common.NigoriMessages.OperationResult.Builder builderForValue) {
+        if (resultsBuilder_ == null) {
+          ensureResultsIsMutable();
+          results_.add(builderForValue.build());
+          onChanged();
+        } else {
+          resultsBuilder_.addMessage(builderForValue.build());
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.OperationResult results = 1;</code>
+       */
+      public Builder addResults(
+          int index, com.google.nigori.common.NigoriMessages.OperationResult.Builder builderForValue) {
+        if (resultsBuilder_ == null) {
+          ensureResultsIsMutable();
+          results_.add(index, builderForValue.build());
+          onChanged();
+        } else {
+          resultsBuilder_.addMessage(index, builderForValue.build());
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.OperationResult results = 1;</code>
+       */
+      public Builder addAllResults(
+          java.lang.Iterable<? extends com.google.nigori.common.NigoriMessages.OperationResult> values) {
+        if (resultsBuilder_ == null) {
+          ensureResultsIsMutable();
+          super.addAll(values, results_);
+          onChanged();
+        } else {
+          resultsBuilder_.addAllMessages(values);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.OperationResult results = 1;</code>
+       */
+      public Builder clearResults() {
+        if (resultsBuilder_ == null) {
+          results_ = java.util.Collections.emptyList();
+          bitField0_ = (bitField0_ & ~0x00000001);
+          onChanged();
+        } else {
+          resultsBuilder_.clear();
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.OperationResult results = 1;</code>
+       */
+      public Builder removeResults(int index) {
+        if (resultsBuilder_ == null) {
+          ensureResultsIsMutable();
+          results_.remove(index);
+          onChanged();
+        } else {
+          resultsBuilder_.remove(index);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.OperationResult results = 1;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.OperationResult.Builder getResultsBuilder(
+          int index) {
+        return getResultsFieldBuilder().getBuilder(index);
+      }
+      /**
+       * <code>repeated .nigori.OperationResult results = 1;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.OperationResultOrBuilder getResultsOrBuilder(
+          int index) {
+        if (resultsBuilder_ == null) {
+          return results_.get(index);  } else {
+          return resultsBuilder_.getMessageOrBuilder(index);
+        }
+      }
+      /**
+       * <code>repeated .nigori.OperationResult results = 1;</code>
+       */
+      public java.util.List<? extends com.google.nigori.common.NigoriMessages.OperationResultOrBuilder> 
+           getResultsOrBuilderList() {
+        if (resultsBuilder_ != null) {
+          return resultsBuilder_.getMessageOrBuilderList();
+        } else {
+          return java.util.Collections.unmodifiableList(results_);
+        }
+      }
+      /**
+       * <code>repeated .nigori.OperationResult results = 1;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.OperationResult.Builder addResultsBuilder() {
+        return getResultsFieldBuilder().addBuilder(
+            com.google.nigori.common.NigoriMessages.OperationResult.getDefaultInstance());
+      }
+      /**
+       * <code>repeated .nigori.OperationResult results = 1;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.OperationResult.Builder addResultsBuilder(
+          int index) {
+        return getResultsFieldBuilder().addBuilder(
+            index, com.google.nigori.common.NigoriMessages.OperationResult.getDefaultInstance());
+      }
+      /**
+       * <code>repeated .nigori.OperationResult results = 1;</code>
+       */
+      public java.util.List<com.google.nigori.common.NigoriMessages.OperationResult.Builder> 
+           getResultsBuilderList() {
+        return getResultsFieldBuilder().getBuilderList();
+      }
+      private com.google.protobuf.RepeatedFieldBuilder<
+          com.google.nigori.common.NigoriMessages.OperationResult, com.google.nigori.common.NigoriMessages.OperationResult.Builder, com.google.nigori.common.NigoriMessages.OperationResultOrBuilder> 
+          getResultsFieldBuilder() {
+        if (resultsBuilder_ == null) {
+          resultsBuilder_ = new com.google.protobuf.RepeatedFieldBuilder<
+              com.google.nigori.common.NigoriMessages.OperationResult, com.google.nigori.common.NigoriMessages.OperationResult.Builder, com.google.nigori.common.NigoriMessages.OperationResultOrBuilder>(
+                  results_,
+                  ((bitField0_ & 0x00000001) == 0x00000001),
+                  getParentForChildren(),
+                  isClean());
+          results_ = null;
+        }
+        return resultsBuilder_;
+      }
+
+      // @@protoc_insertion_point(builder_scope:nigori.BatchResponse)
+    }
+
+    static {
+      defaultInstance = new BatchResponse(true);
+      defaultInstance.initFields();
+    }
+
+    // @@protoc_insertion_point(class_scope:nigori.BatchResponse)
+  }
+
+  public interface GetChangesRequestOrBuilder
+      extends com.google.protobuf.MessageOrBuilder {
+
+    // required .nigori.AuthenticateRequest auth = 1;
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
+    boolean hasAuth();
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
+    com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth();
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
+    com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder();
+
+    // required int64 since = 2;
+    /**
+     * <code>required int64 since = 2;</code>
+     */
+    boolean hasSince();
+    /**
+     * <code>required int64 since = 2;</code>
+     */
+    long getSince();
+
+    // optional int32 limit = 3;
+    /**
+     * <code>optional int32 limit = 3;</code>
+     */
+    boolean hasLimit();
+    /**
+     * <code>optional int32 limit = 3;</code>
+     */
+    int getLimit();
+
+    // optional int32 wait = 4;
+    /**
+     * <code>optional int32 wait = 4;</code>
+     */
+    boolean hasWait();
+    /**
+     * <code>optional int32 wait = 4;</code>
+     */
+    int getWait();
+  }
+  /**
+   * Protobuf type {@code nigori.GetChangesRequest}
+   *
+   * <pre>
+   * Changes to the user's records after the change numbered since, limit is the most to return, which
+   * the server may reduce. If there are none yet and wait is given the server holds the request for up
+   * to that many milliseconds (which it may also reduce) until there is a change, so that a client can
+   * be told about changes as they happen by always having one of these outstanding.
+   * </pre>
+   */
+  public static final class GetChangesRequest extends
+      com.google.protobuf.GeneratedMessage
+      implements GetChangesRequestOrBuilder {
+    // Use GetChangesRequest.newBuilder() to construct.
+    private GetChangesRequest(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
+      super(builder);
+      this.unknownFields = builder.getUnknownFields();
+    }
+    private GetChangesRequest(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
+    private static final GetChangesRequest defaultInstance;
+    public static GetChangesRequest getDefaultInstance() {
+      return defaultInstance;
+    }
+
+    public GetChangesRequest getDefaultInstanceForType() {
+      return defaultInstance;
+    }
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private GetChangesRequest(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 10: {
+              com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder subBuilder = null;
+              if (((bitField0_ & 0x00000001) == 0x00000001)) {
+                subBuilder = auth_.toBuilder();
+              }
+              auth_ = input.readMessage(com.google.nigori.common.NigoriMessages.AuthenticateRequest.PARSER, extensionRegistry);
+              if (subBuilder != null) {
+                subBuilder.mergeFrom(auth_);
+                auth_ = subBuilder.buildPartial();
+              }
+              bitField0_ |= 0x00000001;
+              break;
+            }
+            case 16: {
+              bitField0_ |= 0x00000002;
+              since_ = input.readInt64();
+              break;
+            }
+            case 24: {
+              bitField0_ |= 0x00000004;
+              limit_ = input.readInt32();
+              break;
+            }
+            case 32: {
+              bitField0_ |= 0x00000008;
+              wait_ = input.readInt32();
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetChangesRequest_descriptor;
+    }
+
+    protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetChangesRequest_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              com.google.nigori.common.NigoriMessages.GetChangesRequest.class, com.google.nigori.common.NigoriMessages.GetChangesRequest.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<GetChangesRequest> PARSER =
+        new com.google.protobuf.AbstractParser<GetChangesRequest>() {
+      public GetChangesRequest parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new GetChangesRequest(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<GetChangesRequest> getParserForType() {
+      return PARSER;
+    }
+
+    private int bitField0_;
+    // required .nigori.AuthenticateRequest auth = 1;
+    public static final int AUTH_FIELD_NUMBER = 1;
+    private com.google.nigori.common.NigoriMessages.AuthenticateRequest auth_;
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
+    public boolean hasAuth() {
+      return ((bitField0_ & 0x00000001) == 0x00000001);
+    }
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
+    public com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth() {
+      return auth_;
+    }
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
+    public com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder() {
+      return auth_;
+    }
+
+    // required int64 since = 2;
+    public static final int SINCE_FIELD_NUMBER = 2;
+    private long since_;
+    /**
+     * <code>required int64 since = 2;</code>
+     */
+    public boolean hasSince() {
+      return ((bitField0_ & 0x00000002) == 0x00000002);
+    }
+    /**
+     * <code>required int64 since = 2;</code>
+     */
+    public long getSince() {
+      return since_;
+    }
+
+    // optional int32 limit = 3;
+    public static final int LIMIT_FIELD_NUMBER = 3;
+    private int limit_;
+    /**
+     * <code>optional int32 limit = 3;</code>
+     */
+    public boolean hasLimit() {
+      return ((bitField0_ & 0x00000004) == 0x00000004);
+    }
+    /**
+     * <code>optional int32 limit = 3;</code>
+     */
+    public int getLimit() {
+      return limit_;
+    }
+
+    // optional int32 wait = 4;
+    public static final int WAIT_FIELD_NUMBER = 4;
+    private int wait_;
+    /**
+     * <code>optional int32 wait = 4;</code>
+     */
+    public boolean hasWait() {
+      return ((bitField0_ & 0x00000008) == 0x00000008);
+    }
+    /**
+     * <code>optional int32 wait = 4;</code>
+     */
+    public int getWait() {
+      return wait_;
+    }
+
+    private void initFields() {
+      auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
+      since_ = 0L;
+      limit_ = 0;
+      wait_ = 0;
+    }
+    private byte memoizedIsInitialized = -1;
+    public final boolean isInitialized() {
+      byte isInitialized = memoizedIsInitialized;
+      if (isInitialized != -1) return isInitialized == 1;
+
+      if (!hasAuth()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      if (!hasSince()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      if (!getAuth().isInitialized()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      memoizedIsInitialized = 1;
+      return true;
+    }
+
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        output.writeMessage(1, auth_);
+      }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        output.writeInt64(2, since_);
+      }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        output.writeInt32(3, limit_);
+      }
+      if (((bitField0_ & 0x00000008) == 0x00000008)) {
+        output.writeInt32(4, wait_);
+      }
+      getUnknownFields().writeTo(output);
+    }
+
+    private int memoizedSerializedSize = -1;
+    public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+
+      size = 0;
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(1, auth_);
+      }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt64Size(2, since_);
+      }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(3, limit_);
+      }
+      if (((bitField0_ & 0x00000008) == 0x00000008)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(4, wait_);
+      }
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+
+    private static final long serialVersionUID = 0L;
+    @java.lang.Override
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
+      return super.writeReplace();
+    }
+
+    public static com.google.nigori.common.NigoriMessages.GetChangesRequest parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetChangesRequest parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetChangesRequest parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetChangesRequest parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetChangesRequest parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetChangesRequest parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetChangesRequest parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetChangesRequest parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetChangesRequest parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetChangesRequest parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+
+    public static Builder newBuilder() { return Builder.create(); }
+    public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(com.google.nigori.common.NigoriMessages.GetChangesRequest prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    public Builder toBuilder() { return newBuilder(this); }
+
+    @java.lang.Override
+    protected Builder newBuilderForType(
+        com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+      Builder builder = new Builder(parent);
+      return builder;
+    }
+    /**
+     * Protobuf type {@code nigori.GetChangesRequest}
+     *
+     * <pre>
+     * Changes to the user's records after the change numbered since, limit is the most to return, which
+     * the server may reduce. If there are none yet and wait is given the server holds the request for up
+     * to that many milliseconds (which it may also reduce) until there is a change, so that a client can
+     * be told about changes as they happen by always having one of these outstanding.
+     * </pre>
+     */
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder>
+       implements com.google.nigori.common.NigoriMessages.GetChangesRequestOrBuilder {
+      public static final com.google.protobuf.Descriptors.Descriptor
+          getDescriptor() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetChangesRequest_descriptor;
+      }
+
+      protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+          internalGetFieldAccessorTable() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetChangesRequest_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                com.google.nigori.common.NigoriMessages.GetChangesRequest.class, com.google.nigori.common.NigoriMessages.GetChangesRequest.Builder.class);
+      }
+
+      // Construct using com.google.nigori.common.NigoriMessages.GetChangesRequest.newBuilder()
+      private Builder() {
+        maybeForceBuilderInitialization();
+      }
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+        super(parent);
+        maybeForceBuilderInitialization();
+      }
+      private void maybeForceBuilderInitialization() {
+        if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+          getAuthFieldBuilder();
+        }
+      }
+      private static Builder create() {
+        return new Builder();
+      }
+
+      public Builder clear() {
+        super.clear();
+        if (authBuilder_ == null) {
+          auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
+        } else {
+          authBuilder_.clear();
+        }
+        bitField0_ = (bitField0_ & ~0x00000001);
+        since_ = 0L;
+        bitField0_ = (bitField0_ & ~0x00000002);
+        limit_ = 0;
+        bitField0_ = (bitField0_ & ~0x00000004);
+        wait_ = 0;
+        bitField0_ = (bitField0_ & ~0x00000008);
+        return this;
+      }
+
+      public Builder clone() {
+        return create().mergeFrom(buildPartial());
+      }
+
+      public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetChangesRequest_descriptor;
+      }
+
+      public com.google.nigori.common.NigoriMessages.GetChangesRequest getDefaultInstanceForType() {
+        return com.google.nigori.common.NigoriMessages.GetChangesRequest.getDefaultInstance();
+      }
+
+      public com.google.nigori.common.NigoriMessages.GetChangesRequest build() {
+        com.google.nigori.common.NigoriMessages.GetChangesRequest result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return result;
+      }
+
+      public com.google.nigori.common.NigoriMessages.GetChangesRequest buildPartial() {
+        com.google.nigori.common.NigoriMessages.GetChangesRequest result = new com.google.nigori.common.NigoriMessages.GetChangesRequest(this);
+        int from_bitField0_ = bitField0_;
+        int to_bitField0_ = 0;
+        if (((from_bitField0_ & 0x00000001) == 0x00000001)) {
+          to_bitField0_ |= 0x00000001;
+        }
+        if (authBuilder_ == null) {
+          result.auth_ = auth_;
+        } else {
+          result.auth_ = authBuilder_.build();
+        }
+        if (((from_bitField0_ & 0x00000002) == 0x00000002)) {
+          to_bitField0_ |= 0x00000002;
+        }
+        result.since_ = since_;
+        if (((from_bitField0_ & 0x00000004) == 0x00000004)) {
+          to_bitField0_ |= 0x00000004;
+        }
+        result.limit_ = limit_;
+        if (((from_bitField0_ & 0x00000008) == 0x00000008)) {
+          to_bitField0_ |= 0x00000008;
+        }
+        result.wait_ = wait_;
+        result.bitField0_ = to_bitField0_;
+        onBuilt();
+        return result;
+      }
+
+      public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof com.google.nigori.common.NigoriMessages.GetChangesRequest) {
+          return mergeFrom((com.google.nigori.common.NigoriMessages.GetChangesRequest)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+
+      public Builder mergeFrom(com.google.nigori.common.NigoriMessages.GetChangesRequest other) {
+        if (other == com.google.nigori.common.NigoriMessages.GetChangesRequest.getDefaultInstance()) return this;
+        if (other.hasAuth()) {
+          mergeAuth(other.getAuth());
+        }
+        if (other.hasSince()) {
+          setSince(other.getSince());
+        }
+        if (other.hasLimit()) {
+          setLimit(other.getLimit());
+        }
+        if (other.hasWait()) {
+          setWait(other.getWait());
+        }
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+
+      public final boolean isInitialized() {
+        if (!hasAuth()) {
+          
+          return false;
+        }
+        if (!hasSince()) {
+          
+          return false;
+        }
+        if (!getAuth().isInitialized()) {
+          
+          return false;
+        }
+        return true;
+      }
+
+      public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        com.google.nigori.common.NigoriMessages.GetChangesRequest parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (com.google.nigori.common.NigoriMessages.GetChangesRequest) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
+          }
+        }
+        return this;
+      }
+      private int bitField0_;
+
+      // required .nigori.AuthenticateRequest auth = 1;
+      private com.google.nigori.common.NigoriMessages.AuthenticateRequest auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
+      private com.google.protobuf.SingleFieldBuilder<
+          com.google.nigori.common.NigoriMessages.AuthenticateRequest, com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder, com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder> authBuilder_;
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
+      public boolean hasAuth() {
+        return ((bitField0_ & 0x00000001) == 0x00000001);
+      }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth() {
+        if (authBuilder_ == null) {
+          return auth_;
+        } else {
+          return authBuilder_.getMessage();
+        }
+      }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
+      public Builder setAuth(com.google.nigori.common.NigoriMessages.AuthenticateRequest value) {
+        if (authBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          auth_ = value;
+          onChanged();
+        } else {
+          authBuilder_.setMessage(value);
+        }
+        bitField0_ |= 0x00000001;
+        return this;
+      }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
+      public Builder setAuth(
+          com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder builderForValue) {
+        if (authBuilder_ == null) {
+          auth_ = builderForValue.build();
+          onChanged();
+        } else {
+          authBuilder_.setMessage(builderForValue.build());
+        }
+        bitField0_ |= 0x00000001;
+        return this;
+      }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
+      public Builder mergeAuth(com.google.nigori.common.NigoriMessages.AuthenticateRequest value) {
+        if (authBuilder_ == null) {
+          if (((bitField0_ & 0x00000001) == 0x00000001) &&
+              auth_ != com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance()) {
+            auth_ =
+              com.google.nigori.common.NigoriMessages.AuthenticateRequest.newBuilder(auth_).mergeFrom(value).buildPartial();
+          } else {
+            auth_ = value;
+          }
+          onChanged();
+        } else {
+          authBuilder_.mergeFrom(value);
+        }
+        bitField0_ |= 0x00000001;
+        return this;
+      }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
+      public Builder clearAuth() {
+        if (authBuilder_ == null) {
+          auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
+          onChanged();
+        } else {
+          authBuilder_.clear();
+        }
+        bitField0_ = (bitField0_ & ~0x00000001);
+        return this;
+      }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder getAuthBuilder() {
+        bitField0_ |= 0x00000001;
+        onChanged();
+        return getAuthFieldBuilder().getBuilder();
+      }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder() {
+        if (authBuilder_ != null) {
+          return authBuilder_.getMessageOrBuilder();
+        } else {
+          return auth_;
+        }
+      }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
+      private com.google.protobuf.SingleFieldBuilder<
+          com.google.nigori.common.NigoriMessages.AuthenticateRequest, com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder, com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder> 
+          getAuthFieldBuilder() {
+        if (authBuilder_ == null) {
+          authBuilder_ = new com.google.protobuf.SingleFieldBuilder<
+              com.google.nigori.common.NigoriMessages.AuthenticateRequest, com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder, com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder>(
+                  auth_,
+                  getParentForChildren(),
+                  isClean());
+          auth_ = null;
+        }
+        return authBuilder_;
+      }
+
+      // required int64 since = 2;
+      private long since_ ;
+      /**
+       * <code>required int64 since = 2;</code>
+       */
+      public boolean hasSince() {
+        return ((bitField0_ & 0x00000002) == 0x00000002);
+      }
+      /**
+       * <code>required int64 since = 2;</code>
+       */
+      public long getSince() {
+        return since_;
+      }
+      /**
+       * <code>required int64 since = 2;</code>
+       */
+      public Builder setSince(long value) {
+        bitField0_ |= 0x00000002;
+        since_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>required int64 since = 2;</code>
+       */
+      public Builder clearSince() {
+        bitField0_ = (bitField0_ & ~0x00000002);
+        since_ = 0L;
+        onChanged();
+        return this;
+      }
+
+      // optional int32 limit = 3;
+      private int limit_ ;
+      /**
+       * <code>optional int32 limit = 3;</code>
+       */
+      public boolean hasLimit() {
+        return ((bitField0_ & 0x00000004) == 0x00000004);
+      }
+      /**
+       * <code>optional int32 limit = 3;</code>
+       */
+      public int getLimit() {
+        return limit_;
+      }
+      /**
+       * <code>optional int32 limit = 3;</code>
+       */
+      public Builder setLimit(int value) {
+        bitField0_ |= 0x00000004;
+        limit_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional int32 limit = 3;</code>
+       */
+      public Builder clearLimit() {
+        bitField0_ = (bitField0_ & ~0x00000004);
+        limit_ = 0;
+        onChanged();
+        return this;
+      }
+
+      // optional int32 wait = 4;
+      private int wait_ ;
+      /**
+       * <code>optional int32 wait = 4;</code>
+       */
+      public boolean hasWait() {
+        return ((bitField0_ & 0x00000008) == 0x00000008);
+      }
+      /**
+       * <code>optional int32 wait = 4;</code>
+       */
+      public int getWait() {
+        return wait_;
+      }
+      /**
+       * <code>optional int32 wait = 4;</code>
+       */
+      public Builder setWait(int value) {
+        bitField0_ |= 0x00000008;
+        wait_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional int32 wait = 4;</code>
+       */
+      public Builder clearWait() {
+        bitField0_ = (bitField0_ & ~0x00000008);
+        wait_ = 0;
+        onChanged();
+        return this;
+      }
+
+      // @@protoc_insertion_point(builder_scope:nigori.GetChangesRequest)
+    }
+
+    static {
+      defaultInstance = new GetChangesRequest(true);
+      defaultInstance.initFields();
+    }
+
+    // @@protoc_insertion_point(class_scope:nigori.GetChangesRequest)
+  }
+
+  public interface ChangeOrBuilder
+      extends com.google.protobuf.MessageOrBuilder {
+
+    // required bytes key = 1;
+    /**
+     * <code>required bytes key = 1;</code>
+     */
+    boolean hasKey();
+    /**
+     * <code>required bytes key = 1;</code>
+     */
+    com.google.protobuf.ByteString getKey();
+
+    // required int64 sequence = 2;
+    /**
+     * <code>required int64 sequence = 2;</code>
+     */
+    boolean hasSequence();
+    /**
+     * <code>required int64 sequence = 2;</code>
+     */
+    long getSequence();
+
+    // optional bool deleted = 3;
+    /**
+     * <code>optional bool deleted = 3;</code>
+     */
+    boolean hasDeleted();
+    /**
+     * <code>optional bool deleted = 3;</code>
+     */
+    boolean getDeleted();
+  }
+  /**
+   * Protobuf type {@code nigori.Change}
+   *
+   * <pre>
+   * The latest change to a key, every put or delete which changes a key gives it the next number in
+   * the user's change sequence.
+   * </pre>
+   */
+  public static final class Change extends
+      com.google.protobuf.GeneratedMessage
+      implements ChangeOrBuilder {
+    // Use Change.newBuilder() to construct.
+    private Change(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
+      super(builder);
+      this.unknownFields = builder.getUnknownFields();
+    }
+    private Change(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
+    private static final Change defaultInstance;
+    public static Change getDefaultInstance() {
+      return defaultInstance;
+    }
+
+    public Change getDefaultInstanceForType() {
+      return defaultInstance;
+    }
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private Change(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 10: {
+              bitField0_ |= 0x00000001;
+              key_ = input.readBytes();
+              break;
+            }
+            case 16: {
+              bitField0_ |= 0x00000002;
+              sequence_ = input.readInt64();
+              break;
+            }
+            case 24: {
+              bitField0_ |= 0x00000004;
+              deleted_ = input.readBool();
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_Change_descriptor;
+    }
+
+    protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_Change_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              com.google.nigori.common.NigoriMessages.Change.class, com.google.nigori.common.NigoriMessages.Change.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<Change> PARSER =
+        new com.google.protobuf.AbstractParser<Change>() {
+      public Change parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new Change(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<Change> getParserForType() {
+      return PARSER;
+    }
+
+    private int bitField0_;
+    // required bytes key = 1;
+    public static final int KEY_FIELD_NUMBER = 1;
+    private com.google.protobuf.ByteString key_;
+    /**
+     * <code>required bytes key = 1;</code>
+     */
+    public boolean hasKey() {
+      return ((bitField0_ & 0x00000001) == 0x00000001);
+    }
+    /**
+     * <code>required bytes key = 1;</code>
+     */
+    public com.google.protobuf.ByteString getKey() {
+      return key_;
+    }
+
+    // required int64 sequence = 2;
+    public static final int SEQUENCE_FIELD_NUMBER = 2;
+    private long sequence_;
+    /**
+     * <code>required int64 sequence = 2;</code>
+     */
+    public boolean hasSequence() {
+      return ((bitField0_ & 0x00000002) == 0x00000002);
+    }
+    /**
+     * <code>required int64 sequence = 2;</code>
+     */
+    public long getSequence() {
+      return sequence_;
+    }
+
+    // optional bool deleted = 3;
+    public static final int DELETED_FIELD_NUMBER = 3;
+    private boolean deleted_;
+    /**
+     * <code>optional bool deleted = 3;</code>
+     */
+    public boolean hasDeleted() {
+      return ((bitField0_ & 0x00000004) == 0x00000004);
+    }
+    /**
+     * <code>optional bool deleted = 3;</code>
+     */
+    public boolean getDeleted() {
+      return deleted_;
+    }
+
+    private void initFields() {
+      key_ = com.google.protobuf.ByteString.EMPTY;
+      sequence_ = 0L;
+      deleted_ = false;
+    }
+    private byte memoizedIsInitialized = -1;
+    public final boolean isInitialized() {
+      byte isInitialized = memoizedIsInitialized;
+      if (isInitialized != -1) return isInitialized == 1;
+
+      if (!hasKey()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      if (!hasSequence()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      memoizedIsInitialized = 1;
+      return true;
+    }
+
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        output.writeBytes(1, key_);
+      }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        output.writeInt64(2, sequence_);
+      }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        output.writeBool(3, deleted_);
+      }
+      getUnknownFields().writeTo(output);
+    }
+
+    private int memoizedSerializedSize = -1;
+    public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+
+      size = 0;
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(1, key_);
+      }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt64Size(2, sequence_);
+      }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBoolSize(3, deleted_);
+      }
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+
+    private static final long serialVersionUID = 0L;
+    @java.lang.Override
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
+      return super.writeReplace();
+    }
+
+    public static com.google.nigori.common.NigoriMessages.Change parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static com.google.nigori.common.NigoriMessages.Change parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.Change parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static com.google.nigori.common.NigoriMessages.Change parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.Change parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.Change parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.Change parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.Change parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.Change parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.Change parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+
+    public static Builder newBuilder() { return Builder.create(); }
+    public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(com.google.nigori.common.NigoriMessages.Change prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    public Builder toBuilder() { return newBuilder(this); }
+
+    @java.lang.Override
+    protected Builder newBuilderForType(
+        com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+      Builder builder = new Builder(parent);
+      return builder;
+    }
+    /**
+     * Protobuf type {@code nigori.Change}
+     *
+     * <pre>
+     * The latest change to a key, every put or delete which changes a key gives it the next number in
+     * the user's change sequence.
+     * </pre>
+     */
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder>
+       implements com.google.nigori.common.NigoriMessages.ChangeOrBuilder {
+      public static final com.google.protobuf.Descriptors.Descriptor
+          getDescriptor() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_Change_descriptor;
+      }
+
+      protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+          internalGetFieldAccessorTable() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_Change_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                com.google.nigori.common.NigoriMessages.Change.class, com.google.nigori.common.NigoriMessages.Change.Builder.class);
+      }
+
+      // Construct using com.google.nigori.common.NigoriMessages.Change.newBuilder()
+      private Builder() {
+        maybeForceBuilderInitialization();
+      }
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+        super(parent);
+        maybeForceBuilderInitialization();
+      }
+      private void maybeForceBuilderInitialization() {
+        if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+        }
+      }
+      private static Builder create() {
+        return new Builder();
+      }
+
+      public Builder clear() {
+        super.clear();
+        key_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000001);
+        sequence_ = 0L;
+        bitField0_ = (bitField0_ & ~0x00000002);
+        deleted_ = false;
+        bitField0_ = (bitField0_ & ~0x00000004);
+        return this;
+      }
+
+      public Builder clone() {
+        return create().mergeFrom(buildPartial());
+      }
+
+      public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_Change_descriptor;
+      }
+
+      public com.google.nigori.common.NigoriMessages.Change getDefaultInstanceForType() {
+        return com.google.nigori.common.NigoriMessages.Change.getDefaultInstance();
+      }
+
+      public com.google.nigori.common.NigoriMessages.Change build() {
+        com.google.nigori.common.NigoriMessages.Change result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return result;
+      }
+
+      public com.google.nigori.common.NigoriMessages.Change buildPartial() {
+        com.google.nigori.common.NigoriMessages.Change result = new com.google.nigori.common.NigoriMessages.Change(this);
+        int from_bitField0_ = bitField0_;
+        int to_bitField0_ = 0;
+        if (((from_bitField0_ & 0x00000001) == 0x00000001)) {
+          to_bitField0_ |= 0x00000001;
+        }
+        result.key_ = key_;
+        if (((from_bitField0_ & 0x00000002) == 0x00000002)) {
+          to_bitField0_ |= 0x00000002;
+        }
+        result.sequence_ = sequence_;
+        if (((from_bitField0_ & 0x00000004) == 0x00000004)) {
+          to_bitField0_ |= 0x00000004;
+        }
+        result.deleted_ = deleted_;
+        result.bitField0_ = to_bitField0_;
+        onBuilt();
+        return result;
+      }
+
+      public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof com.google.nigori.common.NigoriMessages.Change) {
+          return mergeFrom((com.google.nigori.common.NigoriMessages.Change)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+
+      public Builder mergeFrom(com.google.nigori.common.NigoriMessages.Change other) {
+        if (other == com.google.nigori.common.NigoriMessages.Change.getDefaultInstance()) return this;
+        if (other.hasKey()) {
+          setKey(other.getKey());
+        }
+        if (other.hasSequence()) {
+          setSequence(other.getSequence());
+        }
+        if (other.hasDeleted()) {
+          setDeleted(other.getDeleted());
+        }
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+
+      public final boolean isInitialized() {
+        if (!hasKey()) {
+          
+          return false;
+        }
+        if (!hasSequence()) {
+          
+          return false;
+        }
+        return true;
+      }
+
+      public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        com.google.nigori.common.NigoriMessages.Change parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (com.google.nigori.common.NigoriMessages.Change) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
+          }
+        }
+        return this;
+      }
+      private int bitField0_;
+
+      // required bytes key = 1;
+      private com.google.protobuf.ByteString key_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>required bytes key = 1;</code>
+       */
+      public boolean hasKey() {
+        return ((bitField0_ & 0x00000001) == 0x00000001);
+      }
+      /**
+       * <code>required bytes key = 1;</code>
+       */
+      public com.google.protobuf.ByteString getKey() {
+        return key_;
+      }
+      /**
+       * <code>required bytes key = 1;</code>
+       */
+      public Builder setKey(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000001;
+        key_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>required bytes key = 1;</code>
+       */
+      public Builder clearKey() {
+        bitField0_ = (bitField0_ & ~0x00000001);
+        key_ = getDefaultInstance().getKey();
+        onChanged();
+        return this;
+      }
+
+      // required int64 sequence = 2;
+      private long sequence_ ;
+      /**
+       * <code>required int64 sequence = 2;</code>
+       */
+      public boolean hasSequence() {
+        return ((bitField0_ & 0x00000002) == 0x00000002);
+      }
+      /**
+       * <code>required int64 sequence = 2;</code>
+       */
+      public long getSequence() {
+        return sequence_;
+      }
+      /**
+       * <code>required int64 sequence = 2;</code>
+       */
+      public Builder setSequence(long value) {
+        bitField0_ |= 0x00000002;
+        sequence_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>required int64 sequence = 2;</code>
+       */
+      public Builder clearSequence() {
+        bitField0_ = (bitField0_ & ~0x00000002);
+        sequence_ = 0L;
+        onChanged();
+        return this;
+      }
+
+      // optional bool deleted = 3;
+      private boolean deleted_ ;
+      /**
+       * <code>optional bool deleted = 3;</code>
+       */
+      public boolean hasDeleted() {
+        return ((bitField0_ & 0x00000004) == 0x00000004);
+      }
+      /**
+       * <code>optional bool deleted = 3;</code>
+       */
+      public boolean getDeleted() {
+        return deleted_;
+      }
+      /**
+       * <code>optional bool deleted = 3;</code>
+       */
+      public Builder setDeleted(boolean value) {
+        bitField0_ |= 0x00000004;
+        deleted_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bool deleted = 3;</code>
+       */
+      public Builder clearDeleted() {
+        bitField0_ = (bitField0_ & ~0x00000004);
+        deleted_ = false;
+        onChanged();
+        return this;
+      }
+
+      // @@protoc_insertion_point(builder_scope:nigori.Change)
+    }
+
+    static {
+      defaultInstance = new Change(true);
+      defaultInstance.initFields();
+    }
+
+    // @@protoc_insertion_point(class_scope:nigori.Change)
+  }
+
+  public interface GetChangesResponseOrBuilder
+      extends com.google.protobuf.MessageOrBuilder {
+
+    // repeated .nigori.Change changes = 1;
+    /**
+     * <code>repeated .nigori.Change changes = 1;</code>
+     */
+    java.util.List<com.google.nigori.common.NigoriMessages.Change> 
+        getChangesList();
+    /**
+     * <code>repeated .nigori.Change changes = 1;</code>
+     */
+    com.google.nigori.common.NigoriMessages.Change getChanges(int index);
+    /**
+     * <code>repeated .nigori.Change changes = 1;</code>
+     */
+    int getChangesCount();
+    /**
+     * <code>repeated .nigori.Change changes = 1;</code>
+     */
+    java.util.List<? extends com.google.nigori.common.NigoriMessages.ChangeOrBuilder> 
+        getChangesOrBuilderList();
+    /**
+     * <code>repeated .nigori.Change changes = 1;</code>
+     */
+    com.google.nigori.common.NigoriMessages.ChangeOrBuilder getChangesOrBuilder(
+        int index);
+
+    // required int64 sequence = 2;
+    /**
+     * <code>required int64 sequence = 2;</code>
+     */
+    boolean hasSequence();
+    /**
+     * <code>required int64 sequence = 2;</code>
+     */
+    long getSequence();
+  }
+  /**
+   * Protobuf type {@code nigori.GetChangesResponse}
+   *
+   * <pre>
+   * Changes in increasing sequence order, sequence is the number of the user's latest change when
+   * the changes were listed.
+   * </pre>
+   */
+  public static final class GetChangesResponse extends
+      com.google.protobuf.GeneratedMessage
+      implements GetChangesResponseOrBuilder {
+    // Use GetChangesResponse.newBuilder() to construct.
+    private GetChangesResponse(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
+      super(builder);
+      this.unknownFields = builder.getUnknownFields();
+    }
+    private GetChangesResponse(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
+    private static final GetChangesResponse defaultInstance;
+    public static GetChangesResponse getDefaultInstance() {
+      return defaultInstance;
+    }
+
+    public GetChangesResponse getDefaultInstanceForType() {
+      return defaultInstance;
+    }
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private GetChangesResponse(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 10: {
+              if (!((mutable_bitField0_ & 0x00000001) == 0x00000001)) {
+                changes_ = new java.util.ArrayList<com.google.nigori.common.NigoriMessages.Change>();
+                mutable_bitField0_ |= 0x00000001;
+              }
+              changes_.add(input.readMessage(com.google.nigori.common.NigoriMessages.Change.PARSER, extensionRegistry));
+              break;
+            }
+            case 16: {
+              bitField0_ |= 0x00000001;
+              sequence_ = input.readInt64();
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        if (((mutable_bitField0_ & 0x00000001) == 0x00000001)) {
+          changes_ = java.util.Collections.unmodifiableList(changes_);
+        }
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetChangesResponse_descriptor;
+    }
+
+    protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetChangesResponse_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              com.google.nigori.common.NigoriMessages.GetChangesResponse.class, com.google.nigori.common.NigoriMessages.GetChangesResponse.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<GetChangesResponse> PARSER =
+        new com.google.protobuf.AbstractParser<GetChangesResponse>() {
+      public GetChangesResponse parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new GetChangesResponse(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<GetChangesResponse> getParserForType() {
+      return PARSER;
+    }
+
+    private int bitField0_;
+    // repeated .nigori.Change changes = 1;
+    public static final int CHANGES_FIELD_NUMBER = 1;
+    private java.util.List<com.google.nigori.common.NigoriMessages.Change> changes_;
+    /**
+     * <code>repeated .nigori.Change changes = 1;</code>
+     */
+    public java.util.List<com.google.nigori.common.NigoriMessages.Change> getChangesList() {
+      return changes_;
+    }
+    /**
+     * <code>repeated .nigori.Change changes = 1;</code>
+     */
+    public java.util.List<? extends com.google.nigori.common.NigoriMessages.ChangeOrBuilder> 
+        getChangesOrBuilderList() {
+      return changes_;
+    }
+    /**
+     * <code>repeated .nigori.Change changes = 1;</code>
+     */
+    public int getChangesCount() {
+      return changes_.size();
+    }
+    /**
+     * <code>repeated .nigori.Change changes = 1;</code>
+     */
+    public com.google.nigori.common.NigoriMessages.Change getChanges(int index) {
+      return changes_.get(index);
+    }
+    /**
+     * <code>repeated .nigori.Change changes = 1;</code>
+     */
+    public com.google.nigori.common.NigoriMessages.ChangeOrBuilder getChangesOrBuilder(
+        int index) {
+      return changes_.get(index);
+    }
+
+    // required int64 sequence = 2;
+    public static final int SEQUENCE_FIELD_NUMBER = 2;
+    private long sequence_;
+    /**
+     * <code>required int64 sequence = 2;</code>
+     */
+    public boolean hasSequence() {
+      return ((bitField0_ & 0x00000001) == 0x00000001);
+    }
+    /**
+     * <code>required int64 sequence = 2;</code>
+     */
+    public long getSequence() {
+      return sequence_;
+    }
+
+    private void initFields() {
+      changes_ = java.util.Collections.emptyList();
+      sequence_ = 0L;
+    }
+    private byte memoizedIsInitialized = -1;
+    public final boolean isInitialized() {
+      byte isInitialized = memoizedIsInitialized;
+      if (isInitialized != -1) return isInitialized == 1;
+
+      if (!hasSequence()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      for (int i = 0; i < getChangesCount(); i++) {
+        if (!getChanges(i).isInitialized()) {
+          memoizedIsInitialized = 0;
+          return false;
+        }
+      }
+      memoizedIsInitialized = 1;
+      return true;
+    }
+
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      for (int i = 0; i < changes_.size(); i++) {
+        output.writeMessage(1, changes_.get(i));
+      }
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        output.writeInt64(2, sequence_);
+      }
+      getUnknownFields().writeTo(output);
+    }
+
+    private int memoizedSerializedSize = -1;
+    public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+
+      size = 0;
+      for (int i = 0; i < changes_.size(); i++) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(1, changes_.get(i));
+      }
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt64Size(2, sequence_);
+      }
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+
+    private static final long serialVersionUID = 0L;
+    @java.lang.Override
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
+      return super.writeReplace();
+    }
+
+    public static com.google.nigori.common.NigoriMessages.GetChangesResponse parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetChangesResponse parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetChangesResponse parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetChangesResponse parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetChangesResponse parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetChangesResponse parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetChangesResponse parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetChangesResponse parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetChangesResponse parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetChangesResponse parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+
+    public static Builder newBuilder() { return Builder.create(); }
+    public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(com.google.nigori.common.NigoriMessages.GetChangesResponse prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    public Builder toBuilder() { return newBuilder(this); }
+
+    @java.lang.Override
+    protected Builder newBuilderForType(
+        com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+      Builder builder = new Builder(parent);
+      return builder;
+    }
+    /**
+     * Protobuf type {@code nigori.GetChangesResponse}
+     *
+     * <pre>
+     * Changes in increasing sequence order, sequence is the number of the user's latest change when
+     * the changes were listed.
+     * </pre>
+     */
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder>
+       implements com.google.nigori.common.NigoriMessages.GetChangesResponseOrBuilder {
+      public static final com.google.protobuf.Descriptors.Descriptor
+          getDescriptor() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetChangesResponse_descriptor;
+      }
+
+      protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+          internalGetFieldAccessorTable() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetChangesResponse_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                com.google.nigori.common.NigoriMessages.GetChangesResponse.class, com.google.nigori.common.NigoriMessages.GetChangesResponse.Builder.class);
+      }
+
+      // Construct using com.google.nigori.common.NigoriMessages.GetChangesResponse.newBuilder()
+      private Builder() {
+        maybeForceBuilderInitialization();
+      }
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+        super(parent);
+        maybeForceBuilderInitialization();
+      }
+      private void maybeForceBuilderInitialization() {
+        if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+          getChangesFieldBuilder();
+        }
+      }
+      private static Builder create() {
+        return new Builder();
+      }
+
+      public Builder clear() {
+        super.clear();
+        if (changesBuilder_ == null) {
+          changes_ = java.util.Collections.emptyList();
+          bitField0_ = (bitField0_ & ~0x00000001);
+        } else {
+          changesBuilder_.clear();
+        }
+        sequence_ = 0L;
+        bitField0_ = (bitField0_ & ~0x00000002);
+        return this;
+      }
+
+      public Builder clone() {
+        return create().mergeFrom(buildPartial());
+      }
+
+      public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetChangesResponse_descriptor;
+      }
+
+      public com.google.nigori.common.NigoriMessages.GetChangesResponse getDefaultInstanceForType() {
+        return com.google.nigori.common.NigoriMessages.GetChangesResponse.getDefaultInstance();
+      }
+
+      public com.google.nigori.common.NigoriMessages.GetChangesResponse build() {
+        com.google.nigori.common.NigoriMessages.GetChangesResponse result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return result;
+      }
+
+      public com.google.nigori.common.NigoriMessages.GetChangesResponse buildPartial() {
+        com.google.nigori.common.NigoriMessages.GetChangesResponse result = new com.google.nigori.common.NigoriMessages.GetChangesResponse(this);
+        int from_bitField0_ = bitField0_;
+        int to_bitField0_ = 0;
+        if (changesBuilder_ == null) {
+          if (((bitField0_ & 0x00000001) == 0x00000001)) {
+            changes_ = java.util.Collections.unmodifiableList(changes_);
+            bitField0_ = (bitField0_ & ~0x00000001);
+          }
+          result.changes_ = changes_;
+        } else {
+          result.changes_ = changesBuilder_.build();
+        }
+        if (((from_bitField0_ & 0x00000002) == 0x00000002)) {
+          to_bitField0_ |= 0x00000001;
+        }
+        result.sequence_ = sequence_;
+        result.bitField0_ = to_bitField0_;
+        onBuilt();
+        return result;
+      }
+
+      public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof com.google.nigori.common.NigoriMessages.GetChangesResponse) {
+          return mergeFrom((com.google.nigori.common.NigoriMessages.GetChangesResponse)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+
+      public Builder mergeFrom(com.google.nigori.common.NigoriMessages.GetChangesResponse other) {
+        if (other == com.google.nigori.common.NigoriMessages.GetChangesResponse.getDefaultInstance()) return this;
+        if (changesBuilder_ == null) {
+          if (!other.changes_.isEmpty()) {
+            if (changes_.isEmpty()) {
+              changes_ = other.changes_;
+              bitField0_ = (bitField0_ & ~0x00000001);
+            } else {
+              ensureChangesIsMutable();
+              changes_.addAll(other.changes_);
+            }
+            onChanged();
+          }
+        } else {
+          if (!other.changes_.isEmpty()) {
+            if (changesBuilder_.isEmpty()) {
+              changesBuilder_.dispose();
+              changesBuilder_ = null;
+              changes_ = other.changes_;
+              bitField0_ = (bitField0_ & ~0x00000001);
+              changesBuilder_ = 
+                com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders ?
+                   getChangesFieldBuilder() : null;
+            } else {
+              changesBuilder_.addAllMessages(other.changes_);
+            }
+          }
+        }
+        if (other.hasSequence()) {
+          setSequence(other.getSequence());
+        }
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+
+      public final boolean isInitialized() {
+        if (!hasSequence()) {
+          
+          return false;
+        }
+        for (int i = 0; i < getChangesCount(); i++) {
+          if (!getChanges(i).isInitialized()) {
+            
+            return false;
+          }
+        }
+        return true;
+      }
+
+      public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        com.google.nigori.common.NigoriMessages.GetChangesResponse parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (com.google.nigori.common.NigoriMessages.GetChangesResponse) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
+          }
+        }
+        return this;
+      }
+      private int bitField0_;
+
+      // repeated .nigori.Change changes = 1;
+      private java.util.List<com.google.nigori.common.NigoriMessages.Change> changes_ =
+        java.util.Collections.emptyList();
+      private void ensureChangesIsMutable() {
+        if (!((bitField0_ & 0x00000001) == 0x00000001)) {
+          changes_ = new java.util.ArrayList<com.google.nigori.common.NigoriMessages.Change>(changes_);
+          bitField0_ |= 0x00000001;
+         }
+      }
+
+      private com.google.protobuf.RepeatedFieldBuilder<
+          com.google.nigori.common.NigoriMessages.Change, com.google.nigori.common.NigoriMessages.Change.Builder, com.google.nigori.common.NigoriMessages.ChangeOrBuilder> changesBuilder_;
+
+      /**
+       * <code>repeated .nigori.Change changes = 1;</code>
+       */
+      public java.util.List<com.google.nigori.common.NigoriMessages.Change> getChangesList() {
+        if (changesBuilder_ == null) {
+          return java.util.Collections.unmodifiableList(changes_);
+        } else {
+          return changesBuilder_.getMessageList();
+        }
+      }
+      /**
+       * <code>repeated .nigori.Change changes = 1;</code>
+       */
+      public int getChangesCount() {
+        if (changesBuilder_ == null) {
+          return changes_.size();
+        } else {
+          return changesBuilder_.getCount();
+        }
+      }
+      /**
+       * <code>repeated .nigori.Change changes = 1;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.Change getChanges(int index) {
+        if (changesBuilder_ == null) {
+          return changes_.get(index);
+        } else {
+          return changesBuilder_.getMessage(index);
+        }
+      }
+      /**
+       * <code>repeated .nigori.Change changes = 1;</code>
+       */
+      public Builder setChanges(
+          int index, com.google.nigori.common.NigoriMessages.Change value) {
+        if (changesBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureChangesIsMutable();
+          changes_.set(index, value);
+          onChanged();
+        } else {
+          changesBuilder_.setMessage(index, value);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.Change changes = 1;</code>
+       */
+      public Builder setChanges(
+          int index, com.google.nigori.common.NigoriMessages.Change.Builder builderForValue) {
+        if (changesBuilder_ == null) {
+          ensureChangesIsMutable();
+          changes_.set(index, builderForValue.build());
+          onChanged();
+        } else {
+          changesBuilder_.setMessage(index, builderForValue.build());
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.Change changes = 1;</code>
+       */
+      public Builder addChanges(com.google.nigori.common.NigoriMessages.Change value) {
+        if (changesBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureChangesIsMutable();
+          changes_.add(value);
+          onChanged();
+        } else {
+          changesBuilder_.addMessage(value);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.Change changes = 1;</code>
+       */
+      public Builder addChanges(
+          int index, com.google.nigori.common.NigoriMessages.Change value) {
+        if (changesBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureChangesIsMutable();
+          changes_.add(index, value);
+          onChanged();
+        } else {
+          changesBuilder_.addMessage(index, value);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.Change changes = 1;</code>
+       */
+      public Builder addChanges(
+          com.google.nigori.common.NigoriMessages.Change.Builder builderForValue) {
+        if (changesBuilder_ == null) {
+          ensureChangesIsMutable();
+          changes_.add(builderForValue.build());
+          onChanged();
+        } else {
+          changesBuilder_.addMessage(builderForValue.build());
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.Change changes = 1;</code>
+       */
+      public Builder addChanges(
+          int index, com.google.nigori.common.NigoriMessages.Change.Builder builderForValue) {
+        if (changesBuilder_ == null) {
+          ensureChangesIsMutable();
+          changes_.add(index, builderForValue.build());
+          onChanged();
+        } else {
+          changesBuilder_.addMessage(index, builderForValue.build());
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.Change changes = 1;</code>
+       */
+      public Builder addAllChanges(
+          java.lang.Iterable<? extends com.google.nigori.common.NigoriMessages.Change> values) {
+        if (changesBuilder_ == null) {
+          ensureChangesIsMutable();
+          super.addAll(values, changes_);
+          onChanged();
+        } else {
+          changesBuilder_.addAllMessages(values);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.Change changes = 1;</code>
+       */
+      public Builder clearChanges() {
+        if (changesBuilder_ == null) {
+          changes_ = java.util.Collections.emptyList();
+          bitField0_ = (bitField0_ & ~0x00000001);
+          onChanged();
+        } else {
+          changesBuilder_.clear();
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.Change changes = 1;</code>
+       */
+      public Builder removeChanges(int index) {
+        if (changesBuilder_ == null) {
+          ensureChangesIsMutable();
+          changes_.remove(index);
+          onChanged();
+        } else {
+          changesBuilder_.remove(index);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.Change changes = 1;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.Change.Builder getChangesBuilder(
+          int index) {
+        return getChangesFieldBuilder().getBuilder(index);
+      }
+      /**
+       * <code>repeated .nigori.Change changes = 1;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.ChangeOrBuilder getChangesOrBuilder(
+          int index) {
+        if (changesBuilder_ == null) {
+          return changes_.get(index);  } else {
+          return changesBuilder_.getMessageOrBuilder(index);
+        }
+      }
+      /**
+       * <code>repeated .nigori.Change changes = 1;</code>
+       */
+      public java.util.List<? extends com.google.nigori.common.NigoriMessages.ChangeOrBuilder> 
+           getChangesOrBuilderList() {
+        if (changesBuilder_ != null) {
+          return changesBuilder_.getMessageOrBuilderList();
+        } else {
+          return java.util.Collections.unmodifiableList(changes_);
+        }
+      }
+      /**
+       * <code>repeated .nigori.Change changes = 1;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.Change.Builder addChangesBuilder() {
+        return getChangesFieldBuilder().addBuilder(
+            com.google.nigori.common.NigoriMessages.Change.getDefaultInstance());
+      }
+      /**
+       * <code>repeated .nigori.Change changes = 1;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.Change.Builder addChangesBuilder(
+          int index) {
+        return getChangesFieldBuilder().addBuilder(
+            index, com.google.nigori.common.NigoriMessages.Change.getDefaultInstance());
+      }
+      /**
+       * <code>repeated .nigori.Change changes = 1;</code>
+       */
+      public java.util.List<com.google.nigori.common.NigoriMessages.Change.Builder> 
+           getChangesBuilderList() {
+        return getChangesFieldBuilder().getBuilderList();
+      }
+      private com.google.protobuf.RepeatedFieldBuilder<
+          com.google.nigori.common.NigoriMessages.Change, com.google.nigori.common.NigoriMessages.Change.Builder, com.google.nigori.common.NigoriMessages.ChangeOrBuilder> 
+          getChangesFieldBuilder() {
+        if (changesBuilder_ == null) {
+          changesBuilder_ = new com.google.protobuf.RepeatedFieldBuilder<
+              com.google.nigori.common.NigoriMessages.Change, com.google.nigori.common.NigoriMessages.Change.Builder, com.google.nigori.common.NigoriMessages.ChangeOrBuilder>(
+                  changes_,
+                  ((bitField0_ & 0x00000001) == 0x00000001),
+                  getParentForChildren(),
+                  isClean());
+          changes_ = null;
+        }
+        return changesBuilder_;
+      }
+
+      // required int64 sequence = 2;
+      private long sequence_ ;
+      /**
+       * <code>required int64 sequence = 2;</code>
+       */
+      public boolean hasSequence() {
+        return ((bitField0_ & 0x00000002) == 0x00000002);
+      }
+      /**
+       * <code>required int64 sequence = 2;</code>
+       */
+      public long getSequence() {
+        return sequence_;
+      }
+      /**
+       * <code>required int64 sequence = 2;</code>
+       */
+      public Builder setSequence(long value) {
+        bitField0_ |= 0x00000002;
+        sequence_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>required int64 sequence = 2;</code>
+       */
+      public Builder clearSequence() {
+        bitField0_ = (bitField0_ & ~0x00000002);
+        sequence_ = 0L;
+        onChanged();
+        return this;
+      }
+
+      // @@protoc_insertion_point(builder_scope:nigori.GetChangesResponse)
+    }
+
+    static {
+      defaultInstance = new GetChangesResponse(true);
+      defaultInstance.initFields();
+    }
+
+    // @@protoc_insertion_point(class_scope:nigori.GetChangesResponse)
+  }
+
+  public interface GetDigestsRequestOrBuilder
+      extends com.google.protobuf.MessageOrBuilder {
+
+    // required .nigori.AuthenticateRequest auth = 1;
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
+    boolean hasAuth();
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
+    com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth();
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
+    com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder();
+
+    // repeated bytes nodes = 2;
+    /**
+     * <code>repeated bytes nodes = 2;</code>
+     */
+    java.util.List<com.google.protobuf.ByteString> getNodesList();
+    /**
+     * <code>repeated bytes nodes = 2;</code>
+     */
+    int getNodesCount();
+    /**
+     * <code>repeated bytes nodes = 2;</code>
+     */
+    com.google.protobuf.ByteString getNodes(int index);
+  }
+  /**
+   * Protobuf type {@code nigori.GetDigestsRequest}
+   *
+   * <pre>
+   * Digests of nodes in the user's hash tree. Each node is given by its path from the root, one byte
+   * per level with the number of the child taken at that level.
+   * </pre>
+   */
+  public static final class GetDigestsRequest extends
+      com.google.protobuf.GeneratedMessage
+      implements GetDigestsRequestOrBuilder {
+    // Use GetDigestsRequest.newBuilder() to construct.
+    private GetDigestsRequest(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
+      super(builder);
+      this.unknownFields = builder.getUnknownFields();
+    }
+    private GetDigestsRequest(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
+    private static final GetDigestsRequest defaultInstance;
+    public static GetDigestsRequest getDefaultInstance() {
+      return defaultInstance;
+    }
+
+    public GetDigestsRequest getDefaultInstanceForType() {
+      return defaultInstance;
+    }
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private GetDigestsRequest(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 10: {
+              com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder subBuilder = null;
+              if (((bitField0_ & 0x00000001) == 0x00000001)) {
+                subBuilder = auth_.toBuilder();
+              }
+              auth_ = input.readMessage(com.google.nigori.common.NigoriMessages.AuthenticateRequest.PARSER, extensionRegistry);
+              if (subBuilder != null) {
+                subBuilder.mergeFrom(auth_);
+                auth_ = subBuilder.buildPartial();
+              }
+              bitField0_ |= 0x00000001;
+              break;
+            }
+            case 18: {
+              if (!((mutable_bitField0_ & 0x00000002) == 0x00000002)) {
+                nodes_ = new java.util.ArrayList<com.google.protobuf.ByteString>();
+                mutable_bitField0_ |= 0x00000002;
+              }
+              nodes_.add(input.readBytes());
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        if (((mutable_bitField0_ & 0x00000002) == 0x00000002)) {
+          nodes_ = java.util.Collections.unmodifiableList(nodes_);
+        }
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetDigestsRequest_descriptor;
+    }
+
+    protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetDigestsRequest_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              com.google.nigori.common.NigoriMessages.GetDigestsRequest.class, com.google.nigori.common.NigoriMessages.GetDigestsRequest.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<GetDigestsRequest> PARSER =
+        new com.google.protobuf.AbstractParser<GetDigestsRequest>() {
+      public GetDigestsRequest parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new GetDigestsRequest(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<GetDigestsRequest> getParserForType() {
+      return PARSER;
+    }
+
+    private int bitField0_;
+    // required .nigori.AuthenticateRequest auth = 1;
+    public static final int AUTH_FIELD_NUMBER = 1;
+    private com.google.nigori.common.NigoriMessages.AuthenticateRequest auth_;
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
+    public boolean hasAuth() {
+      return ((bitField0_ & 0x00000001) == 0x00000001);
+    }
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
+    public com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth() {
+      return auth_;
+    }
+    /**
+     * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+     */
+    public com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder() {
+      return auth_;
+    }
+
+    // repeated bytes nodes = 2;
+    public static final int NODES_FIELD_NUMBER = 2;
+    private java.util.List<com.google.protobuf.ByteString> nodes_;
+    /**
+     * <code>repeated bytes nodes = 2;</code>
+     */
+    public java.util.List<com.google.protobuf.ByteString>
+        getNodesList() {
+      return nodes_;
+    }
+    /**
+     * <code>repeated bytes nodes = 2;</code>
+     */
+    public int getNodesCount() {
+      return nodes_.size();
+    }
+    /**
+     * <code>repeated bytes nodes = 2;</code>
+     */
+    public com.google.protobuf.ByteString getNodes(int index) {
+      return nodes_.get(index);
+    }
+
+    private void initFields() {
+      auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
+      nodes_ = java.util.Collections.emptyList();
+    }
+    private byte memoizedIsInitialized = -1;
+    public final boolean isInitialized() {
+      byte isInitialized = memoizedIsInitialized;
+      if (isInitialized != -1) return isInitialized == 1;
+
+      if (!hasAuth()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      if (!getAuth().isInitialized()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      memoizedIsInitialized = 1;
+      return true;
+    }
+
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        output.writeMessage(1, auth_);
+      }
+      for (int i = 0; i < nodes_.size(); i++) {
+        output.writeBytes(2, nodes_.get(i));
+      }
+      getUnknownFields().writeTo(output);
+    }
+
+    private int memoizedSerializedSize = -1;
+    public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+
+      size = 0;
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(1, auth_);
+      }
+      {
+        int dataSize = 0;
+        for (int i = 0; i < nodes_.size(); i++) {
+          dataSize += com.google.protobuf.CodedOutputStream
+            .computeBytesSizeNoTag(nodes_.get(i));
+        }
+        size += dataSize;
+        size += 1 * getNodesList().size();
+      }
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+
+    private static final long serialVersionUID = 0L;
+    @java.lang.Override
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
+      return super.writeReplace();
+    }
+
+    public static com.google.nigori.common.NigoriMessages.GetDigestsRequest parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetDigestsRequest parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetDigestsRequest parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetDigestsRequest parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetDigestsRequest parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetDigestsRequest parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetDigestsRequest parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetDigestsRequest parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetDigestsRequest parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetDigestsRequest parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+
+    public static Builder newBuilder() { return Builder.create(); }
+    public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(com.google.nigori.common.NigoriMessages.GetDigestsRequest prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    public Builder toBuilder() { return newBuilder(this); }
+
+    @java.lang.Override
+    protected Builder newBuilderForType(
+        com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+      Builder builder = new Builder(parent);
+      return builder;
+    }
+    /**
+     * Protobuf type {@code nigori.GetDigestsRequest}
+     *
+     * <pre>
+     * Digests of nodes in the user's hash tree. Each node is given by its path from the root, one byte
+     * per level with the number of the child taken at that level.
+     * </pre>
+     */
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder>
+       implements com.google.nigori.common.NigoriMessages.GetDigestsRequestOrBuilder {
+      public static final com.google.protobuf.Descriptors.Descriptor
+          getDescriptor() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetDigestsRequest_descriptor;
+      }
+
+      protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+          internalGetFieldAccessorTable() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetDigestsRequest_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                com.google.nigori.common.NigoriMessages.GetDigestsRequest.class, com.google.nigori.common.NigoriMessages.GetDigestsRequest.Builder.class);
+      }
+
+      // Construct using com.google.nigori.common.NigoriMessages.GetDigestsRequest.newBuilder()
+      private Builder() {
+        maybeForceBuilderInitialization();
+      }
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+        super(parent);
+        maybeForceBuilderInitialization();
+      }
+      private void maybeForceBuilderInitialization() {
+        if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+          getAuthFieldBuilder();
+        }
+      }
+      private static Builder create() {
+        return new Builder();
+      }
+
+      public Builder clear() {
+        super.clear();
+        if (authBuilder_ == null) {
+          auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
+        } else {
+          authBuilder_.clear();
+        }
+        bitField0_ = (bitField0_ & ~0x00000001);
+        nodes_ = java.util.Collections.emptyList();
+        bitField0_ = (bitField0_ & ~0x00000002);
+        return this;
+      }
+
+      public Builder clone() {
+        return create().mergeFrom(buildPartial());
+      }
+
+      public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetDigestsRequest_descriptor;
+      }
+
+      public com.google.nigori.common.NigoriMessages.GetDigestsRequest getDefaultInstanceForType() {
+        return com.google.nigori.common.NigoriMessages.GetDigestsRequest.getDefaultInstance();
+      }
+
+      public com.google.nigori.common.NigoriMessages.GetDigestsRequest build() {
+        com.google.nigori.common.NigoriMessages.GetDigestsRequest result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return result;
+      }
+
+      public com.google.nigori.common.NigoriMessages.GetDigestsRequest buildPartial() {
+        com.google.nigori.common.NigoriMessages.GetDigestsRequest result = new com.google.nigori.common.NigoriMessages.GetDigestsRequest(this);
+        int from_bitField0_ = bitField0_;
+        int to_bitField0_ = 0;
+        if (((from_bitField0_ & 0x00000001) == 0x00000001)) {
+          to_bitField0_ |= 0x00000001;
+        }
+        if (authBuilder_ == null) {
+          result.auth_ = auth_;
+        } else {
+          result.auth_ = authBuilder_.build();
+        }
+        if (((bitField0_ & 0x00000002) == 0x00000002)) {
+          nodes_ = java.util.Collections.unmodifiableList(nodes_);
+          bitField0_ = (bitField0_ & ~0x00000002);
+        }
+        result.nodes_ = nodes_;
+        result.bitField0_ = to_bitField0_;
+        onBuilt();
+        return result;
+      }
+
+      public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof com.google.nigori.common.NigoriMessages.GetDigestsRequest) {
+          return mergeFrom((com.google.nigori.common.NigoriMessages.GetDigestsRequest)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+
+      public Builder mergeFrom(com.google.nigori.common.NigoriMessages.GetDigestsRequest other) {
+        if (other == com.google.nigori.common.NigoriMessages.GetDigestsRequest.getDefaultInstance()) return this;
+        if (other.hasAuth()) {
+          mergeAuth(other.getAuth());
+        }
+        if (!other.nodes_.isEmpty()) {
+          if (nodes_.isEmpty()) {
+            nodes_ = other.nodes_;
+            bitField0_ = (bitField0_ & ~0x00000002);
+          } else {
+            ensureNodesIsMutable();
+            nodes_.addAll(other.nodes_);
+          }
+          onChanged();
+        }
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+
+      public final boolean isInitialized() {
+        if (!hasAuth()) {
+          
+          return false;
+        }
+        if (!getAuth().isInitialized()) {
+          
+          return false;
+        }
+        return true;
+      }
+
+      public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        com.google.nigori.common.NigoriMessages.GetDigestsRequest parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (com.google.nigori.common.NigoriMessages.GetDigestsRequest) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
+          }
+        }
+        return this;
+      }
+      private int bitField0_;
+
+      // required .nigori.AuthenticateRequest auth = 1;
+      private com.google.nigori.common.NigoriMessages.AuthenticateRequest auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
+      private com.google.protobuf.SingleFieldBuilder<
+          com.google.nigori.common.NigoriMessages.AuthenticateRequest, com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder, com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder> authBuilder_;
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
+      public boolean hasAuth() {
+        return ((bitField0_ & 0x00000001) == 0x00000001);
+      }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.AuthenticateRequest getAuth() {
+        if (authBuilder_ == null) {
+          return auth_;
+        } else {
+          return authBuilder_.getMessage();
+        }
+      }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
+      public Builder setAuth(com.google.nigori.common.NigoriMessages.AuthenticateRequest value) {
+        if (authBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          auth_ = value;
+          onChanged();
+        } else {
+          authBuilder_.setMessage(value);
+        }
+        bitField0_ |= 0x00000001;
+        return this;
+      }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
+      public Builder setAuth(
+          com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder builderForValue) {
+        if (authBuilder_ == null) {
+          auth_ = builderForValue.build();
+          onChanged();
+        } else {
+          authBuilder_.setMessage(builderForValue.build());
+        }
+        bitField0_ |= 0x00000001;
+        return this;
+      }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
+      public Builder mergeAuth(com.google.nigori.common.NigoriMessages.AuthenticateRequest value) {
+        if (authBuilder_ == null) {
+          if (((bitField0_ & 0x00000001) == 0x00000001) &&
+              auth_ != com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance()) {
+            auth_ =
+              com.google.nigori.common.NigoriMessages.AuthenticateRequest.newBuilder(auth_).mergeFrom(value).buildPartial();
+          } else {
+            auth_ = value;
+          }
+          onChanged();
+        } else {
+          authBuilder_.mergeFrom(value);
+        }
+        bitField0_ |= 0x00000001;
+        return this;
+      }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
+      public Builder clearAuth() {
+        if (authBuilder_ == null) {
+          auth_ = com.google.nigori.common.NigoriMessages.AuthenticateRequest.getDefaultInstance();
+          onChanged();
+        } else {
+          authBuilder_.clear();
+        }
+        bitField0_ = (bitField0_ & ~0x00000001);
+        return this;
+      }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder getAuthBuilder() {
+        bitField0_ |= 0x00000001;
+        onChanged();
+        return getAuthFieldBuilder().getBuilder();
+      }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder getAuthOrBuilder() {
+        if (authBuilder_ != null) {
+          return authBuilder_.getMessageOrBuilder();
+        } else {
+          return auth_;
+        }
+      }
+      /**
+       * <code>required .nigori.AuthenticateRequest auth = 1;</code>
+       */
+      private com.google.protobuf.SingleFieldBuilder<
+          com.google.nigori.common.NigoriMessages.AuthenticateRequest, com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder, com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder> 
+          getAuthFieldBuilder() {
+        if (authBuilder_ == null) {
+          authBuilder_ = new com.google.protobuf.SingleFieldBuilder<
+              com.google.nigori.common.NigoriMessages.AuthenticateRequest, com.google.nigori.common.NigoriMessages.AuthenticateRequest.Builder, com.google.nigori.common.NigoriMessages.AuthenticateRequestOrBuilder>(
+                  auth_,
+                  getParentForChildren(),
+                  isClean());
+          auth_ = null;
+        }
+        return authBuilder_;
+      }
+
+      // repeated bytes nodes = 2;
+      private java.util.List<com.google.protobuf.ByteString> nodes_ = java.util.Collections.emptyList();
+      private void ensureNodesIsMutable() {
+        if (!((bitField0_ & 0x00000002) == 0x00000002)) {
+          nodes_ = new java.util.ArrayList<com.google.protobuf.ByteString>(nodes_);
+          bitField0_ |= 0x00000002;
+         }
+      }
+      /**
+       * <code>repeated bytes nodes = 2;</code>
+       */
+      public java.util.List<com.google.protobuf.ByteString>
+          getNodesList() {
+        return java.util.Collections.unmodifiableList(nodes_);
+      }
+      /**
+       * <code>repeated bytes nodes = 2;</code>
+       */
+      public int getNodesCount() {
+        return nodes_.size();
+      }
+      /**
+       * <code>repeated bytes nodes = 2;</code>
+       */
+      public com.google.protobuf.ByteString getNodes(int index) {
+        return nodes_.get(index);
+      }
+      /**
+       * <code>repeated bytes nodes = 2;</code>
+       */
+      public Builder setNodes(
+          int index, com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  ensureNodesIsMutable();
+        nodes_.set(index, value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated bytes nodes = 2;</code>
+       */
+      public Builder addNodes(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  ensureNodesIsMutable();
+        nodes_.add(value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated bytes nodes = 2;</code>
+       */
+      public Builder addAllNodes(
+          java.lang.Iterable<? extends com.google.protobuf.ByteString> values) {
+        ensureNodesIsMutable();
+        super.addAll(values, nodes_);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated bytes nodes = 2;</code>
+       */
+      public Builder clearNodes() {
+        nodes_ = java.util.Collections.emptyList();
+        bitField0_ = (bitField0_ & ~0x00000002);
+        onChanged();
+        return this;
+      }
+
+      // @@protoc_insertion_point(builder_scope:nigori.GetDigestsRequest)
+    }
+
+    static {
+      defaultInstance = new GetDigestsRequest(true);
+      defaultInstance.initFields();
+    }
+
+    // @@protoc_insertion_point(class_scope:nigori.GetDigestsRequest)
+  }
+
+  public interface DigestEntryOrBuilder
+      extends com.google.protobuf.MessageOrBuilder {
+
+    // required bytes key = 1;
+    /**
+     * <code>required bytes key = 1;</code>
+     */
+    boolean hasKey();
+    /**
+     * <code>required bytes key = 1;</code>
+     */
+    com.google.protobuf.ByteString getKey();
+
+    // required bytes digest = 2;
+    /**
+     * <code>required bytes digest = 2;</code>
+     */
+    boolean hasDigest();
+    /**
+     * <code>required bytes digest = 2;</code>
+     */
+    com.google.protobuf.ByteString getDigest();
+  }
+  /**
+   * Protobuf type {@code nigori.DigestEntry}
+   *
+   * <pre>
+   * The digest of a key and the set of its revisions
+   * </pre>
+   */
+  public static final class DigestEntry extends
+      com.google.protobuf.GeneratedMessage
+      implements DigestEntryOrBuilder {
+    // Use DigestEntry.newBuilder() to construct.
+    private DigestEntry(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
+      super(builder);
+      this.unknownFields = builder.getUnknownFields();
+    }
+    private DigestEntry(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
+    private static final DigestEntry defaultInstance;
+    public static DigestEntry getDefaultInstance() {
+      return defaultInstance;
+    }
+
+    public DigestEntry getDefaultInstanceForType() {
+      return defaultInstance;
+    }
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private DigestEntry(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 10: {
+              bitField0_ |= 0x00000001;
+              key_ = input.readBytes();
+              break;
+            }
+            case 18: {
+              bitField0_ |= 0x00000002;
+              digest_ = input.readBytes();
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_DigestEntry_descriptor;
+    }
+
+    protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_DigestEntry_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              com.google.nigori.common.NigoriMessages.DigestEntry.class, com.google.nigori.common.NigoriMessages.DigestEntry.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<DigestEntry> PARSER =
+        new com.google.protobuf.AbstractParser<DigestEntry>() {
+      public DigestEntry parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new DigestEntry(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<DigestEntry> getParserForType() {
+      return PARSER;
+    }
+
+    private int bitField0_;
+    // required bytes key = 1;
+    public static final int KEY_FIELD_NUMBER = 1;
+    private com.google.protobuf.ByteString key_;
+    /**
+     * <code>required bytes key = 1;</code>
+     */
+    public boolean hasKey() {
+      return ((bitField0_ & 0x00000001) == 0x00000001);
+    }
+    /**
+     * <code>required bytes key = 1;</code>
+     */
+    public com.google.protobuf.ByteString getKey() {
+      return key_;
+    }
+
+    // required bytes digest = 2;
+    public static final int DIGEST_FIELD_NUMBER = 2;
+    private com.google.protobuf.ByteString digest_;
+    /**
+     * <code>required bytes digest = 2;</code>
+     */
+    public boolean hasDigest() {
+      return ((bitField0_ & 0x00000002) == 0x00000002);
+    }
+    /**
+     * <code>required bytes digest = 2;</code>
+     */
+    public com.google.protobuf.ByteString getDigest() {
+      return digest_;
+    }
+
+    private void initFields() {
+      key_ = com.google.protobuf.ByteString.EMPTY;
+      digest_ = com.google.protobuf.ByteString.EMPTY;
+    }
+    private byte memoizedIsInitialized = -1;
+    public final boolean isInitialized() {
+      byte isInitialized = memoizedIsInitialized;
+      if (isInitialized != -1) return isInitialized == 1;
+
+      if (!hasKey()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      if (!hasDigest()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      memoizedIsInitialized = 1;
+      return true;
+    }
+
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        output.writeBytes(1, key_);
+      }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        output.writeBytes(2, digest_);
+      }
+      getUnknownFields().writeTo(output);
+    }
+
+    private int memoizedSerializedSize = -1;
+    public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+
+      size = 0;
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(1, key_);
+      }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(2, digest_);
+      }
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+
+    private static final long serialVersionUID = 0L;
+    @java.lang.Override
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
+      return super.writeReplace();
+    }
+
+    public static com.google.nigori.common.NigoriMessages.DigestEntry parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static com.google.nigori.common.NigoriMessages.DigestEntry parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.DigestEntry parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static com.google.nigori.common.NigoriMessages.DigestEntry parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.DigestEntry parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.DigestEntry parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.DigestEntry parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.DigestEntry parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.DigestEntry parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.DigestEntry parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+
+    public static Builder newBuilder() { return Builder.create(); }
+    public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(com.google.nigori.common.NigoriMessages.DigestEntry prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    public Builder toBuilder() { return newBuilder(this); }
+
+    @java.lang.Override
+    protected Builder newBuilderForType(
+        com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+      Builder builder = new Builder(parent);
+      return builder;
+    }
+    /**
+     * Protobuf type {@code nigori.DigestEntry}
+     *
+     * <pre>
+     * The digest of a key and the set of its revisions
+     * </pre>
+     */
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder>
+       implements com.google.nigori.common.NigoriMessages.DigestEntryOrBuilder {
+      public static final com.google.protobuf.Descriptors.Descriptor
+          getDescriptor() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_DigestEntry_descriptor;
+      }
+
+      protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+          internalGetFieldAccessorTable() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_DigestEntry_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                com.google.nigori.common.NigoriMessages.DigestEntry.class, com.google.nigori.common.NigoriMessages.DigestEntry.Builder.class);
+      }
+
+      // Construct using com.google.nigori.common.NigoriMessages.DigestEntry.newBuilder()
+      private Builder() {
+        maybeForceBuilderInitialization();
+      }
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+        super(parent);
+        maybeForceBuilderInitialization();
+      }
+      private void maybeForceBuilderInitialization() {
+        if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+        }
+      }
+      private static Builder create() {
+        return new Builder();
+      }
+
+      public Builder clear() {
+        super.clear();
+        key_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000001);
+        digest_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000002);
+        return this;
+      }
+
+      public Builder clone() {
+        return create().mergeFrom(buildPartial());
+      }
+
+      public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_DigestEntry_descriptor;
+      }
+
+      public com.google.nigori.common.NigoriMessages.DigestEntry getDefaultInstanceForType() {
+        return com.google.nigori.common.NigoriMessages.DigestEntry.getDefaultInstance();
+      }
+
+      public com.google.nigori.common.NigoriMessages.DigestEntry build() {
+        com.google.nigori.common.NigoriMessages.DigestEntry result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return result;
+      }
+
+      public com.google.nigori.common.NigoriMessages.DigestEntry buildPartial() {
+        com.google.nigori.common.NigoriMessages.DigestEntry result = new com.google.nigori.common.NigoriMessages.DigestEntry(this);
+        int from_bitField0_ = bitField0_;
+        int to_bitField0_ = 0;
+        if (((from_bitField0_ & 0x00000001) == 0x00000001)) {
+          to_bitField0_ |= 0x00000001;
+        }
+        result.key_ = key_;
+        if (((from_bitField0_ & 0x00000002) == 0x00000002)) {
+          to_bitField0_ |= 0x00000002;
+        }
+        result.digest_ = digest_;
+        result.bitField0_ = to_bitField0_;
+        onBuilt();
+        return result;
+      }
+
+      public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof com.google.nigori.common.NigoriMessages.DigestEntry) {
+          return mergeFrom((com.google.nigori.common.NigoriMessages.DigestEntry)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+
+      public Builder mergeFrom(com.google.nigori.common.NigoriMessages.DigestEntry other) {
+        if (other == com.google.nigori.common.NigoriMessages.DigestEntry.getDefaultInstance()) return this;
+        if (other.hasKey()) {
+          setKey(other.getKey());
+        }
+        if (other.hasDigest()) {
+          setDigest(other.getDigest());
+        }
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+
+      public final boolean isInitialized() {
+        if (!hasKey()) {
+          
+          return false;
+        }
+        if (!hasDigest()) {
+          
+          return false;
+        }
+        return true;
+      }
+
+      public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        com.google.nigori.common.NigoriMessages.DigestEntry parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (com.google.nigori.common.NigoriMessages.DigestEntry) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
+          }
+        }
+        return this;
+      }
+      private int bitField0_;
+
+      // required bytes key = 1;
+      private com.google.protobuf.ByteString key_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>required bytes key = 1;</code>
+       */
+      public boolean hasKey() {
+        return ((bitField0_ & 0x00000001) == 0x00000001);
+      }
+      /**
+       * <code>required bytes key = 1;</code>
+       */
+      public com.google.protobuf.ByteString getKey() {
+        return key_;
+      }
+      /**
+       * <code>required bytes key = 1;</code>
+       */
+      public Builder setKey(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000001;
+        key_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>required bytes key = 1;</code>
+       */
+      public Builder clearKey() {
+        bitField0_ = (bitField0_ & ~0x00000001);
+        key_ = getDefaultInstance().getKey();
+        onChanged();
+        return this;
+      }
+
+      // required bytes digest = 2;
+      private com.google.protobuf.ByteString digest_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>required bytes digest = 2;</code>
+       */
+      public boolean hasDigest() {
+        return ((bitField0_ & 0x00000002) == 0x00000002);
+      }
+      /**
+       * <code>required bytes digest = 2;</code>
+       */
+      public com.google.protobuf.ByteString getDigest() {
+        return digest_;
+      }
+      /**
+       * <code>required bytes digest = 2;</code>
+       */
+      public Builder setDigest(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000002;
+        digest_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>required bytes digest = 2;</code>
+       */
+      public Builder clearDigest() {
+        bitField0_ = (bitField0_ & ~0x00000002);
+        digest_ = getDefaultInstance().getDigest();
+        onChanged();
+        return this;
+      }
+
+      // @@protoc_insertion_point(builder_scope:nigori.DigestEntry)
+    }
+
+    static {
+      defaultInstance = new DigestEntry(true);
+      defaultInstance.initFields();
+    }
+
+    // @@protoc_insertion_point(class_scope:nigori.DigestEntry)
+  }
+
+  public interface DigestNodeOrBuilder
+      extends com.google.protobuf.MessageOrBuilder {
+
+    // required bytes node = 1;
+    /**
+     * <code>required bytes node = 1;</code>
+     */
+    boolean hasNode();
+    /**
+     * <code>required bytes node = 1;</code>
+     */
+    com.google.protobuf.ByteString getNode();
+
+    // required bytes digest = 2;
+    /**
+     * <code>required bytes digest = 2;</code>
+     */
+    boolean hasDigest();
+    /**
+     * <code>required bytes digest = 2;</code>
+     */
+    com.google.protobuf.ByteString getDigest();
+
+    // repeated bytes children = 3;
+    /**
+     * <code>repeated bytes children = 3;</code>
+     */
+    java.util.List<com.google.protobuf.ByteString> getChildrenList();
+    /**
+     * <code>repeated bytes children = 3;</code>
+     */
+    int getChildrenCount();
+    /**
+     * <code>repeated bytes children = 3;</code>
+     */
+    com.google.protobuf.ByteString getChildren(int index);
+
+    // repeated .nigori.DigestEntry entries = 4;
+    /**
+     * <code>repeated .nigori.DigestEntry entries = 4;</code>
+     */
+    java.util.List<com.google.nigori.common.NigoriMessages.DigestEntry> 
+        getEntriesList();
+    /**
+     * <code>repeated .nigori.DigestEntry entries = 4;</code>
+     */
+    com.google.nigori.common.NigoriMessages.DigestEntry getEntries(int index);
+    /**
+     * <code>repeated .nigori.DigestEntry entries = 4;</code>
+     */
+    int getEntriesCount();
+    /**
+     * <code>repeated .nigori.DigestEntry entries = 4;</code>
+     */
+    java.util.List<? extends com.google.nigori.common.NigoriMessages.DigestEntryOrBuilder> 
+        getEntriesOrBuilderList();
+    /**
+     * <code>repeated .nigori.DigestEntry entries = 4;</code>
+     */
+    com.google.nigori.common.NigoriMessages.DigestEntryOrBuilder getEntriesOrBuilder(
+        int index);
+  }
+  /**
+   * Protobuf type {@code nigori.DigestNode}
+   *
+   * <pre>
+   * A node of the hash tree, the digest of a node combines the digests of all the entries below it.
+   * Inner nodes have the digests of their children and leaves have their entries.
+   * </pre>
+   */
+  public static final class DigestNode extends
+      com.google.protobuf.GeneratedMessage
+      implements DigestNodeOrBuilder {
+    // Use DigestNode.newBuilder() to construct.
+    private DigestNode(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
+      super(builder);
+      this.unknownFields = builder.getUnknownFields();
+    }
+    private DigestNode(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
+    private static final DigestNode defaultInstance;
+    public static DigestNode getDefaultInstance() {
+      return defaultInstance;
+    }
+
+    public DigestNode getDefaultInstanceForType() {
+      return defaultInstance;
+    }
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private DigestNode(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 10: {
+              bitField0_ |= 0x00000001;
+              node_ = input.readBytes();
+              break;
+            }
+            case 18: {
+              bitField0_ |= 0x00000002;
+              digest_ = input.readBytes();
+              break;
+            }
+            case 26: {
+              if (!((mutable_bitField0_ & 0x00000004) == 0x00000004)) {
+                children_ = new java.util.ArrayList<com.google.protobuf.ByteString>();
+                mutable_bitField0_ |= 0x00000004;
+              }
+              children_.add(input.readBytes());
+              break;
+            }
+            case 34: {
+              if (!((mutable_bitField0_ & 0x00000008) == 0x00000008)) {
+                entries_ = new java.util.ArrayList<com.google.nigori.common.NigoriMessages.DigestEntry>();
+                mutable_bitField0_ |= 0x00000008;
+              }
+              entries_.add(input.readMessage(com.google.nigori.common.NigoriMessages.DigestEntry.PARSER, extensionRegistry));
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        if (((mutable_bitField0_ & 0x00000004) == 0x00000004)) {
+          children_ = java.util.Collections.unmodifiableList(children_);
+        }
+        if (((mutable_bitField0_ & 0x00000008) == 0x00000008)) {
+          entries_ = java.util.Collections.unmodifiableList(entries_);
+        }
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_DigestNode_descriptor;
+    }
+
+    protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_DigestNode_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              com.google.nigori.common.NigoriMessages.DigestNode.class, com.google.nigori.common.NigoriMessages.DigestNode.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<DigestNode> PARSER =
+        new com.google.protobuf.AbstractParser<DigestNode>() {
+      public DigestNode parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new DigestNode(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<DigestNode> getParserForType() {
+      return PARSER;
+    }
+
+    private int bitField0_;
+    // required bytes node = 1;
+    public static final int NODE_FIELD_NUMBER = 1;
+    private com.google.protobuf.ByteString node_;
+    /**
+     * <code>required bytes node = 1;</code>
+     */
+    public boolean hasNode() {
+      return ((bitField0_ & 0x00000001) == 0x00000001);
+    }
+    /**
+     * <code>required bytes node = 1;</code>
+     */
+    public com.google.protobuf.ByteString getNode() {
+      return node_;
+    }
+
+    // required bytes digest = 2;
+    public static final int DIGEST_FIELD_NUMBER = 2;
+    private com.google.protobuf.ByteString digest_;
+    /**
+     * <code>required bytes digest = 2;</code>
+     */
+    public boolean hasDigest() {
+      return ((bitField0_ & 0x00000002) == 0x00000002);
+    }
+    /**
+     * <code>required bytes digest = 2;</code>
+     */
+    public com.google.protobuf.ByteString getDigest() {
+      return digest_;
+    }
+
+    // repeated bytes children = 3;
+    public static final int CHILDREN_FIELD_NUMBER = 3;
+    private java.util.List<com.google.protobuf.ByteString> children_;
+    /**
+     * <code>repeated bytes children = 3;</code>
+     */
+    public java.util.List<com.google.protobuf.ByteString>
+        getChildrenList() {
+      return children_;
+    }
+    /**
+     * <code>repeated bytes children = 3;</code>
+     */
+    public int getChildrenCount() {
+      return children_.size();
+    }
+    /**
+     * <code>repeated bytes children = 3;</code>
+     */
+    public com.google.protobuf.ByteString getChildren(int index) {
+      return children_.get(index);
+    }
+
+    // repeated .nigori.DigestEntry entries = 4;
+    public static final int ENTRIES_FIELD_NUMBER = 4;
+    private java.util.List<com.google.nigori.common.NigoriMessages.DigestEntry> entries_;
+    /**
+     * <code>repeated .nigori.DigestEntry entries = 4;</code>
+     */
+    public java.util.List<com.google.nigori.common.NigoriMessages.DigestEntry> getEntriesList() {
+      return entries_;
+    }
+    /**
+     * <code>repeated .nigori.DigestEntry entries = 4;</code>
+     */
+    public java.util.List<? extends com.google.nigori.common.NigoriMessages.DigestEntryOrBuilder> 
+        getEntriesOrBuilderList() {
+      return entries_;
+    }
+    /**
+     * <code>repeated .nigori.DigestEntry entries = 4;</code>
+     */
+    public int getEntriesCount() {
+      return entries_.size();
+    }
+    /**
+     * <code>repeated .nigori.DigestEntry entries = 4;</code>
+     */
+    public com.google.nigori.common.NigoriMessages.DigestEntry getEntries(int index) {
+      return entries_.get(index);
+    }
+    /**
+     * <code>repeated .nigori.DigestEntry entries = 4;</code>
+     */
+    public com.google.nigori.common.NigoriMessages.DigestEntryOrBuilder getEntriesOrBuilder(
+        int index) {
+      return entries_.get(index);
+    }
+
+    private void initFields() {
+      node_ = com.google.protobuf.ByteString.EMPTY;
+      digest_ = com.google.protobuf.ByteString.EMPTY;
+      children_ = java.util.Collections.emptyList();
+      entries_ = java.util.Collections.emptyList();
+    }
+    private byte memoizedIsInitialized = -1;
+    public final boolean isInitialized() {
+      byte isInitialized = memoizedIsInitialized;
+      if (isInitialized != -1) return isInitialized == 1;
+
+      if (!hasNode()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      if (!hasDigest()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      for (int i = 0; i < getEntriesCount(); i++) {
+        if (!getEntries(i).isInitialized()) {
+          memoizedIsInitialized = 0;
+          return false;
+        }
+      }
+      memoizedIsInitialized = 1;
+      return true;
+    }
+
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        output.writeBytes(1, node_);
+      }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        output.writeBytes(2, digest_);
+      }
+      for (int i = 0; i < children_.size(); i++) {
+        output.writeBytes(3, children_.get(i));
+      }
+      for (int i = 0; i < entries_.size(); i++) {
+        output.writeMessage(4, entries_.get(i));
+      }
+      getUnknownFields().writeTo(output);
+    }
+
+    private int memoizedSerializedSize = -1;
+    public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+
+      size = 0;
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(1, node_);
+      }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(2, digest_);
+      }
+      {
+        int dataSize = 0;
+        for (int i = 0; i < children_.size(); i++) {
+          dataSize += com.google.protobuf.CodedOutputStream
+            .computeBytesSizeNoTag(children_.get(i));
+        }
+        size += dataSize;
+        size += 1 * getChildrenList().size();
+      }
+      for (int i = 0; i < entries_.size(); i++) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(4, entries_.get(i));
+      }
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+
+    private static final long serialVersionUID = 0L;
+    @java.lang.Override
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
+      return super.writeReplace();
+    }
+
+    public static com.google.nigori.common.NigoriMessages.DigestNode parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static com.google.nigori.common.NigoriMessages.DigestNode parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.DigestNode parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static com.google.nigori.common.NigoriMessages.DigestNode parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.DigestNode parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.DigestNode parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.DigestNode parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.DigestNode parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.DigestNode parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.DigestNode parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+
+    public static Builder newBuilder() { return Builder.create(); }
+    public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(com.google.nigori.common.NigoriMessages.DigestNode prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    public Builder toBuilder() { return newBuilder(this); }
+
+    @java.lang.Override
+    protected Builder newBuilderForType(
+        com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+      Builder builder = new Builder(parent);
+      return builder;
+    }
+    /**
+     * Protobuf type {@code nigori.DigestNode}
+     *
+     * <pre>
+     * A node of the hash tree, the digest of a node combines the digests of all the entries below it.
+     * Inner nodes have the digests of their children and leaves have their entries.
+     * </pre>
+     */
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder>
+       implements com.google.nigori.common.NigoriMessages.DigestNodeOrBuilder {
+      public static final com.google.protobuf.Descriptors.Descriptor
+          getDescriptor() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_DigestNode_descriptor;
+      }
+
+      protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+          internalGetFieldAccessorTable() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_DigestNode_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                com.google.nigori.common.NigoriMessages.DigestNode.class, com.google.nigori.common.NigoriMessages.DigestNode.Builder.class);
+      }
+
+      // Construct using com.google.nigori.common.NigoriMessages.DigestNode.newBuilder()
+      private Builder() {
+        maybeForceBuilderInitialization();
+      }
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+        super(parent);
+        maybeForceBuilderInitialization();
+      }
+      private void maybeForceBuilderInitialization() {
+        if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+          getEntriesFieldBuilder();
+        }
+      }
+      private static Builder create() {
+        return new Builder();
+      }
+
+      public Builder clear() {
+        super.clear();
+        node_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000001);
+        digest_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000002);
+        children_ = java.util.Collections.emptyList();
+        bitField0_ = (bitField0_ & ~0x00000004);
+        if (entriesBuilder_ == null) {
+          entries_ = java.util.Collections.emptyList();
+          bitField0_ = (bitField0_ & ~0x00000008);
+        } else {
+          entriesBuilder_.clear();
+        }
+        return this;
+      }
+
+      public Builder clone() {
+        return create().mergeFrom(buildPartial());
+      }
+
+      public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_DigestNode_descriptor;
+      }
+
+      public com.google.nigori.common.NigoriMessages.DigestNode getDefaultInstanceForType() {
+        return com.google.nigori.common.NigoriMessages.DigestNode.getDefaultInstance();
+      }
+
+      public com.google.nigori.common.NigoriMessages.DigestNode build() {
+        com.google.nigori.common.NigoriMessages.DigestNode result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return result;
+      }
+
+      public com.google.nigori.common.NigoriMessages.DigestNode buildPartial() {
+        com.google.nigori.common.NigoriMessages.DigestNode result = new com.google.nigori.common.NigoriMessages.DigestNode(this);
+        int from_bitField0_ = bitField0_;
+        int to_bitField0_ = 0;
+        if (((from_bitField0_ & 0x00000001) == 0x00000001)) {
+          to_bitField0_ |= 0x00000001;
+        }
+        result.node_ = node_;
+        if (((from_bitField0_ & 0x00000002) == 0x00000002)) {
+          to_bitField0_ |= 0x00000002;
+        }
+        result.digest_ = digest_;
+        if (((bitField0_ & 0x00000004) == 0x00000004)) {
+          children_ = java.util.Collections.unmodifiableList(children_);
+          bitField0_ = (bitField0_ & ~0x00000004);
+        }
+        result.children_ = children_;
+        if (entriesBuilder_ == null) {
+          if (((bitField0_ & 0x00000008) == 0x00000008)) {
+            entries_ = java.util.Collections.unmodifiableList(entries_);
+            bitField0_ = (bitField0_ & ~0x00000008);
+          }
+          result.entries_ = entries_;
+        } else {
+          result.entries_ = entriesBuilder_.build();
+        }
+        result.bitField0_ = to_bitField0_;
+        onBuilt();
+        return result;
+      }
+
+      public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof com.google.nigori.common.NigoriMessages.DigestNode) {
+          return mergeFrom((com.google.nigori.common.NigoriMessages.DigestNode)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+
+      public Builder mergeFrom(com.google.nigori.common.NigoriMessages.DigestNode other) {
+        if (other == com.google.nigori.common.NigoriMessages.DigestNode.getDefaultInstance()) return this;
+        if (other.hasNode()) {
+          setNode(other.getNode());
+        }
+        if (other.hasDigest()) {
+          setDigest(other.getDigest());
+        }
+        if (!other.children_.isEmpty()) {
+          if (children_.isEmpty()) {
+            children_ = other.children_;
+            bitField0_ = (bitField0_ & ~0x00000004);
+          } else {
+            ensureChildrenIsMutable();
+            children_.addAll(other.children_);
+          }
+          onChanged();
+        }
+        if (entriesBuilder_ == null) {
+          if (!other.entries_.isEmpty()) {
+            if (entries_.isEmpty()) {
+              entries_ = other.entries_;
+              bitField0_ = (bitField0_ & ~0x00000008);
+            } else {
+              ensureEntriesIsMutable();
+              entries_.addAll(other.entries_);
+            }
+            onChanged();
+          }
+        } else {
+          if (!other.entries_.isEmpty()) {
+            if (entriesBuilder_.isEmpty()) {
+              entriesBuilder_.dispose();
+              entriesBuilder_ = null;
+              entries_ = other.entries_;
+              bitField0_ = (bitField0_ & ~0x00000008);
+              entriesBuilder_ = 
+                com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders ?
+                   getEntriesFieldBuilder() : null;
+            } else {
+              entriesBuilder_.addAllMessages(other.entries_);
+            }
+          }
+        }
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+
+      public final boolean isInitialized() {
+        if (!hasNode()) {
+          
+          return false;
+        }
+        if (!hasDigest()) {
+          
+          return false;
+        }
+        for (int i = 0; i < getEntriesCount(); i++) {
+          if (!getEntries(i).isInitialized()) {
+            
+            return false;
+          }
+        }
+        return true;
+      }
+
+      public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        com.google.nigori.common.NigoriMessages.DigestNode parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (com.google.nigori.common.NigoriMessages.DigestNode) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
+          }
+        }
+        return this;
+      }
+      private int bitField0_;
+
+      // required bytes node = 1;
+      private com.google.protobuf.ByteString node_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>required bytes node = 1;</code>
+       */
+      public boolean hasNode() {
+        return ((bitField0_ & 0x00000001) == 0x00000001);
+      }
+      /**
+       * <code>required bytes node = 1;</code>
+       */
+      public com.google.protobuf.ByteString getNode() {
+        return node_;
+      }
+      /**
+       * <code>required bytes node = 1;</code>
+       */
+      public Builder setNode(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000001;
+        node_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>required bytes node = 1;</code>
+       */
+      public Builder clearNode() {
+        bitField0_ = (bitField0_ & ~0x00000001);
+        node_ = getDefaultInstance().getNode();
+        onChanged();
+        return this;
+      }
+
+      // required bytes digest = 2;
+      private com.google.protobuf.ByteString digest_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>required bytes digest = 2;</code>
+       */
+      public boolean hasDigest() {
+        return ((bitField0_ & 0x00000002) == 0x00000002);
+      }
+      /**
+       * <code>required bytes digest = 2;</code>
+       */
+      public com.google.protobuf.ByteString getDigest() {
+        return digest_;
+      }
+      /**
+       * <code>required bytes digest = 2;</code>
+       */
+      public Builder setDigest(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000002;
+        digest_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>required bytes digest = 2;</code>
+       */
+      public Builder clearDigest() {
+        bitField0_ = (bitField0_ & ~0x00000002);
+        digest_ = getDefaultInstance().getDigest();
+        onChanged();
+        return this;
+      }
+
+      // repeated bytes children = 3;
+      private java.util.List<com.google.protobuf.ByteString> children_ = java.util.Collections.emptyList();
+      private void ensureChildrenIsMutable() {
+        if (!((bitField0_ & 0x00000004) == 0x00000004)) {
+          children_ = new java.util.ArrayList<com.google.protobuf.ByteString>(children_);
+          bitField0_ |= 0x00000004;
+         }
+      }
+      /**
+       * <code>repeated bytes children = 3;</code>
+       */
+      public java.util.List<com.google.protobuf.ByteString>
+          getChildrenList() {
+        return java.util.Collections.unmodifiableList(children_);
+      }
+      /**
+       * <code>repeated bytes children = 3;</code>
+       */
+      public int getChildrenCount() {
+        return children_.size();
+      }
+      /**
+       * <code>repeated bytes children = 3;</code>
+       */
+      public com.google.protobuf.ByteString getChildren(int index) {
+        return children_.get(index);
+      }
+      /**
+       * <code>repeated bytes children = 3;</code>
+       */
+      public Builder setChildren(
+          int index, com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  ensureChildrenIsMutable();
+        children_.set(index, value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated bytes children = 3;</code>
+       */
+      public Builder addChildren(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  ensureChildrenIsMutable();
+        children_.add(value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated bytes children = 3;</code>
+       */
+      public Builder addAllChildren(
+          java.lang.Iterable<? extends com.google.protobuf.ByteString> values) {
+        ensureChildrenIsMutable();
+        super.addAll(values, children_);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated bytes children = 3;</code>
+       */
+      public Builder clearChildren() {
+        children_ = java.util.Collections.emptyList();
+        bitField0_ = (bitField0_ & ~0x00000004);
+        onChanged();
+        return this;
+      }
+
+      // repeated .nigori.DigestEntry entries = 4;
+      private java.util.List<com.google.nigori.common.NigoriMessages.DigestEntry> entries_ =
+        java.util.Collections.emptyList();
+      private void ensureEntriesIsMutable() {
+        if (!((bitField0_ & 0x00000008) == 0x00000008)) {
+          entries_ = new java.util.ArrayList<com.google.nigori.common.NigoriMessages.DigestEntry>(entries_);
+          bitField0_ |= 0x00000008;
+         }
+      }
+
+      private com.google.protobuf.RepeatedFieldBuilder<
+          com.google.nigori.common.NigoriMessages.DigestEntry, com.google.nigori.common.NigoriMessages.DigestEntry.Builder, com.google.nigori.common.NigoriMessages.DigestEntryOrBuilder> entriesBuilder_;
+
+      /**
+       * <code>repeated .nigori.DigestEntry entries = 4;</code>
+       */
+      public java.util.List<com.google.nigori.common.NigoriMessages.DigestEntry> getEntriesList() {
+        if (entriesBuilder_ == null) {
+          return java.util.Collections.unmodifiableList(entries_);
+        } else {
+          return entriesBuilder_.getMessageList();
+        }
+      }
+      /**
+       * <code>repeated .nigori.DigestEntry entries = 4;</code>
+       */
+      public int getEntriesCount() {
+        if (entriesBuilder_ == null) {
+          return entries_.size();
+        } else {
+          return entriesBuilder_.getCount();
+        }
+      }
+      /**
+       * <code>repeated .nigori.DigestEntry entries = 4;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.DigestEntry getEntries(int index) {
+        if (entriesBuilder_ == null) {
+          return entries_.get(index);
+        } else {
+          return entriesBuilder_.getMessage(index);
+        }
+      }
+      /**
+       * <code>repeated .nigori.DigestEntry entries = 4;</code>
+       */
+      public Builder setEntries(
+          int index, com.google.nigori.common.NigoriMessages.DigestEntry value) {
+        if (entriesBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureEntriesIsMutable();
+          entries_.set(index, value);
+          onChanged();
+        } else {
+          entriesBuilder_.setMessage(index, value);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.DigestEntry entries = 4;</code>
+       */
+      public Builder setEntries(
+          int index, com.google.nigori.common.NigoriMessages.DigestEntry.Builder builderForValue) {
+        if (entriesBuilder_ == null) {
+          ensureEntriesIsMutable();
+          entries_.set(index, builderForValue.build());
+          onChanged();
+        } else {
+          entriesBuilder_.setMessage(index, builderForValue.build());
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.DigestEntry entries = 4;</code>
+       */
+      public Builder addEntries(com.google.nigori.common.NigoriMessages.DigestEntry value) {
+        if (entriesBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureEntriesIsMutable();
+          entries_.add(value);
+          onChanged();
+        } else {
+          entriesBuilder_.addMessage(value);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.DigestEntry entries = 4;</code>
+       */
+      public Builder addEntries(
+          int index, com.google.nigori.common.NigoriMessages.DigestEntry value) {
+        if (entriesBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureEntriesIsMutable();
+          entries_.add(index, value);
+          onChanged();
+        } else {
+          entriesBuilder_.addMessage(index, value);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.DigestEntry entries = 4;</code>
+       */
+      public Builder addEntries(
+          com.google.nigori.common.NigoriMessages.DigestEntry.Builder builderForValue) {
+        if (entriesBuilder_ == null) {
+          ensureEntriesIsMutable();
+          entries_.add(builderForValue.build());
+          onChanged();
+        } else {
+          entriesBuilder_.addMessage(builderForValue.build());
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.DigestEntry entries = 4;</code>
+       */
+      public Builder addEntries(
+          int index, com.google.nigori.common.NigoriMessages.DigestEntry.Builder builderForValue) {
+        if (entriesBuilder_ == null) {
+          ensureEntriesIsMutable();
+          entries_.add(index, builderForValue.build());
+          onChanged();
+        } else {
+          entriesBuilder_.addMessage(index, builderForValue.build());
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.DigestEntry entries = 4;</code>
+       */
+      public Builder addAllEntries(
+          java.lang.Iterable<? extends com.google.nigori.common.NigoriMessages.DigestEntry> values) {
+        if (entriesBuilder_ == null) {
+          ensureEntriesIsMutable();
+          super.addAll(values, entries_);
+          onChanged();
+        } else {
+          entriesBuilder_.addAllMessages(values);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.DigestEntry entries = 4;</code>
+       */
+      public Builder clearEntries() {
+        if (entriesBuilder_ == null) {
+          entries_ = java.util.Collections.emptyList();
+          bitField0_ = (bitField0_ & ~0x00000008);
+          onChanged();
+        } else {
+          entriesBuilder_.clear();
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.DigestEntry entries = 4;</code>
+       */
+      public Builder removeEntries(int index) {
+        if (entriesBuilder_ == null) {
+          ensureEntriesIsMutable();
+          entries_.remove(index);
+          onChanged();
+        } else {
+          entriesBuilder_.remove(index);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.DigestEntry entries = 4;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.DigestEntry.Builder getEntriesBuilder(
+          int index) {
+        return getEntriesFieldBuilder().getBuilder(index);
+      }
+      /**
+       * <code>repeated .nigori.DigestEntry entries = 4;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.DigestEntryOrBuilder getEntriesOrBuilder(
+          int index) {
+        if (entriesBuilder_ == null) {
+          return entries_.get(index);  } else {
+          return entriesBuilder_.getMessageOrBuilder(index);
+        }
+      }
+      /**
+       * <code>repeated .nigori.DigestEntry entries = 4;</code>
+       */
+      public java.util.List<? extends com.google.nigori.common.NigoriMessages.DigestEntryOrBuilder> 
+           getEntriesOrBuilderList() {
+        if (entriesBuilder_ != null) {
+          return entriesBuilder_.getMessageOrBuilderList();
+        } else {
+          return java.util.Collections.unmodifiableList(entries_);
+        }
+      }
+      /**
+       * <code>repeated .nigori.DigestEntry entries = 4;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.DigestEntry.Builder addEntriesBuilder() {
+        return getEntriesFieldBuilder().addBuilder(
+            com.google.nigori.common.NigoriMessages.DigestEntry.getDefaultInstance());
+      }
+      /**
+       * <code>repeated .nigori.DigestEntry entries = 4;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.DigestEntry.Builder addEntriesBuilder(
+          int index) {
+        return getEntriesFieldBuilder().addBuilder(
+            index, com.google.nigori.common.NigoriMessages.DigestEntry.getDefaultInstance());
+      }
+      /**
+       * <code>repeated .nigori.DigestEntry entries = 4;</code>
+       */
+      public java.util.List<com.google.nigori.common.NigoriMessages.DigestEntry.Builder> 
+           getEntriesBuilderList() {
+        return getEntriesFieldBuilder().getBuilderList();
+      }
+      private com.google.protobuf.RepeatedFieldBuilder<
+          com.google.nigori.common.NigoriMessages.DigestEntry, com.google.nigori.common.NigoriMessages.DigestEntry.Builder, com.google.nigori.common.NigoriMessages.DigestEntryOrBuilder> 
+          getEntriesFieldBuilder() {
+        if (entriesBuilder_ == null) {
+          entriesBuilder_ = new com.google.protobuf.RepeatedFieldBuilder<
+              com.google.nigori.common.NigoriMessages.DigestEntry, com.google.nigori.common.NigoriMessages.DigestEntry.Builder, com.google.nigori.common.NigoriMessages.DigestEntryOrBuilder>(
+                  entries_,
+                  ((bitField0_ & 0x00000008) == 0x00000008),
+                  getParentForChildren(),
+                  isClean());
+          entries_ = null;
+        }
+        return entriesBuilder_;
+      }
+
+      // @@protoc_insertion_point(builder_scope:nigori.DigestNode)
+    }
+
+    static {
+      defaultInstance = new DigestNode(true);
+      defaultInstance.initFields();
+    }
+
+    // @@protoc_insertion_point(class_scope:nigori.DigestNode)
+  }
+
+  public interface GetDigestsResponseOrBuilder
+      extends com.google.protobuf.MessageOrBuilder {
+
+    // repeated .nigori.DigestNode nodes = 1;
+    /**
+     * <code>repeated .nigori.DigestNode nodes = 1;</code>
+     */
+    java.util.List<com.google.nigori.common.NigoriMessages.DigestNode> 
+        getNodesList();
+    /**
+     * <code>repeated .nigori.DigestNode nodes = 1;</code>
+     */
+    com.google.nigori.common.NigoriMessages.DigestNode getNodes(int index);
+    /**
+     * <code>repeated .nigori.DigestNode nodes = 1;</code>
+     */
+    int getNodesCount();
+    /**
+     * <code>repeated .nigori.DigestNode nodes = 1;</code>
+     */
+    java.util.List<? extends com.google.nigori.common.NigoriMessages.DigestNodeOrBuilder> 
+        getNodesOrBuilderList();
+    /**
+     * <code>repeated .nigori.DigestNode nodes = 1;</code>
+     */
+    com.google.nigori.common.NigoriMessages.DigestNodeOrBuilder getNodesOrBuilder(
+        int index);
+  }
+  /**
+   * Protobuf type {@code nigori.GetDigestsResponse}
+   *
+   * <pre>
+   * The nodes in the same order as they were requested
+   * </pre>
+   */
+  public static final class GetDigestsResponse extends
+      com.google.protobuf.GeneratedMessage
+      implements GetDigestsResponseOrBuilder {
+    // Use GetDigestsResponse.newBuilder() to construct.
+    private GetDigestsResponse(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
+      super(builder);
+      this.unknownFields = builder.getUnknownFields();
+    }
+    private GetDigestsResponse(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
+    private static final GetDigestsResponse defaultInstance;
+    public static GetDigestsResponse getDefaultInstance() {
+      return defaultInstance;
+    }
+
+    public GetDigestsResponse getDefaultInstanceForType() {
+      return defaultInstance;
+    }
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private GetDigestsResponse(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 10: {
+              if (!((mutable_bitField0_ & 0x00000001) == 0x00000001)) {
+                nodes_ = new java.util.ArrayList<com.google.nigori.common.NigoriMessages.DigestNode>();
+                mutable_bitField0_ |= 0x00000001;
+              }
+              nodes_.add(input.readMessage(com.google.nigori.common.NigoriMessages.DigestNode.PARSER, extensionRegistry));
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        if (((mutable_bitField0_ & 0x00000001) == 0x00000001)) {
+          nodes_ = java.util.Collections.unmodifiableList(nodes_);
+        }
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetDigestsResponse_descriptor;
+    }
+
+    protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetDigestsResponse_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              com.google.nigori.common.NigoriMessages.GetDigestsResponse.class, com.google.nigori.common.NigoriMessages.GetDigestsResponse.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<GetDigestsResponse> PARSER =
+        new com.google.protobuf.AbstractParser<GetDigestsResponse>() {
+      public GetDigestsResponse parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new GetDigestsResponse(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<GetDigestsResponse> getParserForType() {
+      return PARSER;
+    }
+
+    // repeated .nigori.DigestNode nodes = 1;
+    public static final int NODES_FIELD_NUMBER = 1;
+    private java.util.List<com.google.nigori.common.NigoriMessages.DigestNode> nodes_;
+    /**
+     * <code>repeated .nigori.DigestNode nodes = 1;</code>
+     */
+    public java.util.List<com.google.nigori.common.NigoriMessages.DigestNode> getNodesList() {
+      return nodes_;
+    }
+    /**
+     * <code>repeated .nigori.DigestNode nodes = 1;</code>
+     */
+    public java.util.List<? extends com.google.nigori.common.NigoriMessages.DigestNodeOrBuilder> 
+        getNodesOrBuilderList() {
+      return nodes_;
+    }
+    /**
+     * <code>repeated .nigori.DigestNode nodes = 1;</code>
+     */
+    public int getNodesCount() {
+      return nodes_.size();
+    }
+    /**
+     * <code>repeated .nigori.DigestNode nodes = 1;</code>
+     */
+    public com.google.nigori.common.NigoriMessages.DigestNode getNodes(int index) {
+      return nodes_.get(index);
+    }
+    /**
+     * <code>repeated .nigori.DigestNode nodes = 1;</code>
+     */
+    public com.google.nigori.common.NigoriMessages.DigestNodeOrBuilder getNodesOrBuilder(
+        int index) {
+      return nodes_.get(index);
+    }
+
+    private void initFields() {
+      nodes_ = java.util.Collections.emptyList();
+    }
+    private byte memoizedIsInitialized = -1;
+    public final boolean isInitialized() {
+      byte isInitialized = memoizedIsInitialized;
+      if (isInitialized != -1) return isInitialized == 1;
+
+      for (int i = 0; i < getNodesCount(); i++) {
+        if (!getNodes(i).isInitialized()) {
+          memoizedIsInitialized = 0;
+          return false;
+        }
+      }
+      memoizedIsInitialized = 1;
+      return true;
+    }
+
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      for (int i = 0; i < nodes_.size(); i++) {
+        output.writeMessage(1, nodes_.get(i));
+      }
+      getUnknownFields().writeTo(output);
+    }
+
+    private int memoizedSerializedSize = -1;
+    public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+
+      size = 0;
+      for (int i = 0; i < nodes_.size(); i++) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(1, nodes_.get(i));
+      }
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+
+    private static final long serialVersionUID = 0L;
+    @java.lang.Override
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
+      return super.writeReplace();
+    }
+
+    public static com.google.nigori.common.NigoriMessages.GetDigestsResponse parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetDigestsResponse parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetDigestsResponse parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetDigestsResponse parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetDigestsResponse parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetDigestsResponse parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetDigestsResponse parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetDigestsResponse parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetDigestsResponse parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static com.google.nigori.common.NigoriMessages.GetDigestsResponse parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+
+    public static Builder newBuilder() { return Builder.create(); }
+    public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(com.google.nigori.common.NigoriMessages.GetDigestsResponse prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    public Builder toBuilder() { return newBuilder(this); }
+
+    @java.lang.Override
+    protected Builder newBuilderForType(
+        com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+      Builder builder = new Builder(parent);
+      return builder;
+    }
+    /**
+     * Protobuf type {@code nigori.GetDigestsResponse}
+     *
+     * <pre>
+     * The nodes in the same order as they were requested
+     * </pre>
+     */
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder>
+       implements com.google.nigori.common.NigoriMessages.GetDigestsResponseOrBuilder {
+      public static final com.google.protobuf.Descriptors.Descriptor
+          getDescriptor() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetDigestsResponse_descriptor;
+      }
+
+      protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+          internalGetFieldAccessorTable() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetDigestsResponse_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                com.google.nigori.common.NigoriMessages.GetDigestsResponse.class, com.google.nigori.common.NigoriMessages.GetDigestsResponse.Builder.class);
+      }
+
+      // Construct using com.google.nigori.common.NigoriMessages.GetDigestsResponse.newBuilder()
+      private Builder() {
+        maybeForceBuilderInitialization();
+      }
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+        super(parent);
+        maybeForceBuilderInitialization();
+      }
+      private void maybeForceBuilderInitialization() {
+        if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+          getNodesFieldBuilder();
+        }
+      }
+      private static Builder create() {
+        return new Builder();
+      }
+
+      public Builder clear() {
+        super.clear();
+        if (nodesBuilder_ == null) {
+          nodes_ = java.util.Collections.emptyList();
+          bitField0_ = (bitField0_ & ~0x00000001);
+        } else {
+          nodesBuilder_.clear();
+        }
+        return this;
+      }
+
+      public Builder clone() {
+        return create().mergeFrom(buildPartial());
+      }
+
+      public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return com.google.nigori.common.NigoriMessages.internal_static_nigori_GetDigestsResponse_descriptor;
+      }
+
+      public com.google.nigori.common.NigoriMessages.GetDigestsResponse getDefaultInstanceForType() {
+        return com.google.nigori.common.NigoriMessages.GetDigestsResponse.getDefaultInstance();
+      }
+
+      public com.google.nigori.common.NigoriMessages.GetDigestsResponse build() {
+        com.google.nigori.common.NigoriMessages.GetDigestsResponse result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return result;
+      }
+
+      public com.google.nigori.common.NigoriMessages.GetDigestsResponse buildPartial() {
+        com.google.nigori.common.NigoriMessages.GetDigestsResponse result = new com.google.nigori.common.NigoriMessages.GetDigestsResponse(this);
+        int from_bitField0_ = bitField0_;
+        if (nodesBuilder_ == null) {
+          if (((bitField0_ & 0x00000001) == 0x00000001)) {
+            nodes_ = java.util.Collections.unmodifiableList(nodes_);
+            bitField0_ = (bitField0_ & ~0x00000001);
+          }
+          result.nodes_ = nodes_;
+        } else {
+          result.nodes_ = nodesBuilder_.build();
+        }
+        onBuilt();
+        return result;
+      }
+
+      public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof com.google.nigori.common.NigoriMessages.GetDigestsResponse) {
+          return mergeFrom((com.google.nigori.common.NigoriMessages.GetDigestsResponse)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+
+      public Builder mergeFrom(com.google.nigori.common.NigoriMessages.GetDigestsResponse other) {
+        if (other == com.google.nigori.common.NigoriMessages.GetDigestsResponse.getDefaultInstance()) return this;
+        if (nodesBuilder_ == null) {
+          if (!other.nodes_.isEmpty()) {
+            if (nodes_.isEmpty()) {
+              nodes_ = other.nodes_;
+              bitField0_ = (bitField0_ & ~0x00000001);
+            } else {
+              ensureNodesIsMutable();
+              nodes_.addAll(other.nodes_);
+            }
+            onChanged();
+          }
+        } else {
+          if (!other.nodes_.isEmpty()) {
+            if (nodesBuilder_.isEmpty()) {
+              nodesBuilder_.dispose();
+              nodesBuilder_ = null;
+              nodes_ = other.nodes_;
+              bitField0_ = (bitField0_ & ~0x00000001);
+              nodesBuilder_ = 
+                com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders ?
+                   getNodesFieldBuilder() : null;
+            } else {
+              nodesBuilder_.addAllMessages(other.nodes_);
+            }
+          }
+        }
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+
+      public final boolean isInitialized() {
+        for (int i = 0; i < getNodesCount(); i++) {
+          if (!getNodes(i).isInitialized()) {
+            
+            return false;
+          }
+        }
+        return true;
+      }
+
+      public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        com.google.nigori.common.NigoriMessages.GetDigestsResponse parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (com.google.nigori.common.NigoriMessages.GetDigestsResponse) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
+          }
+        }
+        return this;
+      }
+      private int bitField0_;
+
+      // repeated .nigori.DigestNode nodes = 1;
+      private java.util.List<com.google.nigori.common.NigoriMessages.DigestNode> nodes_ =
+        java.util.Collections.emptyList();
+      private void ensureNodesIsMutable() {
+        if (!((bitField0_ & 0x00000001) == 0x00000001)) {
+          nodes_ = new java.util.ArrayList<com.google.nigori.common.NigoriMessages.DigestNode>(nodes_);
+          bitField0_ |= 0x00000001;
+         }
+      }
+
+      private com.google.protobuf.RepeatedFieldBuilder<
+          com.google.nigori.common.NigoriMessages.DigestNode, com.google.nigori.common.NigoriMessages.DigestNode.Builder, com.google.nigori.common.NigoriMessages.DigestNodeOrBuilder> nodesBuilder_;
+
+      /**
+       * <code>repeated .nigori.DigestNode nodes = 1;</code>
+       */
+      public java.util.List<com.google.nigori.common.NigoriMessages.DigestNode> getNodesList() {
+        if (nodesBuilder_ == null) {
+          return java.util.Collections.unmodifiableList(nodes_);
+        } else {
+          return nodesBuilder_.getMessageList();
+        }
+      }
+      /**
+       * <code>repeated .nigori.DigestNode nodes = 1;</code>
+       */
+      public int getNodesCount() {
+        if (nodesBuilder_ == null) {
+          return nodes_.size();
+        } else {
+          return nodesBuilder_.getCount();
+        }
+      }
+      /**
+       * <code>repeated .nigori.DigestNode nodes = 1;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.DigestNode getNodes(int index) {
+        if (nodesBuilder_ == null) {
+          return nodes_.get(index);
+        } else {
+          return nodesBuilder_.getMessage(index);
+        }
+      }
+      /**
+       * <code>repeated .nigori.DigestNode nodes = 1;</code>
+       */
+      public Builder setNodes(
+          int index, com.google.nigori.common.NigoriMessages.DigestNode value) {
+        if (nodesBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureNodesIsMutable();
+          nodes_.set(index, value);
+          onChanged();
+        } else {
+          nodesBuilder_.setMessage(index, value);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.DigestNode nodes = 1;</code>
+       */
+      public Builder setNodes(
+          int index, com.google.nigori.common.NigoriMessages.DigestNode.Builder builderForValue) {
+        if (nodesBuilder_ == null) {
+          ensureNodesIsMutable();
+          nodes_.set(index, builderForValue.build());
+          onChanged();
+        } else {
+          nodesBuilder_.setMessage(index, builderForValue.build());
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.DigestNode nodes = 1;</code>
+       */
+      public Builder addNodes(com.google.nigori.common.NigoriMessages.DigestNode value) {
+        if (nodesBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureNodesIsMutable();
+          nodes_.add(value);
+          onChanged();
+        } else {
+          nodesBuilder_.addMessage(value);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.DigestNode nodes = 1;</code>
+       */
+      public Builder addNodes(
+          int index, com.google.nigori.common.NigoriMessages.DigestNode value) {
+        if (nodesBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensureNodesIsMutable();
+          nodes_.add(index, value);
+          onChanged();
+        } else {
+          nodesBuilder_.addMessage(index, value);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.DigestNode nodes = 1;</code>
+       */
+      public Builder addNodes(
+          com.google.nigori.common.NigoriMessages.DigestNode.Builder builderForValue) {
+        if (nodesBuilder_ == null) {
+          ensureNodesIsMutable();
+          nodes_.add(builderForValue.build());
+          onChanged();
+        } else {
+          nodesBuilder_.addMessage(builderForValue.build());
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.DigestNode nodes = 1;</code>
+       */
+      public Builder addNodes(
+          int index, com.google.nigori.common.NigoriMessages.DigestNode.Builder builderForValue) {
+        if (nodesBuilder_ == null) {
+          ensureNodesIsMutable();
+          nodes_.add(index, builderForValue.build());
+          onChanged();
+        } else {
+          nodesBuilder_.addMessage(index, builderForValue.build());
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.DigestNode nodes = 1;</code>
+       */
+      public Builder addAllNodes(
+          java.lang.Iterable<? extends com.google.nigori.common.NigoriMessages.DigestNode> values) {
+        if (nodesBuilder_ == null) {
+          ensureNodesIsMutable();
+          super.addAll(values, nodes_);
+          onChanged();
+        } else {
+          nodesBuilder_.addAllMessages(values);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.DigestNode nodes = 1;</code>
+       */
+      public Builder clearNodes() {
+        if (nodesBuilder_ == null) {
+          nodes_ = java.util.Collections.emptyList();
+          bitField0_ = (bitField0_ & ~0x00000001);
+          onChanged();
+        } else {
+          nodesBuilder_.clear();
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.DigestNode nodes = 1;</code>
+       */
+      public Builder removeNodes(int index) {
+        if (nodesBuilder_ == null) {
+          ensureNodesIsMutable();
+          nodes_.remove(index);
+          onChanged();
+        } else {
+          nodesBuilder_.remove(index);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .nigori.DigestNode nodes = 1;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.DigestNode.Builder getNodesBuilder(
+          int index) {
+        return getNodesFieldBuilder().getBuilder(index);
+      }
+      /**
+       * <code>repeated .nigori.DigestNode nodes = 1;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.DigestNodeOrBuilder getNodesOrBuilder(
+          int index) {
+        if (nodesBuilder_ == null) {
+          return nodes_.get(index);  } else {
+          return nodesBuilder_.getMessageOrBuilder(index);
+        }
+      }
+      /**
+       * <code>repeated .nigori.DigestNode nodes = 1;</code>
+       */
+      public java.util.List<? extends com.google.nigori.common.NigoriMessages.DigestNodeOrBuilder> 
+           getNodesOrBuilderList() {
+        if (nodesBuilder_ != null) {
+          return nodesBuilder_.getMessageOrBuilderList();
+        } else {
+          return java.util.Collections.unmodifiableList(nodes_);
+        }
+      }
+      /**
+       * <code>repeated .nigori.DigestNode nodes = 1;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.DigestNode.Builder addNodesBuilder() {
+        return getNodesFieldBuilder().addBuilder(
+            com.google.nigori.common.NigoriMessages.DigestNode.getDefaultInstance());
+      }
+      /**
+       * <code>repeated .nigori.DigestNode nodes = 1;</code>
+       */
+      public com.google.nigori.common.NigoriMessages.DigestNode.Builder addNodesBuilder(
+          int index) {
+        return getNodesFieldBuilder().addBuilder(
+            index, com.google.nigori.common.NigoriMessages.DigestNode.getDefaultInstance());
+      }
+      /**
+       * <code>repeated .nigori.DigestNode nodes = 1;</code>
+       */
+      public java.util.List<com.google.nigori.common.NigoriMessages.DigestNode.Builder> 
+           getNodesBuilderList() {
+        return getNodesFieldBuilder().getBuilderList();
+      }
+      private com.google.protobuf.RepeatedFieldBuilder<
+          com.google.nigori.common.NigoriMessages.DigestNode, com.google.nigori.common.NigoriMessages.DigestNode.Builder, com.google.nigori.common.NigoriMessages.DigestNodeOrBuilder> 
+          getNodesFieldBuilder() {
+        if (nodesBuilder_ == null) {
+          nodesBuilder_ = new com.google.protobuf.RepeatedFieldBuilder<
+              com.google.nigori.common.NigoriMessages.DigestNode, com.google.nigori.common.NigoriMessages.DigestNode.Builder, com.google.nigori.common.NigoriMessages.DigestNodeOrBuilder>(
+                  nodes_,
+                  ((bitField0_ & 0x00000001) == 0x00000001),
+                  getParentForChildren(),
+                  isClean());
+          nodes_ = null;
+        }
+        return nodesBuilder_;
+      }
+
+      // @@protoc_insertion_point(builder_scope:nigori.GetDigestsResponse)
+    }
+
+    static {
+      defaultInstance = new GetDigestsResponse(true);
+      defaultInstance.initFields();
+    }
+
+    // @@protoc_insertion_point(class_scope:nigori.GetDigestsResponse)
+  }
+
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_nigori_AuthenticateRequest_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_nigori_AuthenticateRequest_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_nigori_RegisterRequest_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_nigori_RegisterRequest_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_nigori_UnregisterRequest_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_nigori_UnregisterRequest_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_nigori_RevisionValue_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_nigori_RevisionValue_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_nigori_GetRequest_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_nigori_GetRequest_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_nigori_GetResponse_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_nigori_GetResponse_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_nigori_GetIndicesRequest_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_nigori_GetIndicesRequest_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_nigori_GetIndicesResponse_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_nigori_GetIndicesResponse_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_nigori_GetRevisionsRequest_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_nigori_GetRevisionsRequest_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_nigori_GetRevisionsResponse_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_nigori_GetRevisionsResponse_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_nigori_PutRequest_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_nigori_PutRequest_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_nigori_DeleteRequest_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_nigori_DeleteRequest_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_nigori_Operation_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_nigori_Operation_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_nigori_BatchRequest_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_nigori_BatchRequest_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_nigori_OperationResult_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_nigori_OperationResult_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_nigori_BatchResponse_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_nigori_BatchResponse_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_nigori_GetChangesRequest_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_nigori_GetChangesRequest_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_nigori_Change_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_nigori_Change_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_nigori_GetChangesResponse_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_nigori_GetChangesResponse_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_nigori_GetDigestsRequest_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_nigori_GetDigestsRequest_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_nigori_DigestEntry_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_nigori_DigestEntry_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_nigori_DigestNode_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_nigori_DigestNode_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_nigori_GetDigestsResponse_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_nigori_GetDigestsResponse_fieldAccessorTable;
+
+  public static com.google.protobuf.Descriptors.FileDescriptor
+      getDescriptor() {
+    return descriptor;
+  }
+  private static com.google.protobuf.Descriptors.FileDescriptor
+      descriptor;
+  static {
+    java.lang.String[] descriptorData = {
+      "\n$src/main/proto/nigori_messages.proto\022\006" +
+      "nigori\"Z\n\023AuthenticateRequest\022\022\n\npublic_" +
+      "key\030\001 \002(\014\022\013\n\003sig\030\002 \002(\014\022\r\n\005nonce\030\003 \002(\014\022\023\n" +
+      "\013server_name\030\004 \002(\t\"4\n\017RegisterRequest\022\022\n" +
+      "\npublic_key\030\001 \002(\014\022\r\n\005token\030\002 \002(\014\">\n\021Unre" +
+      "gisterRequest\022)\n\004auth\030\001 \002(\0132\033.nigori.Aut" +
+      "henticateRequest\"0\n\rRevisionValue\022\020\n\010rev" +
+      "ision\030\001 \002(\014\022\r\n\005value\030\002 \002(\014\"~\n\nGetRequest" +
+      "\022)\n\004auth\030\001 \002(\0132\033.nigori.AuthenticateRequ" +
+      "est\022\013\n\003key\030\002 \002(\014\022\020\n\010revision\030\003 \001(\014\022\023\n\013fi",
+      "ngerprint\030\004 \001(\014\022\021\n\trevisions\030\005 \003(\014\"o\n\013Ge" +
+      "tResponse\022(\n\trevisions\030\001 \003(\0132\025.nigori.Re" +
+      "visionValue\022\013\n\003key\030\002 \001(\014\022\023\n\013fingerprint\030" +
+      "\003 \001(\014\022\024\n\014not_modified\030\004 \001(\010\"]\n\021GetIndice" +
+      "sRequest\022)\n\004auth\030\001 \002(\0132\033.nigori.Authenti" +
+      "cateRequest\022\016\n\006cursor\030\002 \001(\014\022\r\n\005limit\030\003 \001" +
+      "(\005\"5\n\022GetIndicesResponse\022\017\n\007indices\030\001 \003(" +
+      "\014\022\016\n\006cursor\030\002 \001(\014\"\201\001\n\023GetRevisionsReques" +
+      "t\022)\n\004auth\030\001 \002(\0132\033.nigori.AuthenticateReq" +
+      "uest\022\013\n\003key\030\002 \002(\014\022\016\n\006cursor\030\003 \001(\014\022\r\n\005lim",
+      "it\030\004 \001(\005\022\023\n\013fingerprint\030\005 \001(\014\"q\n\024GetRevi" +
+      "sionsResponse\022\021\n\trevisions\030\001 \003(\014\022\013\n\003key\030" +
+      "\002 \001(\014\022\016\n\006cursor\030\003 \001(\014\022\023\n\013fingerprint\030\004 \001" +
+      "(\014\022\024\n\014not_modified\030\005 \001(\010\"e\n\nPutRequest\022)" +
+      "\n\004auth\030\001 \002(\0132\033.nigori.AuthenticateReques" +
+      "t\022\013\n\003key\030\002 \002(\014\022\020\n\010revision\030\003 \002(\014\022\r\n\005valu" +
+      "e\030\004 \002(\014\"Y\n\rDeleteRequest\022)\n\004auth\030\001 \002(\0132\033" +
+      ".nigori.AuthenticateRequest\022\013\n\003key\030\002 \002(\014" +
+      "\022\020\n\010revision\030\003 \001(\014\"G\n\tOperation\022\014\n\004type\030" +
+      "\001 \002(\t\022\013\n\003key\030\002 \002(\014\022\020\n\010revision\030\003 \001(\014\022\r\n\005",
+      "value\030\004 \001(\014\"`\n\014BatchRequest\022)\n\004auth\030\001 \002(" +
+      "\0132\033.nigori.AuthenticateRequest\022%\n\noperat" +
+      "ions\030\002 \003(\0132\021.nigori.Operation\"u\n\017Operati" +
+      "onResult\022\017\n\007success\030\001 \002(\010\022 \n\003get\030\002 \001(\0132\023" +
+      ".nigori.GetResponse\022/\n\trevisions\030\003 \001(\0132\034" +
+      ".nigori.GetRevisionsResponse\"9\n\rBatchRes" +
+      "ponse\022(\n\007results\030\001 \003(\0132\027.nigori.Operatio" +
+      "nResult\"j\n\021GetChangesRequest\022)\n\004auth\030\001 \002" +
+      "(\0132\033.nigori.AuthenticateRequest\022\r\n\005since" +
+      "\030\002 \002(\003\022\r\n\005limit\030\003 \001(\005\022\014\n\004wait\030\004 \001(\005\"8\n\006C",
+      "hange\022\013\n\003key\030\001 \002(\014\022\020\n\010sequence\030\002 \002(\003\022\017\n\007" +
+      "deleted\030\003 \001(\010\"G\n\022GetChangesResponse\022\037\n\007c" +
+      "hanges\030\001 \003(\0132\016.nigori.Change\022\020\n\010sequence" +
+      "\030\002 \002(\003\"M\n\021GetDigestsRequest\022)\n\004auth\030\001 \002(" +
+      "\0132\033.nigori.AuthenticateRequest\022\r\n\005nodes\030" +
+      "\002 \003(\014\"*\n\013DigestEntry\022\013\n\003key\030\001 \002(\014\022\016\n\006dig" +
+      "est\030\002 \002(\014\"b\n\nDigestNode\022\014\n\004node\030\001 \002(\014\022\016\n" +
+      "\006digest\030\002 \002(\014\022\020\n\010children\030\003 \003(\014\022$\n\007entri" +
+      "es\030\004 \003(\0132\023.nigori.DigestEntry\"7\n\022GetDige" +
+      "stsResponse\022!\n\005nodes\030\001 \003(\0132\022.nigori.Dige",
+      "stNodeB*\n\030com.google.nigori.commonB\016Nigo" +
+      "riMessages"
+    };
+    com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner assigner =
+      new com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner() {
+        public com.google.protobuf.ExtensionRegistry assignDescriptors(
+            com.google.protobuf.Descriptors.FileDescriptor root) {
+          descriptor = root;
+          internal_static_nigori_AuthenticateRequest_descriptor =
+            getDescriptor().getMessageTypes().get(0);
+          internal_static_nigori_AuthenticateRequest_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_nigori_AuthenticateRequest_descriptor,
+              new java.lang.String[] { "PublicKey", "Sig", "Nonce", "ServerName", });
+          internal_static_nigori_RegisterRequest_descriptor =
+            getDescriptor().getMessageTypes().get(1);
+          internal_static_nigori_RegisterRequest_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_nigori_RegisterRequest_descriptor,
+              new java.lang.String[] { "PublicKey", "Token", });
+          internal_static_nigori_UnregisterRequest_descriptor =
+            getDescriptor().getMessageTypes().get(2);
+          internal_static_nigori_UnregisterRequest_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_nigori_UnregisterRequest_descriptor,
+              new java.lang.String[] { "Auth", });
+          internal_static_nigori_RevisionValue_descriptor =
+            getDescriptor().getMessageTypes().get(3);
+          internal_static_nigori_RevisionValue_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_nigori_RevisionValue_descriptor,
+              new java.lang.String[] { "Revision", "Value", });
+          internal_static_nigori_GetRequest_descriptor =
+            getDescriptor().getMessageTypes().get(4);
+          internal_static_nigori_GetRequest_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_nigori_GetRequest_descriptor,
+              new java.lang.String[] { "Auth", "Key", "Revision", "Fingerprint", "Revisions", });
+          internal_static_nigori_GetResponse_descriptor =
+            getDescriptor().getMessageTypes().get(5);
+          internal_static_nigori_GetResponse_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_nigori_GetResponse_descriptor,
+              new java.lang.String[] { "Revisions", "Key", "Fingerprint", "NotModified", });
+          internal_static_nigori_GetIndicesRequest_descriptor =
+            getDescriptor().getMessageTypes().get(6);
+          internal_static_nigori_GetIndicesRequest_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_nigori_GetIndicesRequest_descriptor,
+              new java.lang.String[] { "Auth", "Cursor", "Limit", });
+          internal_static_nigori_GetIndicesResponse_descriptor =
+            getDescriptor().getMessageTypes().get(7);
+          internal_static_nigori_GetIndicesResponse_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_nigori_GetIndicesResponse_descriptor,
+              new java.lang.String[] { "Indices", "Cursor", });
+          internal_static_nigori_GetRevisionsRequest_descriptor =
+            getDescriptor().getMessageTypes().get(8);
+          internal_static_nigori_GetRevisionsRequest_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_nigori_GetRevisionsRequest_descriptor,
+              new java.lang.String[] { "Auth", "Key", "Cursor", "Limit", "Fingerprint", });
+          internal_static_nigori_GetRevisionsResponse_descriptor =
+            getDescriptor().getMessageTypes().get(9);
+          internal_static_nigori_GetRevisionsResponse_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_nigori_GetRevisionsResponse_descriptor,
+              new java.lang.String[] { "Revisions", "Key", "Cursor", "Fingerprint", "NotModified", });
+          internal_static_nigori_PutRequest_descriptor =
+            getDescriptor().getMessageTypes().get(10);
+          internal_static_nigori_PutRequest_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_nigori_PutRequest_descriptor,
+              new java.lang.String[] { "Auth", "Key", "Revision", "Value", });
+          internal_static_nigori_DeleteRequest_descriptor =
+            getDescriptor().getMessageTypes().get(11);
+          internal_static_nigori_DeleteRequest_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_nigori_DeleteRequest_descriptor,
+              new java.lang.String[] { "Auth", "Key", "Revision", });
+          internal_static_nigori_Operation_descriptor =
+            getDescriptor().getMessageTypes().get(12);
+          internal_static_nigori_Operation_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_nigori_Operation_descriptor,
+              new java.lang.String[] { "Type", "Key", "Revision", "Value", });
+          internal_static_nigori_BatchRequest_descriptor =
+            getDescriptor().getMessageTypes().get(13);
+          internal_static_nigori_BatchRequest_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_nigori_BatchRequest_descriptor,
+              new java.lang.String[] { "Auth", "Operations", });
+          internal_static_nigori_OperationResult_descriptor =
+            getDescriptor().getMessageTypes().get(14);
+          internal_static_nigori_OperationResult_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_nigori_OperationResult_descriptor,
+              new java.lang.String[] { "Success", "Get", "Revisions", });
+          internal_static_nigori_BatchResponse_descriptor =
+            getDescriptor().getMessageTypes().get(15);
+          internal_static_nigori_BatchResponse_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_nigori_BatchResponse_descriptor,
+              new java.lang.String[] { "Results", });
+          internal_static_nigori_GetChangesRequest_descriptor =
+            getDescriptor().getMessageTypes().get(16);
+          internal_static_nigori_GetChangesRequest_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_nigori_GetChangesRequest_descriptor,
+              new java.lang.String[] { "Auth", "Since", "Limit", "Wait", });
+          internal_static_nigori_Change_descriptor =
+            getDescriptor().getMessageTypes().get(17);
+          internal_static_nigori_Change_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_nigori_Change_descriptor,
+              new java.lang.String[] { "Key", "Sequence", "Deleted", });
+          internal_static_nigori_GetChangesResponse_descriptor =
+            getDescriptor().getMessageTypes().get(18);
+          internal_static_nigori_GetChangesResponse_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_nigori_GetChangesResponse_descriptor,
+              new java.lang.String[] { "Changes", "Sequence", });
+          internal_static_nigori_GetDigestsRequest_descriptor =
+            getDescriptor().getMessageTypes().get(19);
+          internal_static_nigori_GetDigestsRequest_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_nigori_GetDigestsRequest_descriptor,
+              new java.lang.String[] { "Auth", "Nodes", });
+          internal_static_nigori_DigestEntry_descriptor =
+            getDescriptor().getMessageTypes().get(20);
+          internal_static_nigori_DigestEntry_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_nigori_DigestEntry_descriptor,
+              new java.lang.String[] { "Key", "Digest", });
+          internal_static_nigori_DigestNode_descriptor =
+            getDescriptor().getMessageTypes().get(21);
+          internal_static_nigori_DigestNode_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_nigori_DigestNode_descriptor,
+              new java.lang.String[] { "Node", "Digest", "Children", "Entries", });
+          internal_static_nigori_GetDigestsResponse_descriptor =
+            getDescriptor().getMessageTypes().get(22);
+          internal_static_nigori_GetDigestsResponse_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_nigori_GetDigestsResponse_descriptor,
+              new java.lang.String[] { "Nodes", });
+          return null;
         }
       };
     com.google.protobuf.Descriptors.FileDescriptor
@@ -6232,6 +17344,6 @@ public final class NigoriMessages {
         new com.google.protobuf.Descriptors.FileDescriptor[] {
         }, assigner);
   }
-  
+
   // @@protoc_insertion_point(outer_class_scope)
 }
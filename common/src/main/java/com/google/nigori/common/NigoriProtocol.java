@@ -16,7 +16,13 @@ package com.google.nigori.common;
 import java.io.IOException;
 
 import com.google.nigori.common.NigoriMessages.AuthenticateRequest;
+import com.google.nigori.common.NigoriMessages.BatchRequest;
+import com.google.nigori.common.NigoriMessages.BatchResponse;
 import com.google.nigori.common.NigoriMessages.DeleteRequest;
+import com.google.nigori.common.NigoriMessages.GetChangesRequest;
+import com.google.nigori.common.NigoriMessages.GetChangesResponse;
+import com.google.nigori.common.NigoriMessages.GetDigestsRequest;
+import com.google.nigori.common.NigoriMessages.GetDigestsResponse;
 import com.google.nigori.common.NigoriMessages.GetIndicesRequest;
 import com.google.nigori.common.NigoriMessages.GetIndicesResponse;
 import com.google.nigori.common.NigoriMessages.GetRequest;
@@ -57,4 +63,39 @@ public interface NigoriProtocol {
   boolean put(PutRequest request) throws IOException, UnauthorisedException;
 
   boolean delete(DeleteRequest request) throws IOException, UnauthorisedException, NotFoundException;
+
+  /**
+   * Carry out several operations with only one authentication, the operations are done in order.
+   * 
+   * @param request
+   * @return a result for each of the operations in the request, in the same order
+   * @throws IOException
+   * @throws UnauthorisedException
+   */
+  BatchResponse batch(BatchRequest request) throws IOException, UnauthorisedException;
+
+  /**
+   * Get the keys which have changed since an earlier point in the user's change sequence, so that
+   * a client which has already seen everything up to that point only needs to look at those.
+   * 
+   * @param request
+   * @return the changes after the requested sequence number, at most one for each key
+   * @throws IOException
+   * @throws UnauthorisedException
+   */
+  GetChangesResponse getChanges(GetChangesRequest request) throws IOException,
+      UnauthorisedException;
+
+  /**
+   * Get nodes of the hash tree over the user's keys and their revisions, so that two stores can find
+   * where they differ by only descending into the subtrees whose digests are different.
+   * 
+   * @param request
+   * @return the requested nodes
+   * @throws IOException
+   * @throws NotFoundException if one of the nodes is not in the tree
+   * @throws UnauthorisedException
+   */
+  GetDigestsResponse getDigests(GetDigestsRequest request) throws IOException, NotFoundException,
+      UnauthorisedException;
 }
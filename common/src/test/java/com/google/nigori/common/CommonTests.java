@@ -23,6 +23,7 @@ import org.junit.runners.Suite;
  * 
  */
 @RunWith(Suite.class)
-@Suite.SuiteClasses({NonceTest.class, DSATest.class, UtilTest.class})
+@Suite.SuiteClasses({NonceTest.class, DSATest.class, UtilTest.class,
+    MessageLibraryTest.class, ContentEncodingTest.class})
 public class CommonTests {
 }
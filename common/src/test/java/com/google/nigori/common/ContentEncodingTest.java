@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.common;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.nigori.common.ContentEncoding.ThresholdOutputStream;
+
+public class ContentEncodingTest {
+
+  private static byte[] compressible(int length) {
+    byte[] data = new byte[length];
+    for (int i = 0; i < length; ++i) {
+      data[i] = (byte) ('a' + i % 7);
+    }
+    return data;
+  }
+
+  private static byte[] read(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1024];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    in.close();
+    return out.toByteArray();
+  }
+
+  @Test
+  public void negotiate() {
+    assertNull(ContentEncoding.negotiate(null));
+    assertNull(ContentEncoding.negotiate(""));
+    assertNull(ContentEncoding.negotiate("identity"));
+    assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("gzip"));
+    assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("deflate, GZIP"));
+    assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("*"));
+    assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("deflate"));
+    assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0, deflate;q=0.5"));
+    assertNull(ContentEncoding.negotiate("gzip; q=0, deflate;q=0.0"));
+    assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate(ContentEncoding.ACCEPTED));
+  }
+
+  @Test
+  public void isSupported() {
+    assertTrue(ContentEncoding.isSupported(null));
+    assertTrue(ContentEncoding.isSupported("identity"));
+    assertTrue(ContentEncoding.isSupported("gzip"));
+    assertTrue(ContentEncoding.isSupported("Deflate"));
+    assertFalse(ContentEncoding.isSupported("br"));
+  }
+
+  @Test
+  public void roundTrip() throws IOException {
+    byte[] data = compressible(10000);
+    for (String encoding : new String[] {ContentEncoding.GZIP, ContentEncoding.DEFLATE}) {
+      byte[] encoded = ContentEncoding.encode(encoding, data);
+      assertTrue(encoded.length < data.length / 10);
+      assertArrayEquals(data, read(ContentEncoding.decode(encoding, new ByteArrayInputStream(
+          encoded))));
+    }
+    assertArrayEquals(data, read(ContentEncoding.decode(null, new ByteArrayInputStream(data))));
+  }
+
+  @Test(expected = IOException.class)
+  public void decodeUnsupported() throws IOException {
+    ContentEncoding.decode("br", new ByteArrayInputStream(new byte[0]));
+  }
+
+  private static class Recorder extends ThresholdOutputStream {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    String encoding = "unopened";
+    int length = -2;
+
+    Recorder(String encoding) {
+      super(encoding, 1024);
+    }
+
+    @Override
+    protected OutputStream open(String encoding, int length) {
+      this.encoding = encoding;
+      this.length = length;
+      return out;
+    }
+  }
+
+  @Test
+  public void thresholdSmall() throws IOException {
+    byte[] data = compressible(1000);
+    Recorder recorder = new Recorder(ContentEncoding.GZIP);
+    recorder.write(data, 0, 500);
+    recorder.flush();
+    assertEquals("unopened", recorder.encoding);
+    recorder.write(data, 500, 500);
+    recorder.close();
+    assertFalse(recorder.isCompressed());
+    assertNull(recorder.encoding);
+    assertEquals(1000, recorder.length);
+    assertArrayEquals(data, recorder.out.toByteArray());
+  }
+
+  @Test
+  public void thresholdLarge() throws IOException {
+    byte[] data = new byte[100000];
+    new Random(1).nextBytes(data);
+    System.arraycopy(compressible(50000), 0, data, 0, 50000);
+    Recorder recorder = new Recorder(ContentEncoding.GZIP);
+    for (int i = 0; i < data.length; i += 100) {
+      recorder.write(data, i, 100);
+    }
+    assertTrue(recorder.isCompressed());
+    recorder.close();
+    assertEquals(ContentEncoding.GZIP, recorder.encoding);
+    assertEquals(-1, recorder.length);
+    byte[] encoded = recorder.out.toByteArray();
+    assertTrue(encoded.length < data.length);
+    assertArrayEquals(data, read(ContentEncoding.decode(ContentEncoding.GZIP,
+        new ByteArrayInputStream(encoded))));
+  }
+
+  @Test
+  public void thresholdNoEncoding() throws IOException {
+    byte[] data = compressible(5000);
+    Recorder recorder = new Recorder(null);
+    recorder.write(data);
+    recorder.close();
+    assertFalse(recorder.isCompressed());
+    assertNull(recorder.encoding);
+    assertArrayEquals(data, recorder.out.toByteArray());
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.common;
+
+import static com.google.nigori.common.MessageLibrary.toBytes;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.google.nigori.common.MessageLibrary.JsonConversionException;
+import com.google.nigori.common.NigoriMessages.BatchRequest;
+import com.google.nigori.common.NigoriMessages.DigestEntry;
+import com.google.nigori.common.NigoriMessages.DigestNode;
+import com.google.nigori.common.NigoriMessages.GetChangesRequest;
+import com.google.nigori.common.NigoriMessages.GetChangesResponse;
+import com.google.nigori.common.NigoriMessages.GetDigestsRequest;
+import com.google.nigori.common.NigoriMessages.GetDigestsResponse;
+import com.google.nigori.common.NigoriMessages.GetIndicesResponse;
+import com.google.nigori.common.NigoriMessages.GetRequest;
+import com.google.nigori.common.NigoriMessages.GetResponse;
+import com.google.nigori.common.NigoriMessages.GetRevisionsRequest;
+import com.google.nigori.common.NigoriMessages.GetRevisionsResponse;
+import com.google.nigori.common.NigoriMessages.PutRequest;
+import com.google.protobuf.ByteString;
+
+public class MessageLibraryTest {
+
+  @Test
+  public void putRoundTrip() throws NigoriCryptographyException, JsonConversionException,
+      NoSuchAlgorithmException {
+    DSASign signer = new DSASign(new byte[] {1, 2, 3, 4});
+    PutRequest put =
+        MessageLibrary.putRequestAsProtobuf("server", signer, toBytes("index"), toBytes("rev"),
+            new byte[] {0, -1, 2, -3});
+    String json = MessageLibrary.toJson(put);
+    assertFalse("Should not be pretty printed", json.contains("\n"));
+    assertEquals(put, MessageLibrary.putRequestFromJson(json));
+  }
+
+  @Test
+  public void responsesRoundTrip() throws JsonConversionException {
+    GetResponse get =
+        MessageLibrary.getResponseAsProtobuf(Arrays.asList(new RevValue(toBytes("a"),
+            toBytes("b")), new RevValue(toBytes("c"), new byte[0])));
+    assertEquals(get, MessageLibrary.getResponseFromJson(MessageLibrary.toJson(get)));
+
+    GetIndicesResponse empty = GetIndicesResponse.newBuilder().build();
+    assertEquals("{}", MessageLibrary.toJson(empty));
+    assertEquals(empty, MessageLibrary.getIndicesResponseFromJson("{}"));
+  }
+
+  @Test
+  public void batchRoundTrip() throws NigoriCryptographyException, JsonConversionException,
+      NoSuchAlgorithmException {
+    DSASign signer = new DSASign(new byte[] {1, 2, 3, 4});
+    BatchRequest batch =
+        MessageLibrary.batchRequestAsProtobuf("server", signer, Arrays.asList(MessageLibrary
+            .operationAsProtobuf(MessageLibrary.REQUEST_PUT, toBytes("a"), toBytes("b"),
+                toBytes("c")), MessageLibrary.operationAsProtobuf(MessageLibrary.REQUEST_GET,
+            toBytes("a"), null, null)));
+    assertEquals(batch, MessageLibrary.batchRequestFromJson(MessageLibrary.toJson(batch)));
+  }
+
+  @Test
+  public void changesRoundTrip() throws NigoriCryptographyException, JsonConversionException,
+      NoSuchAlgorithmException {
+    DSASign signer = new DSASign(new byte[] {1, 2, 3, 4});
+    GetChangesRequest request =
+        MessageLibrary.getChangesRequestAsProtobuf("server", signer, Long.MAX_VALUE - 1, 10);
+    assertEquals(request, MessageLibrary.getChangesRequestFromJson(MessageLibrary.toJson(request)));
+    request = MessageLibrary.getChangesRequestAsProtobuf("server", signer, 5, 10, 1000);
+    assertEquals(request, MessageLibrary.getChangesRequestFromJson(MessageLibrary.toJson(request)));
+    GetChangesResponse response =
+        MessageLibrary.getChangesResponseAsProtobuf(Arrays.asList(MessageLibrary.changeAsProtobuf(
+            toBytes("a"), 3, false), MessageLibrary.changeAsProtobuf(toBytes("b"), 4, true)), 4);
+    assertEquals(response, MessageLibrary.getChangesResponseFromJson(MessageLibrary
+        .toJson(response)));
+  }
+
+  @Test
+  public void digestsRoundTrip() throws NigoriCryptographyException, JsonConversionException,
+      NoSuchAlgorithmException {
+    DSASign signer = new DSASign(new byte[] {1, 2, 3, 4});
+    GetDigestsRequest request =
+        MessageLibrary.getDigestsRequestAsProtobuf("server", signer, Arrays.asList(ByteString.EMPTY,
+            ByteString.copyFrom(new byte[] {15, 0})));
+    assertEquals(request, MessageLibrary.getDigestsRequestFromJson(MessageLibrary.toJson(request)));
+    GetDigestsResponse response =
+        GetDigestsResponse.newBuilder().addNodes(
+            DigestNode.newBuilder().setNode(ByteString.EMPTY).setDigest(
+                ByteString.copyFrom(toBytes("root"))).addChildren(ByteString.copyFrom(toBytes("a")))
+                .addChildren(ByteString.copyFrom(toBytes("b")))).addNodes(
+            DigestNode.newBuilder().setNode(ByteString.copyFrom(new byte[] {15, 0})).setDigest(
+                ByteString.copyFrom(toBytes("leaf"))).addEntries(
+                DigestEntry.newBuilder().setKey(ByteString.copyFrom(toBytes("key"))).setDigest(
+                    ByteString.copyFrom(toBytes("digest"))))).build();
+    assertEquals(response, MessageLibrary.getDigestsResponseFromJson(MessageLibrary
+        .toJson(response)));
+  }
+
+  @Test
+  public void fingerprintRoundTrip() throws NigoriCryptographyException, JsonConversionException,
+      NoSuchAlgorithmException {
+    DSASign signer = new DSASign(new byte[] {1, 2, 3, 4});
+    byte[] fingerprint =
+        MessageLibrary.revisionsFingerprint(Arrays.asList(toBytes("b"), toBytes("a")));
+    assertArrayEquals(fingerprint, MessageLibrary.revisionsFingerprint(Arrays.asList(toBytes("a"),
+        toBytes("b"))));
+    GetRequest get =
+        MessageLibrary.getRequestAsProtobuf("server", signer, toBytes("key"), null, fingerprint);
+    assertEquals(get, MessageLibrary.getRequestFromJson(MessageLibrary.toJson(get)));
+    GetResponse notModified = MessageLibrary.getResponseNotModifiedAsProtobuf(fingerprint);
+    assertEquals(notModified, MessageLibrary.getResponseFromJson(MessageLibrary
+        .toJson(notModified)));
+    GetRevisionsRequest revisions =
+        MessageLibrary.getRevisionsRequestAsProtobuf("server", signer, toBytes("key"), null, 10,
+            fingerprint);
+    assertEquals(revisions, MessageLibrary.getRevisionsRequestFromJson(MessageLibrary
+        .toJson(revisions)));
+    GetRevisionsResponse revisionsResponse =
+        MessageLibrary.getRevisionsResponseAsProtobuf(Arrays.asList(toBytes("a")), null,
+            fingerprint);
+    assertEquals(revisionsResponse, MessageLibrary.getRevisionsResponseFromJson(MessageLibrary
+        .toJson(revisionsResponse)));
+  }
+
+  /**
+   * What the previous reflective Gson adapter produced, pretty printed with = escaped
+   */
+  @Test
+  public void readsOldFormat() throws JsonConversionException {
+    String json =
+        "{\n  \"revisions\": [\n    {\n      \"revision\": \"YQ\\u003d\\u003d\",\n"
+            + "      \"value\": \"Yg\\u003d\\u003d\"\n    }\n  ],\n  \"unknown\": 1\n}";
+    GetResponse get = MessageLibrary.getResponseFromJson(json);
+    assertEquals(1, get.getRevisionsCount());
+    assertArrayEquals(toBytes("a"), get.getRevisions(0).getRevision().toByteArray());
+    assertEquals(ByteString.copyFrom(toBytes("b")), get.getRevisions(0).getValue());
+  }
+
+  @Test(expected = JsonConversionException.class)
+  public void missingRequiredField() throws JsonConversionException {
+    MessageLibrary.putRequestFromJson("{\"key\": \"YQ==\"}");
+  }
+
+  @Test(expected = JsonConversionException.class)
+  public void invalidSyntax() throws JsonConversionException {
+    MessageLibrary.getIndicesResponseFromJson("{\"indices\": [");
+  }
+
+  @Test(expected = JsonConversionException.class)
+  public void invalidBase64() throws JsonConversionException {
+    MessageLibrary.getIndicesResponseFromJson("{\"indices\": [\"!!\"]}");
+  }
+}
@@ -17,27 +17,49 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.jdo.JDOException;
 import javax.jdo.JDOHelper;
 import javax.jdo.JDOObjectNotFoundException;
 import javax.jdo.PersistenceManager;
 import javax.jdo.PersistenceManagerFactory;
 
+import org.apache.commons.codec.binary.Base64;
+
 import com.google.appengine.api.datastore.Blob;
+import com.google.appengine.api.datastore.Cursor;
 import com.google.appengine.api.datastore.DatastoreService;
 import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.api.datastore.Entity;
 import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.EntityNotFoundException;
 import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
 import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.FilterOperator;
+import com.google.appengine.api.datastore.Query.FilterPredicate;
+import com.google.appengine.api.datastore.QueryResultList;
 import com.google.appengine.api.datastore.ShortBlob;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.nigori.common.MessageLibrary;
 import com.google.nigori.common.Nonce;
 import com.google.nigori.common.RevValue;
 import com.google.nigori.server.Database;
+import com.google.nigori.server.KeyChange;
+import com.google.nigori.server.KeyRevValue;
+import com.google.nigori.server.Page;
+import com.google.nigori.server.StorageUsage;
 import com.google.nigori.server.User;
 import com.google.nigori.server.UserFactory;
 import com.google.nigori.server.UserNotFoundException;
@@ -46,6 +68,14 @@ public final class AppEngineDatabase implements Database {
 
   private static final Logger log = Logger.getLogger(AppEngineDatabase.class.getName());
   protected static final String STORE = "store";
+  private static final String USAGE = "Usage";
+  /**
+   * How many times a change to a user's usage is tried when other changes to it keep getting in
+   * first
+   */
+  private static final int USAGE_ATTEMPTS = 10;
+  private static final String SEQUENCE = "Sequence";
+  private static final String CHANGE = "Change";
 
   private static final PersistenceManagerFactory pmfInstance = JDOHelper
       .getPersistenceManagerFactory("transactions-optional");
@@ -106,7 +136,19 @@ public final class AppEngineDatabase implements Database {
       AEUser existing = pm.getObjectById(AEUser.class, AEUser.keyForUser(existingUser));
       if (existing != null) {
         pm.deletePersistent(existing);
-        return deleteUserData(existing);
+        boolean deleted = deleteUserData(existing);
+        DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+        datastore.delete(getUsageKey(existing));
+        datastore.delete(getSequenceKey(existing));
+        Query getChanges = new Query(CHANGE);
+        getChanges.setAncestor(existing.getKey());
+        getChanges.setKeysOnly();
+        List<Key> changes = new ArrayList<Key>();
+        for (Entity change : datastore.prepare(getChanges).asIterable()) {
+          changes.add(change.getKey());
+        }
+        datastore.delete(changes);
+        return deleted;
       } else {
         return true;
       }
@@ -213,6 +255,17 @@ public final class AppEngineDatabase implements Database {
     }
   }
 
+  private static byte[] indexBytes(Entity lookup) {
+    Object index = lookup.getProperty("index");
+    if (index instanceof ShortBlob) {
+      return ((ShortBlob) index).getBytes();
+    } else if (index instanceof Blob) {
+      return ((Blob) index).getBytes();
+    } else
+      throw new ClassCastException("Could not transform to byte[] via a (Short)Blob: "
+          + index.getClass().getSimpleName());
+  }
+
   @Override
   public Collection<byte[]> getIndices(User user) {
     PersistenceManager pm = pmfInstance.getPersistenceManager();
@@ -224,14 +277,7 @@ public final class AppEngineDatabase implements Database {
           datastore.prepare(getIndices).asList(FetchOptions.Builder.withDefaults());
       List<byte[]> answer = new ArrayList<byte[]>();
       for (Entity result : results) {
-        Object index = result.getProperty("index");
-        if (index instanceof ShortBlob) {
-          answer.add(((ShortBlob) index).getBytes());
-        } else if (index instanceof Blob) {
-          answer.add(((Blob) index).getBytes());
-        } else
-          throw new ClassCastException("Could not transform to byte[] via a (Short)Blob: "
-              + index.getClass().getSimpleName());
+        answer.add(indexBytes(result));
       }
       return answer;
     } catch (JDOObjectNotFoundException e) {
@@ -278,24 +324,479 @@ public final class AppEngineDatabase implements Database {
 
   @Override
   public boolean putRecord(User user, byte[] index, byte[] bRevision, byte[] data) {
-    PersistenceManager pm = pmfInstance.getPersistenceManager();
-    Revision revision = new BytesRevision(bRevision);
+    return putRecords(user, Collections.singletonList(new KeyRevValue(index, bRevision, data)),
+        StorageUsage.UNLIMITED)[0];
+  }
+
+  private static Key getUsageKey(User user) {
+    return KeyFactory.createKey(AEUser.keyForUser(user), USAGE, USAGE);
+  }
+
+  /**
+   * Read the user's usage in a transaction. If there is no stored usage yet (users from before
+   * usage was kept) it is counted from their records, so this must be done before the change being
+   * counted is made.
+   */
+  private static Entity readUsage(DatastoreService datastore, Transaction txn, User user)
+      throws IOException {
+    Key usageKey = getUsageKey(user);
     try {
-      Key lookupKey = getLookupKey(user, index);
-      Lookup lookup;
+      return datastore.get(txn, usageKey);
+    } catch (EntityNotFoundException e) {
+      Entity usage = new Entity(usageKey);
+      setUsage(usage, countUsage(datastore, user));
+      return usage;
+    }
+  }
+
+  private static void setUsage(Entity usage, StorageUsage counted) {
+    usage.setProperty("records", counted.getRecords());
+    usage.setProperty("revisions", counted.getRevisions());
+    usage.setProperty("bytes", counted.getBytes());
+  }
+
+  private static StorageUsage toUsage(Entity usage) {
+    return new StorageUsage((Long) usage.getProperty("records"), (Long) usage
+        .getProperty("revisions"), (Long) usage.getProperty("bytes"));
+  }
+
+  /**
+   * Add to the stored usage of a user, before the change is made. The usage is read and written in
+   * a transaction, retried if another change to it gets in first, so that changes made at the same
+   * time are all counted.
+   */
+  private static void addUsage(User user, long records, long revisions, long bytes) {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    for (int attempt = 0; attempt < USAGE_ATTEMPTS; ++attempt) {
+      Transaction txn = datastore.beginTransaction();
       try {
-        lookup = pm.getObjectById(Lookup.class, lookupKey);
-      } catch (JDOObjectNotFoundException e) {
-        lookup = new Lookup(lookupKey, index);
-        pm.makePersistent(lookup);
+        Entity usage = readUsage(datastore, txn, user);
+        setUsage(usage, toUsage(usage).add(records, revisions, bytes));
+        datastore.put(txn, usage);
+        txn.commit();
+        return;
+      } catch (ConcurrentModificationException e) {
+        // another change to the usage got in first, try again
+      } catch (IOException e) {
+        log.log(Level.SEVERE, "Could not count usage", e);
+        return;
+      } finally {
+        if (txn.isActive()) {
+          txn.rollback();
+        }
+      }
+    }
+    log.severe("Could not update usage after " + USAGE_ATTEMPTS + " attempts");
+  }
+
+  private static StorageUsage countUsage(DatastoreService datastore, User user) throws IOException {
+    Key userKey = AEUser.keyForUser(user);
+    long records = 0;
+    long revisions = 0;
+    long bytes = 0;
+    Query getLookups = new Query(Lookup.class.getSimpleName());
+    getLookups.setAncestor(userKey);
+    for (Entity lookup : datastore.prepare(getLookups).asIterable()) {
+      ++records;
+      bytes += indexBytes(lookup).length;
+    }
+    // Records are children of the lookups so this finds all of them
+    Query getRecords = new Query(AppEngineRecord.class.getSimpleName());
+    getRecords.setAncestor(userKey);
+    try {
+      for (Entity record : datastore.prepare(getRecords).asIterable()) {
+        ++revisions;
+        bytes +=
+            readRevision(record).getBytes().length
+                + ((Blob) record.getProperty("value")).getBytes().length;
+      }
+    } catch (ClassNotFoundException e) {
+      throw new IOException(e);
+    }
+    return new StorageUsage(records, revisions, bytes);
+  }
+
+  private static Key getSequenceKey(User user) {
+    return KeyFactory.createKey(AEUser.keyForUser(user), SEQUENCE, SEQUENCE);
+  }
+
+  /**
+   * Give each of the keys the next number in the user's change sequence, after the changes have been
+   * made. The sequence and the changes are in the user's entity group so this is done in a
+   * transaction.
+   */
+  private static void recordChanges(User user, Collection<byte[]> indices, boolean deleted) {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Transaction txn = datastore.beginTransaction();
+    try {
+      Key sequenceKey = getSequenceKey(user);
+      Entity sequenceEntity;
+      try {
+        sequenceEntity = datastore.get(txn, sequenceKey);
+      } catch (EntityNotFoundException e) {
+        sequenceEntity = new Entity(sequenceKey);
+        sequenceEntity.setProperty("sequence", 0L);
+      }
+      long sequence = (Long) sequenceEntity.getProperty("sequence");
+      List<Entity> toPut = new ArrayList<Entity>(indices.size() + 1);
+      for (byte[] index : indices) {
+        // One change entity per key, named like the lookup, so later changes replace earlier ones
+        Entity change =
+            new Entity(CHANGE, Base64.encodeBase64String(index), AEUser.keyForUser(user));
+        change.setProperty("index", new Blob(index));
+        change.setProperty("sequence", ++sequence);
+        change.setProperty("deleted", deleted);
+        toPut.add(change);
       }
-      // TODO(drt24): Do revisions properly, need to only add if not already existing.
-      AppEngineRecord record = new AppEngineRecord(lookup.getKey(), revision, data);
-      pm.makePersistent(record);
+      sequenceEntity.setProperty("sequence", sequence);
+      toPut.add(sequenceEntity);
+      datastore.put(txn, toPut);
+      txn.commit();
+    } finally {
+      if (txn.isActive()) {
+        txn.rollback();
+      }
+    }
+  }
+
+  @Override
+  public List<KeyChange> getChanges(User user, long since, int limit) {
+    Query getChanges = new Query(CHANGE);
+    getChanges.setAncestor(AEUser.keyForUser(user));
+    getChanges.setFilter(new FilterPredicate("sequence", FilterOperator.GREATER_THAN, since));
+    getChanges.addSort("sequence");
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    List<KeyChange> answer = new ArrayList<KeyChange>();
+    for (Entity change : datastore.prepare(getChanges).asList(FetchOptions.Builder.withLimit(limit))) {
+      answer.add(new KeyChange(indexBytes(change), (Long) change.getProperty("sequence"),
+          (Boolean) change.getProperty("deleted")));
+    }
+    return answer;
+  }
+
+  @Override
+  public long getSequence(User user) {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    try {
+      return (Long) datastore.get(getSequenceKey(user)).getProperty("sequence");
+    } catch (EntityNotFoundException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * The change log and sequence are in the user's entity group so they are replaced in one
+   * transaction.
+   */
+  @Override
+  public boolean setChanges(User user, List<KeyChange> changes) {
+    if (!haveUser(user.getPublicHash())) {
+      return false;
+    }
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Transaction txn = datastore.beginTransaction();
+    try {
+      Query getChanges = new Query(CHANGE);
+      getChanges.setAncestor(AEUser.keyForUser(user));
+      getChanges.setKeysOnly();
+      List<Key> previous = new ArrayList<Key>();
+      for (Entity change : datastore.prepare(txn, getChanges).asIterable()) {
+        previous.add(change.getKey());
+      }
+      datastore.delete(txn, previous);
+      List<Entity> toPut = new ArrayList<Entity>(changes.size() + 1);
+      long sequence = 0;
+      for (KeyChange keyChange : changes) {
+        Entity change =
+            new Entity(CHANGE, Base64.encodeBase64String(keyChange.getKey()), AEUser
+                .keyForUser(user));
+        change.setProperty("index", new Blob(keyChange.getKey()));
+        change.setProperty("sequence", keyChange.getSequence());
+        change.setProperty("deleted", keyChange.isDeleted());
+        toPut.add(change);
+        sequence = Math.max(sequence, keyChange.getSequence());
+      }
+      Entity sequenceEntity = new Entity(getSequenceKey(user));
+      sequenceEntity.setProperty("sequence", sequence);
+      toPut.add(sequenceEntity);
+      datastore.put(txn, toPut);
+      txn.commit();
       return true;
+    } finally {
+      if (txn.isActive()) {
+        txn.rollback();
+      }
+    }
+  }
+
+  @Override
+  public StorageUsage getUsage(User user) throws IOException {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    try {
+      return toUsage(datastore.get(getUsageKey(user)));
+    } catch (EntityNotFoundException e) {
+      return countUsage(datastore, user);
+    }
+  }
+
+  private static Revision readRevision(Entity record) throws IOException, ClassNotFoundException {
+    ByteArrayInputStream bais =
+        new ByteArrayInputStream(((Blob) record.getProperty("revision")).getBytes());
+    ObjectInputStream ndis = new ObjectInputStream(bais);
+    return (Revision) ndis.readObject();
+  }
+
+  private static List<Key> getLookupKeys(User user, List<byte[]> indices) {
+    List<Key> lookupKeys = new ArrayList<Key>(indices.size());
+    for (byte[] index : indices) {
+      lookupKeys.add(getLookupKey(user, index));
+    }
+    return lookupKeys;
+  }
+
+  private static List<Entity> getRecordEntities(DatastoreService datastore, Key lookupKey) {
+    Query getRevisionValues = new Query(AppEngineRecord.class.getSimpleName());
+    getRevisionValues.setAncestor(lookupKey);
+    return datastore.prepare(getRevisionValues).asList(FetchOptions.Builder.withDefaults());
+  }
+
+  @Override
+  public List<Collection<RevValue>> getRecords(User user, List<byte[]> indices) throws IOException {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    List<Key> lookupKeys = getLookupKeys(user, indices);
+    // One batch get to find which lookups exist, then only query for the revisions of those
+    Map<Key, Entity> lookups = datastore.get(new LinkedHashSet<Key>(lookupKeys));
+    List<Collection<RevValue>> answer = new ArrayList<Collection<RevValue>>(indices.size());
+    try {
+      for (Key lookupKey : lookupKeys) {
+        if (!lookups.containsKey(lookupKey)) {
+          answer.add(null);
+          continue;
+        }
+        List<RevValue> revValues = new ArrayList<RevValue>();
+        for (Entity result : getRecordEntities(datastore, lookupKey)) {
+          revValues.add(new RevValue(readRevision(result).getBytes(), ((Blob) result
+              .getProperty("value")).getBytes()));
+        }
+        answer.add(revValues);
+      }
+    } catch (ClassNotFoundException e) {
+      throw new IOException(e);
+    }
+    return answer;
+  }
+
+  @Override
+  public List<RevValue> getRevisionValues(User user, byte[] index, List<byte[]> revisions)
+      throws IOException {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Key lookupKey = getLookupKey(user, index);
+    List<Key> keys = new ArrayList<Key>(revisions.size());
+    for (byte[] revision : revisions) {
+      keys.add(AppEngineRecord.makeKey(lookupKey, new BytesRevision(revision)));
+    }
+    // One batch get for all the revisions rather than one get each
+    Map<Key, Entity> records = datastore.get(new LinkedHashSet<Key>(keys));
+    List<RevValue> answer = new ArrayList<RevValue>(revisions.size());
+    for (int i = 0; i < keys.size(); ++i) {
+      Entity record = records.get(keys.get(i));
+      answer.add(record == null ? null : new RevValue(revisions.get(i), ((Blob) record
+          .getProperty("value")).getBytes()));
+    }
+    return answer;
+  }
+
+  @Override
+  public List<Collection<byte[]>> getRevisions(User user, List<byte[]> indices) throws IOException {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    List<Key> lookupKeys = getLookupKeys(user, indices);
+    // One batch get to find which lookups exist, then only query for the revisions of those
+    Map<Key, Entity> lookups = datastore.get(new LinkedHashSet<Key>(lookupKeys));
+    List<Collection<byte[]>> answer = new ArrayList<Collection<byte[]>>(indices.size());
+    try {
+      for (Key lookupKey : lookupKeys) {
+        if (!lookups.containsKey(lookupKey)) {
+          answer.add(null);
+          continue;
+        }
+        List<byte[]> revisions = new ArrayList<byte[]>();
+        for (Entity result : getRecordEntities(datastore, lookupKey)) {
+          revisions.add(readRevision(result).getBytes());
+        }
+        answer.add(revisions);
+      }
+    } catch (ClassNotFoundException e) {
+      throw new IOException(e);
+    }
+    return answer;
+  }
+
+  @Override
+  public Page<byte[]> getIndices(User user, byte[] cursor, int limit) {
+    Query getIndices = new Query(Lookup.class.getSimpleName());
+    getIndices.setAncestor(castUser(user).getKey());
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    QueryResultList<Entity> results =
+        datastore.prepare(getIndices).asQueryResultList(fetchOptions(cursor, limit));
+    List<byte[]> answer = new ArrayList<byte[]>(results.size());
+    for (Entity result : results) {
+      answer.add(indexBytes(result));
+    }
+    return new Page<byte[]>(answer, nextCursor(results, limit));
+  }
+
+  @Override
+  public Page<byte[]> getRevisions(User user, byte[] index, byte[] cursor, int limit)
+      throws IOException {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Key lookupKey = getLookupKey(user, index);
+    try {
+      datastore.get(lookupKey);
+    } catch (EntityNotFoundException e) {
+      return null;
+    }
+    Query getRevisionValues = new Query(AppEngineRecord.class.getSimpleName());
+    getRevisionValues.setAncestor(lookupKey);
+    QueryResultList<Entity> results =
+        datastore.prepare(getRevisionValues).asQueryResultList(fetchOptions(cursor, limit));
+    List<byte[]> answer = new ArrayList<byte[]>(results.size());
+    try {
+      for (Entity result : results) {
+        answer.add(readRevision(result).getBytes());
+      }
+    } catch (ClassNotFoundException e) {
+      throw new IOException(e);
+    }
+    return new Page<byte[]>(answer, nextCursor(results, limit));
+  }
+
+  /**
+   * Our opaque cursors are the web safe form of the datastore's cursors
+   */
+  private static FetchOptions fetchOptions(byte[] cursor, int limit) {
+    FetchOptions options = FetchOptions.Builder.withLimit(limit);
+    if (cursor != null) {
+      options.startCursor(Cursor.fromWebSafeString(MessageLibrary.bytesToString(cursor)));
+    }
+    return options;
+  }
+
+  private static byte[] nextCursor(QueryResultList<Entity> results, int limit) {
+    if (results.size() < limit) {
+      return null;
+    }
+    return MessageLibrary.toBytes(results.getCursor().toWebSafeString());
+  }
+
+  @Override
+  public boolean[] putRecords(User user, List<KeyRevValue> records) {
+    return putRecords(user, records, StorageUsage.UNLIMITED);
+  }
+
+  /**
+   * The usage for the new revisions is added in a transaction before they are put, which is where
+   * the quota is checked, so puts made at the same time can't take the user over quota between
+   * them. If the put then fails the usage is given back.
+   */
+  @Override
+  public boolean[] putRecords(User user, List<KeyRevValue> records, StorageUsage quota) {
+    List<Key> keys = new ArrayList<Key>(records.size() * 2);
+    for (KeyRevValue record : records) {
+      Key lookupKey = getLookupKey(user, record.getKey());
+      keys.add(lookupKey);
+      keys.add(AppEngineRecord.makeKey(lookupKey, new BytesRevision(record.getRevision())));
+    }
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    // One batch get to find which of the lookups and revisions already exist
+    Map<Key, Entity> existing = datastore.get(new LinkedHashSet<Key>(keys));
+    boolean[] answer = null;
+    // New lookups and records, keyed so that repeats within the batch are only put once
+    Map<Key, Object> toPut = null;
+    // The keys which have new revisions, by lookup key so each is only recorded once
+    Map<Key, byte[]> changed = null;
+    StorageUsage added = null;
+    for (int attempt = 0; attempt < USAGE_ATTEMPTS && answer == null; ++attempt) {
+      boolean[] tryAnswer = new boolean[records.size()];
+      Map<Key, Object> tryPut = new LinkedHashMap<Key, Object>();
+      Map<Key, byte[]> tryChanged = new LinkedHashMap<Key, byte[]>();
+      Transaction txn = datastore.beginTransaction();
+      try {
+        Entity usageEntity = readUsage(datastore, txn, user);
+        StorageUsage before = toUsage(usageEntity);
+        StorageUsage usage = before;
+        int i = 0;
+        for (KeyRevValue record : records) {
+          Key lookupKey = keys.get(2 * i);
+          Key recordKey = keys.get(2 * i + 1);
+          Entity existingRecord = existing.get(recordKey);
+          if (existingRecord != null) {
+            // Revisions are immutable so this only succeeds if it is a repeat of the same put
+            tryAnswer[i] =
+                Arrays.equals(record.getValue(), ((Blob) existingRecord.getProperty("value"))
+                    .getBytes());
+          } else if (tryPut.containsKey(recordKey)) {
+            tryAnswer[i] =
+                Arrays.equals(record.getValue(), ((AppEngineRecord) tryPut.get(recordKey))
+                    .getValue());
+          } else {
+            boolean newRecord = !existing.containsKey(lookupKey) && !tryPut.containsKey(lookupKey);
+            StorageUsage after =
+                usage.addPut(newRecord, record.getKey(), record.getRevision(), record.getValue());
+            if (!after.exceeds(quota)) {
+              usage = after;
+              if (newRecord) {
+                tryPut.put(lookupKey, new Lookup(lookupKey, record.getKey()));
+              }
+              tryPut.put(recordKey, new AppEngineRecord(lookupKey, new BytesRevision(record
+                  .getRevision()), record.getValue()));
+              tryChanged.put(lookupKey, record.getKey());
+              tryAnswer[i] = true;
+            }
+          }
+          ++i;
+        }
+        if (!tryPut.isEmpty()) {
+          setUsage(usageEntity, usage);
+          datastore.put(txn, usageEntity);
+          txn.commit();
+        }
+        answer = tryAnswer;
+        toPut = tryPut;
+        changed = tryChanged;
+        added =
+            new StorageUsage(usage.getRecords() - before.getRecords(), usage.getRevisions()
+                - before.getRevisions(), usage.getBytes() - before.getBytes());
+      } catch (ConcurrentModificationException e) {
+        // another change to the usage got in first, try again
+      } catch (IOException e) {
+        log.log(Level.SEVERE, "Could not count usage", e);
+        return new boolean[records.size()];
+      } finally {
+        if (txn.isActive()) {
+          txn.rollback();
+        }
+      }
+    }
+    if (answer == null) {
+      log.severe("Could not update usage after " + USAGE_ATTEMPTS + " attempts");
+      return new boolean[records.size()];
+    }
+    if (toPut.isEmpty()) {
+      return answer;
+    }
+    PersistenceManager pm = pmfInstance.getPersistenceManager();
+    try {
+      // One batch put for all the new lookups and records
+      pm.makePersistentAll(toPut.values());
+    } catch (JDOException e) {
+      log.log(Level.SEVERE, "Exception while putting records", e);
+      addUsage(user, -added.getRecords(), -added.getRevisions(), -added.getBytes());
+      return new boolean[records.size()];
     } finally {
       pm.close();
     }
+    recordChanges(user, changed.values(), false);
+    return answer;
   }
 
   @Override
@@ -306,24 +807,33 @@ public final class AppEngineDatabase implements Database {
       Lookup lookup = pm.getObjectById(Lookup.class, lookupKey);
       // TODO(drt24) multiple revisions
       // TODO(drt24) cleanup
+      DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+      List<Entity> results = getRecordEntities(datastore, lookupKey);
+      long bytes = index.length;
+      for (Entity entity : results) {
+        bytes +=
+            readRevision(entity).getBytes().length
+                + ((Blob) entity.getProperty("value")).getBytes().length;
+      }
+      addUsage(user, -1, -results.size(), -bytes);
       try {
-        Query getRevisionValues = new Query(AppEngineRecord.class.getSimpleName());
-        getRevisionValues.setAncestor(lookupKey);
-        DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-
-        List<Entity> results =
-            datastore.prepare(getRevisionValues).asList(FetchOptions.Builder.withDefaults());
         for (Entity entity : results) {
           pm.deletePersistent(pm.getObjectById(AppEngineRecord.class, entity.getKey()));
         }
-
       } finally {// even if there is no value the index still needs to be deleted - but we haven't
                  // actually done a delete
         pm.deletePersistent(lookup);
       }
+      recordChanges(user, Collections.singletonList(index), true);
       return true;
     } catch (JDOObjectNotFoundException e) {
       return false;
+    } catch (IOException e) {
+      log.log(Level.SEVERE, "Exception while deleting record", e);
+      return false;
+    } catch (ClassNotFoundException e) {
+      log.log(Level.SEVERE, "Exception while deleting record", e);
+      return false;
     } finally {
       pm.close();
     }
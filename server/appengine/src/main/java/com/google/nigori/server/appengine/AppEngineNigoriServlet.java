@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server.appengine;
+
+import com.google.nigori.server.NigoriServlet;
+
+/**
+ * The {@link NigoriServlet} backed by the App Engine datastore, as deployed by web.xml
+ * 
+ * @author drt24
+ * 
+ */
+public class AppEngineNigoriServlet extends NigoriServlet {
+  private static final long serialVersionUID = 1L;
+
+  public AppEngineNigoriServlet() {
+    super(new AppEngineDatabase());
+  }
+}
@@ -25,14 +25,20 @@ import static org.junit.internal.matchers.IsCollectionContaining.hasItem;
 
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
+import java.util.Set;
 
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.google.nigori.common.MessageLibrary;
 import com.google.nigori.common.NigoriConstants;
 import com.google.nigori.common.Nonce;
 import com.google.nigori.common.RevValue;
@@ -162,6 +168,33 @@ public abstract class AbstractDatabaseTest {
     }
   }
 
+  @Test
+  public void getRevisionValues() throws UserNotFoundException, IOException {
+    User user = null;
+    try {
+      assertTrue(database.addUser(publicKey, publicHash));
+      user = database.getUser(publicHash);
+      final byte[] index = toBytes("index");
+      assertTrue(database.putRecord(user, index, toBytes("revisiona"), toBytes("a")));
+      assertTrue(database.putRecord(user, index, toBytes("revisionb"), toBytes("b")));
+      List<RevValue> values =
+          database.getRevisionValues(user, index, Arrays.asList(toBytes("revisionb"),
+              toBytes("missing"), toBytes("revisiona")));
+      assertEquals(3, values.size());
+      assertArrayEquals(toBytes("revisionb"), values.get(0).getRevision().getBytes());
+      assertArrayEquals(toBytes("b"), values.get(0).getValue());
+      assertNull(values.get(1));
+      assertArrayEquals(toBytes("a"), values.get(2).getValue());
+      List<RevValue> noIndex =
+          database.getRevisionValues(user, toBytes("noindex"), Arrays.asList(toBytes("revisiona")));
+      assertEquals(1, noIndex.size());
+      assertNull(noIndex.get(0));
+      assertTrue(database.deleteRecord(user, index));
+    } finally {
+      assertTrue("User not deleted", database.deleteUser(user));
+    }
+  }
+
   @Test
   public void getNoRevisions() throws UserNotFoundException, IOException {
     User user = null;
@@ -221,4 +254,310 @@ public abstract class AbstractDatabaseTest {
       assertTrue("User not deleted", database.deleteUser(user));
     }
   }
+
+  @Test
+  public void pagedIndices() throws UserNotFoundException, IOException {
+    User user = null;
+    try {
+      assertTrue(database.addUser(publicKey, publicHash));
+      user = database.getUser(publicHash);
+      Set<String> expected = new HashSet<String>();
+      for (int i = 0; i < 7; ++i) {
+        expected.add("index" + i);
+        assertTrue(database.putRecord(user, toBytes("index" + i), toBytes("revision"), toBytes("a")));
+      }
+      Set<String> found = new HashSet<String>();
+      byte[] cursor = null;
+      int pages = 0;
+      do {
+        Page<byte[]> page = database.getIndices(user, cursor, 3);
+        assertNotNull("No page", page);
+        assertTrue("Page too large", page.getItems().size() <= 3);
+        for (byte[] index : page.getItems()) {
+          assertTrue("Index repeated", found.add(MessageLibrary.bytesToString(index)));
+        }
+        cursor = page.getCursor();
+        assertTrue("Too many pages", ++pages <= 4);
+      } while (cursor != null);
+      assertEquals(expected, found);
+      for (String index : expected) {
+        assertTrue(database.deleteRecord(user, toBytes(index)));
+      }
+    } finally {
+      assertTrue("User not deleted", database.deleteUser(user));
+    }
+  }
+
+  @Test
+  public void pagedRevisions() throws UserNotFoundException, IOException {
+    User user = null;
+    try {
+      assertTrue(database.addUser(publicKey, publicHash));
+      user = database.getUser(publicHash);
+      final byte[] index = toBytes("index");
+      assertNull(database.getRevisions(user, index, null, 2));
+      Set<String> expected = new HashSet<String>();
+      for (int i = 0; i < 5; ++i) {
+        expected.add("revision" + i);
+        assertTrue(database.putRecord(user, index, toBytes("revision" + i), toBytes("a")));
+      }
+      Set<String> found = new HashSet<String>();
+      byte[] cursor = null;
+      do {
+        Page<byte[]> page = database.getRevisions(user, index, cursor, 2);
+        assertNotNull("No page", page);
+        assertTrue("Page too large", page.getItems().size() <= 2);
+        for (byte[] revision : page.getItems()) {
+          assertTrue("Revision repeated", found.add(MessageLibrary.bytesToString(revision)));
+        }
+        cursor = page.getCursor();
+      } while (cursor != null);
+      assertEquals(expected, found);
+      assertTrue(database.deleteRecord(user, index));
+    } finally {
+      assertTrue("User not deleted", database.deleteUser(user));
+    }
+  }
+
+  @Test
+  public void pagedPublicHashes() throws UserNotFoundException, IOException,
+      NoSuchAlgorithmException {
+    if (!(database instanceof UserLister)) {
+      return;
+    }
+    Random random = new Random();
+    List<byte[]> hashes = new ArrayList<byte[]>();
+    try {
+      Set<String> expected = new HashSet<String>();
+      for (int i = 0; i < 5; ++i) {
+        byte[] key = new byte[NigoriConstants.B_DSA];
+        random.nextBytes(key);
+        byte[] hash = Util.hashKey(key);
+        assertTrue(database.addUser(key, hash));
+        hashes.add(hash);
+        expected.add(Arrays.toString(hash));
+      }
+      Set<String> found = new HashSet<String>();
+      byte[] cursor = null;
+      do {
+        Page<byte[]> page = ((UserLister) database).getPublicHashes(cursor, 2);
+        assertTrue("Page too large", page.getItems().size() <= 2);
+        for (byte[] hash : page.getItems()) {
+          assertTrue("Public hash repeated", found.add(Arrays.toString(hash)));
+        }
+        cursor = page.getCursor();
+      } while (cursor != null);
+      assertEquals(expected, found);
+    } finally {
+      for (byte[] hash : hashes) {
+        assertTrue("User not deleted", database.deleteUser(database.getUser(hash)));
+      }
+    }
+  }
+
+  @Test
+  public void bulkPutGet() throws UserNotFoundException, IOException {
+    User user = null;
+    try {
+      assertTrue(database.addUser(publicKey, publicHash));
+      user = database.getUser(publicHash);
+      final byte[] indexa = toBytes("indexa");
+      final byte[] indexb = toBytes("indexb");
+      final byte[] indexc = toBytes("indexc");
+      final byte[] revisiona = toBytes("revisiona");
+      final byte[] revisionb = toBytes("revisionb");
+      List<KeyRevValue> records = new ArrayList<KeyRevValue>();
+      records.add(new KeyRevValue(indexa, revisiona, toBytes("a")));
+      records.add(new KeyRevValue(indexa, revisionb, toBytes("b")));
+      records.add(new KeyRevValue(indexb, revisiona, toBytes("c")));
+      boolean[] results = database.putRecords(user, records);
+      assertEquals(records.size(), results.length);
+      for (boolean result : results) {
+        assertTrue(result);
+      }
+      assertFalse("Could change an existing revision", database.putRecords(user,
+          Arrays.asList(new KeyRevValue(indexa, revisiona, toBytes("changed"))))[0]);
+
+      List<byte[]> keys = Arrays.asList(indexa, indexc, indexb);
+      List<Collection<RevValue>> values = database.getRecords(user, keys);
+      assertEquals(keys.size(), values.size());
+      assertEquals(2, values.get(0).size());
+      assertThat(values.get(0), hasItem(new RevValue(revisionb, toBytes("b"))));
+      assertNull(values.get(1));
+      assertEquals(1, values.get(2).size());
+      assertArrayEquals(toBytes("c"), values.get(2).iterator().next().getValue());
+
+      List<Collection<byte[]>> revisions = database.getRevisions(user, keys);
+      assertEquals(keys.size(), revisions.size());
+      assertEquals(2, revisions.get(0).size());
+      assertThat(revisions.get(0), hasItem(revisiona));
+      assertThat(revisions.get(0), hasItem(revisionb));
+      assertNull(revisions.get(1));
+      assertEquals(1, revisions.get(2).size());
+      assertTrue(database.deleteRecord(user, indexa));
+      assertTrue(database.deleteRecord(user, indexb));
+    } finally {
+      assertTrue("User not deleted", database.deleteUser(user));
+    }
+  }
+
+  @Test
+  public void usage() throws UserNotFoundException, IOException {
+    User user = null;
+    try {
+      assertTrue(database.addUser(publicKey, publicHash));
+      user = database.getUser(publicHash);
+      assertEquals(StorageUsage.NONE, database.getUsage(user));
+      final byte[] indexa = toBytes("indexa");
+      final byte[] indexb = toBytes("indexb");
+      final byte[] revisiona = toBytes("revisiona");
+      final byte[] revisionb = toBytes("revisionb");
+      final byte[] value = toBytes("value");
+      final int revisionBytes = revisiona.length + value.length;
+
+      assertTrue(database.putRecord(user, indexa, revisiona, value));
+      assertEquals(new StorageUsage(1, 1, indexa.length + revisionBytes), database.getUsage(user));
+      assertTrue(database.putRecord(user, indexa, revisionb, value));
+      assertEquals(new StorageUsage(1, 2, indexa.length + 2 * revisionBytes),
+          database.getUsage(user));
+      database.putRecord(user, indexa, revisionb, value);
+      assertEquals("Repeated put counted", new StorageUsage(1, 2, indexa.length + 2
+          * revisionBytes), database.getUsage(user));
+      assertTrue(database.putRecords(user,
+          Arrays.asList(new KeyRevValue(indexb, revisiona, value)))[0]);
+      assertEquals(new StorageUsage(2, 3, indexa.length + indexb.length + 3 * revisionBytes),
+          database.getUsage(user));
+
+      assertTrue(database.deleteRecord(user, indexa));
+      assertEquals(new StorageUsage(1, 1, indexb.length + revisionBytes), database.getUsage(user));
+      assertTrue(database.deleteRecord(user, indexb));
+      assertEquals(StorageUsage.NONE, database.getUsage(user));
+    } finally {
+      assertTrue("User not deleted", database.deleteUser(user));
+    }
+  }
+
+  @Test
+  public void quota() throws UserNotFoundException, IOException {
+    User user = null;
+    try {
+      assertTrue(database.addUser(publicKey, publicHash));
+      user = database.getUser(publicHash);
+      final byte[] indexa = toBytes("indexa");
+      final byte[] indexb = toBytes("indexb");
+      final byte[] revisiona = toBytes("revisiona");
+      final byte[] revisionb = toBytes("revisionb");
+      final byte[] value = toBytes("value");
+      StorageUsage quota = new StorageUsage(1, 2, 1000);
+
+      boolean[] put =
+          database.putRecords(user, Arrays.asList(new KeyRevValue(indexa, revisiona, value),
+              new KeyRevValue(indexb, revisiona, value), new KeyRevValue(indexa, revisionb, value)),
+              quota);
+      assertTrue(put[0]);
+      assertFalse("Second record allowed", put[1]);
+      assertTrue("Refused put stopped a later one", put[2]);
+      assertEquals(new StorageUsage(1, 2, indexa.length + 2 * (revisiona.length + value.length)),
+          database.getUsage(user));
+      assertNull(database.getRecord(user, indexb));
+
+      assertFalse("Third revision allowed", database.putRecords(user,
+          Arrays.asList(new KeyRevValue(indexa, toBytes("revisionc"), value)), quota)[0]);
+      database.putRecords(user, Arrays.asList(new KeyRevValue(indexa, revisiona, value)), quota);
+      assertEquals("Repeated put counted", 2, database.getUsage(user).getRevisions());
+      assertTrue(database.deleteRecord(user, indexa));
+    } finally {
+      assertTrue("User not deleted", database.deleteUser(user));
+    }
+  }
+
+  @Test
+  public void changes() throws UserNotFoundException, IOException {
+    User user = null;
+    try {
+      assertTrue(database.addUser(publicKey, publicHash));
+      user = database.getUser(publicHash);
+      assertEquals(0, database.getSequence(user));
+      assertTrue(database.getChanges(user, 0, 10).isEmpty());
+      final byte[] indexa = toBytes("indexa");
+      final byte[] indexb = toBytes("indexb");
+      final byte[] revisiona = toBytes("revisiona");
+      final byte[] revisionb = toBytes("revisionb");
+      final byte[] value = toBytes("value");
+
+      assertTrue(database.putRecord(user, indexa, revisiona, value));
+      assertTrue(database.putRecords(user, Arrays.asList(new KeyRevValue(indexb, revisiona, value),
+          new KeyRevValue(indexb, revisionb, value)))[1]);
+      long sequence = database.getSequence(user);
+      database.putRecord(user, indexa, revisiona, value);
+      assertEquals("Repeated put changed the sequence", sequence, database.getSequence(user));
+
+      List<KeyChange> changes = database.getChanges(user, 0, 10);
+      assertEquals(2, changes.size());
+      assertArrayEquals(indexa, changes.get(0).getKey());
+      assertArrayEquals(indexb, changes.get(1).getKey());
+      assertTrue(changes.get(0).getSequence() < changes.get(1).getSequence());
+      assertEquals(sequence, changes.get(1).getSequence());
+      assertFalse(changes.get(1).isDeleted());
+      assertEquals(1, database.getChanges(user, 0, 1).size());
+      assertTrue(database.getChanges(user, sequence, 10).isEmpty());
+
+      assertTrue(database.deleteRecord(user, indexa));
+      changes = database.getChanges(user, sequence, 10);
+      assertEquals(1, changes.size());
+      assertArrayEquals(indexa, changes.get(0).getKey());
+      assertTrue(changes.get(0).isDeleted());
+      assertEquals(database.getSequence(user), changes.get(0).getSequence());
+      assertEquals("Old change to deleted key not replaced", 2, database.getChanges(user, 0, 10)
+          .size());
+      assertTrue(database.getChanges(user, Long.MAX_VALUE, 10).isEmpty());
+      assertTrue(database.deleteRecord(user, indexb));
+    } finally {
+      assertTrue("User not deleted", database.deleteUser(user));
+    }
+    assertTrue(database.addUser(publicKey, publicHash));
+    user = database.getUser(publicHash);
+    try {
+      assertEquals("Sequence not reset with user", 0, database.getSequence(user));
+      assertTrue(database.getChanges(user, 0, 10).isEmpty());
+    } finally {
+      assertTrue("User not deleted", database.deleteUser(user));
+    }
+  }
+
+  @Test
+  public void setChanges() throws UserNotFoundException, IOException {
+    assertTrue(database.addUser(publicKey, publicHash));
+    User user = database.getUser(publicHash);
+    try {
+      final byte[] indexa = toBytes("indexa");
+      final byte[] indexb = toBytes("indexb");
+      final byte[] indexc = toBytes("indexc");
+      assertTrue(database.putRecord(user, indexa, toBytes("revision"), toBytes("value")));
+      assertTrue(database.setChanges(user, Arrays.asList(new KeyChange(indexb, 5, true),
+          new KeyChange(indexa, 7, false))));
+      assertEquals(7, database.getSequence(user));
+      List<KeyChange> changes = database.getChanges(user, 0, 10);
+      assertEquals(2, changes.size());
+      assertArrayEquals(indexb, changes.get(0).getKey());
+      assertEquals(5, changes.get(0).getSequence());
+      assertTrue(changes.get(0).isDeleted());
+      assertArrayEquals(indexa, changes.get(1).getKey());
+      assertEquals(7, changes.get(1).getSequence());
+      assertFalse(changes.get(1).isDeleted());
+
+      // Later changes carry on from the sequence and still replace earlier changes to their key
+      assertTrue(database.putRecord(user, indexc, toBytes("revision"), toBytes("value")));
+      assertTrue(database.putRecord(user, indexa, toBytes("revision2"), toBytes("value")));
+      changes = database.getChanges(user, 5, 10);
+      assertEquals(2, changes.size());
+      assertArrayEquals(indexc, changes.get(0).getKey());
+      assertEquals(8, changes.get(0).getSequence());
+      assertArrayEquals(indexa, changes.get(1).getKey());
+      assertEquals(9, changes.get(1).getSequence());
+      assertEquals(9, database.getSequence(user));
+    } finally {
+      assertTrue("User not deleted", database.deleteUser(user));
+    }
+  }
 }
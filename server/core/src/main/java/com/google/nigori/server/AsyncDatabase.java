@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.google.nigori.common.Nonce;
+import com.google.nigori.common.RevValue;
+
+/**
+ * Asynchronous counterpart of {@link Database}, each method returns immediately with a future which
+ * is completed with what the corresponding {@link Database} method would have returned.
+ *
+ * Where the {@link Database} method would have thrown an exception the future is instead completed
+ * exceptionally with that exception. If the database is overloaded the future may be completed
+ * exceptionally with a {@link java.util.concurrent.RejectedExecutionException}.
+ *
+ * @author drt24
+ *
+ */
+public interface AsyncDatabase {
+
+  UserFactory getUserFactory();
+
+  CompletableFuture<Boolean> addUser(byte[] publicKey, byte[] publicHash);
+
+  CompletableFuture<Boolean> haveUser(byte[] existingUserHash);
+
+  CompletableFuture<Boolean> deleteUser(User existingUser);
+
+  /**
+   * @see Database#checkAndAddNonce(Nonce, byte[])
+   */
+  CompletableFuture<Boolean> checkAndAddNonce(Nonce nonce, byte[] publicHash);
+
+  /**
+   * @return the public key, or a future completed with a {@link UserNotFoundException}
+   */
+  CompletableFuture<byte[]> getPublicKey(byte[] publicHash);
+
+  /**
+   * @return the user, or a future completed with a {@link UserNotFoundException}
+   * @see Database#getUser(byte[])
+   */
+  CompletableFuture<User> getUser(byte[] publicHash);
+
+  CompletableFuture<Collection<RevValue>> getRecord(User user, byte[] key);
+
+  CompletableFuture<RevValue> getRevision(User user, byte[] key, byte[] revision);
+
+  CompletableFuture<Collection<byte[]>> getRevisions(User user, byte[] key);
+
+  CompletableFuture<Collection<byte[]>> getIndices(User user);
+
+  /**
+   * @see Database#getIndices(User, byte[], int)
+   */
+  CompletableFuture<Page<byte[]>> getIndices(User user, byte[] cursor, int limit);
+
+  /**
+   * @see Database#getRevisions(User, byte[], byte[], int)
+   */
+  CompletableFuture<Page<byte[]>> getRevisions(User user, byte[] key, byte[] cursor, int limit);
+
+  CompletableFuture<Boolean> putRecord(User user, byte[] key, byte[] revision, byte[] data);
+
+  CompletableFuture<Boolean> deleteRecord(User user, byte[] key);
+
+  CompletableFuture<List<Collection<RevValue>>> getRecords(User user, List<byte[]> keys);
+
+  CompletableFuture<List<Collection<byte[]>>> getRevisions(User user, List<byte[]> keys);
+
+  /**
+   * @see Database#getRevisionValues(User, byte[], List)
+   */
+  CompletableFuture<List<RevValue>> getRevisionValues(User user, byte[] key,
+      List<byte[]> revisions);
+
+  CompletableFuture<boolean[]> putRecords(User user, List<KeyRevValue> records);
+
+  /**
+   * @see Database#putRecords(User, List, StorageUsage)
+   */
+  CompletableFuture<boolean[]> putRecords(User user, List<KeyRevValue> records,
+      StorageUsage quota);
+
+  CompletableFuture<StorageUsage> getUsage(User user);
+
+  /**
+   * @see Database#getChanges(User, long, int)
+   */
+  CompletableFuture<List<KeyChange>> getChanges(User user, long since, int limit);
+
+  CompletableFuture<Long> getSequence(User user);
+
+  /**
+   * @see Database#setChanges(User, List)
+   */
+  CompletableFuture<Boolean> setChanges(User user, List<KeyChange> changes);
+
+  CompletableFuture<Void> clearOldNonces();
+}
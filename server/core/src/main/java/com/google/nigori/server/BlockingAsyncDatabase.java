@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.google.nigori.common.Nonce;
+import com.google.nigori.common.RevValue;
+
+/**
+ * Adapts a blocking {@link Database} into an {@link AsyncDatabase} by running each call on an
+ * {@link Executor}, normally a bounded pool dedicated to storage I/O so that callers are not tied up
+ * while it is in flight.
+ *
+ * The wrapped database will be called from many threads at once and so must be thread safe, unless
+ * it is wrapped {@link #inline(Database)} and its callers take care of that.
+ *
+ * @author drt24
+ *
+ */
+public class BlockingAsyncDatabase implements AsyncDatabase {
+
+  private final Database database;
+  private final Executor executor;
+
+  /**
+   * @param database the database to make calls on
+   * @param executor the executor to make the calls from
+   */
+  public BlockingAsyncDatabase(Database database, Executor executor) {
+    if (database == null || executor == null) {
+      throw new NullPointerException("Null database or executor not allowed");
+    }
+    this.database = database;
+    this.executor = executor;
+  }
+
+  /**
+   * Wrap the database with a new pool of {@code threads} daemon threads which will queue at most
+   * {@code queueSize} calls, any more calls than that are rejected rather than queued without limit.
+   *
+   * @param database
+   * @param threads
+   * @param queueSize
+   * @return an asynchronous database, the pool is shut down by {@link #shutdown()}
+   */
+  public static BlockingAsyncDatabase withBoundedPool(Database database, int threads, int queueSize) {
+    return new BlockingAsyncDatabase(database, BoundedPools.newBoundedPool("database-io", threads,
+        queueSize));
+  }
+
+  /**
+   * Wrap a database which does no I/O (such as {@link HashMapDatabase}) so that calls complete on the
+   * calling thread, there being no point in handing them off to another. This is the native
+   * asynchronous form of the in-memory databases, the JE, JDBC and JDO drivers only have blocking
+   * calls so are run on a pool instead.
+   *
+   * @param database
+   * @return an asynchronous database whose futures are always already complete
+   */
+  public static BlockingAsyncDatabase inline(Database database) {
+    return new BlockingAsyncDatabase(database, Runnable::run);
+  }
+
+  /**
+   * Shut down the executor if it is an {@link ExecutorService}, calls already submitted still run.
+   */
+  public void shutdown() {
+    if (executor instanceof ExecutorService) {
+      ((ExecutorService) executor).shutdown();
+    }
+  }
+
+  /**
+   * A {@link java.util.concurrent.Callable} for the blocking calls, which throw many kinds of
+   * checked exception.
+   */
+  private interface DatabaseCall<T> {
+    T call() throws Exception;
+  }
+
+  private <T> CompletableFuture<T> submit(final DatabaseCall<T> call) {
+    final CompletableFuture<T> future = new CompletableFuture<T>();
+    try {
+      executor.execute(() -> {
+        try {
+          future.complete(call.call());
+        } catch (Exception e) {
+          future.completeExceptionally(e);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  @Override
+  public UserFactory getUserFactory() {
+    return database.getUserFactory();
+  }
+
+  @Override
+  public CompletableFuture<Boolean> addUser(final byte[] publicKey, final byte[] publicHash) {
+    return submit(() -> database.addUser(publicKey, publicHash));
+  }
+
+  @Override
+  public CompletableFuture<Boolean> haveUser(final byte[] existingUserHash) {
+    return submit(() -> database.haveUser(existingUserHash));
+  }
+
+  @Override
+  public CompletableFuture<Boolean> deleteUser(final User existingUser) {
+    return submit(() -> database.deleteUser(existingUser));
+  }
+
+  @Override
+  public CompletableFuture<Boolean> checkAndAddNonce(final Nonce nonce, final byte[] publicHash) {
+    return submit(() -> database.checkAndAddNonce(nonce, publicHash));
+  }
+
+  @Override
+  public CompletableFuture<byte[]> getPublicKey(final byte[] publicHash) {
+    return submit(() -> database.getPublicKey(publicHash));
+  }
+
+  @Override
+  public CompletableFuture<User> getUser(final byte[] publicHash) {
+    return submit(() -> database.getUser(publicHash));
+  }
+
+  @Override
+  public CompletableFuture<Collection<RevValue>> getRecord(final User user, final byte[] key) {
+    return submit(() -> database.getRecord(user, key));
+  }
+
+  @Override
+  public CompletableFuture<RevValue> getRevision(final User user, final byte[] key,
+      final byte[] revision) {
+    return submit(() -> database.getRevision(user, key, revision));
+  }
+
+  @Override
+  public CompletableFuture<Collection<byte[]>> getRevisions(final User user, final byte[] key) {
+    return submit(() -> database.getRevisions(user, key));
+  }
+
+  @Override
+  public CompletableFuture<Collection<byte[]>> getIndices(final User user) {
+    return submit(() -> database.getIndices(user));
+  }
+
+  @Override
+  public CompletableFuture<Page<byte[]>> getIndices(final User user, final byte[] cursor,
+      final int limit) {
+    return submit(() -> database.getIndices(user, cursor, limit));
+  }
+
+  @Override
+  public CompletableFuture<Page<byte[]>> getRevisions(final User user, final byte[] key,
+      final byte[] cursor, final int limit) {
+    return submit(() -> database.getRevisions(user, key, cursor, limit));
+  }
+
+  @Override
+  public CompletableFuture<Boolean> putRecord(final User user, final byte[] key,
+      final byte[] revision, final byte[] data) {
+    return submit(() -> database.putRecord(user, key, revision, data));
+  }
+
+  @Override
+  public CompletableFuture<Boolean> deleteRecord(final User user, final byte[] key) {
+    return submit(() -> database.deleteRecord(user, key));
+  }
+
+  @Override
+  public CompletableFuture<List<Collection<RevValue>>> getRecords(final User user,
+      final List<byte[]> keys) {
+    return submit(() -> database.getRecords(user, keys));
+  }
+
+  @Override
+  public CompletableFuture<List<Collection<byte[]>>> getRevisions(final User user,
+      final List<byte[]> keys) {
+    return submit(() -> database.getRevisions(user, keys));
+  }
+
+  @Override
+  public CompletableFuture<List<RevValue>> getRevisionValues(final User user, final byte[] key,
+      final List<byte[]> revisions) {
+    return submit(() -> database.getRevisionValues(user, key, revisions));
+  }
+
+  @Override
+  public CompletableFuture<boolean[]> putRecords(final User user, final List<KeyRevValue> records) {
+    return submit(() -> database.putRecords(user, records));
+  }
+
+  @Override
+  public CompletableFuture<boolean[]> putRecords(final User user, final List<KeyRevValue> records,
+      final StorageUsage quota) {
+    return submit(() -> database.putRecords(user, records, quota));
+  }
+
+  @Override
+  public CompletableFuture<StorageUsage> getUsage(final User user) {
+    return submit(() -> database.getUsage(user));
+  }
+
+  @Override
+  public CompletableFuture<List<KeyChange>> getChanges(final User user, final long since,
+      final int limit) {
+    return submit(() -> database.getChanges(user, since, limit));
+  }
+
+  @Override
+  public CompletableFuture<Long> getSequence(final User user) {
+    return submit(() -> database.getSequence(user));
+  }
+
+  @Override
+  public CompletableFuture<Boolean> setChanges(final User user, final List<KeyChange> changes) {
+    return submit(() -> database.setChanges(user, changes));
+  }
+
+  @Override
+  public CompletableFuture<Void> clearOldNonces() {
+    return submit(() -> {
+      database.clearOldNonces();
+      return null;
+    });
+  }
+}
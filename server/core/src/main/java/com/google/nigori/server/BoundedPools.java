@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread pools for work such as storage I/O which should be refused once too much of it is waiting
+ * rather than queued without limit.
+ *
+ * @author drt24
+ *
+ */
+public final class BoundedPools {
+
+  private BoundedPools() {
+  }
+
+  /**
+   * Create a fixed size pool of daemon threads with a bounded queue which rejects work once full.
+   *
+   * @param name used as a prefix for the names of the threads
+   * @param threads
+   * @param queueSize
+   * @return the new pool
+   */
+  public static ExecutorService newBoundedPool(final String name, int threads, int queueSize) {
+    return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+          private final AtomicInteger count = new AtomicInteger();
+
+          @Override
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        }, new ThreadPoolExecutor.AbortPolicy());
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tells those waiting for a user's records to change when they do, so that get-changes requests can
+ * be held until there is something to return rather than clients having to poll.
+ *
+ * Only changes reported to this notifier wake its watches, so where several servers share a
+ * database a change made through one of them is only seen by requests waiting on another once their
+ * wait runs out and they read the changes again.
+ *
+ * @author drt24
+ *
+ */
+public class ChangeNotifier {
+
+  private final Map<ByteBuffer, Set<Watch>> watches = new HashMap<ByteBuffer, Set<Watch>>();
+
+  private static ByteBuffer key(User user) {
+    return ByteBuffer.wrap(user.getPublicHash());
+  }
+
+  /**
+   * Start watching for changes to the user's records, the watch must be cancelled if it is given up
+   * on before there is a change.
+   *
+   * @param user
+   * @return the watch, which sees any change reported after this returns
+   */
+  public Watch watch(User user) {
+    Watch watch = new Watch(key(user));
+    synchronized (watches) {
+      Set<Watch> userWatches = watches.get(watch.key);
+      if (userWatches == null) {
+        userWatches = new HashSet<Watch>();
+        watches.put(watch.key, userWatches);
+      }
+      userWatches.add(watch);
+    }
+    return watch;
+  }
+
+  /**
+   * The user's records have changed, each current watch for them sees this once and is then done
+   *
+   * @param user
+   */
+  public void changed(User user) {
+    Set<Watch> fired;
+    synchronized (watches) {
+      fired = watches.remove(key(user));
+    }
+    if (fired != null) {
+      for (Watch watch : fired) {
+        watch.fire();
+      }
+    }
+  }
+
+  /**
+   * @return the number of watches which haven't yet seen a change or been cancelled
+   */
+  public int getWatchCount() {
+    int count = 0;
+    synchronized (watches) {
+      for (Set<Watch> userWatches : watches.values()) {
+        count += userWatches.size();
+      }
+    }
+    return count;
+  }
+
+  private void remove(Watch watch) {
+    synchronized (watches) {
+      Set<Watch> userWatches = watches.get(watch.key);
+      if (userWatches != null && userWatches.remove(watch) && userWatches.isEmpty()) {
+        watches.remove(watch.key);
+      }
+    }
+  }
+
+  /**
+   * Waits for the first change to a user's records after it was started, either by blocking in
+   * {@link #await(long)} or by having a listener run when it happens.
+   */
+  public class Watch {
+    private final ByteBuffer key;
+    private boolean changed = false;
+    private Runnable listener = null;
+
+    private Watch(ByteBuffer key) {
+      this.key = key;
+    }
+
+    /**
+     * @return whether there has been a change since the watch was started
+     */
+    public synchronized boolean isChanged() {
+      return changed;
+    }
+
+    /**
+     * Run listener once there has been a change, straight away if there already has been one.
+     * Otherwise it is run by the thread reporting the change so it must not block.
+     *
+     * @param listener
+     */
+    public void onChange(Runnable listener) {
+      synchronized (this) {
+        if (!changed) {
+          this.listener = listener;
+          return;
+        }
+      }
+      listener.run();
+    }
+
+    /**
+     * Wait until there has been a change or the timeout runs out
+     *
+     * @param timeout in milliseconds
+     * @return whether there has been a change
+     * @throws InterruptedException
+     */
+    public synchronized boolean await(long timeout) throws InterruptedException {
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+      long remaining;
+      while (!changed && (remaining = deadline - System.nanoTime()) > 0) {
+        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+      }
+      return changed;
+    }
+
+    /**
+     * Stop watching, a listener which has not already been run won't be
+     */
+    public void cancel() {
+      synchronized (this) {
+        listener = null;
+      }
+      remove(this);
+    }
+
+    private void fire() {
+      Runnable run;
+      synchronized (this) {
+        if (changed) {
+          return;
+        }
+        changed = true;
+        notifyAll();
+        run = listener;
+        listener = null;
+      }
+      if (run != null) {
+        run.run();
+      }
+    }
+  }
+}
@@ -17,6 +17,7 @@ package com.google.nigori.server;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
 
 import com.google.nigori.common.Nonce;
 import com.google.nigori.common.RevValue;
@@ -83,6 +84,111 @@ public interface Database {
 	public boolean putRecord(User user, byte[] key, byte[] revision, byte[] data);
 	public boolean deleteRecord(User user, byte[] key);
 
+  /**
+   * Get the records for many keys at once, saving a round trip to the storage for each key.
+   *
+   * @param user
+   * @param keys
+   * @return a list with an element for each key, in the same order, which is what
+   *         {@link #getRecord(User, byte[])} would have returned for that key
+   * @throws IOException
+   */
+  public List<Collection<RevValue>> getRecords(User user, List<byte[]> keys) throws IOException;
+
+  /**
+   * Get the revisions for many keys at once, saving a round trip to the storage for each key.
+   *
+   * @param user
+   * @param keys
+   * @return a list with an element for each key, in the same order, which is what
+   *         {@link #getRevisions(User, byte[])} would have returned for that key
+   * @throws IOException
+   */
+  public List<Collection<byte[]>> getRevisions(User user, List<byte[]> keys) throws IOException;
+
+  /**
+   * Get the values of several revisions of one key at once, saving a round trip to the storage for
+   * each revision.
+   *
+   * @param user
+   * @param key
+   * @param revisions
+   * @return a list with an element for each revision, in the same order, which is what
+   *         {@link #getRevision(User, byte[], byte[])} would have returned for that revision
+   * @throws IOException
+   */
+  public List<RevValue> getRevisionValues(User user, byte[] key, List<byte[]> revisions)
+      throws IOException;
+
+  /**
+   * Put many records at once, where the storage supports it this is done in a single transaction or
+   * batch.
+   *
+   * @param user
+   * @param records
+   * @return an array with an element for each record, in the same order, which is what
+   *         {@link #putRecord(User, byte[], byte[], byte[])} would have returned for that record
+   */
+  public boolean[] putRecords(User user, List<KeyRevValue> records);
+
+  /**
+   * Put many records at once as {@link #putRecords(User, List)} does, except that a record is not
+   * put if it would take the user's usage over quota. Usage is checked in the same transaction as
+   * the puts, so puts made at the same time can't take the user over quota between them. Repeating
+   * a put of a revision which already exists uses nothing so is never refused.
+   *
+   * @param user
+   * @param records
+   * @param quota the most the user may store
+   * @return an array with an element for each record, in the same order, false for records refused
+   *         because of the quota and otherwise what {@link #putRecord(User, byte[], byte[], byte[])}
+   *         would have returned for that record
+   */
+  public boolean[] putRecords(User user, List<KeyRevValue> records, StorageUsage quota);
+
+  /**
+   * Get how much the user is storing, this is kept up to date as records are put and deleted so does
+   * not require looking at the records.
+   *
+   * @param user
+   * @return the user's storage usage
+   * @throws IOException
+   */
+  public StorageUsage getUsage(User user) throws IOException;
+
+  /**
+   * Get the keys which have changed since {@code since} in the user's sequence of changes. Each put
+   * which adds a revision and each delete which removes a key is given the next number in the
+   * sequence, starting from 1, and only the latest change to each key is kept.
+   *
+   * @param user
+   * @param since the sequence number of the last change already seen, 0 for all changes
+   * @param limit the most changes to return, must be positive
+   * @return the changes with sequence numbers greater than {@code since} in increasing order
+   * @throws IOException
+   */
+  public List<KeyChange> getChanges(User user, long since, int limit) throws IOException;
+
+  /**
+   * @param user
+   * @return the sequence number of the user's latest change or 0 if there have been no changes
+   * @throws IOException
+   */
+  public long getSequence(User user) throws IOException;
+
+  /**
+   * Replace the user's change log, so that a user can be moved to another database without their
+   * changes being renumbered and clients which have seen some of them missing the rest. The user's
+   * sequence number becomes that of the last change and later changes carry on from there.
+   *
+   * @param user
+   * @param changes the user's whole change log as read with {@link #getChanges(User, long, int)},
+   *          in increasing order of sequence number
+   * @return whether the change log was replaced
+   * @throws IOException
+   */
+  public boolean setChanges(User user, List<KeyChange> changes) throws IOException;
+
 	/**
 	 * Clear out old nonces which are now too old to be considered.
 	 */
@@ -95,4 +201,29 @@ public interface Database {
    * @throws IOException 
    */
   Collection<byte[]> getIndices(User user) throws IOException;
+
+  /**
+   * Get a page of the indices for the user, so that users with very many indices can be listed
+   * without holding them all at once. Indices are returned in an order determined by the database
+   * which stays the same between pages.
+   *
+   * @param user the user to get the indices for
+   * @param cursor null to start at the beginning, otherwise the cursor of the previous page
+   * @param limit the most indices to return, must be positive
+   * @return the page of indices, its cursor may be set even if the next page will be empty
+   * @throws IOException
+   */
+  Page<byte[]> getIndices(User user, byte[] cursor, int limit) throws IOException;
+
+  /**
+   * Get a page of the revisions for a key, in the same way as {@link #getIndices(User, byte[], int)}
+   *
+   * @param user
+   * @param key
+   * @param cursor null to start at the beginning, otherwise the cursor of the previous page
+   * @param limit the most revisions to return, must be positive
+   * @return the page of revisions or null if there are no records for that key
+   * @throws IOException
+   */
+  Page<byte[]> getRevisions(User user, byte[] key, byte[] cursor, int limit) throws IOException;
 }
@@ -18,8 +18,13 @@ import static com.google.nigori.common.MessageLibrary.toBytes;
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -29,13 +34,22 @@ import com.google.nigori.common.DSASignature;
 import com.google.nigori.common.DSAVerify;
 import com.google.nigori.common.MessageLibrary;
 import com.google.nigori.common.NigoriMessages.AuthenticateRequest;
+import com.google.nigori.common.NigoriMessages.BatchRequest;
+import com.google.nigori.common.NigoriMessages.BatchResponse;
+import com.google.nigori.common.NigoriMessages.Change;
 import com.google.nigori.common.NigoriMessages.DeleteRequest;
+import com.google.nigori.common.NigoriMessages.GetChangesRequest;
+import com.google.nigori.common.NigoriMessages.GetChangesResponse;
+import com.google.nigori.common.NigoriMessages.GetDigestsRequest;
+import com.google.nigori.common.NigoriMessages.GetDigestsResponse;
 import com.google.nigori.common.NigoriMessages.GetIndicesRequest;
 import com.google.nigori.common.NigoriMessages.GetIndicesResponse;
 import com.google.nigori.common.NigoriMessages.GetRequest;
 import com.google.nigori.common.NigoriMessages.GetResponse;
 import com.google.nigori.common.NigoriMessages.GetRevisionsRequest;
 import com.google.nigori.common.NigoriMessages.GetRevisionsResponse;
+import com.google.nigori.common.NigoriMessages.Operation;
+import com.google.nigori.common.NigoriMessages.OperationResult;
 import com.google.nigori.common.NigoriMessages.PutRequest;
 import com.google.nigori.common.NigoriMessages.RegisterRequest;
 import com.google.nigori.common.NigoriMessages.UnregisterRequest;
@@ -45,10 +59,16 @@ import com.google.nigori.common.NotFoundException;
 import com.google.nigori.common.RevValue;
 import com.google.nigori.common.UnauthorisedException;
 import com.google.nigori.common.Util;
+import com.google.protobuf.ByteString;
 
 /**
  * Take messages from the {@link NigoriProtocol} and translate them to the {@link Database} if they
  * are valid
+ *
+ * Each request is carried out by a chain of calls on an {@link AsyncDatabase}. The
+ * {@link NigoriProtocol} methods use the database inline and so return once it is done, the
+ * {@code start} methods use the asynchronous database given to the constructor and return as soon
+ * as the first call on it has been made.
  * 
  * @author drt24
  * 
@@ -56,190 +76,858 @@ import com.google.nigori.common.Util;
 public class DatabaseNigoriProtocol implements NigoriProtocol {
 
   private static final Logger log = Logger.getLogger(DatabaseNigoriProtocol.class.getSimpleName());
-  private static void warning(String message, Exception exception){
+  private static void warning(String message, Throwable exception){
     log.log(Level.WARNING, message, exception);
   }
   private static void severe(String message, Exception exception){
     log.log(Level.SEVERE, message, exception);
   }
-  private final Database database;
+  private final AsyncDatabase inline;
+  private final AsyncDatabase async;
+  private final StorageUsage quota;
+  private final HashTrees trees;
+  private final ChangeNotifier notifier;
 
   public DatabaseNigoriProtocol(Database database) {
-    this.database = database;
+    this(database, StorageUsage.UNLIMITED);
   }
 
   /**
-   * Check {@code nonce} is valid. If so, this method returns; else throws a ServletException
+   * @param database
+   * @param quota the most each user may store, puts which would take a user over it are refused
+   *          with a {@link QuotaExceededException}
+   */
+  public DatabaseNigoriProtocol(Database database, StorageUsage quota) {
+    this(database, quota, new ChangeNotifier());
+  }
+
+  /**
+   * @param database
+   * @param quota
+   * @param notifier told about the changes made through this protocol, and watched by get-changes
+   *          requests which wait for a change
+   */
+  public DatabaseNigoriProtocol(Database database, StorageUsage quota, ChangeNotifier notifier) {
+    this(database, BlockingAsyncDatabase.inline(database), quota, notifier);
+  }
+
+  /**
+   * @param database used by the {@link NigoriProtocol} methods and for digests
+   * @param async the same database as used by the {@code start} methods, such as a
+   *          {@link BlockingAsyncDatabase} on a pool dedicated to storage I/O
+   * @param quota
+   * @param notifier
+   */
+  public DatabaseNigoriProtocol(Database database, AsyncDatabase async, StorageUsage quota,
+      ChangeNotifier notifier) {
+    this.inline = BlockingAsyncDatabase.inline(database);
+    this.async = async;
+    this.quota = quota;
+    this.trees = new HashTrees(database);
+    this.notifier = notifier;
+  }
+
+  public ChangeNotifier getNotifier() {
+    return notifier;
+  }
+
+  /**
+   * @return a future which has already failed with {@code failure}
+   */
+  private static <T> CompletableFuture<T> failed(Throwable failure) {
+    CompletableFuture<T> future = new CompletableFuture<T>();
+    future.completeExceptionally(failure);
+    return future;
+  }
+
+  /**
+   * @return {@code failure} ready to be thrown from a stage of a future, so that the future fails
+   *         with it
+   */
+  private static CompletionException wrap(Throwable failure) {
+    if (failure instanceof CompletionException) {
+      return (CompletionException) failure;
+    }
+    return new CompletionException(failure);
+  }
+
+  /**
+   * @param failure what a future failed with
+   * @return the exception thrown by the stage which failed, rather than the one wrapping it
+   */
+  public static Throwable cause(Throwable failure) {
+    if (failure instanceof CompletionException && failure.getCause() != null) {
+      return failure.getCause();
+    }
+    return failure;
+  }
+
+  /**
+   * Wait for a future and throw the exception it failed with
+   */
+  private static <T> T join(CompletableFuture<T> future) throws IOException, NotFoundException,
+      UnauthorisedException {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      Throwable cause = cause(e);
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof NotFoundException) {
+        throw (NotFoundException) cause;
+      } else if (cause instanceof UnauthorisedException) {
+        throw (UnauthorisedException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * {@link #join(CompletableFuture)} for requests which never fail with a {@link NotFoundException}
+   */
+  private static <T> T joinFound(CompletableFuture<T> future) throws IOException,
+      UnauthorisedException {
+    try {
+      return join(future);
+    } catch (NotFoundException e) {
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * Check the request was signed by the user and its nonce has not been used before.
    * 
-   * @param schnorrS
-   * @param schnorrE
-   * @param message
-   * @throws ServletException
+   * @param database
+   * @param auth
+   * @param command
+   * @param payload
+   * @return the user, or a future failed with an {@link UnauthorisedException} if the request is
+   *         not theirs
    */
-  private User authenticateUser(AuthenticateRequest auth, String command, byte[]... payload)
-      throws UnauthorisedException, CryptoException {
+  private CompletableFuture<User> authenticateUser(final AsyncDatabase database,
+      AuthenticateRequest auth, String command, byte[]... payload) {
 
-    byte[] publicHash = auth.getPublicKey().toByteArray();
+    final byte[] publicHash = auth.getPublicKey().toByteArray();
     List<byte[]> byteSig = Util.splitBytes(auth.getSig().toByteArray());
     byte[] dsaR = byteSig.get(0);
     byte[] dsaS = byteSig.get(1);
-    Nonce nonce = new Nonce(auth.getNonce().toByteArray());
+    final Nonce nonce = new Nonce(auth.getNonce().toByteArray());
     String serverName = auth.getServerName();
-    try {
-      byte[] publicKey = database.getPublicKey(publicHash);
+    final DSASignature sig =
+        new DSASignature(dsaR, dsaS, Util.joinBytes(toBytes(serverName), nonce.nt(), nonce.nr(),
+            toBytes(command), Util.joinBytes(payload)));
 
-      DSASignature sig =
-          new DSASignature(dsaR, dsaS, Util.joinBytes(toBytes(serverName), nonce.nt(), nonce.nr(), toBytes(command), Util.joinBytes(payload)));
+    return database.getPublicKey(publicHash).thenCompose(publicKey -> {
       try {
         DSAVerify v = new DSAVerify(publicKey);
 
-        if (v.verify(sig)) {
-          boolean validNonce = database.checkAndAddNonce(nonce, publicHash);
-
-          boolean userExists = database.haveUser(publicHash);
-          if (validNonce && userExists) {
-            try {
-              return database.getUser(publicHash);
-            } catch (UserNotFoundException e) {
-              // TODO(drt24): potential security vulnerability - user existence oracle.
-              // Should not happen often - is only possible due to concurrency
-              throw new UnauthorisedException("No such user");
-            }
-          } else {
-            throw new UnauthorisedException("Invalid nonce or no such user");
-          }
-        } else {
-          throw new UnauthorisedException("The signature is invalid");
+        if (!v.verify(sig)) {
+          throw wrap(new UnauthorisedException("The signature is invalid"));
         }
       } catch (NoSuchAlgorithmException nsae) {
-        severe("authenticateUser",nsae);
-        throw new CryptoException("Internal error attempting to verify signature");
+        severe("authenticateUser", nsae);
+        throw wrap(new CryptoException("Internal error attempting to verify signature"));
       }
-    } catch (UserNotFoundException e1) {
-      warning("authenticateUser",e1);
-      throw new UnauthorisedException("No such user");
-    }
+      return database.checkAndAddNonce(nonce, publicHash).thenCombine(
+          database.haveUser(publicHash), (validNonce, userExists) -> validNonce && userExists);
+    }).thenCompose(valid -> {
+      if (!valid) {
+        throw wrap(new UnauthorisedException("Invalid nonce or no such user"));
+      }
+      return database.getUser(publicHash);
+    }).exceptionally(failure -> {
+      if (cause(failure) instanceof UserNotFoundException) {
+        // TODO(drt24): potential security vulnerability - user existence oracle.
+        // Only possible after the key was found due to concurrency
+        warning("authenticateUser", cause(failure));
+        throw wrap(new UnauthorisedException("No such user"));
+      }
+      throw wrap(failure);
+    });
   }
 
   @Override
   public boolean authenticate(AuthenticateRequest request) throws IOException {
     try {
-      authenticateUser(request,MessageLibrary.REQUEST_AUTHENTICATE);
+      return joinFound(startAuthenticate(inline, request));
     } catch (UnauthorisedException e) {
-      warning("unauthorized authenticate",e);
-      return false;
+      throw new IOException(e);
     }
-    return true;
+  }
+
+  public CompletableFuture<Boolean> startAuthenticate(AuthenticateRequest request) {
+    return startAuthenticate(async, request);
+  }
+
+  private CompletableFuture<Boolean> startAuthenticate(AsyncDatabase database,
+      AuthenticateRequest request) {
+    return authenticateUser(database, request, MessageLibrary.REQUEST_AUTHENTICATE).handle(
+        (user, failure) -> {
+          if (failure == null) {
+            return true;
+          }
+          if (cause(failure) instanceof UnauthorisedException) {
+            warning("unauthorized authenticate", cause(failure));
+            return false;
+          }
+          throw wrap(failure);
+        });
   }
 
   @Override
   public boolean register(RegisterRequest request) throws IOException {
+    try {
+      return joinFound(startRegister(inline, request));
+    } catch (UnauthorisedException e) {
+      throw new IOException(e);
+    }
+  }
+
+  public CompletableFuture<Boolean> startRegister(RegisterRequest request) {
+    return startRegister(async, request);
+  }
+
+  private CompletableFuture<Boolean> startRegister(AsyncDatabase database,
+      RegisterRequest request) {
     // TODO(drt24): validate request.getToken()
     byte[] publicKey = request.getPublicKey().toByteArray();
     try {
       return database.addUser(publicKey, Util.hashKey(publicKey));
     } catch (NoSuchAlgorithmException e) {
-      throw new IOException(e);
+      return failed(new IOException(e));
     }
   }
 
   @Override
   public boolean unregister(UnregisterRequest request) throws IOException, UnauthorisedException {
-    AuthenticateRequest auth = request.getAuth();
-    User user = authenticateUser(auth,MessageLibrary.REQUEST_UNREGISTER);
+    return joinFound(startUnregister(inline, request));
+  }
 
-    return database.deleteUser(user);
+  public CompletableFuture<Boolean> startUnregister(UnregisterRequest request) {
+    return startUnregister(async, request);
+  }
+
+  private CompletableFuture<Boolean> startUnregister(final AsyncDatabase database,
+      UnregisterRequest request) {
+    AuthenticateRequest auth = request.getAuth();
+    return authenticateUser(database, auth, MessageLibrary.REQUEST_UNREGISTER).thenCompose(
+        user -> database.deleteUser(user));
   }
 
   @Override
   public GetResponse get(GetRequest request) throws IOException, NotFoundException,
       UnauthorisedException {
-    byte[] index = request.getKey().toByteArray();
+    return join(startGet(inline, request));
+  }
+
+  public CompletableFuture<GetResponse> startGet(GetRequest request) {
+    return startGet(async, request);
+  }
+
+  private CompletableFuture<GetResponse> startGet(final AsyncDatabase database,
+      GetRequest request) {
+    final byte[] index = request.getKey().toByteArray();
     AuthenticateRequest auth = request.getAuth();
-    User user;
-    byte[] revision = null;
-    if (request.hasRevision()) {
-      revision = request.getRevision().toByteArray();
-      user = authenticateUser(auth, MessageLibrary.REQUEST_GET, index, revision);
-    } else {
-      user = authenticateUser(auth, MessageLibrary.REQUEST_GET, index);
+    final byte[] revision = request.hasRevision() ? request.getRevision().toByteArray() : null;
+    final byte[] fingerprint =
+        request.hasFingerprint() ? request.getFingerprint().toByteArray() : null;
+    List<byte[]> payload = new ArrayList<byte[]>(3);
+    payload.add(index);
+    if (revision != null) {
+      payload.add(revision);
+    }
+    final List<byte[]> revisions = new ArrayList<byte[]>(request.getRevisionsCount());
+    for (ByteString rev : request.getRevisionsList()) {
+      revisions.add(rev.toByteArray());
     }
+    if (!revisions.isEmpty()) {
+      payload.add(MessageLibrary.revisionsPayload(revisions));
+    }
+    if (fingerprint != null) {
+      payload.add(MessageLibrary.fingerprintPayload(fingerprint));
+    }
+    return authenticateUser(database, auth, MessageLibrary.REQUEST_GET,
+        payload.toArray(new byte[payload.size()][])).thenCompose(user -> {
+      if (!revisions.isEmpty()) {
+        if (revision != null) {
+          revisions.add(0, revision);
+        }
+        // All the revisions in one lookup, only those which exist are returned
+        return database.getRevisionValues(user, index, revisions).thenApply(revValues -> {
+          Collection<RevValue> value = new ArrayList<RevValue>(revisions.size());
+          for (RevValue revVal : revValues) {
+            if (revVal != null) {
+              value.add(revVal);
+            }
+          }
+          if (value.isEmpty()) {
+            throw wrap(new NotFoundException(
+                "Cannot find requested index with any of the revisions"));
+          }
+          return MessageLibrary.getResponseAsProtobuf(value);
+        });
+      }
 
-    Collection<RevValue> value;
+      if (revision != null) {
+        return database.getRevision(user, index, revision).thenApply(revVal -> {
+          if (revVal == null) {
+            throw wrap(new NotFoundException("Cannot find requested index with revision"));
+          }
+          Collection<RevValue> value = new ArrayList<RevValue>(1);
+          value.add(revVal);
+          return MessageLibrary.getResponseAsProtobuf(value);
+        });
+      }
+      if (fingerprint != null) {
+        // Only the revisions are needed to see whether the client already has the values
+        return database.getRevisions(user, index).thenCompose(current -> {
+          if (current == null) {
+            throw wrap(new NotFoundException("No value for that index"));
+          }
+          if (Arrays.equals(fingerprint, MessageLibrary.revisionsFingerprint(current))) {
+            return CompletableFuture.completedFuture(MessageLibrary
+                .getResponseNotModifiedAsProtobuf(fingerprint));
+          }
+          return getRecord(database, user, index);
+        });
+      }
+      return getRecord(database, user, index);
+    });
+  }
 
-    if (request.hasRevision()) {
-      
-      value = new ArrayList<RevValue>(1);
-      RevValue revVal = database.getRevision(user, index, revision);
-      if (revVal == null) {
-        throw new NotFoundException("Cannot find requested index with revision");
+  private static CompletableFuture<GetResponse> getRecord(AsyncDatabase database, User user,
+      byte[] index) {
+    return database.getRecord(user, index).thenApply(value -> {
+      if (value == null) {
+        throw wrap(new NotFoundException("No value for that index"));
       }
-      value.add(revVal);
-    } else {
-      value = database.getRecord(user, index);
-    }
-    if (value == null) {
-      throw new NotFoundException("No value for that index");
-    }
-    return MessageLibrary.getResponseAsProtobuf(value);
+      List<byte[]> revisions = new ArrayList<byte[]>(value.size());
+      for (RevValue revValue : value) {
+        revisions.add(revValue.getRevision().getBytes());
+      }
+      return MessageLibrary.getResponseAsProtobuf(value, MessageLibrary
+          .revisionsFingerprint(revisions));
+    });
   }
 
   @Override
   public GetIndicesResponse getIndices(GetIndicesRequest request) throws IOException,
       NotFoundException, UnauthorisedException {
+    return join(startGetIndices(inline, request));
+  }
+
+  public CompletableFuture<GetIndicesResponse> startGetIndices(GetIndicesRequest request) {
+    return startGetIndices(async, request);
+  }
+
+  private CompletableFuture<GetIndicesResponse> startGetIndices(final AsyncDatabase database,
+      final GetIndicesRequest request) {
     AuthenticateRequest auth = request.getAuth();
-    User user = authenticateUser(auth,MessageLibrary.REQUEST_GET_INDICES);
+    final byte[] cursor = request.hasCursor() ? request.getCursor().toByteArray() : null;
+    CompletableFuture<User> user;
+    if (request.hasCursor() || request.hasLimit()) {
+      user =
+          authenticateUser(database, auth, MessageLibrary.REQUEST_GET_INDICES, MessageLibrary
+              .pagePayload(cursor, request.getLimit()));
+    } else {
+      user = authenticateUser(database, auth, MessageLibrary.REQUEST_GET_INDICES);
+    }
 
-    Collection<byte[]> value = database.getIndices(user);
+    return user.thenCompose(
+        authenticated -> database.getIndices(authenticated, cursor, pageSize(request.getLimit())))
+        .thenApply(page -> {
+          if (page == null) {
+            throw wrap(new NotFoundException("Cannot find indices"));
+          }
+          return MessageLibrary.getIndicesResponseAsProtobuf(page.getItems(), page.getCursor());
+        });
+  }
 
-    if (value == null) {
-      throw new NotFoundException("Cannot find indices");
+  /**
+   * Requests without a limit or with one which is too large get {@link MessageLibrary#MAX_PAGE_SIZE}
+   * so that responses stay a reasonable size
+   */
+  private static int pageSize(int limit) {
+    if (limit <= 0 || limit > MessageLibrary.MAX_PAGE_SIZE) {
+      return MessageLibrary.MAX_PAGE_SIZE;
     }
-    return MessageLibrary.getIndicesResponseAsProtobuf(value);
+    return limit;
   }
 
   @Override
   public GetRevisionsResponse getRevisions(GetRevisionsRequest request) throws IOException,
       NotFoundException, UnauthorisedException {
-    byte[] index = request.getKey().toByteArray();
-    AuthenticateRequest auth = request.getAuth();
-    User user = authenticateUser(auth,MessageLibrary.REQUEST_GET_REVISIONS,index);
+    return join(startGetRevisions(inline, request));
+  }
 
-    Collection<byte[]> value = database.getRevisions(user, index);
+  public CompletableFuture<GetRevisionsResponse> startGetRevisions(GetRevisionsRequest request) {
+    return startGetRevisions(async, request);
+  }
 
-    if (value == null) {
-      throw new NotFoundException("Cannot find requested key");
+  private CompletableFuture<GetRevisionsResponse> startGetRevisions(final AsyncDatabase database,
+      final GetRevisionsRequest request) {
+    final byte[] index = request.getKey().toByteArray();
+    AuthenticateRequest auth = request.getAuth();
+    final byte[] cursor = request.hasCursor() ? request.getCursor().toByteArray() : null;
+    CompletableFuture<User> user;
+    if (request.hasFingerprint()) {
+      user =
+          authenticateUser(database, auth, MessageLibrary.REQUEST_GET_REVISIONS, index,
+              MessageLibrary.pagePayload(cursor, request.getLimit()), MessageLibrary
+                  .fingerprintPayload(request.getFingerprint().toByteArray()));
+    } else if (request.hasCursor() || request.hasLimit()) {
+      user =
+          authenticateUser(database, auth, MessageLibrary.REQUEST_GET_REVISIONS, index,
+              MessageLibrary.pagePayload(cursor, request.getLimit()));
+    } else {
+      user = authenticateUser(database, auth, MessageLibrary.REQUEST_GET_REVISIONS, index);
     }
-    return MessageLibrary.getRevisionsResponseAsProtobuf(value);
+
+    return user.thenCompose(
+        authenticated -> database.getRevisions(authenticated, index, cursor, pageSize(request
+            .getLimit()))).thenApply(page -> {
+      if (page == null) {
+        throw wrap(new NotFoundException("Cannot find requested key"));
+      }
+      if (cursor == null && !page.hasMore()) {
+        // All the revisions are in this page so the client can use the fingerprint next time
+        byte[] fingerprint = MessageLibrary.revisionsFingerprint(page.getItems());
+        if (request.hasFingerprint()
+            && Arrays.equals(fingerprint, request.getFingerprint().toByteArray())) {
+          return MessageLibrary.getRevisionsResponseNotModifiedAsProtobuf(fingerprint);
+        }
+        return MessageLibrary.getRevisionsResponseAsProtobuf(page.getItems(), null, fingerprint);
+      }
+      return MessageLibrary.getRevisionsResponseAsProtobuf(page.getItems(), page.getCursor());
+    });
   }
 
   @Override
   public boolean put(PutRequest request) throws IOException, UnauthorisedException {
+    return joinFound(startPut(inline, request));
+  }
+
+  public CompletableFuture<Boolean> startPut(PutRequest request) {
+    return startPut(async, request);
+  }
+
+  private CompletableFuture<Boolean> startPut(final AsyncDatabase database, PutRequest request) {
     AuthenticateRequest auth = request.getAuth();
 
-    byte[] index = request.getKey().toByteArray();
-    byte[] revision = request.getRevision().toByteArray();
-    byte[] value = request.getValue().toByteArray();
-    User user = authenticateUser(auth, MessageLibrary.REQUEST_PUT, index, revision, value);
+    final byte[] index = request.getKey().toByteArray();
+    final byte[] revision = request.getRevision().toByteArray();
+    final byte[] value = request.getValue().toByteArray();
+    return authenticateUser(database, auth, MessageLibrary.REQUEST_PUT, index, revision, value)
+        .thenCompose(user -> {
+          CompletableFuture<Boolean> put;
+          if (quota == StorageUsage.UNLIMITED) {
+            put = database.putRecord(user, index, revision, value);
+          } else {
+            put =
+                database.putRecords(user,
+                    Collections.singletonList(new KeyRevValue(index, revision, value)), quota)
+                    .thenApply(puts -> puts[0]);
+          }
+          return put.thenCompose(done -> {
+            if (done) {
+              notifier.changed(user);
+              return CompletableFuture.completedFuture(true);
+            }
+            return alreadyPut(database, user, index, revision).thenCompose(already -> {
+              if (already || quota == StorageUsage.UNLIMITED) {
+                return CompletableFuture.completedFuture(already);
+              }
+              // The database refused it, say why if it was the quota
+              return database.getUsage(user).thenCombine(
+                  database.getRevisions(user, index, null, 1), (usage, existing) -> {
+                    StorageUsage after = usage.addPut(existing == null, index, revision, value);
+                    if (after.exceeds(quota)) {
+                      throw wrap(new QuotaExceededException("Put would take usage to " + after
+                          + " which exceeds quota " + quota));
+                    }
+                    return false;
+                  });
+            });
+          });
+        });
+  }
 
-    return database.putRecord(user, index, revision, value);
+  /**
+   * Revisions can't change, so a put of one which already exists has done what was asked even if
+   * the value differs: values are encrypted afresh each time so a repeated put sends different
+   * bytes.
+   */
+  private static CompletableFuture<Boolean> alreadyPut(AsyncDatabase database, User user,
+      byte[] index, byte[] revision) {
+    return database.getRevision(user, index, revision).thenApply(revVal -> revVal != null);
   }
 
   @Override
   public boolean delete(DeleteRequest request) throws IOException, NotFoundException,
       UnauthorisedException {
+    return join(startDelete(inline, request));
+  }
+
+  public CompletableFuture<Boolean> startDelete(DeleteRequest request) {
+    return startDelete(async, request);
+  }
+
+  private CompletableFuture<Boolean> startDelete(final AsyncDatabase database,
+      final DeleteRequest request) {
     AuthenticateRequest auth = request.getAuth();
 
-    byte[] index = request.getKey().toByteArray();
-    User user = authenticateUser(auth,MessageLibrary.REQUEST_DELETE,index);
+    final byte[] index = request.getKey().toByteArray();
+    return authenticateUser(database, auth, MessageLibrary.REQUEST_DELETE, index).thenCompose(
+        user -> database.getRecord(user, index).thenCompose(record -> {
+          if (record == null) {
+            throw wrap(new NotFoundException("No such index: "
+                + Base64.encodeBase64(request.getKey().toByteArray())));
+          }
+          return database.deleteRecord(user, index);
+        }).thenApply(deleted -> {
+          if (deleted) {
+            notifier.changed(user);
+          }
+          return deleted;
+        }));
+  }
+
+  @Override
+  public BatchResponse batch(BatchRequest request) throws IOException, UnauthorisedException {
+    return joinFound(startBatch(inline, request));
+  }
+
+  public CompletableFuture<BatchResponse> startBatch(BatchRequest request) {
+    return startBatch(async, request);
+  }
+
+  private CompletableFuture<BatchResponse> startBatch(final AsyncDatabase database,
+      BatchRequest request) {
+    final List<Operation> operations = request.getOperationsList();
+    return authenticateUser(database, request.getAuth(), MessageLibrary.REQUEST_BATCH,
+        MessageLibrary.batchPayload(operations)).thenCompose(user -> {
+      final BatchResponse.Builder response = BatchResponse.newBuilder();
+      // Each run starts once the one before it is done so the results stay in order
+      CompletableFuture<Void> done = CompletableFuture.completedFuture(null);
+      boolean writes = false;
+      int start = 0;
+      while (start < operations.size()) {
+        // Consecutive operations of the same type are done in one call to the database where it can
+        String type = operations.get(start).getType();
+        int end = start + 1;
+        while (end < operations.size() && type.equals(operations.get(end).getType())) {
+          ++end;
+        }
+        final List<Operation> run = operations.subList(start, end);
+        if (MessageLibrary.REQUEST_GET.equals(type)) {
+          done = done.thenCompose(v -> batchGet(database, user, run, response));
+        } else if (MessageLibrary.REQUEST_GET_REVISIONS.equals(type)) {
+          done = done.thenCompose(v -> batchGetRevisions(database, user, run, response));
+        } else if (MessageLibrary.REQUEST_PUT.equals(type)) {
+          writes = true;
+          done = done.thenCompose(v -> batchPut(database, user, run, response));
+        } else if (MessageLibrary.REQUEST_DELETE.equals(type)) {
+          writes = true;
+          for (final Operation operation : run) {
+            done =
+                done.thenCompose(v -> database.deleteRecord(user, operation.getKey().toByteArray()))
+                    .thenAccept(deleted -> response.addResults(result(deleted)));
+          }
+        } else {
+          log.warning("Unknown operation in batch: " + type);
+          done = done.thenRun(() -> {
+            for (int i = 0; i < run.size(); ++i) {
+              response.addResults(result(false));
+            }
+          });
+        }
+        start = end;
+      }
+      if (writes) {
+        // Those waiting for changes re-read them so a wake up without one does no harm
+        done = done.whenComplete((v, failure) -> notifier.changed(user));
+      }
+      return done.thenApply(v -> response.build());
+    });
+  }
+
+  private static OperationResult result(boolean success) {
+    return OperationResult.newBuilder().setSuccess(success).build();
+  }
+
+  private static void addGet(BatchResponse.Builder response, Collection<RevValue> value) {
+    if (value == null) {
+      response.addResults(result(false));
+    } else {
+      response.addResults(OperationResult.newBuilder().setSuccess(true).setGet(
+          MessageLibrary.getResponseAsProtobuf(value)));
+    }
+  }
+
+  private static CompletableFuture<Void> batchGet(final AsyncDatabase database, final User user,
+      final List<Operation> run, final BatchResponse.Builder response) {
+    List<byte[]> keys = new ArrayList<byte[]>(run.size());
+    for (Operation operation : run) {
+      if (!operation.hasRevision()) {
+        keys.add(operation.getKey().toByteArray());
+      }
+    }
+    return database.getRecords(user, keys).thenCompose(records -> {
+      Iterator<Collection<RevValue>> record = records.iterator();
+      CompletableFuture<Void> done = CompletableFuture.completedFuture(null);
+      for (final Operation operation : run) {
+        if (operation.hasRevision()) {
+          done =
+              done.thenCompose(
+                  v -> database.getRevision(user, operation.getKey().toByteArray(), operation
+                      .getRevision().toByteArray())).thenAccept(
+                  revVal -> addGet(response, revVal == null ? null : Collections
+                      .singletonList(revVal)));
+        } else {
+          final Collection<RevValue> value = record.next();
+          done = done.thenRun(() -> addGet(response, value));
+        }
+      }
+      return done;
+    });
+  }
+
+  private static CompletableFuture<Void> batchGetRevisions(AsyncDatabase database, User user,
+      List<Operation> run, final BatchResponse.Builder response) {
+    List<byte[]> keys = new ArrayList<byte[]>(run.size());
+    for (Operation operation : run) {
+      keys.add(operation.getKey().toByteArray());
+    }
+    return database.getRevisions(user, keys).thenAccept(allRevisions -> {
+      for (Collection<byte[]> revisions : allRevisions) {
+        if (revisions == null) {
+          response.addResults(result(false));
+        } else {
+          response.addResults(OperationResult.newBuilder().setSuccess(true).setRevisions(
+              MessageLibrary.getRevisionsResponseAsProtobuf(revisions)));
+        }
+      }
+    });
+  }
+
+  private CompletableFuture<Void> batchPut(final AsyncDatabase database, final User user,
+      final List<Operation> run, final BatchResponse.Builder response) {
+    final List<KeyRevValue> records = new ArrayList<KeyRevValue>(run.size());
+    for (Operation operation : run) {
+      if (operation.hasRevision() && operation.hasValue()) {
+        records.add(new KeyRevValue(operation.getKey().toByteArray(), operation.getRevision()
+            .toByteArray(), operation.getValue().toByteArray()));
+      }
+    }
+    CompletableFuture<boolean[]> puts;
+    if (quota == StorageUsage.UNLIMITED) {
+      puts = database.putRecords(user, records);
+    } else {
+      // Puts which would take the user over quota fail on their own, the rest still go ahead
+      puts = database.putRecords(user, records, quota);
+    }
+    return puts.thenCompose(put -> {
+      CompletableFuture<Void> done = CompletableFuture.completedFuture(null);
+      int i = 0;
+      for (Operation operation : run) {
+        if (operation.hasRevision() && operation.hasValue()) {
+          final KeyRevValue record = records.get(i);
+          if (put[i]) {
+            done = done.thenRun(() -> response.addResults(result(true)));
+          } else {
+            done =
+                done.thenCompose(
+                    v -> alreadyPut(database, user, record.getKey(), record.getRevision()))
+                    .thenAccept(already -> response.addResults(result(already)));
+          }
+          ++i;
+        } else {
+          done = done.thenRun(() -> response.addResults(result(false)));
+        }
+      }
+      return done;
+    });
+  }
+
+  /**
+   * If the request asks to wait and there are no changes yet this blocks until there is one or the
+   * wait runs out, callers which shouldn't block use {@link #startWatchChanges(GetChangesRequest)}.
+   */
+  @Override
+  public GetChangesResponse getChanges(GetChangesRequest request) throws IOException,
+      UnauthorisedException {
+    PendingChanges pending = joinFound(startWatchChanges(inline, request));
+    try {
+      GetChangesResponse response = pending.read();
+      if (response.getChangesCount() == 0 && pending.getWait() > 0) {
+        try {
+          if (pending.getWatch().await(pending.getWait())) {
+            response = pending.read();
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return response;
+    } finally {
+      pending.cancel();
+    }
+  }
+
+  /**
+   * Authenticate a get-changes request and, if it asks to wait, start watching for changes before
+   * reading them so that a change made in between is not missed. The caller can then read the
+   * changes and if there are none wait for the watch without holding a thread.
+   *
+   * @param request
+   * @return the authenticated request, which must be cancelled once it is done with
+   * @throws IOException
+   * @throws UnauthorisedException
+   */
+  public PendingChanges watchChanges(GetChangesRequest request) throws IOException,
+      UnauthorisedException {
+    return joinFound(startWatchChanges(inline, request));
+  }
+
+  /**
+   * {@link #watchChanges(GetChangesRequest)} without waiting for the database, the changes are then
+   * read with {@link PendingChanges#startRead()}
+   */
+  public CompletableFuture<PendingChanges> startWatchChanges(GetChangesRequest request) {
+    return startWatchChanges(async, request);
+  }
+
+  private CompletableFuture<PendingChanges> startWatchChanges(final AsyncDatabase database,
+      final GetChangesRequest request) {
+    CompletableFuture<User> user;
+    if (request.hasWait()) {
+      user =
+          authenticateUser(database, request.getAuth(), MessageLibrary.REQUEST_GET_CHANGES, Util
+              .long2bin(request.getSince()), Util.int2bin(request.getLimit()), Util
+              .int2bin(request.getWait()));
+    } else {
+      user =
+          authenticateUser(database, request.getAuth(), MessageLibrary.REQUEST_GET_CHANGES, Util
+              .long2bin(request.getSince()), Util.int2bin(request.getLimit()));
+    }
+    final int wait = Math.max(0, Math.min(request.getWait(), MessageLibrary.MAX_CHANGES_WAIT));
+    return user.thenApply(authenticated -> new PendingChanges(database, authenticated, request
+        .getSince(), pageSize(request.getLimit()), wait, wait > 0 ? notifier.watch(authenticated)
+        : null));
+  }
+
+  /**
+   * An authenticated get-changes request, which may be read more than once
+   */
+  public class PendingChanges {
+    private final AsyncDatabase database;
+    private final User user;
+    private final long since;
+    private final int limit;
+    private final int wait;
+    private final ChangeNotifier.Watch watch;
+
+    private PendingChanges(AsyncDatabase database, User user, long since, int limit, int wait,
+        ChangeNotifier.Watch watch) {
+      this.database = database;
+      this.user = user;
+      this.since = since;
+      this.limit = limit;
+      this.wait = wait;
+      this.watch = watch;
+    }
+
+    /**
+     * @return the changes since those the request has already seen
+     * @throws IOException
+     */
+    public GetChangesResponse read() throws IOException {
+      try {
+        return join(startRead());
+      } catch (NotFoundException e) {
+        throw new IOException(e);
+      } catch (UnauthorisedException e) {
+        throw new IOException(e);
+      }
+    }
+
+    /**
+     * @return a future of the changes since those the request has already seen, using the database
+     *         the request was watched with
+     */
+    public CompletableFuture<GetChangesResponse> startRead() {
+      // Read the sequence first so that it is never ahead of the changes listed
+      return database.getSequence(user).thenCompose(
+          sequence -> database.getChanges(user, since, limit).thenApply(keyChanges -> {
+            List<Change> changes = new ArrayList<Change>();
+            for (KeyChange change : keyChanges) {
+              changes.add(MessageLibrary.changeAsProtobuf(change.getKey(), change.getSequence(),
+                  change.isDeleted()));
+            }
+            return MessageLibrary.getChangesResponseAsProtobuf(changes, sequence);
+          }));
+    }
+
+    /**
+     * @return how long in milliseconds to wait for a change if there are none yet, 0 for not at all
+     */
+    public int getWait() {
+      return wait;
+    }
 
-    boolean exists = database.getRecord(user, index) != null;
-    if (!exists) {
-      throw new NotFoundException("No such index: "
-          + Base64.encodeBase64(request.getKey().toByteArray()));
+    /**
+     * @return the watch for the user's changes, or null if the request doesn't wait
+     */
+    public ChangeNotifier.Watch getWatch() {
+      return watch;
     }
 
-    return database.deleteRecord(user, index);
+    public void cancel() {
+      if (watch != null) {
+        watch.cancel();
+      }
+    }
+  }
+
+  @Override
+  public GetDigestsResponse getDigests(GetDigestsRequest request) throws IOException,
+      NotFoundException, UnauthorisedException {
+    return join(startGetDigests(inline, request));
+  }
+
+  /**
+   * The digests are kept up to date from the blocking database, so once the user is authenticated
+   * that is done on the thread which completed the authentication.
+   */
+  public CompletableFuture<GetDigestsResponse> startGetDigests(GetDigestsRequest request) {
+    return startGetDigests(async, request);
+  }
+
+  private CompletableFuture<GetDigestsResponse> startGetDigests(AsyncDatabase database,
+      final GetDigestsRequest request) {
+    byte[][] nodes = new byte[request.getNodesCount()][];
+    for (int i = 0; i < nodes.length; ++i) {
+      nodes[i] = request.getNodes(i).toByteArray();
+    }
+    return authenticateUser(database, request.getAuth(), MessageLibrary.REQUEST_GET_DIGESTS, nodes)
+        .thenApply(user -> {
+          try {
+            HashTree tree = trees.get(user);
+            GetDigestsResponse.Builder response = GetDigestsResponse.newBuilder();
+            for (ByteString node : request.getNodesList()) {
+              response.addNodes(tree.getNode(node));
+            }
+            return response.build();
+          } catch (IOException e) {
+            throw wrap(e);
+          } catch (NotFoundException e) {
+            throw wrap(e);
+          }
+        });
   }
 
   public static class CryptoException extends IOException {
@@ -249,4 +937,15 @@ public class DatabaseNigoriProtocol implements NigoriProtocol {
       super(message);
     }
   }
+
+  /**
+   * Thrown when a request would take a user over their storage quota
+   */
+  public static class QuotaExceededException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public QuotaExceededException(String message) {
+      super(message);
+    }
+  }
 }
@@ -26,10 +26,13 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
 
 import com.google.nigori.common.Nonce;
 import com.google.nigori.common.RevValue;
+import com.google.nigori.common.Util;
 
 /**
  * An in-memory database used for system testing.
@@ -40,13 +43,16 @@ import com.google.nigori.common.RevValue;
  * @author Alastair Beresford
  *
  */
-public class HashMapDatabase extends AbstractDatabase implements Serializable {
+public class HashMapDatabase extends AbstractDatabase implements Serializable, UserLister {
 
   private static final long serialVersionUID = 1L;
   // TODO(drt24) provide a WeakHashMap version so this can be used as a cache
-	private HashMap<User,Map<Bytes, Map<Bytes,Bytes>>> stores = new HashMap<User,Map<Bytes, Map<Bytes,Bytes>>>();
-	private HashMap<Bytes,User> users = new HashMap<Bytes,User>();
+	private HashMap<User,NavigableMap<Bytes, NavigableMap<Bytes,Bytes>>> stores = new HashMap<User,NavigableMap<Bytes, NavigableMap<Bytes,Bytes>>>();
+	private TreeMap<Bytes,User> users = new TreeMap<Bytes,User>();
 	private HashMap<Bytes,Set<Nonce>> nonces = new HashMap<Bytes,Set<Nonce>>();
+	// records, revisions, bytes
+	private HashMap<User,long[]> usage = new HashMap<User,long[]>();
+	private HashMap<User,ChangeLog> changes = new HashMap<User,ChangeLog>();
 
 	@Override
 	public boolean addUser(byte[] publicKey, byte[] publicHash) {
@@ -56,7 +62,9 @@ public class HashMapDatabase extends AbstractDatabase implements Serializable {
 	  }
 	  User user = new JUser(publicKey, publicHash, new Date());
 		users.put(Bytes.copyFrom(publicHash),user);
-		stores.put(user, new HashMap<Bytes, Map<Bytes,Bytes>>());
+		stores.put(user, new TreeMap<Bytes, NavigableMap<Bytes,Bytes>>());
+		usage.put(user, new long[3]);
+		changes.put(user, new ChangeLog());
 		return true;
 	}
 	
@@ -69,6 +77,10 @@ public class HashMapDatabase extends AbstractDatabase implements Serializable {
 	public boolean deleteUser(User existingUser) {
 		//TODO(beresford): check authority to carry out action
 	  User user = users.remove(Bytes.copyFrom(existingUser.getPublicHash()));
+	  if (user != null) {
+	    usage.remove(user);
+	    changes.remove(user);
+	  }
 	  return user != null && stores.remove(user) != null;
 	}
 
@@ -161,34 +173,194 @@ public class HashMapDatabase extends AbstractDatabase implements Serializable {
     }
   }
 
+  @Override
+  public Page<byte[]> getIndices(User user, byte[] cursor, int limit) {
+    return page(stores.get(user), cursor, limit);
+  }
+
+  @Override
+  public Page<byte[]> getPublicHashes(byte[] cursor, int limit) {
+    return page(users, cursor, limit);
+  }
+
+  @Override
+  public Page<byte[]> getRevisions(User user, byte[] key, byte[] cursor, int limit) {
+    if (key == null) {
+      return null;
+    }
+    NavigableMap<Bytes, Bytes> revisions = stores.get(user).get(Bytes.copyFrom(key));
+    if (revisions == null) {
+      return null;
+    }
+    return page(revisions, cursor, limit);
+  }
+
+  /**
+   * Page through the keys of a sorted map, the cursor is the last key of the page
+   */
+  private static Page<byte[]> page(NavigableMap<Bytes, ?> map, byte[] cursor, int limit) {
+    NavigableMap<Bytes, ?> from = cursor == null ? map : map.tailMap(Bytes.copyFrom(cursor), false);
+    List<byte[]> items = new ArrayList<byte[]>();
+    for (Bytes key : from.keySet()) {
+      if (items.size() == limit) {
+        return new Page<byte[]>(items, items.get(limit - 1));
+      }
+      items.add(key.toByteArray());
+    }
+    return new Page<byte[]>(items, null);
+  }
+
   @Override
   public boolean putRecord(User user, byte[] key, byte[] revision, byte[] value) {
     // TODO(beresford): check authority to carry out action
     if (key == null || revision == null || value == null) {
       return false;
     }
-    Map<Bytes, Bytes> revisions = stores.get(user).get(Bytes.copyFrom(key));
+    long[] userUsage = usage.get(user);
+    NavigableMap<Bytes, Bytes> revisions = stores.get(user).get(Bytes.copyFrom(key));
     if (revisions == null) {
-      revisions = new HashMap<Bytes, Bytes>();
+      revisions = new TreeMap<Bytes, Bytes>();
       stores.get(user).put(Bytes.copyFrom(key), revisions);
+      userUsage[0] += 1;
+      userUsage[2] += key.length;
     }
     Bytes bRevision = Bytes.copyFrom(revision);
     Bytes bValue = Bytes.copyFrom(value);
     Bytes existing = revisions.get(bRevision);
     if (existing == null) {
       revisions.put(bRevision, bValue);
+      userUsage[1] += 1;
+      userUsage[2] += revision.length + value.length;
+      changes.get(user).add(key, false);
     } else if (!existing.equals(bValue)) {
       return false;
     }
     return true;
   }
 	
+  @Override
+  public List<Collection<RevValue>> getRecords(User user, List<byte[]> keys) {
+    List<Collection<RevValue>> answer = new ArrayList<Collection<RevValue>>(keys.size());
+    for (byte[] key : keys) {
+      answer.add(getRecord(user, key));
+    }
+    return answer;
+  }
+
+  @Override
+  public List<Collection<byte[]>> getRevisions(User user, List<byte[]> keys) {
+    List<Collection<byte[]>> answer = new ArrayList<Collection<byte[]>>(keys.size());
+    for (byte[] key : keys) {
+      answer.add(getRevisions(user, key));
+    }
+    return answer;
+  }
+
+  @Override
+  public List<RevValue> getRevisionValues(User user, byte[] key, List<byte[]> revisions) {
+    List<RevValue> answer = new ArrayList<RevValue>(revisions.size());
+    Map<Bytes, Bytes> values = key == null ? null : stores.get(user).get(Bytes.copyFrom(key));
+    for (byte[] revision : revisions) {
+      Bytes value = values == null ? null : values.get(Bytes.copyFrom(revision));
+      answer.add(value == null ? null : new RevValue(revision, value.toByteArray()));
+    }
+    return answer;
+  }
+
+  @Override
+  public boolean[] putRecords(User user, List<KeyRevValue> records) {
+    boolean[] answer = new boolean[records.size()];
+    int i = 0;
+    for (KeyRevValue record : records) {
+      answer[i++] = putRecord(user, record.getKey(), record.getRevision(), record.getValue());
+    }
+    return answer;
+  }
+
+  @Override
+  public boolean[] putRecords(User user, List<KeyRevValue> records, StorageUsage quota) {
+    boolean[] answer = new boolean[records.size()];
+    int i = 0;
+    for (KeyRevValue record : records) {
+      if (!exceeds(user, record, quota)) {
+        answer[i] = putRecord(user, record.getKey(), record.getRevision(), record.getValue());
+      }
+      ++i;
+    }
+    return answer;
+  }
+
+  /**
+   * @return whether putting the record would take the user over quota
+   */
+  private boolean exceeds(User user, KeyRevValue record, StorageUsage quota) {
+    Map<Bytes, Bytes> revisions = stores.get(user).get(Bytes.copyFrom(record.getKey()));
+    if (revisions != null && revisions.containsKey(Bytes.copyFrom(record.getRevision()))) {
+      return false;
+    }
+    return getUsage(user).addPut(revisions == null, record.getKey(), record.getRevision(),
+        record.getValue()).exceeds(quota);
+  }
+
 	@Override
 	public boolean deleteRecord(User user, byte[] key) {
 		//TODO(beresford): check authority to carry out action
-	  return stores.get(user).remove(Bytes.copyFrom(key)) != null;
+	  Map<Bytes, Bytes> revisions = stores.get(user).remove(Bytes.copyFrom(key));
+	  if (revisions == null) {
+	    return false;
+	  }
+	  long[] userUsage = usage.get(user);
+	  userUsage[0] -= 1;
+	  userUsage[2] -= key.length;
+	  for (Map.Entry<Bytes, Bytes> rv : revisions.entrySet()) {
+	    userUsage[1] -= 1;
+	    userUsage[2] -= rv.getKey().toByteArray().length + rv.getValue().toByteArray().length;
+	  }
+	  changes.get(user).add(key, true);
+	  return true;
 	}
 
+  @Override
+  public StorageUsage getUsage(User user) {
+    long[] userUsage = usage.get(user);
+    if (userUsage == null) {
+      return StorageUsage.NONE;
+    }
+    return new StorageUsage(userUsage[0], userUsage[1], userUsage[2]);
+  }
+
+  @Override
+  public List<KeyChange> getChanges(User user, long since, int limit) {
+    ChangeLog log = changes.get(user);
+    List<KeyChange> answer = new ArrayList<KeyChange>();
+    if (log == null) {
+      return answer;
+    }
+    for (KeyChange change : log.changes.tailMap(since, false).values()) {
+      if (answer.size() == limit) {
+        break;
+      }
+      answer.add(change);
+    }
+    return answer;
+  }
+
+  @Override
+  public long getSequence(User user) {
+    ChangeLog log = changes.get(user);
+    return log == null ? 0 : log.sequence;
+  }
+
+  @Override
+  public boolean setChanges(User user, List<KeyChange> changes) {
+    ChangeLog log = this.changes.get(user);
+    if (log == null) {
+      return false;
+    }
+    log.set(changes);
+    return true;
+  }
+
   @Override
   public UserFactory getUserFactory() {
     return JUser.Factory.getInstance();
@@ -227,7 +399,43 @@ public class HashMapDatabase extends AbstractDatabase implements Serializable {
     }
   }
 
-  private static class Bytes implements Serializable {
+  /**
+   * The latest change to each of a user's keys, by sequence number and by key
+   */
+  private static class ChangeLog implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private long sequence = 0;
+    private final NavigableMap<Long, KeyChange> changes = new TreeMap<Long, KeyChange>();
+    private final Map<Bytes, Long> byKey = new HashMap<Bytes, Long>();
+
+    public void add(byte[] key, boolean deleted) {
+      Bytes bKey = Bytes.copyFrom(key);
+      Long previous = byKey.put(bKey, ++sequence);
+      if (previous != null) {
+        changes.remove(previous);
+      }
+      changes.put(sequence, new KeyChange(bKey.toByteArray(), sequence, deleted));
+    }
+
+    public void set(List<KeyChange> log) {
+      changes.clear();
+      byKey.clear();
+      sequence = 0;
+      for (KeyChange change : log) {
+        Bytes bKey = Bytes.copyFrom(change.getKey());
+        Long previous = byKey.put(bKey, change.getSequence());
+        if (previous != null) {
+          changes.remove(previous);
+        }
+        changes.put(change.getSequence(), new KeyChange(bKey.toByteArray(), change.getSequence(),
+            change.isDeleted()));
+        sequence = Math.max(sequence, change.getSequence());
+      }
+    }
+  }
+
+  private static class Bytes implements Serializable, Comparable<Bytes> {
     private static final long serialVersionUID = 1L;
 
     private final byte[] bytes;
@@ -273,5 +481,10 @@ public class HashMapDatabase extends AbstractDatabase implements Serializable {
       return true;
     }
 
+    @Override
+    public int compareTo(Bytes other) {
+      return Util.compareByteArrays(bytes, other.bytes);
+    }
+
   }
 }
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.nigori.common.NigoriConstants;
+import com.google.nigori.common.NigoriMessages.DigestEntry;
+import com.google.nigori.common.NigoriMessages.DigestNode;
+import com.google.nigori.common.NotFoundException;
+import com.google.nigori.common.Util;
+import com.google.protobuf.ByteString;
+
+/**
+ * A hash tree over one user's keys and the sets of their revisions, used to find where two stores
+ * differ without listing everything in them.
+ * 
+ * Keys are placed in leaves by the hash of the key, {@link #FANOUT} children per node and
+ * {@link #DEPTH} levels below the root. The digest of a key is the hash of the key and its sorted
+ * revisions and the digest of a node is the XOR of the digests of all the keys below it, so a change
+ * to one key only needs the nodes on its path updated.
+ * 
+ * @author drt24
+ * 
+ */
+public class HashTree {
+
+  public static final int FANOUT = 16;
+  public static final int DEPTH = 3;
+  private static final int BITS = 4;// log2(FANOUT)
+  private static final int LEAVES = 1 << (BITS * DEPTH);
+
+  /**
+   * The nodes of all the levels one after another, the root first, null where a node is empty
+   */
+  private final byte[][] nodes = new byte[(FANOUT * LEAVES - 1) / (FANOUT - 1)][];
+  @SuppressWarnings("unchecked")
+  private final Map<ByteString, byte[]>[] leaves = new Map[LEAVES];
+  private long sequence = -1;
+
+  /**
+   * @return the point in the user's change sequence which this tree is up to date with, -1 if it has
+   *         not been built yet
+   */
+  public synchronized long getSequence() {
+    return sequence;
+  }
+
+  public synchronized void setSequence(long sequence) {
+    this.sequence = sequence;
+  }
+
+  /**
+   * Remove everything from the tree so that it can be rebuilt
+   */
+  public synchronized void clear() {
+    for (int i = 0; i < nodes.length; ++i) {
+      nodes[i] = null;
+    }
+    for (int i = 0; i < leaves.length; ++i) {
+      leaves[i] = null;
+    }
+    sequence = -1;
+  }
+
+  /**
+   * Set the revisions of a key
+   * 
+   * @param key
+   * @param revisions null or empty if the key does not exist
+   */
+  public synchronized void update(byte[] key, Collection<byte[]> revisions) {
+    ByteString bKey = ByteString.copyFrom(key);
+    byte[] digest = revisions == null || revisions.isEmpty() ? null : digest(key, revisions);
+    int leaf = leafFor(key);
+    Map<ByteString, byte[]> entries = leaves[leaf];
+    if (entries == null) {
+      if (digest == null) {
+        return;
+      }
+      entries = new HashMap<ByteString, byte[]>();
+      leaves[leaf] = entries;
+    }
+    byte[] previous = digest == null ? entries.remove(bKey) : entries.put(bKey, digest);
+    if (previous == null && digest == null) {
+      return;
+    }
+    // Take the old digest out of and put the new one into each node on the path to the leaf
+    int offset = 0;
+    for (int level = 0; level <= DEPTH; ++level) {
+      int node = offset + (leaf >> (BITS * (DEPTH - level)));
+      nodes[node] = xor(xor(nodes[node], previous), digest);
+      offset += 1 << (BITS * level);
+    }
+  }
+
+  /**
+   * @param path the number of the child to take at each level, empty for the root
+   * @return the node, with the digests of its children or, for a leaf, its entries
+   * @throws NotFoundException if there is no such node
+   */
+  public synchronized DigestNode getNode(ByteString path) throws NotFoundException {
+    if (path.size() > DEPTH) {
+      throw new NotFoundException("No such node, too deep: " + path.size());
+    }
+    int offset = 0;
+    int number = 0;
+    for (int level = 0; level < path.size(); ++level) {
+      int child = path.byteAt(level);
+      if (child < 0 || child >= FANOUT) {
+        throw new NotFoundException("No such child: " + child);
+      }
+      offset += 1 << (BITS * level);
+      number = number * FANOUT + child;
+    }
+    DigestNode.Builder node =
+        DigestNode.newBuilder().setNode(path).setDigest(toByteString(nodes[offset + number]));
+    if (path.size() < DEPTH) {
+      int childOffset = offset + (1 << (BITS * path.size())) + number * FANOUT;
+      for (int child = 0; child < FANOUT; ++child) {
+        node.addChildren(toByteString(nodes[childOffset + child]));
+      }
+    } else if (leaves[number] != null) {
+      for (Map.Entry<ByteString, byte[]> entry : leaves[number].entrySet()) {
+        node.addEntries(DigestEntry.newBuilder().setKey(entry.getKey()).setDigest(
+            ByteString.copyFrom(entry.getValue())));
+      }
+    }
+    return node.build();
+  }
+
+  private static ByteString toByteString(byte[] digest) {
+    return digest == null ? ByteString.copyFrom(new byte[NigoriConstants.B_SHA1]) : ByteString
+        .copyFrom(digest);
+  }
+
+  /**
+   * XOR b into a, either may be null meaning all zeros
+   * 
+   * @return the result, which may be a
+   */
+  private static byte[] xor(byte[] a, byte[] b) {
+    if (b == null) {
+      return a;
+    }
+    if (a == null) {
+      return b.clone();
+    }
+    for (int i = 0; i < a.length; ++i) {
+      a[i] ^= b[i];
+    }
+    return a;
+  }
+
+  private static MessageDigest sha1() {
+    try {
+      return MessageDigest.getInstance(NigoriConstants.A_REVHASH);
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);// SHA-1 is always available
+    }
+  }
+
+  private static int leafFor(byte[] key) {
+    byte[] hash = sha1().digest(key);
+    return (((hash[0] & 0xff) << 8) | (hash[1] & 0xff)) >>> (16 - BITS * DEPTH);
+  }
+
+  /**
+   * The digest of a key and its revisions, which is the same whatever order the revisions are in
+   */
+  static byte[] digest(byte[] key, Collection<byte[]> revisions) {
+    List<byte[]> sorted = new ArrayList<byte[]>(revisions);
+    Collections.sort(sorted, new Comparator<byte[]>() {
+      @Override
+      public int compare(byte[] a, byte[] b) {
+        return Util.compareByteArrays(a, b);
+      }
+    });
+    byte[][] parts = new byte[sorted.size() + 1][];
+    parts[0] = key;
+    for (int i = 0; i < sorted.size(); ++i) {
+      parts[i + 1] = sorted.get(i);
+    }
+    return sha1().digest(Util.joinBytes(parts));
+  }
+}
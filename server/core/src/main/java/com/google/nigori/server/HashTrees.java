@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.nigori.common.MessageLibrary;
+import com.google.protobuf.ByteString;
+
+/**
+ * Keeps the {@link HashTree}s of the most recently used users in memory and brings them up to date
+ * from the database's change log before they are used, so only the keys which have changed since the
+ * tree was last used are read. A tree is built from scratch the first time it is used and if the
+ * user's change sequence has gone backwards.
+ * 
+ * Since the trees are brought up to date from the database several servers sharing a database can
+ * each keep their own.
+ * 
+ * @author drt24
+ * 
+ */
+public class HashTrees {
+
+  /**
+   * Default number of users whose trees are kept
+   */
+  public static final int DEFAULT_USERS = 100;
+
+  private final Database database;
+  private final Map<ByteString, HashTree> trees;
+
+  public HashTrees(Database database) {
+    this(database, DEFAULT_USERS);
+  }
+
+  /**
+   * @param database
+   * @param maxUsers the most users to keep trees for, the least recently used are dropped
+   */
+  public HashTrees(Database database, final int maxUsers) {
+    this.database = database;
+    this.trees = new LinkedHashMap<ByteString, HashTree>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<ByteString, HashTree> eldest) {
+        return size() > maxUsers;
+      }
+    };
+  }
+
+  /**
+   * @param user
+   * @return the user's tree, up to date with at least all the changes made before this was called
+   * @throws IOException
+   */
+  public HashTree get(User user) throws IOException {
+    ByteString publicHash = ByteString.copyFrom(user.getPublicHash());
+    HashTree tree;
+    synchronized (trees) {
+      tree = trees.get(publicHash);
+      if (tree == null) {
+        tree = new HashTree();
+        trees.put(publicHash, tree);
+      }
+    }
+    synchronized (tree) {
+      refresh(user, tree);
+    }
+    return tree;
+  }
+
+  private void refresh(User user, HashTree tree) throws IOException {
+    // Read first so that anything which changes while reading is applied next time
+    long sequence = database.getSequence(user);
+    if (tree.getSequence() < 0 || sequence < tree.getSequence()) {
+      rebuild(user, tree, sequence);
+      return;
+    }
+    while (tree.getSequence() < sequence) {
+      List<KeyChange> changes =
+          database.getChanges(user, tree.getSequence(), MessageLibrary.MAX_PAGE_SIZE);
+      if (changes.isEmpty()) {
+        break;
+      }
+      List<byte[]> keys = new ArrayList<byte[]>(changes.size());
+      for (KeyChange change : changes) {
+        keys.add(change.getKey());
+      }
+      update(user, tree, keys);
+      tree.setSequence(changes.get(changes.size() - 1).getSequence());
+    }
+  }
+
+  private void rebuild(User user, HashTree tree, long sequence) throws IOException {
+    tree.clear();
+    byte[] cursor = null;
+    do {
+      Page<byte[]> page = database.getIndices(user, cursor, MessageLibrary.MAX_PAGE_SIZE);
+      update(user, tree, page.getItems());
+      cursor = page.getCursor();
+    } while (cursor != null);
+    tree.setSequence(sequence);
+  }
+
+  private void update(User user, HashTree tree, List<byte[]> keys) throws IOException {
+    if (keys.isEmpty()) {
+      return;
+    }
+    List<Collection<byte[]>> revisions = database.getRevisions(user, keys);
+    for (int i = 0; i < keys.size(); ++i) {
+      tree.update(keys.get(i), revisions.get(i));
+    }
+  }
+}
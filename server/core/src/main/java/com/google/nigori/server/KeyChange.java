@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server;
+
+/**
+ * The most recent change to a key in a user's change log: either a revision was added to it or it
+ * was deleted. The log is compacted so only the latest change to each key is kept.
+ * 
+ * @author drt24
+ * 
+ */
+public class KeyChange {
+
+  private final byte[] key;
+  private final long sequence;
+  private final boolean deleted;
+
+  /**
+   * @param key
+   * @param sequence the position of the change in the user's sequence of changes
+   * @param deleted whether the key was deleted rather than had a revision added
+   */
+  public KeyChange(byte[] key, long sequence, boolean deleted) {
+    if (key == null) {
+      throw new NullPointerException("Null key not allowed");
+    }
+    this.key = key;
+    this.sequence = sequence;
+    this.deleted = deleted;
+  }
+
+  public byte[] getKey() {
+    return key;
+  }
+
+  public long getSequence() {
+    return sequence;
+  }
+
+  public boolean isDeleted() {
+    return deleted;
+  }
+}
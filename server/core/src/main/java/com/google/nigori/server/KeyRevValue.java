@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server;
+
+import com.google.nigori.common.RevValue;
+
+/**
+ * A single revision of a value together with the key it is stored under, used for putting many
+ * records at once with {@link Database#putRecords(User, java.util.List)}.
+ * 
+ * @author drt24
+ * 
+ */
+public class KeyRevValue {
+
+  private final byte[] key;
+  private final RevValue revValue;
+
+  public KeyRevValue(byte[] key, RevValue revValue) {
+    if (key == null || revValue == null) {
+      throw new NullPointerException("Null key or revValue not allowed");
+    }
+    this.key = key;
+    this.revValue = revValue;
+  }
+
+  public KeyRevValue(byte[] key, byte[] revision, byte[] value) {
+    this(key, new RevValue(revision, value));
+  }
+
+  public byte[] getKey() {
+    return key;
+  }
+
+  public RevValue getRevValue() {
+    return revValue;
+  }
+
+  public byte[] getRevision() {
+    return revValue.getRevision().getBytes();
+  }
+
+  public byte[] getValue() {
+    return revValue.getValue();
+  }
+}
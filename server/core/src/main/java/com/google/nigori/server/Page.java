@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server;
+
+import java.util.List;
+
+/**
+ * Part of a larger collection together with an opaque cursor which the {@link Database} that
+ * produced it can use to continue from where this page ended.
+ *
+ * @author drt24
+ *
+ */
+public class Page<T> {
+
+  private final List<T> items;
+  private final byte[] cursor;
+
+  /**
+   * @param items
+   * @param cursor the cursor for the next page or null if there are no more items
+   */
+  public Page(List<T> items, byte[] cursor) {
+    if (items == null) {
+      throw new NullPointerException("Null items not allowed");
+    }
+    this.items = items;
+    this.cursor = cursor;
+  }
+
+  public List<T> getItems() {
+    return items;
+  }
+
+  /**
+   * @return the cursor to pass back to get the next page or null if this is the last page
+   */
+  public byte[] getCursor() {
+    return cursor;
+  }
+
+  public boolean hasMore() {
+    return cursor != null;
+  }
+}
@@ -0,0 +1,804 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server;
+
+import static com.google.nigori.common.MessageLibrary.toBytes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.nigori.common.MessageLibrary;
+import com.google.nigori.common.Nonce;
+import com.google.nigori.common.RevValue;
+
+/**
+ * A {@link Database} which spreads users over several underlying databases (shards) by consistent
+ * hashing of their public hash. All of the data for a user is on one shard so the semantics are
+ * those of the underlying databases.
+ *
+ * When a shard is added only the users whose position on the ring now belongs to the new shard need
+ * to move. They are moved lazily the next time they are used, until then they are found by looking
+ * up where they were on the rings from before each shard was added. {@link #rebalance()} moves the
+ * rest and then retires the older rings. The shards should all be of the same type as the
+ * {@link UserFactory} of the first shard is used.
+ *
+ * Users are spread over a fixed number of locks by their position on the ring. Operations on a user
+ * share its lock and moving a user holds it exclusively, so a move only holds up the users which
+ * share that lock.
+ *
+ * The users recently found to be on the shard which owns them on the newest ring are remembered, so
+ * that while there are older rings the shards aren't asked whether they have the user on every
+ * operation. This is forgotten each time a shard is added.
+ *
+ * @author drt24
+ *
+ */
+public class ShardedDatabase implements Database {
+
+  private static final Logger log = Logger.getLogger(ShardedDatabase.class.getSimpleName());
+
+  /**
+   * Number of points each shard has on the ring, more points give a more even spread of users.
+   */
+  private static final int VIRTUAL_NODES = 128;
+  private static final String RING_HASH = "SHA-1";
+  /**
+   * The most users to remember as being on the shard which owns them on the newest ring
+   */
+  private static final int SETTLED_USERS = 65536;
+  /**
+   * Number of locks users are spread over, a power of two
+   */
+  private static final int LOCK_STRIPES = 256;
+  /**
+   * How long nonces are accepted for, including the clock skew {@link Nonce#isRecent()} allows.
+   * Retired rings are still used to check nonces for this long.
+   */
+  private static final long NONCE_LIFETIME_MILLIS = TimeUnit.HOURS.toMillis(2 * 24 + 1);
+
+  private final ReadWriteLock[] locks = new ReadWriteLock[LOCK_STRIPES];
+  /**
+   * Never changed, only replaced while holding the monitor of this database
+   */
+  private volatile Topology topology;
+
+  /**
+   * @param shards the initial shards keyed by name, the name of a shard determines its place on the
+   *        ring and so must be the same each time the database is opened
+   */
+  public ShardedDatabase(Map<String, ? extends Database> shards) {
+    if (shards.isEmpty()) {
+      throw new IllegalArgumentException("At least one shard is needed");
+    }
+    Map<String, Shard> named = new LinkedHashMap<String, Shard>();
+    for (Map.Entry<String, ? extends Database> shard : shards.entrySet()) {
+      named.put(shard.getKey(), new Shard(shard.getKey(), shard.getValue()));
+    }
+    List<SortedMap<Long, Shard>> rings = new ArrayList<SortedMap<Long, Shard>>();
+    rings.add(makeRing(named.values()));
+    topology = new Topology(named, rings, Collections.<SortedMap<Long, Shard>>emptyList(), 0);
+    for (int i = 0; i < LOCK_STRIPES; ++i) {
+      locks[i] = new ReentrantReadWriteLock();
+    }
+  }
+
+  /**
+   * Add a new shard while the database is in use, users which now belong on the new shard are moved
+   * to it when they are next used or by {@link #rebalance()}.
+   *
+   * @param name
+   * @param database
+   */
+  public synchronized void addShard(String name, Database database) {
+    Topology old = topology;
+    if (old.shards.containsKey(name)) {
+      throw new IllegalArgumentException("Already have a shard called " + name);
+    }
+    Map<String, Shard> shards = new LinkedHashMap<String, Shard>(old.shards);
+    shards.put(name, new Shard(name, database));
+    List<SortedMap<Long, Shard>> rings = new ArrayList<SortedMap<Long, Shard>>();
+    rings.add(makeRing(shards.values()));
+    rings.addAll(old.rings);
+    topology = new Topology(shards, rings, old.retired, old.retiredUntil);
+  }
+
+  /**
+   * Move every user who is not on the shard the newest ring gives them to it and then retire the
+   * older rings, so that they are no longer searched for users. Retired rings are still used to
+   * check nonces until those they saw are too old to be accepted.
+   *
+   * Only moves the users of the shards which are {@link UserLister}s, the older rings are only
+   * retired if all the shards are and all their users could be moved.
+   *
+   * @return whether there is now only one ring
+   * @throws IOException if a shard could not list its users
+   */
+  public boolean rebalance() throws IOException {
+    Topology start = topology;
+    if (start.rings.size() == 1) {
+      return true;
+    }
+    // Wait for operations which might still be using an older topology, say to add a user where an
+    // older ring puts them, so that every user they add is listed below.
+    for (ReadWriteLock lock : locks) {
+      lock.writeLock().lock();
+      lock.writeLock().unlock();
+    }
+    boolean complete = true;
+    for (Shard shard : start.shards.values()) {
+      if (!(shard.database instanceof UserLister)) {
+        log.warning("Can't list the users of shard " + shard.name + " so can't retire old rings");
+        complete = false;
+        continue;
+      }
+      byte[] cursor = null;
+      do {
+        Page<byte[]> page = ((UserLister) shard.database).getPublicHashes(cursor,
+            MessageLibrary.MAX_PAGE_SIZE);
+        for (byte[] publicHash : page.getItems()) {
+          long position = position(publicHash);
+          if (owner(start.rings.get(0), position) == shard) {
+            continue;
+          }
+          // Moves the user if they are still here
+          Shard found = lockShardFor(publicHash);
+          try {
+            complete &= found == owner(topology.rings.get(0), position);
+          } finally {
+            lockFor(position).readLock().unlock();
+          }
+        }
+        cursor = page.getCursor();
+      } while (cursor != null);
+    }
+    synchronized (this) {
+      if (!complete || topology != start) {
+        return false;
+      }
+      List<SortedMap<Long, Shard>> retired = new ArrayList<SortedMap<Long, Shard>>(start.rings);
+      retired.remove(0);
+      topology = new Topology(start.shards, start.rings.subList(0, 1), retired,
+          System.currentTimeMillis() + NONCE_LIFETIME_MILLIS);
+      return true;
+    }
+  }
+
+  /**
+   * @return the metrics for each shard keyed by shard name
+   */
+  public Map<String, ShardMetrics> getMetrics() {
+    Map<String, ShardMetrics> metrics = new LinkedHashMap<String, ShardMetrics>();
+    for (Shard shard : topology.shards.values()) {
+      metrics.put(shard.name, shard.metrics);
+    }
+    return Collections.unmodifiableMap(metrics);
+  }
+
+  /**
+   * @return the number of rings still searched for users, one once all users are where the newest
+   *         ring puts them and the older rings have been retired
+   */
+  public int getRingCount() {
+    return topology.rings.size();
+  }
+
+  private static SortedMap<Long, Shard> makeRing(Collection<Shard> shards) {
+    SortedMap<Long, Shard> ring = new TreeMap<Long, Shard>();
+    try {
+      MessageDigest digest = MessageDigest.getInstance(RING_HASH);
+      for (Shard shard : shards) {
+        for (int i = 0; i < VIRTUAL_NODES; ++i) {
+          ring.put(ByteBuffer.wrap(digest.digest(toBytes(shard.name + "#" + i))).getLong(), shard);
+        }
+      }
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    return ring;
+  }
+
+  /**
+   * Public hashes are already hashes so their first bytes are used directly as the position.
+   */
+  private static long position(byte[] publicHash) {
+    byte[] padded = new byte[8];
+    System.arraycopy(publicHash, 0, padded, 0, Math.min(8, publicHash.length));
+    return ByteBuffer.wrap(padded).getLong();
+  }
+
+  private static Shard owner(SortedMap<Long, Shard> ring, long position) {
+    SortedMap<Long, Shard> tail = ring.tailMap(position);
+    return tail.isEmpty() ? ring.get(ring.firstKey()) : tail.get(tail.firstKey());
+  }
+
+  private ReadWriteLock lockFor(long position) {
+    return locks[(int) (position >>> 56) & (LOCK_STRIPES - 1)];
+  }
+
+  private void unlock(byte[] publicHash) {
+    lockFor(position(publicHash)).readLock().unlock();
+  }
+
+  /**
+   * Find the shard for the user, moving the user there first if they are still on the shard that
+   * owned them before a shard was added. Returns with the read lock for the user held so that the
+   * user can't be moved while the caller is using the shard, the caller must release it.
+   */
+  private Shard lockShardFor(byte[] publicHash) {
+    long position = position(publicHash);
+    ReadWriteLock lock = lockFor(position);
+    ByteBuffer key = ByteBuffer.wrap(publicHash.clone());
+    while (true) {
+      lock.readLock().lock();
+      // Only read once the lock is held so that the user can't be moved after it is read
+      Topology topology = this.topology;
+      Shard current = owner(topology.rings.get(0), position);
+      if (topology.rings.size() == 1 || topology.settled.containsKey(key)) {
+        return current;
+      }
+      if (current.database.haveUser(publicHash)
+          || findOnOlderRings(topology, position, publicHash, current) == null) {
+        topology.settled.put(key, Boolean.TRUE);
+        return current;
+      }
+      lock.readLock().unlock();
+      lock.writeLock().lock();
+      try {
+        // Someone else may have moved them or added a shard while we didn't hold the lock
+        topology = this.topology;
+        current = owner(topology.rings.get(0), position);
+        if (!current.database.haveUser(publicHash)) {
+          Shard previous = findOnOlderRings(topology, position, publicHash, current);
+          if (previous != null && !migrate(publicHash, previous, current)) {
+            // Downgrade so that the user stays where they are while the caller uses them
+            lock.readLock().lock();
+            return previous;
+          }
+        }
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+  }
+
+  private static Shard findOnOlderRings(Topology topology, long position, byte[] publicHash,
+      Shard current) {
+    for (SortedMap<Long, Shard> ring : topology.rings.subList(1, topology.rings.size())) {
+      Shard shard = owner(ring, position);
+      if (shard != current && shard.database.haveUser(publicHash)) {
+        return shard;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Copy the user, all their records and their change log from one shard to another and then delete
+   * them from the source. The change log keeps its sequence numbers, including those of deleted
+   * keys, so clients syncing changes since a number from the old shard see the same changes on the
+   * new one. If anything goes wrong the copy is removed and the user stays where they were.
+   *
+   * @return whether the user was moved
+   */
+  private boolean migrate(byte[] publicHash, Shard from, Shard to) {
+    boolean added = false;
+    try {
+      User user = from.database.getUser(publicHash);
+      if (!to.database.addUser(user.getPublicKey(), publicHash)) {
+        throw new IOException("Could not add user to shard " + to.name);
+      }
+      added = true;
+      User newUser = to.database.getUser(publicHash);
+      Collection<byte[]> indices = from.database.getIndices(user);
+      if (indices != null && !indices.isEmpty()) {
+        List<byte[]> keys = new ArrayList<byte[]>(indices);
+        List<Collection<RevValue>> records = from.database.getRecords(user, keys);
+        List<KeyRevValue> toPut = new ArrayList<KeyRevValue>();
+        for (int i = 0; i < keys.size(); ++i) {
+          if (records.get(i) != null) {
+            for (RevValue revValue : records.get(i)) {
+              toPut.add(new KeyRevValue(keys.get(i), revValue));
+            }
+          }
+        }
+        for (boolean put : to.database.putRecords(newUser, toPut)) {
+          if (!put) {
+            throw new IOException("Could not copy records to shard " + to.name);
+          }
+        }
+      }
+      // Replaces the changes made by copying the records
+      if (!to.database.setChanges(newUser, getAllChanges(from.database, user))) {
+        throw new IOException("Could not copy change log to shard " + to.name);
+      }
+      from.database.deleteUser(user);
+      from.metrics.usersMovedOut.incrementAndGet();
+      to.metrics.usersMovedIn.incrementAndGet();
+      return true;
+    } catch (Exception e) {
+      log.log(Level.SEVERE, "Could not move user from shard " + from.name + " to " + to.name, e);
+      from.metrics.failures.incrementAndGet();
+      if (added) {
+        try {
+          to.database.deleteUser(to.database.getUser(publicHash));
+        } catch (UserNotFoundException e1) {
+          // we already had a failure, ignore this one.
+        }
+      }
+      return false;
+    }
+  }
+
+  private static List<KeyChange> getAllChanges(Database database, User user) throws IOException {
+    List<KeyChange> changes = new ArrayList<KeyChange>();
+    long since = 0;
+    while (true) {
+      List<KeyChange> page = database.getChanges(user, since, MessageLibrary.MAX_PAGE_SIZE);
+      changes.addAll(page);
+      if (page.size() < MessageLibrary.MAX_PAGE_SIZE) {
+        return changes;
+      }
+      since = page.get(page.size() - 1).getSequence();
+    }
+  }
+
+  /**
+   * @return all the shards which have owned the position of the public hash, current owner first,
+   *         including those on retired rings nonces are still checked on
+   */
+  private static Set<Shard> allShardsFor(Topology topology, byte[] publicHash) {
+    long position = position(publicHash);
+    Set<Shard> owners = new LinkedHashSet<Shard>();
+    for (SortedMap<Long, Shard> ring : topology.rings) {
+      owners.add(owner(ring, position));
+    }
+    if (System.currentTimeMillis() < topology.retiredUntil) {
+      for (SortedMap<Long, Shard> ring : topology.retired) {
+        owners.add(owner(ring, position));
+      }
+    }
+    return owners;
+  }
+
+  @Override
+  public UserFactory getUserFactory() {
+    return topology.shards.values().iterator().next().database.getUserFactory();
+  }
+
+  @Override
+  public boolean addUser(byte[] publicKey, byte[] publicHash) {
+    Shard shard = lockShardFor(publicHash);
+    long start = System.nanoTime();
+    try {
+      return shard.database.addUser(publicKey, publicHash);
+    } finally {
+      shard.metrics.write(start);
+      unlock(publicHash);
+    }
+  }
+
+  @Override
+  public boolean haveUser(byte[] existingUserHash) {
+    Shard shard = lockShardFor(existingUserHash);
+    long start = System.nanoTime();
+    try {
+      return shard.database.haveUser(existingUserHash);
+    } finally {
+      shard.metrics.read(start);
+      unlock(existingUserHash);
+    }
+  }
+
+  @Override
+  public boolean deleteUser(User existingUser) {
+    Shard shard = lockShardFor(existingUser.getPublicHash());
+    long start = System.nanoTime();
+    try {
+      return shard.database.deleteUser(existingUser);
+    } finally {
+      shard.metrics.write(start);
+      unlock(existingUser.getPublicHash());
+    }
+  }
+
+  /**
+   * Nonces are not moved with users, so a nonce is only accepted if every shard which has owned the
+   * user recently enough to have seen a nonce which is still accepted accepts it.
+   */
+  @Override
+  public boolean checkAndAddNonce(Nonce nonce, byte[] publicHash) {
+    boolean valid = true;
+    for (Shard shard : allShardsFor(topology, publicHash)) {
+      long start = System.nanoTime();
+      try {
+        valid &= shard.database.checkAndAddNonce(nonce, publicHash);
+      } finally {
+        shard.metrics.write(start);
+      }
+    }
+    return valid;
+  }
+
+  @Override
+  public byte[] getPublicKey(byte[] publicHash) throws UserNotFoundException {
+    Shard shard = lockShardFor(publicHash);
+    long start = System.nanoTime();
+    try {
+      return shard.database.getPublicKey(publicHash);
+    } finally {
+      shard.metrics.read(start);
+      unlock(publicHash);
+    }
+  }
+
+  @Override
+  public User getUser(byte[] publicHash) throws UserNotFoundException {
+    Shard shard = lockShardFor(publicHash);
+    long start = System.nanoTime();
+    try {
+      return shard.database.getUser(publicHash);
+    } finally {
+      shard.metrics.read(start);
+      unlock(publicHash);
+    }
+  }
+
+  @Override
+  public Collection<RevValue> getRecord(User user, byte[] key) throws IOException {
+    Shard shard = lockShardFor(user.getPublicHash());
+    long start = System.nanoTime();
+    try {
+      return shard.database.getRecord(user, key);
+    } finally {
+      shard.metrics.read(start);
+      unlock(user.getPublicHash());
+    }
+  }
+
+  @Override
+  public RevValue getRevision(User user, byte[] key, byte[] revision) throws IOException {
+    Shard shard = lockShardFor(user.getPublicHash());
+    long start = System.nanoTime();
+    try {
+      return shard.database.getRevision(user, key, revision);
+    } finally {
+      shard.metrics.read(start);
+      unlock(user.getPublicHash());
+    }
+  }
+
+  @Override
+  public List<RevValue> getRevisionValues(User user, byte[] key, List<byte[]> revisions)
+      throws IOException {
+    Shard shard = lockShardFor(user.getPublicHash());
+    long start = System.nanoTime();
+    try {
+      return shard.database.getRevisionValues(user, key, revisions);
+    } finally {
+      shard.metrics.read(start);
+      unlock(user.getPublicHash());
+    }
+  }
+
+  @Override
+  public Collection<byte[]> getRevisions(User user, byte[] key) throws IOException {
+    Shard shard = lockShardFor(user.getPublicHash());
+    long start = System.nanoTime();
+    try {
+      return shard.database.getRevisions(user, key);
+    } finally {
+      shard.metrics.read(start);
+      unlock(user.getPublicHash());
+    }
+  }
+
+  @Override
+  public boolean putRecord(User user, byte[] key, byte[] revision, byte[] data) {
+    Shard shard = lockShardFor(user.getPublicHash());
+    long start = System.nanoTime();
+    try {
+      return shard.database.putRecord(user, key, revision, data);
+    } finally {
+      shard.metrics.write(start);
+      unlock(user.getPublicHash());
+    }
+  }
+
+  @Override
+  public boolean deleteRecord(User user, byte[] key) {
+    Shard shard = lockShardFor(user.getPublicHash());
+    long start = System.nanoTime();
+    try {
+      return shard.database.deleteRecord(user, key);
+    } finally {
+      shard.metrics.write(start);
+      unlock(user.getPublicHash());
+    }
+  }
+
+  @Override
+  public List<Collection<RevValue>> getRecords(User user, List<byte[]> keys) throws IOException {
+    Shard shard = lockShardFor(user.getPublicHash());
+    long start = System.nanoTime();
+    try {
+      return shard.database.getRecords(user, keys);
+    } finally {
+      shard.metrics.read(start);
+      unlock(user.getPublicHash());
+    }
+  }
+
+  @Override
+  public List<Collection<byte[]>> getRevisions(User user, List<byte[]> keys) throws IOException {
+    Shard shard = lockShardFor(user.getPublicHash());
+    long start = System.nanoTime();
+    try {
+      return shard.database.getRevisions(user, keys);
+    } finally {
+      shard.metrics.read(start);
+      unlock(user.getPublicHash());
+    }
+  }
+
+  @Override
+  public boolean[] putRecords(User user, List<KeyRevValue> records) {
+    Shard shard = lockShardFor(user.getPublicHash());
+    long start = System.nanoTime();
+    try {
+      return shard.database.putRecords(user, records);
+    } finally {
+      shard.metrics.write(start);
+      unlock(user.getPublicHash());
+    }
+  }
+
+  @Override
+  public boolean[] putRecords(User user, List<KeyRevValue> records, StorageUsage quota) {
+    Shard shard = lockShardFor(user.getPublicHash());
+    long start = System.nanoTime();
+    try {
+      return shard.database.putRecords(user, records, quota);
+    } finally {
+      shard.metrics.write(start);
+      unlock(user.getPublicHash());
+    }
+  }
+
+  @Override
+  public StorageUsage getUsage(User user) throws IOException {
+    Shard shard = lockShardFor(user.getPublicHash());
+    long start = System.nanoTime();
+    try {
+      return shard.database.getUsage(user);
+    } finally {
+      shard.metrics.read(start);
+      unlock(user.getPublicHash());
+    }
+  }
+
+  @Override
+  public List<KeyChange> getChanges(User user, long since, int limit) throws IOException {
+    Shard shard = lockShardFor(user.getPublicHash());
+    long start = System.nanoTime();
+    try {
+      return shard.database.getChanges(user, since, limit);
+    } finally {
+      shard.metrics.read(start);
+      unlock(user.getPublicHash());
+    }
+  }
+
+  @Override
+  public long getSequence(User user) throws IOException {
+    Shard shard = lockShardFor(user.getPublicHash());
+    long start = System.nanoTime();
+    try {
+      return shard.database.getSequence(user);
+    } finally {
+      shard.metrics.read(start);
+      unlock(user.getPublicHash());
+    }
+  }
+
+  @Override
+  public boolean setChanges(User user, List<KeyChange> changes) throws IOException {
+    Shard shard = lockShardFor(user.getPublicHash());
+    long start = System.nanoTime();
+    try {
+      return shard.database.setChanges(user, changes);
+    } finally {
+      shard.metrics.write(start);
+      unlock(user.getPublicHash());
+    }
+  }
+
+  @Override
+  public void clearOldNonces() {
+    for (Shard shard : topology.shards.values()) {
+      shard.database.clearOldNonces();
+    }
+    synchronized (this) {
+      Topology current = topology;
+      if (!current.retired.isEmpty() && System.currentTimeMillis() >= current.retiredUntil) {
+        topology = new Topology(current.shards, current.rings,
+            Collections.<SortedMap<Long, Shard>>emptyList(), 0);
+      }
+    }
+  }
+
+  @Override
+  public Collection<byte[]> getIndices(User user) throws IOException {
+    Shard shard = lockShardFor(user.getPublicHash());
+    long start = System.nanoTime();
+    try {
+      return shard.database.getIndices(user);
+    } finally {
+      shard.metrics.read(start);
+      unlock(user.getPublicHash());
+    }
+  }
+
+  @Override
+  public Page<byte[]> getIndices(User user, byte[] cursor, int limit) throws IOException {
+    Shard shard = lockShardFor(user.getPublicHash());
+    long start = System.nanoTime();
+    try {
+      return shard.database.getIndices(user, cursor, limit);
+    } finally {
+      shard.metrics.read(start);
+      unlock(user.getPublicHash());
+    }
+  }
+
+  @Override
+  public Page<byte[]> getRevisions(User user, byte[] key, byte[] cursor, int limit)
+      throws IOException {
+    Shard shard = lockShardFor(user.getPublicHash());
+    long start = System.nanoTime();
+    try {
+      return shard.database.getRevisions(user, key, cursor, limit);
+    } finally {
+      shard.metrics.read(start);
+      unlock(user.getPublicHash());
+    }
+  }
+
+  /**
+   * The shards and rings at one time
+   */
+  private static class Topology {
+    private final Map<String, Shard> shards;
+    /**
+     * The newest ring is first, older rings are kept so that users who haven't been moved since a
+     * shard was added can still be found.
+     */
+    private final List<SortedMap<Long, Shard>> rings;
+    /**
+     * Rings no longer searched for users but on which nonces are checked until retiredUntil
+     */
+    private final List<SortedMap<Long, Shard>> retired;
+    private final long retiredUntil;
+    /**
+     * Public hashes of users known to be where the newest ring puts them
+     */
+    private final Map<ByteBuffer, Boolean> settled = Collections
+        .synchronizedMap(new LinkedHashMap<ByteBuffer, Boolean>(16, 0.75f, true) {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Boolean> eldest) {
+            return size() > SETTLED_USERS;
+          }
+        });
+
+    Topology(Map<String, Shard> shards, List<SortedMap<Long, Shard>> rings,
+        List<SortedMap<Long, Shard>> retired, long retiredUntil) {
+      this.shards = Collections.unmodifiableMap(new LinkedHashMap<String, Shard>(shards));
+      this.rings = Collections.unmodifiableList(new ArrayList<SortedMap<Long, Shard>>(rings));
+      this.retired = Collections.unmodifiableList(new ArrayList<SortedMap<Long, Shard>>(retired));
+      this.retiredUntil = retiredUntil;
+    }
+  }
+
+  private static class Shard {
+    private final String name;
+    private final Database database;
+    private final ShardMetrics metrics = new ShardMetrics();
+
+    Shard(String name, Database database) {
+      if (name == null || database == null) {
+        throw new NullPointerException("Null name or database not allowed");
+      }
+      this.name = name;
+      this.database = database;
+    }
+  }
+
+  /**
+   * Counts of the operations carried out on a shard.
+   */
+  public static class ShardMetrics {
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong usersMovedIn = new AtomicLong();
+    private final AtomicLong usersMovedOut = new AtomicLong();
+
+    private void read(long start) {
+      reads.incrementAndGet();
+      nanos.addAndGet(System.nanoTime() - start);
+    }
+
+    private void write(long start) {
+      writes.incrementAndGet();
+      nanos.addAndGet(System.nanoTime() - start);
+    }
+
+    public long getReads() {
+      return reads.get();
+    }
+
+    public long getWrites() {
+      return writes.get();
+    }
+
+    /**
+     * @return the total time spent in reads and writes on the shard in nanoseconds
+     */
+    public long getTotalNanos() {
+      return nanos.get();
+    }
+
+    /**
+     * @return the number of times moving a user off this shard failed
+     */
+    public long getFailures() {
+      return failures.get();
+    }
+
+    public long getUsersMovedIn() {
+      return usersMovedIn.get();
+    }
+
+    public long getUsersMovedOut() {
+      return usersMovedOut.get();
+    }
+
+    @Override
+    public String toString() {
+      return "reads=" + getReads() + " writes=" + getWrites() + " totalNanos=" + getTotalNanos()
+          + " failures=" + getFailures() + " usersMovedIn=" + getUsersMovedIn() + " usersMovedOut="
+          + getUsersMovedOut();
+    }
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server;
+
+/**
+ * How much a user is storing: the number of records (indices), the number of revisions across all
+ * of them and the number of bytes in the indices, revisions and values.
+ * 
+ * @author drt24
+ * 
+ */
+public class StorageUsage {
+
+  public static final StorageUsage NONE = new StorageUsage(0, 0, 0);
+  /**
+   * Used as a quota when there is no limit
+   */
+  public static final StorageUsage UNLIMITED = new StorageUsage(Long.MAX_VALUE, Long.MAX_VALUE,
+      Long.MAX_VALUE);
+
+  private final long records;
+  private final long revisions;
+  private final long bytes;
+
+  public StorageUsage(long records, long revisions, long bytes) {
+    this.records = records;
+    this.revisions = revisions;
+    this.bytes = bytes;
+  }
+
+  public long getRecords() {
+    return records;
+  }
+
+  public long getRevisions() {
+    return revisions;
+  }
+
+  public long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * @return this usage with the given amounts added to it
+   */
+  public StorageUsage add(long records, long revisions, long bytes) {
+    return new StorageUsage(this.records + records, this.revisions + revisions, this.bytes + bytes);
+  }
+
+  /**
+   * @param newRecord whether the put adds a record as well as a revision
+   * @return this usage with a put of a new revision added to it
+   */
+  public StorageUsage addPut(boolean newRecord, byte[] key, byte[] revision, byte[] value) {
+    return add(newRecord ? 1 : 0, 1, (newRecord ? key.length : 0) + revision.length + value.length);
+  }
+
+  /**
+   * @param quota the maximum allowed usage
+   * @return true iff any of records, revisions or bytes is greater than in {@code quota}
+   */
+  public boolean exceeds(StorageUsage quota) {
+    return records > quota.records || revisions > quota.revisions || bytes > quota.bytes;
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    result = prime * result + (int) (bytes ^ (bytes >>> 32));
+    result = prime * result + (int) (records ^ (records >>> 32));
+    result = prime * result + (int) (revisions ^ (revisions >>> 32));
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (obj == null)
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+    StorageUsage other = (StorageUsage) obj;
+    return bytes == other.bytes && records == other.records && revisions == other.revisions;
+  }
+
+  @Override
+  public String toString() {
+    return "records=" + records + " revisions=" + revisions + " bytes=" + bytes;
+  }
+}
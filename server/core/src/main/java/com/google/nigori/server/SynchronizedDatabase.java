@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+import com.google.nigori.common.Nonce;
+import com.google.nigori.common.RevValue;
+
+/**
+ * A {@link Database} which makes one call at a time to a database which is not thread safe, such as
+ * {@link HashMapDatabase}, so that it can be used by a server handling requests on many threads.
+ * The underlying database must return copies rather than views of what it stores.
+ *
+ * @author drt24
+ *
+ */
+public class SynchronizedDatabase implements Database, UserLister {
+
+  private final Database database;
+
+  public SynchronizedDatabase(Database database) {
+    if (database == null) {
+      throw new NullPointerException("Null database");
+    }
+    this.database = database;
+  }
+
+  @Override
+  public synchronized UserFactory getUserFactory() {
+    return database.getUserFactory();
+  }
+
+  @Override
+  public synchronized boolean addUser(byte[] publicKey, byte[] publicHash) {
+    return database.addUser(publicKey, publicHash);
+  }
+
+  @Override
+  public synchronized boolean haveUser(byte[] existingUserHash) {
+    return database.haveUser(existingUserHash);
+  }
+
+  @Override
+  public synchronized boolean deleteUser(User existingUser) {
+    return database.deleteUser(existingUser);
+  }
+
+  @Override
+  public synchronized boolean checkAndAddNonce(Nonce nonce, byte[] publicHash) {
+    return database.checkAndAddNonce(nonce, publicHash);
+  }
+
+  @Override
+  public synchronized byte[] getPublicKey(byte[] publicHash) throws UserNotFoundException {
+    return database.getPublicKey(publicHash);
+  }
+
+  @Override
+  public synchronized User getUser(byte[] publicHash) throws UserNotFoundException {
+    return database.getUser(publicHash);
+  }
+
+  @Override
+  public synchronized Collection<RevValue> getRecord(User user, byte[] key) throws IOException {
+    return database.getRecord(user, key);
+  }
+
+  @Override
+  public synchronized RevValue getRevision(User user, byte[] key, byte[] revision)
+      throws IOException {
+    return database.getRevision(user, key, revision);
+  }
+
+  @Override
+  public synchronized Collection<byte[]> getRevisions(User user, byte[] key) throws IOException {
+    return database.getRevisions(user, key);
+  }
+
+  @Override
+  public synchronized boolean putRecord(User user, byte[] key, byte[] revision, byte[] data) {
+    return database.putRecord(user, key, revision, data);
+  }
+
+  @Override
+  public synchronized boolean deleteRecord(User user, byte[] key) {
+    return database.deleteRecord(user, key);
+  }
+
+  @Override
+  public synchronized List<Collection<RevValue>> getRecords(User user, List<byte[]> keys)
+      throws IOException {
+    return database.getRecords(user, keys);
+  }
+
+  @Override
+  public synchronized List<Collection<byte[]>> getRevisions(User user, List<byte[]> keys)
+      throws IOException {
+    return database.getRevisions(user, keys);
+  }
+
+  @Override
+  public synchronized List<RevValue> getRevisionValues(User user, byte[] key,
+      List<byte[]> revisions) throws IOException {
+    return database.getRevisionValues(user, key, revisions);
+  }
+
+  @Override
+  public synchronized boolean[] putRecords(User user, List<KeyRevValue> records) {
+    return database.putRecords(user, records);
+  }
+
+  @Override
+  public synchronized boolean[] putRecords(User user, List<KeyRevValue> records,
+      StorageUsage quota) {
+    return database.putRecords(user, records, quota);
+  }
+
+  @Override
+  public synchronized StorageUsage getUsage(User user) throws IOException {
+    return database.getUsage(user);
+  }
+
+  @Override
+  public synchronized List<KeyChange> getChanges(User user, long since, int limit)
+      throws IOException {
+    return database.getChanges(user, since, limit);
+  }
+
+  @Override
+  public synchronized long getSequence(User user) throws IOException {
+    return database.getSequence(user);
+  }
+
+  @Override
+  public synchronized boolean setChanges(User user, List<KeyChange> changes) throws IOException {
+    return database.setChanges(user, changes);
+  }
+
+  @Override
+  public synchronized void clearOldNonces() {
+    database.clearOldNonces();
+  }
+
+  @Override
+  public synchronized Collection<byte[]> getIndices(User user) throws IOException {
+    return database.getIndices(user);
+  }
+
+  @Override
+  public synchronized Page<byte[]> getIndices(User user, byte[] cursor, int limit)
+      throws IOException {
+    return database.getIndices(user, cursor, limit);
+  }
+
+  @Override
+  public synchronized Page<byte[]> getRevisions(User user, byte[] key, byte[] cursor, int limit)
+      throws IOException {
+    return database.getRevisions(user, key, cursor, limit);
+  }
+
+  /**
+   * @throws IOException if the underlying database can't list its users
+   */
+  @Override
+  public synchronized Page<byte[]> getPublicHashes(byte[] cursor, int limit) throws IOException {
+    if (!(database instanceof UserLister)) {
+      throw new IOException("Can't list the users of " + database.getClass().getSimpleName());
+    }
+    return ((UserLister) database).getPublicHashes(cursor, limit);
+  }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server;
+
+import java.io.IOException;
+
+/**
+ * Implemented by a {@link Database} which can list the users it has, so that
+ * {@link ShardedDatabase} can find every user still on a shard they no longer belong on.
+ *
+ * @author drt24
+ *
+ */
+public interface UserLister {
+
+  /**
+   * @param cursor null for the first page or the cursor of the previous page
+   * @param limit the most public hashes to return
+   * @return the public hashes of users after the cursor, in the order the database keeps them
+   * @throws IOException
+   */
+  Page<byte[]> getPublicHashes(byte[] cursor, int limit) throws IOException;
+}
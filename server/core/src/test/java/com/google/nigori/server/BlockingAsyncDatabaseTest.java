@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server;
+
+import static com.google.nigori.common.MessageLibrary.toBytes;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Test;
+
+import com.google.nigori.common.NigoriConstants;
+import com.google.nigori.common.RevValue;
+import com.google.nigori.common.Util;
+
+/**
+ * @author drt24
+ *
+ */
+public class BlockingAsyncDatabaseTest {
+
+  private static byte[] randomKey() {
+    byte[] publicKey = new byte[NigoriConstants.B_DSA];
+    new Random().nextBytes(publicKey);
+    return publicKey;
+  }
+
+  @Test
+  public void putGetOnPool() throws NoSuchAlgorithmException, InterruptedException,
+      ExecutionException {
+    BlockingAsyncDatabase database =
+        BlockingAsyncDatabase.withBoundedPool(new HashMapDatabase(), 1, 10);
+    try {
+      byte[] publicKey = randomKey();
+      byte[] publicHash = Util.hashKey(publicKey);
+      assertTrue(database.addUser(publicKey, publicHash).get());
+      User user = database.getUser(publicHash).get();
+      assertTrue(database.putRecord(user, toBytes("index"), toBytes("revision"), toBytes("value"))
+          .get());
+      Collection<RevValue> record = database.getRecord(user, toBytes("index")).get();
+      assertEquals(1, record.size());
+      assertArrayEquals(toBytes("value"), record.iterator().next().getValue());
+      assertTrue(database.deleteUser(user).get());
+    } finally {
+      database.shutdown();
+    }
+  }
+
+  @Test
+  public void exceptionsCompleteFuture() throws NoSuchAlgorithmException, InterruptedException {
+    AsyncDatabase database = BlockingAsyncDatabase.inline(new HashMapDatabase());
+    CompletableFuture<User> user = database.getUser(Util.hashKey(randomKey()));
+    assertTrue(user.isDone());
+    try {
+      user.get();
+      fail("No exception for missing user");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof UserNotFoundException);
+    }
+  }
+
+  @Test
+  public void rejectsWhenFull() throws InterruptedException {
+    ExecutorService pool = BoundedPools.newBoundedPool("test", 1, 1);
+    final CountDownLatch blocker = new CountDownLatch(1);
+    try {
+      Runnable block = () -> {
+        try {
+          blocker.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      };
+      pool.execute(block);// Occupies the thread
+      pool.execute(block);// Fills the queue
+      AsyncDatabase database = new BlockingAsyncDatabase(new HashMapDatabase(), pool);
+      try {
+        database.haveUser(randomKey()).get();
+        fail("Call was not rejected");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+      }
+    } finally {
+      blocker.countDown();
+      pool.shutdown();
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Test;
+
+/**
+ * @author drt24
+ *
+ */
+public class BoundedPoolsTest {
+
+  @Test
+  public void rejectsWhenFull() throws Exception {
+    ExecutorService pool = BoundedPools.newBoundedPool("test", 1, 1);
+    final CountDownLatch blocker = new CountDownLatch(1);
+    try {
+      Runnable block = () -> {
+        try {
+          blocker.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      };
+      pool.execute(block);// Occupies the thread
+      Future<?> queued = pool.submit(block);// Fills the queue
+      try {
+        pool.execute(block);
+        fail("Work was not rejected");
+      } catch (RejectedExecutionException e) {
+        // expected
+      }
+      blocker.countDown();
+      queued.get();
+      assertTrue(queued.isDone());
+    } finally {
+      blocker.countDown();
+      pool.shutdown();
+    }
+  }
+}
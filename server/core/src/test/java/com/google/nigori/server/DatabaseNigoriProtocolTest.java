@@ -0,0 +1,459 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server;
+
+import static com.google.nigori.common.MessageLibrary.toBytes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletionException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.nigori.common.DSASign;
+import com.google.nigori.common.MessageLibrary;
+import com.google.nigori.common.NigoriCryptographyException;
+import com.google.nigori.common.NigoriMessages.BatchResponse;
+import com.google.nigori.common.NigoriMessages.DigestEntry;
+import com.google.nigori.common.NigoriMessages.DigestNode;
+import com.google.nigori.common.NigoriMessages.GetChangesResponse;
+import com.google.nigori.common.NigoriMessages.GetIndicesResponse;
+import com.google.nigori.common.NigoriMessages.GetResponse;
+import com.google.nigori.common.NigoriMessages.GetRevisionsResponse;
+import com.google.nigori.common.NigoriMessages.Operation;
+import com.google.nigori.common.NigoriProtocol;
+import com.google.nigori.common.NotFoundException;
+import com.google.nigori.common.UnauthorisedException;
+import com.google.nigori.server.DatabaseNigoriProtocol.QuotaExceededException;
+import com.google.protobuf.ByteString;
+
+/**
+ * @author drt24
+ *
+ */
+public class DatabaseNigoriProtocolTest {
+
+  private static final String SERVER = "test-server";
+
+  private DSASign signer;
+
+  @Before
+  public void makeSigner() throws NoSuchAlgorithmException {
+    byte[] privateKey = new byte[20];
+    new Random().nextBytes(privateKey);
+    privateKey[0] &= 0x7f;
+    signer = new DSASign(privateKey);
+  }
+
+  private NigoriProtocol register(StorageUsage quota) throws IOException {
+    NigoriProtocol protocol = new DatabaseNigoriProtocol(new HashMapDatabase(), quota);
+    assertTrue(protocol.register(MessageLibrary.registerRequestAsProtobuf(signer, new byte[0])));
+    return protocol;
+  }
+
+  private static Operation operation(String type, String key, String revision, String value) {
+    return MessageLibrary.operationAsProtobuf(type, toBytes(key), revision == null ? null
+        : toBytes(revision), value == null ? null : toBytes(value));
+  }
+
+  private BatchResponse batch(NigoriProtocol protocol, Operation... operations)
+      throws IOException, UnauthorisedException, NigoriCryptographyException {
+    List<Operation> list = new ArrayList<Operation>();
+    for (Operation operation : operations) {
+      list.add(operation);
+    }
+    return protocol.batch(MessageLibrary.batchRequestAsProtobuf(SERVER, signer, list));
+  }
+
+  @Test
+  public void batch() throws IOException, UnauthorisedException, NigoriCryptographyException {
+    NigoriProtocol protocol = register(StorageUsage.UNLIMITED);
+    BatchResponse response =
+        batch(protocol, operation(MessageLibrary.REQUEST_PUT, "a", "1", "a1"), operation(
+            MessageLibrary.REQUEST_PUT, "a", "2", "a2"), operation(MessageLibrary.REQUEST_PUT,
+            "b", "1", "b1"), operation(MessageLibrary.REQUEST_GET, "a", null, null), operation(
+            MessageLibrary.REQUEST_GET, "b", "1", null), operation(MessageLibrary.REQUEST_GET,
+            "c", null, null), operation(MessageLibrary.REQUEST_GET_REVISIONS, "a", null, null),
+            operation(MessageLibrary.REQUEST_DELETE, "b", null, null), operation(
+                MessageLibrary.REQUEST_GET, "b", null, null), operation("unknown", "a", null, null));
+    assertEquals(10, response.getResultsCount());
+    for (int i = 0; i < 3; ++i) {
+      assertTrue(response.getResults(i).getSuccess());
+    }
+    assertEquals(2, response.getResults(3).getGet().getRevisionsCount());
+    assertEquals("b1", response.getResults(4).getGet().getRevisions(0).getValue().toStringUtf8());
+    assertFalse(response.getResults(5).getSuccess());
+    assertEquals(2, response.getResults(6).getRevisions().getRevisionsCount());
+    assertTrue(response.getResults(7).getSuccess());
+    assertFalse("Deleted earlier in the batch", response.getResults(8).getSuccess());
+    assertFalse(response.getResults(9).getSuccess());
+  }
+
+  @Test
+  public void batchOverQuota() throws IOException, UnauthorisedException,
+      NigoriCryptographyException {
+    NigoriProtocol protocol = register(new StorageUsage(2, 3, 1000));
+    // Only the puts which would exceed the quota fail, the rest of the batch still goes ahead
+    BatchResponse response =
+        batch(protocol, operation(MessageLibrary.REQUEST_PUT, "a", "1", "a1"), operation(
+            MessageLibrary.REQUEST_PUT, "b", "1", "b1"), operation(MessageLibrary.REQUEST_PUT,
+            "c", "1", "c1"), operation(MessageLibrary.REQUEST_PUT, "a", "1", "a1"), operation(
+            MessageLibrary.REQUEST_PUT, "a", "2", "a2"), operation(MessageLibrary.REQUEST_GET,
+            "c", null, null), operation(MessageLibrary.REQUEST_DELETE, "b", null, null),
+            operation(MessageLibrary.REQUEST_PUT, "c", "1", "c1"));
+    assertEquals(8, response.getResultsCount());
+    assertTrue(response.getResults(0).getSuccess());
+    assertTrue(response.getResults(1).getSuccess());
+    assertFalse("Third record", response.getResults(2).getSuccess());
+    assertTrue("Repeated put", response.getResults(3).getSuccess());
+    assertTrue(response.getResults(4).getSuccess());
+    assertFalse(response.getResults(5).getSuccess());
+    assertTrue(response.getResults(6).getSuccess());
+    assertTrue("Fits once b is deleted", response.getResults(7).getSuccess());
+  }
+
+  @Test(expected = UnauthorisedException.class)
+  public void batchSignatureCoversOperations() throws IOException, UnauthorisedException,
+      NigoriCryptographyException {
+    NigoriProtocol protocol = register(StorageUsage.UNLIMITED);
+    List<Operation> signed = new ArrayList<Operation>();
+    signed.add(operation(MessageLibrary.REQUEST_PUT, "a", "1", "a1"));
+    List<Operation> sent = new ArrayList<Operation>();
+    sent.add(operation(MessageLibrary.REQUEST_PUT, "a", "1", "evil"));
+    protocol.batch(MessageLibrary.batchRequestAsProtobuf(SERVER, signer, signed).toBuilder()
+        .clearOperations().addAllOperations(sent).build());
+  }
+
+  @Test
+  public void pagedIndices() throws IOException, UnauthorisedException,
+      NigoriCryptographyException, NotFoundException {
+    NigoriProtocol protocol = register(StorageUsage.UNLIMITED);
+    for (String index : new String[] {"a", "b", "c"}) {
+      assertTrue(protocol.put(MessageLibrary.putRequestAsProtobuf(SERVER, signer, toBytes(index),
+          toBytes("1"), toBytes("v"))));
+    }
+    GetIndicesResponse first =
+        protocol.getIndices(MessageLibrary.getIndicesRequestAsProtobuf(SERVER, signer, null, 2));
+    assertEquals(2, first.getIndicesCount());
+    assertTrue(first.hasCursor());
+    GetIndicesResponse second =
+        protocol.getIndices(MessageLibrary.getIndicesRequestAsProtobuf(SERVER, signer, first
+            .getCursor().toByteArray(), 2));
+    assertEquals(1, second.getIndicesCount());
+    assertFalse(second.hasCursor());
+  }
+
+  @Test
+  public void changes() throws IOException, UnauthorisedException, NigoriCryptographyException {
+    NigoriProtocol protocol = register(StorageUsage.UNLIMITED);
+    int revision = 0;
+    for (String index : new String[] {"a", "b", "a"}) {
+      assertTrue(protocol.put(MessageLibrary.putRequestAsProtobuf(SERVER, signer, toBytes(index),
+          toBytes(Integer.toString(++revision)), toBytes("v"))));
+    }
+    GetChangesResponse all =
+        protocol.getChanges(MessageLibrary.getChangesRequestAsProtobuf(SERVER, signer, 0, 10));
+    assertEquals(3, all.getSequence());
+    assertEquals(2, all.getChangesCount());
+    assertEquals("b", all.getChanges(0).getKey().toStringUtf8());
+    assertEquals("a", all.getChanges(1).getKey().toStringUtf8());
+    GetChangesResponse none =
+        protocol.getChanges(MessageLibrary.getChangesRequestAsProtobuf(SERVER, signer, all
+            .getSequence(), 10));
+    assertEquals(0, none.getChangesCount());
+    assertEquals(3, none.getSequence());
+  }
+
+  @Test
+  public void waitForChanges() throws IOException, UnauthorisedException,
+      NigoriCryptographyException, InterruptedException {
+    final NigoriProtocol protocol = register(StorageUsage.UNLIMITED);
+    final Throwable[] failure = new Throwable[1];
+    Thread writer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(100);
+          protocol.put(MessageLibrary.putRequestAsProtobuf(SERVER, signer, toBytes("a"),
+              toBytes("1"), toBytes("v")));
+        } catch (Throwable t) {
+          failure[0] = t;
+        }
+      }
+    };
+    writer.start();
+    long start = System.currentTimeMillis();
+    GetChangesResponse changes =
+        protocol.getChanges(MessageLibrary.getChangesRequestAsProtobuf(SERVER, signer, 0, 10,
+            MessageLibrary.MAX_CHANGES_WAIT));
+    writer.join();
+    assertEquals(null, failure[0]);
+    assertEquals(1, changes.getChangesCount());
+    assertEquals("a", changes.getChanges(0).getKey().toStringUtf8());
+    assertTrue("Woken by the put",
+        System.currentTimeMillis() - start < MessageLibrary.MAX_CHANGES_WAIT);
+    assertEquals(0, ((DatabaseNigoriProtocol) protocol).getNotifier().getWatchCount());
+  }
+
+  @Test
+  public void waitForChangesTimesOut() throws IOException, UnauthorisedException,
+      NigoriCryptographyException {
+    NigoriProtocol protocol = register(StorageUsage.UNLIMITED);
+    GetChangesResponse none =
+        protocol.getChanges(MessageLibrary.getChangesRequestAsProtobuf(SERVER, signer, 0, 10, 50));
+    assertEquals(0, none.getChangesCount());
+    assertEquals(0, none.getSequence());
+    assertEquals(0, ((DatabaseNigoriProtocol) protocol).getNotifier().getWatchCount());
+  }
+
+  private DigestNode digest(NigoriProtocol protocol, ByteString node) throws IOException,
+      UnauthorisedException, NigoriCryptographyException, NotFoundException {
+    List<ByteString> nodes = new ArrayList<ByteString>();
+    nodes.add(node);
+    return protocol.getDigests(MessageLibrary.getDigestsRequestAsProtobuf(SERVER, signer, nodes))
+        .getNodes(0);
+  }
+
+  @Test
+  public void digests() throws IOException, UnauthorisedException, NigoriCryptographyException,
+      NotFoundException {
+    NigoriProtocol first = register(StorageUsage.UNLIMITED);
+    NigoriProtocol second = register(StorageUsage.UNLIMITED);
+    DigestNode empty = digest(first, ByteString.EMPTY);
+    assertEquals(HashTree.FANOUT, empty.getChildrenCount());
+    // The same records put in a different order give the same tree
+    for (String index : new String[] {"a", "b", "c"}) {
+      assertTrue(first.put(MessageLibrary.putRequestAsProtobuf(SERVER, signer, toBytes(index),
+          toBytes("1"), toBytes("v"))));
+    }
+    for (String index : new String[] {"c", "a", "b"}) {
+      assertTrue(second.put(MessageLibrary.putRequestAsProtobuf(SERVER, signer, toBytes(index),
+          toBytes("1"), toBytes("v"))));
+    }
+    DigestNode root = digest(first, ByteString.EMPTY);
+    assertFalse(empty.getDigest().equals(root.getDigest()));
+    assertEquals(root, digest(second, ByteString.EMPTY));
+
+    // A new revision only changes the nodes on the path to its key
+    assertTrue(second.put(MessageLibrary.putRequestAsProtobuf(SERVER, signer, toBytes("b"),
+        toBytes("2"), toBytes("v"))));
+    ByteString path = ByteString.EMPTY;
+    for (int level = 0; level < HashTree.DEPTH; ++level) {
+      DigestNode firstNode = digest(first, path);
+      DigestNode secondNode = digest(second, path);
+      assertFalse(firstNode.getDigest().equals(secondNode.getDigest()));
+      int differing = -1;
+      for (int child = 0; child < HashTree.FANOUT; ++child) {
+        if (!firstNode.getChildren(child).equals(secondNode.getChildren(child))) {
+          assertEquals(-1, differing);
+          differing = child;
+        }
+      }
+      path = path.concat(ByteString.copyFrom(new byte[] {(byte) differing}));
+    }
+    DigestNode firstLeaf = digest(first, path);
+    DigestNode secondLeaf = digest(second, path);
+    assertEquals(0, firstLeaf.getChildrenCount());
+    Map<ByteString, ByteString> secondEntries = new HashMap<ByteString, ByteString>();
+    for (DigestEntry entry : secondLeaf.getEntriesList()) {
+      secondEntries.put(entry.getKey(), entry.getDigest());
+    }
+    assertEquals(firstLeaf.getEntriesCount(), secondEntries.size());
+    for (DigestEntry entry : firstLeaf.getEntriesList()) {
+      boolean isB = "b".equals(entry.getKey().toStringUtf8());
+      assertEquals(!isB, entry.getDigest().equals(secondEntries.get(entry.getKey())));
+    }
+
+    // Deleting brings the trees back together
+    assertTrue(first.delete(MessageLibrary.deleteRequestAsProtobuf(SERVER, signer, toBytes("b"))));
+    assertTrue(second.delete(MessageLibrary.deleteRequestAsProtobuf(SERVER, signer, toBytes("b"))));
+    assertEquals(digest(first, ByteString.EMPTY), digest(second, ByteString.EMPTY));
+  }
+
+  @Test(expected = NotFoundException.class)
+  public void digestsTooDeep() throws IOException, UnauthorisedException,
+      NigoriCryptographyException, NotFoundException {
+    NigoriProtocol protocol = register(StorageUsage.UNLIMITED);
+    digest(protocol, ByteString.copyFrom(new byte[HashTree.DEPTH + 1]));
+  }
+
+  @Test
+  public void notModified() throws IOException, UnauthorisedException,
+      NigoriCryptographyException, NotFoundException {
+    NigoriProtocol protocol = register(StorageUsage.UNLIMITED);
+    assertTrue(protocol.put(MessageLibrary.putRequestAsProtobuf(SERVER, signer, toBytes("a"),
+        toBytes("1"), toBytes("v"))));
+    GetResponse first =
+        protocol.get(MessageLibrary.getRequestAsProtobuf(SERVER, signer, toBytes("a"), null));
+    assertTrue(first.hasFingerprint());
+    assertEquals(1, first.getRevisionsCount());
+    byte[] fingerprint = first.getFingerprint().toByteArray();
+    GetResponse unchanged =
+        protocol.get(MessageLibrary.getRequestAsProtobuf(SERVER, signer, toBytes("a"), null,
+            fingerprint));
+    assertTrue(unchanged.getNotModified());
+    assertEquals(0, unchanged.getRevisionsCount());
+    GetRevisionsResponse revisions =
+        protocol.getRevisions(MessageLibrary.getRevisionsRequestAsProtobuf(SERVER, signer,
+            toBytes("a"), null, 10, fingerprint));
+    assertTrue(revisions.getNotModified());
+
+    assertTrue(protocol.put(MessageLibrary.putRequestAsProtobuf(SERVER, signer, toBytes("a"),
+        toBytes("2"), toBytes("v"))));
+    GetResponse changed =
+        protocol.get(MessageLibrary.getRequestAsProtobuf(SERVER, signer, toBytes("a"), null,
+            fingerprint));
+    assertFalse(changed.getNotModified());
+    assertEquals(2, changed.getRevisionsCount());
+    revisions =
+        protocol.getRevisions(MessageLibrary.getRevisionsRequestAsProtobuf(SERVER, signer,
+            toBytes("a"), null, 10, fingerprint));
+    assertFalse(revisions.getNotModified());
+    assertEquals(2, revisions.getRevisionsCount());
+    assertEquals(changed.getFingerprint(), revisions.getFingerprint());
+  }
+
+  @Test
+  public void multipleRevisions() throws IOException, UnauthorisedException,
+      NigoriCryptographyException, NotFoundException {
+    NigoriProtocol protocol = register(StorageUsage.UNLIMITED);
+    for (String revision : new String[] {"1", "2", "3"}) {
+      assertTrue(protocol.put(MessageLibrary.putRequestAsProtobuf(SERVER, signer, toBytes("a"),
+          toBytes(revision), toBytes("v" + revision))));
+    }
+    List<byte[]> revisions = new ArrayList<byte[]>();
+    for (String revision : new String[] {"3", "4", "1"}) {
+      revisions.add(toBytes(revision));
+    }
+    GetResponse response =
+        protocol.get(MessageLibrary.getRevisionValuesRequestAsProtobuf(SERVER, signer,
+            toBytes("a"), revisions));
+    assertEquals(2, response.getRevisionsCount());
+    assertEquals("3", response.getRevisions(0).getRevision().toStringUtf8());
+    assertEquals("v3", response.getRevisions(0).getValue().toStringUtf8());
+    assertEquals("1", response.getRevisions(1).getRevision().toStringUtf8());
+  }
+
+  @Test(expected = NotFoundException.class)
+  public void multipleRevisionsNoneFound() throws IOException, UnauthorisedException,
+      NigoriCryptographyException, NotFoundException {
+    NigoriProtocol protocol = register(StorageUsage.UNLIMITED);
+    List<byte[]> revisions = new ArrayList<byte[]>();
+    revisions.add(toBytes("1"));
+    protocol.get(MessageLibrary.getRevisionValuesRequestAsProtobuf(SERVER, signer, toBytes("a"),
+        revisions));
+  }
+
+  @Test(expected = UnauthorisedException.class)
+  public void pageSignatureCoversCursor() throws IOException, UnauthorisedException,
+      NigoriCryptographyException, NotFoundException {
+    NigoriProtocol protocol = register(StorageUsage.UNLIMITED);
+    protocol.getIndices(MessageLibrary.getIndicesRequestAsProtobuf(SERVER, signer, null, 2)
+        .toBuilder().setLimit(3).build());
+  }
+
+  @Test
+  public void repeatedPutWithNewValue() throws IOException, UnauthorisedException,
+      NigoriCryptographyException, NotFoundException {
+    for (StorageUsage quota : new StorageUsage[] {StorageUsage.UNLIMITED,
+        new StorageUsage(1, 1, 1000)}) {
+      NigoriProtocol protocol = register(quota);
+      assertTrue(protocol.put(MessageLibrary.putRequestAsProtobuf(SERVER, signer, toBytes("a"),
+          toBytes("1"), toBytes("first"))));
+      // Values are encrypted afresh each time so a repeated put sends different bytes
+      assertTrue(protocol.put(MessageLibrary.putRequestAsProtobuf(SERVER, signer, toBytes("a"),
+          toBytes("1"), toBytes("second"))));
+      BatchResponse response =
+          batch(protocol, operation(MessageLibrary.REQUEST_PUT, "a", "1", "third"));
+      assertTrue(response.getResults(0).getSuccess());
+      GetResponse get =
+          protocol.get(MessageLibrary.getRequestAsProtobuf(SERVER, signer, toBytes("a"), null));
+      assertEquals(1, get.getRevisionsCount());
+      assertEquals("Revisions can't change", "first", get.getRevisions(0).getValue()
+          .toStringUtf8());
+    }
+  }
+
+  @Test
+  public void quota() throws IOException, UnauthorisedException, NigoriCryptographyException {
+    NigoriProtocol protocol = register(new StorageUsage(2, 3, 1000));
+    assertTrue(protocol.put(MessageLibrary.putRequestAsProtobuf(SERVER, signer, toBytes("a"),
+        toBytes("1"), toBytes("v"))));
+    assertTrue(protocol.put(MessageLibrary.putRequestAsProtobuf(SERVER, signer, toBytes("b"),
+        toBytes("1"), toBytes("v"))));
+    // Repeating a put is fine
+    assertTrue(protocol.put(MessageLibrary.putRequestAsProtobuf(SERVER, signer, toBytes("b"),
+        toBytes("1"), toBytes("v"))));
+    assertTrue(protocol.put(MessageLibrary.putRequestAsProtobuf(SERVER, signer, toBytes("b"),
+        toBytes("2"), toBytes("v"))));
+    try {
+      protocol.put(MessageLibrary.putRequestAsProtobuf(SERVER, signer, toBytes("c"),
+          toBytes("1"), toBytes("v")));
+      throw new AssertionError("Should have exceeded the quota of records");
+    } catch (QuotaExceededException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void startOnPool() throws IOException, UnauthorisedException,
+      NigoriCryptographyException, NotFoundException {
+    Database database = new HashMapDatabase();
+    // One thread so the database is only used by one at a time
+    BlockingAsyncDatabase async = BlockingAsyncDatabase.withBoundedPool(database, 1, 10);
+    try {
+      DatabaseNigoriProtocol protocol =
+          new DatabaseNigoriProtocol(database, async, new StorageUsage(1, 3, 1000),
+              new ChangeNotifier());
+      assertTrue(protocol.startRegister(
+          MessageLibrary.registerRequestAsProtobuf(signer, new byte[0])).join());
+      assertTrue(protocol.startPut(
+          MessageLibrary.putRequestAsProtobuf(SERVER, signer, toBytes("a"), toBytes("1"),
+              toBytes("v"))).join());
+      GetResponse get =
+          protocol.startGet(
+              MessageLibrary.getRequestAsProtobuf(SERVER, signer, toBytes("a"), null)).join();
+      assertEquals("v", get.getRevisions(0).getValue().toStringUtf8());
+      try {
+        protocol.startPut(
+            MessageLibrary.putRequestAsProtobuf(SERVER, signer, toBytes("b"), toBytes("1"),
+                toBytes("v"))).join();
+        throw new AssertionError("Should have exceeded the quota of records");
+      } catch (CompletionException e) {
+        assertTrue(DatabaseNigoriProtocol.cause(e) instanceof QuotaExceededException);
+      }
+      try {
+        protocol.startGet(
+            MessageLibrary.getRequestAsProtobuf(SERVER, signer, toBytes("b"), null)).join();
+        throw new AssertionError("Should not have found b");
+      } catch (CompletionException e) {
+        assertTrue(DatabaseNigoriProtocol.cause(e) instanceof NotFoundException);
+      }
+      // The blocking methods see what was done on the pool
+      assertEquals(1, protocol.getIndices(
+          MessageLibrary.getIndicesRequestAsProtobuf(SERVER, signer)).getIndicesCount());
+    } finally {
+      async.shutdown();
+    }
+  }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server;
+
+import static com.google.nigori.common.MessageLibrary.toBytes;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.google.nigori.common.NigoriConstants;
+import com.google.nigori.common.RevValue;
+import com.google.nigori.common.Util;
+import com.google.nigori.server.ShardedDatabase.ShardMetrics;
+
+/**
+ * @author drt24
+ *
+ */
+public class ShardedDatabaseTest extends AbstractDatabaseTest {
+
+  @Override
+  protected Database getDatabase() {
+    return newShardedDatabase(3);
+  }
+
+  private static ShardedDatabase newShardedDatabase(int shards) {
+    Map<String, Database> databases = new LinkedHashMap<String, Database>();
+    for (int i = 0; i < shards; ++i) {
+      databases.put("shard" + i, new HashMapDatabase());
+    }
+    return new ShardedDatabase(databases);
+  }
+
+  @Test
+  public void usersMoveWhenShardAdded() throws NoSuchAlgorithmException, UserNotFoundException,
+      IOException {
+    ShardedDatabase sharded = newShardedDatabase(2);
+    Random random = new Random();
+    List<byte[]> hashes = new ArrayList<byte[]>();
+    for (int i = 0; i < 50; ++i) {
+      byte[] key = new byte[NigoriConstants.B_DSA];
+      random.nextBytes(key);
+      byte[] hash = Util.hashKey(key);
+      hashes.add(hash);
+      assertTrue(sharded.addUser(key, hash));
+      User user = sharded.getUser(hash);
+      assertTrue(sharded.putRecord(user, toBytes("index"), toBytes("revision"), hash));
+    }
+
+    sharded.addShard("shard2", new HashMapDatabase());
+
+    for (byte[] hash : hashes) {
+      assertTrue(sharded.haveUser(hash));
+      User user = sharded.getUser(hash);
+      Collection<RevValue> record = sharded.getRecord(user, toBytes("index"));
+      assertEquals(1, record.size());
+      assertArrayEquals(hash, record.iterator().next().getValue());
+    }
+    Map<String, ShardMetrics> metrics = sharded.getMetrics();
+    long movedOut =
+        metrics.get("shard0").getUsersMovedOut() + metrics.get("shard1").getUsersMovedOut();
+    assertTrue("No users moved to the new shard", metrics.get("shard2").getUsersMovedIn() > 0);
+    assertEquals(movedOut, metrics.get("shard2").getUsersMovedIn());
+
+    for (byte[] hash : hashes) {
+      assertTrue(sharded.deleteUser(sharded.getUser(hash)));
+    }
+  }
+
+  @Test
+  public void settledUsersNotLookedUpAgain() throws NoSuchAlgorithmException,
+      UserNotFoundException, IOException {
+    final AtomicInteger lookups = new AtomicInteger();
+    Map<String, Database> databases = new LinkedHashMap<String, Database>();
+    for (int i = 0; i < 3; ++i) {
+      databases.put("shard" + i, new HashMapDatabase() {
+        @Override
+        public boolean haveUser(byte[] existingUser) {
+          lookups.incrementAndGet();
+          return super.haveUser(existingUser);
+        }
+      });
+    }
+    ShardedDatabase sharded = new ShardedDatabase(databases);
+    byte[] key = new byte[NigoriConstants.B_DSA];
+    new Random().nextBytes(key);
+    byte[] hash = Util.hashKey(key);
+    assertTrue(sharded.addUser(key, hash));
+    sharded.addShard("shard3", new HashMapDatabase());
+
+    User user = sharded.getUser(hash);
+    int afterFirst = lookups.get();
+    for (int i = 0; i < 10; ++i) {
+      sharded.putRecord(user, toBytes("index" + i), toBytes("revision"), hash);
+    }
+    assertEquals("Looked up a settled user", afterFirst, lookups.get());
+    assertEquals(10, sharded.getIndices(user).size());
+  }
+
+  @Test
+  public void changesMoveWithUser() throws NoSuchAlgorithmException, UserNotFoundException,
+      IOException {
+    ShardedDatabase sharded = newShardedDatabase(1);
+    Random random = new Random();
+    List<byte[]> hashes = new ArrayList<byte[]>();
+    List<Long> sequences = new ArrayList<Long>();
+    for (int i = 0; i < 20; ++i) {
+      byte[] key = new byte[NigoriConstants.B_DSA];
+      random.nextBytes(key);
+      byte[] hash = Util.hashKey(key);
+      hashes.add(hash);
+      assertTrue(sharded.addUser(key, hash));
+      User user = sharded.getUser(hash);
+      for (int j = 0; j < 5; ++j) {
+        assertTrue(sharded.putRecord(user, toBytes("index" + j), toBytes("revision"), hash));
+      }
+      assertTrue(sharded.deleteRecord(user, toBytes("index0")));
+      sequences.add(sharded.getSequence(user));
+    }
+
+    sharded.addShard("shard1", new HashMapDatabase());
+
+    for (int i = 0; i < hashes.size(); ++i) {
+      User user = sharded.getUser(hashes.get(i));
+      assertEquals("Sequence changed by moving", (long) sequences.get(i), sharded
+          .getSequence(user));
+      List<KeyChange> changes = sharded.getChanges(user, 0, 10);
+      assertEquals(5, changes.size());
+      KeyChange deleted = changes.get(changes.size() - 1);
+      assertArrayEquals("Deletion lost by moving", toBytes("index0"), deleted.getKey());
+      assertTrue(deleted.isDeleted());
+      assertEquals((long) sequences.get(i), deleted.getSequence());
+      assertTrue(sharded.putRecord(user, toBytes("index5"), toBytes("revision"), hashes.get(i)));
+      assertEquals(sequences.get(i) + 1, sharded.getSequence(user));
+    }
+    assertTrue("No users moved to the new shard",
+        sharded.getMetrics().get("shard1").getUsersMovedIn() > 0);
+  }
+
+  private static List<byte[]> addUsers(ShardedDatabase sharded, int count)
+      throws NoSuchAlgorithmException, UserNotFoundException {
+    Random random = new Random();
+    List<byte[]> hashes = new ArrayList<byte[]>();
+    for (int i = 0; i < count; ++i) {
+      byte[] key = new byte[NigoriConstants.B_DSA];
+      random.nextBytes(key);
+      byte[] hash = Util.hashKey(key);
+      hashes.add(hash);
+      assertTrue(sharded.addUser(key, hash));
+      User user = sharded.getUser(hash);
+      assertTrue(sharded.putRecord(user, toBytes("index"), toBytes("revision"), hash));
+    }
+    return hashes;
+  }
+
+  @Test
+  public void rebalanceRetiresOldRings() throws NoSuchAlgorithmException, UserNotFoundException,
+      IOException {
+    ShardedDatabase sharded = newShardedDatabase(2);
+    assertTrue(sharded.rebalance());
+    List<byte[]> hashes = addUsers(sharded, 50);
+
+    sharded.addShard("shard2", new HashMapDatabase());
+    sharded.addShard("shard3", new HashMapDatabase());
+    assertEquals(3, sharded.getRingCount());
+    assertTrue(sharded.rebalance());
+    assertEquals(1, sharded.getRingCount());
+
+    Map<String, ShardMetrics> metrics = sharded.getMetrics();
+    long movedIn =
+        metrics.get("shard2").getUsersMovedIn() + metrics.get("shard3").getUsersMovedIn();
+    assertTrue("No users moved to the new shards", movedIn > 0);
+    for (byte[] hash : hashes) {
+      User user = sharded.getUser(hash);
+      Collection<RevValue> record = sharded.getRecord(user, toBytes("index"));
+      assertEquals(1, record.size());
+      assertArrayEquals(hash, record.iterator().next().getValue());
+    }
+    // Nothing moves after the old rings are gone
+    assertEquals(movedIn, sharded.getMetrics().get("shard2").getUsersMovedIn()
+        + sharded.getMetrics().get("shard3").getUsersMovedIn());
+  }
+
+  /**
+   * While one user is being moved the users at other places on the ring can still be used
+   */
+  @Test(timeout = 10000)
+  public void migrationOnlyBlocksMovingUser() throws Exception {
+    final CountDownLatch moving = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicBoolean first = new AtomicBoolean(true);
+    final AtomicReference<byte[]> blocked = new AtomicReference<byte[]>();
+    final ShardedDatabase sharded = newShardedDatabase(1);
+    final List<byte[]> hashes = addUsers(sharded, 50);
+    sharded.addShard("shard1", new HashMapDatabase() {
+      @Override
+      public boolean setChanges(User user, List<KeyChange> changes) {
+        if (first.getAndSet(false)) {
+          blocked.set(user.getPublicHash());
+          moving.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        return super.setChanges(user, changes);
+      }
+    });
+
+    final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        try {
+          for (byte[] hash : hashes) {
+            sharded.getUser(hash);
+          }
+        } catch (Exception e) {
+          failure.set(e);
+        }
+      }
+    };
+    thread.start();
+    moving.await();
+
+    int used = 0;
+    for (byte[] hash : hashes) {
+      if (hash[0] != blocked.get()[0]) {
+        User user = sharded.getUser(hash);
+        assertEquals(1, sharded.getRecord(user, toBytes("index")).size());
+        ++used;
+      }
+    }
+    assertTrue(used > 0);
+    release.countDown();
+    thread.join();
+    assertEquals(null, failure.get());
+    assertFalse(first.get());
+    User user = sharded.getUser(blocked.get());
+    assertEquals(1, sharded.getRecord(user, toBytes("index")).size());
+  }
+}
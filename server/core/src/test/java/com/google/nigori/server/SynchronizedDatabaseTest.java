@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server;
+
+import static com.google.nigori.common.MessageLibrary.toBytes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * @author drt24
+ *
+ */
+public class SynchronizedDatabaseTest extends AbstractDatabaseTest {
+
+  private static final int THREADS = 8;
+  private static final int PUTS = 500;
+
+  @Override
+  protected Database getDatabase() {
+    return new SynchronizedDatabase(new HashMapDatabase());
+  }
+
+  /**
+   * Puts from many threads at once all arrive and are all counted, as they are when one server
+   * thread after another uses a {@link HashMapDatabase}
+   */
+  @Test
+  public void concurrentPuts() throws Exception {
+    assertTrue(database.addUser(publicKey, publicHash));
+    final User user = database.getUser(publicHash);
+    ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<Boolean>> puts = new ArrayList<Future<Boolean>>();
+      for (int t = 0; t < THREADS; ++t) {
+        final int thread = t;
+        puts.add(threads.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            for (int i = 0; i < PUTS; ++i) {
+              if (!database.putRecord(user, toBytes(thread + "-" + i), toBytes("revision"),
+                  toBytes("value"))) {
+                return false;
+              }
+              database.getIndices(user);
+            }
+            return true;
+          }
+        }));
+      }
+      for (Future<Boolean> put : puts) {
+        assertTrue(put.get());
+      }
+    } finally {
+      threads.shutdown();
+    }
+    assertEquals(THREADS * PUTS, database.getIndices(user).size());
+    assertEquals(THREADS * PUTS, database.getUsage(user).getRecords());
+    assertEquals(THREADS * PUTS, database.getSequence(user));
+    assertTrue(database.deleteUser(user));
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.nigori.common.Nonce;
+
+/**
+ * One change made to the primary {@link JEDatabase}, shipped in sequence order to the replicas which
+ * apply it to their own copy. Applying a change a second time has no effect so replicas can safely
+ * replay from slightly before where they got to.
+ *
+ * On the wire and in the {@link ReplicationLog} each change is an int length followed by that many
+ * bytes.
+ *
+ * @author drt24
+ *
+ */
+final class ChangeRecord {
+
+  enum Type {
+    ADD_USER, DELETE_USER, PUT_RECORD, DELETE_RECORD, NONCE,
+    /**
+     * Not logged, sent to replicas when there is nothing else to send so that they know the primary
+     * is alive and that it has been sent every change up to the heartbeat's sequence number, which
+     * may be after the last change sent if later ones were aborted.
+     */
+    HEARTBEAT,
+    /**
+     * The user's change log was replaced, the fields are the public hash and then each change
+     */
+    SET_CHANGES
+  }
+
+  private final long sequence;
+  private final long time;
+  private final Type type;
+  private final byte[][] fields;
+
+  ChangeRecord(long sequence, long time, Type type, byte[]... fields) {
+    this.sequence = sequence;
+    this.time = time;
+    this.type = type;
+    this.fields = fields;
+  }
+
+  /**
+   * @return the same change at the given position in the log
+   */
+  ChangeRecord numbered(long sequence) {
+    return new ChangeRecord(sequence, time, type, fields);
+  }
+
+  /**
+   * @return the position of this change in the log, starting at 1
+   */
+  long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * @return when the primary made this change, in milliseconds since the epoch
+   */
+  long getTime() {
+    return time;
+  }
+
+  Type getType() {
+    return type;
+  }
+
+  /**
+   * Make this change to a replica's database.
+   *
+   * @param database
+   * @throws IOException if the change could not be applied
+   */
+  void apply(Database database) throws IOException {
+    switch (type) {
+      case ADD_USER:
+        if (!database.addUser(fields[0], fields[1]) && !database.haveUser(fields[1])) {
+          throw new IOException("Could not add user");
+        }
+        break;
+      case DELETE_USER:
+        try {
+          database.deleteUser(database.getUser(fields[0]));
+        } catch (UserNotFoundException e) {
+          // already deleted
+        }
+        break;
+      case PUT_RECORD:
+        try {
+          User user = database.getUser(fields[0]);
+          if (!database.putRecord(user, fields[1], fields[2], fields[3])
+              && database.getRevision(user, fields[1], fields[2]) == null) {
+            throw new IOException("Could not put record");
+          }
+        } catch (UserNotFoundException e) {
+          // only happens when replaying changes from before the user was deleted
+        }
+        break;
+      case DELETE_RECORD:
+        try {
+          database.deleteRecord(database.getUser(fields[0]), fields[1]);
+        } catch (UserNotFoundException e) {
+          // user already deleted so the record has gone too
+        }
+        break;
+      case NONCE:
+        database.checkAndAddNonce(new Nonce(fields[1]), fields[0]);
+        break;
+      case HEARTBEAT:
+        break;
+      case SET_CHANGES:
+        List<KeyChange> changes = new ArrayList<KeyChange>(fields.length - 1);
+        for (int i = 1; i < fields.length; ++i) {
+          changes.add(JEDatabase.readChange(fields[i]));
+        }
+        try {
+          if (!database.setChanges(database.getUser(fields[0]), changes)) {
+            throw new IOException("Could not set changes");
+          }
+        } catch (UserNotFoundException e) {
+          // only happens when replaying changes from before the user was deleted
+        }
+        break;
+      default:
+        throw new IllegalStateException("Unknown change type: " + type);
+    }
+  }
+
+  /**
+   * @return the number of bytes {@link #writeTo(DataOutputStream)} writes
+   */
+  int size() {
+    int size = 4 + 8 + 8 + 1 + 4;
+    for (byte[] field : fields) {
+      size += 4 + field.length;
+    }
+    return size;
+  }
+
+  void writeTo(DataOutputStream out) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream data = new DataOutputStream(bytes);
+    data.writeLong(sequence);
+    data.writeLong(time);
+    data.writeByte(type.ordinal());
+    data.writeInt(fields.length);
+    for (byte[] field : fields) {
+      data.writeInt(field.length);
+      data.write(field);
+    }
+    data.flush();
+    out.writeInt(bytes.size());
+    bytes.writeTo(out);
+  }
+
+  /**
+   * @param in
+   * @return the next change
+   * @throws java.io.EOFException if there are no more changes
+   * @throws IOException
+   */
+  static ChangeRecord readFrom(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    DataInputStream data = new DataInputStream(new ByteArrayInputStream(bytes));
+    long sequence = data.readLong();
+    long time = data.readLong();
+    int typeOrdinal = data.readByte();
+    if (typeOrdinal < 0 || typeOrdinal >= Type.values().length) {
+      throw new IOException("Invalid change type: " + typeOrdinal);
+    }
+    byte[][] fields = new byte[data.readInt()][];
+    for (int i = 0; i < fields.length; ++i) {
+      fields[i] = new byte[data.readInt()];
+      data.readFully(fields[i]);
+    }
+    return new ChangeRecord(sequence, time, Type.values()[typeOrdinal], fields);
+  }
+}
@@ -17,9 +17,13 @@ package com.google.nigori.server;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
 import java.util.logging.Level;
@@ -43,10 +47,11 @@ import com.sleepycat.je.Transaction;
  * @author drt24
  *
  */
-public class JEDatabase extends AbstractDatabase {
+public class JEDatabase extends AbstractDatabase implements UserLister {
 
   private final com.sleepycat.je.Database db;
   private final Environment env;
+  private volatile ReplicationLog replicationLog = null;
 
   private static final Logger log = Logger.getLogger(JEDatabase.class.getSimpleName());
   static {
@@ -59,6 +64,8 @@ public class JEDatabase extends AbstractDatabase {
   private static final byte[] SEPARATOR = MessageLibrary.toBytes("/");
   private static final byte[] DATE = MessageLibrary.toBytes("date");
   private static final byte[] KEY = MessageLibrary.toBytes("key");
+  private static final byte[] USAGE = MessageLibrary.toBytes("usage");
+  private static final byte[] SEQUENCE = MessageLibrary.toBytes("sequence");
   private static Map<String, JEDatabase> databaseMap = new WeakHashMap<String, JEDatabase>();
 
   /**
@@ -106,12 +113,40 @@ public class JEDatabase extends AbstractDatabase {
     db = env.openDatabase(null, "nigori", dbConfig);
   }
 
+  /**
+   * From now on log every change in the transaction which makes it so that it can be sent to
+   * replicas.
+   *
+   * @return the log
+   */
+  synchronized ReplicationLog startReplicationLog() {
+    if (replicationLog == null) {
+      replicationLog = new ReplicationLog(env);
+    }
+    return replicationLog;
+  }
+
+  /**
+   * Commit a transaction which made a change, logging the change first if there are replicas.
+   *
+   * @return false if the change could not be logged and so was aborted
+   */
+  private boolean commit(Transaction txn, ChangeRecord.Type type, byte[]... fields) {
+    ReplicationLog replication = replicationLog;
+    if (replication == null) {
+      txn.commit();
+      return true;
+    }
+    return replication.commit(txn,
+        Collections.singletonList(new ChangeRecord(0, System.currentTimeMillis(), type, fields)));
+  }
+
   @Override
   public UserFactory getUserFactory() {
     return JUser.Factory.getInstance();
   }
 
-  private byte[] makeBytes(byte[]... bytes){
+  private static byte[] makeBytes(byte[]... bytes){
     int length = 0;
     for (byte[] b : bytes){
       length += b.length;
@@ -132,6 +167,12 @@ public class JEDatabase extends AbstractDatabase {
   private DatabaseEntry makePublicKeyKey(byte[] publicHash){
     return new DatabaseEntry(makeBytes(USERS.getData(), SEPARATOR, publicHash, SEPARATOR, KEY));
   }
+  private DatabaseEntry makeUsageKey(byte[] publicHash){
+    return new DatabaseEntry(makeBytes(USERS.getData(), SEPARATOR, publicHash, SEPARATOR, USAGE));
+  }
+  private DatabaseEntry makeSequenceKey(byte[] publicHash){
+    return new DatabaseEntry(makeBytes(USERS.getData(), SEPARATOR, publicHash, SEPARATOR, SEQUENCE));
+  }
   @Override
   public boolean addUser(byte[] publicKey, byte[] publicHash) {
     
@@ -168,8 +209,7 @@ public class JEDatabase extends AbstractDatabase {
         txn.abort();
         return false;
       }
-      txn.commit();
-      return true;
+      return commit(txn, ChangeRecord.Type.ADD_USER, publicKey, publicHash);
     } catch (DatabaseException e) {
       severe("Exception while adding user", e);
       try {
@@ -205,28 +245,35 @@ public class JEDatabase extends AbstractDatabase {
 
   @Override
   public boolean deleteUser(User existingUser) {
+    Transaction txn = null;
     try {
-      final Transaction txn = env.beginTransaction(null, null);
+      txn = env.beginTransaction(null, null);
       byte[] publicHash = existingUser.getPublicHash();
       db.delete(txn, makeRegDateKey(publicHash));
       db.delete(txn, makePublicKeyKey(publicHash));
+      db.delete(txn, makeUsageKey(publicHash));
+      db.delete(txn, makeSequenceKey(publicHash));
+      boolean found;
       Cursor cursor = db.openCursor(txn, null);
       try {
         OperationStatus status =
             cursor.getSearchBoth(USERS, new DatabaseEntry(publicHash), null);
-        if (status == OperationStatus.SUCCESS) {
+        found = status == OperationStatus.SUCCESS;
+        if (found) {
           cursor.delete();
           deleteUserData(existingUser, txn);
-          return true;
-        } else {
-          return false;
         }
       } finally {
         cursor.close();
+      }
+      if (!found) {
         txn.commit();
+        return false;
       }
+      return commit(txn, ChangeRecord.Type.DELETE_USER, publicHash);
     } catch (DatabaseException e) {
       severe("Exception while deleting user", e);
+      abort(txn);
       return false;
     }
   }
@@ -238,7 +285,23 @@ public class JEDatabase extends AbstractDatabase {
       DatabaseEntry storesKey = makeStoresKey(user);
       for (OperationStatus lookupStatus = cursor.getSearchKey(storesKey, lookup, null); OperationStatus.SUCCESS == lookupStatus;
           lookupStatus = cursor.getNextDup(storesKey, lookup, null)) {
-        deleteRevisions(user, lookup.getData(), txn);
+        deleteRevisions(user, lookup.getData(), txn, null);
+        cursor.delete();
+      }
+    } finally {
+      cursor.close();
+    }
+    deleteChanges(user, txn);
+  }
+
+  private void deleteChanges(User user, Transaction txn) {
+    Cursor cursor = db.openCursor(txn, null);
+    try {
+      DatabaseEntry change = new DatabaseEntry();
+      DatabaseEntry changesKey = makeChangesKey(user);
+      for (OperationStatus changeStatus = cursor.getSearchKey(changesKey, change, null); OperationStatus.SUCCESS == changeStatus;
+          changeStatus = cursor.getNextDup(changesKey, change, null)) {
+        db.delete(txn, makeChangeKeyKey(user, readChange(change.getData()).getKey()));
         cursor.delete();
       }
     } finally {
@@ -302,8 +365,7 @@ public class JEDatabase extends AbstractDatabase {
       }
       status = db.put(txn, noncesKey, nonceValue);
       if (status == OperationStatus.SUCCESS) {
-        txn.commit();
-        return true;
+        return commit(txn, ChangeRecord.Type.NONCE, publicKey, nonce.toToken());
       } else {
         txn.abort();
         return false;
@@ -333,49 +395,79 @@ public class JEDatabase extends AbstractDatabase {
     Transaction txn = null;
     try {
       txn = env.beginTransaction(null, null);
-      OperationStatus lookupExists = db.getSearchBoth(txn, makeStoresKey(user), new DatabaseEntry(key), null);
-      if (OperationStatus.SUCCESS != lookupExists){
-        txn.commit();
-        return null;
-      }
-      Collection<RevValue> collection = new ArrayList<RevValue>();
-      Cursor cursor = db.openCursor(txn, null);
-      try {
-        byte[] lookup = makeLookupBytes(user, key);
-        DatabaseEntry lookupKey = new DatabaseEntry(lookup);
-
-        DatabaseEntry revision = new DatabaseEntry();
-        DatabaseEntry value = new DatabaseEntry();
-        DatabaseEntry revisionKey;
-        OperationStatus status = cursor.getSearchKey(lookupKey, revision, null);
-        for (; OperationStatus.SUCCESS == status; status =
-            cursor.getNextDup(lookupKey, revision, null)) {
-          revisionKey = makeValueKey(lookup, revision.getData());
-          OperationStatus valStatus = db.get(txn, revisionKey, value, null);
-          if (OperationStatus.SUCCESS == valStatus) {
-            collection.add(new RevValue(revision.getData(), value.getData()));
-          } else {
-            // TODO(drt24) revision exists but value does not.
-          }
-        }
-      } finally {
-        cursor.close();
-      }
+      Collection<RevValue> collection = getRecord(txn, user, key);
       txn.commit();
       return collection;
-
     } catch (DatabaseException e) {
       severe("Exception while getting record", e);
-      try {
-        if (txn != null)
-          txn.abort();
-      } catch (DatabaseException e1) {
-        // we already had a failure, ignore this one.
+      abort(txn);
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public List<Collection<RevValue>> getRecords(User user, List<byte[]> keys) throws IOException {
+    Transaction txn = null;
+    try {
+      txn = env.beginTransaction(null, null);
+      List<Collection<RevValue>> answer = new ArrayList<Collection<RevValue>>(keys.size());
+      for (byte[] key : keys) {
+        answer.add(getRecord(txn, user, key));
       }
+      txn.commit();
+      return answer;
+    } catch (DatabaseException e) {
+      severe("Exception while getting records", e);
+      abort(txn);
       throw new IOException(e);
     }
   }
 
+  private Collection<RevValue> getRecord(Transaction txn, User user, byte[] key) {
+    OperationStatus lookupExists = db.getSearchBoth(txn, makeStoresKey(user), new DatabaseEntry(key), null);
+    if (OperationStatus.SUCCESS != lookupExists){
+      return null;
+    }
+    Collection<RevValue> collection = new ArrayList<RevValue>();
+    Cursor cursor = db.openCursor(txn, null);
+    try {
+      byte[] lookup = makeLookupBytes(user, key);
+      DatabaseEntry lookupKey = new DatabaseEntry(lookup);
+
+      DatabaseEntry revision = new DatabaseEntry();
+      DatabaseEntry value = new DatabaseEntry();
+      DatabaseEntry revisionKey;
+      OperationStatus status = cursor.getSearchKey(lookupKey, revision, null);
+      for (; OperationStatus.SUCCESS == status; status =
+          cursor.getNextDup(lookupKey, revision, null)) {
+        revisionKey = makeValueKey(lookup, revision.getData());
+        OperationStatus valStatus = db.get(txn, revisionKey, value, null);
+        if (OperationStatus.SUCCESS == valStatus) {
+          collection.add(new RevValue(revision.getData(), value.getData()));
+        } else {
+          // TODO(drt24) revision exists but value does not.
+        }
+      }
+    } finally {
+      cursor.close();
+    }
+    return collection;
+  }
+
+  /**
+   * Abort the transaction if there is one, for use when we have already had a failure.
+   * 
+   * @param txn
+   */
+  private static void abort(Transaction txn) {
+    try {
+      if (txn != null)
+        txn.abort();
+    } catch (DatabaseException e1) {
+      // we already had a failure, ignore this one.
+    }
+  }
+
   @Override
   public RevValue getRevision(User user, byte[] key, byte[] revision) throws IOException {
     try {
@@ -390,6 +482,24 @@ public class JEDatabase extends AbstractDatabase {
     }
   }
 
+  @Override
+  public List<RevValue> getRevisionValues(User user, byte[] key, List<byte[]> revisions)
+      throws IOException {
+    try {
+      byte[] lookup = makeLookupBytes(user, key);
+      List<RevValue> answer = new ArrayList<RevValue>(revisions.size());
+      DatabaseEntry value = new DatabaseEntry();
+      for (byte[] revision : revisions) {
+        OperationStatus status = db.get(null, makeValueKey(lookup, revision), value, null);
+        answer.add(OperationStatus.SUCCESS == status ? new RevValue(revision, value.getData())
+            : null);
+      }
+      return answer;
+    } catch (DatabaseException e) {
+      throw new IOException(e);
+    }
+  }
+
   @Override
   public Collection<byte[]> getIndices(User user) throws IOException {
     Transaction txn = null;
@@ -432,36 +542,142 @@ public class JEDatabase extends AbstractDatabase {
     Transaction txn = null;
     try {
       txn = env.beginTransaction(null, null);
-      DatabaseEntry lookup = new DatabaseEntry(makeLookupBytes(user, key));
-      DatabaseEntry revision = new DatabaseEntry();
+      Collection<byte[]> revisions = getRevisions(txn, user, key);
+      txn.commit();
+      return revisions;
+    } catch (DatabaseException e) {
+      abort(txn);
+      throw new IOException(e);
+    }
+  }
 
-      Collection<byte[]> revisions = new ArrayList<byte[]>();
-      Cursor cursor = db.openCursor(txn, null);
-      try {
-        for (OperationStatus revisionStatus = cursor.getSearchKey(lookup, revision, null); OperationStatus.SUCCESS == revisionStatus;
-            revisionStatus = cursor.getNextDup(lookup, revision, null)) {
-          revisions.add(revision.getData());
-        }
-      } finally {
-        cursor.close();
+  @Override
+  public List<Collection<byte[]>> getRevisions(User user, List<byte[]> keys) throws IOException {
+    Transaction txn = null;
+    try {
+      txn = env.beginTransaction(null, null);
+      List<Collection<byte[]>> answer = new ArrayList<Collection<byte[]>>(keys.size());
+      for (byte[] key : keys) {
+        answer.add(getRevisions(txn, user, key));
       }
       txn.commit();
-      if (revisions.size() == 0){
-        return null;
+      return answer;
+    } catch (DatabaseException e) {
+      abort(txn);
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public Page<byte[]> getIndices(User user, byte[] cursor, int limit) throws IOException {
+    Transaction txn = null;
+    try {
+      txn = env.beginTransaction(null, null);
+      Page<byte[]> page = page(txn, makeStoresKey(user), cursor, limit);
+      txn.commit();
+      if (page == null) {
+        return new Page<byte[]>(new ArrayList<byte[]>(), null);
       }
-      return revisions;
+      return page;
     } catch (DatabaseException e) {
-      if (txn != null) {
-        try {
-          txn.abort();
-        } catch (DatabaseException e1) {
-          // we already had a failure, ignore this one.
-        }
+      abort(txn);
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public Page<byte[]> getPublicHashes(byte[] cursor, int limit) throws IOException {
+    Transaction txn = null;
+    try {
+      txn = env.beginTransaction(null, null);
+      Page<byte[]> page = page(txn, USERS, cursor, limit);
+      txn.commit();
+      if (page == null) {
+        return new Page<byte[]>(new ArrayList<byte[]>(), null);
       }
+      return page;
+    } catch (DatabaseException e) {
+      abort(txn);
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public Page<byte[]> getRevisions(User user, byte[] key, byte[] cursor, int limit)
+      throws IOException {
+    Transaction txn = null;
+    try {
+      txn = env.beginTransaction(null, null);
+      Page<byte[]> page =
+          page(txn, new DatabaseEntry(makeLookupBytes(user, key)), cursor, limit);
+      txn.commit();
+      return page;
+    } catch (DatabaseException e) {
+      abort(txn);
       throw new IOException(e);
     }
   }
 
+  /**
+   * Page through the sorted duplicates of key, the cursor is the last duplicate in the page and the
+   * next page starts just after it.
+   *
+   * @return the page or null if key has no duplicates at all
+   */
+  private Page<byte[]> page(Transaction txn, DatabaseEntry key, byte[] from, int limit) {
+    DatabaseEntry data = new DatabaseEntry();
+    Cursor cursor = db.openCursor(txn, null);
+    try {
+      OperationStatus status;
+      if (from == null) {
+        status = cursor.getSearchKey(key, data, null);
+        if (OperationStatus.SUCCESS != status) {
+          return null;
+        }
+      } else {
+        data.setData(from);
+        status = cursor.getSearchBothRange(key, data, null);
+        if (OperationStatus.SUCCESS == status && Arrays.equals(from, data.getData())) {
+          status = cursor.getNextDup(key, data, null);
+        }
+        if (OperationStatus.SUCCESS != status
+            && OperationStatus.SUCCESS != cursor.getSearchKey(key, new DatabaseEntry(), null)) {
+          return null;
+        }
+      }
+      List<byte[]> items = new ArrayList<byte[]>();
+      for (; OperationStatus.SUCCESS == status; status = cursor.getNextDup(key, data, null)) {
+        if (items.size() == limit) {
+          return new Page<byte[]>(items, items.get(limit - 1));
+        }
+        items.add(data.getData());
+      }
+      return new Page<byte[]>(items, null);
+    } finally {
+      cursor.close();
+    }
+  }
+
+  private Collection<byte[]> getRevisions(Transaction txn, User user, byte[] key) {
+    DatabaseEntry lookup = new DatabaseEntry(makeLookupBytes(user, key));
+    DatabaseEntry revision = new DatabaseEntry();
+
+    Collection<byte[]> revisions = new ArrayList<byte[]>();
+    Cursor cursor = db.openCursor(txn, null);
+    try {
+      for (OperationStatus revisionStatus = cursor.getSearchKey(lookup, revision, null); OperationStatus.SUCCESS == revisionStatus;
+          revisionStatus = cursor.getNextDup(lookup, revision, null)) {
+        revisions.add(revision.getData());
+      }
+    } finally {
+      cursor.close();
+    }
+    if (revisions.size() == 0){
+      return null;
+    }
+    return revisions;
+  }
+
   private DatabaseEntry makeStoresKey(User user) {
     return new DatabaseEntry(makeBytes("stores/".getBytes(), user.getPublicHash()));
   }
@@ -471,53 +687,374 @@ public class JEDatabase extends AbstractDatabase {
     Transaction txn = null;
     try {
       txn = env.beginTransaction(null, null);
-      DatabaseEntry storesKey = makeStoresKey(user);
-      DatabaseEntry lookup = new DatabaseEntry(key);
-      OperationStatus lookupExists = db.getSearchBoth(txn, storesKey, lookup, null);
-      if (OperationStatus.NOTFOUND == lookupExists){
-        // insert lookup
-        lookupExists = db.put(txn, storesKey, lookup);
-      }
-      if (OperationStatus.SUCCESS != lookupExists){
-        txn.abort();
-        return false;
-      }
-      byte[] lookupKey = makeLookupBytes(user,key);
-      DatabaseEntry lookupEntry = new DatabaseEntry(lookupKey);
-      DatabaseEntry revisionEntry = new DatabaseEntry(revision);
-      OperationStatus revisionExists = db.getSearchBoth(txn, lookupEntry, revisionEntry, null);
-      if (OperationStatus.SUCCESS == revisionExists){// already exists, abort
-        txn.abort();
-        return false;
-      }
-      // Does not exist, make it exist.
-      revisionExists = db.put(txn, lookupEntry, revisionEntry);
-      if (OperationStatus.SUCCESS != revisionExists){
+      if (putRecord(txn, user, key, revision, data, StorageUsage.UNLIMITED) == Put.DONE) {
+        return commit(txn, ChangeRecord.Type.PUT_RECORD, user.getPublicHash(), key, revision,
+            data);
+      } else {
         txn.abort();
-        log.warning("Could not put revision: " + revisionExists.toString());
         return false;
       }
-      OperationStatus putValue = db.put(txn, new DatabaseEntry(makeBytes(lookupKey,SEPARATOR,revision)), new DatabaseEntry(data));
-      if (OperationStatus.SUCCESS != putValue){
+    } catch (DatabaseException e){
+      severe("Exception while putting record", e);
+      abort(txn);
+      return false;
+    }
+  }
+
+  /**
+   * JE has no nested transactions, so if a record fails after part of it has been written the whole
+   * transaction is aborted and the batch is put again without that record.
+   */
+  @Override
+  public boolean[] putRecords(User user, List<KeyRevValue> records) {
+    return putRecords(user, records, StorageUsage.UNLIMITED);
+  }
+
+  /**
+   * The usage is read for update in the transaction which makes the puts, so puts made at the same
+   * time wait for each other and each sees the usage including the others.
+   */
+  @Override
+  public boolean[] putRecords(User user, List<KeyRevValue> records, StorageUsage quota) {
+    boolean[] answer = new boolean[records.size()];
+    boolean[] failed = new boolean[records.size()];
+    Transaction txn = null;
+    try {
+      while (true) {
+        txn = env.beginTransaction(null, null);
+        boolean retry = false;
+        for (int i = 0; i < answer.length && !retry; ++i) {
+          if (failed[i]) {
+            answer[i] = false;
+            continue;
+          }
+          KeyRevValue record = records.get(i);
+          Put put =
+              putRecord(txn, user, record.getKey(), record.getRevision(), record.getValue(), quota);
+          if (put == Put.FAILED) {
+            failed[i] = true;
+            retry = true;
+          }
+          answer[i] = put == Put.DONE;
+        }
+        if (!retry) {
+          return commit(txn, user, records, answer) ? answer : new boolean[records.size()];
+        }
         txn.abort();
-        log.warning("Could not put value: " + putValue.toString());
-        return false;
+        txn = null;
       }
+    } catch (DatabaseException e){
+      severe("Exception while putting records", e);
+      abort(txn);
+      return new boolean[records.size()];
+    }
+  }
+
+  /**
+   * Commit a transaction which put records, logging the ones which were put if there are replicas.
+   *
+   * @return false if they could not be logged and so were not put
+   */
+  private boolean commit(Transaction txn, User user, List<KeyRevValue> records, boolean[] put) {
+    ReplicationLog replication = replicationLog;
+    if (replication == null) {
       txn.commit();
       return true;
-    } catch (DatabaseException e){
-      severe("Exception while putting record", e);
+    }
+    List<ChangeRecord> changes = new ArrayList<ChangeRecord>();
+    long time = System.currentTimeMillis();
+    for (int i = 0; i < put.length; ++i) {
+      if (put[i]) {
+        KeyRevValue record = records.get(i);
+        changes.add(new ChangeRecord(0, time, ChangeRecord.Type.PUT_RECORD, user.getPublicHash(),
+            record.getKey(), record.getRevision(), record.getValue()));
+      }
+    }
+    return replication.commit(txn, changes);
+  }
+
+  private enum Put {
+    DONE,
+    /**
+     * Nothing was written
+     */
+    EXISTS,
+    /**
+     * Nothing was written as it would have taken the user over quota
+     */
+    OVER_QUOTA,
+    /**
+     * Part of the record may have been written so the transaction must be aborted
+     */
+    FAILED
+  }
+
+  /**
+   * Put a record as part of a larger transaction, nothing is written if the revision already exists
+   * or if it would take the user over quota.
+   */
+  private Put putRecord(Transaction txn, User user, byte[] key, byte[] revision, byte[] data,
+      StorageUsage quota) {
+    byte[] lookupKey = makeLookupBytes(user,key);
+    DatabaseEntry lookupEntry = new DatabaseEntry(lookupKey);
+    DatabaseEntry revisionEntry = new DatabaseEntry(revision);
+    OperationStatus revisionExists = db.getSearchBoth(txn, lookupEntry, revisionEntry, null);
+    if (OperationStatus.SUCCESS == revisionExists){// already exists
+      return Put.EXISTS;
+    }
+    // Read before making any changes so that if it has to be counted it doesn't include this put
+    long[] usage = getUsage(txn, user, LockMode.RMW);
+    DatabaseEntry storesKey = makeStoresKey(user);
+    DatabaseEntry lookup = new DatabaseEntry(key);
+    OperationStatus lookupExists = db.getSearchBoth(txn, storesKey, lookup, null);
+    boolean newRecord = OperationStatus.NOTFOUND == lookupExists;
+    if (quota != StorageUsage.UNLIMITED
+        && new StorageUsage(usage[0], usage[1], usage[2]).addPut(newRecord, key, revision, data)
+            .exceeds(quota)) {
+      return Put.OVER_QUOTA;
+    }
+    if (newRecord){
+      // insert lookup
+      lookupExists = db.put(txn, storesKey, lookup);
+      usage[0] += 1;
+      usage[2] += key.length;
+    }
+    if (OperationStatus.SUCCESS != lookupExists){
+      log.warning("Could not put lookup: " + lookupExists.toString());
+      return Put.FAILED;
+    }
+    // Does not exist, make it exist.
+    revisionExists = db.put(txn, lookupEntry, revisionEntry);
+    if (OperationStatus.SUCCESS != revisionExists){
+      log.warning("Could not put revision: " + revisionExists.toString());
+      return Put.FAILED;
+    }
+    OperationStatus putValue = db.put(txn, makeValueKey(lookupKey, revision), new DatabaseEntry(data));
+    if (OperationStatus.SUCCESS != putValue){
+      log.warning("Could not put value: " + putValue.toString());
+      return Put.FAILED;
+    }
+    usage[1] += 1;
+    usage[2] += revision.length + data.length;
+    putUsage(txn, user, usage);
+    recordChange(txn, user, key, false);
+    return Put.DONE;
+  }
+
+  /**
+   * The change log is kept as duplicates of a single key for the user, each of which is the
+   * sequence number, whether the key was deleted and then the key so that they sort by sequence
+   * number. A second entry for each key points at its current duplicate so it can be replaced.
+   */
+  private DatabaseEntry makeChangesKey(User user) {
+    return new DatabaseEntry(makeBytes("changes/".getBytes(), user.getPublicHash()));
+  }
+
+  private DatabaseEntry makeChangeKeyKey(User user, byte[] key) {
+    return new DatabaseEntry(makeBytes("changekeys/".getBytes(), user.getPublicHash(), SEPARATOR, key));
+  }
+
+  private long getSequence(Transaction txn, User user, LockMode lockMode) {
+    DatabaseEntry value = new DatabaseEntry();
+    OperationStatus status = db.get(txn, makeSequenceKey(user.getPublicHash()), value, lockMode);
+    if (OperationStatus.SUCCESS == status) {
+      return Util.bin2long(value.getData());
+    }
+    return 0;
+  }
+
+  /**
+   * Give the key the next sequence number, replacing any earlier change to it in the log
+   */
+  private void recordChange(Transaction txn, User user, byte[] key, boolean deleted) {
+    long sequence = getSequence(txn, user, LockMode.RMW) + 1;
+    DatabaseEntry sequenceKey = makeSequenceKey(user.getPublicHash());
+    // Keys can have duplicates so replace rather than put
+    db.delete(txn, sequenceKey);
+    db.put(txn, sequenceKey, new DatabaseEntry(Util.long2bin(sequence)));
+
+    DatabaseEntry changesKey = makeChangesKey(user);
+    DatabaseEntry changeKeyKey = makeChangeKeyKey(user, key);
+    DatabaseEntry previous = new DatabaseEntry();
+    if (OperationStatus.SUCCESS == db.get(txn, changeKeyKey, previous, LockMode.RMW)) {
+      Cursor cursor = db.openCursor(txn, null);
       try {
-        if (txn != null)
-          txn.abort();
-      } catch (DatabaseException e1) {
-        // we already had a failure, ignore this one.
+        if (OperationStatus.SUCCESS == cursor.getSearchBoth(changesKey, previous, null)) {
+          cursor.delete();
+        }
+      } finally {
+        cursor.close();
       }
+      db.delete(txn, changeKeyKey);
+    }
+    DatabaseEntry change = new DatabaseEntry(changeBytes(new KeyChange(key, sequence, deleted)));
+    db.put(txn, changesKey, change);
+    db.put(txn, changeKeyKey, change);
+  }
+
+  /**
+   * @return the change as it is kept in the change log and sent to replicas
+   */
+  static byte[] changeBytes(KeyChange change) {
+    return makeBytes(Util.long2bin(change.getSequence()), Util.boolean2bin(change.isDeleted()),
+        change.getKey());
+  }
+
+  static KeyChange readChange(byte[] data) {
+    return new KeyChange(Arrays.copyOfRange(data, 9, data.length), Util.bin2long(data), Util
+        .bin2boolean(data, 8));
+  }
+
+  @Override
+  public List<KeyChange> getChanges(User user, long since, int limit) throws IOException {
+    List<KeyChange> answer = new ArrayList<KeyChange>();
+    if (since == Long.MAX_VALUE) {
+      return answer;
+    }
+    Transaction txn = null;
+    try {
+      txn = env.beginTransaction(null, null);
+      Cursor cursor = db.openCursor(txn, null);
+      try {
+        DatabaseEntry changesKey = makeChangesKey(user);
+        DatabaseEntry change = new DatabaseEntry(Util.long2bin(Math.max(since, 0) + 1));
+        for (OperationStatus status = cursor.getSearchBothRange(changesKey, change, null); OperationStatus.SUCCESS == status
+            && answer.size() < limit; status = cursor.getNextDup(changesKey, change, null)) {
+          answer.add(readChange(change.getData()));
+        }
+      } finally {
+        cursor.close();
+      }
+      txn.commit();
+      return answer;
+    } catch (DatabaseException e) {
+      abort(txn);
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public long getSequence(User user) throws IOException {
+    try {
+      return getSequence(null, user, LockMode.READ_COMMITTED);
+    } catch (DatabaseException e) {
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public boolean setChanges(User user, List<KeyChange> changes) {
+    Transaction txn = null;
+    try {
+      txn = env.beginTransaction(null, null);
+      if (!haveUser(txn, user.getPublicHash())) {
+        txn.commit();
+        return false;
+      }
+      // Lock the sequence first as puts and deletes do
+      getSequence(txn, user, LockMode.RMW);
+      deleteChanges(user, txn);
+      DatabaseEntry changesKey = makeChangesKey(user);
+      byte[][] fields = new byte[changes.size() + 1][];
+      fields[0] = user.getPublicHash();
+      long sequence = 0;
+      for (int i = 0; i < changes.size(); ++i) {
+        KeyChange change = changes.get(i);
+        fields[i + 1] = changeBytes(change);
+        DatabaseEntry changeEntry = new DatabaseEntry(fields[i + 1]);
+        db.put(txn, changesKey, changeEntry);
+        db.put(txn, makeChangeKeyKey(user, change.getKey()), changeEntry);
+        sequence = Math.max(sequence, change.getSequence());
+      }
+      DatabaseEntry sequenceKey = makeSequenceKey(user.getPublicHash());
+      // Keys can have duplicates so replace rather than put
+      db.delete(txn, sequenceKey);
+      db.put(txn, sequenceKey, new DatabaseEntry(Util.long2bin(sequence)));
+      return commit(txn, ChangeRecord.Type.SET_CHANGES, fields);
+    } catch (DatabaseException e) {
+      severe("Exception while setting changes", e);
+      abort(txn);
       return false;
     }
   }
 
-  private boolean deleteRevisions(User user, byte[] key, Transaction txn) {
+  /**
+   * Get the user's usage, if it has never been stored (the user is new or predates usage being
+   * stored) then it is counted from their records. Reading for update stores what was counted
+   * straight away: there is no record to lock until then, so puts at the same time would each count
+   * from scratch and overwrite each other's usage.
+   * 
+   * @return the number of records, revisions and bytes
+   */
+  private long[] getUsage(Transaction txn, User user, LockMode lockMode) {
+    DatabaseEntry value = new DatabaseEntry();
+    DatabaseEntry usageKey = makeUsageKey(user.getPublicHash());
+    OperationStatus status = db.get(txn, usageKey, value, lockMode);
+    long[] usage = new long[3];
+    if (OperationStatus.SUCCESS == status) {
+      ByteBuffer buffer = ByteBuffer.wrap(value.getData());
+      for (int i = 0; i < usage.length; ++i) {
+        usage[i] = buffer.getLong();
+      }
+      return usage;
+    }
+    Cursor cursor = db.openCursor(txn, null);
+    try {
+      DatabaseEntry storeKey = makeStoresKey(user);
+      DatabaseEntry index = new DatabaseEntry();
+      for (OperationStatus indexStatus = cursor.getSearchKey(storeKey, index, null); OperationStatus.SUCCESS == indexStatus;
+          indexStatus = cursor.getNextDup(storeKey, index, null)) {
+        usage[0] += 1;
+        usage[2] += index.getData().length;
+        for (RevValue revValue : getRecord(txn, user, index.getData())) {
+          usage[1] += 1;
+          usage[2] += revValue.getRevision().getBytes().length + revValue.getValue().length;
+        }
+      }
+    } finally {
+      cursor.close();
+    }
+    if (LockMode.RMW == lockMode
+        && OperationStatus.KEYEXIST == db.putNoOverwrite(txn, usageKey, usageEntry(usage))) {
+      // Another transaction stored it first, waited for that to commit so now read theirs
+      return getUsage(txn, user, lockMode);
+    }
+    return usage;
+  }
+
+  private static DatabaseEntry usageEntry(long[] usage) {
+    ByteBuffer buffer = ByteBuffer.allocate(8 * usage.length);
+    for (long count : usage) {
+      buffer.putLong(count);
+    }
+    return new DatabaseEntry(buffer.array());
+  }
+
+  private void putUsage(Transaction txn, User user, long[] usage) {
+    DatabaseEntry usageKey = makeUsageKey(user.getPublicHash());
+    // Keys can have duplicates so replace rather than put
+    db.delete(txn, usageKey);
+    db.put(txn, usageKey, usageEntry(usage));
+  }
+
+  @Override
+  public StorageUsage getUsage(User user) throws IOException {
+    Transaction txn = null;
+    try {
+      txn = env.beginTransaction(null, null);
+      long[] usage = getUsage(txn, user, null);
+      txn.commit();
+      return new StorageUsage(usage[0], usage[1], usage[2]);
+    } catch (DatabaseException e) {
+      abort(txn);
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * @param removed if not null the number of revisions and bytes deleted are added to it
+   */
+  private boolean deleteRevisions(User user, byte[] key, Transaction txn, long[] removed) {
     boolean didWork = false;
 
     Cursor cursor = db.openCursor(txn, null);
@@ -529,6 +1066,13 @@ public class JEDatabase extends AbstractDatabase {
       for (OperationStatus revisionStatus = cursor.getSearchKey(lookupKey, revision, null); OperationStatus.SUCCESS == revisionStatus;
           revisionStatus = cursor.getNextDup(lookupKey, revision, null)) {
         revisionKey = new DatabaseEntry(makeBytes(lookup, SEPARATOR, revision.getData()));
+        if (removed != null) {
+          DatabaseEntry value = new DatabaseEntry();
+          if (OperationStatus.SUCCESS == db.get(txn, revisionKey, value, null)) {
+            removed[0] += 1;
+            removed[1] += revision.getData().length + value.getData().length;
+          }
+        }
         OperationStatus valueDelete = db.delete(txn, revisionKey);
         OperationStatus revisionDelete = cursor.delete();
         if (OperationStatus.SUCCESS == valueDelete || OperationStatus.SUCCESS == revisionDelete) {
@@ -548,6 +1092,7 @@ public class JEDatabase extends AbstractDatabase {
     try {
       txn = env.beginTransaction(null, null);
       boolean result = false;
+      long[] usage = getUsage(txn, user, LockMode.RMW);
       Cursor cursor = db.openCursor(txn, null);
       try {
       OperationStatus lookupStatus =
@@ -556,14 +1101,24 @@ public class JEDatabase extends AbstractDatabase {
         OperationStatus lookupDelete = cursor.delete();
         if (OperationStatus.SUCCESS == lookupDelete) {
           result = true;
+          usage[0] -= 1;
+          usage[2] -= key.length;
         }
       }
       } finally {
         cursor.close();
       }
-      result |= deleteRevisions(user, key, txn);
+      long[] removed = new long[2];
+      result |= deleteRevisions(user, key, txn, removed);
+      if (result) {
+        usage[1] -= removed[0];
+        usage[2] -= removed[1];
+        putUsage(txn, user, usage);
+        recordChange(txn, user, key, true);
+        return commit(txn, ChangeRecord.Type.DELETE_RECORD, user.getPublicHash(), key);
+      }
       txn.commit();
-      return result;
+      return false;
     } catch (DatabaseException e) {
       severe("Exception while deleting record", e);
       try {
@@ -0,0 +1,405 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.nigori.common.Nonce;
+import com.google.nigori.common.RevValue;
+import com.google.nigori.server.ChangeRecord.Type;
+
+/**
+ * A read only copy of a {@link JEReplicationPrimary}'s database which applies the changes streamed
+ * from the primary to its own {@link JEDatabase}.
+ *
+ * Reads are served from the local copy, attempts to change users or records fail. Nonces are checked
+ * and added locally so that authenticated reads work, they are also received from the primary.
+ *
+ * How far through the primary's changes the replica is saved in a file so that on restart only the
+ * changes since then are fetched. It is saved periodically rather than after every change as
+ * replaying changes which have already been applied has no effect, and each time it is saved the
+ * primary is told so that it can remove changes every replica has from its log. The primary
+ * remembers replicas by name so a replica must keep its name across restarts.
+ *
+ * @author drt24
+ *
+ */
+public class JEReplica implements Database {
+
+  private static final Logger log = Logger.getLogger(JEReplica.class.getSimpleName());
+
+  private static final long RECONNECT_MILLIS = 1000;
+  private static final int SAVE_EVERY = 100;
+
+  private final String name;
+  private final JEDatabase database;
+  private final File sequenceFile;
+  private final InetSocketAddress primary;
+  private final Thread receiver;
+
+  private volatile boolean closed = false;
+  private volatile Socket socket;
+  private volatile boolean connected = false;
+  private volatile long applied;
+  private volatile long primarySequence;
+  private volatile long caughtUpAt = System.currentTimeMillis();
+
+  /**
+   * @param name identifies this replica to the primary
+   * @param database the local copy
+   * @param sequenceFile where to save how far through the changes the local copy is
+   * @param primary the address of the primary
+   * @throws IOException if the sequence file exists but can't be read
+   */
+  public JEReplica(String name, JEDatabase database, File sequenceFile, InetSocketAddress primary)
+      throws IOException {
+    this.name = name;
+    this.database = database;
+    this.sequenceFile = sequenceFile;
+    this.primary = primary;
+    applied = loadSequence();
+    primarySequence = applied;
+    receiver = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        receive();
+      }
+    }, "replication-receiver");
+    receiver.setDaemon(true);
+    receiver.start();
+  }
+
+  private long loadSequence() throws IOException {
+    if (!sequenceFile.exists()) {
+      return 0;
+    }
+    DataInputStream in = new DataInputStream(new FileInputStream(sequenceFile));
+    try {
+      return in.readLong();
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * @return whether it was saved
+   */
+  private boolean saveSequence() {
+    File temp = new File(sequenceFile.getPath() + ".tmp");
+    try {
+      DataOutputStream out = new DataOutputStream(new FileOutputStream(temp));
+      try {
+        out.writeLong(applied);
+      } finally {
+        out.close();
+      }
+      if (!temp.renameTo(sequenceFile)) {
+        sequenceFile.delete();
+        if (!temp.renameTo(sequenceFile)) {
+          throw new IOException("Could not rename " + temp + " to " + sequenceFile);
+        }
+      }
+      return true;
+    } catch (IOException e) {
+      log.log(Level.WARNING, "Could not save replication sequence", e);
+      return false;
+    }
+  }
+
+  private void saveAndAcknowledge(DataOutputStream out) throws IOException {
+    if (saveSequence()) {
+      out.writeLong(applied);
+      out.flush();
+    }
+  }
+
+  private void receive() {
+    while (!closed) {
+      try {
+        socket = new Socket(primary.getAddress(), primary.getPort());
+        try {
+          DataOutputStream out =
+              new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+          out.writeUTF(name);
+          out.writeLong(applied);
+          out.flush();
+          DataInputStream in =
+              new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+          connected = true;
+          int unsaved = 0;
+          while (!closed) {
+            ChangeRecord change = ChangeRecord.readFrom(in);
+            if (change.getType() == Type.HEARTBEAT) {
+              primarySequence = change.getSequence();
+              if (primarySequence > applied) {
+                // the changes in between were aborted
+                applied = primarySequence;
+                ++unsaved;
+              }
+              if (unsaved > 0) {
+                saveAndAcknowledge(out);
+                unsaved = 0;
+              }
+            } else {
+              change.apply(database);
+              applied = change.getSequence();
+              primarySequence = Math.max(primarySequence, applied);
+              if (++unsaved >= SAVE_EVERY) {
+                saveAndAcknowledge(out);
+                unsaved = 0;
+              }
+            }
+            if (applied >= primarySequence) {
+              caughtUpAt = System.currentTimeMillis();
+            }
+          }
+        } finally {
+          connected = false;
+          socket.close();
+          saveSequence();
+        }
+      } catch (IOException e) {
+        if (!closed) {
+          log.log(Level.WARNING, "Lost connection to primary " + primary + ", reconnecting", e);
+          try {
+            Thread.sleep(RECONNECT_MILLIS);
+          } catch (InterruptedException e1) {
+            return;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * @return whether the replica is currently connected to the primary
+   */
+  public boolean isConnected() {
+    return connected;
+  }
+
+  /**
+   * @return the sequence number of the last change from the primary which has been applied
+   */
+  public long getAppliedSequence() {
+    return applied;
+  }
+
+  /**
+   * @return the number of changes the primary had last time we heard from it which haven't been
+   *         applied yet
+   */
+  public long getLagChanges() {
+    return Math.max(0, primarySequence - applied);
+  }
+
+  /**
+   * @return 0 if all the changes the primary had last time we heard from it have been applied,
+   *         otherwise the time in milliseconds since that was last the case
+   */
+  public long getLagMillis() {
+    if (applied >= primarySequence) {
+      return 0;
+    }
+    return System.currentTimeMillis() - caughtUpAt;
+  }
+
+  /**
+   * Disconnect from the primary, the database is not closed.
+   *
+   * @throws InterruptedException
+   */
+  public void close() throws InterruptedException {
+    closed = true;
+    Socket current = socket;
+    if (current != null) {
+      try {
+        current.close();
+      } catch (IOException e) {
+        // closing anyway
+      }
+    }
+    receiver.interrupt();
+    receiver.join();
+  }
+
+  private static boolean readOnly(String operation) {
+    log.warning("Replica is read only, refusing to " + operation);
+    return false;
+  }
+
+  @Override
+  public UserFactory getUserFactory() {
+    return database.getUserFactory();
+  }
+
+  @Override
+  public boolean addUser(byte[] publicKey, byte[] publicHash) {
+    return readOnly("add user");
+  }
+
+  @Override
+  public boolean haveUser(byte[] existingUserHash) {
+    return database.haveUser(existingUserHash);
+  }
+
+  @Override
+  public boolean deleteUser(User existingUser) {
+    return readOnly("delete user");
+  }
+
+  @Override
+  public boolean checkAndAddNonce(Nonce nonce, byte[] publicHash) {
+    return database.checkAndAddNonce(nonce, publicHash);
+  }
+
+  @Override
+  public byte[] getPublicKey(byte[] publicHash) throws UserNotFoundException {
+    return database.getPublicKey(publicHash);
+  }
+
+  @Override
+  public User getUser(byte[] publicHash) throws UserNotFoundException {
+    return database.getUser(publicHash);
+  }
+
+  @Override
+  public Collection<RevValue> getRecord(User user, byte[] key) throws IOException {
+    return database.getRecord(user, key);
+  }
+
+  @Override
+  public RevValue getRevision(User user, byte[] key, byte[] revision) throws IOException {
+    return database.getRevision(user, key, revision);
+  }
+
+  @Override
+  public List<RevValue> getRevisionValues(User user, byte[] key, List<byte[]> revisions)
+      throws IOException {
+    return database.getRevisionValues(user, key, revisions);
+  }
+
+  @Override
+  public Collection<byte[]> getRevisions(User user, byte[] key) throws IOException {
+    return database.getRevisions(user, key);
+  }
+
+  @Override
+  public boolean putRecord(User user, byte[] key, byte[] revision, byte[] data) {
+    return readOnly("put record");
+  }
+
+  @Override
+  public boolean deleteRecord(User user, byte[] key) {
+    return readOnly("delete record");
+  }
+
+  @Override
+  public List<Collection<RevValue>> getRecords(User user, List<byte[]> keys) throws IOException {
+    return database.getRecords(user, keys);
+  }
+
+  @Override
+  public List<Collection<byte[]>> getRevisions(User user, List<byte[]> keys) throws IOException {
+    return database.getRevisions(user, keys);
+  }
+
+  @Override
+  public boolean[] putRecords(User user, List<KeyRevValue> records) {
+    readOnly("put records");
+    return new boolean[records.size()];
+  }
+
+  @Override
+  public boolean[] putRecords(User user, List<KeyRevValue> records, StorageUsage quota) {
+    return putRecords(user, records);
+  }
+
+  @Override
+  public StorageUsage getUsage(User user) throws IOException {
+    return database.getUsage(user);
+  }
+
+  @Override
+  public List<KeyChange> getChanges(User user, long since, int limit) throws IOException {
+    return database.getChanges(user, since, limit);
+  }
+
+  @Override
+  public long getSequence(User user) throws IOException {
+    return database.getSequence(user);
+  }
+
+  @Override
+  public boolean setChanges(User user, List<KeyChange> changes) {
+    return readOnly("set changes");
+  }
+
+  @Override
+  public void clearOldNonces() {
+    database.clearOldNonces();
+  }
+
+  @Override
+  public Collection<byte[]> getIndices(User user) throws IOException {
+    return database.getIndices(user);
+  }
+
+  @Override
+  public Page<byte[]> getIndices(User user, byte[] cursor, int limit) throws IOException {
+    return database.getIndices(user, cursor, limit);
+  }
+
+  @Override
+  public Page<byte[]> getRevisions(User user, byte[] key, byte[] cursor, int limit)
+      throws IOException {
+    return database.getRevisions(user, key, cursor, limit);
+  }
+
+  /**
+   * Run a replica in its own process, logging its lag every ten seconds.
+   *
+   * @param args name, data directory, primary host, primary port
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length != 4) {
+      System.err.println("Usage: JEReplica <name> <data directory> <primary host> <primary port>");
+      System.exit(1);
+    }
+    File dataDirectory = new File(args[1]);
+    dataDirectory.mkdirs();
+    JEReplica replica =
+        new JEReplica(args[0], JEDatabase.getInstance(dataDirectory), new File(dataDirectory,
+            "replication-sequence"), new InetSocketAddress(args[2], Integer.parseInt(args[3])));
+    while (true) {
+      Thread.sleep(10000);
+      log.info("Applied " + replica.getAppliedSequence() + " lag " + replica.getLagChanges()
+          + " changes " + replica.getLagMillis() + "ms connected " + replica.isConnected());
+    }
+  }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.nigori.common.Nonce;
+import com.google.nigori.common.RevValue;
+import com.google.nigori.server.ChangeRecord.Type;
+
+/**
+ * The primary of a set of replicated {@link JEDatabase}s, all changes are made to the primary which
+ * logs each one in the transaction that makes it and streams them to any {@link JEReplica}s
+ * connected to it. Writes are not serialised by the primary, see {@link ReplicationLog}.
+ *
+ * A replica connects and says who it is and which change it has applied up to, it is then sent
+ * every change after that from the log followed by new changes as they are made. When there are no
+ * changes a heartbeat is sent every second so that replicas can tell how far behind they are.
+ * Replicas acknowledge the changes they have saved and changes every replica has saved are removed
+ * from the log, so a replica which will not come back must be forgotten with
+ * {@link #forgetReplica(String)} or the log will grow without limit.
+ *
+ * @author drt24
+ *
+ */
+public class JEReplicationPrimary implements Database {
+
+  private static final Logger log = Logger.getLogger(JEReplicationPrimary.class.getSimpleName());
+  private static void severe(String message, Exception exception) {
+    log.log(Level.SEVERE, message, exception);
+  }
+
+  static final long HEARTBEAT_MILLIS = 1000;
+  /**
+   * The most changes read from the log at once
+   */
+  private static final int READ_BATCH = 100;
+
+  private final JEDatabase database;
+  private final ReplicationLog changeLog;
+  private final ServerSocket serverSocket;
+  private final Set<Socket> replicas = Collections.synchronizedSet(new HashSet<Socket>());
+  private volatile boolean closed = false;
+
+  /**
+   * @param database the database to make changes to, changes made to it from now on are logged
+   * @param bindAddress where to listen for replicas, normally a loopback address as the stream is not
+   *        authenticated
+   * @throws IOException if the socket can't be bound
+   */
+  public JEReplicationPrimary(JEDatabase database, SocketAddress bindAddress) throws IOException {
+    this.database = database;
+    changeLog = database.startReplicationLog();
+    serverSocket = new ServerSocket();
+    serverSocket.bind(bindAddress);
+    Thread acceptor = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        acceptReplicas();
+      }
+    }, "replication-acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  /**
+   * @return the address replicas should connect to
+   */
+  public InetSocketAddress getAddress() {
+    return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+  }
+
+  /**
+   * @return the sequence number up to which every change has been made or abandoned
+   */
+  public long getSequence() {
+    return changeLog.getStable();
+  }
+
+  /**
+   * @return the sequence number up to which changes have been removed from the log as every replica
+   *         has them
+   */
+  public long getTruncatedSequence() {
+    return changeLog.getTruncated();
+  }
+
+  /**
+   * Stop keeping changes for a replica which is not coming back, it can't reconnect unless it has
+   * every change which is still in the log.
+   *
+   * @param name the name the replica connected with
+   * @throws IOException if the log could not be updated
+   */
+  public void forgetReplica(String name) throws IOException {
+    changeLog.forget(name);
+  }
+
+  /**
+   * Stop accepting replicas and disconnect those that are connected, the database is not closed.
+   */
+  public void close() {
+    closed = true;
+    try {
+      serverSocket.close();
+    } catch (IOException e) {
+      severe("Exception while closing replication socket", e);
+    }
+    synchronized (replicas) {
+      for (Socket replica : replicas) {
+        try {
+          replica.close();
+        } catch (IOException e) {
+          // closing anyway
+        }
+      }
+    }
+  }
+
+  private void acceptReplicas() {
+    while (!closed) {
+      try {
+        final Socket socket = serverSocket.accept();
+        Thread sender = new Thread(new Runnable() {
+          @Override
+          public void run() {
+            serveReplica(socket);
+          }
+        }, "replication-sender-" + socket.getRemoteSocketAddress());
+        sender.setDaemon(true);
+        sender.start();
+      } catch (IOException e) {
+        if (!closed) {
+          severe("Exception while accepting replica", e);
+        }
+      }
+    }
+  }
+
+  private void serveReplica(Socket socket) {
+    replicas.add(socket);
+    try {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      String name = in.readUTF();
+      long sent = in.readLong();
+      log.info("Replica " + name + " at " + socket.getRemoteSocketAddress()
+          + " connected after change " + sent);
+      if (sent > getSequence()) {
+        log.warning("Replica " + name + " is ahead of the primary, was the log lost?");
+      }
+      try {
+        changeLog.register(name, sent);
+      } catch (IOException e) {
+        severe("Refusing replica", e);
+        return;
+      }
+      while (!closed) {
+        long stable = changeLog.awaitStable(sent, HEARTBEAT_MILLIS);
+        if (stable <= sent) {
+          new ChangeRecord(sent, System.currentTimeMillis(), Type.HEARTBEAT).writeTo(out);
+        }
+        while (sent < stable) {
+          List<ChangeRecord> changes = changeLog.read(sent, stable, READ_BATCH);
+          for (ChangeRecord change : changes) {
+            change.writeTo(out);
+          }
+          // Once fewer than asked for come back the rest up to stable were aborted
+          sent =
+              changes.size() < READ_BATCH ? stable : changes.get(changes.size() - 1).getSequence();
+        }
+        out.flush();
+        while (in.available() >= 8) {
+          changeLog.acknowledge(name, in.readLong());
+        }
+      }
+    } catch (IOException e) {
+      if (!closed) {
+        log.log(Level.WARNING, "Lost replica " + socket.getRemoteSocketAddress(), e);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      replicas.remove(socket);
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // we already had a failure, ignore this one.
+      }
+    }
+  }
+
+  @Override
+  public UserFactory getUserFactory() {
+    return database.getUserFactory();
+  }
+
+  @Override
+  public boolean addUser(byte[] publicKey, byte[] publicHash) {
+    return database.addUser(publicKey, publicHash);
+  }
+
+  @Override
+  public boolean haveUser(byte[] existingUserHash) {
+    return database.haveUser(existingUserHash);
+  }
+
+  @Override
+  public boolean deleteUser(User existingUser) {
+    return database.deleteUser(existingUser);
+  }
+
+  @Override
+  public boolean checkAndAddNonce(Nonce nonce, byte[] publicHash) {
+    return database.checkAndAddNonce(nonce, publicHash);
+  }
+
+  @Override
+  public byte[] getPublicKey(byte[] publicHash) throws UserNotFoundException {
+    return database.getPublicKey(publicHash);
+  }
+
+  @Override
+  public User getUser(byte[] publicHash) throws UserNotFoundException {
+    return database.getUser(publicHash);
+  }
+
+  @Override
+  public Collection<RevValue> getRecord(User user, byte[] key) throws IOException {
+    return database.getRecord(user, key);
+  }
+
+  @Override
+  public RevValue getRevision(User user, byte[] key, byte[] revision) throws IOException {
+    return database.getRevision(user, key, revision);
+  }
+
+  @Override
+  public List<RevValue> getRevisionValues(User user, byte[] key, List<byte[]> revisions)
+      throws IOException {
+    return database.getRevisionValues(user, key, revisions);
+  }
+
+  @Override
+  public Collection<byte[]> getRevisions(User user, byte[] key) throws IOException {
+    return database.getRevisions(user, key);
+  }
+
+  @Override
+  public boolean putRecord(User user, byte[] key, byte[] revision, byte[] data) {
+    return database.putRecord(user, key, revision, data);
+  }
+
+  @Override
+  public boolean deleteRecord(User user, byte[] key) {
+    return database.deleteRecord(user, key);
+  }
+
+  @Override
+  public List<Collection<RevValue>> getRecords(User user, List<byte[]> keys) throws IOException {
+    return database.getRecords(user, keys);
+  }
+
+  @Override
+  public List<Collection<byte[]>> getRevisions(User user, List<byte[]> keys) throws IOException {
+    return database.getRevisions(user, keys);
+  }
+
+  @Override
+  public boolean[] putRecords(User user, List<KeyRevValue> records) {
+    return database.putRecords(user, records);
+  }
+
+  @Override
+  public boolean[] putRecords(User user, List<KeyRevValue> records, StorageUsage quota) {
+    return database.putRecords(user, records, quota);
+  }
+
+  @Override
+  public StorageUsage getUsage(User user) throws IOException {
+    return database.getUsage(user);
+  }
+
+  @Override
+  public List<KeyChange> getChanges(User user, long since, int limit) throws IOException {
+    return database.getChanges(user, since, limit);
+  }
+
+  @Override
+  public long getSequence(User user) throws IOException {
+    return database.getSequence(user);
+  }
+
+  @Override
+  public boolean setChanges(User user, List<KeyChange> changes) {
+    return database.setChanges(user, changes);
+  }
+
+  @Override
+  public void clearOldNonces() {
+    database.clearOldNonces();
+  }
+
+  @Override
+  public Collection<byte[]> getIndices(User user) throws IOException {
+    return database.getIndices(user);
+  }
+
+  @Override
+  public Page<byte[]> getIndices(User user, byte[] cursor, int limit) throws IOException {
+    return database.getIndices(user, cursor, limit);
+  }
+
+  @Override
+  public Page<byte[]> getRevisions(User user, byte[] key, byte[] cursor, int limit)
+      throws IOException {
+    return database.getRevisions(user, key, cursor, limit);
+  }
+}
@@ -0,0 +1,350 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+
+import com.google.nigori.common.MessageLibrary;
+import com.google.nigori.common.Util;
+import com.sleepycat.je.Cursor;
+import com.sleepycat.je.Database;
+import com.sleepycat.je.DatabaseConfig;
+import com.sleepycat.je.DatabaseEntry;
+import com.sleepycat.je.DatabaseException;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.OperationStatus;
+import com.sleepycat.je.Transaction;
+
+/**
+ * The changes made to a {@link JEDatabase} for its replicas, kept in the same JE environment so
+ * that each change is logged by the transaction which makes it: if it can't be logged it isn't
+ * made.
+ *
+ * Changes are numbered as their transaction commits, while it still holds its locks, so changes
+ * which conflict are numbered in the order they were made. Transactions which don't conflict still
+ * run at the same time, so a change can commit before one with a lower number;
+ * {@link #getStable()} is the number up to which every change has either committed or aborted and
+ * only changes up to it are read. Aborted changes leave gaps in the numbering.
+ *
+ * The log is keyed by sequence number so replicas are read from where they got to. Replicas
+ * acknowledge the changes they have applied and once every replica the log knows about has applied
+ * a change it is removed. Until a replica has connected nothing is removed.
+ *
+ * @author drt24
+ *
+ */
+final class ReplicationLog {
+
+  private static final Logger log = Logger.getLogger(ReplicationLog.class.getSimpleName());
+
+  /**
+   * The most changes removed in one transaction
+   */
+  private static final int TRUNCATE_BATCH = 1000;
+  private static final DatabaseEntry TRUNCATED =
+      new DatabaseEntry(MessageLibrary.toBytes("truncated"));
+  private static final String ACKNOWLEDGED = "acknowledged/";
+
+  private final Environment env;
+  /**
+   * The changes keyed by sequence number
+   */
+  private final Database changes;
+  /**
+   * How far each replica has got and how far the log has been removed
+   */
+  private final Database state;
+  private final Object truncateLock = new Object();
+
+  // Guarded by this
+  private long last;
+  private final TreeSet<Long> committing = new TreeSet<Long>();
+  private final Map<String, Long> acknowledged = new HashMap<String, Long>();
+  private long truncated;
+
+  ReplicationLog(Environment env) {
+    this.env = env;
+    DatabaseConfig config = new DatabaseConfig();
+    config.setTransactional(true);
+    config.setAllowCreate(true);
+    changes = env.openDatabase(null, "replication", config);
+    state = env.openDatabase(null, "replication-state", config);
+
+    DatabaseEntry key = new DatabaseEntry();
+    DatabaseEntry value = new DatabaseEntry();
+    if (OperationStatus.SUCCESS == state.get(null, TRUNCATED, value, null)) {
+      truncated = Util.bin2long(value.getData());
+    }
+    Cursor cursor = state.openCursor(null, null);
+    try {
+      while (OperationStatus.SUCCESS == cursor.getNext(key, value, null)) {
+        String name = MessageLibrary.bytesToString(key.getData());
+        if (name.startsWith(ACKNOWLEDGED)) {
+          acknowledged.put(name.substring(ACKNOWLEDGED.length()), Util.bin2long(value.getData()));
+        }
+      }
+    } finally {
+      cursor.close();
+    }
+    last = truncated;
+    cursor = changes.openCursor(null, null);
+    try {
+      if (OperationStatus.SUCCESS == cursor.getLast(key, value, null)) {
+        last = Math.max(last, Util.bin2long(key.getData()));
+      }
+    } finally {
+      cursor.close();
+    }
+  }
+
+  /**
+   * Number and log the changes then commit the transaction which made them. The caller aborts the
+   * transaction if this throws.
+   *
+   * @param txn the transaction which made the changes
+   * @param made the changes, their sequence numbers are ignored
+   * @return false if the changes could not be logged, in which case the transaction has been
+   *         aborted
+   */
+  boolean commit(Transaction txn, List<ChangeRecord> made) {
+    if (made.isEmpty()) {
+      txn.commit();
+      return true;
+    }
+    long first;
+    synchronized (this) {
+      first = last + 1;
+      last += made.size();
+      for (long sequence = first; sequence <= last; ++sequence) {
+        committing.add(sequence);
+      }
+    }
+    try {
+      for (int i = 0; i < made.size(); ++i) {
+        ChangeRecord change = made.get(i).numbered(first + i);
+        OperationStatus status =
+            changes.put(txn, key(change.getSequence()), new DatabaseEntry(toBytes(change)));
+        if (OperationStatus.SUCCESS != status) {
+          log.severe("Could not log change, not making it: " + status);
+          txn.abort();
+          return false;
+        }
+      }
+      txn.commit();
+      return true;
+    } finally {
+      synchronized (this) {
+        for (int i = 0; i < made.size(); ++i) {
+          committing.remove(first + i);
+        }
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * @return the sequence number up to which every change has committed or aborted
+   */
+  synchronized long getStable() {
+    return committing.isEmpty() ? last : committing.first() - 1;
+  }
+
+  /**
+   * Wait until there are changes after the given one which can be read.
+   *
+   * @return the stable sequence number, which is still after if the wait timed out
+   * @throws InterruptedException
+   */
+  synchronized long awaitStable(long after, long millis) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + millis;
+    long stable;
+    while ((stable = getStable()) <= after) {
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0) {
+        break;
+      }
+      wait(remaining);
+    }
+    return stable;
+  }
+
+  /**
+   * @return the sequence number up to which changes have been removed
+   */
+  synchronized long getTruncated() {
+    return truncated;
+  }
+
+  /**
+   * @param after read from the change after this
+   * @param upTo a stable sequence number not to read past
+   * @param limit the most changes to return
+   * @return the changes in order, fewer than limit if upTo was reached
+   */
+  List<ChangeRecord> read(long after, long upTo, int limit) throws IOException {
+    List<ChangeRecord> answer = new ArrayList<ChangeRecord>();
+    try {
+      Cursor cursor = changes.openCursor(null, null);
+      try {
+        DatabaseEntry key = key(after + 1);
+        DatabaseEntry value = new DatabaseEntry();
+        OperationStatus status = cursor.getSearchKeyRange(key, value, null);
+        while (OperationStatus.SUCCESS == status && answer.size() < limit
+            && Util.bin2long(key.getData()) <= upTo) {
+          answer.add(fromBytes(value.getData()));
+          status = cursor.getNext(key, value, null);
+        }
+      } finally {
+        cursor.close();
+      }
+    } catch (DatabaseException e) {
+      throw new IOException(e);
+    }
+    return answer;
+  }
+
+  /**
+   * A replica has connected, remember it so that changes it hasn't applied are kept.
+   *
+   * @throws IOException if changes the replica has not applied have already been removed
+   */
+  void register(String replica, long after) throws IOException {
+    synchronized (this) {
+      if (after < truncated) {
+        throw new IOException("Changes " + (after + 1) + " to " + truncated
+            + " have been removed, replica " + replica + " needs a copy of the primary's data");
+      }
+    }
+    acknowledge(replica, after);
+  }
+
+  /**
+   * The replica has applied and saved every change up to sequence, remove changes every replica
+   * has.
+   */
+  void acknowledge(String replica, long sequence) throws IOException {
+    try {
+      state.put(null, new DatabaseEntry(MessageLibrary.toBytes(ACKNOWLEDGED + replica)),
+          new DatabaseEntry(Util.long2bin(sequence)));
+    } catch (DatabaseException e) {
+      throw new IOException(e);
+    }
+    synchronized (this) {
+      acknowledged.put(replica, sequence);
+    }
+    truncate();
+  }
+
+  /**
+   * Stop keeping changes for a replica which is not coming back.
+   */
+  void forget(String replica) throws IOException {
+    try {
+      state.delete(null, new DatabaseEntry(MessageLibrary.toBytes(ACKNOWLEDGED + replica)));
+    } catch (DatabaseException e) {
+      throw new IOException(e);
+    }
+    synchronized (this) {
+      acknowledged.remove(replica);
+    }
+    truncate();
+  }
+
+  /**
+   * Remove the changes every known replica has applied
+   */
+  private void truncate() throws IOException {
+    synchronized (truncateLock) {
+      long upTo;
+      long from;
+      synchronized (this) {
+        if (acknowledged.isEmpty()) {
+          return;
+        }
+        upTo = Long.MAX_VALUE;
+        for (long sequence : acknowledged.values()) {
+          upTo = Math.min(upTo, sequence);
+        }
+        upTo = Math.min(upTo, getStable());
+        from = truncated;
+      }
+      Transaction txn = null;
+      try {
+        while (from < upTo) {
+          long to = Math.min(upTo, from + TRUNCATE_BATCH);
+          txn = env.beginTransaction(null, null);
+          Cursor cursor = changes.openCursor(txn, null);
+          try {
+            DatabaseEntry key = key(from + 1);
+            DatabaseEntry value = new DatabaseEntry();
+            OperationStatus status = cursor.getSearchKeyRange(key, value, null);
+            while (OperationStatus.SUCCESS == status && Util.bin2long(key.getData()) <= to) {
+              cursor.delete();
+              status = cursor.getNext(key, value, null);
+            }
+          } finally {
+            cursor.close();
+          }
+          state.put(txn, TRUNCATED, new DatabaseEntry(Util.long2bin(to)));
+          txn.commit();
+          txn = null;
+          synchronized (this) {
+            truncated = to;
+          }
+          from = to;
+        }
+      } catch (DatabaseException e) {
+        if (txn != null) {
+          try {
+            txn.abort();
+          } catch (DatabaseException e1) {
+            // we already had a failure, ignore this one.
+          }
+        }
+        throw new IOException(e);
+      }
+    }
+  }
+
+  private static DatabaseEntry key(long sequence) {
+    // Big endian so that positive sequence numbers sort in order
+    return new DatabaseEntry(Util.long2bin(sequence));
+  }
+
+  private static byte[] toBytes(ChangeRecord change) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(change.size());
+      DataOutputStream out = new DataOutputStream(bytes);
+      change.writeTo(out);
+      out.flush();
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new IllegalStateException("Writing to memory failed", e);
+    }
+  }
+
+  private static ChangeRecord fromBytes(byte[] bytes) throws IOException {
+    return ChangeRecord.readFrom(new DataInputStream(new ByteArrayInputStream(bytes)));
+  }
+}
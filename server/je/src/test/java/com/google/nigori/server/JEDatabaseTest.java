@@ -13,11 +13,15 @@
  */
 package com.google.nigori.server;
 
+import static com.google.nigori.common.MessageLibrary.toBytes;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.AfterClass;
 import org.junit.Test;
@@ -48,6 +52,43 @@ public class JEDatabaseTest extends AbstractDatabaseTest {
     assertTrue(database.deleteUser(user));
   }
 
+  @Test
+  public void quotaHeldByConcurrentPuts() throws UserNotFoundException, IOException,
+      InterruptedException {
+    assertTrue(database.addUser(publicKey, publicHash));
+    final User user = database.getUser(publicHash);
+    try {
+      final StorageUsage quota = new StorageUsage(10, 10, 10000);
+      final AtomicInteger put = new AtomicInteger();
+      Thread[] threads = new Thread[4];
+      for (int t = 0; t < threads.length; ++t) {
+        final int thread = t;
+        threads[t] = new Thread() {
+          @Override
+          public void run() {
+            for (int i = 0; i < 10; ++i) {
+              byte[] index = toBytes("index" + thread + "-" + i);
+              if (database.putRecords(user,
+                  Arrays.asList(new KeyRevValue(index, toBytes("revision"), toBytes("value"))),
+                  quota)[0]) {
+                put.incrementAndGet();
+              }
+            }
+          }
+        };
+        threads[t].start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      assertEquals(10, put.get());
+      assertEquals(10, database.getUsage(user).getRecords());
+      assertEquals(10, database.getIndices(user).size());
+    } finally {
+      assertTrue(database.deleteUser(user));
+    }
+  }
+
   @AfterClass
   public static void deleteDatabase() {
     File dataDir = new File("je-test-dir/");
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server;
+
+import static com.google.nigori.common.MessageLibrary.toBytes;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import com.google.nigori.common.NigoriConstants;
+import com.google.nigori.common.RevValue;
+import com.google.nigori.common.Util;
+
+/**
+ * @author drt24
+ *
+ */
+public class JEReplicationTest {
+
+  private static final File PRIMARY_DIR = new File("je-primary-test-dir/");
+  private static final File REPLICA_DIR = new File("je-replica-test-dir/");
+  private static final File TRUNCATE_PRIMARY_DIR = new File("je-truncate-primary-test-dir/");
+  private static final File TRUNCATE_REPLICA_DIR = new File("je-truncate-replica-test-dir/");
+
+  private static void waitForReplica(JEReplicationPrimary primary, JEReplica replica)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (replica.getAppliedSequence() < primary.getSequence()) {
+      assertTrue("Replica did not catch up", System.currentTimeMillis() < deadline);
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  public void replicate() throws IOException, NoSuchAlgorithmException, UserNotFoundException,
+      InterruptedException {
+    PRIMARY_DIR.mkdir();
+    REPLICA_DIR.mkdir();
+    JEReplicationPrimary primary =
+        new JEReplicationPrimary(JEDatabase.getInstance(PRIMARY_DIR), new InetSocketAddress(
+            InetAddress.getByName("localhost"), 0));
+    try {
+      byte[] publicKey = new byte[NigoriConstants.B_DSA];
+      new Random().nextBytes(publicKey);
+      byte[] publicHash = Util.hashKey(publicKey);
+      assertTrue(primary.addUser(publicKey, publicHash));
+      User user = primary.getUser(publicHash);
+      // Made before the replica exists so must come from the log
+      assertTrue(primary.putRecord(user, toBytes("index"), toBytes("rev1"), toBytes("value1")));
+
+      JEReplica replica =
+          new JEReplica("replica", JEDatabase.getInstance(REPLICA_DIR), new File(REPLICA_DIR,
+              "replication-sequence"), primary.getAddress());
+      try {
+        waitForReplica(primary, replica);
+        // Made while the replica is connected so are streamed
+        assertTrue(primary.putRecord(user, toBytes("index"), toBytes("rev2"), toBytes("value2")));
+        assertTrue(primary.putRecord(user, toBytes("other"), toBytes("rev1"), toBytes("value3")));
+        waitForReplica(primary, replica);
+        assertEquals(0, replica.getLagChanges());
+
+        User replicaUser = replica.getUser(publicHash);
+        Collection<RevValue> record = replica.getRecord(replicaUser, toBytes("index"));
+        assertEquals(2, record.size());
+        assertEquals(2, replica.getRevisions(replicaUser, toBytes("index")).size());
+        assertEquals(2, replica.getIndices(replicaUser).size());
+        assertArrayEquals(toBytes("value3"),
+            replica.getRevision(replicaUser, toBytes("other"), toBytes("rev1")).getValue());
+
+        assertFalse("Replica is read only",
+            replica.putRecord(replicaUser, toBytes("index"), toBytes("rev3"), toBytes("value")));
+
+        assertTrue(primary.deleteRecord(user, toBytes("other")));
+        waitForReplica(primary, replica);
+        assertNull(replica.getRecord(replicaUser, toBytes("other")));
+
+        assertTrue(primary.setChanges(user, Arrays.asList(new KeyChange(toBytes("other"), 40,
+            true), new KeyChange(toBytes("index"), 42, false))));
+        waitForReplica(primary, replica);
+        assertEquals(42, replica.getSequence(replicaUser));
+        assertEquals(2, replica.getChanges(replicaUser, 0, 10).size());
+
+        assertTrue(primary.deleteUser(user));
+        waitForReplica(primary, replica);
+        assertFalse(replica.haveUser(publicHash));
+      } finally {
+        replica.close();
+      }
+    } finally {
+      primary.close();
+    }
+  }
+
+  private static void waitForTruncation(JEReplicationPrimary primary, long sequence)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (primary.getTruncatedSequence() < sequence) {
+      assertTrue("Log was not truncated", System.currentTimeMillis() < deadline);
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  public void truncatedOnceAcknowledged() throws IOException, NoSuchAlgorithmException,
+      UserNotFoundException, InterruptedException {
+    TRUNCATE_PRIMARY_DIR.mkdir();
+    TRUNCATE_REPLICA_DIR.mkdir();
+    File sequenceFile = new File(TRUNCATE_REPLICA_DIR, "replication-sequence");
+    JEReplicationPrimary primary =
+        new JEReplicationPrimary(JEDatabase.getInstance(TRUNCATE_PRIMARY_DIR),
+            new InetSocketAddress(InetAddress.getByName("localhost"), 0));
+    try {
+      byte[] publicKey = new byte[NigoriConstants.B_DSA];
+      new Random().nextBytes(publicKey);
+      byte[] publicHash = Util.hashKey(publicKey);
+      assertTrue(primary.addUser(publicKey, publicHash));
+      User user = primary.getUser(publicHash);
+      assertTrue(primary.putRecord(user, toBytes("index"), toBytes("rev1"), toBytes("value1")));
+      // Nothing is removed until a replica has connected
+      assertEquals(0, primary.getTruncatedSequence());
+
+      JEReplica replica =
+          new JEReplica("replica", JEDatabase.getInstance(TRUNCATE_REPLICA_DIR), sequenceFile,
+              primary.getAddress());
+      try {
+        waitForReplica(primary, replica);
+        waitForTruncation(primary, primary.getSequence());
+      } finally {
+        replica.close();
+      }
+
+      // Kept for the replica while it is away and sent from where it got to when it comes back
+      long before = primary.getSequence();
+      assertTrue(primary.putRecord(user, toBytes("index"), toBytes("rev2"), toBytes("value2")));
+      Thread.sleep(2 * JEReplicationPrimary.HEARTBEAT_MILLIS);
+      assertEquals(before, primary.getTruncatedSequence());
+      replica =
+          new JEReplica("replica", JEDatabase.getInstance(TRUNCATE_REPLICA_DIR), sequenceFile,
+              primary.getAddress());
+      try {
+        waitForReplica(primary, replica);
+        assertEquals(2, replica.getRecord(replica.getUser(publicHash), toBytes("index")).size());
+        waitForTruncation(primary, primary.getSequence());
+      } finally {
+        replica.close();
+      }
+
+      // Once forgotten it no longer holds back truncation
+      before = primary.getSequence();
+      assertTrue(primary.putRecord(user, toBytes("other"), toBytes("rev1"), toBytes("value3")));
+      Thread.sleep(2 * JEReplicationPrimary.HEARTBEAT_MILLIS);
+      assertEquals(before, primary.getTruncatedSequence());
+      primary.forgetReplica("replica");
+      // No replicas left so nothing more is removed until one connects again
+      assertEquals(before, primary.getTruncatedSequence());
+    } finally {
+      primary.close();
+    }
+  }
+
+  @AfterClass
+  public static void deleteDatabases() {
+    for (File dataDir : new File[] {PRIMARY_DIR, REPLICA_DIR, TRUNCATE_PRIMARY_DIR,
+        TRUNCATE_REPLICA_DIR}) {
+      if (dataDir.exists()) {
+        Util.deleteDir(dataDir);
+        dataDir.delete();
+      }
+    }
+  }
+}
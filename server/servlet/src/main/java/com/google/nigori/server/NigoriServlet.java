@@ -0,0 +1,1272 @@
+/*
+ * Copyright (C) 2011 Alastair R. Beresford
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server;
+
+import static com.google.nigori.common.MessageLibrary.toBytes;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.zip.ZipException;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.apache.commons.codec.binary.Base64;
+
+import com.google.nigori.common.ContentEncoding;
+import com.google.nigori.common.ContentEncoding.ThresholdOutputStream;
+import com.google.nigori.common.MessageLibrary;
+import com.google.nigori.common.MessageLibrary.JsonConversionException;
+import com.google.nigori.common.NigoriMessages.AuthenticateRequest;
+import com.google.nigori.common.NigoriMessages.BatchRequest;
+import com.google.nigori.common.NigoriMessages.BatchResponse;
+import com.google.nigori.common.NigoriMessages.GetChangesRequest;
+import com.google.nigori.common.NigoriMessages.GetChangesResponse;
+import com.google.nigori.common.NigoriMessages.GetDigestsRequest;
+import com.google.nigori.common.NigoriMessages.GetDigestsResponse;
+import com.google.nigori.common.NigoriMessages.DeleteRequest;
+import com.google.nigori.common.NigoriMessages.GetIndicesRequest;
+import com.google.nigori.common.NigoriMessages.GetIndicesResponse;
+import com.google.nigori.common.NigoriMessages.GetRequest;
+import com.google.nigori.common.NigoriMessages.GetResponse;
+import com.google.nigori.common.NigoriMessages.GetRevisionsRequest;
+import com.google.nigori.common.NigoriMessages.GetRevisionsResponse;
+import com.google.nigori.common.NigoriMessages.PutRequest;
+import com.google.nigori.common.NigoriMessages.RegisterRequest;
+import com.google.nigori.common.NigoriMessages.UnregisterRequest;
+import com.google.nigori.common.NotFoundException;
+import com.google.nigori.common.UnauthorisedException;
+import com.google.protobuf.GeneratedMessage;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Parser;
+import com.google.nigori.server.DatabaseNigoriProtocol.PendingChanges;
+import com.google.nigori.server.DatabaseNigoriProtocol.QuotaExceededException;
+
+public class NigoriServlet extends HttpServlet {
+
+  private static final long serialVersionUID = 1L;
+  private static final boolean DEBUG_JSON = false;
+  private static final Logger log = Logger.getLogger(NigoriServlet.class.getName());
+  private static final int maxJsonQueryLength = 1024 * 1024 * 1;
+  private static final int maxProtobufQueryLength = 1024 * 1024 * 1;
+  /**
+   * Responses smaller than this are not compressed even if the client would accept it
+   */
+  private static final int compressionThreshold = ContentEncoding.DEFAULT_THRESHOLD;
+  /**
+   * The default number of threads waiting on the database for requests processed asynchronously
+   */
+  public static final int DEFAULT_IO_THREADS = 32;
+  /**
+   * The default number of requests each pool will queue before rejecting more
+   */
+  public static final int DEFAULT_QUEUE_DEPTH = 256;
+  /**
+   * Whether the servlet API has asynchronous processing (Servlet 3.0), App Engine's doesn't
+   */
+  private static final boolean ASYNC_API = hasAsyncApi();
+  /**
+   * Whether the servlet API has non-blocking reads (Servlet 3.1)
+   */
+  private static final boolean NON_BLOCKING_API = hasNonBlockingApi();
+  /**
+   * The longest request body, before it is decompressed, which is read for asynchronous requests
+   */
+  private static final int maxRequestLength = Math.max(maxJsonQueryLength,
+      maxProtobufQueryLength);
+  private final DatabaseNigoriProtocol protocol;
+  private final ExecutorService cpuPool;
+  /**
+   * Null if the database was given in its asynchronous form
+   */
+  private final ExecutorService ioPool;
+  /**
+   * Ends get-changes requests which have waited as long as they asked to without a change
+   */
+  private final ScheduledExecutorService timer;
+
+  public NigoriServlet(Database database) {
+    this(database, StorageUsage.UNLIMITED);
+  }
+
+  public NigoriServlet(Database database, StorageUsage quota) {
+    this(database, quota, BoundedPools.newBoundedPool("nigori-cpu", Runtime.getRuntime()
+        .availableProcessors(), DEFAULT_QUEUE_DEPTH), BoundedPools.newBoundedPool(
+        "nigori-io", DEFAULT_IO_THREADS, DEFAULT_QUEUE_DEPTH));
+  }
+
+  /**
+   * The pools are only used if the container supports asynchronous processing, they should reject
+   * work once their queues are full so that overload is reported to clients rather than queued
+   * without limit. They are shut down when the servlet is destroyed. Asynchronous get-changes
+   * requests which wait for a change don't hold a thread from either pool while they wait.
+   *
+   * @param database
+   * @param quota
+   * @param cpuPool reads and parses requests and writes responses
+   * @param ioPool makes the calls on the database, through a {@link BlockingAsyncDatabase}
+   */
+  public NigoriServlet(Database database, StorageUsage quota, ExecutorService cpuPool,
+      ExecutorService ioPool) {
+    this(database, new BlockingAsyncDatabase(database, ioPool), quota, cpuPool, ioPool);
+  }
+
+  /**
+   * For a database with its own asynchronous form, such as an in-memory database wrapped
+   * {@link BlockingAsyncDatabase#inline(Database)}, which needs no pool for storage I/O.
+   *
+   * @param database used by containers without asynchronous processing
+   * @param async the same database, used by asynchronous requests
+   * @param quota
+   * @param cpuPool
+   */
+  public NigoriServlet(Database database, AsyncDatabase async, StorageUsage quota,
+      ExecutorService cpuPool) {
+    this(database, async, quota, cpuPool, null);
+  }
+
+  private NigoriServlet(Database database, AsyncDatabase async, StorageUsage quota,
+      ExecutorService cpuPool, ExecutorService ioPool) {
+    super();
+    this.protocol = new DatabaseNigoriProtocol(database, async, quota, new ChangeNotifier());
+    this.cpuPool = cpuPool;
+    this.ioPool = ioPool;
+    // The thread is only started once something is scheduled, which never happens on App Engine
+    this.timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "nigori-changes-timer");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  private static boolean hasAsyncApi() {
+    try {
+      HttpServletRequest.class.getMethod("startAsync");
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  private static boolean hasNonBlockingApi() {
+    try {
+      ServletInputStream.class.getMethod("isReady");
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public void destroy() {
+    cpuPool.shutdown();
+    if (ioPool != null) {
+      ioPool.shutdown();
+    }
+    timer.shutdownNow();
+    super.destroy();
+  }
+
+  private class ServletException extends Exception {
+    private static final long serialVersionUID = 1L;
+    private int statusCode;
+
+    ServletException(int statusCode, String message) {
+      super(message);
+      this.statusCode = statusCode;
+    }
+
+    int getStatusCode() {
+      return statusCode;
+    }
+
+    void writeHttpResponse(HttpServletResponse resp) throws IOException {
+      resp.setContentType(MessageLibrary.MIMETYPE_JSON);
+      resp.setCharacterEncoding(MessageLibrary.CHARSET);
+      resp.setStatus(getStatusCode());
+      resp.getOutputStream().write(toBytes(this.getMessage()));
+    }
+  }
+
+  /**
+   * Thrown by a {@link BoundedInputStream} when more than the allowed amount is read.
+   */
+  private static class RequestTooLargeException extends IOException {
+    private static final long serialVersionUID = 1L;
+  }
+
+  private static class BoundedInputStream extends FilterInputStream {
+    private int remaining;
+
+    BoundedInputStream(InputStream in, int maxLength) {
+      super(in);
+      this.remaining = maxLength;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int read = super.read();
+      if (read != -1 && --remaining < 0) {
+        throw new RequestTooLargeException();
+      }
+      return read;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = super.read(b, off, len);
+      if (read != -1) {
+        remaining -= read;
+        if (remaining < 0) {
+          throw new RequestTooLargeException();
+        }
+      }
+      return read;
+    }
+  }
+
+  /**
+   * A response which is compressed with the given encoding if it turns out to be at least
+   * {@link #compressionThreshold} bytes long, and otherwise sent as it is. The body is streamed
+   * through the compressor rather than being built up in memory first. {@link #finish()} must be
+   * called once the handler is done to write the end of the body.
+   */
+  private static class CompressingResponse extends HttpServletResponseWrapper {
+    private final String encoding;
+    private int contentLength = -1;
+    private ServletOutputStream out = null;
+
+    CompressingResponse(HttpServletResponse resp, String encoding) {
+      super(resp);
+      this.encoding = encoding;
+    }
+
+    /**
+     * The length is only passed on if the body is not compressed
+     */
+    @Override
+    public void setContentLength(int len) {
+      contentLength = len;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+      if (out == null) {
+        final ThresholdOutputStream body =
+            new ThresholdOutputStream(encoding, compressionThreshold) {
+              @Override
+              protected OutputStream open(String encoding, int length) throws IOException {
+                HttpServletResponse resp = (HttpServletResponse) getResponse();
+                if (encoding != null) {
+                  resp.setHeader(ContentEncoding.HEADER_CONTENT_ENCODING, encoding);
+                } else if (contentLength >= 0) {
+                  resp.setContentLength(contentLength);
+                } else if (length >= 0) {
+                  resp.setContentLength(length);
+                }
+                return resp.getOutputStream();
+              }
+            };
+        out = new ServletOutputStream() {
+          @Override
+          public void write(int b) throws IOException {
+            body.write(b);
+          }
+
+          @Override
+          public void write(byte[] b, int off, int len) throws IOException {
+            body.write(b, off, len);
+          }
+
+          @Override
+          public void flush() throws IOException {
+            body.flush();
+          }
+
+          @Override
+          public void close() throws IOException {
+            body.close();
+          }
+
+          /**
+           * Writes through the compressor block, so are always allowed
+           */
+          @Override
+          public boolean isReady() {
+            return true;
+          }
+
+          @Override
+          public void setWriteListener(WriteListener listener) {
+            throw new IllegalStateException(
+                "Non-blocking writes are not supported when compressing");
+          }
+        };
+      }
+      return out;
+    }
+
+    /**
+     * Committing the response is left to {@link #finish()} if the body is still being held back to
+     * decide whether to compress it.
+     */
+    @Override
+    public void flushBuffer() throws IOException {
+      if (out == null) {
+        super.flushBuffer();
+      } else {
+        out.flush();
+      }
+    }
+
+    void finish() throws IOException {
+      if (out != null) {
+        out.close();
+      }
+    }
+  }
+
+  /**
+   * @param body the body as it was sent
+   * @return the body of the request, decompressed if it was sent with a Content-Encoding
+   */
+  private static InputStream getBody(HttpServletRequest req, InputStream body) throws IOException {
+    return ContentEncoding.decode(req.getHeader(ContentEncoding.HEADER_CONTENT_ENCODING), body);
+  }
+
+  /**
+   * Parse the request straight from its input stream rather than reading it into a String first.
+   */
+  private <T extends GeneratedMessage> T readJson(HttpServletRequest req, InputStream body,
+      Class<T> type) throws ServletException, JsonConversionException {
+    if (req.getContentLength() > maxJsonQueryLength) {
+      throw new ServletException(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+          "Json request exceeds server maximum length of " + maxJsonQueryLength);
+    }
+
+    String charsetName = req.getCharacterEncoding();
+    if (charsetName == null) {
+      charsetName = MessageLibrary.CHARSET;
+    }
+
+    try {
+      Reader in =
+          new BufferedReader(new InputStreamReader(new BoundedInputStream(getBody(req, body),
+              maxJsonQueryLength), charsetName));
+      T request = MessageLibrary.fromJson(in, type);
+      if (DEBUG_JSON) {
+        System.out.println(MessageLibrary.toJson(request));
+      }
+      return request;
+    } catch (RequestTooLargeException e) {
+      throw new ServletException(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+          "Json request exceeds server maximum length of " + maxJsonQueryLength);
+    } catch (ZipException e) {
+      throw new ServletException(HttpServletResponse.SC_BAD_REQUEST, "Compression format error: "
+          + e.getMessage());
+    } catch (IOException ioe) {
+      throw new ServletException(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+          "Internal error receiving data from client.");
+    }
+  }
+
+  private static void writeJson(HttpServletResponse resp, GeneratedMessage message)
+      throws IOException {
+    resp.setContentType(MessageLibrary.MIMETYPE_JSON);
+    resp.setCharacterEncoding(MessageLibrary.CHARSET);
+    resp.setStatus(HttpServletResponse.SC_OK);
+    Writer w =
+        new BufferedWriter(new OutputStreamWriter(resp.getOutputStream(), MessageLibrary.CHARSET));
+    MessageLibrary.writeJson(message, w);
+    w.flush();
+  }
+
+  private byte[] getProtobufAsBytes(HttpServletRequest req, InputStream body, int maxLength)
+      throws ServletException {
+    if (maxLength != 0 && req.getContentLength() > maxLength) {
+      throw new ServletException(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+          "Protobuf request exceeds server maximum length of " + maxLength);
+    }
+    try {
+      InputStream in = getBody(req, body);
+      ByteArrayOutputStream protobuf =
+          new ByteArrayOutputStream(req.getContentLength() > 0 ? req.getContentLength() : 1024);
+      byte[] buffer = new byte[64 * 1024];
+      int bytesRemaining = maxLength;
+      int bytesRead;
+      while ((bytesRead = in.read(buffer)) != -1) {
+        bytesRemaining -= bytesRead;
+        if (maxLength != 0 && bytesRemaining < 0) {
+          throw new ServletException(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+              "Protobuf request exceeds server maximum length of " + maxLength);
+        }
+        protobuf.write(buffer, 0, bytesRead);
+      }
+      return protobuf.toByteArray();
+    } catch (ZipException e) {
+      throw new ServletException(HttpServletResponse.SC_BAD_REQUEST, "Compression format error: "
+          + e.getMessage());
+    } catch (IOException ioe) {
+      throw new ServletException(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+          "Internal error receiving data from client.");
+    }
+  }
+
+  private static void writeProtobuf(HttpServletResponse resp, GeneratedMessage message)
+      throws IOException {
+    resp.setContentType(MessageLibrary.MIMETYPE_PROTOBUF);
+    resp.setStatus(HttpServletResponse.SC_OK);
+    resp.setContentLength(message.getSerializedSize());
+    message.writeTo(resp.getOutputStream());
+    resp.flushBuffer();
+  }
+
+  /**
+   * Class to support efficient lookup of appropriate handler method for a particular request.
+   */
+  private class RequestHandlerType {
+
+    private String mimetype;
+    private String requestType;
+
+    RequestHandlerType(String mimetype, String requestType) {
+      this.mimetype = mimetype;
+      this.requestType = requestType;
+    }
+
+    @Override
+    public int hashCode() {
+      return mimetype.hashCode() + requestType.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj instanceof RequestHandlerType) {
+        RequestHandlerType r = (RequestHandlerType) obj;
+        return this.hashCode() == r.hashCode();
+      }
+      return false;
+    }
+
+    @Override
+    public String toString() {
+      return "<" + mimetype + "," + requestType + ">";
+    }
+  }
+
+  /**
+   * Send an SC_OK and and empty body
+   * 
+   * @param resp
+   * @param mimetype
+   * @throws ServletException
+   */
+  private void emptyBody(HttpServletResponse resp, String mimetype) throws ServletException {
+    try {
+      resp.setContentType(mimetype);
+      resp.setStatus(HttpServletResponse.SC_OK);
+      resp.flushBuffer();
+    } catch (IOException ioe) {
+      throw new ServletException(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+          "Error attempting to write status OK message after successfully handling a PutRequest");
+    }
+  }
+
+  /**
+   * The storage side of a type of request, which is the same whichever format the request was sent
+   * in.
+   *
+   * @param <T> the request
+   * @param <R> what the protocol gives back for it
+   */
+  private abstract static class Operation<T extends GeneratedMessage, R> {
+    private final Class<T> type;
+    private final Parser<T> parser;
+
+    /**
+     * @param type to read JSON requests
+     * @param parser to read protobuf requests
+     */
+    Operation(Class<T> type, Parser<T> parser) {
+      this.type = type;
+      this.parser = parser;
+    }
+
+    /**
+     * Carry out the request on the calling thread, for containers without asynchronous processing
+     */
+    abstract R execute(T request) throws IOException, UnauthorisedException, NotFoundException;
+
+    /**
+     * Start carrying out the request when it is processed asynchronously, the protocol's
+     * {@code start} methods return without waiting on storage.
+     *
+     * @return the result, completed exceptionally if the request failed
+     */
+    abstract CompletableFuture<R> start(T request);
+
+    /**
+     * @return the response, or null if the response has an empty body
+     */
+    GeneratedMessage respond(T request, R result) throws ServletException,
+        UnauthorisedException {
+      return (GeneratedMessage) result;
+    }
+  }
+
+  /**
+   * Handles a type of request sent in a particular format and replies in the same format. The steps
+   * are separate so that {@link #read(HttpServletRequest, InputStream)} and
+   * {@link #write(HttpServletResponse, GeneratedMessage)} can be run on a different thread from
+   * {@link Operation#execute(GeneratedMessage)}, which waits on storage.
+   */
+  private class RequestHandler<T extends GeneratedMessage> {
+    private final String mimetype;
+    private final Operation<T, ?> operation;
+
+    RequestHandler(String mimetype, Operation<T, ?> operation) {
+      this.mimetype = mimetype;
+      this.operation = operation;
+    }
+
+    /**
+     * @param body the body of req as it was sent, which may have been read already
+     */
+    T read(HttpServletRequest req, InputStream body) throws ServletException,
+        JsonConversionException {
+      if (MessageLibrary.MIMETYPE_JSON.equals(mimetype)) {
+        return readJson(req, body, operation.type);
+      }
+      // Protobufs avoid the cost of the JSON conversion and base64 encoding.
+      byte[] protobuf = getProtobufAsBytes(req, body, maxProtobufQueryLength);
+      try {
+        return operation.parser.parseFrom(protobuf);
+      } catch (InvalidProtocolBufferException e) {
+        throw new ServletException(HttpServletResponse.SC_BAD_REQUEST, "Protobuf format error: "
+            + e.getMessage());
+      }
+    }
+
+    GeneratedMessage execute(T request) throws ServletException, IOException,
+        UnauthorisedException, NotFoundException {
+      return execute(operation, request);
+    }
+
+    private <R> GeneratedMessage execute(Operation<T, R> operation, T request)
+        throws ServletException, IOException, UnauthorisedException, NotFoundException {
+      return operation.respond(request, operation.execute(request));
+    }
+
+    CompletableFuture<GeneratedMessage> start(T request) {
+      return start(operation, request);
+    }
+
+    private <R> CompletableFuture<GeneratedMessage> start(final Operation<T, R> operation,
+        final T request) {
+      return operation.start(request).thenApply(result -> {
+        try {
+          return operation.respond(request, result);
+        } catch (ServletException | UnauthorisedException e) {
+          throw new CompletionException(e);
+        }
+      });
+    }
+
+    void write(HttpServletResponse resp, GeneratedMessage response) throws ServletException,
+        IOException {
+      if (response == null) {
+        emptyBody(resp, mimetype);
+      } else if (MessageLibrary.MIMETYPE_JSON.equals(mimetype)) {
+        writeJson(resp, response);
+      } else {
+        writeProtobuf(resp, response);
+      }
+    }
+
+    void handle(HttpServletRequest req, HttpServletResponse resp) throws ServletException,
+        IOException, JsonConversionException, UnauthorisedException, NotFoundException {
+      write(resp, execute(read(req, req.getInputStream())));
+    }
+  }
+
+  private final Operation<GetRequest, GetResponse> get =
+      new Operation<GetRequest, GetResponse>(GetRequest.class, GetRequest.PARSER) {
+        @Override
+        GetResponse execute(GetRequest request) throws IOException, UnauthorisedException,
+            NotFoundException {
+          return protocol.get(request);
+        }
+
+        @Override
+        CompletableFuture<GetResponse> start(GetRequest request) {
+          return protocol.startGet(request);
+        }
+      };
+
+  private final Operation<GetIndicesRequest, GetIndicesResponse> getIndices =
+      new Operation<GetIndicesRequest, GetIndicesResponse>(GetIndicesRequest.class,
+          GetIndicesRequest.PARSER) {
+        @Override
+        GetIndicesResponse execute(GetIndicesRequest request) throws IOException,
+            UnauthorisedException, NotFoundException {
+          return protocol.getIndices(request);
+        }
+
+        @Override
+        CompletableFuture<GetIndicesResponse> start(GetIndicesRequest request) {
+          return protocol.startGetIndices(request);
+        }
+      };
+
+  private final Operation<GetRevisionsRequest, GetRevisionsResponse> getRevisions =
+      new Operation<GetRevisionsRequest, GetRevisionsResponse>(GetRevisionsRequest.class,
+          GetRevisionsRequest.PARSER) {
+        @Override
+        GetRevisionsResponse execute(GetRevisionsRequest request) throws IOException,
+            UnauthorisedException, NotFoundException {
+          return protocol.getRevisions(request);
+        }
+
+        @Override
+        CompletableFuture<GetRevisionsResponse> start(GetRevisionsRequest request) {
+          return protocol.startGetRevisions(request);
+        }
+      };
+
+  private final Operation<PutRequest, Boolean> put = new Operation<PutRequest, Boolean>(
+      PutRequest.class, PutRequest.PARSER) {
+    @Override
+    Boolean execute(PutRequest request) throws IOException, UnauthorisedException {
+      return protocol.put(request);
+    }
+
+    @Override
+    CompletableFuture<Boolean> start(PutRequest request) {
+      return protocol.startPut(request);
+    }
+
+    @Override
+    GeneratedMessage respond(PutRequest request, Boolean put) throws ServletException {
+      if (!put) {
+        throw new ServletException(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+            "Internal storage error for key "
+                + Base64.encodeBase64String(request.getKey().toByteArray()));
+      }
+      return null;
+    }
+  };
+
+  private final Operation<DeleteRequest, Boolean> delete = new Operation<DeleteRequest, Boolean>(
+      DeleteRequest.class, DeleteRequest.PARSER) {
+    @Override
+    Boolean execute(DeleteRequest request) throws IOException, UnauthorisedException,
+        NotFoundException {
+      return protocol.delete(request);
+    }
+
+    @Override
+    CompletableFuture<Boolean> start(DeleteRequest request) {
+      return protocol.startDelete(request);
+    }
+
+    @Override
+    GeneratedMessage respond(DeleteRequest request, Boolean deleted) throws ServletException {
+      if (!deleted) {
+        throw new ServletException(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+            "Internal storage error for key "
+                + Base64.encodeBase64String(request.getKey().toByteArray()));
+      }
+      return null;
+    }
+  };
+
+  private final Operation<AuthenticateRequest, Boolean> authenticate =
+      new Operation<AuthenticateRequest, Boolean>(AuthenticateRequest.class,
+          AuthenticateRequest.PARSER) {
+        @Override
+        Boolean execute(AuthenticateRequest request) throws IOException {
+          return protocol.authenticate(request);
+        }
+
+        @Override
+        CompletableFuture<Boolean> start(AuthenticateRequest request) {
+          return protocol.startAuthenticate(request);
+        }
+
+        @Override
+        GeneratedMessage respond(AuthenticateRequest request, Boolean authenticated)
+            throws UnauthorisedException {
+          if (!authenticated) {
+            throw new UnauthorisedException("Authorisation failed");
+          }
+          return null;
+        }
+      };
+
+  private final Operation<RegisterRequest, Boolean> register =
+      new Operation<RegisterRequest, Boolean>(RegisterRequest.class, RegisterRequest.PARSER) {
+        @Override
+        Boolean execute(RegisterRequest request) throws IOException {
+          return protocol.register(request);
+        }
+
+        @Override
+        CompletableFuture<Boolean> start(RegisterRequest request) {
+          return protocol.startRegister(request);
+        }
+
+        @Override
+        GeneratedMessage respond(RegisterRequest request, Boolean registered)
+            throws ServletException {
+          if (!registered) {
+            throw new ServletException(HttpServletResponse.SC_CONFLICT, "Adding user "
+                + Base64.encodeBase64String(request.getPublicKey().toByteArray())
+                + " failed, may already exist");
+          }
+          return null;
+        }
+      };
+
+  private final Operation<UnregisterRequest, Boolean> unregister =
+      new Operation<UnregisterRequest, Boolean>(UnregisterRequest.class, UnregisterRequest.PARSER) {
+        @Override
+        Boolean execute(UnregisterRequest request) throws IOException, UnauthorisedException {
+          return protocol.unregister(request);
+        }
+
+        @Override
+        CompletableFuture<Boolean> start(UnregisterRequest request) {
+          return protocol.startUnregister(request);
+        }
+
+        @Override
+        GeneratedMessage respond(UnregisterRequest request, Boolean unregistered)
+            throws ServletException {
+          if (!unregistered) {
+            throw new ServletException(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                "Removing user "
+                    + Base64.encodeBase64String(request.getAuth().getPublicKey().toByteArray())
+                    + " failed");
+          }
+          return null;
+        }
+      };
+
+  private final Operation<BatchRequest, BatchResponse> batch =
+      new Operation<BatchRequest, BatchResponse>(BatchRequest.class, BatchRequest.PARSER) {
+        @Override
+        BatchResponse execute(BatchRequest request) throws IOException, UnauthorisedException {
+          return protocol.batch(request);
+        }
+
+        @Override
+        CompletableFuture<BatchResponse> start(BatchRequest request) {
+          return protocol.startBatch(request);
+        }
+      };
+
+  private final Operation<GetChangesRequest, GetChangesResponse> getChanges =
+      new Operation<GetChangesRequest, GetChangesResponse>(GetChangesRequest.class,
+          GetChangesRequest.PARSER) {
+        @Override
+        GetChangesResponse execute(GetChangesRequest request) throws IOException,
+            UnauthorisedException {
+          return protocol.getChanges(request);
+        }
+
+        /**
+         * If there are no changes yet the request is ended either by the first change, which
+         * reads the changes again, or by the timer once it has waited as long as it may.
+         */
+        @Override
+        CompletableFuture<GetChangesResponse> start(GetChangesRequest request) {
+          return protocol.startWatchChanges(request).thenCompose(this::waitForChanges);
+        }
+
+        private CompletableFuture<GetChangesResponse> waitForChanges(
+            final PendingChanges pending) {
+          final CompletableFuture<GetChangesResponse> response =
+              new CompletableFuture<GetChangesResponse>();
+          pending.startRead().whenComplete((changes, failure) -> {
+            if (failure != null) {
+              pending.cancel();
+              response.completeExceptionally(failure);
+              return;
+            }
+            if (changes.getChangesCount() > 0 || pending.getWait() == 0) {
+              pending.cancel();
+              response.complete(changes);
+              return;
+            }
+            try {
+              final ScheduledFuture<?> timeout = timer.schedule(() -> {
+                pending.cancel();
+                response.complete(changes);
+              }, pending.getWait(), TimeUnit.MILLISECONDS);
+              pending.getWatch().onChange(() -> {
+                // Run by whoever made the change, a pooled database reads on its own pool
+                timeout.cancel(false);
+                pending.startRead().whenComplete((latest, readFailure) -> {
+                  if (readFailure != null) {
+                    response.completeExceptionally(readFailure);
+                  } else {
+                    response.complete(latest);
+                  }
+                });
+              });
+            } catch (RejectedExecutionException e) {
+              pending.cancel();
+              response.completeExceptionally(e);
+            }
+          });
+          return response;
+        }
+      };
+
+  private final Operation<GetDigestsRequest, GetDigestsResponse> getDigests =
+      new Operation<GetDigestsRequest, GetDigestsResponse>(GetDigestsRequest.class,
+          GetDigestsRequest.PARSER) {
+        @Override
+        GetDigestsResponse execute(GetDigestsRequest request) throws IOException,
+            UnauthorisedException, NotFoundException {
+          return protocol.getDigests(request);
+        }
+
+        @Override
+        CompletableFuture<GetDigestsResponse> start(GetDigestsRequest request) {
+          return protocol.startGetDigests(request);
+        }
+      };
+
+  // TODO(beresford): double-check that Servlet instances are created rarely
+  private String supportedTypes = null;
+  private HashMap<RequestHandlerType, RequestHandler<?>> handlers = initHandlers();
+
+  /**
+   * Accept requests of this type in both JSON and protobuf form
+   */
+  private <T extends GeneratedMessage> void add(HashMap<RequestHandlerType, RequestHandler<?>> h,
+      String requestType, Operation<T, ?> operation) {
+    h.put(new RequestHandlerType(MessageLibrary.MIMETYPE_JSON, requestType),
+        new RequestHandler<T>(MessageLibrary.MIMETYPE_JSON, operation));
+    h.put(new RequestHandlerType(MessageLibrary.MIMETYPE_PROTOBUF, requestType),
+        new RequestHandler<T>(MessageLibrary.MIMETYPE_PROTOBUF, operation));
+  }
+
+  private HashMap<RequestHandlerType, RequestHandler<?>> initHandlers() {
+    HashMap<RequestHandlerType, RequestHandler<?>> h =
+        new HashMap<RequestHandlerType, RequestHandler<?>>();
+    add(h, MessageLibrary.REQUEST_GET, get);
+    add(h, MessageLibrary.REQUEST_GET_INDICES, getIndices);
+    add(h, MessageLibrary.REQUEST_GET_REVISIONS, getRevisions);
+    add(h, MessageLibrary.REQUEST_PUT, put);
+    add(h, MessageLibrary.REQUEST_DELETE, delete);
+    add(h, MessageLibrary.REQUEST_AUTHENTICATE, authenticate);
+    add(h, MessageLibrary.REQUEST_REGISTER, register);
+    add(h, MessageLibrary.REQUEST_UNREGISTER, unregister);
+    add(h, MessageLibrary.REQUEST_BATCH, batch);
+    add(h, MessageLibrary.REQUEST_GET_CHANGES, getChanges);
+    add(h, MessageLibrary.REQUEST_GET_DIGESTS, getDigests);
+    StringBuilder supportedPairs =
+        new StringBuilder("The following mimetypes and request pairs are supported: ");
+    for (RequestHandlerType type : h.keySet()) {
+      supportedPairs.append("(" + type.mimetype + " - " + type.requestType + ") ");
+    }
+    supportedTypes = supportedPairs.toString();
+    return h;
+  }
+
+  /**
+   * @param req
+   * @return the mimetype of the request without any parameters such as the charset, JSON if none
+   *         was given
+   */
+  private static String getMimetype(HttpServletRequest req) {
+    String contentType = req.getContentType();
+    if (contentType == null) {
+      return MessageLibrary.MIMETYPE_JSON;
+    }
+    int parameters = contentType.indexOf(';');
+    if (parameters != -1) {
+      contentType = contentType.substring(0, parameters);
+    }
+    return contentType.trim().toLowerCase();
+  }
+
+  /**
+   * Enable cors: http://enable-cors.org/server.html to allow access from javascript/dart clients
+   * using code from a different domain
+   * 
+   * @param resp the response to add the headers to
+   */
+  private void addCorsHeaders(HttpServletResponse resp) {
+    resp.addHeader("Access-Control-Allow-Origin", "*");
+    resp.addHeader("Access-Control-Allow-Methods", "POST, GET, OPTIONS");
+    resp.addHeader("Access-Control-Allow-Headers",
+        "Origin, X-Requested-With, Content-Type, Accept, Content-Encoding");
+  }
+
+  /**
+   * Add CORS headers to options requests
+   */
+  @Override
+  protected void doOptions(HttpServletRequest req, HttpServletResponse resp) throws IOException,
+      javax.servlet.ServletException {
+    addCorsHeaders(resp);
+    super.doOptions(req, resp);
+  }
+
+  /**
+   * Handle initial request from client and dispatch to appropriate handler or return error message.
+   * The response is compressed if the client accepts that and it is large enough to be worth it,
+   * and the Accept-Encoding response header tells clients that they may compress their requests.
+   */
+  @Override
+  public void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    addCorsHeaders(resp);
+    resp.addHeader("Vary", ContentEncoding.HEADER_ACCEPT_ENCODING);
+    resp.setHeader(ContentEncoding.HEADER_ACCEPT_ENCODING, ContentEncoding.ACCEPTED);
+    String encoding =
+        ContentEncoding.negotiate(req.getHeader(ContentEncoding.HEADER_ACCEPT_ENCODING));
+    if (encoding != null) {
+      resp = new CompressingResponse(resp, encoding);
+    }
+    handlePost(req, resp);
+  }
+
+  /**
+   * The response is finished here unless the request is processed asynchronously, in which case it
+   * is finished once that is done.
+   */
+  private void handlePost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    boolean async = false;
+    try {
+      // Subset of path managed by this servlet; e.g. if URI is "/nigori/get" and servlet path
+      // is "/nigori, then we want to retrieve "get" as the request type
+      int startIndex = req.getServletPath().length() + 1;
+      String requestURI = req.getRequestURI();
+      if (requestURI.length() <= startIndex) {
+        ServletException s =
+            new ServletException(HttpServletResponse.SC_BAD_REQUEST, "No request type specified.\n"
+                + supportedTypes + "\n");
+        log.fine(s.toString());
+        s.writeHttpResponse(resp);
+        return;
+      }
+      String requestType = requestURI.substring(startIndex);
+      String requestMimetype = getMimetype(req);
+      RequestHandlerType handlerType = new RequestHandlerType(requestMimetype, requestType);
+
+      RequestHandler<?> handler = handlers.get(handlerType);
+      if (handler == null) {
+        throw new ServletException(HttpServletResponse.SC_NOT_ACCEPTABLE,
+            "Unsupported request pair: " + handlerType + "\n" + supportedTypes + "\n");
+      }
+      String contentEncoding = req.getHeader(ContentEncoding.HEADER_CONTENT_ENCODING);
+      if (!ContentEncoding.isSupported(contentEncoding)) {
+        throw new ServletException(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE,
+            "Unsupported content encoding: " + contentEncoding + ", supported encodings are: "
+                + ContentEncoding.ACCEPTED + "\n");
+      }
+      if (ASYNC_API && req.isAsyncSupported()) {
+        if (req.getContentLength() > maxRequestLength) {
+          throw new ServletException(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+              "Request exceeds server maximum length of " + maxRequestLength);
+        }
+        async = true;
+        startAsync(handler, req, resp);
+        return;
+      }
+      try {
+        handler.handle(req, resp);
+      } catch (Exception e) {
+        failed(resp, e);
+      }
+    } catch (ServletException e) {
+      log.severe(e.toString());
+      e.writeHttpResponse(resp);
+    } finally {
+      if (!async) {
+        finish(resp);
+      }
+    }
+  }
+
+  /**
+   * Send the error response for a request which failed with e
+   */
+  private void failed(HttpServletResponse resp, Exception e) throws IOException {
+    ServletException s;
+    if (e instanceof ServletException) {
+      s = (ServletException) e;
+      log.severe(s.toString());
+    } else if (e instanceof NotFoundException) {
+      s = new ServletException(HttpServletResponse.SC_NOT_FOUND, e.getLocalizedMessage());
+      log.fine(s.toString());
+    } else if (e instanceof UnauthorisedException) {
+      s =
+          new ServletException(HttpServletResponse.SC_UNAUTHORIZED, "Authorisation failed: "
+              + e.getLocalizedMessage());
+      log.warning(s.toString());
+    } else if (e instanceof QuotaExceededException) {
+      s =
+          new ServletException(HttpServletResponse.SC_FORBIDDEN, "Quota exceeded: "
+              + e.getLocalizedMessage());
+      log.info(s.toString());
+    } else if (e instanceof RejectedExecutionException) {
+      s =
+          new ServletException(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+              "Server overloaded, try again later");
+      resp.setHeader("Retry-After", "1");
+      log.info(s.toString());
+    } else if (e instanceof IOException) {
+      s =
+          new ServletException(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+              "Internal error sending data to client");
+      log.severe(s.toString());
+    } else if (e instanceof JsonConversionException) {
+      s =
+          new ServletException(HttpServletResponse.SC_BAD_REQUEST, "JSON format error: "
+              + e.getMessage());
+      log.severe(s.toString());
+    } else {
+      log.severe(e.toString());
+      s = new ServletException(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.toString());
+      log.severe(s.toString());
+    }
+    s.writeHttpResponse(resp);
+  }
+
+  private static void finish(HttpServletResponse resp) throws IOException {
+    if (resp instanceof CompressingResponse) {
+      ((CompressingResponse) resp).finish();
+    }
+  }
+
+  private <T extends GeneratedMessage> void startAsync(RequestHandler<T> handler,
+      HttpServletRequest req, HttpServletResponse resp) {
+    new AsyncRequest<T>(handler, req, resp, req.startAsync()).start();
+  }
+
+  /**
+   * A request whose body is read without blocking as it arrives, which is parsed and started on the
+   * CPU pool, has its calls on the database made by the {@link AsyncDatabase} and has its response
+   * written on the CPU pool again, so that neither the container's threads nor the pools' wait on
+   * slow clients or on storage. If a pool's
+   * queue is full the request is rejected with Service Unavailable straight away rather than
+   * waiting for a place. A request which waits, such as a get-changes request waiting for a change,
+   * holds no thread until it is ready to be written.
+   */
+  private class AsyncRequest<T extends GeneratedMessage> {
+    private final RequestHandler<T> handler;
+    private final HttpServletRequest req;
+    private final HttpServletResponse resp;
+    private final AsyncContext async;
+
+    AsyncRequest(RequestHandler<T> handler, HttpServletRequest req, HttpServletResponse resp,
+        AsyncContext async) {
+      this.handler = handler;
+      this.req = req;
+      this.resp = resp;
+      this.async = async;
+    }
+
+    void start() {
+      try {
+        ServletInputStream in = req.getInputStream();
+        if (NON_BLOCKING_API) {
+          in.setReadListener(new BodyReader(in));
+        } else {
+          // Without non-blocking reads the container's thread reads as it would for any servlet
+          parse(readBody(in));
+        }
+      } catch (Exception e) {
+        fail(e);
+      }
+    }
+
+    /**
+     * Read the body of a request on a container without non-blocking reads
+     */
+    private byte[] readBody(InputStream in) throws IOException, ServletException {
+      ByteArrayOutputStream body =
+          new ByteArrayOutputStream(req.getContentLength() > 0 ? req.getContentLength() : 1024);
+      byte[] buffer = new byte[16 * 1024];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        append(body, buffer, read);
+      }
+      return body.toByteArray();
+    }
+
+    private void append(ByteArrayOutputStream body, byte[] buffer, int length)
+        throws ServletException {
+      if (body.size() + length > maxRequestLength) {
+        throw new ServletException(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+            "Request exceeds server maximum length of " + maxRequestLength);
+      }
+      body.write(buffer, 0, length);
+    }
+
+    /**
+     * The whole body has arrived, parse it on the CPU pool
+     */
+    private void parse(final byte[] body) {
+      try {
+        cpuPool.execute(() -> read(body));
+      } catch (RejectedExecutionException e) {
+        fail(e);
+      }
+    }
+
+    private void read(byte[] body) {
+      final T request;
+      try {
+        request = handler.read(req, new ByteArrayInputStream(body));
+      } catch (Exception e) {
+        fail(e);
+        return;
+      }
+      // Calls on the database are made on its own pool, so this thread goes straight back
+      execute(request);
+    }
+
+    private void execute(T request) {
+      CompletableFuture<GeneratedMessage> started;
+      try {
+        started = handler.start(request);
+      } catch (RuntimeException e) {
+        fail(e);
+        return;
+      }
+      started.whenComplete((response, failure) -> {
+        if (failure != null) {
+          Throwable cause = DatabaseNigoriProtocol.cause(failure);
+          fail(cause instanceof Exception ? (Exception) cause : new RuntimeException(cause));
+          return;
+        }
+        try {
+          cpuPool.execute(() -> write(response));
+        } catch (RejectedExecutionException e) {
+          // the request has been carried out so it can't be rejected now
+          write(response);
+        }
+      });
+    }
+
+    private void write(GeneratedMessage response) {
+      try {
+        handler.write(resp, response);
+      } catch (Exception e) {
+        fail(e);
+        return;
+      }
+      complete();
+    }
+
+    private void fail(Exception e) {
+      try {
+        failed(resp, e);
+      } catch (IOException ioe) {
+        log.warning("Could not send error response: " + ioe);
+      }
+      complete();
+    }
+
+    private void complete() {
+      try {
+        finish(resp);
+      } catch (IOException e) {
+        log.warning("Could not finish response: " + e);
+      }
+      async.complete();
+    }
+
+    /**
+     * Reads the body as the container says more of it has arrived, only ever on a container
+     * thread and never waiting for the client.
+     */
+    private class BodyReader implements ReadListener {
+      private final ServletInputStream in;
+      private final ByteArrayOutputStream body;
+      private final byte[] buffer = new byte[16 * 1024];
+      private boolean done = false;
+
+      BodyReader(ServletInputStream in) {
+        this.in = in;
+        this.body =
+            new ByteArrayOutputStream(req.getContentLength() > 0 ? req.getContentLength() : 1024);
+      }
+
+      @Override
+      public void onDataAvailable() throws IOException {
+        try {
+          int read;
+          while (!done && in.isReady() && (read = in.read(buffer)) != -1) {
+            append(body, buffer, read);
+          }
+        } catch (ServletException e) {
+          done = true;
+          fail(e);
+        }
+      }
+
+      @Override
+      public void onAllDataRead() {
+        if (!done) {
+          parse(body.toByteArray());
+        }
+      }
+
+      @Override
+      public void onError(Throwable t) {
+        if (!done) {
+          done = true;
+          fail(t instanceof Exception ? (Exception) t : new IOException(t));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.nigori.server;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+/**
+ * A {@link DataSource} which keeps up to a fixed number of connections to a JDBC URL open and hands
+ * them out one caller at a time. Closing a connection it handed out gives it back to the pool, in
+ * auto commit mode and at the isolation level it was opened with, rather than closing it.
+ *
+ * @author drt24
+ *
+ */
+public class ConnectionPool implements DataSource {
+
+  private static final Logger log = Logger.getLogger(ConnectionPool.class.getSimpleName());
+
+  /**
+   * How long {@link #getConnection()} waits for a connection to be given back when they are all in
+   * use, unless changed by {@link #setLoginTimeout(int)}
+   */
+  public static final int DEFAULT_TIMEOUT_SECONDS = 30;
+
+  private final String url;
+  private final String user;
+  private final String password;
+  private final Semaphore available;
+  private final Deque<Connection> idle = new ArrayDeque<Connection>();
+  private volatile int timeoutSeconds = DEFAULT_TIMEOUT_SECONDS;
+  private volatile PrintWriter logWriter = null;
+  private boolean closed = false;
+
+  /**
+   * @param url the JDBC URL to connect to, its driver must be loaded
+   * @param user
+   * @param password
+   * @param maxConnections the most connections to have open at once
+   */
+  public ConnectionPool(String url, String user, String password, int maxConnections) {
+    if (url == null) {
+      throw new NullPointerException("Null url");
+    }
+    if (maxConnections < 1) {
+      throw new IllegalArgumentException("Must allow at least one connection: " + maxConnections);
+    }
+    this.url = url;
+    this.user = user;
+    this.password = password;
+    this.available = new Semaphore(maxConnections, true);
+  }
+
+  /**
+   * @return a connection which must be closed to give it back, waiting for one to be given back if
+   *         they are all in use
+   * @throws SQLException if no connection could be opened or none was given back in time
+   */
+  @Override
+  public Connection getConnection() throws SQLException {
+    try {
+      if (!available.tryAcquire(timeoutSeconds, TimeUnit.SECONDS)) {
+        throw new SQLException("Timed out waiting for a connection to " + url);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted waiting for a connection to " + url, e);
+    }
+    try {
+      Connection connection = idleConnection();
+      if (connection == null) {
+        connection = DriverManager.getConnection(url, user, password);
+      }
+      return handOut(connection);
+    } catch (SQLException e) {
+      available.release();
+      throw e;
+    } catch (RuntimeException e) {
+      available.release();
+      throw e;
+    }
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    throw new SQLFeatureNotSupportedException("Connections are made as the pool's user");
+  }
+
+  /**
+   * Close the connections which have been given back and those in use as they are given back
+   */
+  public void close() {
+    Deque<Connection> closing;
+    synchronized (idle) {
+      closed = true;
+      closing = new ArrayDeque<Connection>(idle);
+      idle.clear();
+    }
+    for (Connection connection : closing) {
+      closeQuietly(connection);
+    }
+  }
+
+  private Connection idleConnection() throws SQLException {
+    synchronized (idle) {
+      if (closed) {
+        throw new SQLException("Connection pool is closed");
+      }
+      return idle.poll();
+    }
+  }
+
+  private Connection handOut(final Connection connection) throws SQLException {
+    final int isolation = connection.getTransactionIsolation();
+    InvocationHandler handler = new InvocationHandler() {
+      private boolean given = false;
+
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        synchronized (this) {
+          if ("close".equals(name) && method.getParameterTypes().length == 0) {
+            if (!given) {
+              given = true;
+              giveBack(connection, isolation);
+            }
+            return null;
+          }
+          if ("isClosed".equals(name) && method.getParameterTypes().length == 0) {
+            return given || connection.isClosed();
+          }
+          if (given) {
+            throw new SQLException("Connection has been given back to the pool");
+          }
+        }
+        try {
+          return method.invoke(connection, args);
+        } catch (InvocationTargetException e) {
+          throw e.getCause();
+        }
+      }
+    };
+    return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+        new Class<?>[] {Connection.class}, handler);
+  }
+
+  private void giveBack(Connection connection, int isolation) {
+    try {
+      boolean reusable = !connection.isClosed();
+      if (reusable && !connection.getAutoCommit()) {
+        // a transaction left open by a failure is abandoned
+        connection.rollback();
+        connection.setAutoCommit(true);
+      }
+      if (reusable && connection.getTransactionIsolation() != isolation) {
+        connection.setTransactionIsolation(isolation);
+      }
+      synchronized (idle) {
+        if (reusable && !closed) {
+          idle.push(connection);
+          return;
+        }
+      }
+      closeQuietly(connection);
+    } catch (SQLException e) {
+      log.warning("Closing connection which could not be reset: " + e);
+      closeQuietly(connection);
+    } finally {
+      available.release();
+    }
+  }
+
+  private static void closeQuietly(Connection connection) {
+    try {
+      connection.close();
+    } catch (SQLException e) {
+      log.fine(e.getMessage());
+    }
+  }
+
+  @Override
+  public PrintWriter getLogWriter() {
+    return logWriter;
+  }
+
+  @Override
+  public void setLogWriter(PrintWriter out) {
+    logWriter = out;
+  }
+
+  /**
+   * @param seconds how long to wait for a connection to be given back when they are all in use
+   */
+  @Override
+  public void setLoginTimeout(int seconds) {
+    timeoutSeconds = seconds;
+  }
+
+  @Override
+  public int getLoginTimeout() {
+    return timeoutSeconds;
+  }
+
+  @Override
+  public Logger getParentLogger() {
+    return log;
+  }
+
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException {
+    if (iface.isInstance(this)) {
+      return iface.cast(this);
+    }
+    throw new SQLException("Not a wrapper for " + iface);
+  }
+
+  @Override
+  public boolean isWrapperFor(Class<?> iface) {
+    return iface.isInstance(this);
+  }
+}
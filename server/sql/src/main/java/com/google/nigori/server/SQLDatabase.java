@@ -15,42 +15,271 @@
  */
 package com.google.nigori.server;
 
+import java.io.File;
 import java.io.IOException;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.sql.Savepoint;
+import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.sql.DataSource;
+
 import com.google.nigori.common.Nonce;
 import com.google.nigori.common.RevValue;
+import com.google.nigori.common.Util;
+import com.google.protobuf.ByteString;
 
 /**
- * TODO(drt24) finish, plumb this in, test it and comment it
+ * Database backed by SQL via JDBC, either an external PostgreSQL server or an embedded H2 database.
+ *
+ * The tables are created and upgraded by {@link SQLSchema} when the database is opened. Each call
+ * takes its own connection from a {@link DataSource} so calls for different users run at the same
+ * time. Changes are made in READ COMMITTED transactions which start by locking the row of the
+ * user's store, so changes to one user's store are made one at a time and can't interleave their
+ * reads of the counts and change sequence with each other. Transactions which fail because they
+ * conflicted with another are tried again.
+ *
  * @author drt24
  *
  */
-public class SQLDatabase extends AbstractDatabase {
+public class SQLDatabase extends AbstractDatabase implements UserLister {
+
+  private static final Logger log = Logger.getLogger(SQLDatabase.class.getSimpleName());
+  private static void severe(String message, Exception exception){
+    log.log(Level.SEVERE, message, exception);
+  }
+  private static Map<String, SQLDatabase> databaseMap = new WeakHashMap<String, SQLDatabase>();
+
+  /**
+   * Maximum number of parameters to put in a single IN clause, larger requests are split up.
+   */
+  private static final int MAX_IN_SIZE = 500;
+
+  /**
+   * The number of connections kept by the databases which make their own pool
+   */
+  public static final int DEFAULT_CONNECTIONS = 16;
 
-  private Connection con;
-  private Logger log = Logger.getLogger("SQLDatabase");
+  /**
+   * How many times a transaction which conflicted with another is tried
+   */
+  private static final int MAX_ATTEMPTS = 5;
+
+  private final DataSource dataSource;
+  /**
+   * The pool if it was made here rather than given, and so is closed by {@link #close()}
+   */
+  private final ConnectionPool ownPool;
+  private String instanceKey = null;
+
+  /**
+   * Get an instance of an embedded SQLDatabase stored in a particular directory, if we already have
+   * a valid SQLDatabase for that directory return that instead of creating a new one
+   *
+   * @param dataDirectory
+   * @return a SQLDatabase for that directory
+   * @throws SQLException if the database could not be opened
+   */
+  public static synchronized SQLDatabase getInstance(File dataDirectory) throws SQLException {
+    if (!dataDirectory.exists()) {
+      throw new IllegalArgumentException("Data directory must exist: " + dataDirectory);
+    }
+    if (!dataDirectory.isDirectory()) {
+      throw new IllegalArgumentException("Data directory must be a directory: " + dataDirectory);
+    }
+    String key = dataDirectory.getAbsolutePath();
+    SQLDatabase instance = databaseMap.get(key);
+    if (instance != null) {
+      return instance;
+    }
+    try {
+      // MVCC so that transactions lock rows rather than whole tables
+      instance =
+          new SQLDatabase(pool("org.h2.Driver", "jdbc:h2:"
+              + new File(dataDirectory, "nigori").getAbsolutePath() + ";MVCC=TRUE", "nigori", ""));
+    } catch (ClassNotFoundException e) {
+      throw new SQLException(e);
+    }
+    instance.instanceKey = key;
+    databaseMap.put(key, instance);
+    return instance;
+  }
 
+  /**
+   * Connect to the local PostgreSQL database called nigori
+   */
   public SQLDatabase() throws ClassNotFoundException, SQLException {
-    Class.forName("org.postgresql.Driver");// loads the driver needed
-    con = DriverManager.getConnection("jdbc:postgresql:nigori", "nigori", "");
-    // makes the connection
     // TODO(drt24) read information for this from config
+    this(pool("org.postgresql.Driver", "jdbc:postgresql:nigori", "nigori", ""));
   }
 
-  @Override
-  public void finalize() throws SQLException {
-    con.close();
+  /**
+   * @param dataSource where to get connections from, one for each call, the schema will be created
+   *          or upgraded if necessary. It belongs to the caller and so isn't closed by
+   *          {@link #close()}.
+   * @throws SQLException if the schema could not be created
+   */
+  public SQLDatabase(DataSource dataSource) throws SQLException {
+    this(dataSource, null);
+  }
+
+  private SQLDatabase(ConnectionPool pool) throws SQLException {
+    this(pool, pool);
+  }
+
+  private SQLDatabase(DataSource dataSource, ConnectionPool ownPool) throws SQLException {
+    if (dataSource == null) {
+      throw new NullPointerException("Null data source");
+    }
+    Connection con = dataSource.getConnection();
+    try {
+      SQLSchema.ensureCurrent(con);
+    } finally {
+      close(con);
+    }
+    this.ownPool = ownPool;
+    this.dataSource = dataSource;
+  }
+
+  private static ConnectionPool pool(String driver, String url, String user, String password)
+      throws ClassNotFoundException {
+    Class.forName(driver);// loads the driver needed
+    return new ConnectionPool(url, user, password, DEFAULT_CONNECTIONS);
+  }
+
+  /**
+   * Close the connections if they were opened by this database rather than given to it, after
+   * which it can't be used
+   */
+  public void close() {
+    synchronized (SQLDatabase.class) {
+      if (instanceKey != null && databaseMap.get(instanceKey) == this) {
+        databaseMap.remove(instanceKey);
+      }
+    }
+    if (ownPool != null) {
+      ownPool.close();
+    }
+  }
+
+  private static void close(Statement statement) {
+    if (statement != null) {
+      try {
+        statement.close();
+      } catch (SQLException e) {
+        log.fine(e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Give the connection back to where it came from
+   */
+  private static void close(Connection con) {
+    if (con != null) {
+      try {
+        con.close();
+      } catch (SQLException e) {
+        log.fine(e.getMessage());
+      }
+    }
+  }
+
+  private static void rollback(Connection con) {
+    try {
+      con.rollback();
+    } catch (SQLException e) {
+      // we already had a failure, ignore this one.
+    }
+  }
+
+  /**
+   * Work done in one transaction
+   */
+  private abstract static class Transaction<T> {
+    /**
+     * @param con in a transaction which is committed if this returns normally
+     */
+    abstract T run(Connection con) throws SQLException;
+  }
+
+  /**
+   * Do work in a READ COMMITTED transaction on a connection of its own, trying again up to
+   * {@link #MAX_ATTEMPTS} times if it conflicts with another transaction
+   */
+  private <T> T inTransaction(Transaction<T> work) throws SQLException {
+    for (int attempt = 1;; ++attempt) {
+      Connection con = dataSource.getConnection();
+      try {
+        con.setAutoCommit(false);
+        con.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        T result = work.run(con);
+        con.commit();
+        return result;
+      } catch (SQLException e) {
+        rollback(con);
+        if (attempt >= MAX_ATTEMPTS || !isConflict(e)) {
+          throw e;
+        }
+        log.fine("Trying transaction again after conflict: " + e.getMessage());
+      } finally {
+        try {
+          con.setAutoCommit(true);
+        } catch (SQLException e) {
+          log.fine(e.getMessage());
+        }
+        close(con);
+      }
+    }
+  }
+
+  /**
+   * @return whether e is because of another transaction running at the same time, so that doing
+   *         it again may succeed: serialization failures and deadlocks (class 40), lock timeouts
+   *         (H2's HYT00) and a row being inserted by another transaction first (23505)
+   */
+  private static boolean isConflict(SQLException e) {
+    String state = e.getSQLState();
+    return e instanceof SQLTransactionRollbackException
+        || (state != null && (state.startsWith("40") || "HYT00".equals(state) || "23505"
+            .equals(state)));
+  }
+
+  /**
+   * Lock the row of the user's store until the end of the transaction so that other changes to it
+   * wait for this one
+   *
+   * @return the sid of the user's store or -1 if there is no such user
+   */
+  private static int lockStore(Connection con, User user) throws SQLException {
+    PreparedStatement lock = con.prepareStatement("SELECT sid FROM stores WHERE ph = ? FOR UPDATE");
+    try {
+      lock.setBytes(1, user.getPublicHash());
+      ResultSet set = lock.executeQuery();
+      if (!set.next()) {
+        return -1;
+      }
+      return set.getInt("sid");
+    } finally {
+      close(lock);
+    }
   }
 
   @Override
@@ -60,289 +289,1170 @@ public class SQLDatabase extends AbstractDatabase {
 
   @Override
   public boolean addUser(byte[] publicKey, byte[] publicHash) {
+    if (haveUser(publicHash)) {
+      return false;
+    }
+    Connection con = null;
     PreparedStatement statement = null;
     try {
-      statement = con.prepareStatement("INSERT INTO stores (pk, ph) VALUES (?,?)");
-      statement.setBytes(1, publicKey);
-      statement.setBytes(2, publicHash);
-      statement.executeUpdate();
-
-      return true;
+      con = dataSource.getConnection();
+      statement = con.prepareStatement("INSERT INTO stores (ph, pk, reg) VALUES (?,?,?)");
+      statement.setBytes(1, publicHash);
+      statement.setBytes(2, publicKey);
+      statement.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+      return statement.executeUpdate() == 1;
     } catch (SQLException e) {
-      log.warning(e.getMessage());
+      severe("Exception while adding user", e);
       return false;
     } finally {
-      if (statement != null)
-        try {
-          statement.close();
-        } catch (SQLException e) {
-          log.fine(e.getMessage());
-        }
+      close(statement);
+      close(con);
     }
   }
 
   @Override
   public boolean haveUser(byte[] existingUser) {
+    Connection con = null;
     PreparedStatement statement = null;
     try {
+      con = dataSource.getConnection();
       statement = con.prepareStatement("SELECT sid FROM stores WHERE ph = ?");
       statement.setBytes(1, existingUser);
-
-      ResultSet results = statement.executeQuery();
-      return results.first();
+      return statement.executeQuery().next();
     } catch (SQLException e) {
-      log.warning(e.getMessage());
+      severe("Exception while checking for user", e);
       return false;
     } finally {
-      if (statement != null)
-        try {
-          statement.close();
-        } catch (SQLException e) {
-          log.fine(e.getMessage());
-        }
+      close(statement);
+      close(con);
     }
   }
 
   @Override
   public boolean deleteUser(User existingUser) {
+    Connection con = null;
     PreparedStatement statement = null;
     try {
+      con = dataSource.getConnection();
+      // lookups and revisions are removed by ON DELETE CASCADE
       statement = con.prepareStatement("DELETE FROM stores WHERE ph = ?");
       statement.setBytes(1, existingUser.getPublicHash());
-      statement.executeUpdate();
-
-      ResultSet results = statement.getResultSet();
-      return results.first();
+      return statement.executeUpdate() > 0;
     } catch (SQLException e) {
-      log.warning(e.getMessage());
+      severe("Exception while deleting user", e);
       return false;
     } finally {
-      if (statement != null)
-        try {
-          statement.close();
-        } catch (SQLException e) {
-          log.fine(e.getMessage());
-        }
+      close(statement);
+      close(con);
     }
   }
 
   @Override
   public boolean checkAndAddNonce(Nonce nonce, byte[] publicHash) {
+    if (!nonce.isRecent()) {
+      return false;
+    }
+    Connection con = null;
     PreparedStatement queryStatement = null, insertStatement = null;
     try {
-      queryStatement = con.prepareStatement("SELECT sid FROM stores WHERE ph = ?");
-      int sid;
-      try {
-        queryStatement.setBytes(1, publicHash);
-        ResultSet set = queryStatement.executeQuery();
-        if (!set.first()) {
-          return false;
-        }
-        sid = set.getInt("sid");
-      } finally {
-        queryStatement.close();
-      }
-      insertStatement = con.prepareStatement("INSERT INTO nonces (sid, nonce, use) VALUES (?,?,?)");
-      try {
-        insertStatement.setInt(1, sid);
-        insertStatement.setBytes(2, nonce.toToken());
-        insertStatement.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
-        return insertStatement.executeUpdate() > 0;
-      } finally {
-        insertStatement.close();
+      con = dataSource.getConnection();
+      byte[] token = nonce.toToken();
+      queryStatement = con.prepareStatement("SELECT since_epoch FROM nonces WHERE ph = ? AND nonce = ?");
+      queryStatement.setBytes(1, publicHash);
+      queryStatement.setBytes(2, token);
+      if (queryStatement.executeQuery().next()) {
+        return false;// Nonce already used
       }
+      insertStatement = con.prepareStatement("INSERT INTO nonces (ph, nonce, since_epoch) VALUES (?,?,?)");
+      insertStatement.setBytes(1, publicHash);
+      insertStatement.setBytes(2, token);
+      insertStatement.setInt(3, nonce.getSinceEpoch());
+      return insertStatement.executeUpdate() > 0;
     } catch (SQLException e) {
-      log.warning(e.getMessage());
+      severe("Exception while checking nonce for user", e);
       return false;
+    } finally {
+      close(queryStatement);
+      close(insertStatement);
+      close(con);
     }
   }
 
   @Override
   public byte[] getPublicKey(byte[] publicHash) throws UserNotFoundException {
+    Connection con = null;
+    PreparedStatement queryStatement = null;
     try {
-      PreparedStatement queryStatement = con.prepareStatement("SELECT pk FROM stores WHERE ph = ?");
-      try {
-        queryStatement.setBytes(1, publicHash);
-        ResultSet set = queryStatement.executeQuery();
-        if (!set.first()) {
-          throw new UserNotFoundException();
-        }
-        return set.getBytes("pk");
-      } finally {
-        queryStatement.close();
+      con = dataSource.getConnection();
+      queryStatement = con.prepareStatement("SELECT pk FROM stores WHERE ph = ?");
+      queryStatement.setBytes(1, publicHash);
+      ResultSet set = queryStatement.executeQuery();
+      if (!set.next()) {
+        throw new UserNotFoundException();
       }
+      return set.getBytes("pk");
     } catch (SQLException e) {
-      log.severe(e.toString());
+      severe("Exception while getting public key for user", e);
       throw new UserNotFoundException(e);
+    } finally {
+      close(queryStatement);
+      close(con);
     }
   }
 
   @Override
   public User getUser(byte[] publicHash) throws UserNotFoundException {
+    Connection con = null;
+    PreparedStatement queryStatement = null;
     try {
-      PreparedStatement queryStatement = con.prepareStatement("SELECT pk, reg FROM stores WHERE ph = ?");
-      try {
-        queryStatement.setBytes(1, publicHash);
-        ResultSet set = queryStatement.executeQuery();
-        if (!set.first()) {
-          throw new UserNotFoundException();
-        }
-        byte[] pk = set.getBytes("pk");
-        Timestamp reg = set.getTimestamp("reg");
-        return new JUser(pk, publicHash, new Date(reg.getTime()));
-      } finally {
-        queryStatement.close();
+      con = dataSource.getConnection();
+      queryStatement = con.prepareStatement("SELECT pk, reg FROM stores WHERE ph = ?");
+      queryStatement.setBytes(1, publicHash);
+      ResultSet set = queryStatement.executeQuery();
+      if (!set.next()) {
+        throw new UserNotFoundException();
       }
+      byte[] pk = set.getBytes("pk");
+      Timestamp reg = set.getTimestamp("reg");
+      return new JUser(pk, publicHash, new Date(reg.getTime()));
     } catch (SQLException e) {
-      log.severe(e.toString());
+      severe("Exception while getting user", e);
       throw new UserNotFoundException(e);
+    } finally {
+      close(queryStatement);
+      close(con);
     }
   }
 
   @Override
   public Collection<RevValue> getRecord(User user, byte[] key) throws IOException {
+    Connection con = null;
+    PreparedStatement queryStatement = null;
     try {
-      PreparedStatement queryStatement = con.prepareStatement("SELECT rev, val FROM rev_values, lookups, stores WHERE rev_values.lid = lookups.lid AND lookups.lookup = ? AND lookups.sid = stores.sid AND stores.ph =?");
-      try {
-        queryStatement.setBytes(1, key);
-        queryStatement.setBytes(2, user.getPublicHash());
-        ResultSet set = queryStatement.executeQuery();
-
-        List<RevValue> revValues = new ArrayList<RevValue>();
-        while (set.next()){
-          byte[] rev = set.getBytes("rev");
-          byte[] value = set.getBytes("val");
-          revValues.add(new RevValue(rev,value));
-        }
-        return revValues;
-      } finally {
-        queryStatement.close();
-      }
+      con = dataSource.getConnection();
+      // LEFT JOIN so that we can distinguish between no lookup and a lookup with no revisions
+      queryStatement =
+          con.prepareStatement("SELECT rev, val FROM stores JOIN lookups ON lookups.sid = stores.sid"
+              + " LEFT JOIN revisions ON revisions.lid = lookups.lid"
+              + " WHERE stores.ph = ? AND lookups.lookup = ?");
+      queryStatement.setBytes(1, user.getPublicHash());
+      queryStatement.setBytes(2, key);
+      ResultSet set = queryStatement.executeQuery();
 
-    } catch (SQLException e){
+      if (!set.next()) {
+        return null;
+      }
+      List<RevValue> revValues = new ArrayList<RevValue>();
+      do {
+        byte[] rev = set.getBytes("rev");
+        if (rev != null) {
+          revValues.add(new RevValue(rev, set.getBytes("val")));
+        }
+      } while (set.next());
+      return revValues;
+    } catch (SQLException e) {
       throw new IOException(e);
+    } finally {
+      close(queryStatement);
+      close(con);
     }
   }
 
   @Override
   public RevValue getRevision(User user, byte[] key, byte[] revision) throws IOException {
-    // TODO(drt24) implement getRevision
-    return null;
+    Connection con = null;
+    PreparedStatement queryStatement = null;
+    try {
+      con = dataSource.getConnection();
+      queryStatement =
+          con.prepareStatement("SELECT val FROM stores JOIN lookups ON lookups.sid = stores.sid"
+              + " JOIN revisions ON revisions.lid = lookups.lid"
+              + " WHERE stores.ph = ? AND lookups.lookup = ? AND revisions.rev = ?");
+      queryStatement.setBytes(1, user.getPublicHash());
+      queryStatement.setBytes(2, key);
+      queryStatement.setBytes(3, revision);
+      ResultSet set = queryStatement.executeQuery();
+      if (!set.next()) {
+        return null;
+      }
+      return new RevValue(revision, set.getBytes("val"));
+    } catch (SQLException e) {
+      throw new IOException(e);
+    } finally {
+      close(queryStatement);
+      close(con);
+    }
   }
 
   @Override
-  public Collection<byte[]> getIndices(User user) {
-    // TODO(drt24) implement getIndices
-    return null;
+  public Collection<byte[]> getIndices(User user) throws IOException {
+    Connection con = null;
+    PreparedStatement queryStatement = null;
+    try {
+      con = dataSource.getConnection();
+      queryStatement =
+          con.prepareStatement("SELECT lookup FROM stores JOIN lookups ON lookups.sid = stores.sid"
+              + " WHERE stores.ph = ?");
+      queryStatement.setBytes(1, user.getPublicHash());
+      ResultSet set = queryStatement.executeQuery();
+
+      List<byte[]> indices = new ArrayList<byte[]>();
+      while (set.next()) {
+        indices.add(set.getBytes("lookup"));
+      }
+      return indices;
+    } catch (SQLException e) {
+      throw new IOException(e);
+    } finally {
+      close(queryStatement);
+      close(con);
+    }
   }
 
   @Override
   public Collection<byte[]> getRevisions(User user, byte[] key) throws IOException {
+    Connection con = null;
+    PreparedStatement queryStatement = null;
     try {
-      PreparedStatement queryStatement = con.prepareStatement("SELECT rev FROM revisions, lookups, stores WHERE revisions.lid = lookups.lid AND lookups.lookup = ? AND lookups.sid = stores.sid AND stores.ph = ?");
-      try {
-        queryStatement.setBytes(1, key);
-        queryStatement.setBytes(2, user.getPublicHash());
-        ResultSet set = queryStatement.executeQuery();
-
-        List<byte[]> revValues = new ArrayList<byte[]>();
-        while (set.next()){
-          byte[] rev = set.getBytes("rev");
-          revValues.add(rev);
+      con = dataSource.getConnection();
+      queryStatement =
+          con.prepareStatement("SELECT rev FROM stores JOIN lookups ON lookups.sid = stores.sid"
+              + " JOIN revisions ON revisions.lid = lookups.lid"
+              + " WHERE stores.ph = ? AND lookups.lookup = ?");
+      queryStatement.setBytes(1, user.getPublicHash());
+      queryStatement.setBytes(2, key);
+      ResultSet set = queryStatement.executeQuery();
+
+      List<byte[]> revisions = new ArrayList<byte[]>();
+      while (set.next()) {
+        revisions.add(set.getBytes("rev"));
+      }
+      if (revisions.size() == 0) {
+        return null;
+      }
+      return revisions;
+    } catch (SQLException e) {
+      throw new IOException(e);
+    } finally {
+      close(queryStatement);
+      close(con);
+    }
+  }
+
+  @Override
+  public Page<byte[]> getIndices(User user, byte[] cursor, int limit)
+      throws IOException {
+    Connection con = null;
+    PreparedStatement queryStatement = null;
+    try {
+      con = dataSource.getConnection();
+      // Keyset pagination using the (sid, lookup) index, an extra row says whether there are more
+      queryStatement =
+          con.prepareStatement("SELECT lookup FROM stores JOIN lookups ON lookups.sid = stores.sid"
+              + " WHERE stores.ph = ?" + (cursor == null ? "" : " AND lookups.lookup > ?")
+              + " ORDER BY lookups.lookup LIMIT ?");
+      int parameter = 1;
+      queryStatement.setBytes(parameter++, user.getPublicHash());
+      if (cursor != null) {
+        queryStatement.setBytes(parameter++, cursor);
+      }
+      queryStatement.setInt(parameter++, limit + 1);
+      ResultSet set = queryStatement.executeQuery();
+
+      List<byte[]> indices = new ArrayList<byte[]>();
+      while (set.next()) {
+        if (indices.size() == limit) {
+          return new Page<byte[]>(indices, indices.get(limit - 1));
         }
-        return revValues;
-      } finally {
-        queryStatement.close();
+        indices.add(set.getBytes("lookup"));
+      }
+      return new Page<byte[]>(indices, null);
+    } catch (SQLException e) {
+      throw new IOException(e);
+    } finally {
+      close(queryStatement);
+      close(con);
+    }
+  }
+
+  @Override
+  public Page<byte[]> getPublicHashes(byte[] cursor, int limit) throws IOException {
+    Connection con = null;
+    PreparedStatement queryStatement = null;
+    try {
+      con = dataSource.getConnection();
+      queryStatement =
+          con.prepareStatement("SELECT ph FROM stores" + (cursor == null ? "" : " WHERE ph > ?")
+              + " ORDER BY ph LIMIT ?");
+      int parameter = 1;
+      if (cursor != null) {
+        queryStatement.setBytes(parameter++, cursor);
       }
+      queryStatement.setInt(parameter++, limit + 1);
+      ResultSet set = queryStatement.executeQuery();
 
-    } catch (SQLException e){
+      List<byte[]> hashes = new ArrayList<byte[]>();
+      while (set.next()) {
+        if (hashes.size() == limit) {
+          return new Page<byte[]>(hashes, hashes.get(limit - 1));
+        }
+        hashes.add(set.getBytes("ph"));
+      }
+      return new Page<byte[]>(hashes, null);
+    } catch (SQLException e) {
       throw new IOException(e);
+    } finally {
+      close(queryStatement);
+      close(con);
     }
   }
 
   @Override
-  public boolean putRecord(User user, byte[] key, byte[] revision, byte[] data) {
-    try {// TODO(drt24) this needs to use transactions.
-      PreparedStatement getLid = con.prepareStatement("SELECT lid FROM lookups, stores WHERE lookups.sid = stores.sid AND lookups.lookup = ? AND stores.ph = ?");
-      int lid;
-      try {
-        getLid.setBytes(1, key);
-        getLid.setBytes(2, user.getPublicHash());
-        ResultSet set = getLid.executeQuery();
-        
-        if (!set.first()){// if there is no lid for this lookup then store the lookup and get the lid
-          set.close();
-          PreparedStatement createLookup = con.prepareStatement("INSERT INTO lookups (sid,lookup) SELECT sid, ? FROM stores WHERE stores.ph = ? RETURNING lid");
-          try {
-            createLookup.setBytes(1, key);
-            createLookup.setBytes(2,  user.getPublicHash());
-            createLookup.execute();
-            ResultSet lookupSet = createLookup.getResultSet();
-            if (!lookupSet.first()) {
-              log.severe("Insertion of lookup did not succeed");
-              return false;
+  public Page<byte[]> getRevisions(User user, byte[] key, byte[] cursor, int limit)
+      throws IOException {
+    Connection con = null;
+    PreparedStatement queryStatement = null;
+    try {
+      con = dataSource.getConnection();
+      // LEFT JOIN so that we can distinguish between no lookup and no more revisions
+      queryStatement =
+          con.prepareStatement("SELECT rev FROM stores JOIN lookups ON lookups.sid = stores.sid"
+              + " LEFT JOIN revisions ON revisions.lid = lookups.lid"
+              + (cursor == null ? "" : " AND revisions.rev > ?")
+              + " WHERE stores.ph = ? AND lookups.lookup = ? ORDER BY revisions.rev LIMIT ?");
+      int parameter = 1;
+      if (cursor != null) {
+        queryStatement.setBytes(parameter++, cursor);
+      }
+      queryStatement.setBytes(parameter++, user.getPublicHash());
+      queryStatement.setBytes(parameter++, key);
+      queryStatement.setInt(parameter++, limit + 1);
+      ResultSet set = queryStatement.executeQuery();
+
+      if (!set.next()) {
+        return null;
+      }
+      List<byte[]> revisions = new ArrayList<byte[]>();
+      do {
+        byte[] rev = set.getBytes("rev");
+        if (rev == null) {
+          break;
+        }
+        if (revisions.size() == limit) {
+          return new Page<byte[]>(revisions, revisions.get(limit - 1));
+        }
+        revisions.add(rev);
+      } while (set.next());
+      return new Page<byte[]>(revisions, null);
+    } catch (SQLException e) {
+      throw new IOException(e);
+    } finally {
+      close(queryStatement);
+      close(con);
+    }
+  }
+
+  @Override
+  public boolean putRecord(final User user, final byte[] key, final byte[] revision,
+      final byte[] data) {
+    if (key == null || revision == null || data == null) {
+      return false;
+    }
+    try {
+      return inTransaction(new Transaction<Boolean>() {
+        @Override
+        Boolean run(Connection con) throws SQLException {
+          int sid = lockStore(con, user);
+          if (sid < 0) {
+            return false;// No such user
+          }
+          boolean result = putRecordInTransaction(con, sid, key, revision, data);
+          if (!result) {
+            con.rollback();
+          }
+          return result;
+        }
+      });
+    } catch (SQLException e) {
+      severe("Exception while putting record", e);
+      return false;
+    }
+  }
+
+  /**
+   * Must be called with auto commit off and the store locked, the caller is responsible for
+   * committing or rolling back.
+   *
+   * @return true if the revision now exists with the given data
+   */
+  private static boolean putRecordInTransaction(Connection con, int sid, byte[] key,
+      byte[] revision, byte[] data) throws SQLException {
+    int lid;
+    boolean newLookup = false;
+    PreparedStatement getLid = con.prepareStatement("SELECT lid FROM lookups WHERE sid = ? AND lookup = ?");
+    try {
+      getLid.setInt(1, sid);
+      getLid.setBytes(2, key);
+      ResultSet set = getLid.executeQuery();
+      if (set.next()) {
+        lid = set.getInt("lid");
+      } else {
+        // if there is no lid for this lookup then store the lookup and get the lid
+        PreparedStatement createLookup =
+            con.prepareStatement("INSERT INTO lookups (sid, lookup) VALUES (?, ?)",
+                Statement.RETURN_GENERATED_KEYS);
+        try {
+          createLookup.setInt(1, sid);
+          createLookup.setBytes(2, key);
+          createLookup.executeUpdate();
+          ResultSet lookupSet = createLookup.getGeneratedKeys();
+          if (!lookupSet.next()) {
+            log.severe("Insertion of lookup did not succeed");
+            return false;
+          }
+          lid = lookupSet.getInt(1);
+          newLookup = true;
+        } finally {
+          close(createLookup);
+        }
+      }
+    } finally {
+      close(getLid);
+    }
+
+    PreparedStatement getExisting = con.prepareStatement("SELECT val FROM revisions WHERE lid = ? AND rev = ?");
+    try {
+      getExisting.setInt(1, lid);
+      getExisting.setBytes(2, revision);
+      ResultSet set = getExisting.executeQuery();
+      if (set.next()) {
+        // Revisions are immutable so this only succeeds if it is a repeat of the same put
+        return Arrays.equals(data, set.getBytes("val"));
+      }
+    } finally {
+      close(getExisting);
+    }
+
+    PreparedStatement insertRevision = con.prepareStatement("INSERT INTO revisions (lid, rev, val) VALUES (?, ?, ?)");
+    try {
+      insertRevision.setInt(1, lid);
+      insertRevision.setBytes(2, revision);
+      insertRevision.setBytes(3, data);
+      if (insertRevision.executeUpdate() != 1) {
+        return false;
+      }
+    } finally {
+      close(insertRevision);
+    }
+    if (newLookup) {
+      addUsage(con, sid, 1, 1, key.length + revision.length + data.length);
+    } else {
+      addUsage(con, sid, 0, 1, revision.length + data.length);
+    }
+    recordChange(con, sid, key, false);
+    return true;
+  }
+
+  /**
+   * Give the lookup the next number in the store's change sequence, must be called in the same
+   * transaction as the change, with the store locked.
+   */
+  private static void recordChange(Connection con, int sid, byte[] key, boolean deleted)
+      throws SQLException {
+    long sequence;
+    PreparedStatement getSequence =
+        con.prepareStatement("SELECT MAX(seq) AS seq FROM changes WHERE sid = ?");
+    try {
+      getSequence.setInt(1, sid);
+      ResultSet set = getSequence.executeQuery();
+      sequence = set.next() ? set.getLong("seq") + 1 : 1;// NULL is read as 0
+    } finally {
+      close(getSequence);
+    }
+    PreparedStatement update =
+        con.prepareStatement("UPDATE changes SET seq = ?, deleted = ? WHERE sid = ? AND lookup = ?");
+    try {
+      update.setLong(1, sequence);
+      update.setBoolean(2, deleted);
+      update.setInt(3, sid);
+      update.setBytes(4, key);
+      if (update.executeUpdate() > 0) {
+        return;
+      }
+    } finally {
+      close(update);
+    }
+    PreparedStatement insert =
+        con.prepareStatement("INSERT INTO changes (sid, lookup, seq, deleted) VALUES (?, ?, ?, ?)");
+    try {
+      insert.setInt(1, sid);
+      insert.setBytes(2, key);
+      insert.setLong(3, sequence);
+      insert.setBoolean(4, deleted);
+      insert.executeUpdate();
+    } finally {
+      close(insert);
+    }
+  }
+
+  @Override
+  public List<KeyChange> getChanges(User user, long since, int limit)
+      throws IOException {
+    Connection con = null;
+    PreparedStatement queryStatement = null;
+    try {
+      con = dataSource.getConnection();
+      queryStatement =
+          con.prepareStatement("SELECT lookup, seq, deleted FROM stores"
+              + " JOIN changes ON changes.sid = stores.sid WHERE stores.ph = ? AND changes.seq > ?"
+              + " ORDER BY changes.seq LIMIT ?");
+      queryStatement.setBytes(1, user.getPublicHash());
+      queryStatement.setLong(2, since);
+      queryStatement.setInt(3, limit);
+      ResultSet set = queryStatement.executeQuery();
+      List<KeyChange> changes = new ArrayList<KeyChange>();
+      while (set.next()) {
+        changes.add(new KeyChange(set.getBytes("lookup"), set.getLong("seq"), set
+            .getBoolean("deleted")));
+      }
+      return changes;
+    } catch (SQLException e) {
+      throw new IOException(e);
+    } finally {
+      close(queryStatement);
+      close(con);
+    }
+  }
+
+  @Override
+  public long getSequence(User user) throws IOException {
+    Connection con = null;
+    PreparedStatement queryStatement = null;
+    try {
+      con = dataSource.getConnection();
+      queryStatement =
+          con.prepareStatement("SELECT MAX(seq) AS seq FROM stores"
+              + " JOIN changes ON changes.sid = stores.sid WHERE stores.ph = ?");
+      queryStatement.setBytes(1, user.getPublicHash());
+      ResultSet set = queryStatement.executeQuery();
+      return set.next() ? set.getLong("seq") : 0;
+    } catch (SQLException e) {
+      throw new IOException(e);
+    } finally {
+      close(queryStatement);
+      close(con);
+    }
+  }
+
+  @Override
+  public boolean setChanges(final User user, final List<KeyChange> changes) {
+    try {
+      return inTransaction(new Transaction<Boolean>() {
+        @Override
+        Boolean run(Connection con) throws SQLException {
+          return setChangesInTransaction(con, user, changes);
+        }
+      });
+    } catch (SQLException e) {
+      severe("Exception while setting changes", e);
+      return false;
+    }
+  }
+
+  private static boolean setChangesInTransaction(Connection con, User user,
+      List<KeyChange> changes) throws SQLException {
+    int sid = lockStore(con, user);
+    if (sid < 0) {
+      return false;// No such user
+    }
+    PreparedStatement delete = con.prepareStatement("DELETE FROM changes WHERE sid = ?");
+    try {
+      delete.setInt(1, sid);
+      delete.executeUpdate();
+    } finally {
+      close(delete);
+    }
+    if (changes.isEmpty()) {
+      return true;
+    }
+    PreparedStatement insert =
+        con.prepareStatement("INSERT INTO changes (sid, lookup, seq, deleted) VALUES (?, ?, ?, ?)");
+    try {
+      for (KeyChange change : changes) {
+        insert.setInt(1, sid);
+        insert.setBytes(2, change.getKey());
+        insert.setLong(3, change.getSequence());
+        insert.setBoolean(4, change.isDeleted());
+        insert.addBatch();
+      }
+      insert.executeBatch();
+    } finally {
+      close(insert);
+    }
+    return true;
+  }
+
+  /**
+   * Add to the counts for a store, must be called in the same transaction as, and after, the change
+   * counted, with the store locked.
+   */
+  private static void addUsage(Connection con, int sid, long records, long revisions, long bytes)
+      throws SQLException {
+    PreparedStatement update =
+        con.prepareStatement("UPDATE storage_usage SET records = records + ?,"
+            + " revisions = revisions + ?, bytes = bytes + ? WHERE sid = ?");
+    try {
+      update.setLong(1, records);
+      update.setLong(2, revisions);
+      update.setLong(3, bytes);
+      update.setInt(4, sid);
+      if (update.executeUpdate() > 0) {
+        return;
+      }
+    } finally {
+      close(update);
+    }
+    // First change since the counts were added, so count everything including this change
+    StorageUsage usage = countUsage(con, sid);
+    PreparedStatement insert =
+        con.prepareStatement("INSERT INTO storage_usage (sid, records, revisions, bytes) VALUES (?, ?, ?, ?)");
+    try {
+      insert.setInt(1, sid);
+      insert.setLong(2, usage.getRecords());
+      insert.setLong(3, usage.getRevisions());
+      insert.setLong(4, usage.getBytes());
+      insert.executeUpdate();
+    } finally {
+      close(insert);
+    }
+  }
+
+  /**
+   * Count the usage of a store by reading all of its records.
+   */
+  private static StorageUsage countUsage(Connection con, int sid) throws SQLException {
+    long records = 0, revisions = 0, bytes = 0;
+    PreparedStatement lookups = con.prepareStatement("SELECT lookup FROM lookups WHERE sid = ?");
+    try {
+      lookups.setInt(1, sid);
+      ResultSet set = lookups.executeQuery();
+      while (set.next()) {
+        records += 1;
+        bytes += set.getBytes("lookup").length;
+      }
+    } finally {
+      close(lookups);
+    }
+    PreparedStatement revs =
+        con.prepareStatement("SELECT rev, val FROM lookups JOIN revisions ON revisions.lid = lookups.lid"
+            + " WHERE lookups.sid = ?");
+    try {
+      revs.setInt(1, sid);
+      ResultSet set = revs.executeQuery();
+      while (set.next()) {
+        revisions += 1;
+        bytes += set.getBytes("rev").length + set.getBytes("val").length;
+      }
+    } finally {
+      close(revs);
+    }
+    return new StorageUsage(records, revisions, bytes);
+  }
+
+  @Override
+  public StorageUsage getUsage(User user) throws IOException {
+    Connection con = null;
+    try {
+      con = dataSource.getConnection();
+      int sid = getSid(con, user);
+      return sid < 0 ? StorageUsage.NONE : usage(con, sid);
+    } catch (SQLException e) {
+      throw new IOException(e);
+    } finally {
+      close(con);
+    }
+  }
+
+  /**
+   * @return the counts for the store, counting them if they haven't been kept yet
+   */
+  private static StorageUsage usage(Connection con, int sid) throws SQLException {
+    PreparedStatement queryStatement =
+        con.prepareStatement("SELECT records, revisions, bytes FROM storage_usage WHERE sid = ?");
+    try {
+      queryStatement.setInt(1, sid);
+      ResultSet set = queryStatement.executeQuery();
+      if (!set.next()) {
+        return countUsage(con, sid);
+      }
+      return new StorageUsage(set.getLong("records"), set.getLong("revisions"),
+          set.getLong("bytes"));
+    } finally {
+      close(queryStatement);
+    }
+  }
+
+  /**
+   * @return the sid of the user's store or -1 if there is no such user
+   */
+  private static int getSid(Connection con, User user) throws SQLException {
+    PreparedStatement getSid = con.prepareStatement("SELECT sid FROM stores WHERE ph = ?");
+    try {
+      getSid.setBytes(1, user.getPublicHash());
+      ResultSet set = getSid.executeQuery();
+      if (!set.next()) {
+        return -1;
+      }
+      return set.getInt("sid");
+    } finally {
+      close(getSid);
+    }
+  }
+
+  /**
+   * @return the lid of the lookup in the store or -1 if there is no such lookup
+   */
+  private static int getLid(Connection con, int sid, byte[] key) throws SQLException {
+    PreparedStatement getLid =
+        con.prepareStatement("SELECT lid FROM lookups WHERE sid = ? AND lookup = ?");
+    try {
+      getLid.setInt(1, sid);
+      getLid.setBytes(2, key);
+      ResultSet set = getLid.executeQuery();
+      if (!set.next()) {
+        return -1;
+      }
+      return set.getInt("lid");
+    } finally {
+      close(getLid);
+    }
+  }
+
+  /**
+   * @return the value of the revision of the lookup or null if there is no such revision
+   */
+  private static byte[] getValue(Connection con, int lid, byte[] revision) throws SQLException {
+    PreparedStatement getExisting =
+        con.prepareStatement("SELECT val FROM revisions WHERE lid = ? AND rev = ?");
+    try {
+      getExisting.setInt(1, lid);
+      getExisting.setBytes(2, revision);
+      ResultSet set = getExisting.executeQuery();
+      return set.next() ? set.getBytes("val") : null;
+    } finally {
+      close(getExisting);
+    }
+  }
+
+  /**
+   * @return a comma separated list of count parameter placeholders
+   */
+  private static String placeholders(int count) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < count; ++i) {
+      if (i > 0) {
+        builder.append(',');
+      }
+      builder.append('?');
+    }
+    return builder.toString();
+  }
+
+  @Override
+  public List<Collection<RevValue>> getRecords(User user, List<byte[]> keys)
+      throws IOException {
+    Map<ByteString, Collection<RevValue>> found = new HashMap<ByteString, Collection<RevValue>>();
+    Connection con = null;
+    try {
+      con = dataSource.getConnection();
+      for (int start = 0; start < keys.size(); start += MAX_IN_SIZE) {
+        List<byte[]> chunk = keys.subList(start, Math.min(keys.size(), start + MAX_IN_SIZE));
+        PreparedStatement queryStatement =
+            con.prepareStatement("SELECT lookup, rev, val FROM stores JOIN lookups ON lookups.sid = stores.sid"
+                + " LEFT JOIN revisions ON revisions.lid = lookups.lid"
+                + " WHERE stores.ph = ? AND lookups.lookup IN (" + placeholders(chunk.size()) + ")");
+        try {
+          queryStatement.setBytes(1, user.getPublicHash());
+          int parameter = 2;
+          for (byte[] key : chunk) {
+            queryStatement.setBytes(parameter++, key);
+          }
+          ResultSet set = queryStatement.executeQuery();
+          while (set.next()) {
+            ByteString lookup = ByteString.copyFrom(set.getBytes("lookup"));
+            Collection<RevValue> revValues = found.get(lookup);
+            if (revValues == null) {
+              revValues = new ArrayList<RevValue>();
+              found.put(lookup, revValues);
+            }
+            byte[] rev = set.getBytes("rev");
+            if (rev != null) {
+              revValues.add(new RevValue(rev, set.getBytes("val")));
+            }
+          }
+        } finally {
+          close(queryStatement);
+        }
+      }
+    } catch (SQLException e) {
+      throw new IOException(e);
+    } finally {
+      close(con);
+    }
+    List<Collection<RevValue>> answer = new ArrayList<Collection<RevValue>>(keys.size());
+    for (byte[] key : keys) {
+      answer.add(found.get(ByteString.copyFrom(key)));
+    }
+    return answer;
+  }
+
+  @Override
+  public List<RevValue> getRevisionValues(User user, byte[] key,
+      List<byte[]> revisions) throws IOException {
+    Map<ByteString, byte[]> found = new HashMap<ByteString, byte[]>();
+    Connection con = null;
+    try {
+      con = dataSource.getConnection();
+      for (int start = 0; start < revisions.size(); start += MAX_IN_SIZE) {
+        List<byte[]> chunk =
+            revisions.subList(start, Math.min(revisions.size(), start + MAX_IN_SIZE));
+        PreparedStatement queryStatement =
+            con.prepareStatement("SELECT rev, val FROM stores JOIN lookups ON lookups.sid = stores.sid"
+                + " JOIN revisions ON revisions.lid = lookups.lid"
+                + " WHERE stores.ph = ? AND lookups.lookup = ? AND revisions.rev IN ("
+                + placeholders(chunk.size()) + ")");
+        try {
+          queryStatement.setBytes(1, user.getPublicHash());
+          queryStatement.setBytes(2, key);
+          int parameter = 3;
+          for (byte[] revision : chunk) {
+            queryStatement.setBytes(parameter++, revision);
+          }
+          ResultSet set = queryStatement.executeQuery();
+          while (set.next()) {
+            found.put(ByteString.copyFrom(set.getBytes("rev")), set.getBytes("val"));
+          }
+        } finally {
+          close(queryStatement);
+        }
+      }
+    } catch (SQLException e) {
+      throw new IOException(e);
+    } finally {
+      close(con);
+    }
+    List<RevValue> answer = new ArrayList<RevValue>(revisions.size());
+    for (byte[] revision : revisions) {
+      byte[] value = found.get(ByteString.copyFrom(revision));
+      answer.add(value == null ? null : new RevValue(revision, value));
+    }
+    return answer;
+  }
+
+  @Override
+  public List<Collection<byte[]>> getRevisions(User user, List<byte[]> keys)
+      throws IOException {
+    Map<ByteString, Collection<byte[]>> found = new HashMap<ByteString, Collection<byte[]>>();
+    Connection con = null;
+    try {
+      con = dataSource.getConnection();
+      for (int start = 0; start < keys.size(); start += MAX_IN_SIZE) {
+        List<byte[]> chunk = keys.subList(start, Math.min(keys.size(), start + MAX_IN_SIZE));
+        PreparedStatement queryStatement =
+            con.prepareStatement("SELECT lookup, rev FROM stores JOIN lookups ON lookups.sid = stores.sid"
+                + " JOIN revisions ON revisions.lid = lookups.lid"
+                + " WHERE stores.ph = ? AND lookups.lookup IN (" + placeholders(chunk.size()) + ")");
+        try {
+          queryStatement.setBytes(1, user.getPublicHash());
+          int parameter = 2;
+          for (byte[] key : chunk) {
+            queryStatement.setBytes(parameter++, key);
+          }
+          ResultSet set = queryStatement.executeQuery();
+          while (set.next()) {
+            ByteString lookup = ByteString.copyFrom(set.getBytes("lookup"));
+            Collection<byte[]> revisions = found.get(lookup);
+            if (revisions == null) {
+              revisions = new ArrayList<byte[]>();
+              found.put(lookup, revisions);
+            }
+            revisions.add(set.getBytes("rev"));
+          }
+        } finally {
+          close(queryStatement);
+        }
+      }
+    } catch (SQLException e) {
+      throw new IOException(e);
+    } finally {
+      close(con);
+    }
+    List<Collection<byte[]>> answer = new ArrayList<Collection<byte[]>>(keys.size());
+    for (byte[] key : keys) {
+      answer.add(found.get(ByteString.copyFrom(key)));
+    }
+    return answer;
+  }
+
+  @Override
+  public boolean[] putRecords(final User user, final List<KeyRevValue> records) {
+    try {
+      return inTransaction(new Transaction<boolean[]>() {
+        @Override
+        boolean[] run(Connection con) throws SQLException {
+          int sid = lockStore(con, user);
+          if (sid < 0) {
+            return new boolean[records.size()];// No such user
+          }
+          return putRecordsInTransaction(con, sid, records);
+        }
+      });
+    } catch (SQLException e) {
+      severe("Exception while putting records", e);
+      return new boolean[records.size()];
+    }
+  }
+
+  /**
+   * Each record is checked and put in one transaction holding the lock on the user's store, so the
+   * usage it is checked against includes the puts before it and no other change can be made in
+   * between.
+   */
+  @Override
+  public boolean[] putRecords(final User user, final List<KeyRevValue> records,
+      final StorageUsage quota) {
+    try {
+      return inTransaction(new Transaction<boolean[]>() {
+        @Override
+        boolean[] run(Connection con) throws SQLException {
+          boolean[] answer = new boolean[records.size()];
+          int sid = lockStore(con, user);
+          if (sid < 0) {
+            return answer;// No such user
+          }
+          int i = 0;
+          for (KeyRevValue record : records) {
+            if (!exceeds(con, sid, record, quota)) {
+              Savepoint before = con.setSavepoint();
+              answer[i] =
+                  putRecordInTransaction(con, sid, record.getKey(), record.getRevision(), record
+                      .getValue());
+              if (!answer[i]) {
+                con.rollback(before);
+              }
             }
-            lid = lookupSet.getInt("lid");
-          } finally {
-            createLookup.close();
+            ++i;
           }
-          
+          return answer;
+        }
+      });
+    } catch (SQLException e) {
+      severe("Exception while putting records", e);
+      return new boolean[records.size()];
+    }
+  }
 
+  /**
+   * @return whether putting the record would take the store over quota
+   */
+  private static boolean exceeds(Connection con, int sid, KeyRevValue record, StorageUsage quota)
+      throws SQLException {
+    int lid = getLid(con, sid, record.getKey());
+    if (lid >= 0 && getValue(con, lid, record.getRevision()) != null) {
+      return false;
+    }
+    return usage(con, sid).addPut(lid < 0, record.getKey(), record.getRevision(),
+        record.getValue()).exceeds(quota);
+  }
+
+  /**
+   * Must be called with auto commit off, inserts are done as JDBC batches, one for the new lookups
+   * and one for the new revisions. The store must be locked.
+   */
+  private static boolean[] putRecordsInTransaction(Connection con, int sid,
+      List<KeyRevValue> records) throws SQLException {
+    boolean[] answer = new boolean[records.size()];
+
+    Map<ByteString, Integer> lids = new HashMap<ByteString, Integer>();
+    PreparedStatement getLid = con.prepareStatement("SELECT lid FROM lookups WHERE sid = ? AND lookup = ?");
+    PreparedStatement createLookup = con.prepareStatement("INSERT INTO lookups (sid, lookup) VALUES (?, ?)");
+    try {
+      getLid.setInt(1, sid);
+      createLookup.setInt(1, sid);
+      Set<ByteString> missing = new HashSet<ByteString>();
+      for (KeyRevValue record : records) {
+        ByteString key = ByteString.copyFrom(record.getKey());
+        if (lids.containsKey(key) || missing.contains(key)) {
+          continue;
+        }
+        getLid.setBytes(2, record.getKey());
+        ResultSet set = getLid.executeQuery();
+        if (set.next()) {
+          lids.put(key, set.getInt("lid"));
         } else {
-          lid = set.getInt("lid");
+          missing.add(key);
+          createLookup.setBytes(2, record.getKey());
+          createLookup.addBatch();
+        }
+        set.close();
+      }
+      if (!missing.isEmpty()) {
+        createLookup.executeBatch();
+        long bytes = 0;
+        for (ByteString key : missing) {
+          bytes += key.size();
+        }
+        addUsage(con, sid, missing.size(), 0, bytes);
+        for (ByteString key : missing) {
+          getLid.setBytes(2, key.toByteArray());
+          ResultSet set = getLid.executeQuery();
+          if (!set.next()) {
+            throw new SQLException("Insertion of lookup did not succeed");
+          }
+          lids.put(key, set.getInt("lid"));
+          set.close();
         }
-      } finally {
-        getLid.close();
       }
+    } finally {
+      close(getLid);
+      close(createLookup);
+    }
 
-      // TODO(drt24) only need to do this if the revision does not exist
-      PreparedStatement insertRevision = con.prepareStatement("INSERT INTO revisions (lid, rev) VALUES (?, ?) RETURNING rid");
-      int rid;
-      try {
-        insertRevision.setInt(1, lid);
-        insertRevision.setBytes(2, revision);
-        insertRevision.execute();
-        ResultSet ridSet = insertRevision.getResultSet();
-        if (!ridSet.first()) {
-          log.severe("Inserting revision failed");
-          return false;
+    // Revisions put earlier in this batch, keyed on lid and revision
+    Map<ByteString, byte[]> pending = new HashMap<ByteString, byte[]>();
+    Set<ByteString> changed = new LinkedHashSet<ByteString>();
+    PreparedStatement getExisting = con.prepareStatement("SELECT val FROM revisions WHERE lid = ? AND rev = ?");
+    PreparedStatement insertRevision = con.prepareStatement("INSERT INTO revisions (lid, rev, val) VALUES (?, ?, ?)");
+    long revisionBytes = 0;
+    try {
+      int i = 0;
+      for (KeyRevValue record : records) {
+        int lid = lids.get(ByteString.copyFrom(record.getKey()));
+        byte[] revision = record.getRevision();
+        ByteString revisionKey = ByteString.copyFrom(Util.joinBytes(Util.int2bin(lid), revision));
+        byte[] existing = pending.get(revisionKey);
+        if (existing == null) {
+          getExisting.setInt(1, lid);
+          getExisting.setBytes(2, revision);
+          ResultSet set = getExisting.executeQuery();
+          if (set.next()) {
+            existing = set.getBytes("val");
+          }
+          set.close();
+        }
+        if (existing != null) {
+          // Revisions are immutable so this only succeeds if it is a repeat of the same put
+          answer[i] = Arrays.equals(record.getValue(), existing);
+        } else {
+          insertRevision.setInt(1, lid);
+          insertRevision.setBytes(2, revision);
+          insertRevision.setBytes(3, record.getValue());
+          insertRevision.addBatch();
+          pending.put(revisionKey, record.getValue());
+          changed.add(ByteString.copyFrom(record.getKey()));
+          revisionBytes += revision.length + record.getValue().length;
+          answer[i] = true;
+        }
+        ++i;
+      }
+      if (!pending.isEmpty()) {
+        insertRevision.executeBatch();
+        addUsage(con, sid, 0, pending.size(), revisionBytes);
+        for (ByteString key : changed) {
+          recordChange(con, sid, key.toByteArray(), false);
         }
-        rid = ridSet.getInt("rid");
-      } finally {
-        insertRevision.close();
       }
-      
-      PreparedStatement insertValue = con.prepareStatement("INSERT INTO rid_values VALUES (?, ?)");
-      insertValue.setInt(1, rid);
-      insertValue.setBytes(2, data);
-      return insertValue.executeUpdate() == 1;
+    } finally {
+      close(getExisting);
+      close(insertRevision);
+    }
+    return answer;
+  }
 
-    } catch (SQLException e){
-      log.severe(e.toString());
+  @Override
+  public boolean deleteRecord(final User user, final byte[] key) {
+    try {
+      return inTransaction(new Transaction<Boolean>() {
+        @Override
+        Boolean run(Connection con) throws SQLException {
+          return deleteRecordInTransaction(con, user, key);
+        }
+      });
+    } catch (SQLException e) {
+      severe("Exception while deleting record", e);
       return false;
     }
   }
 
-  @Override
-  public boolean deleteRecord(User user, byte[] key) {
+  private static boolean deleteRecordInTransaction(Connection con, User user, byte[] key)
+      throws SQLException {
+    int sid = lockStore(con, user);
+    if (sid < 0) {
+      return false;// No such user
+    }
+    int lid = getLid(con, sid, key);
+    if (lid < 0) {
+      return false;
+    }
+    long revisions = 0, bytes = 0;
+    PreparedStatement count = con.prepareStatement("SELECT rev, val FROM revisions WHERE lid = ?");
     try {
-      PreparedStatement deleteKey = con.prepareStatement("DELETE FROM lookups USING stores WHERE lookups.sid = stores.sid AND stores.ph = ? AND lookup = ?");
-      try {
-        deleteKey.setBytes(1, user.getPublicHash());
-        deleteKey.setBytes(2, key);
-        return deleteKey.executeUpdate() > 0;
-      } finally {
-        deleteKey.close();
+      count.setInt(1, lid);
+      ResultSet set = count.executeQuery();
+      while (set.next()) {
+        revisions += 1;
+        bytes += set.getBytes("rev").length + set.getBytes("val").length;
       }
-    } catch (SQLException e){
-      log.severe(e.toString());
-      return false;
+    } finally {
+      close(count);
     }
+    // revisions are removed by ON DELETE CASCADE
+    PreparedStatement deleteKey = con.prepareStatement("DELETE FROM lookups WHERE lid = ?");
+    try {
+      deleteKey.setInt(1, lid);
+      if (deleteKey.executeUpdate() == 0) {
+        return false;
+      }
+    } finally {
+      close(deleteKey);
+    }
+    addUsage(con, sid, -1, -revisions, -(key.length + bytes));
+    recordChange(con, sid, key, true);
+    return true;
   }
 
   @Override
   public void clearOldNonces() {
-    // TODO(drt24) implement clearOldNonces    
+    if (dataSource == null) {
+      return;// AbstractDatabase can call this before the constructor has finished
+    }
+    Connection con = null;
+    PreparedStatement queryStatement = null, deleteStatement = null;
+    try {
+      con = dataSource.getConnection();
+      // Nonce decides what is recent so find the distinct times and ask it about each of them
+      queryStatement = con.prepareStatement("SELECT DISTINCT since_epoch FROM nonces");
+      ResultSet set = queryStatement.executeQuery();
+      deleteStatement = con.prepareStatement("DELETE FROM nonces WHERE since_epoch = ?");
+      boolean haveOld = false;
+      while (set.next()) {
+        int sinceEpoch = set.getInt("since_epoch");
+        if (!Nonce.isRecent(sinceEpoch)) {
+          deleteStatement.setInt(1, sinceEpoch);
+          deleteStatement.addBatch();
+          haveOld = true;
+        }
+      }
+      if (haveOld) {
+        deleteStatement.executeBatch();
+      }
+    } catch (SQLException e) {
+      severe("Exception while clearing old nonces", e);
+    } finally {
+      close(queryStatement);
+      close(deleteStatement);
+      close(con);
+    }
   }
 
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.nigori.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import com.google.nigori.common.MessageLibrary;
+
+/**
+ * Creates and upgrades the tables used by {@link SQLDatabase}.
+ *
+ * Each version of the schema is a script on the classpath at /sql/schema-N.sql which moves the
+ * database from version N-1 to version N, the current version is stored in the schema_version table.
+ *
+ * @author drt24
+ *
+ */
+final class SQLSchema {
+
+  /**
+   * The version of the schema which this code expects
+   */
+  static final int VERSION = 3;
+
+  private static final Logger log = Logger.getLogger(SQLSchema.class.getSimpleName());
+
+  private SQLSchema() {
+  }
+
+  /**
+   * Ensure that the database is at {@link #VERSION}, applying any scripts needed to get it there.
+   *
+   * @param con
+   * @throws SQLException if the database could not be upgraded or is newer than this code
+   */
+  static void ensureCurrent(Connection con) throws SQLException {
+    int version = getVersion(con);
+    if (version > VERSION) {
+      throw new SQLException("Database schema version " + version
+          + " is newer than the supported version " + VERSION);
+    }
+    boolean autoCommit = con.getAutoCommit();
+    con.setAutoCommit(false);
+    try {
+      for (int next = version + 1; next <= VERSION; ++next) {
+        log.info("Upgrading database schema to version " + next);
+        Statement statement = con.createStatement();
+        try {
+          for (String sql : readScript(next)) {
+            statement.execute(sql);
+          }
+        } finally {
+          statement.close();
+        }
+        setVersion(con, next);
+        con.commit();
+      }
+    } catch (SQLException e) {
+      con.rollback();
+      throw e;
+    } finally {
+      con.setAutoCommit(autoCommit);
+    }
+  }
+
+  /**
+   * @param con
+   * @return the version of the schema in the database or 0 if there is no schema
+   */
+  static int getVersion(Connection con) throws SQLException {
+    ResultSet tables = con.getMetaData().getTables(null, null, "%", new String[] {"TABLE"});
+    boolean found = false;
+    try {
+      while (tables.next()) {
+        if ("schema_version".equalsIgnoreCase(tables.getString("TABLE_NAME"))) {
+          found = true;
+          break;
+        }
+      }
+    } finally {
+      tables.close();
+    }
+    if (!found) {
+      return 0;
+    }
+    Statement statement = con.createStatement();
+    try {
+      ResultSet set = statement.executeQuery("SELECT version FROM schema_version");
+      if (!set.next()) {
+        return 0;
+      }
+      return set.getInt("version");
+    } finally {
+      statement.close();
+    }
+  }
+
+  private static void setVersion(Connection con, int version) throws SQLException {
+    Statement delete = con.createStatement();
+    try {
+      delete.executeUpdate("DELETE FROM schema_version");
+    } finally {
+      delete.close();
+    }
+    PreparedStatement insert = con.prepareStatement("INSERT INTO schema_version (version) VALUES (?)");
+    try {
+      insert.setInt(1, version);
+      insert.executeUpdate();
+    } finally {
+      insert.close();
+    }
+  }
+
+  /**
+   * Read a schema script and split it into statements, comments are removed.
+   *
+   * @param version
+   * @return the statements in the script
+   * @throws SQLException if the script can't be found or read
+   */
+  private static List<String> readScript(int version) throws SQLException {
+    String name = "/sql/schema-" + version + ".sql";
+    InputStream in = SQLSchema.class.getResourceAsStream(name);
+    if (in == null) {
+      throw new SQLException("Missing schema script " + name);
+    }
+    StringBuilder script = new StringBuilder();
+    try {
+      Reader reader = new InputStreamReader(in, MessageLibrary.CHARSET);
+      try {
+        char[] buffer = new char[4096];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+          script.append(buffer, 0, read);
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (IOException e) {
+      throw new SQLException("Could not read schema script " + name, e);
+    }
+    String withoutComments = script.toString().replaceAll("(?s)/\\*.*?\\*/", "");
+    List<String> statements = new ArrayList<String>();
+    for (String statement : withoutComments.split(";")) {
+      String trimmed = statement.trim();
+      if (trimmed.length() > 0) {
+        statements.add(trimmed);
+      }
+    }
+    return statements;
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* Version 1 of the database tables required by the SQL backend.
+ * Applied by SQLDatabase when it finds no schema_version table, must work on both PostgreSQL and H2.
+ */
+
+CREATE TABLE schema_version (
+  version  integer  NOT NULL
+);
+
+CREATE TABLE stores (
+  sid  serial  PRIMARY KEY,
+  ph   bytea   NOT NULL,
+  pk   bytea   NOT NULL,
+  reg  TIMESTAMP  NOT NULL
+);
+
+CREATE UNIQUE INDEX stores_ph ON stores (ph);
+
+CREATE TABLE lookups (
+  lid  serial  PRIMARY KEY,
+  sid  integer NOT NULL  REFERENCES stores (sid)  ON DELETE CASCADE,
+  lookup bytea NOT NULL
+);
+
+CREATE UNIQUE INDEX lookups_sid_lookup ON lookups (sid, lookup);
+
+CREATE TABLE revisions (
+  rid  serial  PRIMARY KEY,
+  lid  integer NOT NULL  REFERENCES lookups (lid) ON DELETE CASCADE,
+  rev  bytea   NOT NULL,
+  val  bytea   NOT NULL
+);
+
+CREATE UNIQUE INDEX revisions_lid_rev ON revisions (lid, rev);
+
+/* Nonces are keyed on the public hash rather than sid as they are checked before the user is known */
+CREATE TABLE nonces (
+  ph     bytea    NOT NULL,
+  nonce  bytea    NOT NULL,
+  since_epoch  integer  NOT NULL,
+  PRIMARY KEY (ph, nonce)
+);
+
+CREATE INDEX nonces_since_epoch ON nonces (since_epoch);
@@ -0,0 +1,27 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* Version 2: per user counts of records, revisions and bytes kept up to date by SQLDatabase.
+ * Bytes are the total length of the lookups, revisions and values. Stores without a row are counted
+ * when they are next changed.
+ */
+
+CREATE TABLE storage_usage (
+  sid        integer  PRIMARY KEY  REFERENCES stores (sid)  ON DELETE CASCADE,
+  records    bigint   NOT NULL,
+  revisions  bigint   NOT NULL,
+  bytes      bigint   NOT NULL
+);
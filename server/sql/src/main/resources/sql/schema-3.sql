@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* Version 3: per user log of the latest change to each lookup kept up to date by SQLDatabase.
+ * Rows are keyed on the lookup rather than lid so that deletions stay in the log after the lookup
+ * has gone. The latest change is never replaced so the user's sequence is the largest seq.
+ */
+
+CREATE TABLE changes (
+  sid      integer  NOT NULL  REFERENCES stores (sid)  ON DELETE CASCADE,
+  lookup   bytea    NOT NULL,
+  seq      bigint   NOT NULL,
+  deleted  boolean  NOT NULL,
+  PRIMARY KEY (sid, lookup)
+);
+
+CREATE INDEX changes_sid_seq ON changes (sid, seq);
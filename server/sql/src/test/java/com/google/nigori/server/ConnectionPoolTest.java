@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.nigori.server;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author drt24
+ *
+ */
+public class ConnectionPoolTest {
+
+  private ConnectionPool pool;
+
+  @Before
+  public void createPool() throws ClassNotFoundException {
+    Class.forName("org.h2.Driver");
+    pool = new ConnectionPool("jdbc:h2:mem:pool-test", "nigori", "", 2);
+    pool.setLoginTimeout(1);
+  }
+
+  @After
+  public void closePool() {
+    pool.close();
+  }
+
+  @Test
+  public void givenBackReset() throws SQLException {
+    Connection first = pool.getConnection();
+    first.setAutoCommit(false);
+    first.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+    first.close();
+    assertTrue(first.isClosed());
+    try {
+      first.createStatement();
+      fail("Expected SQLException");
+    } catch (SQLException e) {
+      // given back
+    }
+    first.close();// closing again does nothing
+
+    Connection second = pool.getConnection();
+    assertTrue(second.getAutoCommit());
+    assertFalse(second.getTransactionIsolation() == Connection.TRANSACTION_SERIALIZABLE);
+    second.close();
+  }
+
+  /**
+   * Once all the connections are in use more wait for one to be given back
+   */
+  @Test(timeout = 10000)
+  public void limited() throws SQLException {
+    Connection first = pool.getConnection();
+    Connection second = pool.getConnection();
+    try {
+      pool.getConnection();
+      fail("Expected SQLException");
+    } catch (SQLException e) {
+      // timed out
+    }
+    first.close();
+    Connection third = pool.getConnection();
+    third.close();
+    second.close();
+  }
+
+  @Test
+  public void closed() throws SQLException {
+    pool.close();
+    try {
+      pool.getConnection();
+      fail("Expected SQLException");
+    } catch (SQLException e) {
+      // closed
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server;
+
+import static com.google.nigori.common.MessageLibrary.toBytes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import com.google.nigori.common.NigoriConstants;
+import com.google.nigori.common.Util;
+
+/**
+ * Runs the database tests against an embedded H2 database
+ * 
+ * @author drt24
+ * 
+ */
+public class SQLDatabaseTest extends AbstractDatabaseTest {
+
+  private static final int USERS = 4;
+  private static final int THREADS_PER_USER = 2;
+  private static final int PUTS = 200;
+
+  @Override
+  protected Database getDatabase() {
+    File dataDir = new File("sql-test-dir/");
+    dataDir.mkdir();
+    dataDir.deleteOnExit();
+    try {
+      return SQLDatabase.getInstance(dataDir);
+    } catch (SQLException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Test
+  public void getInstance() throws UserNotFoundException {
+    Database newDatabase = getDatabase();
+    assertEquals("Get same database", database, newDatabase);
+    assertTrue(database.addUser(publicKey, publicHash));
+    User user = newDatabase.getUser(publicHash);
+    assertNotNull(user);
+    assertTrue(database.deleteUser(user));
+  }
+
+  @AfterClass
+  public static void deleteDatabase() {
+    File dataDir = new File("sql-test-dir/");
+    if (dataDir.exists()) {
+      Util.deleteDir(dataDir);
+      dataDir.delete();
+    }
+  }
+
+  /**
+   * Puts for several users from several threads each at once, on connections of their own, all
+   * arrive and are counted and given a place in their user's change sequence
+   */
+  @Test
+  public void concurrentPuts() throws Exception {
+    Random random = new Random();
+    final List<User> users = new ArrayList<User>();
+    for (int u = 0; u < USERS; ++u) {
+      byte[] key = new byte[NigoriConstants.B_DSA];
+      random.nextBytes(key);
+      byte[] hash = Util.hashKey(key);
+      assertTrue(database.addUser(key, hash));
+      users.add(database.getUser(hash));
+    }
+    ExecutorService threads = Executors.newFixedThreadPool(USERS * THREADS_PER_USER);
+    try {
+      List<Future<Boolean>> puts = new ArrayList<Future<Boolean>>();
+      for (final User user : users) {
+        for (int t = 0; t < THREADS_PER_USER; ++t) {
+          final int thread = t;
+          puts.add(threads.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+              for (int i = 0; i < PUTS; ++i) {
+                if (!database.putRecord(user, toBytes(thread + "-" + i), toBytes("revision"),
+                    toBytes("value"))) {
+                  return false;
+                }
+                database.getIndices(user);
+              }
+              return true;
+            }
+          }));
+        }
+      }
+      for (Future<Boolean> put : puts) {
+        assertTrue(put.get());
+      }
+    } finally {
+      threads.shutdown();
+    }
+    for (User user : users) {
+      assertEquals(THREADS_PER_USER * PUTS, database.getIndices(user).size());
+      assertEquals(THREADS_PER_USER * PUTS, database.getUsage(user).getRecords());
+      assertEquals(THREADS_PER_USER * PUTS, database.getSequence(user));
+      assertTrue(database.deleteUser(user));
+    }
+  }
+}
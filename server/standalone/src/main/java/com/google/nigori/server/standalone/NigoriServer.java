@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server.standalone;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import com.google.nigori.server.BlockingAsyncDatabase;
+import com.google.nigori.server.BoundedPools;
+import com.google.nigori.server.ConnectionPool;
+import com.google.nigori.server.Database;
+import com.google.nigori.server.HashMapDatabase;
+import com.google.nigori.server.JEDatabase;
+import com.google.nigori.server.NigoriServlet;
+import com.google.nigori.server.SQLDatabase;
+import com.google.nigori.server.StorageUsage;
+import com.google.nigori.server.SynchronizedDatabase;
+
+/**
+ * Runs {@link NigoriServlet} in an embedded Jetty so that a server backed by {@link JEDatabase} or
+ * {@link SQLDatabase} can be run without App Engine, for example as the target of load tests.
+ * Requests are processed asynchronously on the servlet's own pools so the container needs few
+ * threads, and old nonces are cleared every hour as the App Engine cron job does.
+ *
+ * Run with --help for the options.
+ *
+ * @author drt24
+ *
+ */
+public class NigoriServer {
+  private static final Logger log = Logger.getLogger(NigoriServer.class.getName());
+
+  public static final int DEFAULT_PORT = 8888;
+  /**
+   * The path the servlet is mapped under, the same as in the App Engine web.xml
+   */
+  public static final String PATH = "/nigori";
+  public static final int DEFAULT_CONTAINER_THREADS = 64;
+  private static final long NONCE_CLEAN_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
+  private static final String USAGE = "Usage: NigoriServer [--option=value ...]\n"
+      + "  --backend=memory|je|sql      storage to use (default je)\n"
+      + "  --data=<directory>           where je and embedded sql keep their data (default data)\n"
+      + "  --jdbc=<url>                 use this database rather than embedded H2 for sql\n"
+      + "  --jdbc-user=<user> --jdbc-password=<password>\n"
+      + "  --port=<port>                port to listen on, 0 for any free port (default "
+      + DEFAULT_PORT + ")\n"
+      + "  --container-threads=<n>      Jetty's threads (default " + DEFAULT_CONTAINER_THREADS
+      + ")\n"
+      + "  --cpu-threads=<n>            threads parsing requests (default number of processors)\n"
+      + "  --io-threads=<n>             threads waiting on the database (default "
+      + NigoriServlet.DEFAULT_IO_THREADS + ")\n"
+      + "  --queue-depth=<n>            requests each pool queues before rejecting more (default "
+      + NigoriServlet.DEFAULT_QUEUE_DEPTH + ")\n"
+      + "  --quota=<records>,<revisions>,<bytes>  storage allowed per user (default unlimited)\n";
+
+  private final Database database;
+  private final Server server;
+  private final ServerConnector connector;
+  private final ScheduledExecutorService cleaner;
+
+  /**
+   * @param database to store data in
+   * @param quota the storage allowed to each user
+   * @param port to listen on, 0 for any free port
+   * @param containerThreads the maximum number of threads Jetty may use
+   * @param cpuThreads threads parsing requests and writing responses
+   * @param ioThreads threads waiting on the database
+   * @param queueDepth the number of requests each of the servlet's pools will queue before
+   *          rejecting more
+   */
+  public NigoriServer(Database database, StorageUsage quota, int port, int containerThreads,
+      int cpuThreads, int ioThreads, int queueDepth) {
+    this.database = database;
+    QueuedThreadPool threads = new QueuedThreadPool(containerThreads);
+    threads.setName("nigori-http");
+    server = new Server(threads);
+    connector = new ServerConnector(server);
+    connector.setPort(port);
+    server.addConnector(connector);
+
+    ExecutorService cpuPool = BoundedPools.newBoundedPool("nigori-cpu", cpuThreads, queueDepth);
+    NigoriServlet servlet;
+    if (database instanceof SynchronizedDatabase) {
+      // The in-memory database never waits on I/O so its calls complete on the calling thread
+      servlet =
+          new NigoriServlet(database, BlockingAsyncDatabase.inline(database), quota, cpuPool);
+    } else {
+      servlet =
+          new NigoriServlet(database, quota, cpuPool, BoundedPools.newBoundedPool("nigori-io",
+              ioThreads, queueDepth));
+    }
+    ServletHolder holder = new ServletHolder(servlet);
+    holder.setAsyncSupported(true);
+    ServletContextHandler context = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
+    context.setContextPath("/");
+    context.addServlet(holder, PATH + "/*");
+    server.setHandler(context);
+    server.setStopAtShutdown(true);
+
+    cleaner = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "nigori-nonce-cleaner");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Start serving, returns once the server is accepting connections
+   *
+   * @throws Exception if the server could not be started, for example if the port is in use
+   */
+  public void start() throws Exception {
+    server.start();
+    cleaner.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          database.clearOldNonces();
+        } catch (RuntimeException e) {
+          log.log(Level.WARNING, "Could not clear old nonces", e);
+        }
+      }
+    }, NONCE_CLEAN_INTERVAL, NONCE_CLEAN_INTERVAL, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @return the port being listened on, which is only known once started if 0 was asked for
+   */
+  public int getPort() {
+    return connector.getLocalPort();
+  }
+
+  /**
+   * Wait until the server has stopped
+   */
+  public void join() throws InterruptedException {
+    server.join();
+  }
+
+  /**
+   * Stop serving, requests in progress are given a chance to finish
+   */
+  public void stop() throws Exception {
+    cleaner.shutdown();
+    server.stop();
+  }
+
+  /**
+   * Open the database a server was asked for
+   *
+   * @param options as described by --help
+   * @return the database
+   * @throws SQLException if the SQL database could not be opened
+   * @throws IllegalArgumentException if the options are not valid
+   */
+  public static Database openDatabase(Properties options) throws SQLException {
+    String backend = options.getProperty("backend", "je");
+    if ("memory".equals(backend)) {
+      // Requests are carried out on many threads and HashMapDatabase isn't thread safe
+      return new SynchronizedDatabase(new HashMapDatabase());
+    }
+    String jdbc = options.getProperty("jdbc");
+    if ("sql".equals(backend) && jdbc != null) {
+      // a connection for each thread waiting on the database
+      return new SQLDatabase(new ConnectionPool(jdbc, options.getProperty("jdbc-user", "nigori"),
+          options.getProperty("jdbc-password", ""), intOption(options, "io-threads",
+              NigoriServlet.DEFAULT_IO_THREADS)));
+    }
+    File data = new File(options.getProperty("data", "data"));
+    if (!data.isDirectory() && !data.mkdirs()) {
+      throw new IllegalArgumentException("Could not create data directory: " + data);
+    }
+    if ("je".equals(backend)) {
+      return JEDatabase.getInstance(data);
+    }
+    if ("sql".equals(backend)) {
+      return SQLDatabase.getInstance(data);
+    }
+    throw new IllegalArgumentException("Unknown backend: " + backend);
+  }
+
+  /**
+   * @param args options of the form --name=value
+   * @return the options by name
+   * @throws IllegalArgumentException if an argument is not of that form
+   */
+  static Properties parseOptions(String[] args) {
+    Properties options = new Properties();
+    for (String arg : args) {
+      int equals = arg.indexOf('=');
+      if (!arg.startsWith("--") || equals < 3) {
+        throw new IllegalArgumentException("Not an option of the form --name=value: " + arg);
+      }
+      options.setProperty(arg.substring(2, equals), arg.substring(equals + 1));
+    }
+    return options;
+  }
+
+  private static int intOption(Properties options, String name, int defaultValue) {
+    String value = options.getProperty(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("--" + name + " must be a number: " + value);
+    }
+  }
+
+  private static StorageUsage quotaOption(Properties options) {
+    String value = options.getProperty("quota");
+    if (value == null) {
+      return StorageUsage.UNLIMITED;
+    }
+    String[] limits = value.split(",");
+    if (limits.length != 3) {
+      throw new IllegalArgumentException("--quota must be <records>,<revisions>,<bytes>: "
+          + value);
+    }
+    try {
+      return new StorageUsage(Long.parseLong(limits[0].trim()), Long.parseLong(limits[1].trim()),
+          Long.parseLong(limits[2].trim()));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("--quota must be <records>,<revisions>,<bytes>: "
+          + value);
+    }
+  }
+
+  /**
+   * Create a server as described by the options
+   *
+   * @param options as described by --help
+   * @return the server, not yet started
+   * @throws SQLException if the SQL database could not be opened
+   * @throws IllegalArgumentException if the options are not valid
+   */
+  public static NigoriServer fromOptions(Properties options) throws SQLException {
+    return new NigoriServer(openDatabase(options), quotaOption(options), intOption(options,
+        "port", DEFAULT_PORT), intOption(options, "container-threads", DEFAULT_CONTAINER_THREADS),
+        intOption(options, "cpu-threads", Runtime.getRuntime().availableProcessors()), intOption(
+            options, "io-threads", NigoriServlet.DEFAULT_IO_THREADS), intOption(options,
+            "queue-depth", NigoriServlet.DEFAULT_QUEUE_DEPTH));
+  }
+
+  public static void main(String[] args) throws Exception {
+    long start = System.currentTimeMillis();
+    NigoriServer server;
+    try {
+      if (args.length == 1 && ("--help".equals(args[0]) || "-h".equals(args[0]))) {
+        System.out.print(USAGE);
+        return;
+      }
+      server = fromOptions(parseOptions(args));
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.print(USAGE);
+      System.exit(1);
+      return;
+    }
+    server.start();
+    log.info("Serving on port " + server.getPort() + " at " + PATH + " after "
+        + (System.currentTimeMillis() - start) + "ms");
+    server.join();
+  }
+}
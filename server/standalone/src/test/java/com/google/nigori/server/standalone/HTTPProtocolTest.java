@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server.standalone;
+
+import static com.google.nigori.common.MessageLibrary.toBytes;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.nigori.client.AsyncCryptoNigoriDatastore;
+import com.google.nigori.client.CryptoNigoriDatastore;
+import com.google.nigori.client.JsonHTTPProtocol;
+import com.google.nigori.client.LocalAsyncRemoteSyncingNigoriDatastore;
+import com.google.nigori.client.NioHttpClient;
+import com.google.nigori.client.ProtobufHTTPProtocol;
+import com.google.nigori.common.Index;
+import com.google.nigori.common.MessageLibrary;
+import com.google.nigori.common.NigoriProtocol;
+import com.google.nigori.common.RevValue;
+import com.google.nigori.common.Revision;
+import com.google.nigori.server.Database;
+import com.google.nigori.server.HashMapDatabase;
+import com.google.nigori.server.NigoriServlet;
+import com.google.nigori.server.StorageUsage;
+import com.google.nigori.server.SynchronizedDatabase;
+
+/**
+ * Round trips through the client's HTTP protocols and {@link NigoriServlet} in an embedded server.
+ *
+ * @author drt24
+ *
+ */
+public class HTTPProtocolTest {
+
+  private static final String HOST = "localhost";
+  private static final String PREFIX = NigoriServer.PATH.substring(1);
+  private static final byte[] NULL_DELETE_TOKEN = new byte[] {};
+
+  private NigoriServer server;
+
+  @Before
+  public void startServer() throws Exception {
+    server = new NigoriServer(database(), StorageUsage.UNLIMITED, 0, 8, 1, 1, 16);
+    server.start();
+  }
+
+  @After
+  public void stopServer() throws Exception {
+    server.stop();
+  }
+
+  private static Database database() {
+    return new SynchronizedDatabase(new HashMapDatabase());
+  }
+
+  private static CryptoNigoriDatastore store(NigoriProtocol protocol, int port) throws Exception {
+    return new CryptoNigoriDatastore(protocol, "username", "password", HOST + ":" + port);
+  }
+
+  /**
+   * Every kind of request, checking that what comes back is what went in
+   */
+  private static void roundTrip(CryptoNigoriDatastore store) throws Exception {
+    Index index = new Index("index");
+    Revision first = new Revision("first");
+    Revision second = new Revision("second");
+    assertTrue(store.register());
+    try {
+      assertTrue(store.authenticate());
+      assertNull(store.get(index));
+      assertTrue(store.put(index, first, toBytes("one")));
+
+      List<RevValue> got = store.get(index);
+      assertEquals(1, got.size());
+      assertEquals(first, got.get(0).getRevision());
+      assertArrayEquals(toBytes("one"), got.get(0).getValue());
+      assertArrayEquals(toBytes("one"), store.getRevision(index, first));
+      assertEquals(Arrays.asList(index), store.getIndices());
+      assertEquals(Arrays.asList(first), store.getRevisions(index));
+      assertEquals(Arrays.asList(index), store.getChangesSince(0).getIndices());
+
+      CryptoNigoriDatastore.Batch batch = store.batch();
+      int put = batch.put(index, second, toBytes("two"));
+      int getRevision = batch.getRevision(index, second);
+      int revisions = batch.getRevisions(index);
+      CryptoNigoriDatastore.BatchResults results = batch.execute();
+      assertTrue(results.succeeded(put));
+      assertArrayEquals(toBytes("two"), results.getRevision(getRevision));
+      assertEquals(2, results.getRevisions(revisions).size());
+
+      assertTrue(store.delete(index, NULL_DELETE_TOKEN));
+      assertNull(store.get(index));
+      assertFalse(store.delete(index, NULL_DELETE_TOKEN));
+    } finally {
+      assertTrue(store.unregister());
+    }
+  }
+
+  @Test
+  public void json() throws Exception {
+    int port = server.getPort();
+    roundTrip(store(new JsonHTTPProtocol(HOST, port, PREFIX), port));
+  }
+
+  @Test
+  public void protobuf() throws Exception {
+    int port = server.getPort();
+    ProtobufHTTPProtocol protocol = new ProtobufHTTPProtocol(HOST, port, PREFIX);
+    roundTrip(store(protocol, port));
+    assertFalse(protocol.isUsingJson());
+  }
+
+  /**
+   * {@link CryptoNigoriDatastore#batch()} over HTTP, with puts over quota failing on their own
+   */
+  @Test
+  public void batch() throws Exception {
+    NigoriServer limited =
+        new NigoriServer(database(), new StorageUsage(2, 3, 100000), 0, 8, 1, 1, 16);
+    limited.start();
+    try {
+      int port = limited.getPort();
+      CryptoNigoriDatastore store = store(new ProtobufHTTPProtocol(HOST, port, PREFIX), port);
+      assertTrue(store.register());
+      Index a = new Index("a");
+      Index b = new Index("b");
+      Index c = new Index("c");
+      Revision first = new Revision("first");
+      Revision second = new Revision("second");
+
+      CryptoNigoriDatastore.Batch batch = store.batch();
+      int putA = batch.put(a, first, toBytes("a1"));
+      int putB = batch.put(b, first, toBytes("b1"));
+      int putC = batch.put(c, first, toBytes("c1"));
+      int putAAgain = batch.put(a, first, toBytes("a1"));
+      int putASecond = batch.put(a, second, toBytes("a2"));
+      int getA = batch.get(a);
+      int getC = batch.get(c);
+      int getBFirst = batch.getRevision(b, first);
+      int revisionsA = batch.getRevisions(a);
+      int deleteB = batch.delete(b);
+      int getB = batch.get(b);
+      assertEquals(11, batch.size());
+      CryptoNigoriDatastore.BatchResults results = batch.execute();
+
+      assertTrue(results.succeeded(putA));
+      assertTrue(results.succeeded(putB));
+      assertFalse("Over quota", results.succeeded(putC));
+      assertTrue("Repeated put", results.succeeded(putAAgain));
+      assertTrue(results.succeeded(putASecond));
+      assertEquals(2, results.getRecord(getA).size());
+      assertNull(results.getRecord(getC));
+      assertArrayEquals(toBytes("b1"), results.getRevision(getBFirst));
+      assertEquals(2, results.getRevisions(revisionsA).size());
+      assertTrue(results.succeeded(deleteB));
+      assertNull("Deleted earlier in the batch", results.getRecord(getB));
+
+      // The deleted record made room for c
+      assertTrue(store.put(c, first, toBytes("c1")));
+      assertTrue(store.unregister());
+    } finally {
+      limited.stop();
+    }
+  }
+
+  /**
+   * A server which only understands JSON replies Not Acceptable to protobufs, after which the
+   * client sends everything as JSON
+   */
+  @Test
+  public void jsonWhenProtobufNotAccepted() throws Exception {
+    final NigoriServlet nigori = new NigoriServlet(database());
+    Server jsonOnly = new Server(0);
+    ServletContextHandler context = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
+    context.setContextPath("/");
+    context.addServlet(new ServletHolder(new HttpServlet() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        if (MessageLibrary.MIMETYPE_PROTOBUF.equals(req.getContentType())) {
+          resp.sendError(HttpServletResponse.SC_NOT_ACCEPTABLE);
+        } else {
+          nigori.doPost(req, resp);
+        }
+      }
+    }), NigoriServer.PATH + "/*");
+    jsonOnly.setHandler(context);
+    jsonOnly.start();
+    try {
+      int port = ((ServerConnector) jsonOnly.getConnectors()[0]).getLocalPort();
+      ProtobufHTTPProtocol protocol = new ProtobufHTTPProtocol(HOST, port, PREFIX);
+      assertFalse(protocol.isUsingJson());
+      roundTrip(store(protocol, port));
+      assertTrue(protocol.isUsingJson());
+    } finally {
+      jsonOnly.stop();
+    }
+  }
+
+  /**
+   * Wait up to ten seconds for condition to become true
+   */
+  private static void await(String what, Callable<Boolean> condition) throws Exception {
+    long deadline = System.currentTimeMillis() + 10 * 1000;
+    while (!condition.call()) {
+      if (System.currentTimeMillis() > deadline) {
+        fail("Timed out waiting for " + what);
+      }
+      Thread.sleep(20);
+    }
+  }
+
+  /**
+   * {@link LocalAsyncRemoteSyncingNigoriDatastore} talking to the remote through an
+   * {@link AsyncCryptoNigoriDatastore} rather than a thread for each operation
+   */
+  @Test
+  public void localAsyncRemote() throws Exception {
+    NigoriServer localServer =
+        new NigoriServer(database(), StorageUsage.UNLIMITED, 0, 8, 1, 1, 16);
+    localServer.start();
+    NioHttpClient client = new NioHttpClient();
+    try {
+      int port = server.getPort();
+      int localPort = localServer.getPort();
+      final CryptoNigoriDatastore local =
+          store(new ProtobufHTTPProtocol(HOST, localPort, PREFIX), localPort);
+      final CryptoNigoriDatastore remote =
+          store(new ProtobufHTTPProtocol(HOST, port, PREFIX), port);
+      AsyncCryptoNigoriDatastore asyncRemote =
+          new AsyncCryptoNigoriDatastore(client, HOST, port, PREFIX, "username", "password");
+      final LocalAsyncRemoteSyncingNigoriDatastore store =
+          new LocalAsyncRemoteSyncingNigoriDatastore(local, remote, asyncRemote, null);
+      assertTrue(store.register());
+      try {
+        assertTrue(store.authenticate());
+        final Index index = new Index("index");
+        final Revision revision = new Revision("revision");
+        assertTrue(store.put(index, revision, toBytes("value")));
+        await("the outbox to be sent", new Callable<Boolean>() {
+          @Override
+          public Boolean call() {
+            return store.getUnsent() == 0;
+          }
+        });
+        assertArrayEquals(toBytes("value"), remote.getRevision(index, revision));
+
+        // only on the remote, the async get copies it to the local store
+        final Index other = new Index("other");
+        assertTrue(remote.put(other, revision, toBytes("remote")));
+        assertNull(store.get(other));
+        await("the remote value to be copied", new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            return local.get(other) != null;
+          }
+        });
+        assertArrayEquals(toBytes("remote"), store.getRevision(other, revision));
+        assertTrue(client.getMetrics().getRequests() > 0);
+        assertEquals(0, client.getMetrics().getFailures());
+      } finally {
+        assertTrue(store.unregister());
+      }
+    } finally {
+      client.close();
+      localServer.stop();
+    }
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2012 Daniel R. Thomas (drt24)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.nigori.server.standalone;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.nigori.client.DummyKeyManager;
+import com.google.nigori.common.MessageLibrary;
+import com.google.nigori.server.BoundedPools;
+import com.google.nigori.server.HashMapDatabase;
+import com.google.nigori.server.NigoriServlet;
+import com.google.nigori.server.StorageUsage;
+import com.google.nigori.server.SynchronizedDatabase;
+
+/**
+ * The asynchronous path through {@link NigoriServlet}, which Jetty supports, using raw sockets so
+ * that request bodies can be sent slowly.
+ *
+ * @author drt24
+ *
+ */
+public class NigoriServletTest {
+
+  private static final byte[] GARBAGE = new byte[100];
+  static {
+    Arrays.fill(GARBAGE, (byte) 0xff);
+  }
+
+  private Server jetty = null;
+
+  private int start(ExecutorService cpuPool, ExecutorService ioPool) throws Exception {
+    NigoriServlet servlet = new NigoriServlet(new SynchronizedDatabase(new HashMapDatabase()),
+        StorageUsage.UNLIMITED, cpuPool, ioPool);
+    ServletHolder holder = new ServletHolder(servlet);
+    holder.setAsyncSupported(true);
+    ServletContextHandler context = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
+    context.setContextPath("/");
+    context.addServlet(holder, NigoriServer.PATH + "/*");
+    jetty = new Server(0);
+    jetty.setHandler(context);
+    jetty.start();
+    return ((ServerConnector) jetty.getConnectors()[0]).getLocalPort();
+  }
+
+  @After
+  public void stop() throws Exception {
+    if (jetty != null) {
+      jetty.stop();
+    }
+  }
+
+  private static ExecutorService pool() {
+    return BoundedPools.newBoundedPool("test", 1, 16);
+  }
+
+  /**
+   * @return a pool which rejects everything, as a full one does
+   */
+  private static ExecutorService fullPool() {
+    ExecutorService pool = pool();
+    pool.shutdown();
+    return pool;
+  }
+
+  /**
+   * Send the headers and the first sent bytes of a protobuf request
+   */
+  private static Socket send(int port, String requestType, byte[] body, int sent)
+      throws IOException {
+    Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+    socket.setSoTimeout(10 * 1000);
+    OutputStream out = socket.getOutputStream();
+    out.write(MessageLibrary.toBytes("POST " + NigoriServer.PATH + "/" + requestType
+        + " HTTP/1.1\r\nHost: localhost\r\nContent-Type: " + MessageLibrary.MIMETYPE_PROTOBUF
+        + "\r\nContent-Length: " + body.length + "\r\nConnection: close\r\n\r\n"));
+    out.write(body, 0, sent);
+    out.flush();
+    return socket;
+  }
+
+  /**
+   * @return the whole response, read until the server closes the connection
+   */
+  private static String response(Socket socket) throws IOException {
+    try {
+      InputStream in = socket.getInputStream();
+      ByteArrayOutputStream response = new ByteArrayOutputStream();
+      byte[] buffer = new byte[1024];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        response.write(buffer, 0, read);
+      }
+      return new String(response.toByteArray(), "ISO-8859-1");
+    } finally {
+      socket.close();
+    }
+  }
+
+  private static void assertStatus(int status, String response) {
+    assertTrue(response, response.startsWith("HTTP/1.1 " + status + " "));
+  }
+
+  /**
+   * A client sending its request slowly doesn't hold up other requests, even with only one thread
+   * parsing requests
+   */
+  @Test
+  public void slowBodyHoldsNoThread() throws Exception {
+    int port = start(pool(), pool());
+    Socket slow = send(port, MessageLibrary.REQUEST_GET, GARBAGE, GARBAGE.length / 2);
+    Thread.sleep(200);
+    assertStatus(400, response(send(port, MessageLibrary.REQUEST_GET, GARBAGE, GARBAGE.length)));
+
+    slow.getOutputStream().write(GARBAGE, GARBAGE.length / 2, GARBAGE.length / 2);
+    slow.getOutputStream().flush();
+    String response = response(slow);
+    assertStatus(400, response);
+    assertTrue(response, response.contains("Protobuf format error"));
+  }
+
+  /**
+   * Refused before any of the body is buffered, the container still reads and discards it
+   */
+  @Test
+  public void requestTooLarge() throws Exception {
+    int port = start(pool(), pool());
+    byte[] body = new byte[2 * 1024 * 1024];
+    String response = response(send(port, MessageLibrary.REQUEST_GET, body, body.length));
+    assertStatus(413, response);
+    assertTrue(response, response.contains("maximum length"));
+  }
+
+  @Test
+  public void cpuPoolFull() throws Exception {
+    int port = start(fullPool(), pool());
+    String response = response(send(port, MessageLibrary.REQUEST_GET, GARBAGE, GARBAGE.length));
+    assertStatus(503, response);
+    assertTrue(response, response.contains("\r\nRetry-After: 1\r\n"));
+  }
+
+  @Test
+  public void ioPoolFull() throws Exception {
+    int port = start(pool(), fullPool());
+    byte[] request =
+        MessageLibrary.authenticateRequestAsProtobuf("localhost",
+            new DummyKeyManager("localhost").signer()).toByteArray();
+    String response = response(send(port, MessageLibrary.REQUEST_AUTHENTICATE, request,
+        request.length));
+    assertStatus(503, response);
+    assertTrue(response, response.contains("\r\nRetry-After: 1\r\n"));
+  }
+}
@@ -80,6 +80,9 @@ public class NigoriServletTest {
     request = createMock(HttpServletRequest.class);
     response = createMock(HttpServletResponse.class);
     servlet = new NigoriServlet(database);
+    // Requests are neither compressed nor processed asynchronously
+    expect(request.getHeader(anyObject(String.class))).andReturn(null).anyTimes();
+    expect(request.isAsyncSupported()).andReturn(false).anyTimes();
     keyManager = new RealKeyManager(serverName, toBytes("username"), toBytes("password"));
     // TODO need to correctly create user
     user =
@@ -118,12 +121,15 @@ public class NigoriServletTest {
   }
 
   /**
-   * Expect headers to be added for CORS - we don't care about their structure
+   * Expect headers to be added for CORS and content encoding negotiation - we don't care about
+   * their structure
    */
   private void corsHeaders() {
     response.addHeader(anyObject(String.class), anyObject(String.class));
     response.addHeader(anyObject(String.class), anyObject(String.class));
     response.addHeader(anyObject(String.class), anyObject(String.class));
+    response.addHeader(anyObject(String.class), anyObject(String.class));
+    response.setHeader(anyObject(String.class), anyObject(String.class));
   }
 
   private ServletOutputStream expectedCallsForResponse(int statusCode, String mimetype)